@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.analytics.math.function.Function;
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.AlignedTimeSeries;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.TimeSeriesAligner;
+
+/**
+ * Calculates the historical covariance matrix of many return series.
+ * <p>
+ * The series are aligned to their common dates in a single pass by {@link TimeSeriesAligner} and each entry
+ * is calculated from the aligned values as by {@link HistoricalCovarianceCalculator}. This gives the same
+ * result as a {@link CovarianceMatrixCalculator} using that calculator on series with identical dates,
+ * without needing the series to be intersected first or iterating the series once for each pair.
+ */
+public class HistoricalCovarianceMatrixCalculator implements Function<DoubleTimeSeries<?>, DoubleMatrix2D> {
+
+  /**
+   * Calculates the covariance matrix of the series over their common dates. The ordering of the elements
+   * is determined by the order of the array.
+   *
+   * @param x An array of fast or fast-backed {@link DoubleTimeSeries}
+   * @return The covariance matrix
+   * @throws IllegalArgumentException If the array of time series is null or empty, or if the series have fewer
+   * than two dates in common
+   */
+  @Override
+  public DoubleMatrix2D evaluate(final DoubleTimeSeries<?>... x) {
+    Validate.notNull(x, "x");
+    ArgumentChecker.notEmpty(x, "x");
+    return evaluate(TimeSeriesAligner.intersection(x));
+  }
+
+  /**
+   * Calculates the covariance matrix of aligned series.
+   *
+   * @param aligned The aligned series, not null
+   * @return The covariance matrix
+   * @throws IllegalArgumentException If there are fewer than two rows
+   */
+  public DoubleMatrix2D evaluate(final AlignedTimeSeries aligned) {
+    Validate.notNull(aligned, "aligned");
+    final int m = aligned.getRowCount();
+    Validate.isTrue(m >= 2, "Need at least two common dates to calculate covariance; have " + m);
+    final int n = aligned.getSeriesCount();
+    final double[][] values = aligned.getValues();
+    final double[] means = new double[n];
+    for (int i = 0; i < n; i++) {
+      final double[] column = values[i];
+      double sum = 0;
+      for (int k = 0; k < m; k++) {
+        sum += column[k];
+      }
+      means[i] = sum / m;
+    }
+    final double[][] covariance = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      final double[] x = values[i];
+      for (int j = 0; j <= i; j++) {
+        final double[] y = values[j];
+        double xy = 0;
+        for (int k = 0; k < m; k++) {
+          xy += x[k] * y[k];
+        }
+        covariance[i][j] = xy / (m - 1) - means[i] * means[j];
+        covariance[j][i] = covariance[i][j];
+      }
+    }
+    return new DoubleMatrix2D(covariance);
+  }
+
+}
@@ -13,6 +13,7 @@ import java.util.Map;
 import org.apache.commons.lang.Validate;
 
 import com.opengamma.analytics.financial.covariance.CovarianceMatrixCalculator;
+import com.opengamma.analytics.financial.covariance.HistoricalCovarianceMatrixCalculator;
 import com.opengamma.analytics.financial.greeks.MixedOrderUnderlying;
 import com.opengamma.analytics.financial.greeks.NthOrderUnderlying;
 import com.opengamma.analytics.financial.pnl.SensitivityAndReturnDataBundle;
@@ -27,10 +28,22 @@ import com.opengamma.util.timeseries.DoubleTimeSeries;
  * 
  */
 public class VaRCovarianceMatrixCalculator implements Function<SensitivityAndReturnDataBundle, Map<Integer, ParametricVaRDataBundle>> {
-  private final CovarianceMatrixCalculator _calculator;
+  private final Function<DoubleTimeSeries<?>, DoubleMatrix2D> _calculator;
   private static final DoubleTimeSeries<?>[] EMPTY = new DoubleTimeSeries<?>[0];
 
-  public VaRCovarianceMatrixCalculator(final CovarianceMatrixCalculator calculator) {
+  /**
+   * Creates a calculator using the historical covariance of the return series over their common dates.
+   * The return series must be fast or fast-backed time series.
+   */
+  public VaRCovarianceMatrixCalculator() {
+    this(new HistoricalCovarianceMatrixCalculator());
+  }
+
+  /**
+   * @param calculator The covariance matrix calculator, such as a {@link CovarianceMatrixCalculator} or {@link HistoricalCovarianceMatrixCalculator}
+   * @throws IllegalArgumentException If the calculator is null
+   */
+  public VaRCovarianceMatrixCalculator(final Function<DoubleTimeSeries<?>, DoubleMatrix2D> calculator) {
     Validate.notNull(calculator, "calculator");
     _calculator = calculator;
   }
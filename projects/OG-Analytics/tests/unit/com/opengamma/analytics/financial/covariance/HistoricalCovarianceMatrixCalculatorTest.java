@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+
+/**
+ * Test {@link HistoricalCovarianceMatrixCalculator}.
+ */
+public class HistoricalCovarianceMatrixCalculatorTest {
+  private static final DoubleTimeSeries<?> TS1 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {1, 2, 3, 4, 5}, new double[] {-1, 1, -1, 1, 3});
+  private static final DoubleTimeSeries<?> TS2 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {1, 2, 3, 4, 5}, new double[] {0.5, 0.2, -0.1, 0.7, 0.3});
+  private static final DoubleTimeSeries<?> TS3 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {0, 1, 2, 3, 4, 6}, new double[] {9, 2, 4, 1, 3, 9});
+  private static final HistoricalCovarianceMatrixCalculator CALCULATOR = new HistoricalCovarianceMatrixCalculator();
+  private static final CovarianceMatrixCalculator PAIRWISE = new CovarianceMatrixCalculator(new HistoricalCovarianceCalculator());
+  private static final double EPS = 1e-12;
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullTSArray() {
+    CALCULATOR.evaluate((DoubleTimeSeries<?>[]) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testEmptyTSArray() {
+    CALCULATOR.evaluate(new DoubleTimeSeries<?>[0]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNoCommonDates() {
+    CALCULATOR.evaluate(TS1, new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {5, 6}, new double[] {1, 2}));
+  }
+
+  @Test
+  public void testSameDates() {
+    assertMatrixEquals(PAIRWISE.evaluate(TS1, TS2), CALCULATOR.evaluate(TS1, TS2));
+  }
+
+  @Test
+  public void testDifferentDates() {
+    final DoubleTimeSeries<?> ts1 = TS1.intersectionFirstValue(TS3);
+    final DoubleTimeSeries<?> ts2 = TS2.intersectionFirstValue(TS3);
+    final DoubleTimeSeries<?> ts3 = TS3.intersectionFirstValue(TS1);
+    assertMatrixEquals(PAIRWISE.evaluate(ts1, ts2, ts3), CALCULATOR.evaluate(TS1, TS2, TS3));
+  }
+
+  private static void assertMatrixEquals(final DoubleMatrix2D expected, final DoubleMatrix2D actual) {
+    assertEquals(expected.getNumberOfRows(), actual.getNumberOfRows());
+    assertEquals(expected.getNumberOfColumns(), actual.getNumberOfColumns());
+    for (int i = 0; i < expected.getNumberOfRows(); i++) {
+      for (int j = 0; j < expected.getNumberOfColumns(); j++) {
+        assertEquals(expected.getEntry(i, j), actual.getEntry(i, j), EPS);
+      }
+    }
+  }
+}
@@ -18,6 +18,7 @@ import org.testng.annotations.Test;
 
 import com.opengamma.analytics.financial.covariance.CovarianceCalculator;
 import com.opengamma.analytics.financial.covariance.CovarianceMatrixCalculator;
+import com.opengamma.analytics.financial.covariance.HistoricalCovarianceCalculator;
 import com.opengamma.analytics.financial.greeks.Greek;
 import com.opengamma.analytics.financial.greeks.GreekVisitor;
 import com.opengamma.analytics.financial.greeks.MixedOrderUnderlying;
@@ -494,6 +495,25 @@ public class VaRCovarianceMatrixCalculatorTest {
     }
   }
 
+  @Test
+  public void testHistoricalCovariance() {
+    final long[] times = new long[] {1, 2, 3, 4, 5};
+    final DoubleTimeSeries<?> spot = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_SECONDS, times, new double[] {0.01, -0.02, 0.015, 0.005, -0.01});
+    final DoubleTimeSeries<?> vol = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_SECONDS, times, new double[] {0.03, 0.01, -0.02, 0.0, 0.02});
+    final SensitivityAndReturnDataBundle[] data = new SensitivityAndReturnDataBundle[] {
+      new SensitivityAndReturnDataBundle(new ValueGreekSensitivity(new ValueGreek(Greek.DELTA), "A"), DELTA_A_1,
+          Collections.<UnderlyingType, DoubleTimeSeries<?>> singletonMap(UnderlyingType.SPOT_PRICE, spot)),
+      new SensitivityAndReturnDataBundle(new ValueGreekSensitivity(new ValueGreek(Greek.VEGA), "A"), VEGA_A_1,
+          Collections.<UnderlyingType, DoubleTimeSeries<?>> singletonMap(UnderlyingType.IMPLIED_VOLATILITY, vol))};
+    final DoubleMatrix2D expected = (DoubleMatrix2D) new VaRCovarianceMatrixCalculator(new CovarianceMatrixCalculator(new HistoricalCovarianceCalculator())).evaluate(data).get(1)
+        .getCovarianceMatrix();
+    final DoubleMatrix2D actual = (DoubleMatrix2D) new VaRCovarianceMatrixCalculator().evaluate(data).get(1).getCovarianceMatrix();
+    assertEquals(expected.getNumberOfRows(), actual.getNumberOfRows());
+    for (int i = 0; i < expected.getNumberOfRows(); i++) {
+      assertArrayEquals(expected.getData()[i], actual.getData()[i], EPS);
+    }
+  }
+
   private static class DummyGreek extends Greek {
 
     public DummyGreek(final Underlying underlying, final String name) {
@@ -12,6 +12,7 @@ import java.util.Set;
 
 import javax.time.calendar.LocalDate;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -30,6 +31,7 @@ import com.opengamma.core.historicaltimeseries.HistoricalTimeSeriesSource;
 import com.opengamma.id.ExternalIdBundle;
 import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
+import com.opengamma.transport.jaxrs.FudgeRest;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.fudgemsg.FudgeMapWrapper;
 import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
@@ -78,7 +80,8 @@ public class DataHistoricalTimeSeriesSourceResource extends AbstractDataResource
       @QueryParam("includeStart")  boolean includeStart,
       @QueryParam("end") String endStr,
       @QueryParam("includeEnd") boolean includeEnd,
-      @QueryParam("maxPoints") Integer maxPoints) {
+      @QueryParam("maxPoints") Integer maxPoints,
+      @HeaderParam(FudgeRest.COMPRESSED_TIME_SERIES_HEADER) boolean compressed) {
     final UniqueId uniqueId = ObjectId.parse(idStr).atVersion(version);
     final LocalDate start = (startStr != null ? LocalDate.parse(startStr) : null);
     final LocalDate end = (endStr != null ? LocalDate.parse(endStr) : null);
@@ -90,7 +93,7 @@ public class DataHistoricalTimeSeriesSourceResource extends AbstractDataResource
     } else {
       result = getHistoricalTimeSeriesSource().getHistoricalTimeSeries(uniqueId, start, includeStart, end, includeEnd);
     }
-    return responseOkFudge(result);
+    return responseOkFudge(result, compressed);
   }
 
   @GET
@@ -105,7 +108,8 @@ public class DataHistoricalTimeSeriesSourceResource extends AbstractDataResource
       @QueryParam("includeStart")  boolean includeStart,
       @QueryParam("end") String endStr,
       @QueryParam("includeEnd") boolean includeEnd,
-      @QueryParam("maxPoints") Integer maxPoints) {
+      @QueryParam("maxPoints") Integer maxPoints,
+      @HeaderParam(FudgeRest.COMPRESSED_TIME_SERIES_HEADER) boolean compressed) {
     final ExternalIdBundle bundle = ExternalIdBundle.parse(idStrs);
     final LocalDate start = (startStr != null ? LocalDate.parse(startStr) : null);
     final LocalDate end = (endStr != null ? LocalDate.parse(endStr) : null);
@@ -134,7 +138,7 @@ public class DataHistoricalTimeSeriesSourceResource extends AbstractDataResource
             bundle, dataSource, dataProvider, dataField, start, includeStart, end, includeEnd);
       }
     }
-    return responseOkFudge(result);
+    return responseOkFudge(result, compressed);
   }
 
   @GET
@@ -148,7 +152,8 @@ public class DataHistoricalTimeSeriesSourceResource extends AbstractDataResource
       @QueryParam("includeStart")  boolean includeStart,
       @QueryParam("end") String endStr,
       @QueryParam("includeEnd") boolean includeEnd,
-      @QueryParam("maxPoints") Integer maxPoints) {
+      @QueryParam("maxPoints") Integer maxPoints,
+      @HeaderParam(FudgeRest.COMPRESSED_TIME_SERIES_HEADER) boolean compressed) {
     final ExternalIdBundle bundle = ExternalIdBundle.parse(idStrs);
     final LocalDate start = (startStr != null ? LocalDate.parse(startStr) : null);
     final LocalDate end = (endStr != null ? LocalDate.parse(endStr) : null);
@@ -177,13 +182,13 @@ public class DataHistoricalTimeSeriesSourceResource extends AbstractDataResource
             dataField, bundle, resolutionKey, start, includeStart, end, includeEnd);
       }
     }
-    return responseOkFudge(result);
+    return responseOkFudge(result, compressed);
   }
 
   @SuppressWarnings("unchecked")
   @POST
   @Path("htsSearches/bulk")
-  public Response searchBulk(FudgeMsgEnvelope request) {
+  public Response searchBulk(FudgeMsgEnvelope request, @HeaderParam(FudgeRest.COMPRESSED_TIME_SERIES_HEADER) boolean compressed) {
     // non-ideal variant using POST
     FudgeMsg msg = request.getMessage();
     FudgeDeserializer deserializationContext = new FudgeDeserializer(OpenGammaFudgeContext.getInstance());
@@ -198,7 +203,7 @@ public class DataHistoricalTimeSeriesSourceResource extends AbstractDataResource
     
     Map<ExternalIdBundle, HistoricalTimeSeries> result = getHistoricalTimeSeriesSource().getHistoricalTimeSeries(
         identifierSet, dataSource, dataProvider, dataField, start, inclusiveStart, end, includeEnd);
-    return responseOkFudge(FudgeMapWrapper.of(result));
+    return responseOkFudge(FudgeMapWrapper.of(result), compressed);
   }
 
   //-------------------------------------------------------------------------
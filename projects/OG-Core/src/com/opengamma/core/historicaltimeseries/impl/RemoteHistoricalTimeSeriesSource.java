@@ -17,12 +17,14 @@ import com.opengamma.core.historicaltimeseries.HistoricalTimeSeries;
 import com.opengamma.core.historicaltimeseries.HistoricalTimeSeriesSource;
 import com.opengamma.id.ExternalIdBundle;
 import com.opengamma.id.UniqueId;
+import com.opengamma.transport.jaxrs.FudgeRest;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.fudgemsg.FudgeMapWrapper;
 import com.opengamma.util.rest.AbstractRemoteClient;
 import com.opengamma.util.rest.UniformInterfaceException404NotFound;
 import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
 import com.opengamma.util.tuple.Pair;
+import com.sun.jersey.api.client.WebResource.Builder;
 
 /**
  * Provides remote access to an {@link HistoricalTimeSeriesSource}.
@@ -282,4 +284,16 @@ public class RemoteHistoricalTimeSeriesSource extends AbstractRemoteClient imple
     return Pair.of(series.getLatestTime(), series.getLatestValue());
   }
 
+  //-------------------------------------------------------------------------
+  /**
+   * Accesses the remote source, reading time-series in the compressed form.
+   * 
+   * @param uri  the URI to call, not null
+   * @return the resource, suitable for calling get/post/put/delete on, not null
+   */
+  @Override
+  protected Builder accessRemote(final URI uri) {
+    return super.accessRemote(uri).header(FudgeRest.COMPRESSED_TIME_SERIES_HEADER, Boolean.TRUE.toString());
+  }
+
 }
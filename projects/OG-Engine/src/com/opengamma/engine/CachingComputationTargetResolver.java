@@ -6,11 +6,13 @@
 package com.opengamma.engine;
 
 import java.util.Collection;
+import java.util.Set;
 
 import com.opengamma.core.position.PortfolioNode;
 import com.opengamma.core.position.Position;
 import com.opengamma.core.position.Trade;
 import com.opengamma.core.security.Security;
+import com.opengamma.id.ObjectId;
 
 /**
  * 
@@ -44,4 +46,11 @@ public interface CachingComputationTargetResolver extends ComputationTargetResol
    * @param trades the trades to cache
    */
   void cacheTrades(Collection<Trade> trades);
+
+  /**
+   * Removes any cached targets which are, or depend on, the given objects so that they are resolved again
+   * 
+   * @param objectIds the object identifiers of changed positions, trades or securities, not null
+   */
+  void evict(Set<ObjectId> objectIds);
 }
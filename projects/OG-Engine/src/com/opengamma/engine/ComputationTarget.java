@@ -6,6 +6,8 @@
 package com.opengamma.engine;
 
 import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.text.StrBuilder;
@@ -15,6 +17,7 @@ import com.opengamma.core.position.Position;
 import com.opengamma.core.position.PositionOrTrade;
 import com.opengamma.core.position.Trade;
 import com.opengamma.core.security.Security;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.UniqueIdentifiable;
 import com.opengamma.util.ArgumentChecker;
@@ -185,6 +188,146 @@ public class ComputationTarget implements Serializable {
     }
   }
 
+  /**
+   * Checks if the target is, or holds a resolved reference to, any of the given objects.
+   * <p>
+   * A position or trade holds its security and trades, and a portfolio node holds its
+   * child nodes and positions. A change to any of these is a change to the target.
+   * 
+   * @param objectIds  the object identifiers to check, not null
+   * @return true if the target depends on any of the objects
+   */
+  public boolean isDependentOn(final Set<ObjectId> objectIds) {
+    ArgumentChecker.notNull(objectIds, "objectIds");
+    if (objectIds.isEmpty()) {
+      return false;
+    }
+    switch (getType()) {
+      case PORTFOLIO_NODE:
+        return isDependentOn(getPortfolioNode(), objectIds);
+      case POSITION:
+        return isDependentOn(getPosition(), objectIds);
+      case TRADE:
+        return isDependentOn(getTrade(), objectIds);
+      default:
+        return contains(objectIds, getUniqueId());
+    }
+  }
+
+  private static boolean isDependentOn(final PortfolioNode node, final Set<ObjectId> objectIds) {
+    if (contains(objectIds, node.getUniqueId())) {
+      return true;
+    }
+    for (Position position : node.getPositions()) {
+      if (isDependentOn(position, objectIds)) {
+        return true;
+      }
+    }
+    for (PortfolioNode childNode : node.getChildNodes()) {
+      if (isDependentOn(childNode, objectIds)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isDependentOn(final Position position, final Set<ObjectId> objectIds) {
+    if (isDependentOn((PositionOrTrade) position, objectIds)) {
+      return true;
+    }
+    for (Trade trade : position.getTrades()) {
+      if (isDependentOn(trade, objectIds)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isDependentOn(final Trade trade, final Set<ObjectId> objectIds) {
+    return isDependentOn((PositionOrTrade) trade, objectIds) || contains(objectIds, trade.getParentPositionId());
+  }
+
+  private static boolean isDependentOn(final PositionOrTrade positionOrTrade, final Set<ObjectId> objectIds) {
+    if (contains(objectIds, positionOrTrade.getUniqueId())) {
+      return true;
+    }
+    final ObjectId securityId = positionOrTrade.getSecurityLink().getObjectId();
+    if ((securityId != null) && objectIds.contains(securityId)) {
+      return true;
+    }
+    final Security security = positionOrTrade.getSecurity();
+    return (security != null) && contains(objectIds, security.getUniqueId());
+  }
+
+  private static boolean contains(final Set<ObjectId> objectIds, final UniqueId uniqueId) {
+    return (uniqueId != null) && objectIds.contains(uniqueId.getObjectId());
+  }
+
+  /**
+   * Gets the objects the target is, or holds a resolved reference to. The target is dependent on
+   * exactly the objects returned, as checked by {@link #isDependentOn}.
+   * 
+   * @return the object identifiers, not null
+   */
+  public Set<ObjectId> getDependentObjectIds() {
+    final Set<ObjectId> objectIds = new HashSet<ObjectId>();
+    switch (getType()) {
+      case PORTFOLIO_NODE:
+        addDependentObjectIds(getPortfolioNode(), objectIds);
+        break;
+      case POSITION:
+        addDependentObjectIds(getPosition(), objectIds);
+        break;
+      case TRADE:
+        addDependentObjectIds(getTrade(), objectIds);
+        break;
+      default:
+        add(objectIds, getUniqueId());
+        break;
+    }
+    return objectIds;
+  }
+
+  private static void addDependentObjectIds(final PortfolioNode node, final Set<ObjectId> objectIds) {
+    add(objectIds, node.getUniqueId());
+    for (Position position : node.getPositions()) {
+      addDependentObjectIds(position, objectIds);
+    }
+    for (PortfolioNode childNode : node.getChildNodes()) {
+      addDependentObjectIds(childNode, objectIds);
+    }
+  }
+
+  private static void addDependentObjectIds(final Position position, final Set<ObjectId> objectIds) {
+    addDependentObjectIds((PositionOrTrade) position, objectIds);
+    for (Trade trade : position.getTrades()) {
+      addDependentObjectIds(trade, objectIds);
+    }
+  }
+
+  private static void addDependentObjectIds(final Trade trade, final Set<ObjectId> objectIds) {
+    addDependentObjectIds((PositionOrTrade) trade, objectIds);
+    add(objectIds, trade.getParentPositionId());
+  }
+
+  private static void addDependentObjectIds(final PositionOrTrade positionOrTrade, final Set<ObjectId> objectIds) {
+    add(objectIds, positionOrTrade.getUniqueId());
+    final ObjectId securityId = positionOrTrade.getSecurityLink().getObjectId();
+    if (securityId != null) {
+      objectIds.add(securityId);
+    }
+    final Security security = positionOrTrade.getSecurity();
+    if (security != null) {
+      add(objectIds, security.getUniqueId());
+    }
+  }
+
+  private static void add(final Set<ObjectId> objectIds, final UniqueId uniqueId) {
+    if (uniqueId != null) {
+      objectIds.add(uniqueId.getObjectId());
+    }
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Returns a specification that is equivalent to this target.
@@ -6,17 +6,24 @@
 package com.opengamma.engine;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 
 import com.opengamma.core.position.PortfolioNode;
 import com.opengamma.core.position.Position;
 import com.opengamma.core.position.Trade;
 import com.opengamma.core.security.Security;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueIdentifiable;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.ehcache.AbstractCacheEventListener;
 import com.opengamma.util.ehcache.EHCacheUtils;
 
 /**
@@ -35,6 +42,11 @@ public class DefaultCachingComputationTargetResolver extends DelegatingComputati
    * The cache.
    */
   private final Cache _computationTarget;
+  /**
+   * The keys of the cached targets that are, or hold a resolved reference to, each object. This is kept up to date by
+   * a listener on the cache so that targets put, removed or evicted by any user of the cache are accounted for.
+   */
+  private final Map<ObjectId, Set<Object>> _dependentKeys = new HashMap<ObjectId, Set<Object>>();
 
   /**
    * Creates an instance using the specified cache manager.
@@ -48,6 +60,12 @@ public class DefaultCachingComputationTargetResolver extends DelegatingComputati
     _cacheManager = cacheManager;
     EHCacheUtils.addCache(cacheManager, COMPUTATIONTARGET_CACHE);
     _computationTarget = EHCacheUtils.getCacheFromManager(cacheManager, COMPUTATIONTARGET_CACHE);
+    final DependentKeyIndexer indexer = new DependentKeyIndexer();
+    _computationTarget.getCacheEventNotificationService().registerListener(indexer);
+    // The cache may be shared with another resolver which has already populated it
+    for (Object key : _computationTarget.getKeys()) {
+      indexer.index(_computationTarget.getQuiet(key));
+    }
     if (underlying instanceof DefaultComputationTargetResolver) {
       ((DefaultComputationTargetResolver) underlying).setRecursiveResolver(this);
     }
@@ -110,6 +128,101 @@ public class DefaultCachingComputationTargetResolver extends DelegatingComputati
     }
   }
 
+  @Override
+  public void evict(Set<ObjectId> objectIds) {
+    ArgumentChecker.notNull(objectIds, "objectIds");
+    if (objectIds.isEmpty()) {
+      return;
+    }
+    final Set<Object> keys = new HashSet<Object>();
+    synchronized (_dependentKeys) {
+      for (ObjectId objectId : objectIds) {
+        final Set<Object> dependentKeys = _dependentKeys.get(objectId);
+        if (dependentKeys != null) {
+          keys.addAll(dependentKeys);
+        }
+      }
+    }
+    // Removing the elements notifies the indexer, which drops them from the index
+    for (Object key : keys) {
+      _computationTarget.remove(key);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Maintains the index of cached targets by the objects they depend on.
+   */
+  private final class DependentKeyIndexer extends AbstractCacheEventListener {
+
+    private void index(final Element element) {
+      if ((element == null) || !(element.getObjectValue() instanceof ComputationTarget)) {
+        return;
+      }
+      final Object key = element.getObjectKey();
+      synchronized (_dependentKeys) {
+        for (ObjectId objectId : ((ComputationTarget) element.getObjectValue()).getDependentObjectIds()) {
+          Set<Object> dependentKeys = _dependentKeys.get(objectId);
+          if (dependentKeys == null) {
+            dependentKeys = new HashSet<Object>();
+            _dependentKeys.put(objectId, dependentKeys);
+          }
+          dependentKeys.add(key);
+        }
+      }
+    }
+
+    private void unindex(final Element element) {
+      if ((element == null) || !(element.getObjectValue() instanceof ComputationTarget)) {
+        return;
+      }
+      final Object key = element.getObjectKey();
+      synchronized (_dependentKeys) {
+        for (ObjectId objectId : ((ComputationTarget) element.getObjectValue()).getDependentObjectIds()) {
+          final Set<Object> dependentKeys = _dependentKeys.get(objectId);
+          if ((dependentKeys != null) && dependentKeys.remove(key) && dependentKeys.isEmpty()) {
+            _dependentKeys.remove(objectId);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void notifyElementPut(final Ehcache cache, final Element element) {
+      index(element);
+    }
+
+    @Override
+    public void notifyElementUpdated(final Ehcache cache, final Element element) {
+      // The previous target for the key may have depended on other objects; leaving those in the index at worst
+      // evicts the key unnecessarily
+      index(element);
+    }
+
+    @Override
+    public void notifyElementRemoved(final Ehcache cache, final Element element) {
+      unindex(element);
+    }
+
+    @Override
+    public void notifyElementEvicted(final Ehcache cache, final Element element) {
+      unindex(element);
+    }
+
+    @Override
+    public void notifyElementExpired(final Ehcache cache, final Element element) {
+      unindex(element);
+    }
+
+    @Override
+    public void notifyRemoveAll(final Ehcache cache) {
+      synchronized (_dependentKeys) {
+        _dependentKeys.clear();
+      }
+    }
+
+  }
+
   //-------------------------------------------------------------------------
   private void addToCache(ComputationTargetSpecification specification, ComputationTarget ct) {
     _computationTarget.put(new Element(specification, ct));
@@ -131,7 +131,7 @@ import com.opengamma.engine.value.ValueSpecification;
   private final Set<Callback> _pumped = new HashSet<Callback>();
   private final int _objectId = s_nextObjectId.getAndIncrement();
   private final Set<ValueSpecification> _resolvedValues = new HashSet<ValueSpecification>();
-  private int _refCount;
+  private final AtomicInteger _refCount = new AtomicInteger(1);
   private ResolvedValue[] _results;
   private boolean _finished;
   private ResolutionFailure _failure;
@@ -139,7 +139,6 @@ import com.opengamma.engine.value.ValueSpecification;
   public AbstractResolvedValueProducer(final ValueRequirement valueRequirement) {
     _valueRequirement = valueRequirement;
     _results = new ResolvedValue[0];
-    _refCount = 1;
   }
 
   @Override
@@ -285,18 +284,31 @@ import com.opengamma.engine.value.ValueSpecification;
   }
 
   @Override
-  public synchronized void addRef() {
-    assert _refCount > 0;
-    _refCount++;
+  public void addRef() {
+    final int count = _refCount.getAndIncrement();
+    assert count > 0;
   }
 
   @Override
-  public synchronized int release(final GraphBuildingContext context) {
-    assert _refCount > 0;
+  public boolean tryAddRef() {
+    int count;
+    do {
+      count = _refCount.get();
+      if (count == 0) {
+        return false;
+      }
+    } while (!_refCount.compareAndSet(count, count + 1));
+    return true;
+  }
+
+  @Override
+  public int release(final GraphBuildingContext context) {
+    final int count = _refCount.decrementAndGet();
+    assert count >= 0;
     if (s_logger.isDebugEnabled()) {
-      s_logger.debug("Release called on {}, refCount={}", this, _refCount);
+      s_logger.debug("Release called on {}, refCount={}", this, count + 1);
     }
-    return --_refCount;
+    return count;
   }
 
   @Override
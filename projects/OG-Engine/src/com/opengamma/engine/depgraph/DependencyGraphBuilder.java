@@ -10,7 +10,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -23,14 +25,15 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
-import org.apache.commons.collections.map.HashedMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -218,24 +221,36 @@ public final class DependencyGraphBuilder {
   }
 
   /**
-   * Wrapper for a hash map implementation that exposes the underlying entry so that the actual
-   * key value can be used.
+   * Entry in one of the task maps. The key of the map is only equal to the task; the entry holds the actual instance.
+   * Entries compare by identity so that the conditional map operations only act on the entry that was read.
    */
-  private static final class MapEx<K, V> extends HashedMap {
+  private static final class TaskEntry {
 
-    private static final long serialVersionUID = 1L;
+    private final ResolveTask _task;
+    private final ResolvedValueProducer _producer;
 
-    @SuppressWarnings("unchecked")
-    public Map.Entry<K, V> getHashEntry(final K key) {
-      return getEntry(key);
+    public TaskEntry(final ResolveTask task, final ResolvedValueProducer producer) {
+      _task = task;
+      _producer = producer;
+    }
+
+    public ResolveTask getTask() {
+      return _task;
+    }
+
+    public ResolvedValueProducer getProducer() {
+      return _producer;
     }
 
   }
 
   /**
    * Algorithm state. A context object is used by a single job thread. Objects referenced by the context may be shared with other
-   * contexts however. The root context from which all per-thread contexts are cloned is not used by any builder thread. The
-   * synchronization on the collation methods only is therefore sufficient.
+   * contexts however. The root context from which all per-thread contexts are cloned is not used by any builder thread other
+   * than to collate exceptions, which it does into a concurrent map.
+   * <p>
+   * The task maps are concurrent. A task or producer is only used after a successful {@link ResolvedValueProducer#tryAddRef};
+   * the map holds a reference until the entry is removed so a failure means that the entry has just been discarded.
    */
   public final class GraphBuildingContext {
 
@@ -248,23 +263,30 @@ public final class DependencyGraphBuilder {
     private FunctionCompilationContext _compilationContext;
 
     // The resolve task is ref-counted once for the map (it is being used as a set)
-    private final ConcurrentMap<ValueRequirement, Map<ResolveTask, ResolveTask>> _requirements;
+    private final ConcurrentMap<ValueRequirement, ConcurrentMap<ResolveTask, TaskEntry>> _requirements;
 
     // The resolve task is NOT ref-counted (it is only used for parent comparisons), but the value producer is
-    private final ConcurrentMap<ValueSpecification, MapEx<ResolveTask, ResolvedValueProducer>> _specifications;
+    private final ConcurrentMap<ValueSpecification, ConcurrentMap<ResolveTask, TaskEntry>> _specifications;
+
+    // This data is only used by the root context
+
+    private final ConcurrentMap<ExceptionWrapper, ExceptionWrapper> _collatedExceptions;
 
     // This data is per-thread
 
     private Map<ExceptionWrapper, ExceptionWrapper> _exceptions;
     private int _stackDepth;
+    private Deque<ContextRunnable> _localRunQueue;
 
     private GraphBuildingContext() {
       s_loggerContext.info("Created new context");
-      _requirements = new ConcurrentHashMap<ValueRequirement, Map<ResolveTask, ResolveTask>>();
-      _specifications = new ConcurrentHashMap<ValueSpecification, MapEx<ResolveTask, ResolvedValueProducer>>();
+      _requirements = new ConcurrentHashMap<ValueRequirement, ConcurrentMap<ResolveTask, TaskEntry>>();
+      _specifications = new ConcurrentHashMap<ValueSpecification, ConcurrentMap<ResolveTask, TaskEntry>>();
+      _collatedExceptions = new ConcurrentHashMap<ExceptionWrapper, ExceptionWrapper>();
     }
 
-    private GraphBuildingContext(final GraphBuildingContext copyFrom) {
+    private GraphBuildingContext(final GraphBuildingContext copyFrom, final Deque<ContextRunnable> localRunQueue) {
+      _localRunQueue = localRunQueue;
       setCalculationConfigurationName(copyFrom.getCalculationConfigurationName());
       setMarketDataAvailabilityProvider(copyFrom.getMarketDataAvailabilityProvider());
       setTargetResolver(copyFrom.getTargetResolver());
@@ -272,6 +294,7 @@ public final class DependencyGraphBuilder {
       setCompilationContext(copyFrom.getCompilationContext());
       _requirements = copyFrom._requirements;
       _specifications = copyFrom._specifications;
+      _collatedExceptions = null;
     }
 
     // Configuration & resources
@@ -316,6 +339,16 @@ public final class DependencyGraphBuilder {
       _compilationContext = compilationContext;
     }
 
+    /**
+     * Returns the run queue of the thread using this context. This is null for the root context, which puts work
+     * onto the shared run queue.
+     * 
+     * @return the local run queue, or null if there is none
+     */
+    private Deque<ContextRunnable> getLocalRunQueue() {
+      return _localRunQueue;
+    }
+
     // Operations
 
     /**
@@ -326,7 +359,7 @@ public final class DependencyGraphBuilder {
     public void run(final ResolveTask runnable) {
       s_loggerContext.debug("Running {}", runnable);
       runnable.addRef();
-      addToRunQueue(runnable);
+      addToRunQueue(this, runnable);
     }
 
     /**
@@ -338,7 +371,7 @@ public final class DependencyGraphBuilder {
     public void pump(final ResolutionPump pump) {
       s_loggerContext.debug("Pumping {}", pump);
       if (++_stackDepth > MAX_CALLBACK_DEPTH) {
-        addToRunQueue(new ResolutionPump.Pump(pump));
+        addToRunQueue(this, new ResolutionPump.Pump(pump));
       } else {
         pump.pump(this);
       }
@@ -354,7 +387,7 @@ public final class DependencyGraphBuilder {
     public void close(final ResolutionPump pump) {
       s_loggerContext.debug("Closing {}", pump);
       if (++_stackDepth > MAX_CALLBACK_DEPTH) {
-        addToRunQueue(new ResolutionPump.Close(pump));
+        addToRunQueue(this, new ResolutionPump.Close(pump));
       } else {
         pump.close(this);
       }
@@ -400,6 +433,13 @@ public final class DependencyGraphBuilder {
      */
     public void exception(final Throwable t) {
       s_loggerContext.debug("Caught exception", t);
+      if (_collatedExceptions != null) {
+        // The root context is shared by the builder threads
+        final Map<ExceptionWrapper, ExceptionWrapper> exceptions = new HashMap<ExceptionWrapper, ExceptionWrapper>();
+        ExceptionWrapper.createAndPut(t, exceptions);
+        collateExceptions(exceptions);
+        return;
+      }
       if (_exceptions == null) {
         _exceptions = new HashMap<ExceptionWrapper, ExceptionWrapper>();
       }
@@ -432,6 +472,15 @@ public final class DependencyGraphBuilder {
             _refCount++;
           }
 
+          @Override
+          public synchronized boolean tryAddRef() {
+            if (_refCount == 0) {
+              return false;
+            }
+            _refCount++;
+            return true;
+          }
+
           @Override
           public synchronized int release(final GraphBuildingContext context) {
             assert _refCount > 0;
@@ -462,154 +511,136 @@ public final class DependencyGraphBuilder {
       }
     }
 
-    private ResolveTask getOrCreateTaskResolving(final ValueRequirement valueRequirement, final ResolveTask parentTask) {
-      ResolveTask newTask = new ResolveTask(valueRequirement, parentTask);
-      ResolveTask task;
-      Map<ResolveTask, ResolveTask> tasks = _requirements.get(valueRequirement);
+    private <K> ConcurrentMap<ResolveTask, TaskEntry> getOrCreateTasks(final ConcurrentMap<K, ConcurrentMap<ResolveTask, TaskEntry>> map, final K key) {
+      ConcurrentMap<ResolveTask, TaskEntry> tasks = map.get(key);
       if (tasks == null) {
-        tasks = new HashMap<ResolveTask, ResolveTask>();
-        final Map<ResolveTask, ResolveTask> existing = _requirements.putIfAbsent(valueRequirement, tasks);
+        tasks = new ConcurrentHashMap<ResolveTask, TaskEntry>();
+        final ConcurrentMap<ResolveTask, TaskEntry> existing = map.putIfAbsent(key, tasks);
         if (existing != null) {
           tasks = existing;
         }
       }
-      synchronized (tasks) {
-        task = tasks.get(newTask);
-        if (task == null) {
-          newTask.addRef();
-          tasks.put(newTask, newTask);
-        } else {
-          task.addRef();
+      return tasks;
+    }
+
+    private ResolveTask getOrCreateTaskResolving(final ValueRequirement valueRequirement, final ResolveTask parentTask) {
+      final ResolveTask newTask = new ResolveTask(valueRequirement, parentTask);
+      final ConcurrentMap<ResolveTask, TaskEntry> tasks = getOrCreateTasks(_requirements, valueRequirement);
+      // Take the reference for the map before other threads can see the task
+      newTask.addRef();
+      final TaskEntry newEntry = new TaskEntry(newTask, null);
+      do {
+        final TaskEntry existing = tasks.putIfAbsent(newTask, newEntry);
+        if (existing == null) {
+          run(newTask);
+          return newTask;
         }
-      }
-      if (task != null) {
-        s_loggerResolver.debug("Using existing task {}", task);
-        newTask.release(this);
-        return task;
-      } else {
-        run(newTask);
-        return newTask;
-      }
+        final ResolveTask task = existing.getTask();
+        if (task.tryAddRef()) {
+          s_loggerResolver.debug("Using existing task {}", task);
+          // Release the references for the map and the caller; the new task was never in the map
+          newTask.release(this);
+          newTask.release(this);
+          return task;
+        }
+        // The existing task has been discarded from the map
+      } while (true);
     }
 
     private ResolveTask[] getTasksResolving(final ValueRequirement valueRequirement) {
-      final ResolveTask[] result;
-      final Map<ResolveTask, ResolveTask> tasks = _requirements.get(valueRequirement);
+      final ConcurrentMap<ResolveTask, TaskEntry> tasks = _requirements.get(valueRequirement);
       if (tasks == null) {
         return null;
       }
-      synchronized (tasks) {
-        result = new ResolveTask[tasks.size()];
-        int i = 0;
-        for (ResolveTask task : tasks.keySet()) {
-          result[i++] = task;
-          task.addRef();
+      final List<ResolveTask> result = new ArrayList<ResolveTask>(tasks.size());
+      for (TaskEntry entry : tasks.values()) {
+        final ResolveTask task = entry.getTask();
+        if (task.tryAddRef()) {
+          result.add(task);
         }
       }
-      return result;
+      return result.toArray(new ResolveTask[result.size()]);
     }
 
-    @SuppressWarnings("unchecked")
     public Pair<ResolveTask[], ResolvedValueProducer[]> getTasksProducing(final ValueSpecification valueSpecification) {
-      final ResolveTask[] resultTasks;
-      final ResolvedValueProducer[] resultProducers;
-      final MapEx<ResolveTask, ResolvedValueProducer> tasks = _specifications.get(valueSpecification);
+      final ConcurrentMap<ResolveTask, TaskEntry> tasks = _specifications.get(valueSpecification);
       if (tasks == null) {
         return null;
       }
-      synchronized (tasks) {
-        resultTasks = new ResolveTask[tasks.size()];
-        resultProducers = new ResolvedValueProducer[tasks.size()];
-        int i = 0;
-        for (Map.Entry<ResolveTask, ResolvedValueProducer> task : (Set<Map.Entry<ResolveTask, ResolvedValueProducer>>) tasks.entrySet()) {
-          // Don't ref-count the tasks; they're just used for parent comparisons
-          resultTasks[i] = task.getKey();
-          resultProducers[i++] = task.getValue();
-          task.getValue().addRef();
+      final List<ResolveTask> resultTasks = new ArrayList<ResolveTask>(tasks.size());
+      final List<ResolvedValueProducer> resultProducers = new ArrayList<ResolvedValueProducer>(tasks.size());
+      for (TaskEntry entry : tasks.values()) {
+        // Don't ref-count the tasks; they're just used for parent comparisons
+        if (entry.getProducer().tryAddRef()) {
+          resultTasks.add(entry.getTask());
+          resultProducers.add(entry.getProducer());
         }
       }
-      return Pair.of(resultTasks, resultProducers);
+      return Pair.of(resultTasks.toArray(new ResolveTask[resultTasks.size()]), resultProducers.toArray(new ResolvedValueProducer[resultProducers.size()]));
     }
 
     public void discardTask(final ResolveTask task) {
-      final Map<ResolveTask, ResolveTask> tasks = _requirements.get(task.getValueRequirement());
-      synchronized (tasks) {
-        if (tasks.remove(task) == null) {
-          // Wasn't in the set
-          return;
-        }
+      final ConcurrentMap<ResolveTask, TaskEntry> tasks = _requirements.get(task.getValueRequirement());
+      final TaskEntry entry = tasks.get(task);
+      if ((entry == null) || (entry.getTask() != task) || !tasks.remove(task, entry)) {
+        // Wasn't in the set
+        return;
       }
       task.release(this);
     }
 
     public ResolvedValueProducer declareTaskProducing(final ValueSpecification valueSpecification, final ResolveTask task, final ResolvedValueProducer producer) {
-      ResolvedValueProducer discard = null;
-      ResolvedValueProducer result = null;
-      MapEx<ResolveTask, ResolvedValueProducer> tasks = _specifications.get(valueSpecification);
-      if (tasks == null) {
-        tasks = new MapEx<ResolveTask, ResolvedValueProducer>();
-        final MapEx<ResolveTask, ResolvedValueProducer> existing = _specifications.putIfAbsent(valueSpecification, tasks);
-        if (existing != null) {
-          tasks = existing;
+      final ConcurrentMap<ResolveTask, TaskEntry> tasks = getOrCreateTasks(_specifications, valueSpecification);
+      final TaskEntry newEntry = new TaskEntry(task, producer);
+      do {
+        final TaskEntry existing = tasks.putIfAbsent(task, newEntry);
+        if (existing == null) {
+          // No matching tasks; references for the map and the caller. Only this task can remove the entry and the
+          // caller holds a reference, so the producer can't be released before the map's reference is taken.
+          producer.addRef();
+          producer.addRef();
+          return producer;
         }
-      }
-      synchronized (tasks) {
-        if (!tasks.isEmpty()) {
-          final Map.Entry<ResolveTask, ResolvedValueProducer> resolveTask = tasks.getHashEntry(task);
-          if (resolveTask != null) {
-            if (resolveTask.getKey() == task) {
-              // Replace an earlier attempt from this task with the new producer
-              discard = resolveTask.getValue();
-              producer.addRef();
-              resolveTask.setValue(producer);
-              result = producer;
-            } else {
-              // An equivalent task is doing the work
-              result = resolveTask.getValue();
-            }
-            result.addRef();
+        if (existing.getTask() == task) {
+          // Replace an earlier attempt from this task with the new producer
+          if (tasks.replace(task, existing, newEntry)) {
+            producer.addRef();
+            producer.addRef();
+            existing.getProducer().release(this);
+            return producer;
+          }
+        } else {
+          // An equivalent task is doing the work
+          final ResolvedValueProducer result = existing.getProducer();
+          if (result.tryAddRef()) {
+            return result;
           }
         }
-        if (result == null) {
-          // No matching tasks
-          producer.addRef();
-          tasks.put(task, producer);
-          result = producer;
-          result.addRef();
-        }
-      }
-      if (discard != null) {
-        discard.release(this);
-      }
-      return result;
+        // The entry has been discarded or replaced
+      } while (true);
     }
 
     public void discardTaskProducing(final ValueSpecification valueSpecification, final ResolveTask task) {
-      final ResolvedValueProducer producer;
-      final MapEx<ResolveTask, ResolvedValueProducer> tasks = _specifications.get(valueSpecification);
-      synchronized (tasks) {
-        producer = (ResolvedValueProducer) tasks.remove(task);
-        if (producer == null) {
-          // Wasn't in the set
-          return;
-        }
+      final ConcurrentMap<ResolveTask, TaskEntry> tasks = _specifications.get(valueSpecification);
+      final TaskEntry entry = tasks.get(task);
+      if ((entry == null) || !tasks.remove(task, entry)) {
+        // Wasn't in the set
+        return;
       }
-      producer.release(this);
+      entry.getProducer().release(this);
     }
 
-    @SuppressWarnings("unchecked")
     private void abortLoops() {
       s_loggerBuilder.debug("Checking for active tasks to abort");
       List<ResolveTask> activeTasks = null;
-      for (MapEx<ResolveTask, ResolvedValueProducer> tasks : _specifications.values()) {
-        synchronized (tasks) {
-          for (ResolveTask task : (Set<ResolveTask>) tasks.keySet()) {
-            if (task.isActive()) {
-              if (activeTasks == null) {
-                activeTasks = new LinkedList<ResolveTask>();
-              }
-              activeTasks.add(task);
+      for (ConcurrentMap<ResolveTask, TaskEntry> tasks : _specifications.values()) {
+        for (TaskEntry entry : tasks.values()) {
+          final ResolveTask task = entry.getTask();
+          if (task.isActive()) {
+            if (activeTasks == null) {
+              activeTasks = new LinkedList<ResolveTask>();
             }
+            activeTasks.add(task);
           }
         }
       }
@@ -633,28 +664,24 @@ public final class DependencyGraphBuilder {
      * 
      * @param context the other context
      */
-    private synchronized void mergeThreadContext(final GraphBuildingContext context) {
-      if (_exceptions == null) {
-        _exceptions = new HashMap<ExceptionWrapper, ExceptionWrapper>();
-      }
+    private void mergeThreadContext(final GraphBuildingContext context) {
       if (context._exceptions != null) {
-        for (ExceptionWrapper exception : context._exceptions.keySet()) {
-          final ExceptionWrapper existing = _exceptions.get(exception);
-          if (existing != null) {
-            existing.incrementCount(exception.getCount());
-          } else {
-            _exceptions.put(exception, exception);
-          }
-        }
+        collateExceptions(context._exceptions);
       }
     }
 
-    private synchronized Map<Throwable, Integer> getExceptions() {
-      if (_exceptions == null) {
-        return Collections.emptyMap();
+    private void collateExceptions(final Map<ExceptionWrapper, ExceptionWrapper> exceptions) {
+      for (ExceptionWrapper exception : exceptions.keySet()) {
+        final ExceptionWrapper existing = _collatedExceptions.putIfAbsent(exception, exception);
+        if (existing != null) {
+          existing.incrementCount(exception.getCount());
+        }
       }
+    }
+
+    private Map<Throwable, Integer> getExceptions() {
       final Map<Throwable, Integer> result = new HashMap<Throwable, Integer>();
-      for (ExceptionWrapper exception : _exceptions.keySet()) {
+      for (ExceptionWrapper exception : _collatedExceptions.keySet()) {
         result.put(exception.getException(), exception.getCount());
       }
       return result;
@@ -665,18 +692,13 @@ public final class DependencyGraphBuilder {
         return;
       }
       int count = 0;
-      for (Map.Entry<ValueRequirement, Map<ResolveTask, ResolveTask>> requirements : _requirements.entrySet()) {
-        final Map<ResolveTask, ResolveTask> entries = requirements.getValue();
-        synchronized (entries) {
-          count += entries.size();
-        }
+      for (ConcurrentMap<ResolveTask, TaskEntry> entries : _requirements.values()) {
+        count += entries.size();
       }
       s_loggerContext.info("Requirements cache = {} tasks for {} requirements", count, _requirements.size());
       count = 0;
-      for (MapEx<ResolveTask, ResolvedValueProducer> entries : _specifications.values()) {
-        synchronized (entries) {
-          count += entries.size();
-        }
+      for (ConcurrentMap<ResolveTask, TaskEntry> entries : _specifications.values()) {
+        count += entries.size();
       }
       s_loggerContext.info("Specifications cache = {} tasks for {} specifications", count, _specifications.size());
       //final Runtime rt = Runtime.getRuntime();
@@ -695,8 +717,10 @@ public final class DependencyGraphBuilder {
 
   private final int _objectId = s_nextObjectId.incrementAndGet();
   private final AtomicInteger _activeJobCount = new AtomicInteger();
-  private final Set<Job> _activeJobs = new HashSet<Job>();
+  private final Set<Job> _activeJobs = Collections.newSetFromMap(new ConcurrentHashMap<Job, Boolean>());
+  // Work from the root context; each job thread queues the work it creates locally and steals from the others when idle
   private final Queue<ContextRunnable> _runQueue = new ConcurrentLinkedQueue<ContextRunnable>();
+  private final Collection<Deque<ContextRunnable>> _localRunQueues = new CopyOnWriteArrayList<Deque<ContextRunnable>>();
   private final Object _buildCompleteLock = new Object();
   private final GraphBuildingContext _context = new GraphBuildingContext();
   private final AtomicLong _completedSteps = new AtomicLong();
@@ -939,10 +963,17 @@ public final class DependencyGraphBuilder {
     }
   }
 
-  protected void addToRunQueue(final ContextRunnable runnable) {
+  protected void addToRunQueue(final GraphBuildingContext context, final ContextRunnable runnable) {
     s_loggerBuilder.debug("Queuing {}", runnable);
-    final boolean dontSpawn = _runQueue.isEmpty();
-    _runQueue.add(runnable);
+    final Deque<ContextRunnable> localRunQueue = context.getLocalRunQueue();
+    final boolean dontSpawn;
+    if (localRunQueue != null) {
+      dontSpawn = localRunQueue.isEmpty();
+      localRunQueue.addLast(runnable);
+    } else {
+      dontSpawn = _runQueue.isEmpty();
+      _runQueue.add(runnable);
+    }
     // Don't start construction jobs if the queue is empty or a sequential piece of work bounces between two threads (i.e. there
     // is already a background thread that is running the caller which can then execute the task it has just put into the run
     // queue). The moment the queue is non-empty, start a job if possible.
@@ -956,11 +987,9 @@ public final class DependencyGraphBuilder {
     int activeJobs = _activeJobCount.get();
     while (activeJobs < getMaxAdditionalThreads()) {
       if (_activeJobCount.compareAndSet(activeJobs, activeJobs + 1)) {
-        synchronized (_activeJobs) {
-          final Job job = createConstructionJob();
-          _activeJobs.add(job);
-          _executor.execute(job);
-        }
+        final Job job = createConstructionJob();
+        _activeJobs.add(job);
+        _executor.execute(job);
         return true;
       }
       activeJobs = _activeJobCount.get();
@@ -968,27 +997,58 @@ public final class DependencyGraphBuilder {
     return false;
   }
 
+  /**
+   * Tests whether the shared run queue and the run queues local to each job are all empty.
+   * 
+   * @return true if there are no runnable tasks, false otherwise
+   */
+  private boolean isRunQueueEmpty() {
+    if (!_runQueue.isEmpty()) {
+      return false;
+    }
+    for (Deque<ContextRunnable> localRunQueue : _localRunQueues) {
+      if (!localRunQueue.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Job running thread.
    */
   protected final class Job implements Runnable, Cancelable {
 
     private final int _objectId = s_nextJobId.incrementAndGet();
+    private final Deque<ContextRunnable> _localRunQueue = new LinkedBlockingDeque<ContextRunnable>();
     private volatile boolean _poison;
 
     private Job() {
     }
 
+    /**
+     * Moves any work left in the local run queue, for example after an exception or cancellation, to the shared
+     * queue so that other threads can find it after this one has stopped.
+     */
+    private void releaseLocalRunQueue() {
+      ContextRunnable runnable = _localRunQueue.pollFirst();
+      while (runnable != null) {
+        _runQueue.add(runnable);
+        runnable = _localRunQueue.pollFirst();
+      }
+    }
+
     @Override
     public void run() {
       s_loggerBuilder.info("Building job {} started for {}", _objectId, DependencyGraphBuilder.this);
+      _localRunQueues.add(_localRunQueue);
       boolean jobsLeftToRun;
       int completed = 0;
       do {
         s_loggerBuilder.info("Build fraction = {}", estimateBuildFraction());
         // Create a new context for each logical block so that an exception from the build won't leave us with
         // an inconsistent context.
-        final GraphBuildingContext context = new GraphBuildingContext(getContext());
+        final GraphBuildingContext context = new GraphBuildingContext(getContext(), _localRunQueue);
         do {
           try {
             jobsLeftToRun = buildGraph(context);
@@ -1002,13 +1062,14 @@ public final class DependencyGraphBuilder {
             jobsLeftToRun = false;
           }
         } while (!_poison && jobsLeftToRun);
+        releaseLocalRunQueue();
         s_loggerBuilder.debug("Merging thread context");
         getContext().mergeThreadContext(context);
         s_loggerBuilder.debug("Building job stopping");
         int activeJobs = _activeJobCount.decrementAndGet();
         // Watch for late arrivals in the run queue; they might have seen the old value
         // of activeJobs and not started anything.
-        while (!_runQueue.isEmpty() && (activeJobs < getMaxAdditionalThreads()) && !_poison) {
+        while (!isRunQueueEmpty() && (activeJobs < getMaxAdditionalThreads()) && !_poison) {
           if (_activeJobCount.compareAndSet(activeJobs, activeJobs + 1)) {
             s_loggerBuilder.debug("Building job resuming");
             // Note the log messages may go from "resuming" to stopped if the poison arrives between
@@ -1020,13 +1081,10 @@ public final class DependencyGraphBuilder {
           activeJobs = _activeJobCount.get();
         }
       } while (!_poison && jobsLeftToRun);
+      _localRunQueues.remove(_localRunQueue);
       synchronized (_buildCompleteLock) {
-        final boolean abortLoops;
-        synchronized (_activeJobs) {
-          _activeJobs.remove(this);
-          abortLoops = _activeJobs.isEmpty() && _runQueue.isEmpty();
-        }
-        if (abortLoops) {
+        _activeJobs.remove(this);
+        if (_activeJobs.isEmpty() && isRunQueueEmpty()) {
           // Any tasks that are still active have created a reciprocal loop disjoint from the runnable
           // graph of tasks. Aborting them at this point is easier and possibly more efficient than
           // the overhead of trying to stop the loops forming in the first place.
@@ -1060,15 +1118,41 @@ public final class DependencyGraphBuilder {
    * @return true if there is more work still to do, false if all the work is done
    */
   protected boolean buildGraph(final GraphBuildingContext context) {
-    final ContextRunnable task = _runQueue.poll();
+    final Deque<ContextRunnable> localRunQueue = context.getLocalRunQueue();
+    ContextRunnable task = (localRunQueue != null) ? localRunQueue.pollFirst() : null;
     if (task == null) {
-      return false;
+      task = _runQueue.poll();
+      if (task == null) {
+        task = stealTask(localRunQueue);
+        if (task == null) {
+          return false;
+        }
+      }
     }
     task.run(context);
     _completedSteps.incrementAndGet();
     return true;
   }
 
+  /**
+   * Takes the oldest task from the local run queue of another job, the same end its owner takes from, so that work is
+   * stolen in the order it was queued.
+   * 
+   * @param localRunQueue the caller's own run queue, null if none
+   * @return the task, null if there is nothing to steal
+   */
+  private ContextRunnable stealTask(final Deque<ContextRunnable> localRunQueue) {
+    for (Deque<ContextRunnable> otherRunQueue : _localRunQueues) {
+      if (otherRunQueue != localRunQueue) {
+        final ContextRunnable task = otherRunQueue.pollFirst();
+        if (task != null) {
+          return task;
+        }
+      }
+    }
+    return null;
+  }
+
   /**
    * Tests if the graph has been built or if work is still required. Graphs are only built in the
    * background if additional threads is set to non-zero.
@@ -1077,9 +1161,7 @@ public final class DependencyGraphBuilder {
    */
   public boolean isGraphBuilt() {
     synchronized (_buildCompleteLock) {
-      synchronized (_activeJobs) {
-        return _activeJobs.isEmpty() && _runQueue.isEmpty();
-      }
+      return _activeJobs.isEmpty() && isRunQueueEmpty();
     }
   }
 
@@ -1109,11 +1191,12 @@ public final class DependencyGraphBuilder {
    */
   public void cancelActiveBuild() {
     setMaxAdditionalThreads(0);
-    synchronized (_activeJobs) {
-      for (Job job : _activeJobs) {
-        job.cancel(true);
-      }
-      _activeJobs.clear();
+    // Remove each job as it is cancelled; one registered concurrently is either cancelled here or left active
+    final Iterator<Job> itr = _activeJobs.iterator();
+    while (itr.hasNext()) {
+      final Job job = itr.next();
+      itr.remove();
+      job.cancel(true);
     }
   }
 
@@ -1122,12 +1205,11 @@ public final class DependencyGraphBuilder {
    * will be started. This is called when the number of background threads is changed.
    */
   protected void startBackgroundBuild() {
-    if (_runQueue.isEmpty()) {
+    if (isRunQueueEmpty()) {
       s_loggerBuilder.info("No pending runnable tasks for background building");
     } else {
-      final Iterator<ContextRunnable> itr = _runQueue.iterator();
-      while (itr.hasNext() && startBackgroundConstructionJob()) {
-        itr.next();
+      while (startBackgroundConstructionJob() && !isRunQueueEmpty()) {
+        continue;
       }
     }
   }
@@ -1182,15 +1264,11 @@ public final class DependencyGraphBuilder {
       s_loggerBuilder.info("Building dependency graph");
       do {
         final Job job = createConstructionJob();
-        synchronized (_activeJobs) {
-          _activeJobs.add(job);
-        }
+        _activeJobs.add(job);
         job.run();
-        synchronized (_activeJobs) {
-          if (!_runQueue.isEmpty()) {
-            // more jobs in the queue so keep going
-            continue;
-          }
+        if (!isRunQueueEmpty()) {
+          // more jobs in the queue so keep going
+          continue;
         }
         if (allowBackgroundContinuation) {
           // ... but nothing in the queue for us so take a nap
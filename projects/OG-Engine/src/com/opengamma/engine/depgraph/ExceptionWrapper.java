@@ -6,6 +6,7 @@
 package com.opengamma.engine.depgraph;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.ObjectUtils;
 
@@ -20,7 +21,7 @@ import org.apache.commons.lang.ObjectUtils;
   private final String _message;
   private final StackTraceElement _topStackFrame;
   private final ExceptionWrapper _cause;
-  private int _count;
+  private final AtomicInteger _count = new AtomicInteger(1);
 
   private ExceptionWrapper(final Throwable exception, final ExceptionWrapper cause) {
     _exception = exception;
@@ -32,7 +33,6 @@ import org.apache.commons.lang.ObjectUtils;
       _topStackFrame = null;
     }
     _cause = cause;
-    _count = 1;
   }
 
   /**
@@ -64,15 +64,15 @@ import org.apache.commons.lang.ObjectUtils;
   }
 
   public int getCount() {
-    return _count;
+    return _count.get();
   }
 
   public void incrementCount() {
-    _count++;
+    _count.incrementAndGet();
   }
 
   public void incrementCount(final int amount) {
-    _count += amount;
+    _count.addAndGet(amount);
   }
 
   @Override
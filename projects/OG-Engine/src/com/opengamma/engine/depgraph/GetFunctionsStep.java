@@ -72,6 +72,15 @@ import com.opengamma.util.tuple.Pair;
       _refCount++;
     }
 
+    @Override
+    public synchronized boolean tryAddRef() {
+      if (_refCount == 0) {
+        return false;
+      }
+      _refCount++;
+      return true;
+    }
+
     @Override
     public synchronized int release(final GraphBuildingContext context) {
       assert _refCount > 0;
@@ -15,6 +15,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
@@ -49,10 +51,11 @@ import com.opengamma.util.tuple.Pair;
   }
 
   private final Map<ValueSpecification, DependencyNode> _spec2Node = new HashMap<ValueSpecification, DependencyNode>();
-  private final Map<ParameterizedFunction, Map<ComputationTarget, Set<DependencyNodeProducer>>> _func2target2nodes =
-      new HashMap<ParameterizedFunction, Map<ComputationTarget, Set<DependencyNodeProducer>>>();
+  private final ConcurrentMap<ParameterizedFunction, ConcurrentMap<ComputationTarget, Set<DependencyNodeProducer>>> _func2target2nodes =
+      new ConcurrentHashMap<ParameterizedFunction, ConcurrentMap<ComputationTarget, Set<DependencyNodeProducer>>>();
   private final Collection<DependencyNode> _graphNodes = new ArrayList<DependencyNode>();
   private final Map<ValueRequirement, ValueSpecification> _resolvedValues = new HashMap<ValueRequirement, ValueSpecification>();
+  private final ConcurrentMap<ValueSpecification, PublishNode> _terminalNodes = new ConcurrentHashMap<ValueSpecification, PublishNode>();
   private ResolutionFailureVisitor<?> _failureVisitor;
 
   public GetTerminalValuesCallback(final ResolutionFailureVisitor<?> failureVisitor) {
@@ -78,16 +81,22 @@ import com.opengamma.util.tuple.Pair;
     }
   }
 
-  private synchronized Set<DependencyNodeProducer> getOrCreateNodes(final ParameterizedFunction function, final ComputationTarget target) {
-    Map<ComputationTarget, Set<DependencyNodeProducer>> target2nodes = _func2target2nodes.get(function);
+  private Set<DependencyNodeProducer> getOrCreateNodes(final ParameterizedFunction function, final ComputationTarget target) {
+    ConcurrentMap<ComputationTarget, Set<DependencyNodeProducer>> target2nodes = _func2target2nodes.get(function);
     if (target2nodes == null) {
-      target2nodes = new HashMap<ComputationTarget, Set<DependencyNodeProducer>>();
-      _func2target2nodes.put(function, target2nodes);
+      target2nodes = new ConcurrentHashMap<ComputationTarget, Set<DependencyNodeProducer>>();
+      final ConcurrentMap<ComputationTarget, Set<DependencyNodeProducer>> existing = _func2target2nodes.putIfAbsent(function, target2nodes);
+      if (existing != null) {
+        target2nodes = existing;
+      }
     }
     Set<DependencyNodeProducer> nodes = target2nodes.get(target);
     if (nodes == null) {
       nodes = new HashSet<DependencyNodeProducer>();
-      target2nodes.put(target, nodes);
+      final Set<DependencyNodeProducer> existing = target2nodes.putIfAbsent(target, nodes);
+      if (existing != null) {
+        nodes = existing;
+      }
     }
     return nodes;
   }
@@ -524,11 +533,16 @@ import com.opengamma.util.tuple.Pair;
     }
   }
 
+  /**
+   * Adds the node producing a terminal value to the graph set. Only the first terminal value to resolve to a given
+   * specification creates a node for it; any others resolving to the same specification wait for that node rather
+   * than holding a lock while the node and its inputs are found.
+   */
   @Override
-  public synchronized void resolved(final GraphBuildingContext context, final ValueRequirement valueRequirement, final ResolvedValue resolvedValue, final ResolutionPump pump) {
+  public void resolved(final GraphBuildingContext context, final ValueRequirement valueRequirement, final ResolvedValue resolvedValue, final ResolutionPump pump) {
     s_logger.info("Resolved {} to {}", valueRequirement, resolvedValue.getValueSpecification());
     context.close(pump);
-    getOrCreateNode(context, valueRequirement, resolvedValue, Collections.<ValueSpecification>emptySet(), new DependencyNodeCallback() {
+    final DependencyNodeCallback terminal = new DependencyNodeCallback() {
 
       @Override
       public void node(final DependencyNode node) {
@@ -543,7 +557,26 @@ import com.opengamma.util.tuple.Pair;
         }
       }
 
-    });
+    };
+    final PublishNode newProduction = new PublishNode(terminal);
+    final PublishNode production = _terminalNodes.putIfAbsent(resolvedValue.getValueSpecification(), newProduction);
+    if (production == null) {
+      getOrCreateNode(context, valueRequirement, resolvedValue, Collections.<ValueSpecification>emptySet(), newProduction);
+    } else {
+      production.getNode(new DependencyNodeCallback() {
+
+        @Override
+        public void node(final DependencyNode node) {
+          if (node != null) {
+            terminal.node(node);
+          } else {
+            // The first resolution couldn't create a node; try with this one
+            getOrCreateNode(context, valueRequirement, resolvedValue, Collections.<ValueSpecification>emptySet(), terminal);
+          }
+        }
+
+      });
+    }
   }
 
   @Override
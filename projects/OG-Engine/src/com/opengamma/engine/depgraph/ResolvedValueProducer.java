@@ -34,6 +34,13 @@ import com.opengamma.engine.depgraph.DependencyGraphBuilder.GraphBuildingContext
    */
   void addRef();
 
+  /**
+   * Increment the reference count on the object unless it has already been released to zero.
+   * 
+   * @return true if the count was incremented, false if the object has been released
+   */
+  boolean tryAddRef();
+
   /**
    * Decrement the reference count on the object. An implementation may perform cleanup actions on the count reaching zero.
    * 
@@ -214,6 +214,19 @@ public class CompiledFunctionService {
     return _reinitializingFunctionRequirements;
   }
 
+  /**
+   * Returns the unique identifiers of the objects, such as configuration documents, that functions read during their
+   * most recent initialization and requested re-initialization on changes to.
+   * 
+   * @return the unique identifiers, not null
+   */
+  public synchronized Set<UniqueId> getReinitializingFunctionRequirements() {
+    if (_reinitializingFunctionRequirements == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(new HashSet<UniqueId>(_reinitializingFunctionRequirements));
+  }
+
   /**
    * Returns the underlying (raw) function repository. Definitions in the repository may or may not be properly initialized. If
    * functions are needed that can be reliably used, use {@link #getInitializedFunctionRepository} instead.
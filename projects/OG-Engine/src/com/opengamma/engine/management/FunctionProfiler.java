@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.management;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An MBean implementation for those attributes and operations we wish to expose on a {@link com.opengamma.engine.view.calcnode.stats.FunctionProfiler}.
+ */
+public class FunctionProfiler implements FunctionProfilerMBean {
+
+  private final com.opengamma.engine.view.calcnode.stats.FunctionProfiler _profiler;
+
+  private final ObjectName _objectName;
+
+  /**
+   * Create a management FunctionProfiler
+   * 
+   * @param profiler  the profiler
+   * @param name  the name of the profiler, for example the identifier of the nodes it profiles
+   */
+  public FunctionProfiler(com.opengamma.engine.view.calcnode.stats.FunctionProfiler profiler, String name) {
+    ArgumentChecker.notNull(profiler, "profiler");
+    ArgumentChecker.notNull(name, "name");
+    _profiler = profiler;
+    _objectName = createObjectName(name);
+  }
+
+  /**
+   * Creates an object name using the scheme "com.opengamma:type=FunctionProfiler,name=<name>"
+   */
+  static ObjectName createObjectName(String name) {
+    try {
+      return new ObjectName("com.opengamma:type=FunctionProfiler,name=" + ObjectName.quote(name));
+    } catch (MalformedObjectNameException e) {
+      throw new OpenGammaRuntimeException("Invalid profiler name " + name, e);
+    }
+  }
+
+  @Override
+  public Integer getSamplingPeriod() {
+    return _profiler.getSamplingPeriod();
+  }
+
+  @Override
+  public void setSamplingPeriod(Integer samplingPeriod) {
+    _profiler.setSamplingPeriod(samplingPeriod);
+  }
+
+  @Override
+  public Long getSamples() {
+    return _profiler.getSamples();
+  }
+
+  @Override
+  public Integer getProfileCount() {
+    return _profiler.getProfileCount();
+  }
+
+  @Override
+  public String[] getHottestTargets(int count) {
+    List<com.opengamma.engine.view.calcnode.stats.FunctionProfiler.Profile> profiles = _profiler.getProfiles();
+    String[] result = new String[Math.max(0, Math.min(count, profiles.size()))];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = profiles.get(i).toString();
+    }
+    return result;
+  }
+
+  @Override
+  public String getFlameGraph() {
+    StringWriter writer = new StringWriter();
+    try {
+      _profiler.writeFlameGraph(writer);
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Can't write flame graph", e);
+    }
+    return writer.toString();
+  }
+
+  @Override
+  public void writeFlameGraph(String fileName) {
+    try {
+      Writer writer = new FileWriter(fileName);
+      try {
+        _profiler.writeFlameGraph(writer);
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Can't write flame graph to " + fileName, e);
+    }
+  }
+
+  @Override
+  public void reset() {
+    _profiler.reset();
+  }
+
+  /**
+   * Gets the objectName field.
+   * 
+   * @return the object name for this MBean
+   */
+  public ObjectName getObjectName() {
+    return _objectName;
+  }
+
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.management;
+
+/**
+ * A management bean for a FunctionProfiler
+ */
+public interface FunctionProfilerMBean {
+
+  Integer getSamplingPeriod();
+
+  void setSamplingPeriod(Integer samplingPeriod);
+
+  Long getSamples();
+
+  Integer getProfileCount();
+
+  String[] getHottestTargets(int count);
+
+  String getFlameGraph();
+
+  void writeFlameGraph(String fileName);
+
+  void reset();
+
+}
@@ -70,6 +70,28 @@ public final class ManagementService implements ViewProcessorEventListener {
     registry.init();
   }
 
+  /**
+   * Registers a function profiler in the MBeanServer.
+   *
+   * @param functionProfiler      the profiler shared by one or more calculation nodes
+   * @param name                  the name to register the profiler under
+   * @param mBeanServer           the MBeanServer to register the MBean to
+   */
+  public static void registerFunctionProfiler(com.opengamma.engine.view.calcnode.stats.FunctionProfiler functionProfiler, String name, MBeanServer mBeanServer) {
+    ArgumentChecker.notNull(mBeanServer, "MBeanServer");
+    com.opengamma.engine.management.FunctionProfiler profiler = new com.opengamma.engine.management.FunctionProfiler(functionProfiler, name);
+    try {
+      try {
+        mBeanServer.registerMBean(profiler, profiler.getObjectName());
+      } catch (InstanceAlreadyExistsException e) {
+        mBeanServer.unregisterMBean(profiler.getObjectName());
+        mBeanServer.registerMBean(profiler, profiler.getObjectName());
+      }
+    } catch (Exception e) {
+      throw new OpenGammaRuntimeException("MBean registration error", e);
+    }
+  }
+
   /**
    * Call to register the mbeans in the mbean server and start and do any other required initialisation.
    *
@@ -112,6 +112,23 @@ public class InMemoryLKVMarketDataProvider extends AbstractMarketDataProvider im
     valueChanged(requirement);
   }
   
+  /**
+   * Updates a number of values, notifying listeners of the changes together.
+   * 
+   * @param values  the new values, a null value removes the requirement, not null
+   */
+  public void addValues(Map<ValueRequirement, Object> values) {
+    ArgumentChecker.notNull(values, "values");
+    for (Map.Entry<ValueRequirement, Object> value : values.entrySet()) {
+      if (value.getValue() != null) {
+        _lastKnownValues.put(value.getKey(), value.getValue());
+      } else {
+        _lastKnownValues.remove(value.getKey());
+      }
+    }
+    valuesChanged(values.keySet());
+  }
+
   @Override
   public void addValue(ExternalId identifier, String valueName, Object value) {
     ValueRequirement valueRequirement = resolveRequirement(identifier, valueName);
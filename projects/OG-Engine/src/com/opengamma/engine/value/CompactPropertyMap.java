@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.value;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable map of property names to value sets held as parallel arrays sorted by property name.
+ * <p>
+ * This is the representation used for the properties of a {@link ValueProperties} instance. The names are held in a
+ * {@link CompactStringSet} which is returned as the key set, avoiding the entry objects and table of a hash map. The
+ * value sets are expected to be immutable and are stored as given. The hash code is calculated on construction and is
+ * compatible with other {@link Map} implementations.
+ */
+/* package */final class CompactPropertyMap extends AbstractMap<String, Set<String>> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final CompactStringSet _names;
+
+  private final Set<String>[] _values;
+
+  private final int _hashCode;
+
+  @SuppressWarnings("unchecked")
+  private CompactPropertyMap(final Map<String, Set<String>> properties) {
+    _names = CompactStringSet.ofArray(properties.keySet().toArray(new String[properties.size()]));
+    _values = new Set[_names.size()];
+    int hashCode = 0;
+    for (int i = 0; i < _values.length; i++) {
+      final String name = _names.get(i);
+      final Set<String> values = properties.get(name);
+      _values[i] = values;
+      hashCode += name.hashCode() ^ values.hashCode();
+    }
+    _hashCode = hashCode;
+  }
+
+  /**
+   * Returns an immutable copy of the given map. The empty map and singleton maps use the standard implementations from
+   * {@link Collections}.
+   *
+   * @param properties the properties to copy, not null, value sets should be immutable
+   * @return the immutable map, not null
+   */
+  public static Map<String, Set<String>> of(final Map<String, Set<String>> properties) {
+    switch (properties.size()) {
+      case 0:
+        return Collections.emptyMap();
+      case 1: {
+        final Map.Entry<String, Set<String>> entry = properties.entrySet().iterator().next();
+        return Collections.singletonMap(ValueRequirement.getInterned(entry.getKey()), entry.getValue());
+      }
+      default:
+        if (properties instanceof CompactPropertyMap) {
+          return properties;
+        }
+        return new CompactPropertyMap(properties);
+    }
+  }
+
+  @Override
+  public Set<String> get(final Object key) {
+    final int index = _names.indexOf(key);
+    return (index >= 0) ? _values[index] : null;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return _names.indexOf(key) >= 0;
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return _names;
+  }
+
+  @Override
+  public int size() {
+    return _values.length;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Set<String>>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Set<String>>>() {
+
+      @Override
+      public Iterator<Map.Entry<String, Set<String>>> iterator() {
+        return new Iterator<Map.Entry<String, Set<String>>>() {
+
+          private int _index;
+
+          @Override
+          public boolean hasNext() {
+            return _index < _values.length;
+          }
+
+          @Override
+          public Map.Entry<String, Set<String>> next() {
+            if (_index >= _values.length) {
+              throw new NoSuchElementException();
+            }
+            final int index = _index++;
+            return new AbstractMap.SimpleImmutableEntry<String, Set<String>>(_names.get(index), _values[index]);
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+
+        };
+      }
+
+      @Override
+      public int size() {
+        return _values.length;
+      }
+
+    };
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof CompactPropertyMap) {
+      final CompactPropertyMap other = (CompactPropertyMap) o;
+      return (_hashCode == other._hashCode) && _names.equals(other._names) && Arrays.equals(_values, other._values);
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return _hashCode;
+  }
+
+}
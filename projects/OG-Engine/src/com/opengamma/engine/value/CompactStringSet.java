@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.value;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Immutable set of strings held as a sorted array of interned values.
+ * <p>
+ * This is the representation used for the property names and values of a {@link ValueProperties} instance. Compared to
+ * a hash set it needs no per-element entry objects. The values are interned, and the sets returned by {@link #of} are
+ * canonical instances so that property sets with common values share them. Property values are open ended, for example
+ * function identifiers or curve names, so the strings and sets are interned weakly and dropped once no longer
+ * referenced. The hash code is calculated on construction and is compatible with other {@link Set} implementations.
+ */
+/* package */final class CompactStringSet extends AbstractSet<String> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Interner<Set<String>> s_interned = Interners.newWeakInterner();
+
+  private static final Interner<String> s_internedValues = Interners.newWeakInterner();
+
+  private final String[] _values;
+
+  private final int _hashCode;
+
+  private CompactStringSet(final String[] values) {
+    _values = values;
+    int hashCode = 0;
+    for (String value : values) {
+      hashCode += value.hashCode();
+    }
+    _hashCode = hashCode;
+  }
+
+  /**
+   * Returns the canonical immutable set of the given values. The empty set and singleton sets use the standard
+   * implementations from {@link Collections}.
+   *
+   * @param values the values, not null and not containing null
+   * @return the immutable set, not null
+   */
+  public static Set<String> of(final Collection<String> values) {
+    switch (values.size()) {
+      case 0:
+        return Collections.emptySet();
+      case 1:
+        return s_interned.intern(Collections.singleton(intern(values.iterator().next())));
+      default:
+        return s_interned.intern(ofArray(values.toArray(new String[values.size()])));
+    }
+  }
+
+  /**
+   * Returns the canonical immutable set containing a single value.
+   *
+   * @param value the value, not null
+   * @return the immutable set, not null
+   */
+  public static Set<String> of(final String value) {
+    return s_interned.intern(Collections.singleton(intern(value)));
+  }
+
+  /**
+   * Returns an immutable set of at least two values, taking ownership of the array.
+   *
+   * @param values the values, not null and not containing null
+   * @return the immutable set, not null
+   */
+  /* package */static CompactStringSet ofArray(final String[] values) {
+    Arrays.sort(values);
+    int count = 0;
+    for (int i = 0; i < values.length; i++) {
+      if ((count == 0) || !values[count - 1].equals(values[i])) {
+        values[count++] = intern(values[i]);
+      }
+    }
+    return new CompactStringSet((count == values.length) ? values : Arrays.copyOf(values, count));
+  }
+
+  /**
+   * Returns the canonical instance of a value.
+   *
+   * @param value the value, not null
+   * @return the canonical value, not null
+   */
+  /* package */static String intern(final String value) {
+    return s_internedValues.intern(value);
+  }
+
+  /**
+   * Returns the position of the value in the sorted array.
+   *
+   * @param value the value to search for
+   * @return the index of the value, or negative if it is not in the set
+   */
+  /* package */int indexOf(final Object value) {
+    if (!(value instanceof String)) {
+      return -1;
+    }
+    // Values are interned, so check for the common case of an identical instance before comparing the strings
+    for (int i = 0; i < _values.length; i++) {
+      if (_values[i] == value) {
+        return i;
+      }
+    }
+    return Arrays.binarySearch(_values, (String) value);
+  }
+
+  /* package */String get(final int index) {
+    return _values[index];
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    return indexOf(o) >= 0;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+
+      private int _index;
+
+      @Override
+      public boolean hasNext() {
+        return _index < _values.length;
+      }
+
+      @Override
+      public String next() {
+        if (_index >= _values.length) {
+          throw new NoSuchElementException();
+        }
+        return _values[_index++];
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+    };
+  }
+
+  @Override
+  public int size() {
+    return _values.length;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof CompactStringSet) {
+      final CompactStringSet other = (CompactStringSet) o;
+      return (_hashCode == other._hashCode) && Arrays.equals(_values, other._values);
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return _hashCode;
+  }
+
+  private Object readResolve() {
+    for (int i = 0; i < _values.length; i++) {
+      _values[i] = intern(_values[i]);
+    }
+    return s_interned.intern(this);
+  }
+
+}
@@ -12,6 +12,8 @@ import com.opengamma.util.PublicAPI;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.builder.ToStringStyle;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Set;
 
@@ -40,9 +42,13 @@ public class ComputedValue implements Serializable {
    */
   private final ValueSpecification _specification;
   /**
-   * The value itself.
+   * The value itself, null until a deferred value is decoded.
    */
-  private final Object _value;
+  private volatile Object _value;
+  /**
+   * The deferred value, null if the value was given on construction.
+   */
+  private final transient DeferredValue _deferredValue;
 
   private InvocationResult _result = null;
   private String _exceptionClass = null;
@@ -67,6 +73,25 @@ public class ComputedValue implements Serializable {
     }
     _specification = specification;
     _value = value;
+    _deferredValue = null;
+  }
+
+  private ComputedValue(ValueSpecification specification, DeferredValue deferredValue) {
+    ArgumentChecker.notNull(specification, "value specification");
+    ArgumentChecker.notNull(deferredValue, "deferredValue");
+    _specification = specification;
+    _deferredValue = deferredValue;
+  }
+
+  /**
+   * Creates a computed value which is only decoded when first accessed.
+   *
+   * @param specification  the specification of the value, not null
+   * @param deferredValue  the encoded value, not null
+   * @return the computed value, not null
+   */
+  public static ComputedValue deferred(ValueSpecification specification, DeferredValue deferredValue) {
+    return new ComputedValue(specification, deferredValue);
   }
 
   //-------------------------------------------------------------------------
@@ -86,7 +111,21 @@ public class ComputedValue implements Serializable {
    * @return the value, not null
    */
   public Object getValue() {
-    return _value;
+    Object value = _value;
+    if ((value == null) && (_deferredValue != null)) {
+      value = _deferredValue.getValue();
+      _value = value;
+    }
+    return value;
+  }
+
+  /**
+   * Gets the deferred form of the value, if it was created by {@link #deferred}.
+   *
+   * @return the deferred value, null if the value was given on construction
+   */
+  public DeferredValue getDeferredValue() {
+    return _deferredValue;
   }
 
   public InvocationResult getInvocationResult() {
@@ -145,6 +184,12 @@ public class ComputedValue implements Serializable {
     _nodeId = nodeId;
   }
 
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    // Decode any deferred value so that it is written with the object
+    getValue();
+    out.defaultWriteObject();
+  }
+
   //-------------------------------------------------------------------------
 
   @Override
@@ -161,7 +206,7 @@ public class ComputedValue implements Serializable {
           ObjectUtils.equals(_originalRequirements, other._originalRequirements) &&
           ObjectUtils.equals(_stackTrace, other._stackTrace) &&
           ObjectUtils.equals(_result, other._result) &&
-          ObjectUtils.equals(_value, other._value);
+          ObjectUtils.equals(getValue(), other.getValue());
     }
     return false;
   }
@@ -169,7 +214,8 @@ public class ComputedValue implements Serializable {
   @Override
   public int hashCode() {
     int result = _specification.hashCode();
-    result = 31 * result + (_value != null ? _value.hashCode() : 0);
+    final Object value = getValue();
+    result = 31 * result + (value != null ? value.hashCode() : 0);
     result = 31 * result + (_result != null ? _result.hashCode() : 0);
     result = 31 * result + (_exceptionClass != null ? _exceptionClass.hashCode() : 0);
     result = 31 * result + (_exceptionMsg != null ? _exceptionMsg.hashCode() : 0);
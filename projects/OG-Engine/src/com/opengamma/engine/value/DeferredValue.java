@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.value;
+
+/**
+ * An encoded value which is only decoded when it is accessed.
+ * <p>
+ * Result models can hold large numbers of values of which a client only ever looks at a few, so the engine
+ * puts values into them in their encoded form. See {@link ComputedValue#deferred}.
+ */
+public interface DeferredValue {
+
+  /**
+   * Decodes the value. This may be called more than once.
+   *
+   * @return the value
+   */
+  Object getValue();
+
+  /**
+   * Tests whether another deferred value has the same encoded form, without decoding either value. Values with the
+   * same encoded form are equal; values with different encoded forms may still be equal.
+   *
+   * @param other the other value, not null
+   * @return true if the encoded forms are the same, false if they differ or can't be compared
+   */
+  boolean isSameEncoding(DeferredValue other);
+
+}
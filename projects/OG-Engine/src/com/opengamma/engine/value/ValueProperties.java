@@ -14,13 +14,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Sets;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.PublicAPI;
@@ -40,6 +41,12 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
    */
   private static final long serialVersionUID = 1L;
 
+  /**
+   * The canonical instances of the finite property sets. Compiled dependency graphs contain a large number of
+   * value specifications and requirements whose properties are equal, so these share a single instance.
+   */
+  private static final Interner<ValueProperties> s_interned = Interners.newWeakInterner();
+
   /**
    * Builder pattern for constructing {@link ValueProperties} objects.
    */
@@ -154,14 +161,14 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
       ArgumentChecker.notNull(propertyName, "propertyName");
       ArgumentChecker.notNull(propertyValue, "propertyValue");
       propertyName = ValueRequirement.getInterned(propertyName);
-      final Set<String> previous = _properties.put(propertyName, Collections.singleton(propertyValue));
+      final Set<String> previous = _properties.put(propertyName, CompactStringSet.of(propertyValue));
       if (previous != null) {
         if (previous.isEmpty() || previous.contains(propertyValue)) {
           _properties.put(propertyName, previous);
         } else {
           final Set<String> replacement = new HashSet<String>(previous);
           replacement.add(propertyValue);
-          _properties.put(propertyName, Collections.unmodifiableSet(replacement));
+          _properties.put(propertyName, CompactStringSet.of(replacement));
         }
       }
       return this;
@@ -184,14 +191,14 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
         throw new IllegalArgumentException("propertyValues cannot contain null");
       }
       propertyName = ValueRequirement.getInterned(propertyName);
-      final Set<String> previous = _properties.put(propertyName, getUnmodifiableSet(propertyValues));
+      final Set<String> previous = _properties.put(propertyName, CompactStringSet.of(propertyValues));
       if (previous != null) {
         if (previous.isEmpty()) {
           _properties.put(propertyName, previous);
         } else {
           final Set<String> replacement = new HashSet<String>(previous);
           replacement.addAll(propertyValues);
-          _properties.put(propertyName, Collections.unmodifiableSet(replacement));
+          _properties.put(propertyName, CompactStringSet.of(replacement));
         }
       }
       return this;
@@ -235,42 +242,22 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
             _properties.put(optionalProperty, Collections.<String>emptySet());
           }
         }
-        return new ValuePropertiesImpl(getSmallMap(_properties), getUnmodifiableSet(_optional));
+        return ValuePropertiesImpl.of(_properties, _optional);
       } else {
         if (_properties.isEmpty()) {
           return EMPTY;
         }
-        return new ValuePropertiesImpl(getSmallMap(_properties), Collections.<String>emptySet());
-      }
-    }
-    
-    private Set<String> getUnmodifiableSet(final Collection<String> values) {
-      switch (values.size()) {
-        case 0:
-          return Collections.emptySet();
-        case 1:
-          return Collections.singleton(values.iterator().next());
-        default:
-          return Collections.unmodifiableSet((values instanceof Set) ? (Set<String>) values : new HashSet<String>(values));
-      }
-    }
-    
-    private static <K, V> Map<K, V> getSmallMap(Map<K, V> map) {
-      switch (map.size()) {
-        case 0:
-          return Collections.emptyMap();
-        case 1:
-          for (Entry<K, V> entry : map.entrySet()) {
-            return Collections.singletonMap(entry.getKey(), entry.getValue());
-          }
-        default:
-          return new HashMap<K, V>(map);
+        return ValuePropertiesImpl.of(_properties, null);
       }
     }
+
   }
 
   /**
    * A value properties implementation holding a set of properties.
+   * <p>
+   * The property names and values are held in compact, sorted, array based structures using interned strings. Instances
+   * are only created by {@link #of}, or when deserialized, so that equal property sets share a canonical instance.
    */
   public static final class ValuePropertiesImpl extends ValueProperties {
 
@@ -306,6 +293,21 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
       _optional = optional;
     }
 
+    /**
+     * Returns the canonical instance for a set of properties.
+     * 
+     * @param properties  the required properties, not null, value sets should be immutable
+     * @param optional  the optional properties, null for none
+     * @return the property set, not null
+     */
+    private static ValueProperties of(final Map<String, Set<String>> properties, final Set<String> optional) {
+      return s_interned.intern(new ValuePropertiesImpl(CompactPropertyMap.of(properties), (optional != null) ? CompactStringSet.of(optional) : Collections.<String>emptySet()));
+    }
+
+    private Object readResolve() {
+      return s_interned.intern(new ValuePropertiesImpl(CompactPropertyMap.of(_properties), CompactStringSet.of(_optional)));
+    }
+
     @Override
     public Builder copy() {
       return new BuilderImpl(_properties, _optional);
@@ -441,7 +443,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
           final Set<String> intersection = Sets.intersection(property.getValue(), available);
           // An empty intersection means no resulting property
           if (!intersection.isEmpty()) {
-            composed.put(property.getKey(), intersection);
+            composed.put(property.getKey(), CompactStringSet.of(intersection));
           }
           continue;
         }
@@ -450,7 +452,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
             final Set<String> intersection = Sets.intersection(property.getValue(), available);
             // An empty intersection means no resulting property
             if (!intersection.isEmpty()) {
-              composed.put(property.getKey(), intersection);
+              composed.put(property.getKey(), CompactStringSet.of(intersection));
             }
             continue nextProperty;
           }
@@ -466,7 +468,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
           }
         }
       }
-      return new ValuePropertiesImpl(Collections.unmodifiableMap(composed), (optional != null) ? Collections.unmodifiableSet(optional) : Collections.<String>emptySet());
+      return of(composed, optional);
     }
 
     @Override
@@ -482,7 +484,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
           different = true;
           continue;
         }
-        final Set<String> commonValues;
+        Set<String> commonValues;
         if (otherValues.isEmpty()) {
           // Other set is wild-card, so take our values
           commonValues = property.getValue();
@@ -503,6 +505,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
             // No common values
             continue;
           }
+          commonValues = CompactStringSet.of(commonValues);
         }
         intersection.put(property.getKey(), commonValues);
         // Preserve least optionality
@@ -521,7 +524,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
         return EMPTY;
       } else {
         if (different) {
-          return new ValuePropertiesImpl(Collections.unmodifiableMap(intersection), (optional != null) ? Collections.unmodifiableSet(optional) : Collections.<String>emptySet());
+          return of(intersection, optional);
         } else {
           return this;
         }
@@ -547,6 +550,10 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
         return false;
       }
       final ValuePropertiesImpl other = (ValuePropertiesImpl) o;
+      // Equal property sets are normally the same canonical instance, so only compare the content if the hashes match
+      if (_hashCodeValid && other._hashCodeValid && (_hashCode != other._hashCode)) {
+        return false;
+      }
       return _properties.equals(other._properties) && ObjectUtils.equals(_optional, other._optional);
     }
 
@@ -1021,7 +1028,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
         if (other._optional.isEmpty()) {
           return properties;
         } else {
-          return new ValuePropertiesImpl(other._properties, Collections.<String>emptySet());
+          return ValuePropertiesImpl.of(other._properties, null);
         }
       } else {
         return properties;
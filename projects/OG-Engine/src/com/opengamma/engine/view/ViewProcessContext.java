@@ -18,9 +18,11 @@ import com.opengamma.engine.marketdata.resolver.MarketDataProviderResolver;
 import com.opengamma.engine.marketdata.resolver.MarketDataProviderResolverWithOverride;
 import com.opengamma.engine.view.cache.ViewComputationCacheSource;
 import com.opengamma.engine.view.calc.DependencyGraphExecutorFactory;
+import com.opengamma.engine.view.calc.SharedExecutionCache;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGathererProvider;
 import com.opengamma.engine.view.calcnode.JobDispatcher;
 import com.opengamma.engine.view.calcnode.ViewProcessorQueryReceiver;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionStore;
 import com.opengamma.engine.view.compilation.ViewCompilationServices;
 import com.opengamma.engine.view.permission.ViewPermissionProvider;
 import com.opengamma.util.ArgumentChecker;
@@ -45,6 +47,8 @@ public class ViewProcessContext {
   private final MarketDataInjector _liveDataOverrideInjector;
   private final MarketDataProviderResolver _marketDataProviderResolver;
   private final OverrideOperationCompiler _overrideOperationCompiler;
+  private final CompiledViewDefinitionStore _compiledViewDefinitionStore;
+  private final SharedExecutionCache _sharedExecutionCache;
 
   public ViewProcessContext(
       ViewDefinitionRepository viewDefinitionRepository,
@@ -61,6 +65,49 @@ public class ViewProcessContext {
       DependencyGraphExecutorFactory<?> dependencyGraphExecutorFactory,
       GraphExecutorStatisticsGathererProvider graphExecutorStatisticsProvider,
       OverrideOperationCompiler overrideOperationCompiler) {
+    this(viewDefinitionRepository, viewPermissionProvider, marketDataProviderResolver, functionCompilationService, functionResolver, positionSource, securitySource,
+        computationTargetResolver, computationCacheSource, computationJobDispatcher, viewProcessorQueryReceiver, dependencyGraphExecutorFactory, graphExecutorStatisticsProvider,
+        overrideOperationCompiler, null);
+  }
+
+  public ViewProcessContext(
+      ViewDefinitionRepository viewDefinitionRepository,
+      ViewPermissionProvider viewPermissionProvider,
+      MarketDataProviderResolver marketDataProviderResolver,
+      CompiledFunctionService functionCompilationService,
+      FunctionResolver functionResolver,
+      PositionSource positionSource,
+      SecuritySource securitySource,
+      CachingComputationTargetResolver computationTargetResolver,
+      ViewComputationCacheSource computationCacheSource,
+      JobDispatcher computationJobDispatcher,
+      ViewProcessorQueryReceiver viewProcessorQueryReceiver,
+      DependencyGraphExecutorFactory<?> dependencyGraphExecutorFactory,
+      GraphExecutorStatisticsGathererProvider graphExecutorStatisticsProvider,
+      OverrideOperationCompiler overrideOperationCompiler,
+      CompiledViewDefinitionStore compiledViewDefinitionStore) {
+    this(viewDefinitionRepository, viewPermissionProvider, marketDataProviderResolver, functionCompilationService, functionResolver, positionSource, securitySource,
+        computationTargetResolver, computationCacheSource, computationJobDispatcher, viewProcessorQueryReceiver, dependencyGraphExecutorFactory, graphExecutorStatisticsProvider,
+        overrideOperationCompiler, compiledViewDefinitionStore, null);
+  }
+
+  public ViewProcessContext(
+      ViewDefinitionRepository viewDefinitionRepository,
+      ViewPermissionProvider viewPermissionProvider,
+      MarketDataProviderResolver marketDataProviderResolver,
+      CompiledFunctionService functionCompilationService,
+      FunctionResolver functionResolver,
+      PositionSource positionSource,
+      SecuritySource securitySource,
+      CachingComputationTargetResolver computationTargetResolver,
+      ViewComputationCacheSource computationCacheSource,
+      JobDispatcher computationJobDispatcher,
+      ViewProcessorQueryReceiver viewProcessorQueryReceiver,
+      DependencyGraphExecutorFactory<?> dependencyGraphExecutorFactory,
+      GraphExecutorStatisticsGathererProvider graphExecutorStatisticsProvider,
+      OverrideOperationCompiler overrideOperationCompiler,
+      CompiledViewDefinitionStore compiledViewDefinitionStore,
+      SharedExecutionCache sharedExecutionCache) {
     ArgumentChecker.notNull(viewDefinitionRepository, "viewDefinitionRepository");
     ArgumentChecker.notNull(viewPermissionProvider, "viewPermissionProvider");
     ArgumentChecker.notNull(marketDataProviderResolver, "marketDataSnapshotProviderResolver");
@@ -93,6 +140,8 @@ public class ViewProcessContext {
     _dependencyGraphExecutorFactory = dependencyGraphExecutorFactory;
     _graphExecutorStatisticsGathererProvider = graphExecutorStatisticsProvider;
     _overrideOperationCompiler = overrideOperationCompiler;
+    _compiledViewDefinitionStore = compiledViewDefinitionStore;
+    _sharedExecutionCache = sharedExecutionCache;
   }
 
   // -------------------------------------------------------------------------
@@ -217,6 +266,24 @@ public class ViewProcessContext {
     return _overrideOperationCompiler;
   }
 
+  /**
+   * Gets the persistent store of compiled view definitions.
+   * 
+   * @return the store, or null if compilations are not persisted
+   */
+  public CompiledViewDefinitionStore getCompiledViewDefinitionStore() {
+    return _compiledViewDefinitionStore;
+  }
+
+  /**
+   * Gets the cache through which cycles of different view processes share the results of identical nodes.
+   * 
+   * @return the cache, or null if each cycle executes all of its nodes
+   */
+  public SharedExecutionCache getSharedExecutionCache() {
+    return _sharedExecutionCache;
+  }
+
   // -------------------------------------------------------------------------
   /**
    * Uses this context to form a {@code ViewCompliationServices} instance.
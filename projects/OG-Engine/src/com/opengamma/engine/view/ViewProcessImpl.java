@@ -13,7 +13,9 @@ import com.opengamma.engine.view.calc.EngineResourceManagerInternal;
 import com.opengamma.engine.view.calc.SingleComputationCycle;
 import com.opengamma.engine.view.calc.ViewComputationJob;
 import com.opengamma.engine.view.calc.ViewCycle;
+import com.opengamma.engine.view.calc.ViewCycleTimeSource;
 import com.opengamma.engine.view.client.ViewDeltaResultCalculator;
+import com.opengamma.engine.view.client.merging.ViewResultFanOut;
 import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.engine.view.execution.ViewExecutionOptions;
@@ -72,9 +74,12 @@ public class ViewProcessImpl implements ViewProcessInternal, Lifecycle {
   private final AtomicReference<Pair<CompiledViewDefinitionWithGraphsImpl, MarketDataPermissionProvider>> _latestCompiledViewDefinition =
       new AtomicReference<Pair<CompiledViewDefinitionWithGraphsImpl, MarketDataPermissionProvider>>();
   private final AtomicReference<ViewComputationResultModel> _latestResult = new AtomicReference<ViewComputationResultModel>();
+  private final ViewResultFanOut _resultFanOut = new ViewResultFanOut();
 
   private ExecutorService _calcJobResultExecutorService = Executors.newSingleThreadExecutor();
 
+  private volatile ViewCycleTimeSource _cycleTimeSource = ViewCycleTimeSource.SYSTEM;
+
 
 
   /**
@@ -434,6 +439,26 @@ public class ViewProcessImpl implements ViewProcessInternal, Lifecycle {
     _computationThread = computationJobThread;
   }
 
+  /**
+   * Gets the source of time used to schedule computation cycles.
+   *
+   * @return the time source, not null
+   */
+  public ViewCycleTimeSource getCycleTimeSource() {
+    return _cycleTimeSource;
+  }
+
+  /**
+   * Sets the source of time used to schedule computation cycles. This takes effect when the next computation job is
+   * started, so should be set before attaching the first listener.
+   *
+   * @param cycleTimeSource  the time source, not null
+   */
+  public void setCycleTimeSource(ViewCycleTimeSource cycleTimeSource) {
+    ArgumentChecker.notNull(cycleTimeSource, "cycleTimeSource");
+    _cycleTimeSource = cycleTimeSource;
+  }
+
   private ViewProcessContext getProcessContext() {
     return _viewProcessContext;
   }
@@ -521,6 +546,15 @@ public class ViewProcessImpl implements ViewProcessInternal, Lifecycle {
     return _executionOptions;
   }
 
+  /**
+   * Gets the fan-out through which rate-limited clients of this process share their merged results.
+   * 
+   * @return the fan-out, not null
+   */
+  public ViewResultFanOut getResultFanOut() {
+    return _resultFanOut;
+  }
+
   /**
    * Starts the background job responsible for running computation cycles for this view process.
    */
@@ -538,7 +572,7 @@ public class ViewProcessImpl implements ViewProcessInternal, Lifecycle {
     }
 
     try {
-      ViewComputationJob computationJob = new ViewComputationJob(this, _executionOptions, getProcessContext(), getCycleManager());
+      ViewComputationJob computationJob = new ViewComputationJob(this, _executionOptions, getProcessContext(), getCycleManager(), getCycleTimeSource());
       Thread computationJobThread = new Thread(computationJob, "Computation job for " + this);
 
       setComputationJob(computationJob);
@@ -22,11 +22,13 @@ import com.opengamma.engine.marketdata.OverrideOperationCompiler;
 import com.opengamma.engine.marketdata.resolver.MarketDataProviderResolver;
 import com.opengamma.engine.view.cache.ViewComputationCacheSource;
 import com.opengamma.engine.view.calc.DependencyGraphExecutorFactory;
+import com.opengamma.engine.view.calc.SharedExecutionCache;
 import com.opengamma.engine.view.calc.ViewResultListenerFactory;
 import com.opengamma.engine.view.calc.stats.DiscardingGraphStatisticsGathererProvider;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGathererProvider;
 import com.opengamma.engine.view.calcnode.JobDispatcher;
 import com.opengamma.engine.view.calcnode.ViewProcessorQueryReceiver;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionStore;
 import com.opengamma.engine.view.permission.ViewPermissionProvider;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.SingletonFactoryBean;
@@ -56,6 +58,8 @@ public class ViewProcessorFactoryBean extends SingletonFactoryBean<ViewProcessor
   private ViewPermissionProvider _viewPermissionProvider;
   private OverrideOperationCompiler _overrideOperationCompiler = new DummyOverrideOperationCompiler();
   private ViewResultListenerFactory _batchViewClientFactory;
+  private CompiledViewDefinitionStore _compiledViewDefinitionStore;
+  private SharedExecutionCache _sharedExecutionCache;
 
   //-------------------------------------------------------------------------
   public String getName() {
@@ -186,6 +190,34 @@ public class ViewProcessorFactoryBean extends SingletonFactoryBean<ViewProcessor
     _overrideOperationCompiler = overrideOperationCompiler;
   }
 
+  public CompiledViewDefinitionStore getCompiledViewDefinitionStore() {
+    return _compiledViewDefinitionStore;
+  }
+
+  /**
+   * Sets the store used to persist compiled view definitions so that they can be restored, rather than compiled
+   * again, after a restart.
+   * 
+   * @param compiledViewDefinitionStore  the store, or null to compile every view definition
+   */
+  public void setCompiledViewDefinitionStore(final CompiledViewDefinitionStore compiledViewDefinitionStore) {
+    _compiledViewDefinitionStore = compiledViewDefinitionStore;
+  }
+
+  public SharedExecutionCache getSharedExecutionCache() {
+    return _sharedExecutionCache;
+  }
+
+  /**
+   * Sets the cache through which cycles of different view processes share the results of identical nodes, for
+   * example when many views differ in only a few columns.
+   * 
+   * @param sharedExecutionCache  the cache, or null for each cycle to execute all of its nodes
+   */
+  public void setSharedExecutionCache(final SharedExecutionCache sharedExecutionCache) {
+    _sharedExecutionCache = sharedExecutionCache;
+  }
+
   //-------------------------------------------------------------------------
   protected void checkInjectedInputs() {
     s_logger.debug("Checking injected inputs.");
@@ -211,7 +243,7 @@ public class ViewProcessorFactoryBean extends SingletonFactoryBean<ViewProcessor
   @Override
   public ViewProcessor createObject() {
     checkInjectedInputs();
-    return new ViewProcessorImpl(
+    final ViewProcessorImpl viewProcessor = new ViewProcessorImpl(
         getName(),
         getViewDefinitionRepository(),
         getNamedMarketDataSpecificationRepository(),
@@ -229,6 +261,9 @@ public class ViewProcessorFactoryBean extends SingletonFactoryBean<ViewProcessor
         getViewPermissionProvider(),
         getOverrideOperationCompiler(),
         getViewResultListenerFactory());
+    viewProcessor.setCompiledViewDefinitionStore(getCompiledViewDefinitionStore());
+    viewProcessor.setSharedExecutionCache(getSharedExecutionCache());
+    return viewProcessor;
   }
 
   public void setViewResultListenerFactory(ViewResultListenerFactory viewResultListenerFactory) {
@@ -8,7 +8,9 @@ package com.opengamma.engine.view;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
@@ -24,6 +26,8 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
 import com.opengamma.DataNotFoundException;
 import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.core.position.PositionSource;
@@ -31,26 +35,39 @@ import com.opengamma.core.security.SecuritySource;
 import com.opengamma.engine.CachingComputationTargetResolver;
 import com.opengamma.engine.function.CompiledFunctionService;
 import com.opengamma.engine.function.resolver.FunctionResolver;
+import com.opengamma.engine.marketdata.InMemoryLKVMarketDataProvider;
 import com.opengamma.engine.marketdata.MarketDataInjector;
 import com.opengamma.engine.marketdata.NamedMarketDataSpecificationRepository;
 import com.opengamma.engine.marketdata.OverrideOperationCompiler;
 import com.opengamma.engine.marketdata.resolver.MarketDataProviderResolver;
+import com.opengamma.engine.marketdata.resolver.SingleMarketDataProviderResolver;
+import com.opengamma.engine.marketdata.spec.MarketData;
 import com.opengamma.engine.view.cache.ViewComputationCacheSource;
 import com.opengamma.engine.view.calc.DependencyGraphExecutorFactory;
 import com.opengamma.engine.view.calc.EngineResourceManagerImpl;
 import com.opengamma.engine.view.calc.EngineResourceManagerInternal;
+import com.opengamma.engine.view.calc.SharedExecutionCache;
 import com.opengamma.engine.view.calc.SingleComputationCycle;
 import com.opengamma.engine.view.calc.ViewResultListenerFactory;
+import com.opengamma.engine.view.calc.VirtualViewCycleTimeSource;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGathererProvider;
+import com.opengamma.engine.view.calc.stats.TotallingGraphStatisticsGathererProvider;
 import com.opengamma.engine.view.calcnode.JobDispatcher;
 import com.opengamma.engine.view.calcnode.ViewProcessorQueryReceiver;
 import com.opengamma.engine.view.client.ViewClient;
 import com.opengamma.engine.view.client.ViewClientImpl;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionStore;
 import com.opengamma.engine.view.event.ViewProcessorEventListenerRegistry;
+import com.opengamma.engine.view.execution.ExecutionOptions;
+import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.engine.view.execution.ViewExecutionFlags;
 import com.opengamma.engine.view.execution.ViewExecutionOptions;
 import com.opengamma.engine.view.listener.ViewResultListener;
 import com.opengamma.engine.view.permission.ViewPermissionProvider;
+import com.opengamma.engine.view.replay.MarketDataTick;
+import com.opengamma.engine.view.replay.ReplayViewCycleExecutionSequence;
+import com.opengamma.engine.view.replay.ViewProcessReplay;
+import com.opengamma.engine.view.replay.ViewReplayCycle;
 import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
@@ -97,6 +114,8 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
   private final ViewPermissionProvider _viewPermissionProvider;
   private final OverrideOperationCompiler _overrideOperationCompiler;
   private final ViewResultListenerFactory _viewResultListenerFactory;
+  private CompiledViewDefinitionStore _compiledViewDefinitionStore;
+  private SharedExecutionCache _sharedExecutionCache;
 
   // State
   /**
@@ -172,6 +191,33 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
   public NamedMarketDataSpecificationRepository getNamedMarketDataSpecificationRepository() {
     return _namedMarketDataSpecificationRepository;
   }
+
+  /**
+   * Sets the store used to persist compiled view definitions. This affects view processes created after the call.
+   * 
+   * @param compiledViewDefinitionStore  the store, or null to compile every view definition
+   */
+  public void setCompiledViewDefinitionStore(CompiledViewDefinitionStore compiledViewDefinitionStore) {
+    _compiledViewDefinitionStore = compiledViewDefinitionStore;
+  }
+
+  public CompiledViewDefinitionStore getCompiledViewDefinitionStore() {
+    return _compiledViewDefinitionStore;
+  }
+
+  /**
+   * Sets the cache through which cycles of different view processes share the results of identical nodes. This
+   * affects view processes created after the call.
+   * 
+   * @param sharedExecutionCache  the cache, or null for each cycle to execute all of its nodes
+   */
+  public void setSharedExecutionCache(SharedExecutionCache sharedExecutionCache) {
+    _sharedExecutionCache = sharedExecutionCache;
+  }
+
+  public SharedExecutionCache getSharedExecutionCache() {
+    return _sharedExecutionCache;
+  }
   
   //-------------------------------------------------------------------------
   @Override
@@ -339,12 +385,15 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
   }
 
   private ViewProcessImpl createViewProcess(UniqueId definitionId, ViewExecutionOptions executionOptions, boolean privateProcess) {
+    return createViewProcess(definitionId, executionOptions, createViewProcessContext());
+  }
+
+  private ViewProcessImpl createViewProcess(UniqueId definitionId, ViewExecutionOptions executionOptions, ViewProcessContext viewProcessContext) {
     _processLock.lock();
     try {
       String idValue = generateIdValue(_processIdSource);
       UniqueId viewProcessId = UniqueId.of(PROCESS_SCHEME, idValue);
       ObjectId cycleObjectId = ObjectId.of(CYCLE_SCHEME, idValue);
-      ViewProcessContext viewProcessContext = createViewProcessContext();
       ViewProcessImpl viewProcess = new ViewProcessImpl(viewProcessId, definitionId, executionOptions, viewProcessContext, getViewCycleManager(), cycleObjectId);
 
       // If executing in batch mode then attach a special listener to write incoming results into the batch db
@@ -403,6 +452,48 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
     }
   }
   
+  //-------------------------------------------------------------------------
+  /**
+   * Replays a recorded market data stream through a new view process under virtual time.
+   * <p>
+   * The process takes its market data from an {@link InMemoryLKVMarketDataProvider} updated from the stream, and its
+   * cycle triggers see the time of the ticks rather than the wall-clock. Cycles run as fast as they can be executed,
+   * and a given stream always produces the same cycles, giving a repeatable, end-to-end measure of engine throughput.
+   * The process is removed when the replay completes.
+   * 
+   * @param viewDefinitionId  the id of the view definition, not null
+   * @param ticks  the ticks, in time order, not null
+   * @param flags  the execution flags controlling which triggers are active, not null. Running as fast as possible is
+   *               implied and must not be requested.
+   * @return the timings of each cycle executed, not null
+   */
+  public List<ViewReplayCycle> replay(UniqueId viewDefinitionId, Iterator<MarketDataTick> ticks, EnumSet<ViewExecutionFlags> flags) {
+    ArgumentChecker.notNull(viewDefinitionId, "viewDefinitionId");
+    ArgumentChecker.notNull(ticks, "ticks");
+    ArgumentChecker.notNull(flags, "flags");
+    ArgumentChecker.isFalse(flags.contains(ViewExecutionFlags.RUN_AS_FAST_AS_POSSIBLE), "A replay can't run cycles continuously");
+    PeekingIterator<MarketDataTick> tickIterator = Iterators.peekingIterator(ticks);
+    if (!tickIterator.hasNext()) {
+      return Collections.emptyList();
+    }
+    InMemoryLKVMarketDataProvider marketData = new InMemoryLKVMarketDataProvider(_securitySource);
+    TotallingGraphStatisticsGathererProvider statistics = new TotallingGraphStatisticsGathererProvider();
+    VirtualViewCycleTimeSource timeSource = new VirtualViewCycleTimeSource(tickIterator.peek().getTime());
+    ViewCycleExecutionOptions defaultCycleOptions = new ViewCycleExecutionOptions(MarketData.live());
+    ViewExecutionOptions executionOptions = ExecutionOptions.of(new ReplayViewCycleExecutionSequence(timeSource), defaultCycleOptions, flags);
+    ViewProcessImpl process = createViewProcess(viewDefinitionId, executionOptions,
+        createViewProcessContext(new SingleMarketDataProviderResolver(marketData), statistics));
+    try {
+      process.setCycleTimeSource(timeSource);
+      ViewProcessReplay replay = new ViewProcessReplay(process, marketData, timeSource, statistics.getStatisticsGatherer(process.getUniqueId()));
+      List<ViewReplayCycle> cycles = replay.run(tickIterator);
+      s_logger.info("Replayed {} cycles of view process {} with {} failures", new Object[] {cycles.size(), process, replay.getFailedCycles()});
+      return cycles;
+    } finally {
+      removeViewProcess(process);
+    }
+  }
+
   //-------------------------------------------------------------------------
   
   /**
@@ -546,10 +637,15 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
   }
   
   private ViewProcessContext createViewProcessContext() {
+    return createViewProcessContext(_marketDataProviderFactoryResolver, _graphExecutionStatistics);
+  }
+
+  private ViewProcessContext createViewProcessContext(MarketDataProviderResolver marketDataProviderResolver,
+      GraphExecutorStatisticsGathererProvider graphExecutionStatistics) {
     return new ViewProcessContext(
         _viewDefinitionRepository,
         _viewPermissionProvider,
-        _marketDataProviderFactoryResolver,
+        marketDataProviderResolver,
         _functionCompilationService,
         _functionResolver,
         _positionSource,
@@ -559,8 +655,10 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
         _computationJobDispatcher,
         _viewProcessorQueryReceiver,
         _dependencyGraphExecutorFactory,
-        _graphExecutionStatistics,
-        _overrideOperationCompiler);
+        graphExecutionStatistics,
+        _overrideOperationCompiler,
+        _compiledViewDefinitionStore,
+        _sharedExecutionCache);
   }
 
   private String generateIdValue(AtomicLong source) {
@@ -5,8 +5,12 @@
  */
 package com.opengamma.engine.view.cache;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterators;
+
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -19,8 +23,10 @@ public abstract class AbstractBinaryDataStore implements BinaryDataStore {
   }
 
   public static Map<Long, byte[]> get(final BinaryDataStore dataStore, final Collection<Long> identifiers) {
-    final Map<Long, byte[]> result = new HashMap<Long, byte[]>();
-    for (Long identifier : identifiers) {
+    final Long2ObjectOpenHashMap<byte[]> result = new Long2ObjectOpenHashMap<byte[]>(identifiers.size());
+    final LongIterator itr = LongIterators.asLongIterator(identifiers.iterator());
+    while (itr.hasNext()) {
+      final long identifier = itr.nextLong();
       final byte[] data = dataStore.get(identifier);
       if (data != null) {
         result.put(identifier, data);
@@ -34,8 +40,14 @@ public abstract class AbstractBinaryDataStore implements BinaryDataStore {
   }
 
   public static void put(final BinaryDataStore dataStore, final Map<Long, byte[]> data) {
-    for (Map.Entry<Long, byte[]> pair : data.entrySet()) {
-      dataStore.put(pair.getKey(), pair.getValue());
+    if (data instanceof Long2ObjectMap) {
+      for (Long2ObjectMap.Entry<byte[]> pair : ((Long2ObjectMap<byte[]>) data).long2ObjectEntrySet()) {
+        dataStore.put(pair.getLongKey(), pair.getValue());
+      }
+    } else {
+      for (Map.Entry<Long, byte[]> pair : data.entrySet()) {
+        dataStore.put(pair.getKey(), pair.getValue());
+      }
     }
   }
 
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Partial implementation of {@link BinaryValueCodec} with helper methods for encoding common field types.
+ * 
+ * @param <T> the type of value handled by the codec
+ */
+public abstract class AbstractBinaryValueCodec<T> implements BinaryValueCodec<T> {
+
+  /**
+   * Returns the encoded size of a string.
+   * 
+   * @param value the string, null for none
+   * @return the encoded size in bytes
+   */
+  protected static int getStringSize(final String value) {
+    return (value != null) ? 4 + value.length() * 2 : 4;
+  }
+
+  /**
+   * Writes a string.
+   * 
+   * @param buffer the buffer to write to, not null
+   * @param value the string, null for none
+   */
+  protected static void putString(final ByteBuffer buffer, final String value) {
+    if (value != null) {
+      final int length = value.length();
+      buffer.putInt(length);
+      for (int i = 0; i < length; i++) {
+        buffer.putChar(value.charAt(i));
+      }
+    } else {
+      buffer.putInt(-1);
+    }
+  }
+
+  /**
+   * Reads a string written by {@link #putString}.
+   * 
+   * @param buffer the buffer to read from, not null
+   * @return the string, null for none
+   */
+  protected static String getString(final ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    final char[] chars = new char[length];
+    buffer.asCharBuffer().get(chars);
+    buffer.position(buffer.position() + length * 2);
+    return new String(chars);
+  }
+
+  /**
+   * Returns the encoded size of an array of doubles.
+   * 
+   * @param values the values, not null
+   * @return the encoded size in bytes
+   */
+  protected static int getDoublesSize(final double[] values) {
+    return 4 + values.length * 8;
+  }
+
+  /**
+   * Writes an array of doubles.
+   * 
+   * @param buffer the buffer to write to, not null
+   * @param values the values, not null
+   */
+  protected static void putDoubles(final ByteBuffer buffer, final double[] values) {
+    buffer.putInt(values.length);
+    buffer.asDoubleBuffer().put(values);
+    buffer.position(buffer.position() + values.length * 8);
+  }
+
+  /**
+   * Reads an array of doubles written by {@link #putDoubles}.
+   * 
+   * @param buffer the buffer to read from, not null
+   * @return the values, not null
+   */
+  protected static double[] getDoubles(final ByteBuffer buffer) {
+    final double[] values = new double[buffer.getInt()];
+    buffer.asDoubleBuffer().get(values);
+    buffer.position(buffer.position() + values.length * 8);
+    return values;
+  }
+
+}
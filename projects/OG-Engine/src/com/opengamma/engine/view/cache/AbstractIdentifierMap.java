@@ -43,4 +43,26 @@ public abstract class AbstractIdentifierMap implements IdentifierMap {
     return specifications;
   }
 
+  /**
+   * Returns the identifiers for a number of specifications as an array, using the allocation free path of
+   * {@link ConcurrentIdentifierMap} when available.
+   * 
+   * @param map the identifier map to query, not null
+   * @param specifications the specifications to look up, not null
+   * @return the identifiers in the iteration order of {@code specifications}, not null
+   */
+  public static long[] getIdentifierArray(final IdentifierMap map, final Collection<ValueSpecification> specifications) {
+    final long[] identifiers = new long[specifications.size()];
+    if (map instanceof ConcurrentIdentifierMap) {
+      ((ConcurrentIdentifierMap) map).getIdentifiers(specifications, identifiers);
+    } else {
+      final Map<ValueSpecification, Long> identifierMap = map.getIdentifiers(specifications);
+      int i = 0;
+      for (ValueSpecification specification : specifications) {
+        identifiers[i++] = identifierMap.get(specification);
+      }
+    }
+    return identifiers;
+  }
+
 }
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes values of a specific type to a compact binary form for a {@link ViewComputationCache}, avoiding the
+ * construction of an intermediate Fudge message tree for common result types.
+ * <p>
+ * Codecs are registered with a {@link BinaryValueCodecRegistry}. Every process reading or writing the cache must
+ * register the same codecs under the same identifiers.
+ * 
+ * @param <T> the type of value handled by the codec
+ */
+public interface BinaryValueCodec<T> {
+
+  /**
+   * Returns the number of bytes needed to encode the value.
+   * 
+   * @param value the value to encode, not null
+   * @return the encoded size in bytes, or negative if this value cannot be encoded by the codec and the normal Fudge
+   *         serialization must be used
+   */
+  int getEncodedSize(T value);
+
+  /**
+   * Writes the encoded form of a value. Exactly the number of bytes returned by {@link #getEncodedSize} for the value
+   * must be written.
+   * 
+   * @param value the value to encode, not null
+   * @param buffer the buffer to write to, not null
+   */
+  void encode(T value, ByteBuffer buffer);
+
+  /**
+   * Reads a value from its encoded form.
+   * 
+   * @param buffer the buffer to read from, positioned at the start of the encoded value, not null
+   * @return the decoded value, not null
+   */
+  T decode(ByteBuffer buffer);
+
+}
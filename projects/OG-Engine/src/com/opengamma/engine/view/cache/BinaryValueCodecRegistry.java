@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Registry of {@link BinaryValueCodec} instances used by {@link DefaultViewComputationCache} to encode values.
+ * <p>
+ * A codec is registered for an exact value class; values of a sub-class, or of a class with no codec, are encoded by
+ * the normal Fudge serialization. The encoded form starts with the integer identifier the codec was registered with,
+ * so each process reading or writing a cache must register the same codecs with the same identifiers.
+ */
+public class BinaryValueCodecRegistry {
+
+  private static final int HEADER_SIZE = 4;
+
+  private static final class Registration {
+
+    private final int _id;
+    private final BinaryValueCodec<Object> _codec;
+
+    @SuppressWarnings("unchecked")
+    private Registration(final int id, final BinaryValueCodec<?> codec) {
+      _id = id;
+      _codec = (BinaryValueCodec<Object>) codec;
+    }
+
+  }
+
+  private final ConcurrentMap<Class<?>, Registration> _byClass = new ConcurrentHashMap<Class<?>, Registration>();
+  private final ConcurrentMap<Integer, Registration> _byId = new ConcurrentHashMap<Integer, Registration>();
+
+  /**
+   * Registers a codec for a value class.
+   * 
+   * @param <T> the value type
+   * @param id the identifier written with the encoded values
+   * @param valueClass the exact class of values to encode, not null
+   * @param codec the codec, not null
+   */
+  public <T> void register(final int id, final Class<T> valueClass, final BinaryValueCodec<T> codec) {
+    ArgumentChecker.notNull(valueClass, "valueClass");
+    ArgumentChecker.notNull(codec, "codec");
+    final Registration registration = new Registration(id, codec);
+    final Registration previous = _byId.putIfAbsent(id, registration);
+    if (previous != null) {
+      throw new IllegalArgumentException("Codec " + previous._codec + " already registered with identifier " + id);
+    }
+    _byClass.put(valueClass, registration);
+  }
+
+  /**
+   * Returns the codec registered for a value class.
+   * 
+   * @param valueClass the value class, not null
+   * @return the codec, or null if there is none
+   */
+  public BinaryValueCodec<?> getCodec(final Class<?> valueClass) {
+    final Registration registration = _byClass.get(valueClass);
+    return (registration != null) ? registration._codec : null;
+  }
+
+  /**
+   * Encodes a value if there is a codec registered for its class.
+   * 
+   * @param value the value to encode, not null
+   * @return the encoded value, or null if the value must be serialized with Fudge
+   */
+  public byte[] encode(final Object value) {
+    final Registration registration = _byClass.get(value.getClass());
+    if (registration == null) {
+      return null;
+    }
+    final int size = registration._codec.getEncodedSize(value);
+    if (size < 0) {
+      return null;
+    }
+    final byte[] data = new byte[HEADER_SIZE + size];
+    final ByteBuffer buffer = ByteBuffer.wrap(data);
+    buffer.putInt(registration._id);
+    registration._codec.encode(value, buffer);
+    if (buffer.hasRemaining()) {
+      throw new OpenGammaRuntimeException("Codec " + registration._codec + " wrote " + (buffer.position() - HEADER_SIZE) + " bytes, expected " + size);
+    }
+    return data;
+  }
+
+  /**
+   * Decodes a value produced by {@link #encode}.
+   * 
+   * @param data the encoded value, not null
+   * @return the decoded value, not null
+   */
+  public Object decode(final byte[] data) {
+    final ByteBuffer buffer = ByteBuffer.wrap(data);
+    final int id = buffer.getInt();
+    final Registration registration = _byId.get(id);
+    if (registration == null) {
+      throw new OpenGammaRuntimeException("No codec registered with identifier " + id);
+    }
+    return registration._codec.decode(buffer);
+  }
+
+}
@@ -61,12 +61,7 @@ public final class CacheSelectHint {
    */
   public void convertSpecifications(final IdentifierMap identifierMap) {
     if (_valueIdentifiers == null) {
-      final Collection<Long> identifiers = identifierMap.getIdentifiers(_valueSpecifications).values();
-      _valueIdentifiers = new long[identifiers.size()];
-      int i = 0;
-      for (Long identifier : identifiers) {
-        _valueIdentifiers[i++] = identifier;
-      }
+      _valueIdentifiers = AbstractIdentifierMap.getIdentifierArray(identifierMap, _valueSpecifications);
     }
   }
 
@@ -121,4 +121,17 @@ public class CachingFudgeMessageStore implements FudgeMessageStore {
     }
   }
 
+  @Override
+  public void prefetch(final Collection<Long> identifiers) {
+    final List<Long> missing = new ArrayList<Long>(identifiers.size());
+    for (Long identifier : identifiers) {
+      if (!getCache().isKeyInCache(identifier)) {
+        missing.add(identifier);
+      }
+    }
+    if (!missing.isEmpty()) {
+      getUnderlying().prefetch(missing);
+    }
+  }
+
 }
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.opengamma.OpenGammaRuntimeException;
+
+/**
+ * Coalesces concurrent lookups of the same keys from a remote component.
+ * <p>
+ * While a request for a key is outstanding, other callers wanting that key wait for the same response rather than
+ * sending a request of their own. Only the keys that are not already in flight are requested. If a caller times out
+ * waiting for a response, the request is cancelled so that the underlying transport can discard it; any other callers
+ * waiting for keys from the same request fail and a subsequent caller will send a new request.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+/* package */abstract class CoalescingRequests<K, V> {
+
+  private final ConcurrentMap<K, SettableFuture<V>> _inFlight = new ConcurrentHashMap<K, SettableFuture<V>>();
+  /**
+   * The outstanding request each in-flight future is waiting on.
+   */
+  private final ConcurrentMap<ListenableFuture<V>, ListenableFuture<Map<K, V>>> _requests = new ConcurrentHashMap<ListenableFuture<V>, ListenableFuture<Map<K, V>>>();
+
+  /**
+   * Sends an asynchronous request for the keys.
+   *
+   * @param keys the keys to request, not null or empty
+   * @return the future values, containing an entry for each key
+   */
+  protected abstract ListenableFuture<Map<K, V>> request(List<K> keys);
+
+  /**
+   * Returns the time to wait for a response.
+   *
+   * @return the timeout in milliseconds
+   */
+  protected abstract long getTimeoutMillis();
+
+  /**
+   * Returns futures for the values, requesting any keys that are not already in flight.
+   *
+   * @param keys the keys, not null
+   * @return the futures for each key, not null
+   */
+  public Map<K, ListenableFuture<V>> getAsync(final Collection<K> keys) {
+    final Map<K, ListenableFuture<V>> result = new HashMap<K, ListenableFuture<V>>();
+    Map<K, SettableFuture<V>> owned = null;
+    for (K key : keys) {
+      ListenableFuture<V> future = _inFlight.get(key);
+      if (future == null) {
+        final SettableFuture<V> newFuture = SettableFuture.create();
+        future = _inFlight.putIfAbsent(key, newFuture);
+        if (future == null) {
+          if (owned == null) {
+            owned = new HashMap<K, SettableFuture<V>>();
+          }
+          owned.put(key, newFuture);
+          future = newFuture;
+        }
+      }
+      result.put(key, future);
+    }
+    if (owned != null) {
+      send(owned);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the values, waiting for any outstanding requests and sending requests for any keys not already in flight.
+   *
+   * @param keys the keys, not null
+   * @return the values, not null
+   */
+  public Map<K, V> get(final Collection<K> keys) {
+    final Map<K, ListenableFuture<V>> futures = getAsync(keys);
+    final Map<K, V> result = new HashMap<K, V>();
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getTimeoutMillis());
+    for (Map.Entry<K, ListenableFuture<V>> future : futures.entrySet()) {
+      result.put(future.getKey(), waitFor(future.getKey(), future.getValue(), deadline));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the value, waiting for any outstanding request or sending a request if the key is not already in flight.
+   *
+   * @param key the key, not null
+   * @return the value
+   */
+  public V get(final K key) {
+    final ListenableFuture<V> future = getAsync(Collections.singleton(key)).get(key);
+    return waitFor(key, future, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getTimeoutMillis()));
+  }
+
+  private V waitFor(final K key, final ListenableFuture<V> future, final long deadline) {
+    try {
+      return future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      cancelRequest(key, future);
+      throw new OpenGammaRuntimeException("Didn't receive a response for " + key + " in " + getTimeoutMillis() + "ms");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted", e);
+    } catch (ExecutionException e) {
+      throw new OpenGammaRuntimeException("Request for " + key + " failed", e.getCause());
+    }
+  }
+
+  /**
+   * Cancels the request a future is waiting on, releasing the key so that a subsequent caller will retry it. Cancelling
+   * the request fails the futures for any other keys in it.
+   *
+   * @param key the key, not null
+   * @param future the future for the key, not null
+   */
+  private void cancelRequest(final K key, final ListenableFuture<V> future) {
+    _inFlight.remove(key, future);
+    final ListenableFuture<Map<K, V>> response = _requests.get(future);
+    if (response != null) {
+      response.cancel(false);
+    }
+  }
+
+  private void send(final Map<K, SettableFuture<V>> futures) {
+    final ListenableFuture<Map<K, V>> response;
+    try {
+      response = request(new ArrayList<K>(futures.keySet()));
+    } catch (RuntimeException e) {
+      complete(futures, null, e);
+      throw e;
+    }
+    for (SettableFuture<V> future : futures.values()) {
+      _requests.put(future, response);
+    }
+    response.addListener(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          complete(futures, response.get(), null);
+        } catch (ExecutionException e) {
+          complete(futures, null, e.getCause());
+        } catch (InterruptedException e) {
+          complete(futures, null, e);
+        } catch (RuntimeException e) {
+          // Includes the cancellation of a request that timed out
+          complete(futures, null, e);
+        }
+      }
+    }, MoreExecutors.sameThreadExecutor());
+  }
+
+  private void complete(final Map<K, SettableFuture<V>> futures, final Map<K, V> values, final Throwable error) {
+    for (Map.Entry<K, SettableFuture<V>> future : futures.entrySet()) {
+      _inFlight.remove(future.getKey(), future.getValue());
+      _requests.remove(future.getValue());
+      if (error == null) {
+        future.getValue().set(values.get(future.getKey()));
+      } else {
+        future.getValue().setException(error);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+
+import java.util.Collection;
+
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An implementation of {@link IdentifierMap} held in memory with primitive keyed maps split into a number of
+ * independently locked stripes.
+ * <p>
+ * A specification is assigned to a stripe by its hash. Each stripe allocates identifiers from its own block of the
+ * identifier space, the identifiers {@code stripe + 1}, {@code stripe + 1 + stripeCount}, and so on, so that
+ * allocation never touches shared state and the stripe holding the reverse mapping can be found from the
+ * identifier alone.
+ * <p>
+ * The bulk operations return primitive maps that implement the {@code Map} interfaces so that callers using
+ * {@link Object2LongMap#getLong} or {@link Long2ObjectMap#get(long)} avoid boxing completely.
+ * <p>
+ * This has no facilities for persistence. This class is internally synchronized.
+ */
+public class ConcurrentIdentifierMap implements IdentifierMap {
+
+  /**
+   * Default number of stripes.
+   */
+  public static final int DEFAULT_STRIPES = 32;
+
+  private static final long NOT_FOUND = 0L;
+
+  private final Stripe[] _stripes;
+
+  /**
+   * A single, independently locked, part of the map.
+   */
+  private static final class Stripe {
+
+    private final Object2LongOpenHashMap<ValueSpecification> _identifiers = new Object2LongOpenHashMap<ValueSpecification>();
+    private final Long2ObjectOpenHashMap<ValueSpecification> _specifications = new Long2ObjectOpenHashMap<ValueSpecification>();
+    private final int _stride;
+    private long _nextIdentifier;
+
+    private Stripe(final int index, final int stride) {
+      _identifiers.defaultReturnValue(NOT_FOUND);
+      _nextIdentifier = index + 1;
+      _stride = stride;
+    }
+
+    private synchronized long getIdentifier(final ValueSpecification specification) {
+      long identifier = _identifiers.getLong(specification);
+      if (identifier == NOT_FOUND) {
+        identifier = _nextIdentifier;
+        _nextIdentifier += _stride;
+        _identifiers.put(specification, identifier);
+        _specifications.put(identifier, specification);
+      }
+      return identifier;
+    }
+
+    private synchronized ValueSpecification getValueSpecification(final long identifier) {
+      return _specifications.get(identifier);
+    }
+
+  }
+
+  public ConcurrentIdentifierMap() {
+    this(DEFAULT_STRIPES);
+  }
+
+  public ConcurrentIdentifierMap(final int stripes) {
+    ArgumentChecker.notNegativeOrZero(stripes, "stripes");
+    _stripes = new Stripe[stripes];
+    for (int i = 0; i < stripes; i++) {
+      _stripes[i] = new Stripe(i, stripes);
+    }
+  }
+
+  private Stripe getStripe(final ValueSpecification specification) {
+    int hc = specification.hashCode();
+    // Spread the bits; the low bits of the specification hashes are poorly distributed
+    hc ^= (hc >>> 20) ^ (hc >>> 12);
+    hc ^= (hc >>> 7) ^ (hc >>> 4);
+    return _stripes[(hc & 0x7FFFFFFF) % _stripes.length];
+  }
+
+  private Stripe getStripe(final long identifier) {
+    if (identifier <= 0) {
+      return null;
+    }
+    return _stripes[(int) ((identifier - 1) % _stripes.length)];
+  }
+
+  @Override
+  public long getIdentifier(final ValueSpecification spec) {
+    ArgumentChecker.notNull(spec, "Value specification");
+    return getStripe(spec).getIdentifier(spec);
+  }
+
+  @Override
+  public ValueSpecification getValueSpecification(final long identifier) {
+    final Stripe stripe = getStripe(identifier);
+    return (stripe != null) ? stripe.getValueSpecification(identifier) : null;
+  }
+
+  @Override
+  public Object2LongMap<ValueSpecification> getIdentifiers(final Collection<ValueSpecification> specs) {
+    final Object2LongOpenHashMap<ValueSpecification> identifiers = new Object2LongOpenHashMap<ValueSpecification>(specs.size());
+    for (ValueSpecification spec : specs) {
+      identifiers.put(spec, getStripe(spec).getIdentifier(spec));
+    }
+    return identifiers;
+  }
+
+  @Override
+  public Long2ObjectMap<ValueSpecification> getValueSpecifications(final Collection<Long> identifiers) {
+    final Long2ObjectOpenHashMap<ValueSpecification> specifications = new Long2ObjectOpenHashMap<ValueSpecification>(identifiers.size());
+    for (Long identifier : identifiers) {
+      final long id = identifier.longValue();
+      final Stripe stripe = getStripe(id);
+      specifications.put(id, (stripe != null) ? stripe.getValueSpecification(id) : null);
+    }
+    return specifications;
+  }
+
+  /**
+   * Writes the identifiers for a number of specifications into an array, allocating new identifiers as required.
+   *
+   * @param specs the specifications to look up, not null
+   * @param identifiers the array to receive the identifiers in the iteration order of {@code specs}, not null
+   */
+  public void getIdentifiers(final Collection<ValueSpecification> specs, final long[] identifiers) {
+    int i = 0;
+    for (ValueSpecification spec : specs) {
+      identifiers[i++] = getStripe(spec).getIdentifier(spec);
+    }
+  }
+
+}
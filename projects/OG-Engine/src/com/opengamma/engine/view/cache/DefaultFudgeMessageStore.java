@@ -5,9 +5,11 @@
  */
 package com.opengamma.engine.view.cache;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
 import java.io.ByteArrayOutputStream;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.fudgemsg.FudgeContext;
@@ -55,9 +57,15 @@ public class DefaultFudgeMessageStore implements FudgeMessageStore {
   @Override
   public Map<Long, FudgeMsg> get(Collection<Long> identifiers) {
     final Map<Long, byte[]> dataValues = getBinaryData().get(identifiers);
-    final Map<Long, FudgeMsg> resultValues = new HashMap<Long, FudgeMsg>();
-    for (Map.Entry<Long, byte[]> data : dataValues.entrySet()) {
-      resultValues.put(data.getKey(), new EncodedFudgeMsg(data.getValue(), getFudgeContext()));
+    final Long2ObjectOpenHashMap<FudgeMsg> resultValues = new Long2ObjectOpenHashMap<FudgeMsg>(dataValues.size());
+    if (dataValues instanceof Long2ObjectMap) {
+      for (Long2ObjectMap.Entry<byte[]> data : ((Long2ObjectMap<byte[]>) dataValues).long2ObjectEntrySet()) {
+        resultValues.put(data.getLongKey(), new EncodedFudgeMsg(data.getValue(), getFudgeContext()));
+      }
+    } else {
+      for (Map.Entry<Long, byte[]> data : dataValues.entrySet()) {
+        resultValues.put(data.getKey(), new EncodedFudgeMsg(data.getValue(), getFudgeContext()));
+      }
     }
     return resultValues;
   }
@@ -78,25 +86,33 @@ public class DefaultFudgeMessageStore implements FudgeMessageStore {
 
   @Override
   public void put(Map<Long, FudgeMsg> dataMessages) {
-    final Map<Long, byte[]> dataBytes = new HashMap<Long, byte[]>();
-    ByteArrayOutputStream baos = null;
-    FudgeDataOutputStreamWriter writer = null;
-    for (Map.Entry<Long, FudgeMsg> dataMessage : dataMessages.entrySet()) {
-      final byte[] data;
-      if (dataMessage.getValue() instanceof FudgeEncoded) {
-        data = ((FudgeEncoded) dataMessage.getValue()).getFudgeEncoded();
-      } else {
-        if (baos == null) {
-          baos = new ByteArrayOutputStream();
-          writer = new FudgeDataOutputStreamWriter(getFudgeContext(), baos);
-        } else {
-          baos.reset();
-        }
-        writer.writeFields(dataMessage.getValue());
-        data = baos.toByteArray();
+    final Long2ObjectOpenHashMap<byte[]> dataBytes = new Long2ObjectOpenHashMap<byte[]>(dataMessages.size());
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final FudgeDataOutputStreamWriter writer = new FudgeDataOutputStreamWriter(getFudgeContext(), baos);
+    if (dataMessages instanceof Long2ObjectMap) {
+      for (Long2ObjectMap.Entry<FudgeMsg> dataMessage : ((Long2ObjectMap<FudgeMsg>) dataMessages).long2ObjectEntrySet()) {
+        dataBytes.put(dataMessage.getLongKey(), encode(dataMessage.getValue(), baos, writer));
+      }
+    } else {
+      for (Map.Entry<Long, FudgeMsg> dataMessage : dataMessages.entrySet()) {
+        dataBytes.put(dataMessage.getKey().longValue(), encode(dataMessage.getValue(), baos, writer));
       }
-      dataBytes.put(dataMessage.getKey(), data);
     }
     getBinaryData().put(dataBytes);
   }
+
+  private static byte[] encode(final FudgeMsg dataMessage, final ByteArrayOutputStream baos, final FudgeDataOutputStreamWriter writer) {
+    if (dataMessage instanceof FudgeEncoded) {
+      return ((FudgeEncoded) dataMessage).getFudgeEncoded();
+    }
+    baos.reset();
+    writer.writeFields(dataMessage);
+    return baos.toByteArray();
+  }
+
+  @Override
+  public void prefetch(Collection<Long> identifiers) {
+    // Data is held locally; nothing to fetch
+  }
+
 }
@@ -5,11 +5,16 @@
  */
 package com.opengamma.engine.view.cache;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 
 import org.fudgemsg.FudgeContext;
@@ -18,11 +23,15 @@ import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.MutableFudgeMsg;
 import org.fudgemsg.mapping.FudgeDeserializer;
 import org.fudgemsg.mapping.FudgeSerializer;
+import org.fudgemsg.wire.FudgeDataOutputStreamWriter;
+import org.fudgemsg.wire.FudgeEncoded;
 import org.fudgemsg.wire.FudgeSize;
 import org.fudgemsg.wire.types.FudgeWireType;
 
 import com.google.common.collect.Lists;
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.DeferredValue;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.tuple.Pair;
@@ -46,6 +55,7 @@ public class DefaultViewComputationCache implements ViewComputationCache,
   };
 
   private static final int NATIVE_FIELD_INDEX = -1;
+  private static final int CODEC_FIELD_INDEX = -2;
 
   private final IdentifierMap _identifierMap;
   private final FudgeMessageStore _privateDataStore;
@@ -53,6 +63,7 @@ public class DefaultViewComputationCache implements ViewComputationCache,
   private final FudgeContext _fudgeContext;
 
   private MissingValueLoader _missingValueLoader;
+  private BinaryValueCodecRegistry _valueCodecs;
 
   /**
    * The size of recent values that have gone into or come out of this cache.
@@ -123,6 +134,20 @@ public class DefaultViewComputationCache implements ViewComputationCache,
     return _missingValueLoader;
   }
 
+  /**
+   * Sets the codecs used to encode values in preference to Fudge serialization. Every cache sharing the data stores
+   * must use the same codecs.
+   * 
+   * @param valueCodecs the codecs, null to always use Fudge serialization
+   */
+  public void setValueCodecs(final BinaryValueCodecRegistry valueCodecs) {
+    _valueCodecs = valueCodecs;
+  }
+
+  public BinaryValueCodecRegistry getValueCodecs() {
+    return _valueCodecs;
+  }
+
   /**
    * Gets the identifierSource field.
    * @return the identifierSource
@@ -170,7 +195,7 @@ public class DefaultViewComputationCache implements ViewComputationCache,
       }
     }
     final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
-    Object obj = deserializeValue(deserializer, data);
+    Object obj = deserializeValue(deserializer, getValueCodecs(), data);
     cacheValueSize(specification, data, obj);
     return obj;
   }
@@ -185,7 +210,7 @@ public class DefaultViewComputationCache implements ViewComputationCache,
       return null;
     }
     final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
-    Object obj = deserializeValue(deserializer, data);
+    Object obj = deserializeValue(deserializer, getValueCodecs(), data);
     cacheValueSize(specification, data, obj);
     return obj;
   }
@@ -193,122 +218,220 @@ public class DefaultViewComputationCache implements ViewComputationCache,
   @Override
   public Collection<Pair<ValueSpecification, Object>> getValues(final Collection<ValueSpecification> specifications) {
     ArgumentChecker.notNull(specifications, "specifications");
-    final Map<ValueSpecification, Long> identifiers = getIdentifierMap().getIdentifiers(specifications);
-    final Collection<Pair<ValueSpecification, Object>> returnValues = new ArrayList<Pair<ValueSpecification, Object>>(specifications.size());
-    final Collection<Long> identifierValues = identifiers.values();
+    final ValueSpecification[] specs = specifications.toArray(new ValueSpecification[specifications.size()]);
+    final long[] identifiers = AbstractIdentifierMap.getIdentifierArray(getIdentifierMap(), Arrays.asList(specs));
+    final Collection<Pair<ValueSpecification, Object>> returnValues = new ArrayList<Pair<ValueSpecification, Object>>(specs.length);
     final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
-    Map<Long, FudgeMsg> rawValues = getPrivateDataStore().get(identifierValues);
+    int missing = specs.length;
+    Map<Long, FudgeMsg> rawValues = getPrivateDataStore().get(LongArrayList.wrap(identifiers, missing));
     if (!rawValues.isEmpty()) {
-      final Iterator<Map.Entry<ValueSpecification, Long>> identifierIterator = identifiers.entrySet().iterator();
-      while (identifierIterator.hasNext()) {
-        final Map.Entry<ValueSpecification, Long> identifier = identifierIterator.next();
-        final FudgeMsg data = rawValues.get(identifier.getValue());
-        if (data != null) {
-          Object value = deserializeValue(deserializer, data);
-          cacheValueSize(identifier.getKey(), data, value);
-          returnValues.add(Pair.of(identifier.getKey(), value));
-          identifierIterator.remove();
-        }
-      }
-      if (identifiers.isEmpty()) {
+      missing = addFoundValues(deserializer, rawValues, specs, identifiers, missing, returnValues);
+      if (missing == 0) {
         return returnValues;
       }
     }
-    rawValues = getSharedDataStore().get(identifierValues);
+    rawValues = getSharedDataStore().get(LongArrayList.wrap(identifiers, missing));
     if (!rawValues.isEmpty()) {
-      final Iterator<Map.Entry<ValueSpecification, Long>> identifierIterator = identifiers.entrySet().iterator();
-      while (identifierIterator.hasNext()) {
-        final Map.Entry<ValueSpecification, Long> identifier = identifierIterator.next();
-        final FudgeMsg data = rawValues.get(identifier.getValue());
-        if (data != null) {
-          Object value = deserializeValue(deserializer, data);
-          cacheValueSize(identifier.getKey(), data, value);
-          returnValues.add(Pair.of(identifier.getKey(), value));
-          identifierIterator.remove();
-        }
-      }
-      if (identifiers.isEmpty()) {
+      missing = addFoundValues(deserializer, rawValues, specs, identifiers, missing, returnValues);
+      if (missing == 0) {
         return returnValues;
       }
     }
     final MissingValueLoader loader = getMissingValueLoader();
     if (loader != null) {
-      rawValues = loader.findMissingValues(identifierValues);
+      // The loader may hold on to the identifiers so it is given its own copy
+      rawValues = loader.findMissingValues(new LongArrayList(identifiers, 0, missing));
       if (!rawValues.isEmpty()) {
-        final Iterator<Map.Entry<ValueSpecification, Long>> identifierIterator = identifiers.entrySet().iterator();
-        while (identifierIterator.hasNext()) {
-          final Map.Entry<ValueSpecification, Long> identifier = identifierIterator.next();
-          final FudgeMsg data = rawValues.get(identifier.getValue());
-          if (data != null) {
-            Object value = deserializeValue(deserializer, data);
-            cacheValueSize(identifier.getKey(), data, value);
-            returnValues.add(Pair.of(identifier.getKey(), value));
-            identifierIterator.remove();
-          }
-        }
+        addFoundValues(deserializer, rawValues, specs, identifiers, missing, returnValues);
       }
     }
     return returnValues;
   }
 
+  /**
+   * Decodes the values present in {@code rawValues}, moving the specifications and identifiers of the values that
+   * are still missing to the front of their arrays.
+   * 
+   * @return the number of values still missing
+   */
+  private int addFoundValues(final FudgeDeserializer deserializer, final Map<Long, FudgeMsg> rawValues, final ValueSpecification[] specs,
+      final long[] identifiers, final int count, final Collection<Pair<ValueSpecification, Object>> returnValues) {
+    int missing = 0;
+    for (int i = 0; i < count; i++) {
+      final FudgeMsg data = getData(rawValues, identifiers[i]);
+      if (data != null) {
+        Object value = deserializeValue(deserializer, getValueCodecs(), data);
+        cacheValueSize(specs[i], data, value);
+        returnValues.add(Pair.of(specs[i], value));
+      } else {
+        specs[missing] = specs[i];
+        identifiers[missing++] = identifiers[i];
+      }
+    }
+    return missing;
+  }
+
+  private static FudgeMsg getData(final Map<Long, FudgeMsg> rawValues, final long identifier) {
+    if (rawValues instanceof Long2ObjectMap) {
+      return ((Long2ObjectMap<FudgeMsg>) rawValues).get(identifier);
+    }
+    return rawValues.get(identifier);
+  }
+
   @Override
   public Collection<Pair<ValueSpecification, Object>> getValues(final Collection<ValueSpecification> specifications, final CacheSelectHint filter) {
     ArgumentChecker.notNull(specifications, "specifications");
-    final Map<ValueSpecification, Long> identifiers = getIdentifierMap().getIdentifiers(specifications);
-    final Collection<Pair<ValueSpecification, Object>> returnValues = new ArrayList<Pair<ValueSpecification, Object>>(specifications.size());
-    List<Long> privateIdentifiers = null;
-    List<Long> sharedIdentifiers = null;
-    for (ValueSpecification specification : specifications) {
-      if (filter.isPrivateValue(specification)) {
+    final ValueSpecification[] specs = specifications.toArray(new ValueSpecification[specifications.size()]);
+    final long[] identifiers = AbstractIdentifierMap.getIdentifierArray(getIdentifierMap(), Arrays.asList(specs));
+    final Collection<Pair<ValueSpecification, Object>> returnValues = new ArrayList<Pair<ValueSpecification, Object>>(specs.length);
+    LongArrayList privateIdentifiers = null;
+    LongArrayList sharedIdentifiers = null;
+    for (int i = 0; i < specs.length; i++) {
+      if (filter.isPrivateValue(specs[i])) {
         if (privateIdentifiers == null) {
-          privateIdentifiers = new ArrayList<Long>(specifications.size());
+          privateIdentifiers = new LongArrayList(specs.length);
         }
-        privateIdentifiers.add(identifiers.get(specification));
+        privateIdentifiers.add(identifiers[i]);
       } else {
         if (sharedIdentifiers == null) {
-          sharedIdentifiers = new ArrayList<Long>(specifications.size());
+          sharedIdentifiers = new LongArrayList(specs.length);
         }
-        sharedIdentifiers.add(identifiers.get(specification));
+        sharedIdentifiers.add(identifiers[i]);
       }
     }
-    final Map<Long, FudgeMsg> rawValues = new HashMap<Long, FudgeMsg>();
+    final Long2ObjectOpenHashMap<FudgeMsg> rawValues = new Long2ObjectOpenHashMap<FudgeMsg>(specs.length);
     // TODO Can we overlay the fetch of shared and private data?
     if (sharedIdentifiers != null) {
       if (sharedIdentifiers.size() == 1) {
-        final FudgeMsg data = getSharedDataStore().get(sharedIdentifiers.get(0));
-        rawValues.put(sharedIdentifiers.get(0), data);
+        final FudgeMsg data = getSharedDataStore().get(sharedIdentifiers.getLong(0));
+        rawValues.put(sharedIdentifiers.getLong(0), data);
       } else {
         rawValues.putAll(getSharedDataStore().get(sharedIdentifiers));
       }
     }
     if (privateIdentifiers != null) {
       if (privateIdentifiers.size() == 1) {
-        final FudgeMsg data = getPrivateDataStore().get(privateIdentifiers.get(0));
-        rawValues.put(privateIdentifiers.get(0), data);
+        final FudgeMsg data = getPrivateDataStore().get(privateIdentifiers.getLong(0));
+        rawValues.put(privateIdentifiers.getLong(0), data);
       } else {
         rawValues.putAll(getPrivateDataStore().get(privateIdentifiers));
       }
     }
     final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
-    for (Map.Entry<ValueSpecification, Long> identifier : identifiers.entrySet()) {
-      final FudgeMsg data = rawValues.get(identifier.getValue());
+    for (int i = 0; i < specs.length; i++) {
+      final FudgeMsg data = rawValues.get(identifiers[i]);
       if (data != null) {
-        Object value = deserializeValue(deserializer, data);
-        cacheValueSize(identifier.getKey(), data, value);
-        returnValues.add(Pair.of(identifier.getKey(), value));
+        Object value = deserializeValue(deserializer, getValueCodecs(), data);
+        cacheValueSize(specs[i], data, value);
+        returnValues.add(Pair.of(specs[i], value));
       } else {
-        returnValues.add(Pair.of(identifier.getKey(), null));
+        returnValues.add(Pair.of(specs[i], null));
+      }
+    }
+    return returnValues;
+  }
+
+  /**
+   * Fetches values in their encoded form, to be decoded only if and when they are accessed. This is much cheaper than
+   * {@link #getValues(Collection, CacheSelectHint)} when few of the values will be used. The deferred values hold
+   * their own copy of the data so remain valid after the cache is released.
+   * 
+   * @param specifications the values to fetch, not null
+   * @param filter the filter to select the private or shared data stores, not null
+   * @return the deferred values, not null. Values missing from the cache are omitted
+   */
+  public Collection<Pair<ValueSpecification, DeferredValue>> getDeferredValues(final Collection<ValueSpecification> specifications, final CacheSelectHint filter) {
+    ArgumentChecker.notNull(specifications, "specifications");
+    ArgumentChecker.notNull(filter, "filter");
+    final ValueSpecification[] specs = specifications.toArray(new ValueSpecification[specifications.size()]);
+    final long[] identifiers = AbstractIdentifierMap.getIdentifierArray(getIdentifierMap(), Arrays.asList(specs));
+    final LongArrayList privateIdentifiers = new LongArrayList();
+    final LongArrayList sharedIdentifiers = new LongArrayList(specs.length);
+    for (int i = 0; i < specs.length; i++) {
+      if (filter.isPrivateValue(specs[i])) {
+        privateIdentifiers.add(identifiers[i]);
+      } else {
+        sharedIdentifiers.add(identifiers[i]);
+      }
+    }
+    final Long2ObjectOpenHashMap<FudgeMsg> rawValues = new Long2ObjectOpenHashMap<FudgeMsg>(specs.length);
+    if (!sharedIdentifiers.isEmpty()) {
+      rawValues.putAll(getSharedDataStore().get(sharedIdentifiers));
+    }
+    if (!privateIdentifiers.isEmpty()) {
+      rawValues.putAll(getPrivateDataStore().get(privateIdentifiers));
+    }
+    final Collection<Pair<ValueSpecification, DeferredValue>> returnValues = new ArrayList<Pair<ValueSpecification, DeferredValue>>(rawValues.size());
+    for (int i = 0; i < specs.length; i++) {
+      final FudgeMsg data = rawValues.get(identifiers[i]);
+      if (data != null) {
+        returnValues.add(Pair.<ValueSpecification, DeferredValue>of(specs[i], new EncodedValue(getFudgeContext(), getValueCodecs(), data)));
       }
     }
     return returnValues;
   }
 
+  /**
+   * A value held in the encoded form used by the data stores.
+   */
+  private static final class EncodedValue implements DeferredValue {
+
+    private final FudgeContext _fudgeContext;
+    private final BinaryValueCodecRegistry _valueCodecs;
+    private final FudgeMsg _data;
+    private volatile byte[] _encoded;
+
+    public EncodedValue(final FudgeContext fudgeContext, final BinaryValueCodecRegistry valueCodecs, final FudgeMsg data) {
+      _fudgeContext = fudgeContext;
+      _valueCodecs = valueCodecs;
+      _data = data;
+    }
+
+    /**
+     * Returns the encoded fields of the message. Messages read from a binary data store already hold these bytes
+     * so they are used directly; any other message is encoded in the same form.
+     */
+    private byte[] getEncoded() {
+      if (_data instanceof FudgeEncoded) {
+        return ((FudgeEncoded) _data).getFudgeEncoded();
+      }
+      byte[] encoded = _encoded;
+      if (encoded == null) {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final FudgeDataOutputStreamWriter writer = new FudgeDataOutputStreamWriter(_fudgeContext, baos);
+        writer.writeFields(_data);
+        writer.flush();
+        encoded = baos.toByteArray();
+        _encoded = encoded;
+      }
+      return encoded;
+    }
+
+    @Override
+    public Object getValue() {
+      return deserializeValue(new FudgeDeserializer(_fudgeContext), _valueCodecs, _data);
+    }
+
+    @Override
+    public boolean isSameEncoding(final DeferredValue other) {
+      if (!(other instanceof EncodedValue)) {
+        return false;
+      }
+      final EncodedValue otherValue = (EncodedValue) other;
+      if (otherValue._data == _data) {
+        return true;
+      }
+      return Arrays.equals(getEncoded(), otherValue.getEncoded());
+    }
+
+  }
+
   protected void putValue(final ComputedValue value, final FudgeMessageStore dataStore) {
     ArgumentChecker.notNull(value, "value");
     final long identifier = getIdentifierMap().getIdentifier(value.getSpecification());
     final FudgeSerializer serializer = new FudgeSerializer(getFudgeContext());
     Object obj = value.getValue();
-    final FudgeMsg data = serializeValue(serializer, obj);
+    final FudgeMsg data = serializeValue(serializer, getValueCodecs(), obj);
     cacheValueSize(value.getSpecification(), data, value.getValue());
     dataStore.put(identifier, data);
   }
@@ -334,14 +457,15 @@ public class DefaultViewComputationCache implements ViewComputationCache,
     for (ComputedValue value : values) {
       specifications.add(value.getSpecification());
     }
-    final Map<ValueSpecification, Long> identifiers = getIdentifierMap().getIdentifiers(specifications);
-    final Map<Long, FudgeMsg> data = new HashMap<Long, FudgeMsg>();
+    final long[] identifiers = AbstractIdentifierMap.getIdentifierArray(getIdentifierMap(), specifications);
+    final Long2ObjectOpenHashMap<FudgeMsg> data = new Long2ObjectOpenHashMap<FudgeMsg>(identifiers.length);
     final FudgeSerializer serializer = new FudgeSerializer(getFudgeContext());
+    int i = 0;
     for (ComputedValue value : values) {
       Object obj = value.getValue();
-      final FudgeMsg valueData = serializeValue(serializer, obj);
+      final FudgeMsg valueData = serializeValue(serializer, getValueCodecs(), obj);
       cacheValueSize(value.getSpecification(), valueData, value.getValue());
-      data.put(identifiers.get(value.getSpecification()), valueData);
+      data.put(identifiers[i++], valueData);
     }
     dataStore.put(data);
   }
@@ -356,6 +480,67 @@ public class DefaultViewComputationCache implements ViewComputationCache,
     putValues(values, getSharedDataStore());
   }
 
+  /**
+   * Copies values from another cache into the shared data store of this cache without deserializing them. The
+   * encoded messages are passed straight between the data stores so a store holding the encoded form, such as
+   * {@link DefaultFudgeMessageStore}, can share the underlying data rather than copy it. The source cache must
+   * use the same identifier map as this cache.
+   * 
+   * @param source the cache to copy from, not null
+   * @param specifications the values to copy, not null
+   * @return the number of values copied; values missing from the source are ignored
+   */
+  public int copySharedValues(final DefaultViewComputationCache source, final Collection<ValueSpecification> specifications) {
+    ArgumentChecker.notNull(source, "source");
+    ArgumentChecker.notNull(specifications, "specifications");
+    ArgumentChecker.isTrue(source.getIdentifierMap() == getIdentifierMap(), "source must use the same identifier map");
+    final long[] identifiers = AbstractIdentifierMap.getIdentifierArray(getIdentifierMap(), specifications);
+    final Long2ObjectOpenHashMap<FudgeMsg> data = new Long2ObjectOpenHashMap<FudgeMsg>(identifiers.length);
+    addNonNull(data, source.getSharedDataStore().get(LongArrayList.wrap(identifiers)));
+    if ((data.size() < identifiers.length) && (source.getPrivateDataStore() != source.getSharedDataStore())) {
+      final LongArrayList missing = new LongArrayList(identifiers.length - data.size());
+      for (long identifier : identifiers) {
+        if (!data.containsKey(identifier)) {
+          missing.add(identifier);
+        }
+      }
+      addNonNull(data, source.getPrivateDataStore().get(missing));
+    }
+    if (!data.isEmpty()) {
+      getSharedDataStore().put(data);
+    }
+    return data.size();
+  }
+
+  /**
+   * Hints that the given shared values will be read shortly so that a remote data store can start fetching them.
+   * 
+   * @param specifications the values that will be read, not null
+   */
+  public void prefetchSharedValues(final Collection<ValueSpecification> specifications) {
+    ArgumentChecker.notNull(specifications, "specifications");
+    if (specifications.isEmpty()) {
+      return;
+    }
+    getSharedDataStore().prefetch(LongArrayList.wrap(AbstractIdentifierMap.getIdentifierArray(getIdentifierMap(), specifications)));
+  }
+
+  private static void addNonNull(final Long2ObjectMap<FudgeMsg> target, final Map<Long, FudgeMsg> source) {
+    if (source instanceof Long2ObjectMap) {
+      for (Long2ObjectMap.Entry<FudgeMsg> entry : ((Long2ObjectMap<FudgeMsg>) source).long2ObjectEntrySet()) {
+        if (entry.getValue() != null) {
+          target.put(entry.getLongKey(), entry.getValue());
+        }
+      }
+    } else {
+      for (Map.Entry<Long, FudgeMsg> entry : source.entrySet()) {
+        if (entry.getValue() != null) {
+          target.put(entry.getKey().longValue(), entry.getValue());
+        }
+      }
+    }
+  }
+
   @Override
   public void putValues(final Collection<ComputedValue> values, final CacheSelectHint filter) {
     ArgumentChecker.notNull(values, "values");
@@ -363,24 +548,25 @@ public class DefaultViewComputationCache implements ViewComputationCache,
     for (ComputedValue value : values) {
       specifications.add(value.getSpecification());
     }
-    final Map<ValueSpecification, Long> identifiers = getIdentifierMap().getIdentifiers(specifications);
+    final long[] identifiers = AbstractIdentifierMap.getIdentifierArray(getIdentifierMap(), specifications);
     final FudgeSerializer serializer = new FudgeSerializer(getFudgeContext());
-    Map<Long, FudgeMsg> privateData = null;
-    Map<Long, FudgeMsg> sharedData = null;
+    Long2ObjectOpenHashMap<FudgeMsg> privateData = null;
+    Long2ObjectOpenHashMap<FudgeMsg> sharedData = null;
+    int i = 0;
     for (ComputedValue value : values) {
       Object obj = value.getValue();
-      final FudgeMsg valueData = serializeValue(serializer, obj);
+      final FudgeMsg valueData = serializeValue(serializer, getValueCodecs(), obj);
       cacheValueSize(value.getSpecification(), valueData, value.getValue());
       if (filter.isPrivateValue(value.getSpecification())) {
         if (privateData == null) {
-          privateData = new HashMap<Long, FudgeMsg>();
+          privateData = new Long2ObjectOpenHashMap<FudgeMsg>();
         }
-        privateData.put(identifiers.get(value.getSpecification()), valueData);
+        privateData.put(identifiers[i++], valueData);
       } else {
         if (sharedData == null) {
-          sharedData = new HashMap<Long, FudgeMsg>();
+          sharedData = new Long2ObjectOpenHashMap<FudgeMsg>();
         }
-        sharedData.put(identifiers.get(value.getSpecification()), valueData);
+        sharedData.put(identifiers[i++], valueData);
       }
     }
     // TODO 2010-08-31 Andrew -- can we overlay the shared and private puts ?
@@ -393,6 +579,10 @@ public class DefaultViewComputationCache implements ViewComputationCache,
   }
 
   protected static FudgeMsg serializeValue(final FudgeSerializer serializer, final Object value) {
+    return serializeValue(serializer, null, value);
+  }
+
+  protected static FudgeMsg serializeValue(final FudgeSerializer serializer, final BinaryValueCodecRegistry codecs, final Object value) {
     if (value instanceof Double) {
       //Make sure fudge doesn't faff around with reflection
       MutableFudgeMsg newMessage = serializer.newMessage();
@@ -400,6 +590,15 @@ public class DefaultViewComputationCache implements ViewComputationCache,
       newMessage.add(null, NATIVE_FIELD_INDEX, doubleFieldType, (Double) value);
       return newMessage;
     }
+    if (codecs != null) {
+      // Registered types are written as a single binary field, without building a message tree for the value
+      final byte[] encoded = codecs.encode(value);
+      if (encoded != null) {
+        final MutableFudgeMsg newMessage = serializer.newMessage();
+        newMessage.add(null, CODEC_FIELD_INDEX, FudgeWireType.BYTE_ARRAY, encoded);
+        return newMessage;
+      }
+    }
     serializer.reset();
     final MutableFudgeMsg message = serializer.newMessage();
     serializer.addToMessageWithClassHeaders(message, null, NATIVE_FIELD_INDEX, value);
@@ -413,12 +612,23 @@ public class DefaultViewComputationCache implements ViewComputationCache,
   }
 
   protected static Object deserializeValue(final FudgeDeserializer deserializer, final FudgeMsg message) {
+    return deserializeValue(deserializer, null, message);
+  }
+
+  protected static Object deserializeValue(final FudgeDeserializer deserializer, final BinaryValueCodecRegistry codecs, final FudgeMsg message) {
     deserializer.reset();
     if (message.getNumFields() == 1) {
       Object value = message.getValue(NATIVE_FIELD_INDEX);
       if (value != null) {
         return value;
       }
+      value = message.getValue(CODEC_FIELD_INDEX);
+      if (value instanceof byte[]) {
+        if (codecs == null) {
+          throw new OpenGammaRuntimeException("Value encoded with a binary codec but no codecs are available");
+        }
+        return codecs.decode((byte[]) value);
+      }
     }
     return deserializer.fudgeMsgToObject(message);
   }
@@ -60,6 +60,7 @@ public class DefaultViewComputationCacheSource implements ViewComputationCacheSo
 
   private ReleaseCachesCallback _releaseCachesCallback;
   private MissingValueLoader _missingValueLoader;
+  private BinaryValueCodecRegistry _valueCodecs;
 
   protected DefaultViewComputationCacheSource(final IdentifierMap identifierMap, final FudgeContext fudgeContext,
       final FudgeMessageStoreFactory dataStoreFactory) {
@@ -103,7 +104,9 @@ public class DefaultViewComputationCacheSource implements ViewComputationCacheSo
     for (Pair<ValueSpecification, FudgeMsg> value : cache) {
       dataStore.put(identifierMap.getIdentifier(value.getKey()), value.getValue());
     }
-    return new DefaultViewComputationCache(identifierMap, dataStore, dataStore, getFudgeContext());
+    final DefaultViewComputationCache clone = new DefaultViewComputationCache(identifierMap, dataStore, dataStore, getFudgeContext());
+    clone.setValueCodecs(getValueCodecs());
+    return clone;
   }
 
   @Override
@@ -138,6 +141,7 @@ public class DefaultViewComputationCacheSource implements ViewComputationCacheSo
         final FudgeMessageStore sharedDataStore = (_privateDataStoreFactory == _sharedDataStoreFactory) ? privateDataStore
             : _sharedDataStoreFactory.createMessageStore(key);
         cache = createViewComputationCache(getIdentifierMap(), privateDataStore, sharedDataStore, getFudgeContext());
+        cache.setValueCodecs(getValueCodecs());
         _cachesByKey.put(key, cache);
         List<ViewComputationCacheKey> caches = _activeCachesByCycle.get(key.getViewCycleId());
         if (caches == null) {
@@ -225,4 +229,18 @@ public class DefaultViewComputationCacheSource implements ViewComputationCacheSo
     return _missingValueLoader;
   }
 
+  /**
+   * Sets the codecs used by the caches to encode values in preference to Fudge serialization. This must be set before
+   * any caches are created, and every process sharing the caches must use the same codecs.
+   * 
+   * @param valueCodecs the codecs, null to always use Fudge serialization
+   */
+  public void setValueCodecs(final BinaryValueCodecRegistry valueCodecs) {
+    _valueCodecs = valueCodecs;
+  }
+
+  public BinaryValueCodecRegistry getValueCodecs() {
+    return _valueCodecs;
+  }
+
 }
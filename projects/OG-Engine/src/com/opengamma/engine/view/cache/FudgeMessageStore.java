@@ -52,6 +52,14 @@ public interface FudgeMessageStore {
    */
   void put(Map<Long, FudgeMsg> data);
 
+  /**
+   * Hints that the data for the given identifiers will be requested shortly. A store backed by a remote
+   * component may start fetching the data in the background; others may ignore the hint.
+   * 
+   * @param identifiers identifiers that will be queried
+   */
+  void prefetch(Collection<Long> identifiers);
+
   /**
    * Remove any underlying resources, and free all memory, relating
    * to this store. Immediately after this method is called the store instance
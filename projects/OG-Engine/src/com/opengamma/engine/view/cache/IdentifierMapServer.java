@@ -25,27 +25,45 @@ import com.opengamma.engine.view.cache.msg.CacheMessage;
 import com.opengamma.engine.view.cache.msg.CacheMessageVisitor;
 import com.opengamma.engine.view.cache.msg.IdentifierLookupRequest;
 import com.opengamma.engine.view.cache.msg.IdentifierLookupResponse;
+import com.opengamma.engine.view.cache.msg.LocateValueRequest;
+import com.opengamma.engine.view.cache.msg.LocateValueResponse;
 import com.opengamma.engine.view.cache.msg.SpecificationLookupRequest;
 import com.opengamma.engine.view.cache.msg.SpecificationLookupResponse;
+import com.opengamma.engine.view.cache.msg.ValueLocationMessage;
 import com.opengamma.transport.FudgeRequestReceiver;
+import com.opengamma.util.ArgumentChecker;
 
 /**
  * Server for a {@link RemoteIdentifierMap}.
+ * <p>
+ * The server also acts as the directory of shared values held by calculation nodes, allowing nodes to
+ * fetch values from each other. See {@link PeerFudgeMessageStore}.
  */
 public class IdentifierMapServer extends CacheMessageVisitor implements FudgeRequestReceiver {
 
   private static final Logger s_logger = LoggerFactory.getLogger(IdentifierMapServer.class);
 
   private final IdentifierMap _underlying;
+  private final ValueLocationDirectory _valueLocations;
 
   public IdentifierMapServer(final IdentifierMap underlying) {
+    this(underlying, new ValueLocationDirectory());
+  }
+
+  public IdentifierMapServer(final IdentifierMap underlying, final ValueLocationDirectory valueLocations) {
+    ArgumentChecker.notNull(valueLocations, "valueLocations");
     _underlying = underlying;
+    _valueLocations = valueLocations;
   }
 
   protected IdentifierMap getUnderlying() {
     return _underlying;
   }
 
+  protected ValueLocationDirectory getValueLocations() {
+    return _valueLocations;
+  }
+
   @Override
   protected IdentifierLookupResponse visitIdentifierLookupRequest(final IdentifierLookupRequest request) {
     final List<ValueSpecification> spec = request.getSpecification();
@@ -80,6 +98,23 @@ public class IdentifierMapServer extends CacheMessageVisitor implements FudgeReq
     return response;
   }
 
+  @Override
+  protected CacheMessage visitValueLocationMessage(final ValueLocationMessage message) {
+    getValueLocations().valuesLocated(message.getViewCycleId(), message.getCalculationConfigurationName(), message.getIdentifier(), message.getEndPoint());
+    return null;
+  }
+
+  @Override
+  protected LocateValueResponse visitLocateValueRequest(final LocateValueRequest request) {
+    final List<FudgeMsg> endPoints = getValueLocations().locateValues(request.getViewCycleId(), request.getCalculationConfigurationName(), request.getIdentifier());
+    for (int i = 0; i < endPoints.size(); i++) {
+      if (endPoints.get(i) == null) {
+        endPoints.set(i, FudgeContext.EMPTY_MESSAGE);
+      }
+    }
+    return new LocateValueResponse(endPoints);
+  }
+
   @Override
   public FudgeMsg requestReceived(final FudgeDeserializer deserializer, final FudgeMsgEnvelope requestEnvelope) {
     final CacheMessage request = deserializer.fudgeMsgToObject(CacheMessage.class, requestEnvelope.getMessage());
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterators;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An implementation of {@link BinaryDataStore} that holds the data outside of the Java heap. Values are appended to
+ * segments obtained from a {@link OffHeapBinaryDataStoreFactory} with a primitive index from identifier to location
+ * so that the only heap objects held per value are the slots of the index. When the store is deleted the segments
+ * are returned to the factory in bulk.
+ * <p>
+ * Replacing the value for an identifier does not reclaim the space used by the previous value; this is intended
+ * for the write-once data of a single computation cycle.
+ * <p>
+ * This class is internally synchronized.
+ */
+public class OffHeapBinaryDataStore extends AbstractBinaryDataStore {
+
+  private static final long NOT_FOUND = -1L;
+
+  private final OffHeapBinaryDataStoreFactory _factory;
+  private final Long2LongOpenHashMap _index = new Long2LongOpenHashMap();
+  private final List<ByteBuffer> _segments = new ArrayList<ByteBuffer>();
+  private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+  private ByteBuffer _current;
+  private boolean _deleted;
+
+  public OffHeapBinaryDataStore(final OffHeapBinaryDataStoreFactory factory) {
+    ArgumentChecker.notNull(factory, "factory");
+    _factory = factory;
+    _index.defaultReturnValue(NOT_FOUND);
+  }
+
+  protected OffHeapBinaryDataStoreFactory getFactory() {
+    return _factory;
+  }
+
+  private static long location(final int segment, final int offset) {
+    return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+  }
+
+  private static int segment(final long location) {
+    return (int) (location >>> 32);
+  }
+
+  private static int offset(final long location) {
+    return (int) location;
+  }
+
+  /**
+   * Reads a value from its location. Must be called with at least the read lock held.
+   */
+  private byte[] read(final long location) {
+    final ByteBuffer segment = _segments.get(segment(location));
+    final int offset = offset(location);
+    final int length = segment.getInt(offset);
+    final byte[] data = new byte[length];
+    // Duplicate so that concurrent readers don't race on the position
+    final ByteBuffer view = segment.duplicate();
+    view.position(offset + 4);
+    view.get(data);
+    return data;
+  }
+
+  /**
+   * Writes a value, returning its location. Must be called with the write lock held.
+   */
+  private long write(final byte[] data) {
+    final int required = data.length + 4;
+    if ((_current == null) || (_current.remaining() < required)) {
+      _current = getFactory().acquireSegment(required);
+      _segments.add(_current);
+    }
+    final long location = location(_segments.size() - 1, _current.position());
+    _current.putInt(data.length);
+    _current.put(data);
+    return location;
+  }
+
+  private void checkNotDeleted() {
+    if (_deleted) {
+      throw new IllegalStateException("Data store has been deleted");
+    }
+  }
+
+  @Override
+  public byte[] get(final long identifier) {
+    final Lock lock = _lock.readLock();
+    lock.lock();
+    try {
+      final long location = _index.get(identifier);
+      if (location == NOT_FOUND) {
+        return null;
+      }
+      return read(location);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Map<Long, byte[]> get(final Collection<Long> identifiers) {
+    final Long2ObjectOpenHashMap<byte[]> result = new Long2ObjectOpenHashMap<byte[]>(identifiers.size());
+    final Lock lock = _lock.readLock();
+    lock.lock();
+    try {
+      final LongIterator itr = LongIterators.asLongIterator(identifiers.iterator());
+      while (itr.hasNext()) {
+        final long identifier = itr.nextLong();
+        final long location = _index.get(identifier);
+        if (location != NOT_FOUND) {
+          result.put(identifier, read(location));
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return result;
+  }
+
+  @Override
+  public void put(final long identifier, final byte[] data) {
+    ArgumentChecker.notNull(data, "data");
+    final Lock lock = _lock.writeLock();
+    lock.lock();
+    try {
+      checkNotDeleted();
+      _index.put(identifier, write(data));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(final Map<Long, byte[]> data) {
+    final Lock lock = _lock.writeLock();
+    lock.lock();
+    try {
+      checkNotDeleted();
+      if (data instanceof Long2ObjectMap) {
+        for (Long2ObjectMap.Entry<byte[]> entry : ((Long2ObjectMap<byte[]>) data).long2ObjectEntrySet()) {
+          _index.put(entry.getLongKey(), write(entry.getValue()));
+        }
+      } else {
+        for (Map.Entry<Long, byte[]> entry : data.entrySet()) {
+          _index.put(entry.getKey().longValue(), write(entry.getValue()));
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void delete() {
+    final Lock lock = _lock.writeLock();
+    lock.lock();
+    try {
+      if (_deleted) {
+        return;
+      }
+      _deleted = true;
+      _index.clear();
+      _index.trim();
+      _current = null;
+      getFactory().releaseSegments(_segments);
+      _segments.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of values held.
+   *
+   * @return the number of values
+   */
+  public int size() {
+    final Lock lock = _lock.readLock();
+    lock.lock();
+    try {
+      return _index.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of off-heap bytes currently held by this store, including unused space at the end of
+   * each segment.
+   *
+   * @return the allocated size in bytes
+   */
+  public long getAllocatedBytes() {
+    final Lock lock = _lock.readLock();
+    lock.lock();
+    try {
+      long bytes = 0;
+      for (ByteBuffer segment : _segments) {
+        bytes += segment.capacity();
+      }
+      return bytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Creates {@link OffHeapBinaryDataStore} objects. The segments used by the stores are allocated either as direct
+ * buffers or, if a directory is given, as memory-mapped temporary files. Segments released by a store when it is
+ * deleted are pooled and handed to the next store created so that the steady state of a view process doesn't
+ * need to allocate any native memory.
+ */
+public class OffHeapBinaryDataStoreFactory implements BinaryDataStoreFactory {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(OffHeapBinaryDataStoreFactory.class);
+
+  /**
+   * Default size of each segment, 1Mb.
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+
+  /**
+   * Default number of segments to hold in the pool, 256 (or 256Mb at the default segment size).
+   */
+  public static final int DEFAULT_MAX_POOLED_SEGMENTS = 256;
+
+  private final int _segmentSize;
+  private final File _directory;
+  private final Queue<ByteBuffer> _segmentPool = new ConcurrentLinkedQueue<ByteBuffer>();
+  private final AtomicInteger _pooledSegments = new AtomicInteger();
+  private int _maxPooledSegments = DEFAULT_MAX_POOLED_SEGMENTS;
+
+  /**
+   * Creates a factory that uses direct buffers of the default segment size.
+   */
+  public OffHeapBinaryDataStoreFactory() {
+    this(DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Creates a factory that uses direct buffers.
+   *
+   * @param segmentSize the size of each segment in bytes
+   */
+  public OffHeapBinaryDataStoreFactory(final int segmentSize) {
+    this(null, segmentSize);
+  }
+
+  /**
+   * Creates a factory that uses memory-mapped files in the given directory.
+   *
+   * @param directory the directory to create the backing files in, null to use direct buffers
+   * @param segmentSize the size of each segment in bytes
+   */
+  public OffHeapBinaryDataStoreFactory(final File directory, final int segmentSize) {
+    ArgumentChecker.notNegativeOrZero(segmentSize, "segmentSize");
+    if (directory != null) {
+      ArgumentChecker.isTrue(directory.isDirectory() || directory.mkdirs(), "directory");
+    }
+    _directory = directory;
+    _segmentSize = segmentSize;
+  }
+
+  public int getSegmentSize() {
+    return _segmentSize;
+  }
+
+  public File getDirectory() {
+    return _directory;
+  }
+
+  public void setMaxPooledSegments(final int maxPooledSegments) {
+    ArgumentChecker.notNegative(maxPooledSegments, "maxPooledSegments");
+    _maxPooledSegments = maxPooledSegments;
+  }
+
+  public int getMaxPooledSegments() {
+    return _maxPooledSegments;
+  }
+
+  /**
+   * Returns the number of segments currently held in the pool.
+   *
+   * @return the number of pooled segments
+   */
+  public int getPooledSegments() {
+    return _pooledSegments.get();
+  }
+
+  /**
+   * Returns a segment with at least the requested capacity, either from the pool or newly allocated. Requests
+   * larger than the segment size are allocated individually and never pooled.
+   *
+   * @param minimumCapacity the minimum capacity required
+   * @return the segment, with position zero and limit at its capacity
+   */
+  protected ByteBuffer acquireSegment(final int minimumCapacity) {
+    if (minimumCapacity <= getSegmentSize()) {
+      final ByteBuffer segment = _segmentPool.poll();
+      if (segment != null) {
+        _pooledSegments.decrementAndGet();
+        return segment;
+      }
+      return allocateSegment(getSegmentSize());
+    } else {
+      return allocateSegment(minimumCapacity);
+    }
+  }
+
+  /**
+   * Returns segments previously acquired to the pool. Segments that don't fit in the pool are dropped and
+   * their native memory left to be reclaimed when the buffers are collected.
+   *
+   * @param segments the segments to release, not null
+   */
+  protected void releaseSegments(final Collection<ByteBuffer> segments) {
+    for (ByteBuffer segment : segments) {
+      if (segment.capacity() == getSegmentSize()) {
+        if (_pooledSegments.incrementAndGet() <= getMaxPooledSegments()) {
+          segment.clear();
+          _segmentPool.add(segment);
+        } else {
+          _pooledSegments.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  protected ByteBuffer allocateSegment(final int capacity) {
+    if (getDirectory() == null) {
+      return ByteBuffer.allocateDirect(capacity);
+    }
+    try {
+      final File file = File.createTempFile("segment", ".bin", getDirectory());
+      final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(capacity);
+        return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+      } finally {
+        raf.close();
+        // The mapping remains valid after the file is removed on platforms that allow it
+        if (!file.delete()) {
+          s_logger.debug("Couldn't delete {} while mapped", file);
+          file.deleteOnExit();
+        }
+      }
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Couldn't map segment of " + capacity + " bytes in " + getDirectory(), e);
+    }
+  }
+
+  @Override
+  public BinaryDataStore createDataStore(final ViewComputationCacheKey cacheKey) {
+    return new OffHeapBinaryDataStore(this);
+  }
+
+}
@@ -0,0 +1,309 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.Lifecycle;
+
+import com.opengamma.engine.view.cache.msg.GetResponse;
+import com.opengamma.engine.view.cache.msg.LocateValueRequest;
+import com.opengamma.engine.view.cache.msg.LocateValueResponse;
+import com.opengamma.engine.view.cache.msg.PeerGetRequest;
+import com.opengamma.engine.view.cache.msg.ValueLocationMessage;
+import com.opengamma.transport.EndPointDescriptionProvider;
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.socket.AbstractServerSocketProcess;
+import com.opengamma.transport.socket.SocketFudgeConnection;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Client used by {@link PeerFudgeMessageStore} to publish the location of values to the directory held by an
+ * {@link IdentifierMapServer}, to locate values held by other calculation nodes, and to fetch values from those
+ * nodes' {@link PeerFudgeMessageStoreServer}.
+ * <p>
+ * Connections to other nodes are created from their end-point descriptions and kept open. A node that fails to
+ * respond is not contacted again until the retry period has passed; the values it holds are read from the central
+ * store instead.
+ */
+public class PeerCacheClient {
+
+  private static final class Peer {
+
+    private final FudgeConnection _connection;
+    private final RemoteCacheClient _client;
+
+    private Peer(final FudgeConnection connection) {
+      _connection = connection;
+      _client = new RemoteCacheClient(connection);
+    }
+
+    private void close() {
+      if (_connection instanceof Lifecycle) {
+        ((Lifecycle) _connection).stop();
+      }
+    }
+
+  }
+
+  private static final Logger s_logger = LoggerFactory.getLogger(PeerCacheClient.class);
+
+  /**
+   * Default period, in milliseconds, before contacting a node that previously failed to respond.
+   */
+  public static final long DEFAULT_RETRY_MILLIS = 30000L;
+
+  private final RemoteCacheClient _directory;
+  private final ConcurrentMap<String, Peer> _peers = new ConcurrentHashMap<String, Peer>();
+  private final ConcurrentMap<String, Long> _unavailable = new ConcurrentHashMap<String, Long>();
+  private EndPointDescriptionProvider _localEndPointProvider;
+  private volatile FudgeMsg _localEndPoint;
+  private volatile String _localEndPointKey;
+  private ExecutorService _executorService;
+  private long _retryMillis = DEFAULT_RETRY_MILLIS;
+  private long _peerTimeoutMillis;
+
+  /**
+   * Creates a new client.
+   *
+   * @param directory the connection to the {@link ViewComputationCacheServer} holding the directory, not null
+   */
+  public PeerCacheClient(final RemoteCacheClient directory) {
+    ArgumentChecker.notNull(directory, "directory");
+    _directory = directory;
+  }
+
+  protected RemoteCacheClient getDirectory() {
+    return _directory;
+  }
+
+  /**
+   * Sets the end-point of the local {@link PeerFudgeMessageStoreServer}. Until this is set, values are not
+   * published to the directory and so are only available from the central store.
+   *
+   * @param localEndPoint the local end-point, not null
+   */
+  public void setLocalEndPoint(final EndPointDescriptionProvider localEndPoint) {
+    ArgumentChecker.notNull(localEndPoint, "localEndPoint");
+    _localEndPointProvider = localEndPoint;
+    _localEndPoint = null;
+    _localEndPointKey = null;
+  }
+
+  /**
+   * Returns the end-point description of the local peer server.
+   *
+   * @return the end-point description, or null if there is no local server
+   */
+  protected FudgeMsg getLocalEndPoint() {
+    if (_localEndPoint == null) {
+      final EndPointDescriptionProvider provider = _localEndPointProvider;
+      if (provider != null) {
+        final FudgeMsg endPoint = provider.getEndPointDescription(getDirectory().getFudgeContext());
+        _localEndPointKey = getEndPointKey(endPoint);
+        _localEndPoint = endPoint;
+      }
+    }
+    return _localEndPoint;
+  }
+
+  /**
+   * Sets the executor service used by connections to other nodes.
+   *
+   * @param executorService the executor service, null to use the connections' defaults
+   */
+  public void setExecutorService(final ExecutorService executorService) {
+    _executorService = executorService;
+  }
+
+  public ExecutorService getExecutorService() {
+    return _executorService;
+  }
+
+  /**
+   * Sets the period before contacting a node that previously failed to respond.
+   *
+   * @param retryMillis the retry period in milliseconds
+   */
+  public void setRetryMillis(final long retryMillis) {
+    ArgumentChecker.notNegative(retryMillis, "retryMillis");
+    _retryMillis = retryMillis;
+  }
+
+  public long getRetryMillis() {
+    return _retryMillis;
+  }
+
+  /**
+   * Sets the time to wait for another node to respond before treating it as unavailable. If not set, the timeout
+   * of the connection to the directory is used.
+   *
+   * @param peerTimeoutMillis the timeout in milliseconds, or zero to use the directory's timeout
+   */
+  public void setPeerTimeoutMillis(final long peerTimeoutMillis) {
+    ArgumentChecker.notNegative(peerTimeoutMillis, "peerTimeoutMillis");
+    _peerTimeoutMillis = peerTimeoutMillis;
+  }
+
+  public long getPeerTimeoutMillis() {
+    return _peerTimeoutMillis;
+  }
+
+  private static String getEndPointKey(final FudgeMsg endPoint) {
+    return endPoint.toString();
+  }
+
+  /**
+   * Publishes the location of values held locally.
+   *
+   * @param cacheKey the cache the values were written to, not null
+   * @param identifiers the value identifiers, not null
+   * @return true if the values were published, false if there is no local peer server
+   */
+  protected boolean publishLocalValues(final ViewComputationCacheKey cacheKey, final Collection<Long> identifiers) {
+    final FudgeMsg endPoint = getLocalEndPoint();
+    if (endPoint == null) {
+      return false;
+    }
+    getDirectory().postPutMessage(new ValueLocationMessage(cacheKey.getViewCycleId(), cacheKey.getCalculationConfigurationName(), identifiers, endPoint));
+    return true;
+  }
+
+  /**
+   * Locates the values held by other nodes that are believed to be available.
+   *
+   * @param cacheKey the cache the values were written to, not null
+   * @param identifiers the value identifiers, not null and not empty
+   * @return the identifiers held by each node, keyed by the node's end-point description, not null
+   */
+  protected Map<FudgeMsg, List<Long>> locateValues(final ViewComputationCacheKey cacheKey, final List<Long> identifiers) {
+    final LocateValueResponse response = getDirectory().sendGetMessage(
+        new LocateValueRequest(cacheKey.getViewCycleId(), cacheKey.getCalculationConfigurationName(), identifiers), LocateValueResponse.class);
+    final List<FudgeMsg> endPoints = response.getEndPoint();
+    final Map<String, FudgeMsg> keys = new HashMap<String, FudgeMsg>();
+    final Map<FudgeMsg, List<Long>> result = new HashMap<FudgeMsg, List<Long>>();
+    final long now = System.currentTimeMillis();
+    int i = 0;
+    for (Long identifier : identifiers) {
+      final FudgeMsg endPoint = endPoints.get(i++);
+      if (endPoint.isEmpty()) {
+        continue;
+      }
+      final String key = getEndPointKey(endPoint);
+      if (key.equals(_localEndPointKey)) {
+        continue;
+      }
+      FudgeMsg peer = keys.get(key);
+      if (peer == null) {
+        if (!isAvailable(key, now)) {
+          continue;
+        }
+        keys.put(key, endPoint);
+        peer = endPoint;
+        result.put(peer, new ArrayList<Long>());
+      }
+      result.get(peer).add(identifier);
+    }
+    return result;
+  }
+
+  private boolean isAvailable(final String key, final long now) {
+    final Long failed = _unavailable.get(key);
+    if (failed == null) {
+      return true;
+    }
+    if (now - failed < getRetryMillis()) {
+      return false;
+    }
+    _unavailable.remove(key, failed);
+    return true;
+  }
+
+  /**
+   * Fetches values from another node. If the node fails to respond it is marked as unavailable and no values are
+   * returned.
+   *
+   * @param cacheKey the cache the values were written to, not null
+   * @param endPoint the end-point description of the node, not null
+   * @param identifiers the value identifiers, not null and not empty
+   * @return the values the node returned, not null
+   */
+  protected Map<Long, FudgeMsg> getPeerValues(final ViewComputationCacheKey cacheKey, final FudgeMsg endPoint, final List<Long> identifiers) {
+    final String key = getEndPointKey(endPoint);
+    final GetResponse response;
+    try {
+      response = getPeer(key, endPoint)._client.sendGetMessage(
+          new PeerGetRequest(cacheKey.getViewCycleId(), cacheKey.getCalculationConfigurationName(), identifiers), GetResponse.class);
+    } catch (RuntimeException e) {
+      s_logger.warn("Couldn't fetch {} values from {}: {}", new Object[] {identifiers.size(), endPoint, e.getMessage() });
+      s_logger.debug("Caught exception", e);
+      peerUnavailable(key);
+      return Collections.emptyMap();
+    }
+    final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
+    final List<FudgeMsg> values = response.getData();
+    int i = 0;
+    for (Long identifier : identifiers) {
+      final FudgeMsg value = values.get(i++);
+      if (!value.isEmpty()) {
+        result.put(identifier, value);
+      }
+    }
+    return result;
+  }
+
+  private Peer getPeer(final String key, final FudgeMsg endPoint) {
+    Peer peer = _peers.get(key);
+    if (peer == null) {
+      peer = new Peer(openConnection(endPoint));
+      if (getPeerTimeoutMillis() > 0) {
+        peer._client.setTimeoutInMilliseconds(getPeerTimeoutMillis());
+      }
+      final Peer existing = _peers.putIfAbsent(key, peer);
+      if (existing != null) {
+        peer.close();
+        peer = existing;
+      }
+    }
+    return peer;
+  }
+
+  private void peerUnavailable(final String key) {
+    _unavailable.put(key, System.currentTimeMillis());
+    final Peer peer = _peers.remove(key);
+    if (peer != null) {
+      peer.close();
+    }
+  }
+
+  /**
+   * Opens a connection to another node.
+   *
+   * @param endPoint the end-point description of the node, not null
+   * @return the connection, not null
+   */
+  protected FudgeConnection openConnection(final FudgeMsg endPoint) {
+    if (AbstractServerSocketProcess.TYPE_VALUE.equals(endPoint.getString(AbstractServerSocketProcess.TYPE_KEY))) {
+      final SocketFudgeConnection connection = (getExecutorService() != null) ? new SocketFudgeConnection(getDirectory().getFudgeContext(), getExecutorService())
+          : new SocketFudgeConnection(getDirectory().getFudgeContext());
+      connection.setServer(endPoint);
+      return connection;
+    }
+    throw new IllegalArgumentException("Don't know how to create end-point " + endPoint);
+  }
+
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Shared data store for a calculation node that exchanges values directly with other nodes rather than through the
+ * central store. These are created by a {@link PeerFudgeMessageStoreFactory}.
+ * <p>
+ * Values written are held in a local store, served to other nodes by a {@link PeerFudgeMessageStoreServer}, and their
+ * location published to the directory. Values read are taken from the local store, then from the nodes holding them,
+ * and then from the central store. Values the directory has no location for are fetched from the central store at
+ * once, in parallel with fetching the others from the nodes if an executor service is available. With write-through
+ * enabled, values are also written to the central store so that they remain available when the node holding them
+ * fails. Without it, the central store will request values from the nodes when it needs them.
+ */
+public class PeerFudgeMessageStore implements FudgeMessageStore {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(PeerFudgeMessageStore.class);
+
+  private final FudgeMessageStore _local;
+  private final FudgeMessageStore _central;
+  private final PeerCacheClient _peers;
+  private final ViewComputationCacheKey _cacheKey;
+  private final boolean _writeThrough;
+  private final ExecutorService _executorService;
+
+  public PeerFudgeMessageStore(final FudgeMessageStore local, final FudgeMessageStore central, final PeerCacheClient peers, final ViewComputationCacheKey cacheKey,
+      final boolean writeThrough) {
+    this(local, central, peers, cacheKey, writeThrough, null);
+  }
+
+  public PeerFudgeMessageStore(final FudgeMessageStore local, final FudgeMessageStore central, final PeerCacheClient peers, final ViewComputationCacheKey cacheKey,
+      final boolean writeThrough, final ExecutorService executorService) {
+    ArgumentChecker.notNull(local, "local");
+    ArgumentChecker.notNull(central, "central");
+    ArgumentChecker.notNull(peers, "peers");
+    ArgumentChecker.notNull(cacheKey, "cacheKey");
+    _local = local;
+    _central = central;
+    _peers = peers;
+    _cacheKey = cacheKey;
+    _writeThrough = writeThrough;
+    _executorService = executorService;
+  }
+
+  /**
+   * Returns the store holding the values written by this node.
+   *
+   * @return the local store, not null
+   */
+  protected FudgeMessageStore getLocal() {
+    return _local;
+  }
+
+  /**
+   * Returns the central store.
+   *
+   * @return the central store, not null
+   */
+  protected FudgeMessageStore getCentral() {
+    return _central;
+  }
+
+  protected PeerCacheClient getPeers() {
+    return _peers;
+  }
+
+  protected ViewComputationCacheKey getCacheKey() {
+    return _cacheKey;
+  }
+
+  public boolean isWriteThrough() {
+    return _writeThrough;
+  }
+
+  /**
+   * Returns the executor service used to fetch values from the central store while others are fetched from the nodes.
+   *
+   * @return the executor service, or null to fetch them one after the other
+   */
+  public ExecutorService getExecutorService() {
+    return _executorService;
+  }
+
+  @Override
+  public void delete() {
+    getLocal().delete();
+    getCentral().delete();
+  }
+
+  @Override
+  public FudgeMsg get(final long identifier) {
+    final FudgeMsg data = getLocal().get(identifier);
+    if (data != null) {
+      return data;
+    }
+    return getRemote(Collections.singletonList(identifier)).get(identifier);
+  }
+
+  @Override
+  public Map<Long, FudgeMsg> get(final Collection<Long> identifiers) {
+    final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>(getLocal().get(identifiers));
+    if (result.size() < identifiers.size()) {
+      final List<Long> missing = new ArrayList<Long>(identifiers.size() - result.size());
+      for (Long identifier : identifiers) {
+        if (!result.containsKey(identifier)) {
+          missing.add(identifier);
+        }
+      }
+      result.putAll(getRemote(missing));
+    }
+    return result;
+  }
+
+  private Map<Long, FudgeMsg> getRemote(final List<Long> identifiers) {
+    Map<FudgeMsg, List<Long>> located;
+    try {
+      located = getPeers().locateValues(getCacheKey(), identifiers);
+    } catch (RuntimeException e) {
+      s_logger.warn("Couldn't locate {} values: {}", identifiers.size(), e.getMessage());
+      s_logger.debug("Caught exception", e);
+      located = Collections.emptyMap();
+    }
+    if (located.isEmpty()) {
+      s_logger.debug("Fetching {} values from central store", identifiers.size());
+      return getCentral(identifiers);
+    }
+    final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
+    // Values without a location are fetched from the central store without waiting for the nodes
+    final List<Long> unlocated = missing(identifiers, located);
+    Future<Map<Long, FudgeMsg>> central = null;
+    if (!unlocated.isEmpty()) {
+      s_logger.debug("Fetching {} of {} values from central store", unlocated.size(), identifiers.size());
+      if (getExecutorService() != null) {
+        central = getExecutorService().submit(new Callable<Map<Long, FudgeMsg>>() {
+          @Override
+          public Map<Long, FudgeMsg> call() {
+            return getCentral(unlocated);
+          }
+        });
+      } else {
+        result.putAll(getCentral(unlocated));
+      }
+    }
+    for (Map.Entry<FudgeMsg, List<Long>> peer : located.entrySet()) {
+      result.putAll(getPeers().getPeerValues(getCacheKey(), peer.getKey(), peer.getValue()));
+    }
+    if (central != null) {
+      try {
+        result.putAll(central.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new OpenGammaRuntimeException("Interrupted fetching values from central store", e);
+      } catch (ExecutionException e) {
+        throw new OpenGammaRuntimeException("Couldn't fetch values from central store", e.getCause());
+      }
+    }
+    if (result.size() < identifiers.size()) {
+      // Values the nodes failed to return
+      final List<Long> missing = new ArrayList<Long>(identifiers.size() - result.size());
+      for (List<Long> peerIdentifiers : located.values()) {
+        for (Long identifier : peerIdentifiers) {
+          if (!result.containsKey(identifier)) {
+            missing.add(identifier);
+          }
+        }
+      }
+      if (!missing.isEmpty()) {
+        s_logger.debug("Fetching {} of {} values from central store", missing.size(), identifiers.size());
+        result.putAll(getCentral(missing));
+      }
+    }
+    return result;
+  }
+
+  private static List<Long> missing(final List<Long> identifiers, final Map<FudgeMsg, List<Long>> located) {
+    final Set<Long> locatedIdentifiers = new HashSet<Long>();
+    for (List<Long> peerIdentifiers : located.values()) {
+      locatedIdentifiers.addAll(peerIdentifiers);
+    }
+    final List<Long> missing = new ArrayList<Long>(identifiers.size() - locatedIdentifiers.size());
+    for (Long identifier : identifiers) {
+      if (!locatedIdentifiers.contains(identifier)) {
+        missing.add(identifier);
+      }
+    }
+    return missing;
+  }
+
+  private Map<Long, FudgeMsg> getCentral(final List<Long> identifiers) {
+    if (identifiers.size() == 1) {
+      final Long identifier = identifiers.get(0);
+      final FudgeMsg data = getCentral().get(identifier);
+      return (data != null) ? Collections.singletonMap(identifier, data) : Collections.<Long, FudgeMsg>emptyMap();
+    } else {
+      return getCentral().get(identifiers);
+    }
+  }
+
+  private boolean publish(final Collection<Long> identifiers) {
+    try {
+      return getPeers().publishLocalValues(getCacheKey(), identifiers);
+    } catch (RuntimeException e) {
+      s_logger.warn("Couldn't publish location of {} values: {}", identifiers.size(), e.getMessage());
+      s_logger.debug("Caught exception", e);
+      return false;
+    }
+  }
+
+  @Override
+  public void put(final long identifier, final FudgeMsg data) {
+    getLocal().put(identifier, data);
+    if (!publish(Collections.singleton(identifier)) || isWriteThrough()) {
+      getCentral().put(identifier, data);
+    }
+  }
+
+  @Override
+  public void put(final Map<Long, FudgeMsg> data) {
+    getLocal().put(data);
+    if (!publish(data.keySet()) || isWriteThrough()) {
+      getCentral().put(data);
+    }
+  }
+
+  /**
+   * Values are fetched from the nodes holding them when they are read, so the hint is ignored.
+   *
+   * @param identifiers identifiers that will be queried
+   */
+  @Override
+  public void prefetch(final Collection<Long> identifiers) {
+    // No-op
+  }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Creates {@link PeerFudgeMessageStore} instances, remembering them so that a {@link PeerFudgeMessageStoreServer}
+ * can serve their local values to other nodes.
+ */
+public class PeerFudgeMessageStoreFactory implements FudgeMessageStoreFactory {
+
+  private final FudgeMessageStoreFactory _local;
+  private final FudgeMessageStoreFactory _central;
+  private final PeerCacheClient _peers;
+  private final ConcurrentMap<ViewComputationCacheKey, PeerFudgeMessageStore> _stores = new ConcurrentHashMap<ViewComputationCacheKey, PeerFudgeMessageStore>();
+  private boolean _writeThrough = true;
+  private ExecutorService _executorService;
+
+  /**
+   * Creates a new factory.
+   *
+   * @param local the factory for the stores holding values written by this node, not null. This must not
+   *              create stores that conflict with the node's private data stores.
+   * @param central the factory for the central stores, not null
+   * @param peers the client for communicating with the directory and other nodes, not null
+   */
+  public PeerFudgeMessageStoreFactory(final FudgeMessageStoreFactory local, final FudgeMessageStoreFactory central, final PeerCacheClient peers) {
+    ArgumentChecker.notNull(local, "local");
+    ArgumentChecker.notNull(central, "central");
+    ArgumentChecker.notNull(peers, "peers");
+    _local = local;
+    _central = central;
+    _peers = peers;
+  }
+
+  protected FudgeMessageStoreFactory getLocal() {
+    return _local;
+  }
+
+  protected FudgeMessageStoreFactory getCentral() {
+    return _central;
+  }
+
+  protected PeerCacheClient getPeers() {
+    return _peers;
+  }
+
+  /**
+   * Sets whether values are also written to the central store. This is enabled by default so that values remain
+   * available if the node holding them fails.
+   *
+   * @param writeThrough true to write values to the central store, false to only write them locally
+   */
+  public void setWriteThrough(final boolean writeThrough) {
+    _writeThrough = writeThrough;
+  }
+
+  public boolean isWriteThrough() {
+    return _writeThrough;
+  }
+
+  /**
+   * Sets the executor service used to fetch values from the central store in parallel with fetching others from the
+   * nodes holding them.
+   *
+   * @param executorService the executor service, null to fetch them one after the other
+   */
+  public void setExecutorService(final ExecutorService executorService) {
+    _executorService = executorService;
+  }
+
+  public ExecutorService getExecutorService() {
+    return _executorService;
+  }
+
+  /**
+   * Returns the store previously created for a cache.
+   *
+   * @param cacheKey the cache key, not null
+   * @return the store, or null if there is none
+   */
+  protected PeerFudgeMessageStore findMessageStore(final ViewComputationCacheKey cacheKey) {
+    return _stores.get(cacheKey);
+  }
+
+  @Override
+  public FudgeMessageStore createMessageStore(final ViewComputationCacheKey cacheKey) {
+    final PeerFudgeMessageStore store = new PeerFudgeMessageStore(getLocal().createMessageStore(cacheKey), getCentral().createMessageStore(cacheKey), getPeers(),
+        cacheKey, isWriteThrough(), getExecutorService()) {
+      @Override
+      public void delete() {
+        _stores.remove(cacheKey, this);
+        super.delete();
+      }
+    };
+    _stores.put(cacheKey, store);
+    return store;
+  }
+
+}
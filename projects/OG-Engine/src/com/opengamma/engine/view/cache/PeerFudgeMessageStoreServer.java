@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.fudgemsg.mapping.FudgeSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.engine.view.cache.msg.CacheMessage;
+import com.opengamma.engine.view.cache.msg.CacheMessageVisitor;
+import com.opengamma.engine.view.cache.msg.GetResponse;
+import com.opengamma.engine.view.cache.msg.PeerGetRequest;
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.FudgeConnectionReceiver;
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Server running on a calculation node to serve the values held by its {@link PeerFudgeMessageStore} instances to
+ * other nodes. Values not held are returned as empty messages so that the requesting node can fall back to the
+ * central store.
+ */
+public class PeerFudgeMessageStoreServer implements FudgeConnectionReceiver {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(PeerFudgeMessageStoreServer.class);
+
+  private final PeerFudgeMessageStoreFactory _stores;
+
+  public PeerFudgeMessageStoreServer(final PeerFudgeMessageStoreFactory stores) {
+    ArgumentChecker.notNull(stores, "stores");
+    _stores = stores;
+  }
+
+  protected PeerFudgeMessageStoreFactory getStores() {
+    return _stores;
+  }
+
+  private class MessageHandler extends CacheMessageVisitor implements FudgeMessageReceiver {
+
+    private final FudgeConnection _connection;
+
+    public MessageHandler(final FudgeConnection connection) {
+      _connection = connection;
+    }
+
+    private FudgeConnection getConnection() {
+      return _connection;
+    }
+
+    @Override
+    protected <T extends CacheMessage> T visitUnexpectedMessage(final CacheMessage message) {
+      s_logger.warn("Unexpected message - {}", message);
+      return null;
+    }
+
+    @Override
+    protected GetResponse visitPeerGetRequest(final PeerGetRequest request) {
+      final List<Long> identifiers = request.getIdentifier();
+      final List<FudgeMsg> response = new ArrayList<FudgeMsg>(identifiers.size());
+      final PeerFudgeMessageStore store = getStores().findMessageStore(new ViewComputationCacheKey(request.getViewCycleId(), request.getCalculationConfigurationName()));
+      if (store == null) {
+        s_logger.debug("No local store for {} values requested", identifiers.size());
+        for (int i = 0; i < identifiers.size(); i++) {
+          response.add(FudgeContext.EMPTY_MESSAGE);
+        }
+      } else if (identifiers.size() == 1) {
+        final FudgeMsg data = store.getLocal().get(identifiers.get(0));
+        response.add((data != null) ? data : FudgeContext.EMPTY_MESSAGE);
+      } else {
+        final Map<Long, FudgeMsg> data = store.getLocal().get(identifiers);
+        for (Long identifier : identifiers) {
+          final FudgeMsg value = data.get(identifier);
+          response.add((value != null) ? value : FudgeContext.EMPTY_MESSAGE);
+        }
+      }
+      return new GetResponse(response);
+    }
+
+    @Override
+    public void messageReceived(final FudgeContext context, final FudgeMsgEnvelope message) {
+      final FudgeDeserializer deserializer = new FudgeDeserializer(context);
+      final CacheMessage request = deserializer.fudgeMsgToObject(CacheMessage.class, message.getMessage());
+      CacheMessage response = request.accept(this);
+      if (response == null) {
+        if (request.getCorrelationId() != null) {
+          response = new CacheMessage();
+        }
+      }
+      if (response != null) {
+        response.setCorrelationId(request.getCorrelationId());
+        final FudgeSerializer sctx = new FudgeSerializer(context);
+        final MutableFudgeMsg responseMsg = sctx.objectToFudgeMsg(response);
+        getConnection().getFudgeMessageSender().send(responseMsg);
+      }
+    }
+
+  }
+
+  @Override
+  public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope message, final FudgeConnection connection) {
+    final MessageHandler handler = new MessageHandler(connection);
+    handler.messageReceived(fudgeContext, message);
+    connection.setFudgeMessageReceiver(handler);
+  }
+
+}
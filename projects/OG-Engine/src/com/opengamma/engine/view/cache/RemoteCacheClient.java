@@ -7,9 +7,13 @@ package com.opengamma.engine.view.cache;
 
 import org.fudgemsg.FudgeContext;
 import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
 import org.fudgemsg.mapping.FudgeDeserializer;
 import org.fudgemsg.mapping.FudgeSerializer;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.opengamma.engine.view.cache.msg.CacheMessage;
 import com.opengamma.engine.view.cache.msg.SlaveChannelMessage;
 import com.opengamma.transport.FudgeConnection;
@@ -22,6 +26,9 @@ import com.opengamma.util.ArgumentChecker;
  * has a "get" and "put" channel. Although equal priority, this gives two blocking queues to isolate
  * operations that query the cache from those that update or control it. This allows, for example,
  * cache writes from a previous job to not delay loads needed by the next job.
+ * <p>
+ * Requests on the "get" channel may also be sent asynchronously, pipelining any number of outstanding
+ * requests on the one connection.
  */
 public class RemoteCacheClient {
 
@@ -50,6 +57,37 @@ public class RemoteCacheClient {
       return response;
     }
 
+    private <Request extends CacheMessage, Response extends CacheMessage> ListenableFuture<Response> sendMessageAsync(final Request request,
+        final Class<Response> responseClass) {
+      final FudgeSerializer scontext = new FudgeSerializer(getMessageSender().getFudgeContext());
+      final long correlationId = getNextCorrelationId();
+      request.setCorrelationId(correlationId);
+      final SettableFuture<Response> response = SettableFuture.create();
+      response.addListener(new Runnable() {
+        @Override
+        public void run() {
+          if (response.isCancelled()) {
+            cancelRequest(correlationId);
+          }
+        }
+      }, MoreExecutors.sameThreadExecutor());
+      try {
+        sendRequest(FudgeSerializer.addClassHeader(scontext.objectToFudgeMsg(request), request.getClass(), CacheMessage.class), correlationId, new FudgeMessageReceiver() {
+          @Override
+          public void messageReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope msgEnvelope) {
+            try {
+              response.set(new FudgeDeserializer(fudgeContext).fudgeMsgToObject(responseClass, msgEnvelope.getMessage()));
+            } catch (RuntimeException e) {
+              response.setException(e);
+            }
+          }
+        });
+      } catch (RuntimeException e) {
+        response.setException(e);
+      }
+      return response;
+    }
+
     private <Message extends CacheMessage> void postMessage(final Message message) {
       final FudgeSerializer scontext = new FudgeSerializer(getMessageSender().getFudgeContext());
       sendMessage(FudgeSerializer.addClassHeader(scontext.objectToFudgeMsg(message), message.getClass(), CacheMessage.class));
@@ -97,10 +135,51 @@ public class RemoteCacheClient {
     return _fudgeGets.sendMessage(request, expectedResponse);
   }
 
+  /**
+   * Sends a message on the "get" channel without waiting for the response. Any number of requests may be outstanding
+   * at once. Cancelling the future discards the response.
+   * 
+   * @param <T> the response type
+   * @param request the request message, not null
+   * @param expectedResponse the response type, not null
+   * @return the future response, not null
+   */
+  protected <T extends CacheMessage> ListenableFuture<T> sendGetMessageAsync(final CacheMessage request, final Class<T> expectedResponse) {
+    return _fudgeGets.sendMessageAsync(request, expectedResponse);
+  }
+
+  /**
+   * Returns the time to wait for the response to a request.
+   * 
+   * @return the timeout in milliseconds
+   */
+  protected long getTimeoutInMilliseconds() {
+    return _fudgeGets.getTimeoutInMilliseconds();
+  }
+
+  /**
+   * Sets the time to wait for the response to a request.
+   *
+   * @param timeoutMilliseconds the timeout in milliseconds
+   */
+  protected void setTimeoutInMilliseconds(final long timeoutMilliseconds) {
+    _fudgeGets.setTimeoutInMilliseconds(timeoutMilliseconds);
+    _fudgePuts.setTimeoutInMilliseconds(timeoutMilliseconds);
+  }
+
   protected <T extends CacheMessage> T sendPutMessage(final CacheMessage request, final Class<T> expectedResponse) {
     return _fudgePuts.sendMessage(request, expectedResponse);
   }
 
+  /**
+   * Sends a message on the "put" channel that has no response.
+   *
+   * @param message the message, not null
+   */
+  protected void postPutMessage(final CacheMessage message) {
+    _fudgePuts.postMessage(message);
+  }
+
   protected FudgeContext getFudgeContext() {
     return _fudgeGets.getMessageSender().getFudgeContext();
   }
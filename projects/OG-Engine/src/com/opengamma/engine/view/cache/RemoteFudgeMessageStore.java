@@ -11,9 +11,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.fudgemsg.FudgeMsg;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.opengamma.engine.view.cache.msg.CacheMessage;
 import com.opengamma.engine.view.cache.msg.DeleteRequest;
 import com.opengamma.engine.view.cache.msg.GetRequest;
@@ -22,11 +28,44 @@ import com.opengamma.engine.view.cache.msg.PutRequest;
 
 /**
  * Client to a {@link FudgeMessageStoreServer}. These are created by a {@link RemoteFudgeMessageStoreFactory}.
+ * <p>
+ * Concurrent reads of the same identifiers are coalesced into a single request. Values requested by {@link #prefetch}
+ * are held until they are first read.
  */
 public class RemoteFudgeMessageStore implements FudgeMessageStore {
 
   private final RemoteCacheClient _client;
   private final ViewComputationCacheKey _cacheKey;
+  private final CoalescingRequests<Long, FudgeMsg> _getRequests = new CoalescingRequests<Long, FudgeMsg>() {
+
+    @Override
+    protected ListenableFuture<Map<Long, FudgeMsg>> request(final List<Long> identifiers) {
+      final GetRequest request = new GetRequest(getCacheKey().getViewCycleId(), getCacheKey().getCalculationConfigurationName(), identifiers);
+      return Futures.transform(getRemoteCacheClient().sendGetMessageAsync(request, GetResponse.class), new Function<GetResponse, Map<Long, FudgeMsg>>() {
+        @Override
+        public Map<Long, FudgeMsg> apply(final GetResponse response) {
+          final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
+          final List<FudgeMsg> values = response.getData();
+          int i = 0;
+          for (Long identifier : identifiers) {
+            result.put(identifier, values.get(i++));
+          }
+          return result;
+        }
+      });
+    }
+
+    @Override
+    protected long getTimeoutMillis() {
+      return getRemoteCacheClient().getTimeoutInMilliseconds();
+    }
+
+  };
+  /**
+   * The responses to prefetch requests that have not yet been read. A reader takes the future out of the map, so a
+   * value returned by a read is never held afterwards even if its response arrives later.
+   */
+  private final ConcurrentMap<Long, ListenableFuture<FudgeMsg>> _prefetched = new ConcurrentHashMap<Long, ListenableFuture<FudgeMsg>>();
 
   public RemoteFudgeMessageStore(final RemoteCacheClient client, final ViewComputationCacheKey cacheKey) {
     _client = client;
@@ -43,36 +82,105 @@ public class RemoteFudgeMessageStore implements FudgeMessageStore {
 
   @Override
   public void delete() {
+    _prefetched.clear();
     // [ENG-256] Don't need the delete messages if we propogate at the releaseCaches level
     final DeleteRequest request = new DeleteRequest(getCacheKey().getViewCycleId(), getCacheKey().getCalculationConfigurationName());
     getRemoteCacheClient().sendPutMessage(request, CacheMessage.class);
   }
 
+  /**
+   * Takes the prefetched value of an identifier if its response has arrived.
+   *
+   * @param identifier the identifier
+   * @return the value, or null if it was not prefetched, is still in flight or was not available
+   */
+  private FudgeMsg takePrefetched(final Long identifier) {
+    final ListenableFuture<FudgeMsg> future = _prefetched.remove(identifier);
+    if ((future == null) || !future.isDone()) {
+      // A request still in flight is joined by the coalescing read
+      return null;
+    }
+    final FudgeMsg data;
+    try {
+      data = future.get();
+    } catch (Exception e) {
+      return null;
+    }
+    return data.isEmpty() ? null : data;
+  }
+
   @Override
   public FudgeMsg get(long identifier) {
-    final GetRequest request = new GetRequest(getCacheKey().getViewCycleId(), getCacheKey()
-        .getCalculationConfigurationName(), Collections.singleton(identifier));
-    final GetResponse response = getRemoteCacheClient().sendGetMessage(request, GetResponse.class);
-    final FudgeMsg data = response.getData().get(0);
+    FudgeMsg data = takePrefetched(identifier);
+    if (data == null) {
+      data = _getRequests.get(identifier);
+    }
     return data.isEmpty() ? null : data;
   }
 
   @Override
   public Map<Long, FudgeMsg> get(Collection<Long> identifiers) {
-    final GetRequest request = new GetRequest(getCacheKey().getViewCycleId(), getCacheKey()
-        .getCalculationConfigurationName(), identifiers);
-    final GetResponse response = getRemoteCacheClient().sendGetMessage(request, GetResponse.class);
     final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
-    final List<FudgeMsg> values = response.getData();
-    int i = 0;
-    for (Long identifier : request.getIdentifier()) {
-      result.put(identifier, values.get(i++));
+    List<Long> missing = null;
+    for (Long identifier : identifiers) {
+      final FudgeMsg data = takePrefetched(identifier);
+      if (data != null) {
+        result.put(identifier, data);
+      } else {
+        if (missing == null) {
+          missing = new ArrayList<Long>(identifiers.size());
+        }
+        missing.add(identifier);
+      }
+    }
+    if (missing != null) {
+      result.putAll(_getRequests.get(missing));
     }
     return result;
   }
 
+  /**
+   * Requests the values in the background. Values that are available are held until they are read; values that have
+   * not yet been written to the shared store are discarded and fetched again when they are read.
+   *
+   * @param identifiers the identifiers to fetch, not null
+   */
+  @Override
+  public void prefetch(final Collection<Long> identifiers) {
+    final List<Long> missing = new ArrayList<Long>(identifiers.size());
+    for (Long identifier : identifiers) {
+      if (!_prefetched.containsKey(identifier)) {
+        missing.add(identifier);
+      }
+    }
+    if (missing.isEmpty()) {
+      return;
+    }
+    for (final Map.Entry<Long, ListenableFuture<FudgeMsg>> future : _getRequests.getAsync(missing).entrySet()) {
+      if (_prefetched.putIfAbsent(future.getKey(), future.getValue()) != null) {
+        continue;
+      }
+      future.getValue().addListener(new Runnable() {
+        @Override
+        public void run() {
+          boolean available;
+          try {
+            available = !future.getValue().get().isEmpty();
+          } catch (Exception e) {
+            available = false;
+          }
+          if (!available) {
+            // The value will be requested again when it is read; only drop the entry if no reader has taken it
+            _prefetched.remove(future.getKey(), future.getValue());
+          }
+        }
+      }, MoreExecutors.sameThreadExecutor());
+    }
+  }
+
   @Override
   public void put(long identifier, FudgeMsg data) {
+    _prefetched.remove(identifier);
     final PutRequest request = new PutRequest(getCacheKey().getViewCycleId(), getCacheKey()
         .getCalculationConfigurationName(), Collections.singleton(identifier),
         Collections.singleton(data));
@@ -84,6 +192,7 @@ public class RemoteFudgeMessageStore implements FudgeMessageStore {
     final List<Long> identifiers = new ArrayList<Long>(data.size());
     final List<FudgeMsg> values = new ArrayList<FudgeMsg>(data.size());
     for (Map.Entry<Long, FudgeMsg> entry : data.entrySet()) {
+      _prefetched.remove(entry.getKey());
       identifiers.add(entry.getKey());
       values.add(entry.getValue());
     }
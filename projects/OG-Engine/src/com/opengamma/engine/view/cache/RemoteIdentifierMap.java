@@ -6,11 +6,13 @@
 package com.opengamma.engine.view.cache;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.cache.msg.IdentifierLookupRequest;
 import com.opengamma.engine.view.cache.msg.IdentifierLookupResponse;
@@ -19,10 +21,64 @@ import com.opengamma.engine.view.cache.msg.SpecificationLookupResponse;
 
 /**
  * Client to a {@link IdentifierMapServer}.
+ * <p>
+ * Concurrent lookups of the same specifications or identifiers are coalesced into a single request.
  */
 public class RemoteIdentifierMap implements IdentifierMap {
 
   private final RemoteCacheClient _client;
+  private final CoalescingRequests<ValueSpecification, Long> _identifierRequests = new CoalescingRequests<ValueSpecification, Long>() {
+
+    @Override
+    protected ListenableFuture<Map<ValueSpecification, Long>> request(final List<ValueSpecification> specs) {
+      final IdentifierLookupRequest request = new IdentifierLookupRequest(specs);
+      return Futures.transform(getRemoteCacheClient().sendGetMessageAsync(request, IdentifierLookupResponse.class),
+          new Function<IdentifierLookupResponse, Map<ValueSpecification, Long>>() {
+            @Override
+            public Map<ValueSpecification, Long> apply(final IdentifierLookupResponse response) {
+              final List<Long> identifiers = response.getIdentifier();
+              final Map<ValueSpecification, Long> identifierMap = new HashMap<ValueSpecification, Long>();
+              int i = 0;
+              for (ValueSpecification spec : request.getSpecification()) {
+                identifierMap.put(spec, identifiers.get(i++));
+              }
+              return identifierMap;
+            }
+          });
+    }
+
+    @Override
+    protected long getTimeoutMillis() {
+      return getRemoteCacheClient().getTimeoutInMilliseconds();
+    }
+
+  };
+  private final CoalescingRequests<Long, ValueSpecification> _specificationRequests = new CoalescingRequests<Long, ValueSpecification>() {
+
+    @Override
+    protected ListenableFuture<Map<Long, ValueSpecification>> request(final List<Long> identifiers) {
+      final SpecificationLookupRequest request = new SpecificationLookupRequest(identifiers);
+      return Futures.transform(getRemoteCacheClient().sendGetMessageAsync(request, SpecificationLookupResponse.class),
+          new Function<SpecificationLookupResponse, Map<Long, ValueSpecification>>() {
+            @Override
+            public Map<Long, ValueSpecification> apply(final SpecificationLookupResponse response) {
+              final List<ValueSpecification> specifications = response.getSpecification();
+              final Map<Long, ValueSpecification> specificationMap = new HashMap<Long, ValueSpecification>();
+              int i = 0;
+              for (Long identifier : request.getIdentifier()) {
+                specificationMap.put(identifier, specifications.get(i++));
+              }
+              return specificationMap;
+            }
+          });
+    }
+
+    @Override
+    protected long getTimeoutMillis() {
+      return getRemoteCacheClient().getTimeoutInMilliseconds();
+    }
+
+  };
 
   public RemoteIdentifierMap(final RemoteCacheClient client) {
     _client = client;
@@ -34,42 +90,22 @@ public class RemoteIdentifierMap implements IdentifierMap {
 
   @Override
   public long getIdentifier(final ValueSpecification spec) {
-    final IdentifierLookupRequest request = new IdentifierLookupRequest(Collections.singleton(spec));
-    final IdentifierLookupResponse response = getRemoteCacheClient().sendGetMessage(request, IdentifierLookupResponse.class);
-    return response.getIdentifier().get(0);
+    return _identifierRequests.get(spec);
   }
 
   @Override
   public Map<ValueSpecification, Long> getIdentifiers(Collection<ValueSpecification> specs) {
-    final IdentifierLookupRequest request = new IdentifierLookupRequest(specs);
-    final IdentifierLookupResponse response = getRemoteCacheClient().sendGetMessage(request, IdentifierLookupResponse.class);
-    final List<Long> identifiers = response.getIdentifier();
-    final Map<ValueSpecification, Long> identifierMap = new HashMap<ValueSpecification, Long>();
-    int i = 0;
-    for (ValueSpecification spec : request.getSpecification()) {
-      identifierMap.put(spec, identifiers.get(i++));
-    }
-    return identifierMap;
+    return _identifierRequests.get(specs);
   }
 
   @Override
   public ValueSpecification getValueSpecification(long identifier) {
-    final SpecificationLookupRequest request = new SpecificationLookupRequest(Collections.singleton(identifier));
-    final SpecificationLookupResponse response = getRemoteCacheClient().sendGetMessage(request, SpecificationLookupResponse.class);
-    return response.getSpecification().get(0);
+    return _specificationRequests.get(identifier);
   }
 
   @Override
   public Map<Long, ValueSpecification> getValueSpecifications(Collection<Long> identifiers) {
-    final SpecificationLookupRequest request = new SpecificationLookupRequest(identifiers);
-    final SpecificationLookupResponse response = getRemoteCacheClient().sendGetMessage(request, SpecificationLookupResponse.class);
-    final List<ValueSpecification> specifications = response.getSpecification();
-    final Map<Long, ValueSpecification> specificationMap = new HashMap<Long, ValueSpecification>();
-    int i = 0;
-    for (Long identifier : request.getIdentifier()) {
-      specificationMap.put(identifier, specifications.get(i++));
-    }
-    return specificationMap;
+    return _specificationRequests.get(identifiers);
   }
 
 }
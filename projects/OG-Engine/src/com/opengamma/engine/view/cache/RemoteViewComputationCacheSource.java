@@ -5,6 +5,9 @@
  */
 package com.opengamma.engine.view.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +33,8 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
 
   private static final Logger s_logger = LoggerFactory.getLogger(RemoteViewComputationCacheSource.class);
 
+  private final PeerFudgeMessageStoreFactory _peerStores;
+
   public RemoteViewComputationCacheSource(final RemoteCacheClient client,
       final FudgeMessageStoreFactory privateDataStoreFactory, final CacheManager cacheManager) {
     this(client, privateDataStoreFactory, client.getFudgeContext(), cacheManager);
@@ -53,6 +58,7 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
       final CacheManager cacheManager) {
     super(createIdentifierMap(client), fudgeContext, privateDataStoreFactory, createFudgeMessageStoreFactory(client,
         cacheManager, -1));
+    _peerStores = null;
     client.setAsynchronousMessageReceiver(this);
   }
 
@@ -61,6 +67,28 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
       final CacheManager cacheManager, final int maxLocalCachedElements) {
     super(createIdentifierMap(client), fudgeContext, privateDataStoreFactory, createFudgeMessageStoreFactory(client,
         cacheManager, maxLocalCachedElements));
+    _peerStores = null;
+    client.setAsynchronousMessageReceiver(this);
+  }
+
+  /**
+   * Creates a source that exchanges shared values directly with other calculation nodes, only using the
+   * {@link ViewComputationCacheServer} as a directory and a fallback store. The peer data store factory should
+   * also be used to construct a {@link PeerFudgeMessageStoreServer} so that other nodes can fetch the values
+   * written here.
+   * 
+   * @param client the connection to a {@link ViewComputationCacheServer}
+   * @param privateDataStoreFactory the private data store
+   * @param cacheManager the EH cache manager to use for caching shared values
+   * @param peerDataStoreFactory the shared data store, typically using a {@link RemoteFudgeMessageStoreFactory}
+   *                             on the same client for its central stores
+   */
+  public RemoteViewComputationCacheSource(final RemoteCacheClient client,
+      final FudgeMessageStoreFactory privateDataStoreFactory, final CacheManager cacheManager,
+      final PeerFudgeMessageStoreFactory peerDataStoreFactory) {
+    super(createIdentifierMap(client), client.getFudgeContext(), privateDataStoreFactory, new CachingFudgeMessageStoreFactory(
+        peerDataStoreFactory, cacheManager));
+    _peerStores = peerDataStoreFactory;
     client.setAsynchronousMessageReceiver(this);
   }
 
@@ -95,22 +123,21 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
       if (cache != null) {
         final List<Long> identifiers = message.getIdentifier();
         s_logger.debug("Searching for {} identifiers to send to shared cache", identifiers.size());
-        if (identifiers.size() == 1) {
-          final long identifier = identifiers.get(0);
-          final FudgeMsg data = cache.getPrivateDataStore().get(identifier);
-          if (data != null) {
-            s_logger.debug("Found identifier {} in private cache", identifier);
-            cache.getSharedDataStore().put(identifier, data);
-          }
+        final PeerFudgeMessageStore peerStore = (_peerStores != null) ? _peerStores.findMessageStore(new ViewComputationCacheKey(message.getViewCycleId(), message
+            .getCalculationConfigurationName())) : null;
+        if (peerStore == null) {
+          sendToSharedCache(identifiers, cache.getPrivateDataStore(), cache.getSharedDataStore());
         } else {
-          final Map<Long, FudgeMsg> data = cache.getPrivateDataStore().get(identifiers);
-          if (data.size() == 1) {
-            s_logger.debug("Found 1 of {} identifiers in private cache", identifiers.size());
-            final Map.Entry<Long, FudgeMsg> entry = data.entrySet().iterator().next();
-            cache.getSharedDataStore().put(entry.getKey(), entry.getValue());
-          } else if (data.size() > 1) {
-            s_logger.debug("Found {} of {} identifiers in private cache", data.size(), identifiers.size());
-            cache.getSharedDataStore().put(data);
+          // Values written by this node may not have been written to the central store
+          final Collection<Long> found = sendToSharedCache(identifiers, cache.getPrivateDataStore(), peerStore.getCentral());
+          if (found.size() < identifiers.size()) {
+            final List<Long> missing = new ArrayList<Long>(identifiers.size() - found.size());
+            for (Long identifier : identifiers) {
+              if (!found.contains(identifier)) {
+                missing.add(identifier);
+              }
+            }
+            sendToSharedCache(missing, peerStore.getLocal(), peerStore.getCentral());
           }
         }
       }
@@ -125,6 +152,30 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
 
   };
 
+  private static Collection<Long> sendToSharedCache(final List<Long> identifiers, final FudgeMessageStore source, final FudgeMessageStore shared) {
+    if (identifiers.size() == 1) {
+      final long identifier = identifiers.get(0);
+      final FudgeMsg data = source.get(identifier);
+      if (data != null) {
+        s_logger.debug("Found identifier {} in local cache", identifier);
+        shared.put(identifier, data);
+        return Collections.singleton(identifier);
+      }
+      return Collections.emptySet();
+    } else {
+      final Map<Long, FudgeMsg> data = source.get(identifiers);
+      if (data.size() == 1) {
+        s_logger.debug("Found 1 of {} identifiers in local cache", identifiers.size());
+        final Map.Entry<Long, FudgeMsg> entry = data.entrySet().iterator().next();
+        shared.put(entry.getKey(), entry.getValue());
+      } else if (data.size() > 1) {
+        s_logger.debug("Found {} of {} identifiers in local cache", data.size(), identifiers.size());
+        shared.put(data);
+      }
+      return data.keySet();
+    }
+  }
+
   // [ENG-256] Override, or register callback handler for releaseCaches so that if it is called by user code we propogate the message to the server and other clients, noting the warning about cascade
   // above
 
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.fudgemsg.FudgeMsg;
+
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Records which calculation node holds each shared value so that other nodes can fetch the value directly
+ * from that node instead of from the central store. Nodes are identified by the end-point description of
+ * their peer server.
+ * <p>
+ * Locations are recorded against the cache they were written to; only the most recently used caches are
+ * remembered so that locations from old cycles are discarded.
+ */
+public class ValueLocationDirectory {
+
+  /**
+   * Default number of caches to remember.
+   */
+  public static final int DEFAULT_MAX_CACHES = 64;
+
+  private final Map<ViewComputationCacheKey, ConcurrentMap<Long, FudgeMsg>> _caches;
+
+  public ValueLocationDirectory() {
+    this(DEFAULT_MAX_CACHES);
+  }
+
+  public ValueLocationDirectory(final int maxCaches) {
+    ArgumentChecker.notNegativeOrZero(maxCaches, "maxCaches");
+    _caches = new LinkedHashMap<ViewComputationCacheKey, ConcurrentMap<Long, FudgeMsg>>(maxCaches * 2, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<ViewComputationCacheKey, ConcurrentMap<Long, FudgeMsg>> eldest) {
+        return size() > maxCaches;
+      }
+
+    };
+  }
+
+  private ConcurrentMap<Long, FudgeMsg> getCache(final ViewComputationCacheKey cacheKey, final boolean create) {
+    synchronized (_caches) {
+      ConcurrentMap<Long, FudgeMsg> cache = _caches.get(cacheKey);
+      if ((cache == null) && create) {
+        cache = new ConcurrentHashMap<Long, FudgeMsg>();
+        _caches.put(cacheKey, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Records the node holding a set of values. Any previous location of the values is replaced.
+   *
+   * @param viewCycleId the view cycle the values were written for, not null
+   * @param calculationConfigurationName the calculation configuration the values were written for, not null
+   * @param identifiers the value identifiers, not null
+   * @param endPoint the end-point description of the node holding the values, not null
+   */
+  public void valuesLocated(final UniqueId viewCycleId, final String calculationConfigurationName, final Collection<Long> identifiers, final FudgeMsg endPoint) {
+    ArgumentChecker.notNull(identifiers, "identifiers");
+    ArgumentChecker.notNull(endPoint, "endPoint");
+    final ConcurrentMap<Long, FudgeMsg> cache = getCache(new ViewComputationCacheKey(viewCycleId, calculationConfigurationName), true);
+    for (Long identifier : identifiers) {
+      cache.put(identifier, endPoint);
+    }
+  }
+
+  /**
+   * Returns the nodes holding a set of values.
+   *
+   * @param viewCycleId the view cycle the values were written for, not null
+   * @param calculationConfigurationName the calculation configuration the values were written for, not null
+   * @param identifiers the value identifiers, not null
+   * @return the end-point descriptions of the nodes holding the values, in the same order as the identifiers with null
+   *         for any value whose location is not known
+   */
+  public List<FudgeMsg> locateValues(final UniqueId viewCycleId, final String calculationConfigurationName, final List<Long> identifiers) {
+    ArgumentChecker.notNull(identifiers, "identifiers");
+    final List<FudgeMsg> result = new ArrayList<FudgeMsg>(identifiers.size());
+    final ConcurrentMap<Long, FudgeMsg> cache = getCache(new ViewComputationCacheKey(viewCycleId, calculationConfigurationName), false);
+    for (Long identifier : identifiers) {
+      result.add((cache != null) ? cache.get(identifier) : null);
+    }
+    return result;
+  }
+
+}
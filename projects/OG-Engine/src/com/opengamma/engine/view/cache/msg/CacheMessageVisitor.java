@@ -45,6 +45,18 @@ public abstract class CacheMessageVisitor {
     return visitIdentifierMapMessage(message);
   }
 
+  protected LocateValueResponse visitLocateValueRequest(final LocateValueRequest message) {
+    return visitIdentifierMapMessage(message);
+  }
+
+  protected CacheMessage visitLocateValueResponse(final LocateValueResponse message) {
+    return visitIdentifierMapMessage(message);
+  }
+
+  protected GetResponse visitPeerGetRequest(final PeerGetRequest message) {
+    return visitBinaryDataStoreMessage(message);
+  }
+
   protected CacheMessage visitPutRequest(final PutRequest message) {
     return visitBinaryDataStoreMessage(message);
   }
@@ -65,4 +77,8 @@ public abstract class CacheMessageVisitor {
     return visitIdentifierMapMessage(message);
   }
 
+  protected CacheMessage visitValueLocationMessage(final ValueLocationMessage message) {
+    return visitIdentifierMapMessage(message);
+  }
+
 }
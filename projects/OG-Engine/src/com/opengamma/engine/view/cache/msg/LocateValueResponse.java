@@ -0,0 +1,123 @@
+// Automatically created - do not modify
+///CLOVER:OFF
+// CSOFF: Generated File
+package com.opengamma.engine.view.cache.msg;
+public class LocateValueResponse extends com.opengamma.engine.view.cache.msg.CacheMessage implements java.io.Serializable {
+  public CacheMessage accept (CacheMessageVisitor visitor) { return visitor.visitLocateValueResponse (this); }
+  private static final long serialVersionUID = 1164806931l;
+  private java.util.List<org.fudgemsg.FudgeMsg> _endPoint;
+  public static final String END_POINT_KEY = "endPoint";
+  public LocateValueResponse (java.util.Collection<? extends org.fudgemsg.FudgeMsg> endPoint) {
+    if (endPoint == null) throw new NullPointerException ("'endPoint' cannot be null");
+    else {
+      final java.util.List<org.fudgemsg.FudgeMsg> fudge0 = new java.util.ArrayList<org.fudgemsg.FudgeMsg> (endPoint);
+      if (endPoint.size () == 0) throw new IllegalArgumentException ("'endPoint' cannot be an empty list");
+      for (java.util.ListIterator<org.fudgemsg.FudgeMsg> fudge1 = fudge0.listIterator (); fudge1.hasNext (); ) {
+        org.fudgemsg.FudgeMsg fudge2 = fudge1.next ();
+        if (fudge2 == null) throw new NullPointerException ("List element of 'endPoint' cannot be null");
+      }
+      _endPoint = fudge0;
+    }
+  }
+  protected LocateValueResponse (final org.fudgemsg.mapping.FudgeDeserializer deserializer, final org.fudgemsg.FudgeMsg fudgeMsg) {
+    super (deserializer, fudgeMsg);
+    java.util.List<org.fudgemsg.FudgeField> fudgeFields;
+    fudgeFields = fudgeMsg.getAllByName (END_POINT_KEY);
+    if (fudgeFields.size () == 0) throw new IllegalArgumentException ("Fudge message is not a LocateValueResponse - field 'endPoint' is not present");
+    _endPoint = new java.util.ArrayList<org.fudgemsg.FudgeMsg> (fudgeFields.size ());
+    for (org.fudgemsg.FudgeField fudge1 : fudgeFields) {
+      try {
+        final org.fudgemsg.FudgeMsg fudge2;
+        fudge2 = fudgeMsg.getFieldValue (org.fudgemsg.FudgeMsg.class, fudge1);
+        _endPoint.add (fudge2);
+      }
+      catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException ("Fudge message is not a LocateValueResponse - field 'endPoint' is not anonymous/unknown message", e);
+      }
+    }
+  }
+  public LocateValueResponse (Long correlationId, java.util.Collection<? extends org.fudgemsg.FudgeMsg> endPoint) {
+    super (correlationId);
+    if (endPoint == null) throw new NullPointerException ("'endPoint' cannot be null");
+    else {
+      final java.util.List<org.fudgemsg.FudgeMsg> fudge0 = new java.util.ArrayList<org.fudgemsg.FudgeMsg> (endPoint);
+      if (endPoint.size () == 0) throw new IllegalArgumentException ("'endPoint' cannot be an empty list");
+      for (java.util.ListIterator<org.fudgemsg.FudgeMsg> fudge1 = fudge0.listIterator (); fudge1.hasNext (); ) {
+        org.fudgemsg.FudgeMsg fudge2 = fudge1.next ();
+        if (fudge2 == null) throw new NullPointerException ("List element of 'endPoint' cannot be null");
+      }
+      _endPoint = fudge0;
+    }
+  }
+  protected LocateValueResponse (final LocateValueResponse source) {
+    super (source);
+    if (source == null) throw new NullPointerException ("'source' must not be null");
+    if (source._endPoint == null) _endPoint = null;
+    else {
+      _endPoint = new java.util.ArrayList<org.fudgemsg.FudgeMsg> (source._endPoint);
+    }
+  }
+  public LocateValueResponse clone () {
+    return new LocateValueResponse (this);
+  }
+  public org.fudgemsg.FudgeMsg toFudgeMsg (final org.fudgemsg.mapping.FudgeSerializer serializer) {
+    if (serializer == null) throw new NullPointerException ("serializer must not be null");
+    final org.fudgemsg.MutableFudgeMsg msg = serializer.newMessage ();
+    toFudgeMsg (serializer, msg);
+    return msg;
+  }
+  public void toFudgeMsg (final org.fudgemsg.mapping.FudgeSerializer serializer, final org.fudgemsg.MutableFudgeMsg msg) {
+    super.toFudgeMsg (serializer, msg);
+    if (_endPoint != null)  {
+      for (org.fudgemsg.FudgeMsg fudge1 : _endPoint) {
+        msg.add (END_POINT_KEY, null, (fudge1 instanceof org.fudgemsg.MutableFudgeMsg) ? serializer.newMessage (fudge1) : fudge1);
+      }
+    }
+  }
+  public static LocateValueResponse fromFudgeMsg (final org.fudgemsg.mapping.FudgeDeserializer deserializer, final org.fudgemsg.FudgeMsg fudgeMsg) {
+    final java.util.List<org.fudgemsg.FudgeField> types = fudgeMsg.getAllByOrdinal (0);
+    for (org.fudgemsg.FudgeField field : types) {
+      final String className = (String)field.getValue ();
+      if ("com.opengamma.engine.view.cache.msg.LocateValueResponse".equals (className)) break;
+      try {
+        return (com.opengamma.engine.view.cache.msg.LocateValueResponse)Class.forName (className).getDeclaredMethod ("fromFudgeMsg", org.fudgemsg.mapping.FudgeDeserializer.class, org.fudgemsg.FudgeMsg.class).invoke (null, deserializer, fudgeMsg);
+      }
+      catch (Throwable t) {
+        // no-action
+      }
+    }
+    return new LocateValueResponse (deserializer, fudgeMsg);
+  }
+  public java.util.List<org.fudgemsg.FudgeMsg> getEndPoint () {
+    return java.util.Collections.unmodifiableList (_endPoint);
+  }
+  public void setEndPoint (org.fudgemsg.FudgeMsg endPoint) {
+    if (endPoint == null) throw new NullPointerException ("'endPoint' cannot be null");
+    else {
+      _endPoint = new java.util.ArrayList<org.fudgemsg.FudgeMsg> (1);
+      addEndPoint (endPoint);
+    }
+  }
+  public void setEndPoint (java.util.Collection<? extends org.fudgemsg.FudgeMsg> endPoint) {
+    if (endPoint == null) throw new NullPointerException ("'endPoint' cannot be null");
+    else {
+      final java.util.List<org.fudgemsg.FudgeMsg> fudge0 = new java.util.ArrayList<org.fudgemsg.FudgeMsg> (endPoint);
+      if (endPoint.size () == 0) throw new IllegalArgumentException ("'endPoint' cannot be an empty list");
+      for (java.util.ListIterator<org.fudgemsg.FudgeMsg> fudge1 = fudge0.listIterator (); fudge1.hasNext (); ) {
+        org.fudgemsg.FudgeMsg fudge2 = fudge1.next ();
+        if (fudge2 == null) throw new NullPointerException ("List element of 'endPoint' cannot be null");
+      }
+      _endPoint = fudge0;
+    }
+  }
+  public void addEndPoint (org.fudgemsg.FudgeMsg endPoint) {
+    if (endPoint == null) throw new NullPointerException ("'endPoint' cannot be null");
+    if (_endPoint == null) _endPoint = new java.util.ArrayList<org.fudgemsg.FudgeMsg> ();
+    _endPoint.add (endPoint);
+  }
+  public String toString () {
+    return org.apache.commons.lang.builder.ToStringBuilder.reflectionToString(this, org.apache.commons.lang.builder.ToStringStyle.SHORT_PREFIX_STYLE);
+  }
+}
+///CLOVER:ON
+// CSON: Generated File
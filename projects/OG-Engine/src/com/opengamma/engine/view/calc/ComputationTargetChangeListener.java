@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import com.opengamma.core.change.ChangeEvent;
+import com.opengamma.core.change.ChangeListener;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Change listener for the positions and securities referenced by a view which notifies a computation job of the
+ * targets that must be recalculated.
+ */
+public class ComputationTargetChangeListener implements ChangeListener {
+
+  private final ViewComputationJob _computationJob;
+
+  public ComputationTargetChangeListener(ViewComputationJob computationJob) {
+    _computationJob = computationJob;
+  }
+
+  @Override
+  public void entityChanged(ChangeEvent event) {
+    UniqueId id = event.getBeforeId();
+    if (id == null) {
+      // Entity created - nothing in the current graph can refer to it
+      return;
+    }
+    getViewComputationJob().targetChanged(id.getObjectId());
+  }
+
+  private ViewComputationJob getViewComputationJob() {
+    return _computationJob;
+  }
+
+}
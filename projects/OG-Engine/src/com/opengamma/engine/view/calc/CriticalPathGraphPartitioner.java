@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.engine.view.calcnode.Capability;
+import com.opengamma.engine.view.calcnode.JobDispatcher;
+import com.opengamma.engine.view.calcnode.PlatformCapabilities;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * {@link GraphPartitioner} driven by the estimated function costs.
+ * <p>
+ * The bottom level of each fragment, the most expensive path from its start to the end of the graph, is calculated
+ * from the invocation and data costs. Fragments are then visited in decreasing order of bottom level and a fragment
+ * is merged into its single dependent fragment if it lies on that fragment's critical input path. This removes the
+ * shared cache traffic, and the dispatch latency, from the edges that most determine the overall execution time.
+ * Small fragments with identical inputs are then combined as they would have run concurrently anyway.
+ * <p>
+ * The size of the jobs is chosen from the total cost of the graph and the number of calculation nodes available
+ * so that there are enough jobs to keep every node busy, bounded by the minimum and maximum job cost of the executor.
+ * The node count is taken from the {@link PlatformCapabilities#NODE_COUNT} capabilities of the job invokers if a
+ * {@link JobDispatcher} is set.
+ */
+public class CriticalPathGraphPartitioner implements GraphPartitioner {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(CriticalPathGraphPartitioner.class);
+
+  private JobDispatcher _jobDispatcher;
+  private int _nodeCount = Runtime.getRuntime().availableProcessors();
+  private int _jobsPerNode = 4;
+
+  public void setJobDispatcher(final JobDispatcher jobDispatcher) {
+    _jobDispatcher = jobDispatcher;
+  }
+
+  public JobDispatcher getJobDispatcher() {
+    return _jobDispatcher;
+  }
+
+  /**
+   * Sets the number of calculation nodes to assume if none can be found from the job dispatcher.
+   * 
+   * @param nodeCount the number of nodes
+   */
+  public void setNodeCount(final int nodeCount) {
+    ArgumentChecker.notNegativeOrZero(nodeCount, "nodeCount");
+    _nodeCount = nodeCount;
+  }
+
+  /**
+   * Returns the number of calculation nodes available.
+   * 
+   * @return the node count
+   */
+  public int getNodeCount() {
+    if (getJobDispatcher() != null) {
+      int nodes = 0;
+      for (Collection<Capability> capabilities : getJobDispatcher().getAllCapabilities().values()) {
+        for (Capability capability : capabilities) {
+          if (PlatformCapabilities.NODE_COUNT.equals(capability.getIdentifier())) {
+            nodes += (int) capability.getUpperBoundParameter();
+          }
+        }
+      }
+      if (nodes > 0) {
+        return nodes;
+      }
+    }
+    return _nodeCount;
+  }
+
+  /**
+   * Sets the number of jobs to aim for per calculation node. Higher values give smaller jobs which balance better
+   * across the nodes at the expense of more shared cache traffic.
+   * 
+   * @param jobsPerNode the number of jobs
+   */
+  public void setJobsPerNode(final int jobsPerNode) {
+    ArgumentChecker.notNegativeOrZero(jobsPerNode, "jobsPerNode");
+    _jobsPerNode = jobsPerNode;
+  }
+
+  public int getJobsPerNode() {
+    return _jobsPerNode;
+  }
+
+  private static long getBottomLevel(final MutableGraphFragment fragment, final Map<MutableGraphFragment, Long> bottomLevels) {
+    final Long known = bottomLevels.get(fragment);
+    if (known != null) {
+      return known;
+    }
+    long longest = 0;
+    for (MutableGraphFragment output : fragment.getOutputFragments()) {
+      if (!output.getNodes().isEmpty()) {
+        final long level = getBottomLevel(output, bottomLevels);
+        if (level > longest) {
+          longest = level;
+        }
+      }
+    }
+    final long level = fragment.getJobCost() + longest;
+    bottomLevels.put(fragment, level);
+    return level;
+  }
+
+  private static MutableGraphFragment getCriticalInput(final MutableGraphFragment fragment, final Map<MutableGraphFragment, Long> bottomLevels) {
+    MutableGraphFragment critical = null;
+    long longest = -1;
+    for (MutableGraphFragment input : fragment.getInputFragments()) {
+      final long level = bottomLevels.get(input);
+      if (level > longest) {
+        longest = level;
+        critical = input;
+      }
+    }
+    return critical;
+  }
+
+  /**
+   * Returns the target cost of a job.
+   * 
+   * @param executor the executor, not null
+   * @param totalCost the total cost of the graph
+   * @return the target job cost
+   */
+  protected long getTargetJobCost(final MultipleNodeExecutor executor, final long totalCost) {
+    final long target = totalCost / ((long) getNodeCount() * getJobsPerNode());
+    return Math.min(Math.max(target, executor.getMinJobCost()), executor.getMaxJobCost());
+  }
+
+  @Override
+  public void partition(final MultipleNodeExecutor executor, final MutableGraphFragment.Root logicalRoot, final Set<MutableGraphFragment> allFragments) {
+    final Map<MutableGraphFragment, Long> bottomLevels = new HashMap<MutableGraphFragment, Long>();
+    long totalCost = 0;
+    long criticalPath = 0;
+    for (MutableGraphFragment fragment : allFragments) {
+      totalCost += fragment.getJobCost();
+      final long level = getBottomLevel(fragment, bottomLevels);
+      if (level > criticalPath) {
+        criticalPath = level;
+      }
+    }
+    final long targetCost = getTargetJobCost(executor, totalCost);
+    s_logger.debug("Total cost {}, critical path {}, target job cost {}", new Object[] {totalCost, criticalPath, targetCost });
+    final List<MutableGraphFragment> fragments = new ArrayList<MutableGraphFragment>(allFragments);
+    Collections.sort(fragments, new Comparator<MutableGraphFragment>() {
+      @Override
+      public int compare(final MutableGraphFragment o1, final MutableGraphFragment o2) {
+        final long l1 = bottomLevels.get(o1);
+        final long l2 = bottomLevels.get(o2);
+        return (l1 > l2) ? -1 : ((l1 < l2) ? 1 : 0);
+      }
+    });
+    int changes = 0;
+    for (MutableGraphFragment fragment : fragments) {
+      if (fragment.getOutputFragments().size() != 1) {
+        continue;
+      }
+      final MutableGraphFragment dependent = fragment.getOutputFragments().iterator().next();
+      if (dependent.getNodes().isEmpty()) {
+        // Ignore the roots
+        continue;
+      }
+      if (getCriticalInput(dependent, bottomLevels) != fragment) {
+        continue;
+      }
+      if (!dependent.canPrependFragment(fragment, executor.getMaxJobItems(), targetCost)) {
+        continue;
+      }
+      dependent.prependFragment(fragment);
+      allFragments.remove(fragment);
+      dependent.getInputFragments().remove(fragment);
+      for (MutableGraphFragment input : fragment.getInputFragments()) {
+        dependent.getInputFragments().add(input);
+        input.getOutputFragments().remove(fragment);
+        input.getOutputFragments().add(dependent);
+      }
+      // The merged fragment starts where the absorbed one did
+      bottomLevels.put(dependent, bottomLevels.get(fragment));
+      changes++;
+    }
+    s_logger.debug("Merged {} fragments along critical paths", changes);
+    executor.mergeSharedInputs(logicalRoot, allFragments, executor.getMinJobItems(), targetCost, executor.getMaxJobItems(), targetCost);
+    executor.findTailFragments(allFragments);
+  }
+
+}
@@ -5,6 +5,8 @@
  */
 package com.opengamma.engine.view.calc;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -23,6 +25,7 @@ import com.opengamma.engine.view.calcnode.CalculationJobResult;
 import com.opengamma.engine.view.calcnode.CalculationJobResultItem;
 import com.opengamma.engine.view.calcnode.CalculationJobSpecification;
 import com.opengamma.engine.view.calcnode.JobResultReceiver;
+import com.opengamma.engine.view.calcnode.PartialJobResultReceiver;
 import com.opengamma.util.Cancelable;
 
 /**
@@ -30,7 +33,7 @@ import com.opengamma.util.Cancelable;
  * the {@link JobResultReceiver} interface to coordinate responses and try to support
  * cancellation of an executing graph.
  */
-/* package */class GraphFragmentContext implements JobResultReceiver {
+/* package */class GraphFragmentContext implements JobResultReceiver, PartialJobResultReceiver {
 
   private static final Logger s_logger = LoggerFactory.getLogger(GraphFragmentContext.class);
 
@@ -41,6 +44,7 @@ import com.opengamma.util.Cancelable;
   private final DependencyGraph _graph;
   private final Map<CalculationJobItem, DependencyNode> _item2node;
   private final Map<CalculationJobSpecification, Cancelable> _cancels = new ConcurrentHashMap<CalculationJobSpecification, Cancelable>();
+  private final Map<CalculationJobSpecification, Integer> _partialResultItems = new ConcurrentHashMap<CalculationJobSpecification, Integer>();
   private Map<CalculationJobSpecification, GraphFragment<?, ?>> _job2fragment;
   private volatile boolean _cancelled;
   private final BlockingQueue<CalculationJobResult> _calcJobResultQueue;
@@ -98,8 +102,15 @@ import com.opengamma.util.Cancelable;
     _cancels.remove(result.getSpecification());
     final GraphFragment<?, ?> fragment = _job2fragment.remove(result.getSpecification());
     if (fragment != null) {
-      // Put result into the queue
-      getCalculationJobResultQueue().offer(result);
+      // Put result into the queue, less any items already streamed as partial results
+      final Integer partialResultItems = _partialResultItems.remove(result.getSpecification());
+      if (partialResultItems == null) {
+        getCalculationJobResultQueue().offer(result);
+      } else if (partialResultItems < result.getResultItems().size()) {
+        final List<CalculationJobResultItem> items = result.getResultItems();
+        getCalculationJobResultQueue().offer(new CalculationJobResult(result.getSpecification(), result.getDuration(),
+            new ArrayList<CalculationJobResultItem>(items.subList(partialResultItems, items.size())), result.getComputeNodeId()));
+      }
       fragment.resultReceived(result);
       // Mark nodes as good or bad
       for (CalculationJobResultItem item : result.getResultItems()) {
@@ -115,6 +126,18 @@ import com.opengamma.util.Cancelable;
     }
   }
 
+  @Override
+  public void partialResultReceived(final CalculationJobResult partialResult) {
+    final CalculationJobSpecification spec = partialResult.getSpecification();
+    if (_job2fragment.containsKey(spec)) {
+      // Partial results for a job arrive in order, and before the full result; the dispatcher passes on each item
+      // only once even if the job is retried
+      final Integer partialResultItems = _partialResultItems.get(spec);
+      _partialResultItems.put(spec, (partialResultItems != null) ? partialResultItems + partialResult.getResultItems().size() : partialResult.getResultItems().size());
+      getCalculationJobResultQueue().offer(partialResult);
+    }
+  }
+
   public void dispatchJob(final CalculationJob job) {
     if (!_cancelled) {
       _cancels.put(job.getSpecification(), getExecutor().dispatchJob(job, this));
@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import java.util.Set;
+
+/**
+ * Strategy for grouping the fragments of a dependency graph into the jobs that {@link MultipleNodeExecutor} will
+ * dispatch.
+ * <p>
+ * On entry each fragment contains a single node and the fragments are linked to match the graph, with the roots
+ * feeding the logical root. Implementations merge fragments, keeping the input and output links consistent and
+ * removing merged fragments from the set, and must mark any job tails before returning.
+ */
+public interface GraphPartitioner {
+
+  /**
+   * Partitions the fragments of a graph.
+   * 
+   * @param executor the executor the jobs will be created for, not null
+   * @param logicalRoot the logical root fragment, not null
+   * @param allFragments the fragments, excluding the logical root, to update in place, not null
+   */
+  void partition(MultipleNodeExecutor executor, MutableGraphFragment.Root logicalRoot, Set<MutableGraphFragment> allFragments);
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.google.common.collect.Sets;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.view.calc.stats.DiscardingGraphStatisticsGathererProvider;
+import com.opengamma.engine.view.calcnode.CalculationJobResult;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Replays a recorded dependency graph against recorded function costs to compare partitioning strategies offline.
+ * <p>
+ * The graph is partitioned exactly as {@link MultipleNodeExecutor} would, using the parameters, partitioner and
+ * function costs of a {@link MultipleNodeExecutorFactory}, but nothing is dispatched. The resulting jobs are then
+ * list scheduled onto a fixed number of nodes using their estimated costs. Each job that is not a tail of another
+ * is charged a dispatch overhead. Graphs can be recorded with the Fudge encoding of {@link DependencyGraph} and the
+ * costs taken from the {@code FunctionCostsMaster} of a running system.
+ */
+public class GraphPartitionerSimulator {
+
+  private final int _nodeCount;
+  private long _jobOverhead = 1000000L;
+
+  /**
+   * Result of simulating one graph. All costs are in nanoseconds.
+   */
+  public static final class Result {
+
+    private final int _jobCount;
+    private final long _makespan;
+    private final long _invocationCost;
+    private final long _dataCost;
+
+    private Result(final int jobCount, final long makespan, final long invocationCost, final long dataCost) {
+      _jobCount = jobCount;
+      _makespan = makespan;
+      _invocationCost = invocationCost;
+      _dataCost = dataCost;
+    }
+
+    public int getJobCount() {
+      return _jobCount;
+    }
+
+    /**
+     * Returns the time from the first job starting to the last job completing.
+     * 
+     * @return the simulated execution time
+     */
+    public long getMakespan() {
+      return _makespan;
+    }
+
+    public long getInvocationCost() {
+      return _invocationCost;
+    }
+
+    /**
+     * Returns the total cost of the shared cache reads and writes made by the jobs.
+     * 
+     * @return the data cost
+     */
+    public long getDataCost() {
+      return _dataCost;
+    }
+
+    @Override
+    public String toString() {
+      return "Result[jobs=" + getJobCount() + ", makespan=" + getMakespan() + ", invocation=" + getInvocationCost() + ", data=" + getDataCost() + "]";
+    }
+
+  }
+
+  public GraphPartitionerSimulator(final int nodeCount) {
+    ArgumentChecker.notNegativeOrZero(nodeCount, "nodeCount");
+    _nodeCount = nodeCount;
+  }
+
+  public int getNodeCount() {
+    return _nodeCount;
+  }
+
+  /**
+   * Sets the time charged for dispatching a job to a node and receiving its result.
+   * 
+   * @param jobOverhead the overhead in nanoseconds
+   */
+  public void setJobOverhead(final long jobOverhead) {
+    _jobOverhead = jobOverhead;
+  }
+
+  public long getJobOverhead() {
+    return _jobOverhead;
+  }
+
+  protected MultipleNodeExecutor createExecutor(final MultipleNodeExecutorFactory factory) {
+    return new MultipleNodeExecutor(null, factory.getMinimumJobItems(), factory.getMaximumJobItems(), factory.getMinimumJobCost(), factory.getMaximumJobCost(),
+        factory.getMaximumConcurrency(), factory.getFunctionCosts(), null, factory.getPartitioner()) {
+      @Override
+      protected long getFunctionInitId() {
+        return 0;
+      }
+    };
+  }
+
+  /**
+   * Partitions a graph and simulates its execution.
+   * 
+   * @param factory the executor factory whose configuration is to be simulated, not null
+   * @param graph the graph, not null
+   * @return the simulation result, not null
+   */
+  public Result simulate(final MultipleNodeExecutorFactory factory, final DependencyGraph graph) {
+    ArgumentChecker.notNull(factory, "factory");
+    ArgumentChecker.notNull(factory.getFunctionCosts(), "factory.functionCosts");
+    ArgumentChecker.notNull(graph, "graph");
+    final MultipleNodeExecutor executor = createExecutor(factory);
+    final MutableGraphFragmentContext context = new MutableGraphFragmentContext(executor, graph, new LinkedBlockingQueue<CalculationJobResult>());
+    final Set<MutableGraphFragment> allFragments = Sets.newHashSetWithExpectedSize(graph.getSize());
+    executor.createFragments(context, DiscardingGraphStatisticsGathererProvider.GATHERER_INSTANCE, allFragments);
+    return schedule(allFragments);
+  }
+
+  private Result schedule(final Set<MutableGraphFragment> allFragments) {
+    final Set<MutableGraphFragment> tails = Sets.newHashSet();
+    final Map<MutableGraphFragment, Integer> blockCount = new HashMap<MutableGraphFragment, Integer>();
+    final Map<MutableGraphFragment, Long> readyTime = new HashMap<MutableGraphFragment, Long>();
+    final PriorityQueue<MutableGraphFragment> ready = new PriorityQueue<MutableGraphFragment>(Math.max(allFragments.size(), 1), new Comparator<MutableGraphFragment>() {
+      @Override
+      public int compare(final MutableGraphFragment o1, final MutableGraphFragment o2) {
+        final long t1 = readyTime.get(o1);
+        final long t2 = readyTime.get(o2);
+        return (t1 < t2) ? -1 : ((t1 > t2) ? 1 : 0);
+      }
+    });
+    long invocationCost = 0;
+    long dataCost = 0;
+    for (MutableGraphFragment fragment : allFragments) {
+      invocationCost += fragment.getJobInvocationCost();
+      dataCost += fragment.getJobDataInputCost() + fragment.getJobDataOutputCost();
+      if (fragment.getTail() != null) {
+        tails.addAll(fragment.getTail());
+      }
+      readyTime.put(fragment, 0L);
+      if (fragment.getInputFragments().isEmpty()) {
+        ready.add(fragment);
+      } else {
+        blockCount.put(fragment, fragment.getInputFragments().size());
+      }
+    }
+    final PriorityQueue<Long> nodeFreeTime = new PriorityQueue<Long>(getNodeCount());
+    for (int i = 0; i < getNodeCount(); i++) {
+      nodeFreeTime.add(0L);
+    }
+    long makespan = 0;
+    MutableGraphFragment fragment;
+    while ((fragment = ready.poll()) != null) {
+      final long start = Math.max(readyTime.get(fragment), nodeFreeTime.poll());
+      long finish = start + fragment.getJobCost();
+      if (!tails.contains(fragment)) {
+        finish += getJobOverhead();
+      }
+      nodeFreeTime.add(finish);
+      if (finish > makespan) {
+        makespan = finish;
+      }
+      for (MutableGraphFragment output : fragment.getOutputFragments()) {
+        if (output.getNodes().isEmpty()) {
+          // The logical root
+          continue;
+        }
+        if (finish > readyTime.get(output)) {
+          readyTime.put(output, finish);
+        }
+        final int blocks = blockCount.get(output) - 1;
+        if (blocks == 0) {
+          blockCount.remove(output);
+          ready.add(output);
+        } else {
+          blockCount.put(output, blocks);
+        }
+      }
+    }
+    return new Result(allFragments.size(), makespan, invocationCost, dataCost);
+  }
+
+}
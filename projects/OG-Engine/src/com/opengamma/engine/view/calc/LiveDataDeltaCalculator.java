@@ -5,8 +5,15 @@
  */
 package com.opengamma.engine.view.calc;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 
 import org.apache.commons.lang.ObjectUtils;
@@ -17,22 +24,34 @@ import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.cache.CacheSelectHint;
 import com.opengamma.engine.view.cache.ViewComputationCache;
+import com.opengamma.id.ObjectId;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.tuple.Pair;
 
 /**
  * Determines which nodes in a graph have changed. A node has 'changed' if and only 
- * if its subtree contains a node for which PreviousLiveDataInput != CurrentLiveDataInput.
+ * if its subtree contains a node for which PreviousLiveDataInput != CurrentLiveDataInput,
+ * or a node whose computation target has been explicitly invalidated.
  * Note that this excludes changes due to passage of the system clock. 
+ * <p>
+ * Dirtiness is propagated forwards from the changed nodes through their dependents so the
+ * cost of the traversal is proportional to the size of the changed part of the graph.
+ * <p>
+ * The graph may be a recompilation of the one that produced the previous values. A node is
+ * then only unchanged if the previous graph contains a node performing the same calculation,
+ * which is available from {@link #getPreviousNode}.
  */
 public class LiveDataDeltaCalculator {
 
   private final DependencyGraph _graph;
   private final ViewComputationCache _cache;
+  private final DependencyGraph _previousGraph;
   private final ViewComputationCache _previousCache;
+  private final Set<ObjectId> _invalidatedTargets;
 
   private final Set<DependencyNode> _changedNodes = new HashSet<DependencyNode>();
   private final Set<DependencyNode> _unchangedNodes = new HashSet<DependencyNode>();
+  private final Map<DependencyNode, DependencyNode> _previousNodes = new IdentityHashMap<DependencyNode, DependencyNode>();
 
   private boolean _done; // = false
 
@@ -47,12 +66,46 @@ public class LiveDataDeltaCalculator {
    * @param previousCache Contains PreviousLiveDataInputs (for the given graph)
    */
   public LiveDataDeltaCalculator(DependencyGraph graph, ViewComputationCache cache, ViewComputationCache previousCache) {
+    this(graph, cache, previousCache, Collections.<ObjectId>emptySet());
+  }
+
+  /**
+   * Creates a calculator which will also treat any node whose computation target is in the given set as changed.
+   * This allows changes to positions, securities or other target data, which are not visible as LiveData inputs,
+   * to be handled without a full cycle.
+   * 
+   * @param graph Dependency graph
+   * @param cache Contains CurrentLiveDataInputs (for the given graph)
+   * @param previousCache Contains PreviousLiveDataInputs (for the given graph)
+   * @param invalidatedTargets Object identifiers of computation targets which have changed, not null
+   */
+  public LiveDataDeltaCalculator(DependencyGraph graph, ViewComputationCache cache, ViewComputationCache previousCache,
+      Set<ObjectId> invalidatedTargets) {
+    this(graph, cache, graph, previousCache, invalidatedTargets);
+  }
+
+  /**
+   * Creates a calculator for a graph which may have been recompiled since the previous values were calculated.
+   * A position or trade is treated as changed if its security, or one of its trades, is in the invalidated set.
+   * 
+   * @param graph Dependency graph
+   * @param cache Contains CurrentLiveDataInputs (for the given graph)
+   * @param previousGraph Dependency graph which produced the values in the previous cache
+   * @param previousCache Contains PreviousLiveDataInputs (for the previous graph)
+   * @param invalidatedTargets Object identifiers of computation targets which have changed, not null
+   */
+  public LiveDataDeltaCalculator(DependencyGraph graph, ViewComputationCache cache, DependencyGraph previousGraph, ViewComputationCache previousCache,
+      Set<ObjectId> invalidatedTargets) {
     ArgumentChecker.notNull(graph, "Graph");
     ArgumentChecker.notNull(cache, "Cache");
+    ArgumentChecker.notNull(previousGraph, "Previous graph");
     ArgumentChecker.notNull(previousCache, "Previous cache");
+    ArgumentChecker.notNull(invalidatedTargets, "Invalidated targets");
     _graph = graph;
     _cache = cache;
+    _previousGraph = previousGraph;
     _previousCache = previousCache;
+    _invalidatedTargets = invalidatedTargets;
   }
 
   public Set<DependencyNode> getChangedNodes() {
@@ -71,52 +124,108 @@ public class LiveDataDeltaCalculator {
     return Collections.unmodifiableSet(_unchangedNodes);
   }
 
+  /**
+   * Returns the node from the previous graph which performed the same calculation as an unchanged node.
+   * 
+   * @param unchangedNode a node from {@link #getUnchangedNodes()}
+   * @return the equivalent node from the previous graph, or null if the node is not unchanged
+   */
+  public DependencyNode getPreviousNode(DependencyNode unchangedNode) {
+    if (!_done) {
+      throw new IllegalStateException("Call computeDelta() first");
+    }
+    return _previousNodes.get(unchangedNode);
+  }
+
   public void computeDelta() {
     if (_done) {
       throw new IllegalStateException("Cannot determine delta twice");
     }
 
-    for (DependencyNode rootNode : _graph.getRootNodes()) {
-      computeDelta(rootNode);
+    final Queue<DependencyNode> dirtyNodes = new LinkedList<DependencyNode>();
+    final Map<ValueSpecification, DependencyNode> marketDataNodes = new HashMap<ValueSpecification, DependencyNode>();
+    for (DependencyNode node : _graph.getDependencyNodes()) {
+      final DependencyNode previousNode = getEquivalentNode(node);
+      if (previousNode == null || isTargetInvalidated(node)) {
+        markChanged(node, dirtyNodes);
+      } else {
+        final Pair<ValueRequirement, ValueSpecification> liveData = node.getRequiredMarketData();
+        if (liveData != null) {
+          marketDataNodes.put(liveData.getSecond(), node);
+        }
+        _previousNodes.put(node, previousNode);
+      }
+    }
+    if (!marketDataNodes.isEmpty()) {
+      // Market data is always in the shared cache
+      final Map<ValueSpecification, Object> oldValues = getValues(_previousCache, marketDataNodes.keySet());
+      final Map<ValueSpecification, Object> newValues = getValues(_cache, marketDataNodes.keySet());
+      for (Map.Entry<ValueSpecification, DependencyNode> marketData : marketDataNodes.entrySet()) {
+        if (!ObjectUtils.equals(oldValues.get(marketData.getKey()), newValues.get(marketData.getKey()))) {
+          markChanged(marketData.getValue(), dirtyNodes);
+        }
+      }
+    }
+    // If any inputs changed, the dependent nodes automatically require recomputation
+    while (!dirtyNodes.isEmpty()) {
+      for (DependencyNode dependentNode : dirtyNodes.remove().getDependentNodes()) {
+        if (_graph.containsNode(dependentNode)) {
+          markChanged(dependentNode, dirtyNodes);
+        }
+      }
+    }
+    for (DependencyNode node : _graph.getDependencyNodes()) {
+      if (_changedNodes.contains(node)) {
+        _previousNodes.remove(node);
+      } else {
+        _unchangedNodes.add(node);
+      }
     }
 
     _done = true;
   }
 
-  private boolean computeDelta(DependencyNode node) {
-    if (_changedNodes.contains(node)) {
-      return true;
-    }
-    if (_unchangedNodes.contains(node)) {
-      return false;
+  private void markChanged(final DependencyNode node, final Queue<DependencyNode> dirtyNodes) {
+    if (_changedNodes.add(node)) {
+      dirtyNodes.add(node);
     }
+  }
 
-    boolean hasChanged = false;
-    for (DependencyNode inputNode : node.getInputNodes()) {
-      // if any children changed, this node automatically requires recomputation.
-      hasChanged |= computeDelta(inputNode);
+  private DependencyNode getEquivalentNode(final DependencyNode node) {
+    if (_previousGraph == _graph) {
+      return node;
     }
-
-    if (!hasChanged) {
-      // if no children changed, the node may still require recomputation
-      // due to market data changes affecting the function of the node.
-      Pair<ValueRequirement, ValueSpecification> liveData = node.getRequiredMarketData();
-      if (liveData != null) {
-        // Market data is always in the shared cache
-        Object oldValue = _previousCache.getValue(liveData.getSecond(), CacheSelectHint.allShared());
-        Object newValue = _cache.getValue(liveData.getSecond(), CacheSelectHint.allShared());
-        if (!ObjectUtils.equals(oldValue, newValue)) {
-          hasChanged = true;
-        }
-      }
+    final Iterator<ValueSpecification> outputs = node.getOutputValues().iterator();
+    if (!outputs.hasNext()) {
+      return null;
     }
-
-    if (hasChanged) {
-      _changedNodes.add(node);
-    } else {
-      _unchangedNodes.add(node);
+    final DependencyNode previousNode = _previousGraph.getNodeProducing(outputs.next());
+    if ((previousNode == null) || !isSameCalculation(node, previousNode)) {
+      return null;
     }
+    return previousNode;
+  }
 
-    return hasChanged;
+  private static boolean isSameCalculation(final DependencyNode node, final DependencyNode previousNode) {
+    return ObjectUtils.equals(node.getFunction().getFunction().getFunctionDefinition().getUniqueId(),
+        previousNode.getFunction().getFunction().getFunctionDefinition().getUniqueId())
+        && ObjectUtils.equals(node.getFunction().getParameters(), previousNode.getFunction().getParameters())
+        && node.getComputationTarget().toSpecification().equals(previousNode.getComputationTarget().toSpecification())
+        && node.getInputValues().equals(previousNode.getInputValues())
+        && node.getOutputValues().equals(previousNode.getOutputValues());
   }
+
+  private boolean isTargetInvalidated(final DependencyNode node) {
+    // Positions and trades hold their resolved security, so a change to it is a change to them
+    return node.getComputationTarget().isDependentOn(_invalidatedTargets);
+  }
+
+  private static Map<ValueSpecification, Object> getValues(final ViewComputationCache cache, final Collection<ValueSpecification> specifications) {
+    final Map<ValueSpecification, Object> values = new HashMap<ValueSpecification, Object>();
+    for (Pair<ValueSpecification, Object> value : cache.getValues(specifications, CacheSelectHint.allShared())) {
+      values.put(value.getFirst(), value.getSecond());
+    }
+    return values;
+  }
+
 }
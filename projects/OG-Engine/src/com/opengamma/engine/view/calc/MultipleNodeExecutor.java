@@ -56,9 +56,15 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
   private final int _maxConcurrency;
   private final FunctionCosts _functionCosts;
   private final ExecutionPlanCache _cache;
+  private final GraphPartitioner _partitioner;
 
   protected MultipleNodeExecutor(final SingleComputationCycle cycle, final int minimumJobItems, final int maximumJobItems, final long minimumJobCost, final long maximumJobCost,
       final int maximumConcurrency, final FunctionCosts functionCosts, final ExecutionPlanCache cache) {
+    this(cycle, minimumJobItems, maximumJobItems, minimumJobCost, maximumJobCost, maximumConcurrency, functionCosts, cache, null);
+  }
+
+  protected MultipleNodeExecutor(final SingleComputationCycle cycle, final int minimumJobItems, final int maximumJobItems, final long minimumJobCost, final long maximumJobCost,
+      final int maximumConcurrency, final FunctionCosts functionCosts, final ExecutionPlanCache cache, final GraphPartitioner partitioner) {
     // Don't check for null as the factory does this, plus for testing we don't have a cycle and override the methods that use it
     _cycle = cycle;
     _minJobItems = minimumJobItems;
@@ -68,6 +74,7 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     _maxConcurrency = maximumConcurrency;
     _functionCosts = functionCosts;
     _cache = cache;
+    _partitioner = partitioner;
   }
 
   protected long getFunctionInitId() {
@@ -134,16 +141,29 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     return fragment;
   }
 
-  protected MutableGraphFragment.Root executeMultipleFragments(final MutableGraphFragmentContext context, final GraphExecutorStatisticsGatherer statistics) {
-    final Set<MutableGraphFragment> allFragments = Sets.newHashSetWithExpectedSize(context.getGraph().getSize());
+  /**
+   * Partitions the graph into fragments, each of which will become a job, using the configured {@link GraphPartitioner}
+   * or the default merging heuristics if there is none.
+   * 
+   * @param context the fragment context, not null
+   * @param statistics the statistics reporter, not null
+   * @param allFragments receives the fragments, not null
+   * @return the logical root fragment, not null
+   */
+  protected MutableGraphFragment.Root createFragments(final MutableGraphFragmentContext context, final GraphExecutorStatisticsGatherer statistics,
+      final Set<MutableGraphFragment> allFragments) {
     final MutableGraphFragment.Root logicalRoot = new MutableGraphFragment.Root(context, statistics);
     for (MutableGraphFragment root : graphToFragments(context, context.getGraph(), allFragments)) {
       root.getOutputFragments().add(logicalRoot);
       logicalRoot.getInputFragments().add(root);
     }
+    if (getPartitioner() != null) {
+      getPartitioner().partition(this, logicalRoot, allFragments);
+      return logicalRoot;
+    }
     int failCount = 0;
     do {
-      if (mergeSharedInputs(logicalRoot, allFragments)) {
+      if (mergeSharedInputs(logicalRoot, allFragments, getMinJobItems(), getMinJobCost(), getMaxJobItems(), getMaxJobCost())) {
         failCount = 0;
       } else {
         if (++failCount >= 2) {
@@ -159,6 +179,12 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
       }
     } while (true);
     findTailFragments(allFragments);
+    return logicalRoot;
+  }
+
+  protected MutableGraphFragment.Root executeMultipleFragments(final MutableGraphFragmentContext context, final GraphExecutorStatisticsGatherer statistics) {
+    final Set<MutableGraphFragment> allFragments = Sets.newHashSetWithExpectedSize(context.getGraph().getSize());
+    final MutableGraphFragment.Root logicalRoot = createFragments(context, statistics, allFragments);
     context.allocateFragmentMap(allFragments.size());
     // Set block counts on non-leaf nodes & leave only the leaves in the set
     logicalRoot.initBlockCount();
@@ -256,6 +282,10 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     return _functionCosts;
   }
 
+  public GraphPartitioner getPartitioner() {
+    return _partitioner;
+  }
+
   private Collection<MutableGraphFragment> graphToFragments(final MutableGraphFragmentContext context, final DependencyGraph graph, final Set<MutableGraphFragment> allFragments) {
     final Map<DependencyNode, MutableGraphFragment> node2fragment = new HashMap<DependencyNode, MutableGraphFragment>();
     final Collection<DependencyNode> rootNodes = graph.getRootNodes();
@@ -292,7 +322,8 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
    * Finds pairs of nodes with the same input set (i.e. that would execute concurrently) that are below the minimum job size
    * and merge them together.
    */
-  private boolean mergeSharedInputs(final MutableGraphFragment logicalRoot, final Set<MutableGraphFragment> allFragments) {
+  /* package */boolean mergeSharedInputs(final MutableGraphFragment logicalRoot, final Set<MutableGraphFragment> allFragments, final int minJobItems, final long minJobCost,
+      final int maxJobItems, final long maxJobCost) {
     final Map<Set<MutableGraphFragment>, MutableGraphFragment> possibleCandidates = new HashMap<Set<MutableGraphFragment>, MutableGraphFragment>();
     // REVIEW 2010-08-27 Andrew -- Should we only create validCandidates when we're ready to use it?
     final Map<MutableGraphFragment, MutableGraphFragment> validCandidates = new HashMap<MutableGraphFragment, MutableGraphFragment>();
@@ -304,13 +335,13 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
           // No inputs to consider
           continue;
         }
-        if ((fragment.getJobCost() >= getMinJobCost()) && (fragment.getJobItems() >= getMinJobItems())) {
+        if ((fragment.getJobCost() >= minJobCost) && (fragment.getJobItems() >= minJobItems)) {
           // We already meet the minimum requirement for the graph
           continue;
         }
         final MutableGraphFragment mergeCandidate = possibleCandidates.get(fragment.getInputFragments());
         if (mergeCandidate != null) {
-          if (mergeCandidate.canAppendFragment(fragment, getMaxJobItems(), getMaxJobCost())) {
+          if (mergeCandidate.canAppendFragment(fragment, maxJobItems, maxJobCost)) {
             // Defer the merge because we're iterating through the dependent's inputs at the moment
             validCandidates.put(fragment, mergeCandidate);
             // Stop using the merge candidate
@@ -397,7 +428,7 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
    * If a fragment has only a single input, it can be a tail to the fragment generating that input. A fragment with multiple inputs can
    * be a tail to all of them iff they are tails to a common fragment (i.e. all will end up at the same node).
    */
-  private void findTailFragments(final Set<MutableGraphFragment> allFragments) {
+  /* package */void findTailFragments(final Set<MutableGraphFragment> allFragments) {
     // Estimate start times based on fragment costs and dependencies
     final NavigableMap<Long, Pair<List<MutableGraphFragment>, List<MutableGraphFragment>>> concurrencyEvent = new TreeMap<Long, Pair<List<MutableGraphFragment>, List<MutableGraphFragment>>>();
     for (MutableGraphFragment fragment : allFragments) {
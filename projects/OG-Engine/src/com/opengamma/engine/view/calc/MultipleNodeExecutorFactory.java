@@ -26,6 +26,7 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
   private long _maximumJobCost = Long.MAX_VALUE;
   private int _maximumConcurrency = Integer.MAX_VALUE;
   private FunctionCosts _functionCosts;
+  private GraphPartitioner _partitioner;
   
   protected ExecutionPlanCache getExecutionPlanCache() {
     return _executionPlanCache;
@@ -91,6 +92,21 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
     return _functionCosts;
   }
 
+  /**
+   * Sets the strategy used to partition graphs into jobs. If not set, the default merging heuristics of
+   * {@link MultipleNodeExecutor} are used.
+   * 
+   * @param partitioner the partitioner, or null for the default
+   */
+  public void setPartitioner(final GraphPartitioner partitioner) {
+    _partitioner = partitioner;
+    invalidateExecutionPlanCache();
+  }
+
+  public GraphPartitioner getPartitioner() {
+    return _partitioner;
+  }
+
   public void setCacheSize(final int size) {
     _executionPlanCache = new ExecutionPlanCache(EHCacheUtils.createCacheManager(), size);
   }
@@ -98,7 +114,8 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
   @Override
   public MultipleNodeExecutor createExecutor(final SingleComputationCycle cycle) {
     ArgumentChecker.notNull(cycle, "cycle");
-    return new MultipleNodeExecutor(cycle, getMinimumJobItems(), getMaximumJobItems(), getMinimumJobCost(), getMaximumJobCost(), getMaximumConcurrency(), getFunctionCosts(), _executionPlanCache);
+    return new MultipleNodeExecutor(cycle, getMinimumJobItems(), getMaximumJobItems(), getMinimumJobCost(), getMaximumJobCost(), getMaximumConcurrency(), getFunctionCosts(), _executionPlanCache,
+        getPartitioner());
   }
 
   @Override
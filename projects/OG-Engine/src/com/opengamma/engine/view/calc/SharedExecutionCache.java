@@ -0,0 +1,481 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.time.Instant;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.marketdata.spec.MarketDataSpecification;
+import com.opengamma.engine.function.FunctionParameters;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Reference-counted cache of node results shared between the cycles of different view processes.
+ * <p>
+ * Each view process takes its own market data snapshot and resolves "latest" version-corrections itself, so the
+ * valuation times and version-corrections of cycles never coincide by chance. A cycle first {@link #align}s them with
+ * any cycle of another process snapshotting the same market data within the alignment tolerance, adopting that
+ * cycle's valuation time and resolved version-correction.
+ * <p>
+ * Cycles with the same market data specification, valuation time, version-correction and function initialization,
+ * and whose market data agrees wherever it overlaps, join the same {@link Execution}. Before executing its graphs a
+ * cycle claims the nodes it has to execute. A node identical to one claimed by an earlier cycle (same function,
+ * parameters, target, inputs and outputs) is not executed again; the later cycle waits for the earlier one to publish
+ * that node's outputs and copies them into its own computation cache. Nodes are published as soon as they have been
+ * executed, so a cycle only waits for the nodes it needs. Views differing in only a few columns therefore only execute
+ * the nodes they don't have in common.
+ * <p>
+ * An execution is discarded when the last cycle to join it is released.
+ */
+public class SharedExecutionCache {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(SharedExecutionCache.class);
+
+  /**
+   * Default time to wait for another cycle to publish a node's outputs, since it last published anything, before
+   * executing the node anyway.
+   */
+  public static final long DEFAULT_WAIT_TIMEOUT_MILLIS = 60000;
+  /**
+   * Default maximum difference between the snapshot times of cycles from different view processes for them to be
+   * aligned.
+   */
+  public static final long DEFAULT_ALIGNMENT_TOLERANCE_MILLIS = 1000;
+
+  private final Map<ExecutionKey, List<Execution>> _executions = new HashMap<ExecutionKey, List<Execution>>();
+  private final Map<AlignmentKey, Alignment> _alignments = new HashMap<AlignmentKey, Alignment>();
+  private long _waitTimeoutMillis = DEFAULT_WAIT_TIMEOUT_MILLIS;
+  private long _alignmentToleranceMillis = DEFAULT_ALIGNMENT_TOLERANCE_MILLIS;
+
+  /**
+   * Sets the maximum time a cycle waits for a node claimed by another cycle, measured from the last time that cycle
+   * published a node.
+   *
+   * @param waitTimeoutMillis the timeout in milliseconds
+   */
+  public void setWaitTimeoutMillis(final long waitTimeoutMillis) {
+    ArgumentChecker.notNegative(waitTimeoutMillis, "waitTimeoutMillis");
+    _waitTimeoutMillis = waitTimeoutMillis;
+  }
+
+  public long getWaitTimeoutMillis() {
+    return _waitTimeoutMillis;
+  }
+
+  /**
+   * Sets the maximum difference between the snapshot times of cycles, and between the times at which they resolve their
+   * version-corrections, for them to be aligned.
+   *
+   * @param alignmentToleranceMillis the tolerance in milliseconds
+   */
+  public void setAlignmentToleranceMillis(final long alignmentToleranceMillis) {
+    ArgumentChecker.notNegative(alignmentToleranceMillis, "alignmentToleranceMillis");
+    _alignmentToleranceMillis = alignmentToleranceMillis;
+  }
+
+  public long getAlignmentToleranceMillis() {
+    return _alignmentToleranceMillis;
+  }
+
+  private static final class AlignmentKey {
+
+    private final MarketDataSpecification _marketData;
+    private final Instant _fixedValuationTime;
+    private final VersionCorrection _versionCorrection;
+
+    public AlignmentKey(final MarketDataSpecification marketData, final Instant fixedValuationTime, final VersionCorrection versionCorrection) {
+      _marketData = marketData;
+      _fixedValuationTime = fixedValuationTime;
+      _versionCorrection = versionCorrection;
+    }
+
+    @Override
+    public int hashCode() {
+      return (_marketData.hashCode() * 31 + ObjectUtils.hashCode(_fixedValuationTime)) * 31 + _versionCorrection.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof AlignmentKey)) {
+        return false;
+      }
+      final AlignmentKey other = (AlignmentKey) o;
+      return _marketData.equals(other._marketData) && ObjectUtils.equals(_fixedValuationTime, other._fixedValuationTime)
+          && _versionCorrection.equals(other._versionCorrection);
+    }
+
+  }
+
+  /**
+   * The valuation time and resolved version-correction adopted by cycles snapshotting the same market data at about the
+   * same time.
+   */
+  public static final class Alignment {
+
+    private final Instant _valuationTime;
+    private final VersionCorrection _versionCorrection;
+    private final long _resolvedMillis;
+    private final Set<Object> _claimants = new HashSet<Object>();
+
+    private Alignment(final Instant valuationTime, final VersionCorrection versionCorrection, final long resolvedMillis) {
+      _valuationTime = valuationTime;
+      _versionCorrection = versionCorrection;
+      _resolvedMillis = resolvedMillis;
+    }
+
+    public Instant getValuationTime() {
+      return _valuationTime;
+    }
+
+    public VersionCorrection getVersionCorrection() {
+      return _versionCorrection;
+    }
+
+  }
+
+  private static final class ExecutionKey {
+
+    private final MarketDataSpecification _marketData;
+    private final Instant _valuationTime;
+    private final VersionCorrection _versionCorrection;
+    private final long _functionInitId;
+
+    public ExecutionKey(final MarketDataSpecification marketData, final Instant valuationTime, final VersionCorrection versionCorrection, final long functionInitId) {
+      _marketData = marketData;
+      _valuationTime = valuationTime;
+      _versionCorrection = versionCorrection;
+      _functionInitId = functionInitId;
+    }
+
+    @Override
+    public int hashCode() {
+      return ((_marketData.hashCode() * 31 + _valuationTime.hashCode()) * 31 + _versionCorrection.hashCode()) * 31 + (int) (_functionInitId ^ (_functionInitId >>> 32));
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof ExecutionKey)) {
+        return false;
+      }
+      final ExecutionKey other = (ExecutionKey) o;
+      return _marketData.equals(other._marketData) && _valuationTime.equals(other._valuationTime) && _versionCorrection.equals(other._versionCorrection)
+          && (_functionInitId == other._functionInitId);
+    }
+
+  }
+
+  /**
+   * Identity of a node's calculation, independent of the graph containing it. The default properties of the
+   * calculation configuration are included as they are visible to the function when it executes.
+   */
+  private static final class NodeKey {
+
+    private final ValueProperties _defaultProperties;
+    private final String _functionId;
+    private final FunctionParameters _parameters;
+    private final ComputationTargetSpecification _target;
+    private final Set<ValueSpecification> _inputs;
+    private final Set<ValueSpecification> _outputs;
+    private final int _hashCode;
+
+    public NodeKey(final ValueProperties defaultProperties, final DependencyNode node) {
+      _defaultProperties = defaultProperties;
+      _functionId = node.getFunction().getFunction().getFunctionDefinition().getUniqueId();
+      _parameters = node.getFunction().getParameters();
+      _target = node.getComputationTarget().toSpecification();
+      _inputs = node.getInputValues();
+      _outputs = node.getOutputValues();
+      _hashCode = (_functionId.hashCode() * 31 + _target.hashCode()) * 31 + _outputs.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof NodeKey)) {
+        return false;
+      }
+      final NodeKey other = (NodeKey) o;
+      return (_hashCode == other._hashCode) && _functionId.equals(other._functionId) && _target.equals(other._target) && _outputs.equals(other._outputs)
+          && _inputs.equals(other._inputs) && ObjectUtils.equals(_parameters, other._parameters)
+          && ObjectUtils.equals(_defaultProperties, other._defaultProperties);
+    }
+
+  }
+
+  private static final class NodeState {
+
+    private final Object _claimant;
+    private Map<ValueSpecification, Object> _values;
+    private boolean _done;
+
+    public NodeState(final Object claimant) {
+      _claimant = claimant;
+    }
+
+  }
+
+  /**
+   * The set of cycles sharing node results.
+   */
+  public final class Execution {
+
+    private final ExecutionKey _key;
+    private final Map<ValueSpecification, Object> _marketData;
+    private final Map<NodeKey, NodeState> _nodes = new HashMap<NodeKey, NodeState>();
+    private final Map<Object, Long> _lastProgress = new HashMap<Object, Long>();
+    private int _refCount;
+
+    private Execution(final ExecutionKey key, final Map<ValueSpecification, Object> marketData) {
+      _key = key;
+      _marketData = new HashMap<ValueSpecification, Object>(marketData);
+    }
+
+    /**
+     * Tests whether market data agrees with that of the cycles already sharing this execution. Caller must hold the
+     * lock on the cache.
+     */
+    private boolean isConsistent(final Map<ValueSpecification, Object> marketData) {
+      for (Map.Entry<ValueSpecification, Object> data : marketData.entrySet()) {
+        final Object existing = _marketData.get(data.getKey());
+        if ((existing != null) && !existing.equals(data.getValue())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Claims nodes for execution. Nodes not yet claimed are claimed by the caller and must be either published or
+     * abandoned. Nodes already claimed by other cycles are returned; the caller must {@link #await} each of them before
+     * executing anything that depends on it.
+     *
+     * @param claimant the claiming cycle, not null
+     * @param nodes the nodes the cycle would execute, with the default properties of their calculation
+     *        configurations, not null
+     * @return the nodes claimed by other cycles, not null
+     */
+    public synchronized Collection<DependencyNode> claim(final Object claimant, final Map<DependencyNode, ValueProperties> nodes) {
+      final List<DependencyNode> pending = new ArrayList<DependencyNode>();
+      for (Map.Entry<DependencyNode, ValueProperties> node : nodes.entrySet()) {
+        final NodeKey key = new NodeKey(node.getValue(), node.getKey());
+        final NodeState state = _nodes.get(key);
+        if (state == null) {
+          _nodes.put(key, new NodeState(claimant));
+        } else if (state._claimant != claimant) {
+          pending.add(node.getKey());
+        }
+      }
+      _lastProgress.put(claimant, System.currentTimeMillis());
+      return pending;
+    }
+
+    /**
+     * Waits for a node claimed by another cycle to be published. The wait times out if the claimant publishes nothing
+     * for the wait timeout, in which case, or if the node was abandoned, the caller must execute the node itself.
+     *
+     * @param defaultProperties the default properties of the node's calculation configuration, not null
+     * @param node a node returned by {@link #claim}, not null
+     * @return the node's outputs, or null if the caller must execute the node
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized Map<ValueSpecification, Object> await(final ValueProperties defaultProperties, final DependencyNode node) throws InterruptedException {
+      final NodeState state = _nodes.get(new NodeKey(defaultProperties, node));
+      if (state == null) {
+        return null;
+      }
+      while (!state._done) {
+        final long wait = _lastProgress.get(state._claimant) + getWaitTimeoutMillis() - System.currentTimeMillis();
+        if (wait <= 0) {
+          s_logger.warn("Timeout waiting for shared node {}; executing it instead", node);
+          return null;
+        }
+        wait(wait);
+      }
+      return state._values;
+    }
+
+    /**
+     * Publishes the outputs of a node claimed by the caller.
+     *
+     * @param claimant the claiming cycle, not null
+     * @param defaultProperties the default properties of the node's calculation configuration, not null
+     * @param node the executed node, not null
+     * @param values the node's outputs, or null if they are not available and waiting cycles must execute the node
+     */
+    public synchronized void publish(final Object claimant, final ValueProperties defaultProperties, final DependencyNode node,
+        final Map<ValueSpecification, Object> values) {
+      final NodeState state = _nodes.get(new NodeKey(defaultProperties, node));
+      if ((state != null) && (state._claimant == claimant) && !state._done) {
+        state._values = values;
+        state._done = true;
+        _lastProgress.put(claimant, System.currentTimeMillis());
+        notifyAll();
+      }
+    }
+
+    /**
+     * Abandons any nodes claimed by the caller but not yet published. Cycles waiting for them will execute them
+     * instead.
+     *
+     * @param claimant the claiming cycle, not null
+     */
+    public synchronized void abandon(final Object claimant) {
+      for (NodeState state : _nodes.values()) {
+        if ((state._claimant == claimant) && !state._done) {
+          state._done = true;
+        }
+      }
+      notifyAll();
+    }
+
+  }
+
+  /**
+   * Aligns the valuation time and version-correction of a cycle with those of recent cycles of other view processes
+   * using the same market data specification, so that they can join the same execution.
+   * <p>
+   * A valuation time taken from the market data snapshot is replaced by that of a cycle whose snapshot was taken within
+   * the alignment tolerance; a fixed valuation time must match exactly. A version-correction containing "latest" is
+   * resolved to the same instant as that of a cycle which resolved it within the alignment tolerance. Successive cycles
+   * of the same view process are never aligned with each other.
+   *
+   * @param claimant the view process aligning its cycle, not null
+   * @param marketDataSpecification the market data specification of the cycle, not null
+   * @param valuationTime the valuation time of the cycle, not null
+   * @param snapshotValuationTime true if the valuation time is the snapshot time, false if it was fixed by the
+   *        execution options
+   * @param versionCorrection the version-correction requested for the cycle, not null
+   * @return the valuation time and resolved version-correction to use, not null
+   */
+  public synchronized Alignment align(final Object claimant, final MarketDataSpecification marketDataSpecification, final Instant valuationTime,
+      final boolean snapshotValuationTime, final VersionCorrection versionCorrection) {
+    ArgumentChecker.notNull(claimant, "claimant");
+    ArgumentChecker.notNull(marketDataSpecification, "marketDataSpecification");
+    ArgumentChecker.notNull(valuationTime, "valuationTime");
+    ArgumentChecker.notNull(versionCorrection, "versionCorrection");
+    final long now = System.currentTimeMillis();
+    final Iterator<Alignment> itr = _alignments.values().iterator();
+    while (itr.hasNext()) {
+      if (now - itr.next()._resolvedMillis > getAlignmentToleranceMillis()) {
+        itr.remove();
+      }
+    }
+    final AlignmentKey key = new AlignmentKey(marketDataSpecification, snapshotValuationTime ? null : valuationTime, versionCorrection);
+    final Alignment existing = _alignments.get(key);
+    if ((existing != null) && !existing._claimants.contains(claimant) && (!snapshotValuationTime
+        || Math.abs(valuationTime.toEpochMillisLong() - existing.getValuationTime().toEpochMillisLong()) <= getAlignmentToleranceMillis())) {
+      existing._claimants.add(claimant);
+      return existing;
+    }
+    final VersionCorrection resolved = versionCorrection.containsLatest() ? versionCorrection.withLatestFixed(Instant.ofEpochMillis(now)) : versionCorrection;
+    final Alignment alignment = new Alignment(valuationTime, resolved, now);
+    alignment._claimants.add(claimant);
+    _alignments.put(key, alignment);
+    return alignment;
+  }
+
+  /**
+   * Joins a shared execution, creating a new one if there is none with consistent market data.
+   *
+   * @param marketDataSpecification the market data specification of the cycle, not null
+   * @param valuationTime the valuation time of the cycle, not null
+   * @param versionCorrection the resolved version-correction of the cycle, not null
+   * @param functionInitId the function initialization identifier of the cycle's compilation
+   * @param marketData the market data values used by the cycle, not null
+   * @return the execution, not null. It must be released by {@link #release}
+   */
+  public synchronized Execution join(final MarketDataSpecification marketDataSpecification, final Instant valuationTime, final VersionCorrection versionCorrection,
+      final long functionInitId, final Map<ValueSpecification, Object> marketData) {
+    ArgumentChecker.notNull(marketDataSpecification, "marketDataSpecification");
+    ArgumentChecker.notNull(valuationTime, "valuationTime");
+    ArgumentChecker.notNull(versionCorrection, "versionCorrection");
+    ArgumentChecker.notNull(marketData, "marketData");
+    final ExecutionKey key = new ExecutionKey(marketDataSpecification, valuationTime, versionCorrection, functionInitId);
+    List<Execution> executions = _executions.get(key);
+    if (executions == null) {
+      executions = new ArrayList<Execution>(1);
+      _executions.put(key, executions);
+    }
+    for (Execution execution : executions) {
+      if (execution.isConsistent(marketData)) {
+        for (Map.Entry<ValueSpecification, Object> data : marketData.entrySet()) {
+          if (!execution._marketData.containsKey(data.getKey())) {
+            execution._marketData.put(data.getKey(), data.getValue());
+          }
+        }
+        execution._refCount++;
+        return execution;
+      }
+    }
+    final Execution execution = new Execution(key, marketData);
+    execution._refCount = 1;
+    executions.add(execution);
+    return execution;
+  }
+
+  /**
+   * Releases a cycle's reference to an execution, discarding the execution when it is no longer referenced.
+   *
+   * @param execution the execution returned by {@link #join}, not null
+   */
+  public synchronized void release(final Execution execution) {
+    ArgumentChecker.notNull(execution, "execution");
+    if (--execution._refCount > 0) {
+      return;
+    }
+    final List<Execution> executions = _executions.get(execution._key);
+    if (executions != null) {
+      executions.remove(execution);
+      if (executions.isEmpty()) {
+        _executions.remove(execution._key);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of executions currently referenced.
+   *
+   * @return the number of executions
+   */
+  public synchronized int getExecutionCount() {
+    int count = 0;
+    for (List<Execution> executions : _executions.values()) {
+      count += executions.size();
+    }
+    return count;
+  }
+
+}
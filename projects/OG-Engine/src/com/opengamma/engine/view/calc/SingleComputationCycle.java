@@ -16,6 +16,8 @@ import com.opengamma.engine.function.MarketDataSourcingFunction;
 import com.opengamma.engine.marketdata.MarketDataSnapshot;
 import com.opengamma.engine.marketdata.OverrideOperation;
 import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.DeferredValue;
+import com.opengamma.engine.value.ValueProperties;
 import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.InMemoryViewComputationResultModel;
@@ -24,6 +26,7 @@ import com.opengamma.engine.view.ViewComputationResultModel;
 import com.opengamma.engine.view.ViewDefinition;
 import com.opengamma.engine.view.ViewProcessContext;
 import com.opengamma.engine.view.cache.CacheSelectHint;
+import com.opengamma.engine.view.cache.DefaultViewComputationCache;
 import com.opengamma.engine.view.cache.MissingMarketDataSentinel;
 import com.opengamma.engine.view.cache.ViewComputationCache;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
@@ -33,6 +36,7 @@ import com.opengamma.engine.view.calcnode.InvocationResult;
 import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.engine.view.listener.ComputationResultListener;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
@@ -47,6 +51,7 @@ import javax.time.Instant;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -100,6 +105,14 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
   private final Set<DependencyNode> _executedNodes = Collections.newSetFromMap(new ConcurrentHashMap<DependencyNode, Boolean>());
   private final Set<DependencyNode> _failedNodes = Collections.newSetFromMap(new ConcurrentHashMap<DependencyNode, Boolean>());
   private final Map<String, ViewComputationCache> _cachesByCalculationConfiguration = new HashMap<String, ViewComputationCache>();
+  private volatile SharedExecutionCache.Execution _sharedExecution;
+  /** The nodes claimed by this cycle in the shared execution, with their calculation configuration names. */
+  private final Map<DependencyNode, String> _claimedNodes = new ConcurrentHashMap<DependencyNode, String>();
+  /** The nodes claimed by other cycles in the shared execution, with their calculation configuration names. */
+  private final Map<DependencyNode, String> _pendingNodes = new HashMap<DependencyNode, String>();
+  /** The nodes claimed by other cycles and the nodes which depend on them, not to be executed until they are published. */
+  private final Set<DependencyNode> _deferredNodes = new HashSet<DependencyNode>();
+  private final Set<ValueSpecification> _missingMarketData = new HashSet<ValueSpecification>();
 
   // Output
   private final InMemoryViewComputationResultModel _resultModel;
@@ -286,6 +299,27 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
    *                               still must be called.
    */
   public void execute(SingleComputationCycle previousCycle, MarketDataSnapshot marketDataSnapshot, ExecutorService calcJobResultExecutorService) throws InterruptedException {
+    execute(previousCycle, Collections.<ObjectId>emptySet(), marketDataSnapshot, calcJobResultExecutorService);
+  }
+
+  /**
+   * Synchronously runs the cycle, treating nodes on any of the given targets as changed when performing a delta
+   * cycle. Only the changed nodes, and those depending on them, are submitted for execution. All other values are
+   * carried forward from the previous cycle.
+   *
+   * @param previousCycle  the previous cycle from which a delta cycle should be performed, or null to perform
+   *                       a full cycle
+   * @param invalidatedTargets  the object identifiers of computation targets which have changed since the previous
+   *                            cycle, not null
+   * @param marketDataSnapshot  the market data snapshot with which to execute the cycle, not null
+   * @param calcJobResultExecutorService  the executor to use for streaming calculation job result consumption, not null
+   * @throws InterruptedException  if the thread is interrupted while waiting for the computation cycle to complete.
+   *                               Execution of any outstanding jobs will be cancelled, but {@link #release()}
+   *                               still must be called.
+   */
+  public void execute(SingleComputationCycle previousCycle, Set<ObjectId> invalidatedTargets, MarketDataSnapshot marketDataSnapshot,
+      ExecutorService calcJobResultExecutorService) throws InterruptedException {
+    ArgumentChecker.notNull(invalidatedTargets, "invalidatedTargets");
     if (_state != ViewCycleState.AWAITING_EXECUTION) {
       throw new IllegalStateException("State must be " + ViewCycleState.AWAITING_EXECUTION);
     }
@@ -293,54 +327,25 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
     _state = ViewCycleState.EXECUTING;
 
     createAllCaches();
-    prepareInputs(marketDataSnapshot);
+    final Map<ValueSpecification, Object> marketData = prepareInputs(marketDataSnapshot);
 
     if (previousCycle != null) {
-      computeDelta(previousCycle);
+      computeDelta(previousCycle, invalidatedTargets);
     }
+    claimSharedNodes(marketData);
 
     final BlockingQueue<CalculationJobResult> calcJobResultQueue = new LinkedBlockingQueue<CalculationJobResult>();
     CalculationJobResultStreamConsumer calculationJobResultStreamConsumer = new CalculationJobResultStreamConsumer(calcJobResultQueue, this);
     Future<?> resultStreamConsumerJobInProgress;
     try {
       resultStreamConsumerJobInProgress = calcJobResultExecutorService.submit(calculationJobResultStreamConsumer);
-
-      LinkedList<Future<?>> futures = new LinkedList<Future<?>>();
-
-      for (String calcConfigurationName : getAllCalculationConfigurationNames()) {
-        s_logger.info("Executing plans for calculation configuration {}", calcConfigurationName);
-        DependencyGraph depGraph = getExecutableDependencyGraph(calcConfigurationName);
-
-        s_logger.info("Submitting {} for execution by {}", depGraph, getDependencyGraphExecutor());
-
-        Future<?> future = getDependencyGraphExecutor().execute(depGraph, calcJobResultQueue, _statisticsGatherer);
-        futures.add(future);
-      }
-
-      while (!futures.isEmpty()) {
-        Future<?> future = futures.poll();
-        try {
-          future.get(5, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-          s_logger.info("Waiting for " + future);
-          futures.add(future);
-        } catch (InterruptedException e) {
-          Thread.interrupted();
-          // Cancel all outstanding jobs to free up resources
-          future.cancel(true);
-          for (Future<?> incompleteFuture : futures) {
-            incompleteFuture.cancel(true);
-          }
-          _state = ViewCycleState.EXECUTION_INTERRUPTED;
-          s_logger.info("Execution interrupted before completion.");
-          throw e;
-        } catch (ExecutionException e) {
-          s_logger.error("Unable to execute dependency graph", e);
-          // Should we be swallowing this or not?
-          throw new OpenGammaRuntimeException("Unable to execute dependency graph", e);
-        }
+      executeDependencyGraphs(calcJobResultQueue);
+      if (!_deferredNodes.isEmpty()) {
+        // Everything not depending on another cycle's nodes has been executed; collect those nodes and execute the rest
+        awaitSharedNodes();
+        _deferredNodes.clear();
+        executeDependencyGraphs(calcJobResultQueue);
       }
-
       _endTime = Instant.now();
     } finally {
       calculationJobResultStreamConsumer.terminate();
@@ -355,10 +360,52 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
       Thread.currentThread().interrupt();
     }
 
+    if (_sharedExecution != null) {
+      // Anything claimed but not published by now will not be; waiting cycles must execute it themselves
+      _sharedExecution.abandon(this);
+    }
     populateResultModel();
     _state = ViewCycleState.EXECUTED;
   }
 
+  private void executeDependencyGraphs(final BlockingQueue<CalculationJobResult> calcJobResultQueue) throws InterruptedException {
+    LinkedList<Future<?>> futures = new LinkedList<Future<?>>();
+
+    for (String calcConfigurationName : getAllCalculationConfigurationNames()) {
+      s_logger.info("Executing plans for calculation configuration {}", calcConfigurationName);
+      DependencyGraph depGraph = getExecutableDependencyGraph(calcConfigurationName);
+
+      s_logger.info("Submitting {} for execution by {}", depGraph, getDependencyGraphExecutor());
+
+      Future<?> future = getDependencyGraphExecutor().execute(depGraph, calcJobResultQueue, _statisticsGatherer);
+      futures.add(future);
+    }
+
+    while (!futures.isEmpty()) {
+      Future<?> future = futures.poll();
+      try {
+        future.get(5, TimeUnit.SECONDS);
+      } catch (TimeoutException e) {
+        s_logger.info("Waiting for " + future);
+        futures.add(future);
+      } catch (InterruptedException e) {
+        Thread.interrupted();
+        // Cancel all outstanding jobs to free up resources
+        future.cancel(true);
+        for (Future<?> incompleteFuture : futures) {
+          incompleteFuture.cancel(true);
+        }
+        _state = ViewCycleState.EXECUTION_INTERRUPTED;
+        s_logger.info("Execution interrupted before completion.");
+        throw e;
+      } catch (ExecutionException e) {
+        s_logger.error("Unable to execute dependency graph", e);
+        // Should we be swallowing this or not?
+        throw new OpenGammaRuntimeException("Unable to execute dependency graph", e);
+      }
+    }
+  }
+
   /**
    * Creates a map containing the "shift" operations to apply to market data or each
    * calculation configuration. If there is no operation to apply, the map contains
@@ -390,7 +437,8 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
     return shifts;
   }
 
-  private void prepareInputs(MarketDataSnapshot snapshot) {
+  private Map<ValueSpecification, Object> prepareInputs(MarketDataSnapshot snapshot) {
+    Map<ValueSpecification, Object> marketData = new HashMap<ValueSpecification, Object>();
     Set<ValueSpecification> missingMarketData = new HashSet<ValueSpecification>();
     Map<ValueRequirement, ValueSpecification> marketDataRequirements = getCompiledViewDefinition().getMarketDataRequirements();
     s_logger.debug("Populating {} market data items using snapshot {}", marketDataRequirements.size(), snapshot);
@@ -417,11 +465,141 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
         addMarketDataToResultFragment(marketDataResultFragment, marketDataRequirement.getValue(), dataAsValue);
       }
       addToAllCaches(marketDataRequirement.getKey(), dataAsValue, cacheMarketDataOperation);
+      marketData.put(dataAsValue.getSpecification(), dataAsValue.getValue());
     }
     if (!missingMarketData.isEmpty()) {
       s_logger.info("Missing {} market data elements: {}", missingMarketData.size(), formatMissingLiveData(missingMarketData));
+      _missingMarketData.addAll(missingMarketData);
     }
     notifyFragmentCompleted(marketDataResultFragment);
+    return marketData;
+  }
+
+  /**
+   * Joins the shared execution for the cycle's inputs, if there is a shared execution cache, and claims the nodes
+   * still to be executed. Nodes already claimed by cycles of other view processes, and the nodes depending on them,
+   * are deferred until those cycles publish them.
+   * <p>
+   * Calculation configurations which shift the market data are excluded as their nodes see different inputs from
+   * those of other views.
+   *
+   * @param marketData  the market data values used by the cycle, not null
+   */
+  private void claimSharedNodes(final Map<ValueSpecification, Object> marketData) {
+    final SharedExecutionCache sharedCache = getViewProcessContext().getSharedExecutionCache();
+    if (sharedCache == null) {
+      return;
+    }
+    final Map<DependencyNode, ValueProperties> nodes = new HashMap<DependencyNode, ValueProperties>();
+    final Map<DependencyNode, String> calcConfigs = new HashMap<DependencyNode, String>();
+    for (ViewCalculationConfiguration calcConfig : getViewDefinition().getAllCalculationConfigurations()) {
+      if (calcConfig.getDefaultProperties().getValues("MARKET_DATA_SHIFT") != null) {
+        continue;
+      }
+      final DependencyGraph depGraph = getDependencyGraph(calcConfig.getName());
+      if (depGraph == null) {
+        continue;
+      }
+      for (DependencyNode node : depGraph.getDependencyNodes()) {
+        if (!isExecuted(node) && !(node.getFunction().getFunction() instanceof MarketDataSourcingFunction)) {
+          nodes.put(node, calcConfig.getDefaultProperties());
+          calcConfigs.put(node, calcConfig.getName());
+        }
+      }
+    }
+    if (nodes.isEmpty()) {
+      return;
+    }
+    _sharedExecution = sharedCache.join(getExecutionOptions().getMarketDataSpecification(), getValuationTime(), getVersionCorrection(), getFunctionInitId(),
+        marketData);
+    final Collection<DependencyNode> pending = _sharedExecution.claim(this, nodes);
+    for (DependencyNode node : pending) {
+      _pendingNodes.put(node, calcConfigs.remove(node));
+    }
+    _claimedNodes.putAll(calcConfigs);
+    final LinkedList<DependencyNode> deferred = new LinkedList<DependencyNode>(pending);
+    while (!deferred.isEmpty()) {
+      final DependencyNode node = deferred.removeFirst();
+      if (_deferredNodes.add(node)) {
+        deferred.addAll(node.getDependentNodes());
+      }
+    }
+  }
+
+  /**
+   * Waits for each node claimed by other cycles, copying its outputs into the computation cache as soon as it is
+   * published. Nodes not published, for example because their claimant failed, are left for this cycle to execute.
+   *
+   * @throws InterruptedException  if the thread is interrupted while waiting for another cycle's results
+   */
+  private void awaitSharedNodes() throws InterruptedException {
+    final InMemoryViewComputationResultModel sharedResultFragment = constructTemplateResultModel();
+    int sharedCount = 0;
+    for (Map.Entry<DependencyNode, String> node : _pendingNodes.entrySet()) {
+      final String calcConfigurationName = node.getValue();
+      final Map<ValueSpecification, Object> sharedValues = _sharedExecution.await(
+          getViewDefinition().getCalculationConfiguration(calcConfigurationName).getDefaultProperties(), node.getKey());
+      if (sharedValues == null) {
+        continue;
+      }
+      final Set<ValueSpecification> terminalOutputs = getDependencyGraph(calcConfigurationName).getTerminalOutputSpecifications();
+      final Collection<ComputedValue> values = new ArrayList<ComputedValue>(sharedValues.size());
+      for (Map.Entry<ValueSpecification, Object> value : sharedValues.entrySet()) {
+        final ComputedValue computedValue = new ComputedValue(value.getKey(), value.getValue());
+        values.add(computedValue);
+        if (terminalOutputs.contains(value.getKey())) {
+          sharedResultFragment.addValue(calcConfigurationName, computedValue);
+        }
+      }
+      getComputationCache(calcConfigurationName).putSharedValues(values);
+      markExecuted(node.getKey());
+      sharedCount++;
+    }
+    s_logger.info("Using {} of {} node results shared from other view processes", sharedCount, _pendingNodes.size());
+    if (!sharedResultFragment.getAllResults().isEmpty()) {
+      notifyFragmentCompleted(sharedResultFragment);
+    }
+  }
+
+  /**
+   * Publishes the outputs of any nodes claimed by this cycle in the shared execution as soon as their jobs complete,
+   * so that cycles waiting for them do not have to wait for the whole of this cycle. Failed nodes, or those whose
+   * outputs are not all available locally, are abandoned for the waiting cycles to execute themselves.
+   *
+   * @param results  the completed job results, not null
+   */
+  private void publishSharedNodes(final List<CalculationJobResult> results) {
+    final SharedExecutionCache.Execution sharedExecution = _sharedExecution;
+    if ((sharedExecution == null) || _claimedNodes.isEmpty()) {
+      return;
+    }
+    for (CalculationJobResult result : results) {
+      final String calcConfigurationName = result.getSpecification().getCalcConfigName();
+      final DependencyGraph depGraph = getDependencyGraph(calcConfigurationName);
+      final ValueProperties defaultProperties = getViewDefinition().getCalculationConfiguration(calcConfigurationName).getDefaultProperties();
+      for (CalculationJobResultItem item : result.getResultItems()) {
+        final Set<ValueSpecification> outputs = item.getOutputs();
+        if (outputs.isEmpty()) {
+          continue;
+        }
+        final DependencyNode node = depGraph.getNodeProducing(outputs.iterator().next());
+        if ((node == null) || (_claimedNodes.remove(node) == null)) {
+          continue;
+        }
+        Map<ValueSpecification, Object> values = null;
+        if (!item.failed()) {
+          values = new HashMap<ValueSpecification, Object>();
+          for (Pair<ValueSpecification, Object> value : getComputationCache(calcConfigurationName).getValues(node.getOutputValues())) {
+            if (value.getSecond() == null) {
+              values = null;
+              break;
+            }
+            values.put(value.getFirst(), value.getSecond());
+          }
+        }
+        sharedExecution.publish(this, defaultProperties, node, values);
+      }
+    }
   }
 
   private static String formatMissingLiveData(Set<ValueSpecification> missingLiveData) {
@@ -478,8 +656,9 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
    * </ul> 
    *
    * @param previousCycle Previous iteration. It must not have been cleaned yet ({@link #releaseResources()}).
+   * @param invalidatedTargets Computation targets which must be recomputed regardless of their inputs
    */
-  private void computeDelta(SingleComputationCycle previousCycle) {
+  private void computeDelta(SingleComputationCycle previousCycle, Set<ObjectId> invalidatedTargets) {
     if (previousCycle.getState() != ViewCycleState.EXECUTED) {
       throw new IllegalArgumentException("State of previous cycle must be " + ViewCycleState.EXECUTED);
     }
@@ -487,10 +666,16 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
     for (String calcConfigurationName : getAllCalculationConfigurationNames()) {
       DependencyGraph depGraph = getCompiledViewDefinition().getDependencyGraph(calcConfigurationName);
 
+      DependencyGraph previousDepGraph = previousCycle.getCompiledViewDefinition().getDependencyGraph(calcConfigurationName);
+      if (previousDepGraph == null) {
+        // Configuration not present in the previous cycle; everything must be calculated
+        continue;
+      }
       ViewComputationCache cache = getComputationCache(calcConfigurationName);
       ViewComputationCache previousCache = previousCycle.getComputationCache(calcConfigurationName);
 
-      LiveDataDeltaCalculator deltaCalculator = new LiveDataDeltaCalculator(depGraph, cache, previousCache);
+      // The graph may have been recompiled, for example to pick up a changed target, so nodes are matched by calculation
+      LiveDataDeltaCalculator deltaCalculator = new LiveDataDeltaCalculator(depGraph, cache, previousDepGraph, previousCache, invalidatedTargets);
       deltaCalculator.computeDelta();
 
       s_logger.info("Computed delta for calculation configuration '{}'. {} nodes out of {} require recomputation.",
@@ -499,9 +684,10 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
       Collection<ValueSpecification> specsToCopy = new HashSet<ValueSpecification>();
 
       for (DependencyNode unchangedNode : deltaCalculator.getUnchangedNodes()) {
-        if (previousCycle.isExecuted(unchangedNode)) {
+        DependencyNode previousNode = deltaCalculator.getPreviousNode(unchangedNode);
+        if (previousCycle.isExecuted(previousNode)) {
           markExecuted(unchangedNode);
-          if (previousCycle.isFailed(unchangedNode)) {
+          if (previousCycle.isFailed(previousNode)) {
             markFailed(unchangedNode);
           } else {
             specsToCopy.addAll(unchangedNode.getOutputValues());
@@ -509,10 +695,24 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
         }
       }
       if (!specsToCopy.isEmpty()) {
-        Set<ComputedValue> valuesCopied = copyValues(cache, previousCache, specsToCopy);
-        for (ComputedValue value : valuesCopied) {
-          if (depGraph.getTerminalOutputSpecifications().contains(value.getSpecification())) {
-            deltaResultFragment.addValue(calcConfigurationName, value);
+        if ((cache instanceof DefaultViewComputationCache) && (previousCache instanceof DefaultViewComputationCache)) {
+          // Carry the encoded values forward without deserializing them; only the terminal outputs need decoding
+          ((DefaultViewComputationCache) cache).copySharedValues((DefaultViewComputationCache) previousCache, specsToCopy);
+          Collection<ValueSpecification> terminalSpecs = new HashSet<ValueSpecification>(specsToCopy);
+          terminalSpecs.retainAll(depGraph.getTerminalOutputSpecifications());
+          if (!terminalSpecs.isEmpty()) {
+            for (Pair<ValueSpecification, Object> value : cache.getValues(terminalSpecs, CacheSelectHint.allShared())) {
+              if (value.getSecond() != null) {
+                deltaResultFragment.addValue(calcConfigurationName, new ComputedValue(value.getFirst(), value.getSecond()));
+              }
+            }
+          }
+        } else {
+          Set<ComputedValue> valuesCopied = copyValues(cache, previousCache, specsToCopy);
+          for (ComputedValue value : valuesCopied) {
+            if (depGraph.getTerminalOutputSpecifications().contains(value.getSpecification())) {
+              deltaResultFragment.addValue(calcConfigurationName, value);
+            }
           }
         }
       }
@@ -547,7 +747,15 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
 
   private void populateResultModel(String calcConfigurationName, DependencyGraph depGraph) {
     ViewComputationCache computationCache = getComputationCache(calcConfigurationName);
-    
+    if (computationCache instanceof DefaultViewComputationCache) {
+      // Values are only decoded if a client accesses them, or a delta comparison needs them
+      final Set<ValueSpecification> outputs = getOutputSpecificationsForResultModel(depGraph);
+      outputs.removeAll(_missingMarketData);
+      for (Pair<ValueSpecification, DeferredValue> value : ((DefaultViewComputationCache) computationCache).getDeferredValues(outputs, CacheSelectHint.allShared())) {
+        getResultModel().addValue(calcConfigurationName, ComputedValue.deferred(value.getFirst(), value.getSecond()));
+      }
+      return;
+    }
     for (Pair<ValueSpecification, Object> value : computationCache.getValues(getOutputSpecificationsForResultModel(depGraph), CacheSelectHint.allShared())) {
       if (value.getValue() == null) {
         continue;
@@ -632,6 +840,11 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
 
   //-------------------------------------------------------------------------
   /*package*/void calculationJobsCompleted(List<CalculationJobResult> results) {
+    try {
+      publishSharedNodes(results);
+    } catch (Exception e) {
+      s_logger.warn("Error publishing shared node results after calculation jobs completed: " + results, e);
+    }
     try {
       ViewComputationResultModel fragmentResult = generateCycleFragmentResult(results);
       if (fragmentResult != null) {
@@ -724,7 +937,7 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
         if (node.getFunction().getFunction() instanceof MarketDataSourcingFunction) {
           markExecuted(node);
         }
-        return !isExecuted(node);
+        return !isExecuted(node) && !_deferredNodes.contains(node);
       }
     });
   }
@@ -739,6 +952,12 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
       dumpComputationCachesToDisk();
     }
     getViewProcessContext().getComputationCacheSource().releaseCaches(getUniqueId());
+    final SharedExecutionCache.Execution sharedExecution = _sharedExecution;
+    if (sharedExecution != null) {
+      sharedExecution.abandon(this);
+      getViewProcessContext().getSharedExecutionCache().release(sharedExecution);
+      _sharedExecution = null;
+    }
     _state = ViewCycleState.DESTROYED;
   }
 
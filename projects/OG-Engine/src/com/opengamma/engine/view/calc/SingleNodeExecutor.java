@@ -33,6 +33,7 @@ import com.opengamma.engine.view.calcnode.CalculationJobResult;
 import com.opengamma.engine.view.calcnode.CalculationJobResultItem;
 import com.opengamma.engine.view.calcnode.CalculationJobSpecification;
 import com.opengamma.engine.view.calcnode.JobResultReceiver;
+import com.opengamma.engine.view.calcnode.PartialJobResultReceiver;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.Cancelable;
 
@@ -44,7 +45,7 @@ import com.opengamma.util.Cancelable;
  * {@link com.opengamma.engine.view.ViewProcessContext}.
  * 
  */
-public class SingleNodeExecutor implements DependencyGraphExecutor<CalculationJobResult>, JobResultReceiver {
+public class SingleNodeExecutor implements DependencyGraphExecutor<CalculationJobResult>, JobResultReceiver, PartialJobResultReceiver {
 
   private static final Logger s_logger = LoggerFactory.getLogger(SingleNodeExecutor.class);
 
@@ -128,6 +129,14 @@ public class SingleNodeExecutor implements DependencyGraphExecutor<CalculationJo
     return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
   }
 
+  @Override
+  public void partialResultReceived(CalculationJobResult partialResult) {
+    AtomicExecutorFuture future = _executingSpecifications.get(partialResult.getSpecification());
+    if (future != null) {
+      future._callable.partialResultReceived(partialResult);
+    }
+  }
+
   @Override
   public void resultReceived(CalculationJobResult result) {
     AtomicExecutorFuture future = _executingSpecifications.remove(result.getSpecification());
@@ -202,6 +211,7 @@ public class SingleNodeExecutor implements DependencyGraphExecutor<CalculationJo
   private final class AtomicExecutorCallable implements Callable<CalculationJobResult> {
     private RuntimeException _exception;
     private CalculationJobResult _result;
+    private int _partialResultItems;
     private final BlockingQueue<CalculationJobResult> _calcJobResultQueue;
 
     private AtomicExecutorCallable(final BlockingQueue<CalculationJobResult> calcJobResultQueue) {
@@ -209,16 +219,28 @@ public class SingleNodeExecutor implements DependencyGraphExecutor<CalculationJo
     }
 
     @Override
-    public CalculationJobResult call() throws Exception {
+    public synchronized CalculationJobResult call() throws Exception {
       if (_exception != null) {
         throw _exception;
       }
       if (_result == null) {
         throw new IllegalStateException("Result is null");
       }
-      _calcJobResultQueue.add(_result);
+      if (_partialResultItems == 0) {
+        _calcJobResultQueue.add(_result);
+      } else if (_partialResultItems < _result.getResultItems().size()) {
+        // Only the items not already streamed to the cycle as partial results
+        final List<CalculationJobResultItem> items = _result.getResultItems();
+        _calcJobResultQueue.add(new CalculationJobResult(_result.getSpecification(), _result.getDuration(),
+            new ArrayList<CalculationJobResultItem>(items.subList(_partialResultItems, items.size())), _result.getComputeNodeId()));
+      }
       return _result;
     }
+
+    private synchronized void partialResultReceived(final CalculationJobResult partialResult) {
+      _partialResultItems += partialResult.getResultItems().size();
+      _calcJobResultQueue.add(partialResult);
+    }
   }
 
 }
@@ -52,6 +52,7 @@ import com.opengamma.engine.view.calc.trigger.ViewCycleEligibility;
 import com.opengamma.engine.view.calc.trigger.ViewCycleTrigger;
 import com.opengamma.engine.view.calc.trigger.ViewCycleTriggerResult;
 import com.opengamma.engine.view.calc.trigger.ViewCycleType;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionStore;
 import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
 import com.opengamma.engine.view.compilation.ViewCompilationServices;
 import com.opengamma.engine.view.compilation.ViewDefinitionCompiler;
@@ -59,6 +60,7 @@ import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.engine.view.execution.ViewExecutionFlags;
 import com.opengamma.engine.view.execution.ViewExecutionOptions;
 import com.opengamma.engine.view.listener.ComputationResultListener;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
@@ -82,6 +84,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
   private final ViewCycleTrigger _masterCycleTrigger;
   private final FixedTimeTrigger _compilationExpiryCycleTrigger;
   private final boolean _executeCycles;
+  private final ViewCycleTimeSource _timeSource;
 
   private int _cycleCount;
   private EngineResourceReference<SingleComputationCycle> _previousCycleReference;
@@ -93,12 +96,25 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
   private CountDownLatch _pendingSubscriptionLatch;
 
   private ChangeListener _viewDefinitionChangeListener;
+  private ChangeListener _targetChangeListener;
+  private final Set<ObjectId> _changedTargets = Collections.newSetFromMap(new ConcurrentHashMap<ObjectId, Boolean>());
 
   private volatile boolean _wakeOnMarketDataChanged;
   private volatile boolean _marketDataChanged = true;
   private volatile boolean _forceTriggerCycle;
   private volatile boolean _viewDefinitionDirty = true;
   private volatile boolean _compilationDirty;
+  /**
+   * Whether the compiled view definition store has been consulted. A stored compilation can only save work when the job
+   * first compiles; after that the job's own compilation is at least as recent as anything it could restore.
+   */
+  private boolean _compiledViewDefinitionStoreConsulted;
+  /**
+   * Whether the cached compiled view definition has been partially recompiled since it was last stored. It is stored
+   * by the first cycle without target changes rather than after every recompilation, as a stream of target changes
+   * would otherwise write it out on every cycle.
+   */
+  private boolean _compiledViewDefinitionStorePending;
 
   /**
    * Nanoseconds
@@ -109,10 +125,18 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
 
   public ViewComputationJob(ViewProcessImpl viewProcess, ViewExecutionOptions executionOptions,
       ViewProcessContext processContext, EngineResourceManagerInternal<SingleComputationCycle> cycleManager) {
+    this(viewProcess, executionOptions, processContext, cycleManager, ViewCycleTimeSource.SYSTEM);
+  }
+
+  public ViewComputationJob(ViewProcessImpl viewProcess, ViewExecutionOptions executionOptions,
+      ViewProcessContext processContext, EngineResourceManagerInternal<SingleComputationCycle> cycleManager,
+      ViewCycleTimeSource timeSource) {
     ArgumentChecker.notNull(viewProcess, "viewProcess");
     ArgumentChecker.notNull(executionOptions, "executionOptions");
     ArgumentChecker.notNull(processContext, "processContext");
     ArgumentChecker.notNull(cycleManager, "cycleManager");
+    ArgumentChecker.notNull(timeSource, "timeSource");
+    _timeSource = timeSource;
     _viewProcess = viewProcess;
     _executionOptions = executionOptions;
     _processContext = processContext;
@@ -123,6 +147,9 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     _executeCycles = !getExecutionOptions().getFlags().contains(ViewExecutionFlags.COMPILE_ONLY);
     updateViewDefinitionIfRequired();
     subscribeToViewDefinition();
+    if (executionOptions.getFlags().contains(ViewExecutionFlags.TRIGGER_CYCLE_ON_TARGET_CHANGED)) {
+      subscribeToTargets();
+    }
   }
 
   private ViewCycleTrigger createViewCycleTrigger(ViewExecutionOptions executionOptions) {
@@ -157,6 +184,10 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     return _cycleManager;
   }
 
+  private ViewCycleTimeSource getTimeSource() {
+    return _timeSource;
+  }
+
   private ViewCycleTrigger getMasterCycleTrigger() {
     return _masterCycleTrigger;
   }
@@ -251,13 +282,21 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     }
 
     VersionCorrection versionCorrection = getResolvedVersionCorrection();
+    // Targets are resolved when the view is compiled, so a changed target is only picked up by recompiling the parts
+    // of the graphs depending on it at the newly resolved version-correction. Nodes which are the same in the new
+    // graph are carried forward in a delta.
+    final Set<ObjectId> changedTargets = takeChangedTargets();
+    if (!changedTargets.isEmpty()) {
+      getProcessContext().getComputationTargetResolver().evict(changedTargets);
+    }
     final CompiledViewDefinitionWithGraphsImpl compiledViewDefinition;
     try {
-      compiledViewDefinition = getCompiledViewDefinition(compilationValuationTime, versionCorrection);
+      compiledViewDefinition = getCompiledViewDefinition(compilationValuationTime, versionCorrection, changedTargets);
       if (isTerminated()) {
         return; //[PLAT-1904]
       }
     } catch (Exception e) {
+      _changedTargets.addAll(changedTargets);
       String message = MessageFormat.format("Error obtaining compiled view definition {0} for time {1} at version-correction {2}",
           getViewProcess().getDefinitionId(), compilationValuationTime, versionCorrection);
       s_logger.error(message);
@@ -271,9 +310,20 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       } else {
         marketDataSnapshot.init();
       }
-      if (executionOptions.getValuationTime() == null) {
+      final boolean snapshotValuationTime = executionOptions.getValuationTime() == null;
+      if (snapshotValuationTime) {
         executionOptions.setValuationTime(marketDataSnapshot.getSnapshotTime());
       }
+      final SharedExecutionCache sharedExecutionCache = getProcessContext().getSharedExecutionCache();
+      if (sharedExecutionCache != null) {
+        // Cycles of other view processes can only share work if their valuation times and version-corrections coincide
+        final SharedExecutionCache.Alignment alignment = sharedExecutionCache.align(getViewProcess(), executionOptions.getMarketDataSpecification(),
+            executionOptions.getValuationTime(), snapshotValuationTime, getExecutionOptions().getVersionCorrection());
+        if (compiledViewDefinition.isValidFor(alignment.getValuationTime())) {
+          executionOptions.setValuationTime(alignment.getValuationTime());
+          versionCorrection = alignment.getVersionCorrection();
+        }
+      }
     } catch (Exception e) {
       s_logger.error("Error initializing snapshot {}", marketDataSnapshot);
       cycleExecutionFailed(executionOptions, new OpenGammaRuntimeException("Error initializing snapshot" + marketDataSnapshot, e));
@@ -284,6 +334,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       cycleReference = createCycle(executionOptions, compiledViewDefinition, versionCorrection);
     } catch (Exception e) {
       s_logger.error("Error creating next view cycle for view process " + getViewProcess(), e);
+      _changedTargets.addAll(changedTargets);
       return;
     }
 
@@ -313,7 +364,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
             configToComputationTargets,
             configToTerminalOutputs
         ));
-        executeViewCycle(cycleType, cycleReference, marketDataSnapshot, getViewProcess().getCalcJobResultExecutorService());
+        executeViewCycle(cycleType, cycleReference, changedTargets, marketDataSnapshot, getViewProcess().getCalcJobResultExecutorService());
       } catch (InterruptedException e) {
         // Execution interrupted - don't propagate as failure
         s_logger.info("View cycle execution interrupted for view process {}", getViewProcess());
@@ -402,7 +453,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
 
   private synchronized ViewCycleType waitForNextCycle() throws InterruptedException {
     while (true) {
-      long currentTimeNanos = System.nanoTime();
+      long currentTimeNanos = getTimeSource().nanoTime();
       ViewCycleTriggerResult triggerResult = getMasterCycleTrigger().query(currentTimeNanos);
 
       ViewCycleEligibility cycleEligibility = triggerResult.getCycleEligibility();
@@ -437,14 +488,10 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
         _wakeOnMarketDataChanged = cycleEligibility == ViewCycleEligibility.ELIGIBLE;
       }
 
-      long sleepTime = wakeUpTime - currentTimeNanos;
-      sleepTime = Math.max(0, sleepTime);
-      sleepTime /= NANOS_PER_MILLISECOND;
-      sleepTime += 1; // Could have been rounded down during division so ensure only woken after state change 
-      s_logger.debug("Waiting for {} ms", sleepTime);
+      s_logger.debug("Waiting for {} ms", (wakeUpTime - currentTimeNanos) / NANOS_PER_MILLISECOND);
       try {
         // This could wait until end of time. In this case, only marketDataChanged() or triggerCycle() will wake it up
-        wait(sleepTime);
+        getTimeSource().await(this, currentTimeNanos, wakeUpTime);
       } catch (InterruptedException e) {
         // We support interruption as a signal that we have been terminated. If we're interrupted without having been
         // terminated, we'll just return to this method and go back to sleep.
@@ -457,6 +504,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
 
   private void executeViewCycle(ViewCycleType cycleType,
                                 EngineResourceReference<SingleComputationCycle> cycleReference,
+                                Set<ObjectId> changedTargets,
                                 MarketDataSnapshot marketDataSnapshot,
                                 ExecutorService calcJobResultExecutorService) throws Exception {
     SingleComputationCycle deltaCycle;
@@ -469,8 +517,9 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     }
 
     try {
-      cycleReference.get().execute(deltaCycle, marketDataSnapshot, calcJobResultExecutorService);
+      cycleReference.get().execute(deltaCycle, changedTargets, marketDataSnapshot, calcJobResultExecutorService);
     } catch (InterruptedException e) {
+      _changedTargets.addAll(changedTargets);
       Thread.interrupted();
       // In reality this means that the job has been terminated, and it will end as soon as we return from this method.
       // In case the thread has been interrupted without terminating the job, we tidy everything up as if the
@@ -478,6 +527,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       s_logger.info("Interrupted while executing a computation cycle. No results will be output from this cycle.");
       throw e;
     } catch (Exception e) {
+      _changedTargets.addAll(changedTargets);
       s_logger.error("Error while executing view cycle", e);
       throw e;
     }
@@ -494,6 +544,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       _previousCycleReference.release();
     }
     unsubscribeFromViewDefinition();
+    unsubscribeFromTargets();
     removeMarketDataProvider();
     invalidateCachedCompiledViewDefinition();
   }
@@ -546,6 +597,35 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     notifyAll();
   }
 
+  /**
+   * Indicates that a position or security, possibly referenced by the view, has changed. The view is recompiled
+   * before the next cycle so the new version of the target is resolved. The nodes on the target, on any position or
+   * trade referencing it, and those depending on them are then recalculated.
+   *
+   * @param targetId the object identifier of the changed target, not null
+   */
+  public synchronized void targetChanged(ObjectId targetId) {
+    s_logger.debug("Target {} changed", targetId);
+    _changedTargets.add(targetId);
+    _marketDataChanged = true;
+    if (!_wakeOnMarketDataChanged) {
+      return;
+    }
+    notifyAll();
+  }
+
+  private Set<ObjectId> takeChangedTargets() {
+    if (_changedTargets.isEmpty()) {
+      return Collections.emptySet();
+    }
+    final Set<ObjectId> changedTargets = new HashSet<ObjectId>();
+    for (ObjectId changedTarget : _changedTargets) {
+      _changedTargets.remove(changedTarget);
+      changedTargets.add(changedTarget);
+    }
+    return changedTargets;
+  }
+
   //-------------------------------------------------------------------------
   private EngineResourceReference<SingleComputationCycle> createCycle(ViewCycleExecutionOptions executionOptions,
       CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, VersionCorrection versionCorrection) {
@@ -575,29 +655,57 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     return versionCorrection.withLatestFixed(Instant.now());
   }
 
-  private CompiledViewDefinitionWithGraphsImpl getCompiledViewDefinition(Instant valuationTime, VersionCorrection versionCorrection) {
+  private CompiledViewDefinitionWithGraphsImpl getCompiledViewDefinition(Instant valuationTime, VersionCorrection versionCorrection, Set<ObjectId> changedTargets) {
     long functionInitId = getProcessContext().getFunctionCompilationService().getFunctionCompilationContext().getFunctionInitId();
     CompiledViewDefinitionWithGraphsImpl compiledViewDefinition;
+    boolean compilationDirty = false;
     updateViewDefinitionIfRequired();
     if (_compilationDirty) {
       _compilationDirty = false;
+      compilationDirty = true;
       invalidateCachedCompiledViewDefinition();
       compiledViewDefinition = null;
     } else {
       compiledViewDefinition = getCachedCompiledViewDefinition();
     }
     if (compiledViewDefinition != null && compiledViewDefinition.isValidFor(valuationTime) && functionInitId == compiledViewDefinition.getFunctionInitId()) {
-      // Existing cached model is valid (an optimisation for the common case of similar, increasing valuation times)
-      return compiledViewDefinition;
+      if (changedTargets.isEmpty()) {
+        if (_compiledViewDefinitionStorePending) {
+          _compiledViewDefinitionStorePending = false;
+          storeCompiledViewDefinition(compiledViewDefinition);
+        }
+        // Existing cached model is valid (an optimisation for the common case of similar, increasing valuation times)
+        return compiledViewDefinition;
+      }
+    } else {
+      compiledViewDefinition = null;
     }
 
     try {
       MarketDataAvailabilityProvider availabilityProvider = getMarketDataProvider().getAvailabilityProvider();
       ViewCompilationServices compilationServices = getProcessContext().asCompilationServices(availabilityProvider);
-      compiledViewDefinition = ViewDefinitionCompiler.compile(_viewDefinition, compilationServices, valuationTime, versionCorrection);
-      
-      if (isTerminated()) {
-        return compiledViewDefinition; //[PLAT-1904] If we can't terminate the compilation at least avoid doing the subscribe etc.
+      if (compiledViewDefinition != null) {
+        // Only the changed targets need resolving again; null if the change needs a full compilation
+        compiledViewDefinition = ViewDefinitionCompiler.recompile(compiledViewDefinition, compilationServices, valuationTime, versionCorrection, changedTargets);
+        if (compiledViewDefinition != null) {
+          _compiledViewDefinitionStorePending = true;
+        }
+      } else if (!_compiledViewDefinitionStoreConsulted) {
+        _compiledViewDefinitionStoreConsulted = true;
+        if (!compilationDirty && changedTargets.isEmpty()) {
+          // A compilation explicitly marked as dirty, or stored before a target changed, may be invalid for reasons the
+          // store can't detect
+          compiledViewDefinition = loadStoredCompiledViewDefinition(compilationServices, valuationTime, versionCorrection);
+        }
+      }
+      if (compiledViewDefinition == null) {
+        compiledViewDefinition = ViewDefinitionCompiler.compile(_viewDefinition, compilationServices, valuationTime, versionCorrection);
+
+        if (isTerminated()) {
+          return compiledViewDefinition; //[PLAT-1904] If we can't terminate the compilation at least avoid doing the subscribe etc.
+        }
+        _compiledViewDefinitionStorePending = false;
+        storeCompiledViewDefinition(compiledViewDefinition);
       }
     } catch (Exception e) {
       String message = MessageFormat.format("Error compiling view definition {0} for time {1}", getViewProcess().getDefinitionId(), valuationTime);
@@ -612,7 +720,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     // straight away.
     if (compiledViewDefinition.getValidTo() != null) {
       Duration durationToExpiry = getMarketDataProvider().getRealTimeDuration(valuationTime, compiledViewDefinition.getValidTo());
-      long expiryNanos = System.nanoTime() + durationToExpiry.toNanosLong();
+      long expiryNanos = getTimeSource().nanoTime() + durationToExpiry.toNanosLong();
       _compilationExpiryCycleTrigger.set(expiryNanos, ViewCycleTriggerResult.forceFull());
     } else {
       _compilationExpiryCycleTrigger.reset();
@@ -628,6 +736,29 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     return compiledViewDefinition;
   }
 
+  private CompiledViewDefinitionWithGraphsImpl loadStoredCompiledViewDefinition(ViewCompilationServices compilationServices, Instant valuationTime,
+      VersionCorrection versionCorrection) {
+    CompiledViewDefinitionStore store = getProcessContext().getCompiledViewDefinitionStore();
+    if (store == null) {
+      return null;
+    }
+    return store.load(_viewDefinition, compilationServices, getProcessContext().getFunctionCompilationService(), valuationTime,
+        getExecutionOptions().getVersionCorrection(), versionCorrection);
+  }
+
+  private void storeCompiledViewDefinition(CompiledViewDefinitionWithGraphsImpl compiledViewDefinition) {
+    CompiledViewDefinitionStore store = getProcessContext().getCompiledViewDefinitionStore();
+    if (store == null) {
+      return;
+    }
+    try {
+      store.store(compiledViewDefinition, getProcessContext().getFunctionCompilationService(), getExecutionOptions().getVersionCorrection());
+    } catch (Exception e) {
+      // The compilation is still usable; it will just have to be repeated after a restart
+      s_logger.warn("Couldn't store compiled view definition for view process " + getViewProcess(), e);
+    }
+  }
+
   /**
    * Gets the cached compiled view definition which may be re-used in subsequent computation cycles.
    * <p>
@@ -690,6 +821,32 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     _viewDefinitionChangeListener = null;
   }
 
+  private void subscribeToTargets() {
+    if (_targetChangeListener != null) {
+      return;
+    }
+    _targetChangeListener = new ComputationTargetChangeListener(this);
+    if (getProcessContext().getPositionSource() != null) {
+      getProcessContext().getPositionSource().changeManager().addChangeListener(_targetChangeListener);
+    }
+    if (getProcessContext().getSecuritySource() != null) {
+      getProcessContext().getSecuritySource().changeManager().addChangeListener(_targetChangeListener);
+    }
+  }
+
+  private void unsubscribeFromTargets() {
+    if (_targetChangeListener == null) {
+      return;
+    }
+    if (getProcessContext().getPositionSource() != null) {
+      getProcessContext().getPositionSource().changeManager().removeChangeListener(_targetChangeListener);
+    }
+    if (getProcessContext().getSecuritySource() != null) {
+      getProcessContext().getSecuritySource().changeManager().removeChangeListener(_targetChangeListener);
+    }
+    _targetChangeListener = null;
+  }
+
   //-------------------------------------------------------------------------
   private void replaceMarketDataProvider(MarketDataSpecification marketDataSpec) {
     removeMarketDataProvider();
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+/**
+ * Source of the time used by a {@link ViewComputationJob} to query its cycle triggers and to wait for the next
+ * state change. The system instance uses wall-clock time; {@link VirtualViewCycleTimeSource} allows cycles to be
+ * scheduled deterministically when replaying recorded market data.
+ */
+public abstract class ViewCycleTimeSource {
+
+  private static final long NANOS_PER_MILLISECOND = 1000000;
+
+  /**
+   * Time source based on {@link System#nanoTime}.
+   */
+  public static final ViewCycleTimeSource SYSTEM = new ViewCycleTimeSource() {
+
+    @Override
+    public long nanoTime() {
+      return System.nanoTime();
+    }
+
+    @Override
+    public void await(final Object monitor, final long currentNanos, final long wakeUpNanos) throws InterruptedException {
+      long sleepTime = wakeUpNanos - currentNanos;
+      sleepTime = Math.max(0, sleepTime);
+      sleepTime /= NANOS_PER_MILLISECOND;
+      sleepTime += 1; // Could have been rounded down during division so ensure only woken after state change
+      monitor.wait(sleepTime);
+    }
+
+    @Override
+    public String toString() {
+      return "ViewCycleTimeSource[SYSTEM]";
+    }
+
+  };
+
+  /**
+   * Returns the current time.
+   * 
+   * @return the current time in nanoseconds, only meaningful relative to other values from the same source
+   */
+  public abstract long nanoTime();
+
+  /**
+   * Waits until the wake-up time or until notified. The caller must hold the monitor, which is released while
+   * waiting, and the wait can end early when another thread notifies it.
+   * 
+   * @param monitor the monitor to wait on, not null
+   * @param currentNanos the time the caller last obtained from {@link #nanoTime}
+   * @param wakeUpNanos the time at which the caller's state next changes, {@link Long#MAX_VALUE} if never
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public abstract void await(Object monitor, long currentNanos, long wakeUpNanos) throws InterruptedException;
+
+}
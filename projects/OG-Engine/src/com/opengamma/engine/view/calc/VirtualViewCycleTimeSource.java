@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import javax.time.Duration;
+import javax.time.Instant;
+import javax.time.InstantProvider;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Virtual time controlled by a driver, such as a market data replay, instead of the wall-clock.
+ * <p>
+ * A job waiting on this source does not resume, even if notified, until the driver calls {@link #release}. This lets
+ * the driver update the time and the market data in between cycles without the job observing a partial update. The
+ * driver uses {@link #awaitIdle} to wait for the job to finish any cycles triggered before making its next change.
+ * Only a single job may use an instance.
+ */
+public class VirtualViewCycleTimeSource extends ViewCycleTimeSource {
+
+  /**
+   * Interval at which waiting threads check whether the source has been stopped. A job is only interrupted on
+   * termination when in a timed wait so the waits must never be indefinite.
+   */
+  private static final long POLL_MILLIS = 1000;
+
+  private final Instant _epoch;
+  private volatile long _nanos;
+  private volatile boolean _stopped;
+  private volatile long _released;
+
+  // Guarded by this
+  private Object _waiting;
+  private long _waitCount;
+  private long _wakeUpNanos;
+
+  /**
+   * Creates a new time source.
+   * 
+   * @param epoch the instant corresponding to the initial virtual time of zero, not null
+   */
+  public VirtualViewCycleTimeSource(final InstantProvider epoch) {
+    ArgumentChecker.notNull(epoch, "epoch");
+    _epoch = Instant.of(epoch);
+  }
+
+  public Instant getEpoch() {
+    return _epoch;
+  }
+
+  /**
+   * Returns the instant corresponding to the current virtual time.
+   * 
+   * @return the instant, not null
+   */
+  public Instant getInstant() {
+    return _epoch.plus(Duration.ofNanos(_nanos));
+  }
+
+  /**
+   * Converts an instant to the virtual time scale.
+   * 
+   * @param instant the instant, not null
+   * @return the virtual time in nanoseconds
+   */
+  public long toNanos(final InstantProvider instant) {
+    return Duration.between(_epoch, instant).toNanosLong();
+  }
+
+  /**
+   * Moves the virtual time forward. This should only be called when the job is idle.
+   * 
+   * @param nanos the new virtual time, not before the current time
+   */
+  public void advanceTo(final long nanos) {
+    if (nanos < _nanos) {
+      throw new IllegalArgumentException("Virtual time can't go backwards from " + _nanos + " to " + nanos);
+    }
+    _nanos = nanos;
+  }
+
+  /**
+   * Waits for the job to become idle, waiting for its next state change.
+   * 
+   * @return true if the job is idle, false if the source has been stopped
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public synchronized boolean awaitIdle() throws InterruptedException {
+    while (_waiting == null) {
+      if (_stopped) {
+        return false;
+      }
+      wait(POLL_MILLIS);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the virtual time at which the idle job's state next changes.
+   * 
+   * @return the wake-up time in nanoseconds, {@link Long#MAX_VALUE} if the job is waiting only for market data
+   */
+  public synchronized long getWakeUpNanos() {
+    return _wakeUpNanos;
+  }
+
+  /**
+   * Resumes the idle job so that it queries its triggers at the current virtual time.
+   */
+  public void release() {
+    final Object monitor;
+    final long waitId;
+    synchronized (this) {
+      monitor = _waiting;
+      if (monitor == null) {
+        return;
+      }
+      _waiting = null;
+      waitId = _waitCount;
+    }
+    synchronized (monitor) {
+      _released = waitId;
+      monitor.notifyAll();
+    }
+  }
+
+  /**
+   * Stops the source, releasing the job and any thread waiting for it. Time no longer advances.
+   */
+  public void stop() {
+    _stopped = true;
+    synchronized (this) {
+      notifyAll();
+    }
+    release();
+  }
+
+  public boolean isStopped() {
+    return _stopped;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public long nanoTime() {
+    return _nanos;
+  }
+
+  @Override
+  public void await(final Object monitor, final long currentNanos, final long wakeUpNanos) throws InterruptedException {
+    if (_stopped) {
+      // Time no longer advances; just wait until the job is terminated
+      monitor.wait(POLL_MILLIS);
+      return;
+    }
+    final long waitId;
+    synchronized (this) {
+      _waiting = monitor;
+      _wakeUpNanos = wakeUpNanos;
+      waitId = ++_waitCount;
+      notifyAll();
+    }
+    // Notifications from market data changes or manual triggers are ignored until the driver has finished its update
+    while ((_released < waitId) && !_stopped) {
+      monitor.wait(POLL_MILLIS);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "VirtualViewCycleTimeSource[epoch=" + _epoch + ", nanos=" + _nanos + "]";
+  }
+
+}
@@ -34,6 +34,7 @@ import com.opengamma.engine.view.cache.ViewComputationCache;
 import com.opengamma.engine.view.cache.ViewComputationCacheSource;
 import com.opengamma.engine.view.cache.WriteBehindViewComputationCache;
 import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatisticsGatherer;
+import com.opengamma.engine.view.calcnode.stats.FunctionProfiler;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.time.DateUtils;
 import com.opengamma.util.tuple.Pair;
@@ -56,6 +57,8 @@ public abstract class AbstractCalculationNode implements CalculationNode {
   private final FunctionInvocationStatisticsGatherer _functionInvocationStatistics;
   private String _nodeId;
   private final ExecutorService _writeBehindExecutorService;
+  private long _partialResultPeriod;
+  private FunctionProfiler _functionProfiler;
 
   protected AbstractCalculationNode(ViewComputationCacheSource cacheSource, CompiledFunctionService functionCompilationService,
       FunctionExecutionContext functionExecutionContext, ComputationTargetResolver targetResolver, ViewProcessorQuerySender calcNodeQuerySender, String nodeId,
@@ -117,47 +120,165 @@ public abstract class AbstractCalculationNode implements CalculationNode {
     _nodeId = nodeId;
   }
 
-  protected List<CalculationJobResultItem> executeJobItems(final CalculationJob job, final DelayedViewComputationCache cache,
+  /**
+   * Returns the minimum period between partial results reported for a job.
+   * 
+   * @return the period in milliseconds, zero if partial results are disabled
+   */
+  public long getPartialResultPeriod() {
+    return _partialResultPeriod / 1000000L;
+  }
+
+  /**
+   * Sets the minimum period between partial results reported for a job. When a job is executed with a
+   * {@link PartialJobResultReceiver} any pending cache writes are flushed, and the items completed so far are
+   * reported, once this period has elapsed. This lets results from long jobs be made available before the last of their
+   * items has been executed. A job of a single item has nothing to report before its full result, and a job shared
+   * between nodes by work stealing is not streamed, so a container does not share the jobs of a node with a period set.
+   * 
+   * @param partialResultPeriod the period in milliseconds, zero to disable partial results
+   */
+  public void setPartialResultPeriod(final long partialResultPeriod) {
+    ArgumentChecker.notNegative(partialResultPeriod, "partialResultPeriod");
+    _partialResultPeriod = partialResultPeriod * 1000000L;
+  }
+
+  /**
+   * Returns the profiler sampling the node's function invocations.
+   * 
+   * @return the profiler, null if invocations are not profiled
+   */
+  public FunctionProfiler getFunctionProfiler() {
+    return _functionProfiler;
+  }
+
+  /**
+   * Sets the profiler to sample the node's function invocations. The profiler may be shared by several nodes.
+   * 
+   * @param functionProfiler the profiler, null to not profile invocations
+   */
+  public void setFunctionProfiler(final FunctionProfiler functionProfiler) {
+    _functionProfiler = functionProfiler;
+  }
+
+  /**
+   * Executes a single item of a job, capturing any failure in the result item.
+   * 
+   * @param jobItem the item to execute, not null
+   * @param cache the cache to read inputs from and write results to, not null
+   * @param functions the function repository returned by {@link #prepareJob}, not null
+   * @param calculationConfiguration the name of the calculation configuration, not null
+   * @return the result item, not null
+   */
+  protected CalculationJobResultItem executeJobItem(final CalculationJobItem jobItem, final DelayedViewComputationCache cache,
       final CompiledFunctionRepository functions, final String calculationConfiguration) {
+    try {
+      invoke(functions, jobItem, cache, new DeferredInvocationStatistics(getFunctionInvocationStatistics(), calculationConfiguration));
+      return new CalculationJobResultItem(jobItem);
+    } catch (MissingInputException e) {
+      // NOTE kirk 2009-10-20 -- We intentionally only do the message here so that we don't
+      // litter the logs with stack traces; the inputs missing have also already been
+      // written at INFO level
+      s_logger.info("Unable to invoke {} due to missing inputs", jobItem);
+      return new CalculationJobResultItem(jobItem, e);
+    } catch (Throwable t) {
+      s_logger.error("Invoking " + jobItem.getFunctionUniqueIdentifier() + " threw exception", t);
+      return new CalculationJobResultItem(jobItem, t);
+    }
+  }
+
+  /**
+   * Executes the items of a job, reporting partial results at the configured period.
+   * 
+   * @param job the job to execute, not null
+   * @param cache the cache to read inputs from and write results to, not null
+   * @param functions the function repository returned by {@link #prepareJob}, not null
+   * @param calculationConfiguration the name of the calculation configuration, not null
+   * @param partialResults the receiver for partial results, null if none are required
+   * @return the result items, or null if the job was cancelled
+   */
+  protected List<CalculationJobResultItem> executeJobItems(final CalculationJob job, final DelayedViewComputationCache cache,
+      final CompiledFunctionRepository functions, final String calculationConfiguration, final PartialJobResultReceiver partialResults) {
     final List<CalculationJobResultItem> resultItems = new ArrayList<CalculationJobResultItem>();
+    final long partialResultPeriod = (partialResults != null) ? _partialResultPeriod : 0;
+    long partialResultTime = System.nanoTime();
+    int partialResultItems = 0;
     for (CalculationJobItem jobItem : job.getJobItems()) {
       if (job.isCancelled()) {
         return null;
       }
-      CalculationJobResultItem resultItem;
-      try {
-        invoke(functions, jobItem, cache, new DeferredInvocationStatistics(getFunctionInvocationStatistics(), calculationConfiguration));
-        resultItem = new CalculationJobResultItem(jobItem);
-      } catch (MissingInputException e) {
-        // NOTE kirk 2009-10-20 -- We intentionally only do the message here so that we don't
-        // litter the logs with stack traces; the inputs missing have also already been
-        // written at INFO level
-        s_logger.info("Unable to invoke {} due to missing inputs", jobItem);
-        resultItem = new CalculationJobResultItem(jobItem, e);
-      } catch (Throwable t) {
-        s_logger.error("Invoking " + jobItem.getFunctionUniqueIdentifier() + " threw exception", t);
-        resultItem = new CalculationJobResultItem(jobItem, t);
+      resultItems.add(executeJobItem(jobItem, cache, functions, calculationConfiguration));
+      if (partialResultPeriod > 0) {
+        final long time = System.nanoTime();
+        if ((time - partialResultTime >= partialResultPeriod) && (resultItems.size() < job.getJobItems().size())) {
+          // The values must be in the shared cache before the receiver can read them
+          cache.waitForPendingWrites();
+          final List<CalculationJobResultItem> items = new ArrayList<CalculationJobResultItem>(resultItems.subList(partialResultItems, resultItems.size()));
+          partialResults.partialResultReceived(new CalculationJobResult(job.getSpecification(), time - partialResultTime, items, getNodeId()));
+          partialResultItems = resultItems.size();
+          partialResultTime = time;
+        }
       }
-      resultItems.add(resultItem);
     }
     return resultItems;
   }
 
-  public CalculationJobResult executeJob(final CalculationJob job) {
-    s_logger.info("Executing {} on {}", job, _nodeId);
-    final CalculationJobSpecification spec = job.getSpecification();
+  /**
+   * Prepares the execution context of this node for the items of a job.
+   * 
+   * @param spec the job specification, not null
+   * @return the function repository to execute the job items with, not null
+   */
+  protected CompiledFunctionRepository prepareJob(final CalculationJobSpecification spec) {
     getFunctionExecutionContext().setViewProcessorQuery(new ViewProcessorQuery(getViewProcessorQuerySender(), spec));
     getFunctionExecutionContext().setValuationTime(spec.getValuationTime());
     getFunctionExecutionContext().setValuationClock(DateUtils.fixedClockUTC(spec.getValuationTime()));
-    final CompiledFunctionRepository functions = getFunctionCompilationService().compileFunctionRepository(spec.getValuationTime());
-    final DelayedViewComputationCache cache = getDelayedViewComputationCache(getCache(spec), job.getCacheSelectHint());
+    return getFunctionCompilationService().compileFunctionRepository(spec.getValuationTime());
+  }
+
+  public CalculationJobResult executeJob(final CalculationJob job) {
+    return executeJob(job, null);
+  }
+
+  /**
+   * Executes a job, sharing its items with any other nodes that join the given execution.
+   * 
+   * @param job the job to execute, not null
+   * @param sharedExecution the execution to share the job items through, or null to execute them all on this node
+   * @return the job result, or null if the job was cancelled
+   */
+  public CalculationJobResult executeJob(final CalculationJob job, final WorkStealingJobExecution sharedExecution) {
+    return executeJob(job, sharedExecution, null);
+  }
+
+  /**
+   * Executes a job, sharing its items with any other nodes that join the given execution and reporting partial results
+   * to the receiver if a partial result period is set. Partial results are not reported for shared executions.
+   * 
+   * @param job the job to execute, not null
+   * @param sharedExecution the execution to share the job items through, or null to execute them all on this node
+   * @param partialResults the receiver for partial results, or null if none are required
+   * @return the job result, or null if the job was cancelled
+   */
+  public CalculationJobResult executeJob(final CalculationJob job, final WorkStealingJobExecution sharedExecution, final PartialJobResultReceiver partialResults) {
+    s_logger.info("Executing {} on {}", job, _nodeId);
+    final CalculationJobSpecification spec = job.getSpecification();
+    final CompiledFunctionRepository functions = prepareJob(spec);
     long executionTime = System.nanoTime();
-    final String calculationConfiguration = spec.getCalcConfigName();
-    final List<CalculationJobResultItem> resultItems = executeJobItems(job, cache, functions, calculationConfiguration);
-    if (resultItems == null) {
-      return null;
+    final List<CalculationJobResultItem> resultItems;
+    if (sharedExecution != null) {
+      resultItems = sharedExecution.execute(this, functions);
+      if (resultItems == null) {
+        return null;
+      }
+    } else {
+      final DelayedViewComputationCache cache = getDelayedViewComputationCache(getCache(spec), job.getCacheSelectHint());
+      resultItems = executeJobItems(job, cache, functions, spec.getCalcConfigName(), partialResults);
+      if (resultItems == null) {
+        return null;
+      }
+      cache.waitForPendingWrites();
     }
-    cache.waitForPendingWrites();
     executionTime = System.nanoTime() - executionTime;
     CalculationJobResult jobResult = new CalculationJobResult(spec, executionTime, resultItems, getNodeId());
     s_logger.info("Executed {} in {}ns", job, executionTime);
@@ -181,6 +302,9 @@ public abstract class AbstractCalculationNode implements CalculationNode {
 
   private void invoke(final CompiledFunctionRepository functions, final CalculationJobItem jobItem, final DelayedViewComputationCache cache, final DeferredInvocationStatistics statistics) {
     final String functionUniqueId = jobItem.getFunctionUniqueIdentifier();
+    final FunctionProfiler profiler = getFunctionProfiler();
+    final boolean profiled = (profiler != null) && profiler.isSampled();
+    long inputFetchTime = profiled ? System.nanoTime() : 0;
     final ComputationTarget target = getTargetResolver().resolve(jobItem.getComputationTargetSpecification());
     if (target == null) {
       throw new OpenGammaRuntimeException("Unable to resolve specification " + jobItem.getComputationTargetSpecification());
@@ -211,6 +335,9 @@ public abstract class AbstractCalculationNode implements CalculationNode {
       }
     }
     statistics.setDataInputBytes(inputBytes, inputSamples);
+    if (profiled) {
+      inputFetchTime = System.nanoTime() - inputFetchTime;
+    }
     if (!missingInputs.isEmpty()) {
       if (invoker.canHandleMissingInputs()) {
         s_logger.debug("Executing even with missing inputs {}", missingInputs);
@@ -230,6 +357,10 @@ public abstract class AbstractCalculationNode implements CalculationNode {
     statistics.setFunctionIdentifier(functionUniqueId);
     statistics.setExpectedDataOutputSamples(results.size());
     // store results
+    final long outputWriteTime = profiled ? System.nanoTime() : 0;
     cache.putValues(results, statistics);
+    if (profiled) {
+      profiler.record(functionUniqueId, jobItem.getComputationTargetSpecification(), inputFetchTime, statistics.getInvocationTime(), System.nanoTime() - outputWriteTime);
+    }
   }
 }
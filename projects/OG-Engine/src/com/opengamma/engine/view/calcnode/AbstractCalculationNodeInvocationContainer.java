@@ -44,7 +44,8 @@ public abstract class AbstractCalculationNodeInvocationContainer {
   private static final Logger s_logger = LoggerFactory.getLogger(AbstractCalculationNodeInvocationContainer.class);
 
   /**
-   * 
+   * Receives the outcome of a job execution. A receiver that also implements {@link PartialJobResultReceiver} will be
+   * passed partial results from the node if it has a partial result period set.
    */
   protected interface ExecutionReceiver {
 
@@ -205,6 +206,12 @@ public abstract class AbstractCalculationNodeInvocationContainer {
   private final Queue<JobEntry> _runnableJobs = new ConcurrentLinkedQueue<JobEntry>();
   private final ExecutorService _executorService = Executors.newCachedThreadPool();
 
+  /**
+   * The jobs currently executing with items that other nodes can take.
+   */
+  private final Queue<WorkStealingJobExecution> _sharedExecutions = new ConcurrentLinkedQueue<WorkStealingJobExecution>();
+  private boolean _workStealing;
+
   protected Queue<AbstractCalculationNode> getNodes() {
     return _nodes;
   }
@@ -235,6 +242,22 @@ public abstract class AbstractCalculationNodeInvocationContainer {
     onNodeChange();
   }
 
+  /**
+   * Sets whether the items of a job may be split between nodes. When enabled, idle nodes will take items from
+   * running jobs whenever the dependencies between the items allow rather than waiting for a whole job. A shared job
+   * writes its results directly to the cache, bypassing any write-behind, and does not stream partial results. This
+   * is disabled by default.
+   * 
+   * @param workStealing true to share job items between nodes, false to execute each job on a single node
+   */
+  public void setWorkStealing(final boolean workStealing) {
+    _workStealing = workStealing;
+  }
+
+  public boolean isWorkStealing() {
+    return _workStealing;
+  }
+
   protected abstract void onNodeChange();
 
   protected void onJobStart(final CalculationJob job) {
@@ -420,6 +443,83 @@ public abstract class AbstractCalculationNodeInvocationContainer {
     } while (++spin < 1000);
   }
 
+  /**
+   * Executes a job on a node, sharing its items with any idle nodes if work stealing is enabled. A job whose receiver
+   * takes partial results from a node with a partial result period is not shared, so that its items can be streamed.
+   * 
+   * @param node Node to run on, not null
+   * @param job The job to run, not null
+   * @param receiver The execution status receiver, not null
+   * @return the job result, null if the job was cancelled
+   */
+  private CalculationJobResult executeJob(final AbstractCalculationNode node, final CalculationJob job, final ExecutionReceiver receiver) {
+    final PartialJobResultReceiver partialResults = (receiver instanceof PartialJobResultReceiver) ? (PartialJobResultReceiver) receiver : null;
+    if (!isWorkStealing() || (job.getJobItems().size() < 2) || ((partialResults != null) && (node.getPartialResultPeriod() > 0))) {
+      return node.executeJob(job, null, partialResults);
+    }
+    final WorkStealingJobExecution execution = new WorkStealingJobExecution(job);
+    _sharedExecutions.add(execution);
+    try {
+      // Put idle nodes to work on the items that can run immediately, leaving one for this node
+      for (int i = execution.getQueuedItems(); i > 1; i--) {
+        final AbstractCalculationNode helper = getNodes().poll();
+        if (helper == null) {
+          break;
+        }
+        s_logger.debug("Spawning {} to help with job {}", helper.getNodeId(), job.getSpecification().getJobId());
+        getExecutorService().execute(new Runnable() {
+
+          @Override
+          public void run() {
+            execution.help(helper);
+            releaseNode(helper);
+          }
+
+        });
+      }
+      return node.executeJob(job, execution);
+    } finally {
+      _sharedExecutions.remove(execution);
+    }
+  }
+
+  /**
+   * Lets a node that would otherwise be idle take items from the jobs currently running.
+   * 
+   * @param node Node to run on, not null
+   */
+  private void stealJobItems(final AbstractCalculationNode node) {
+    for (WorkStealingJobExecution execution : _sharedExecutions) {
+      if (execution.help(node)) {
+        s_logger.debug("Node {} helped with job {}", node.getNodeId(), execution.getJob().getSpecification().getJobId());
+      }
+    }
+  }
+
+  /**
+   * Returns a node that was helping with another job to the runnable queue, or the set of available nodes if there
+   * are no runnable jobs.
+   * 
+   * @param node Node to release, not null
+   */
+  private void releaseNode(final AbstractCalculationNode node) {
+    JobEntry jobexec = _runnableJobs.poll();
+    if (jobexec == null) {
+      stealJobItems(node);
+      synchronized (this) {
+        jobexec = _runnableJobs.poll();
+        if (jobexec == null) {
+          getNodes().add(node);
+        }
+      }
+    }
+    if (jobexec != null) {
+      executeJobs(node, jobexec);
+    } else {
+      onJobExecutionComplete();
+    }
+  }
+
   /**
    * Executes jobs from the runnable queue until it is empty.
    * 
@@ -433,7 +533,7 @@ public abstract class AbstractCalculationNodeInvocationContainer {
       CalculationJobResult result = null;
       if (jobexec.getExecution().threadBusy(jobexec.getJob())) {
         try {
-          result = node.executeJob(jobexec.getJob());
+          result = executeJob(node, jobexec.getJob(), jobexec.getReceiver());
           threadFree(jobexec.getExecution());
         } catch (Exception e) {
           // Any tail jobs will be abandoned
@@ -470,6 +570,8 @@ public abstract class AbstractCalculationNodeInvocationContainer {
       }
       jobexec = _runnableJobs.poll();
       if (jobexec == null) {
+        // Help with any running jobs before becoming idle
+        stealJobItems(node);
         synchronized (this) {
           jobexec = _runnableJobs.poll();
           if (jobexec == null) {
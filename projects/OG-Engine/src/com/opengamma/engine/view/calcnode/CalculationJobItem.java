@@ -17,6 +17,7 @@ import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.function.FunctionParameters;
 import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.cache.AbstractIdentifierMap;
 import com.opengamma.engine.view.cache.IdentifierMap;
 
 /**
@@ -108,12 +109,7 @@ public final class CalculationJobItem {
       if (_inputs.size() == 1) {
         _inputIdentifiers = new long[] {identifierMap.getIdentifier(_inputs.iterator().next())};
       } else {
-        final Collection<Long> identifiers = identifierMap.getIdentifiers(_inputs).values();
-        _inputIdentifiers = new long[identifiers.size()];
-        int i = 0;
-        for (Long identifier : identifiers) {
-          _inputIdentifiers[i++] = identifier;
-        }
+        _inputIdentifiers = AbstractIdentifierMap.getIdentifierArray(identifierMap, _inputs);
       }
     }
   }
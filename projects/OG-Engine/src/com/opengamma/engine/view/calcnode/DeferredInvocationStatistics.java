@@ -38,6 +38,15 @@ public class DeferredInvocationStatistics {
     _invocationTime = System.nanoTime() - _invocationTime;
   }
 
+  /**
+   * Returns the invocation time once {@link #endInvocation} has been called.
+   * 
+   * @return the invocation time in nanoseconds
+   */
+  protected long getInvocationTime() {
+    return _invocationTime;
+  }
+
   protected void setDataInputBytes(final int bytes, final int samples) {
     if (samples > 0) {
       _dataInputBytes = (double) bytes / (double) samples;
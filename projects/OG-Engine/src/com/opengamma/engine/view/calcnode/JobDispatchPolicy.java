@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses which {@link JobInvoker} the {@link JobDispatcher} should offer a job to first. If the chosen invoker
+ * refuses the job, or no preference is given, the job is offered to each capable invoker in turn.
+ */
+public interface JobDispatchPolicy {
+
+  /**
+   * Chooses the invoker for a job.
+   * 
+   * @param dispatcher the dispatcher, not null
+   * @param job the job to dispatch, not null
+   * @param candidates the invokers capable of running the job in their round-robin order, not null or empty
+   * @param inputs the number of values read by the job, and its tail, that are produced by other jobs
+   * @param localInputs the number of those values held in each invoker's local cache, not null
+   * @return the preferred invoker, or null for no preference
+   */
+  JobInvoker selectInvoker(JobDispatcher dispatcher, CalculationJob job, List<JobInvoker> candidates, int inputs, Map<JobInvoker, Integer> localInputs);
+
+}
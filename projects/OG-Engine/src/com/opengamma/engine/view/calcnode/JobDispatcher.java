@@ -22,12 +22,14 @@ import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.calcnode.stats.CalculationNodeStatisticsGatherer;
 import com.opengamma.engine.view.calcnode.stats.DiscardingNodeStatisticsGatherer;
 import com.opengamma.util.ArgumentChecker;
@@ -119,14 +121,46 @@ public class JobDispatcher implements JobInvokerRegister {
 
   private final class DispatchJob implements JobInvocationReceiver, Cancelable {
 
+    /**
+     * The receiver passed to an invoker for one attempt at running the job. Partial results are only passed on from
+     * the current attempt, and only for items not already streamed by an earlier one.
+     */
+    private final class Attempt implements JobInvocationReceiver, PartialJobResultReceiver {
+
+      private final Map<CalculationJobSpecification, Integer> _partialResultItems = new HashMap<CalculationJobSpecification, Integer>();
+
+      @Override
+      public void jobCompleted(final CalculationJobResult result) {
+        DispatchJob.this.jobCompleted(result);
+      }
+
+      @Override
+      public void jobFailed(final JobInvoker jobInvoker, final String computeNodeId, final Exception exception) {
+        DispatchJob.this.jobFailed(jobInvoker, computeNodeId, exception);
+      }
+
+      @Override
+      public void partialResultReceived(final CalculationJobResult partialResult) {
+        DispatchJob.this.partialResultReceived(this, partialResult);
+      }
+
+    }
+
     private final CalculationJob _rootJob;
     private final ConcurrentMap<CalculationJobSpecification, JobResultReceiver> _resultReceivers;
     private final AtomicBoolean _completed = new AtomicBoolean(false);
     private final long _jobCreationTime;
     private final CapabilityRequirements _capabilityRequirements;
     private final AtomicReference<Timeout> _timeout = new AtomicReference<Timeout>();
+    private final AtomicReference<JobInvoker> _invoker = new AtomicReference<JobInvoker>();
     private Set<JobInvoker> _excludeJobInvoker;
     private int _rescheduled;
+    private Set<ValueSpecification> _inputs;
+    private Map<JobInvoker, Integer> _localInputs;
+    private int _invokerLocalInputs = -1;
+    private volatile Attempt _attempt;
+    /** The number of items of each job streamed to its receiver as partial results, by any attempt. */
+    private final Map<CalculationJobSpecification, Integer> _partialResultItems = new HashMap<CalculationJobSpecification, Integer>();
 
     private DispatchJob(final CalculationJob job, final JobResultReceiver resultReceiver) {
       _rootJob = job;
@@ -147,6 +181,73 @@ public class JobDispatcher implements JobInvokerRegister {
       return _rootJob;
     }
 
+    /**
+     * Returns the values read by the jobs that are produced outside of them.
+     */
+    private Set<ValueSpecification> getInputs() {
+      if (_inputs == null) {
+        final Set<ValueSpecification> inputs = new HashSet<ValueSpecification>();
+        final Set<ValueSpecification> outputs = new HashSet<ValueSpecification>();
+        for (CalculationJob job : getAllJobs(getJob(), null)) {
+          for (CalculationJobItem item : job.getJobItems()) {
+            inputs.addAll(item.getInputs());
+            outputs.addAll(item.getOutputs());
+          }
+        }
+        inputs.removeAll(outputs);
+        _inputs = inputs;
+      }
+      return _inputs;
+    }
+
+    private Map<JobInvoker, Integer> getLocalInputs() {
+      if (_localInputs == null) {
+        _localInputs = getValueLocality().countLocalValues(getJob().getSpecification(), getInputs());
+      }
+      return _localInputs;
+    }
+
+    /**
+     * Starts a new attempt at running the job, superseding any previous one.
+     * 
+     * @return the receiver to pass to the invoker
+     */
+    private Attempt nextAttempt() {
+      final Attempt attempt = new Attempt();
+      _attempt = attempt;
+      return attempt;
+    }
+
+    private void invoking(final JobInvoker jobInvoker) {
+      _invoker.set(jobInvoker);
+      getOutstandingJobCount(jobInvoker).incrementAndGet();
+      if (_localInputs != null) {
+        final Integer local = _localInputs.get(jobInvoker);
+        _invokerLocalInputs = (local != null) ? local : 0;
+      }
+    }
+
+    private void releaseInvoker() {
+      final JobInvoker jobInvoker = _invoker.getAndSet(null);
+      if (jobInvoker != null) {
+        getOutstandingJobCount(jobInvoker).decrementAndGet();
+      }
+    }
+
+    private void recordOutputs(final CalculationJobResult result) {
+      final JobInvoker jobInvoker = _invoker.get();
+      if (jobInvoker == null) {
+        return;
+      }
+      final List<ValueSpecification> outputs = new ArrayList<ValueSpecification>();
+      for (CalculationJobResultItem item : result.getResultItems()) {
+        if (!item.failed()) {
+          outputs.addAll(item.getOutputs());
+        }
+      }
+      getValueLocality().valuesProduced(result.getSpecification(), jobInvoker, outputs);
+    }
+
     @Override
     public void jobCompleted(final CalculationJobResult result) {
       final JobResultReceiver resultReceiver = _resultReceivers.remove(result.getSpecification());
@@ -156,10 +257,14 @@ public class JobDispatcher implements JobInvokerRegister {
         extendTimeout(getMaxJobExecutionTime(), true);
         return;
       }
+      if (getValueLocality() != null) {
+        recordOutputs(result);
+      }
       if (_resultReceivers.isEmpty()) {
         // This is the last one to complete. Note that if the last few jobs complete concurrently, both may execute this code.
         _completed.set(true);
         cancelTimeout(Timeout.FINISHED);
+        releaseInvoker();
       } else {
         // Others are still running, but we can extend the timeout period
         extendTimeout(getMaxJobExecutionTime(), true);
@@ -171,6 +276,40 @@ public class JobDispatcher implements JobInvokerRegister {
       if (getStatisticsGatherer() != null) {
         final int size = result.getResultItems().size();
         getStatisticsGatherer().jobCompleted(result.getComputeNodeId(), size, result.getDuration(), getDurationNanos());
+        if ((_invokerLocalInputs >= 0) && result.getSpecification().equals(getJob().getSpecification())) {
+          getStatisticsGatherer().jobInputLocality(result.getComputeNodeId(), _invokerLocalInputs, getInputs().size() - _invokerLocalInputs);
+        }
+      }
+    }
+
+    private synchronized void partialResultReceived(final Attempt attempt, final CalculationJobResult partialResult) {
+      final CalculationJobSpecification spec = partialResult.getSpecification();
+      final JobResultReceiver resultReceiver = _resultReceivers.get(spec);
+      if (!(resultReceiver instanceof PartialJobResultReceiver)) {
+        return;
+      }
+      if (attempt != _attempt) {
+        s_logger.debug("Ignoring partial result for job {} from superseded attempt on node {}", spec.getJobId(), partialResult.getComputeNodeId());
+        return;
+      }
+      // A retried job streams its items again from the first; only those beyond any already streamed are new
+      final List<CalculationJobResultItem> items = partialResult.getResultItems();
+      final Integer attemptItems = attempt._partialResultItems.get(spec);
+      final int first = (attemptItems != null) ? attemptItems : 0;
+      attempt._partialResultItems.put(spec, first + items.size());
+      final Integer streamedItems = _partialResultItems.get(spec);
+      final int skip = (streamedItems != null) ? Math.max(streamedItems - first, 0) : 0;
+      if (skip >= items.size()) {
+        s_logger.debug("Partial result for job {} from node {} already streamed", spec.getJobId(), partialResult.getComputeNodeId());
+        return;
+      }
+      _partialResultItems.put(spec, first + items.size());
+      s_logger.debug("Partial result for job {} from node {}", spec.getJobId(), partialResult.getComputeNodeId());
+      if (skip == 0) {
+        ((PartialJobResultReceiver) resultReceiver).partialResultReceived(partialResult);
+      } else {
+        ((PartialJobResultReceiver) resultReceiver).partialResultReceived(new CalculationJobResult(spec, partialResult.getDuration(),
+            new ArrayList<CalculationJobResultItem>(items.subList(skip, items.size())), partialResult.getComputeNodeId()));
       }
     }
 
@@ -179,6 +318,7 @@ public class JobDispatcher implements JobInvokerRegister {
       s_logger.warn("Job {} failed, {}", getJob().getSpecification().getJobId(), (exception != null) ? exception.getMessage() : "no exception passed");
       if (_completed.getAndSet(true) == false) {
         cancelTimeout(null);
+        releaseInvoker();
         if ((_excludeJobInvoker != null) && _excludeJobInvoker.contains(jobInvoker)) {
           _completed.set(false);
           jobAbort(exception, "duplicate invoker failure from node " + computeNodeId);
@@ -229,6 +369,7 @@ public class JobDispatcher implements JobInvokerRegister {
       s_logger.error("Aborted job {} after {} attempts", getJob().getSpecification().getJobId(), _rescheduled);
       if (_completed.getAndSet(true) == false) {
         cancelTimeout(Timeout.FINISHED);
+        releaseInvoker();
         if (exception == null) {
           s_logger.error("Aborted job {} with {}", getJob().getSpecification().getJobId(), alternativeError);
           exception = new OpenGammaRuntimeException(alternativeError);
@@ -331,6 +472,7 @@ public class JobDispatcher implements JobInvokerRegister {
         }
       }
       final Timeout timeout = cancelTimeout(Timeout.CANCELLED);
+      releaseInvoker();
       if (timeout != null) {
         final JobInvoker invoker = timeout.getInvoker();
         if (invoker != null) {
@@ -345,6 +487,7 @@ public class JobDispatcher implements JobInvokerRegister {
   private final Queue<DispatchJob> _pending = new LinkedList<DispatchJob>();
   private final Queue<JobInvoker> _invokers = new ConcurrentLinkedQueue<JobInvoker>();
   private final Map<JobInvoker, Collection<Capability>> _capabilityCache = new ConcurrentHashMap<JobInvoker, Collection<Capability>>();
+  private final ConcurrentMap<JobInvoker, AtomicInteger> _outstandingJobs = new ConcurrentHashMap<JobInvoker, AtomicInteger>();
 
   private int _maxJobAttempts = DEFAULT_MAX_JOB_ATTEMPTS;
   private String _jobFailureNodeId = DEFAULT_JOB_FAILURE_NODE_ID;
@@ -359,6 +502,8 @@ public class JobDispatcher implements JobInvokerRegister {
   private long _maxJobExecutionTimeQuery = DEFAULT_MAX_JOB_EXECUTION_QUERY_TIMEOUT;
   private ScheduledThreadPoolExecutor _jobTimeoutExecutor;
   private CalculationNodeStatisticsGatherer _statisticsGatherer = new DiscardingNodeStatisticsGatherer();
+  private ValueLocality _valueLocality;
+  private JobDispatchPolicy _dispatchPolicy;
 
   public JobDispatcher() {
   }
@@ -442,6 +587,56 @@ public class JobDispatcher implements JobInvokerRegister {
     return _capabilityRequirementsProvider;
   }
 
+  /**
+   * Sets the tracker of which invoker holds each value produced by a job. When set, the number of each job's inputs
+   * that were local to the node it ran on is reported to the statistics gatherer.
+   * 
+   * @param valueLocality the tracker, null to not track locality
+   */
+  public void setValueLocality(final ValueLocality valueLocality) {
+    _valueLocality = valueLocality;
+  }
+
+  public ValueLocality getValueLocality() {
+    return _valueLocality;
+  }
+
+  /**
+   * Sets the policy for choosing an invoker for each job.
+   * 
+   * @param dispatchPolicy the policy, null to offer jobs to invokers in round-robin order
+   */
+  public void setDispatchPolicy(final JobDispatchPolicy dispatchPolicy) {
+    _dispatchPolicy = dispatchPolicy;
+  }
+
+  public JobDispatchPolicy getDispatchPolicy() {
+    return _dispatchPolicy;
+  }
+
+  private AtomicInteger getOutstandingJobCount(final JobInvoker invoker) {
+    AtomicInteger count = _outstandingJobs.get(invoker);
+    if (count == null) {
+      count = new AtomicInteger();
+      final AtomicInteger existing = _outstandingJobs.putIfAbsent(invoker, count);
+      if (existing != null) {
+        count = existing;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of jobs dispatched to an invoker that have not yet completed.
+   * 
+   * @param invoker the invoker, not null
+   * @return the number of outstanding jobs
+   */
+  public int getOutstandingJobs(final JobInvoker invoker) {
+    final AtomicInteger count = _outstandingJobs.get(invoker);
+    return (count != null) ? count.get() : 0;
+  }
+
   protected Queue<DispatchJob> getPending() {
     return _pending;
   }
@@ -498,12 +693,33 @@ public class JobDispatcher implements JobInvokerRegister {
       return true;
     }
     Collection<JobInvoker> retry = null;
+    final JobInvoker preferred = selectInvoker(job);
+    if (preferred != null) {
+      job.invoking(preferred);
+      if (preferred.invoke(job.getJob(), job.nextAttempt())) {
+        s_logger.debug("Preferred invoker {} accepted job {}", preferred, job.getJob().getSpecification().getJobId());
+        job.setTimeout(preferred);
+        getInvokers().remove(preferred);
+        getInvokers().add(preferred);
+        return true;
+      }
+      s_logger.debug("Preferred invoker {} refused job {}", preferred, job.getJob().getSpecification().getJobId());
+      job.releaseInvoker();
+      // Take the invoker out of the list so that the loop below doesn't offer it the job again straight away
+      getInvokers().remove(preferred);
+      if (preferred.notifyWhenAvailable(this)) {
+        s_logger.info("Invoker {} requested immediate retry", preferred);
+        retry = new LinkedList<JobInvoker>();
+        retry.add(preferred);
+      }
+    }
     do {
       final Iterator<JobInvoker> iterator = getInvokers().iterator();
       while (iterator.hasNext()) {
         final JobInvoker jobInvoker = iterator.next();
         if (job.canRunOn(jobInvoker)) {
-          if (jobInvoker.invoke(job.getJob(), job)) {
+          job.invoking(jobInvoker);
+          if (jobInvoker.invoke(job.getJob(), job.nextAttempt())) {
             s_logger.debug("Invoker {} accepted job {}", jobInvoker, job.getJob().getSpecification().getJobId());
             // request a job timeout
             job.setTimeout(jobInvoker);
@@ -513,6 +729,7 @@ public class JobDispatcher implements JobInvokerRegister {
             return true;
           } else {
             s_logger.debug("Invoker {} refused to execute job {}", jobInvoker, job.getJob().getSpecification().getJobId());
+            job.releaseInvoker();
             iterator.remove();
             if (jobInvoker.notifyWhenAvailable(this)) {
               s_logger.info("Invoker {} requested immediate retry", jobInvoker);
@@ -535,6 +752,27 @@ public class JobDispatcher implements JobInvokerRegister {
     return false;
   }
 
+  // caller must already own monitor
+  private JobInvoker selectInvoker(final DispatchJob job) {
+    if ((getValueLocality() == null) || job.getInputs().isEmpty()) {
+      return null;
+    }
+    final Map<JobInvoker, Integer> localInputs = job.getLocalInputs();
+    if (getDispatchPolicy() == null) {
+      return null;
+    }
+    final List<JobInvoker> candidates = new ArrayList<JobInvoker>(getInvokers().size());
+    for (JobInvoker jobInvoker : getInvokers()) {
+      if (job.canRunOn(jobInvoker)) {
+        candidates.add(jobInvoker);
+      }
+    }
+    if (candidates.isEmpty()) {
+      return null;
+    }
+    return getDispatchPolicy().selectInvoker(this, job.getJob(), candidates, job.getInputs().size(), localInputs);
+  }
+
   private synchronized void dispatchJobImpl(final DispatchJob job) {
     if (!invoke(job)) {
       s_logger.debug("Adding job to pending set");
@@ -561,6 +799,12 @@ public class JobDispatcher implements JobInvokerRegister {
     ArgumentChecker.notNull(resultReceiver, "resultReceiver");
     s_logger.info("Dispatching job {}", job.getSpecification().getJobId());
     final DispatchJob dispatchJob = new DispatchJob(job, resultReceiver);
+    if (getValueLocality() != null) {
+      // Walk the job tree and query the locality before taking the monitor; the results are cached in the job
+      if (!dispatchJob.getInputs().isEmpty()) {
+        dispatchJob.getLocalInputs();
+      }
+    }
     dispatchJobImpl(dispatchJob);
     return dispatchJob;
   }
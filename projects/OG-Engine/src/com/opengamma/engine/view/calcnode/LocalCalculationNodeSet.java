@@ -19,6 +19,7 @@ import com.opengamma.engine.function.FunctionExecutionContext;
 import com.opengamma.engine.view.cache.ViewComputationCacheSource;
 import com.opengamma.engine.view.calcnode.stats.DiscardingInvocationStatisticsGatherer;
 import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatisticsGatherer;
+import com.opengamma.engine.view.calcnode.stats.FunctionProfiler;
 import com.opengamma.util.ArgumentChecker;
 
 /**
@@ -34,6 +35,8 @@ public class LocalCalculationNodeSet extends AbstractCollection<LocalCalculation
   private ExecutorService _writeBehindExecutorService;
   private FunctionInvocationStatisticsGatherer _statisticsGatherer = new DiscardingInvocationStatisticsGatherer();
   private String _nodeIdentifier;
+  private long _partialResultPeriod;
+  private FunctionProfiler _functionProfiler;
 
   private int _nodeCount;
   private double _nodesPerCore;
@@ -168,6 +171,35 @@ public class LocalCalculationNodeSet extends AbstractCollection<LocalCalculation
     return _statisticsGatherer;
   }
 
+  /**
+   * Sets the minimum period between partial results reported for a job by each of the nodes.
+   * 
+   * @param partialResultPeriod the period in milliseconds, zero to disable partial results
+   * @see AbstractCalculationNode#setPartialResultPeriod
+   */
+  public void setPartialResultPeriod(final long partialResultPeriod) {
+    ArgumentChecker.notNegative(partialResultPeriod, "partialResultPeriod");
+    _partialResultPeriod = partialResultPeriod;
+  }
+
+  public long getPartialResultPeriod() {
+    return _partialResultPeriod;
+  }
+
+  /**
+   * Sets the profiler to be shared by the nodes.
+   * 
+   * @param functionProfiler the profiler, null to not profile invocations
+   * @see AbstractCalculationNode#setFunctionProfiler
+   */
+  public void setFunctionProfiler(final FunctionProfiler functionProfiler) {
+    _functionProfiler = functionProfiler;
+  }
+
+  public FunctionProfiler getFunctionProfiler() {
+    return _functionProfiler;
+  }
+
   protected int getCores() {
     return Runtime.getRuntime().availableProcessors();
   }
@@ -202,6 +234,8 @@ public class LocalCalculationNodeSet extends AbstractCollection<LocalCalculation
     for (int i = 0; i < nodes; i++) {
       final LocalCalculationNode node = new LocalCalculationNode(getViewComputationCache(), getFunctionCompilationService(), getFunctionExecutionContext(), getComputationTargetResolver(),
           getViewProcessorQuery(), getWriteBehindExecutorService(), getStatisticsGatherer());
+      node.setPartialResultPeriod(getPartialResultPeriod());
+      node.setFunctionProfiler(getFunctionProfiler());
       if (getNodeIdentifier() != null) {
         if (nodes > 1) {
           node.setNodeId(getNodeIdentifier() + ":" + (i + 1));
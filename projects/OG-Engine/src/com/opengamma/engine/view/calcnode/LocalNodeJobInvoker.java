@@ -21,6 +21,51 @@ public class LocalNodeJobInvoker extends AbstractCalculationNodeInvocationContai
 
   private static final Logger s_logger = LoggerFactory.getLogger(LocalNodeJobInvoker.class);
 
+  /**
+   * Passes the outcome of a job execution to the invocation receiver.
+   */
+  private class InvocationReceiver implements ExecutionReceiver {
+
+    private final JobInvocationReceiver _receiver;
+
+    public InvocationReceiver(final JobInvocationReceiver receiver) {
+      _receiver = receiver;
+    }
+
+    protected JobInvocationReceiver getReceiver() {
+      return _receiver;
+    }
+
+    @Override
+    public void executionComplete(CalculationJobResult result) {
+      getReceiver().jobCompleted(result);
+    }
+
+    @Override
+    public void executionFailed(AbstractCalculationNode node, Exception exception) {
+      s_logger.warn("Exception thrown by job execution", exception);
+      getReceiver().jobFailed(LocalNodeJobInvoker.this, node.getNodeId(), exception);
+    }
+
+  }
+
+  /**
+   * Passes the outcome of a job execution, and any partial results, to an invocation receiver that accepts partial
+   * results.
+   */
+  private final class PartialInvocationReceiver extends InvocationReceiver implements PartialJobResultReceiver {
+
+    public PartialInvocationReceiver(final JobInvocationReceiver receiver) {
+      super(receiver);
+    }
+
+    @Override
+    public void partialResultReceived(final CalculationJobResult partialResult) {
+      ((PartialJobResultReceiver) getReceiver()).partialResultReceived(partialResult);
+    }
+
+  }
+
   private final AtomicReference<JobInvokerRegister> _notifyWhenAvailable = new AtomicReference<JobInvokerRegister>();
   private final CapabilitySet _capabilitySet = new CapabilitySet();
 
@@ -93,20 +138,12 @@ public class LocalNodeJobInvoker extends AbstractCalculationNodeInvocationContai
     if (node == null) {
       return false;
     }
-    final ExecutionReceiver executionReceiver = new ExecutionReceiver() {
-
-      @Override
-      public void executionComplete(CalculationJobResult result) {
-        receiver.jobCompleted(result);
-      }
-
-      @Override
-      public void executionFailed(AbstractCalculationNode node, Exception exception) {
-        s_logger.warn("Exception thrown by job execution", exception);
-        receiver.jobFailed(LocalNodeJobInvoker.this, node.getNodeId(), exception);
-      }
-
-    };
+    final ExecutionReceiver executionReceiver;
+    if (receiver instanceof PartialJobResultReceiver) {
+      executionReceiver = new PartialInvocationReceiver(receiver);
+    } else {
+      executionReceiver = new InvocationReceiver(receiver);
+    }
     addJob(job, executionReceiver, node);
     addTail(job.getTail(), executionReceiver);
     return true;
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import java.util.List;
+import java.util.Map;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Prefers the invoker whose local cache already holds most of a job's inputs, traded off against the number of jobs
+ * already queued with it.
+ * <p>
+ * Each candidate is scored as the fraction of the job's inputs it holds less the load penalty for each job it has
+ * outstanding. The highest scoring invoker holding at least one of the inputs is chosen; if none hold any, no
+ * preference is given and the normal round-robin order applies. Locality is only known if the dispatcher has been
+ * given a {@link ValueLocality} to track it.
+ */
+public class LocalityJobDispatchPolicy implements JobDispatchPolicy {
+
+  /**
+   * Default penalty for each outstanding job.
+   */
+  public static final double DEFAULT_LOAD_PENALTY = 0.25;
+
+  private double _loadPenalty = DEFAULT_LOAD_PENALTY;
+
+  /**
+   * Returns the score deducted for each job outstanding with an invoker. A penalty of 0.25 means an invoker with four
+   * more jobs queued than another must hold all of the inputs the other doesn't to be preferred.
+   * 
+   * @return the load penalty
+   */
+  public double getLoadPenalty() {
+    return _loadPenalty;
+  }
+
+  public void setLoadPenalty(final double loadPenalty) {
+    ArgumentChecker.notNegative(loadPenalty, "loadPenalty");
+    _loadPenalty = loadPenalty;
+  }
+
+  @Override
+  public JobInvoker selectInvoker(final JobDispatcher dispatcher, final CalculationJob job, final List<JobInvoker> candidates, final int inputs,
+      final Map<JobInvoker, Integer> localInputs) {
+    if ((inputs == 0) || localInputs.isEmpty()) {
+      return null;
+    }
+    JobInvoker best = null;
+    double bestScore = 0;
+    for (JobInvoker candidate : candidates) {
+      final Integer local = localInputs.get(candidate);
+      final double score = ((local != null) ? (double) local / (double) inputs : 0) - getLoadPenalty() * dispatcher.getOutstandingJobs(candidate);
+      if ((best == null) || (score > bestScore)) {
+        best = candidate;
+        bestScore = score;
+      }
+    }
+    return localInputs.containsKey(best) ? best : null;
+  }
+
+}
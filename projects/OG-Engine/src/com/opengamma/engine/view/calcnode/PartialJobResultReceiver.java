@@ -0,0 +1,28 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+/**
+ * An optional call-back interface for the results of job items that are available before the whole job has completed.
+ * <p>
+ * A {@link JobResultReceiver} or {@link JobInvocationReceiver} may also implement this interface to have result items
+ * streamed to it as they are produced. The values of any items reported have already been written to the shared
+ * computation cache. The full {@link CalculationJobResult} is still delivered when the job completes and will contain
+ * all of the items, including those previously reported as partial results.
+ * <p>
+ * A {@link JobResultReceiver} passed to {@link JobDispatcher} receives each item as a partial result at most once, even
+ * if the job is retried after a failure, so the items reported always form the start of the job's full result.
+ */
+public interface PartialJobResultReceiver {
+
+  /**
+   * Receives a result containing the items completed since any previous partial result for the same job.
+   *
+   * @param partialResult the partial job result, not null
+   */
+  void partialResultReceived(CalculationJobResult partialResult);
+
+}
@@ -6,6 +6,8 @@
 package com.opengamma.engine.view.calcnode;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.fudgemsg.FudgeContext;
 import org.fudgemsg.FudgeMsg;
@@ -17,7 +19,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.Lifecycle;
 
 import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.cache.CacheSelectHint;
+import com.opengamma.engine.view.cache.DefaultViewComputationCacheSource;
 import com.opengamma.engine.view.cache.IdentifierMap;
+import com.opengamma.engine.view.cache.ViewComputationCacheSource;
 import com.opengamma.engine.view.calcnode.msg.Busy;
 import com.opengamma.engine.view.calcnode.msg.Cancel;
 import com.opengamma.engine.view.calcnode.msg.Execute;
@@ -48,6 +54,7 @@ public class RemoteNodeClient extends AbstractCalculationNodeInvocationContainer
   private final IdentifierMap _identifierMap;
   private final FunctionInvocationStatisticsSender _statistics;
   private boolean _started;
+  private volatile DefaultViewComputationCacheSource _prefetchCacheSource;
   private final RemoteCalcNodeMessageVisitor _messageVisitor = new RemoteCalcNodeMessageVisitor() {
 
     @Override
@@ -67,6 +74,7 @@ public class RemoteNodeClient extends AbstractCalculationNodeInvocationContainer
       final CalculationJob job = message.getJob();
       getFunctionCompilationService().reinitializeIfNeeded(job.getFunctionInitializationIdentifier());
       job.resolveInputs(getIdentifierMap());
+      prefetchInputs(job);
       addJob(job, new ExecutionReceiver() {
 
         @Override
@@ -132,6 +140,15 @@ public class RemoteNodeClient extends AbstractCalculationNodeInvocationContainer
 
   @Override
   public void onNodeChange() {
+    DefaultViewComputationCacheSource cacheSource = null;
+    for (AbstractCalculationNode node : getNodes()) {
+      final ViewComputationCacheSource nodeCacheSource = node.getCacheSource();
+      if (nodeCacheSource instanceof DefaultViewComputationCacheSource) {
+        cacheSource = (DefaultViewComputationCacheSource) nodeCacheSource;
+        break;
+      }
+    }
+    _prefetchCacheSource = cacheSource;
     if (isRunning()) {
       sendCapabilities();
     }
@@ -161,6 +178,41 @@ public class RemoteNodeClient extends AbstractCalculationNodeInvocationContainer
     sender.send(msg);
   }
 
+  /**
+   * Starts fetching the shared values a job will read so that they are available, or on their way, by the time it
+   * executes. Only jobs with no dependencies on other jobs are considered as the inputs of others may not have been
+   * produced yet.
+   * 
+   * @param job the job received, not null
+   */
+  protected void prefetchInputs(final CalculationJob job) {
+    final DefaultViewComputationCacheSource cacheSource = _prefetchCacheSource;
+    if ((cacheSource == null) || (job.getRequiredJobIds() != null)) {
+      return;
+    }
+    final CacheSelectHint cacheSelect = job.getCacheSelectHint();
+    final Set<ValueSpecification> inputs = new HashSet<ValueSpecification>();
+    for (CalculationJobItem item : job.getJobItems()) {
+      for (ValueSpecification input : item.getInputs()) {
+        if (!cacheSelect.isPrivateValue(input)) {
+          inputs.add(input);
+        }
+      }
+    }
+    for (CalculationJobItem item : job.getJobItems()) {
+      inputs.removeAll(item.getOutputs());
+    }
+    if (inputs.isEmpty()) {
+      return;
+    }
+    final CalculationJobSpecification spec = job.getSpecification();
+    try {
+      cacheSource.getCache(spec.getViewCycleId(), spec.getCalcConfigName()).prefetchSharedValues(inputs);
+    } catch (RuntimeException e) {
+      s_logger.warn("Couldn't prefetch inputs for job {}: {}", spec.getJobId(), e.getMessage());
+    }
+  }
+
   protected void sendCapabilities() {
     final Ready ready = new Ready(getNodes().size());
     // TODO any other capabilities to add
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.tuple.Pair;
+
+/**
+ * Tracks which {@link JobInvoker} produced each value, and so which invoker's local cache holds it.
+ * <p>
+ * Values are recorded against the cache they were written to; only the most recently used caches are
+ * remembered so that values from old cycles are discarded.
+ */
+public class ValueLocality {
+
+  /**
+   * Default number of caches to remember.
+   */
+  public static final int DEFAULT_MAX_CACHES = 16;
+
+  private final Map<Pair<UniqueId, String>, ConcurrentMap<ValueSpecification, JobInvoker>> _caches;
+
+  public ValueLocality() {
+    this(DEFAULT_MAX_CACHES);
+  }
+
+  public ValueLocality(final int maxCaches) {
+    ArgumentChecker.notNegativeOrZero(maxCaches, "maxCaches");
+    _caches = new LinkedHashMap<Pair<UniqueId, String>, ConcurrentMap<ValueSpecification, JobInvoker>>(maxCaches * 2, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Pair<UniqueId, String>, ConcurrentMap<ValueSpecification, JobInvoker>> eldest) {
+        return size() > maxCaches;
+      }
+
+    };
+  }
+
+  private ConcurrentMap<ValueSpecification, JobInvoker> getCache(final Pair<UniqueId, String> cacheKey, final boolean create) {
+    synchronized (_caches) {
+      ConcurrentMap<ValueSpecification, JobInvoker> cache = _caches.get(cacheKey);
+      if ((cache == null) && create) {
+        cache = new ConcurrentHashMap<ValueSpecification, JobInvoker>();
+        _caches.put(cacheKey, cache);
+      }
+      return cache;
+    }
+  }
+
+  private static Pair<UniqueId, String> getCacheKey(final CalculationJobSpecification job) {
+    return Pair.of(job.getViewCycleId(), job.getCalcConfigName());
+  }
+
+  /**
+   * Records the values produced by a job.
+   *
+   * @param job the job that produced the values, not null
+   * @param invoker the invoker the job ran on, not null
+   * @param values the values produced, not null
+   */
+  public void valuesProduced(final CalculationJobSpecification job, final JobInvoker invoker, final Collection<ValueSpecification> values) {
+    final ConcurrentMap<ValueSpecification, JobInvoker> cache = getCache(getCacheKey(job), true);
+    for (ValueSpecification value : values) {
+      cache.put(value, invoker);
+    }
+  }
+
+  /**
+   * Counts the number of values local to each invoker.
+   *
+   * @param job the job that will read the values, not null
+   * @param values the values, not null
+   * @return the number of values held by each invoker, not null
+   */
+  public Map<JobInvoker, Integer> countLocalValues(final CalculationJobSpecification job, final Collection<ValueSpecification> values) {
+    final Map<JobInvoker, Integer> result = new HashMap<JobInvoker, Integer>();
+    final ConcurrentMap<ValueSpecification, JobInvoker> cache = getCache(getCacheKey(job), false);
+    if (cache != null) {
+      for (ValueSpecification value : values) {
+        final JobInvoker invoker = cache.get(value);
+        if (invoker != null) {
+          final Integer count = result.get(invoker);
+          result.put(invoker, (count != null) ? count + 1 : 1);
+        }
+      }
+    }
+    return result;
+  }
+
+}
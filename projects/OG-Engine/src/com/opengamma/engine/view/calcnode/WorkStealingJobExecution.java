@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.function.CompiledFunctionRepository;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.cache.DelayedViewComputationCache;
+import com.opengamma.engine.view.cache.NonDelayedViewComputationCache;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.tuple.Pair;
+
+/**
+ * Shares the items of a single {@link CalculationJob} between a number of calculation nodes. An item is released
+ * once the items in the same job producing its inputs have completed. Each participating node takes released items
+ * from its own deque, newest first, and steals the oldest item from another node's deque when its own is empty.
+ * <p>
+ * The node that started the job waits for all of the items to complete. Other nodes participate only while there
+ * are released items to take so that they are free to return to whole jobs as soon as possible.
+ * <p>
+ * Results are written directly to the underlying cache rather than through a write-behind cache so that an item
+ * released to another node can always see the outputs of the items it depends on.
+ */
+public final class WorkStealingJobExecution {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(WorkStealingJobExecution.class);
+
+  /**
+   * Maximum time, in milliseconds, the initiating node waits before checking for cancellation.
+   */
+  private static final long WAIT_TIMEOUT = 100L;
+
+  private final CalculationJob _job;
+  private final List<CalculationJobItem> _items;
+  private final int[][] _dependents;
+  private final AtomicIntegerArray _blockCount;
+  private final CalculationJobResultItem[] _results;
+  private final AtomicInteger _remaining;
+  private final AtomicInteger _queued = new AtomicInteger();
+  private final List<Deque<Integer>> _deques = new CopyOnWriteArrayList<Deque<Integer>>();
+
+  public WorkStealingJobExecution(final CalculationJob job) {
+    ArgumentChecker.notNull(job, "job");
+    _job = job;
+    _items = job.getJobItems();
+    final int count = _items.size();
+    _blockCount = new AtomicIntegerArray(count);
+    _results = new CalculationJobResultItem[count];
+    _remaining = new AtomicInteger(count);
+    // Items are in execution order so an item can only depend on ones before it. Matching is on value name and
+    // target only; a false dependency costs some parallelism whereas a missed one would give the wrong result.
+    final Map<Pair<String, ComputationTargetSpecification>, List<Integer>> producers = new HashMap<Pair<String, ComputationTargetSpecification>, List<Integer>>();
+    final List<List<Integer>> dependents = new ArrayList<List<Integer>>(count);
+    final Deque<Integer> released = new LinkedBlockingDeque<Integer>();
+    for (int i = 0; i < count; i++) {
+      final CalculationJobItem item = _items.get(i);
+      final Set<Integer> required = new HashSet<Integer>();
+      for (ValueSpecification input : item.getInputs()) {
+        final List<Integer> producer = producers.get(Pair.of(input.getValueName(), input.getTargetSpecification()));
+        if (producer != null) {
+          required.addAll(producer);
+        }
+      }
+      for (Integer requiredItem : required) {
+        dependents.get(requiredItem).add(i);
+      }
+      dependents.add(new ArrayList<Integer>());
+      _blockCount.set(i, required.size());
+      if (required.isEmpty()) {
+        released.add(i);
+      }
+      for (ValueRequirement output : item.getDesiredValues()) {
+        final Pair<String, ComputationTargetSpecification> key = Pair.of(output.getValueName(), output.getTargetSpecification());
+        List<Integer> producer = producers.get(key);
+        if (producer == null) {
+          producer = new ArrayList<Integer>(1);
+          producers.put(key, producer);
+        }
+        producer.add(i);
+      }
+    }
+    _dependents = new int[count][];
+    for (int i = 0; i < count; i++) {
+      final List<Integer> itemDependents = dependents.get(i);
+      _dependents[i] = new int[itemDependents.size()];
+      for (int j = 0; j < _dependents[i].length; j++) {
+        _dependents[i][j] = itemDependents.get(j);
+      }
+    }
+    _queued.set(released.size());
+    _deques.add(released);
+  }
+
+  public CalculationJob getJob() {
+    return _job;
+  }
+
+  /**
+   * Returns the number of items released for execution but not yet taken by a node.
+   *
+   * @return the number of queued items
+   */
+  public int getQueuedItems() {
+    return _queued.get();
+  }
+
+  private DelayedViewComputationCache createCache(final AbstractCalculationNode node) {
+    return new NonDelayedViewComputationCache(node.getCache(getJob().getSpecification()), getJob().getCacheSelectHint());
+  }
+
+  private Integer take(final Deque<Integer> own) {
+    Integer item = own.pollFirst();
+    if (item == null) {
+      for (Deque<Integer> other : _deques) {
+        if (other != own) {
+          item = other.pollLast();
+          if (item != null) {
+            break;
+          }
+        }
+      }
+      if (item == null) {
+        return null;
+      }
+    }
+    _queued.decrementAndGet();
+    return item;
+  }
+
+  private void release(final Deque<Integer> own, final int item) {
+    _queued.incrementAndGet();
+    own.addFirst(item);
+  }
+
+  private void execute(final AbstractCalculationNode node, final CompiledFunctionRepository functions, final DelayedViewComputationCache cache,
+      final Deque<Integer> own, final int item) {
+    _results[item] = node.executeJobItem(_items.get(item), cache, functions, getJob().getSpecification().getCalcConfigName());
+    boolean released = false;
+    for (int dependent : _dependents[item]) {
+      if (_blockCount.decrementAndGet(dependent) == 0) {
+        release(own, dependent);
+        released = true;
+      }
+    }
+    if ((_remaining.decrementAndGet() == 0) || released) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Executes the job on the node that started it, returning when all items have completed.
+   *
+   * @param node the node, not null
+   * @param functions the function repository prepared for the job on the node, not null
+   * @return the result items in job order, or null if the job was cancelled
+   */
+  public List<CalculationJobResultItem> execute(final AbstractCalculationNode node, final CompiledFunctionRepository functions) {
+    final Deque<Integer> own = _deques.get(0);
+    final DelayedViewComputationCache cache = createCache(node);
+    try {
+      while (!getJob().isCancelled()) {
+        final Integer item = take(own);
+        if (item != null) {
+          execute(node, functions, cache, own, item);
+        } else {
+          if (_remaining.get() == 0) {
+            return Arrays.asList(_results);
+          }
+          synchronized (this) {
+            if ((_queued.get() == 0) && (_remaining.get() > 0)) {
+              wait(WAIT_TIMEOUT);
+            }
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      s_logger.debug("Interrupted while waiting for items of {}", getJob());
+    }
+    return null;
+  }
+
+  /**
+   * Executes released items of the job on another node until there are none left to take.
+   *
+   * @param node the node, not null
+   * @return true if any items were executed, false otherwise
+   */
+  public boolean help(final AbstractCalculationNode node) {
+    if (getQueuedItems() == 0) {
+      return false;
+    }
+    final Deque<Integer> own = new LinkedBlockingDeque<Integer>();
+    _deques.add(own);
+    try {
+      CompiledFunctionRepository functions = null;
+      DelayedViewComputationCache cache = null;
+      int count = 0;
+      Integer item;
+      while (!getJob().isCancelled() && ((item = take(own)) != null)) {
+        if (functions == null) {
+          try {
+            functions = node.prepareJob(getJob().getSpecification());
+            cache = createCache(node);
+          } catch (RuntimeException e) {
+            s_logger.warn("Couldn't prepare {} to help with {}", node.getNodeId(), getJob());
+            release(_deques.get(0), item);
+            synchronized (this) {
+              notifyAll();
+            }
+            return false;
+          }
+        }
+        execute(node, functions, cache, own, item);
+        count++;
+      }
+      s_logger.debug("Node {} executed {} items of {}", new Object[] {node.getNodeId(), count, getJob() });
+      return count > 0;
+    } finally {
+      _deques.remove(own);
+    }
+  }
+
+}
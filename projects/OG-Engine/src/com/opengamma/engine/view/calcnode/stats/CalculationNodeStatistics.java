@@ -42,6 +42,14 @@ public class CalculationNodeStatistics {
    * The non-execution time in nanoseconds.
    */
   private long _nonExecutionNanos;
+  /**
+   * The number of job inputs held in the node's local cache.
+   */
+  private long _localInputs;
+  /**
+   * The number of job inputs fetched from the shared cache.
+   */
+  private long _remoteInputs;
   /**
    * The last instant that a job was sent.
    */
@@ -64,6 +72,8 @@ public class CalculationNodeStatistics {
     _unsuccessfulJobs = other._unsuccessfulJobs;
     _executionNanos = other._executionNanos;
     _nonExecutionNanos = other._nonExecutionNanos;
+    _localInputs = other._localInputs;
+    _remoteInputs = other._remoteInputs;
     _lastJobInstant = other._lastJobInstant;
   }
 
@@ -126,6 +136,26 @@ public class CalculationNodeStatistics {
     return _nonExecutionNanos;
   }
 
+  /**
+   * Gets the number of job inputs that were already held in the node's local cache. These are only counted if the
+   * dispatcher is tracking value locality.
+   * 
+   * @return the number of local inputs
+   */
+  public synchronized long getLocalInputs() {
+    return _localInputs;
+  }
+
+  /**
+   * Gets the number of job inputs that had to be fetched from the shared cache. These are only counted if the
+   * dispatcher is tracking value locality.
+   * 
+   * @return the number of remote inputs
+   */
+  public synchronized long getRemoteInputs() {
+    return _remoteInputs;
+  }
+
   /**
    * Gets the last instant a job ran.
    * 
@@ -214,6 +244,17 @@ public class CalculationNodeStatistics {
     _lastJobInstant = Instant.now();
   }
 
+  /**
+   * Records the locality of a job's inputs.
+   * 
+   * @param localInputs  the number of inputs held in the node's local cache
+   * @param remoteInputs  the number of inputs fetched from the shared cache
+   */
+  public synchronized void recordInputLocality(final int localInputs, final int remoteInputs) {
+    _localInputs += localInputs;
+    _remoteInputs += remoteInputs;
+  }
+
   // -------------------------------------------------------------------------
   /**
    * Resets the counters to zero.
@@ -224,6 +265,8 @@ public class CalculationNodeStatistics {
     _jobItems = 0;
     _executionNanos = 0;
     _nonExecutionNanos = 0;
+    _localInputs = 0;
+    _remoteInputs = 0;
   }
 
   /**
@@ -237,6 +280,8 @@ public class CalculationNodeStatistics {
     _jobItems -= ((double) _jobItems * factor);
     _executionNanos -= ((double) _executionNanos * factor);
     _nonExecutionNanos -= ((double) _nonExecutionNanos * factor);
+    _localInputs -= ((double) _localInputs * factor);
+    _remoteInputs -= ((double) _remoteInputs * factor);
   }
 
   /**
@@ -31,4 +31,14 @@ public interface CalculationNodeStatisticsGatherer {
    */
   void jobFailed(String nodeId, long durationNanos);
 
+  /**
+   * Reports how many of the values a job read from other jobs were already in the local cache of the node
+   * it ran on, and how many had to be fetched from the shared cache.
+   * 
+   * @param nodeId  the node the job completed on
+   * @param localInputs  the number of inputs held locally
+   * @param remoteInputs  the number of inputs fetched from the shared cache
+   */
+  void jobInputLocality(String nodeId, int localInputs, int remoteInputs);
+
 }
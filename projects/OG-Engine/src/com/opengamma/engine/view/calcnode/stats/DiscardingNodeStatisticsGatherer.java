@@ -21,4 +21,9 @@ public final class DiscardingNodeStatisticsGatherer implements CalculationNodeSt
     // no action
   }
 
+  @Override
+  public void jobInputLocality(String nodeId, int localInputs, int remoteInputs) {
+    // no action
+  }
+
 }
@@ -0,0 +1,429 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode.stats;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Samples function invocations on calculation nodes, recording latency histograms for each function and target.
+ * <p>
+ * {@link FunctionInvocationStatistics} only holds decayed averages for each function, which can't show which
+ * securities a function is slow for. When installed on a node, one in every {@link #getSamplingPeriod} invocations
+ * is timed in three phases:
+ * <ul>
+ * <li>{@link Phase#INPUT_FETCH} - resolving the target and reading the inputs from the cache</li>
+ * <li>{@link Phase#EXECUTION} - executing the function</li>
+ * <li>{@link Phase#OUTPUT_WRITE} - writing the outputs to the cache, or queuing them if the node writes behind</li>
+ * </ul>
+ * The profiles can be written in the folded stack format read by flame graph tools.
+ * <p>
+ * The number of targets profiled is bounded. Once the limit is reached, samples for new targets are recorded against
+ * a single {@link #OTHER_TARGETS} profile for their function and target type.
+ * <p>
+ * This class is thread-safe.
+ */
+public class FunctionProfiler {
+
+  /**
+   * The phases of an invocation.
+   */
+  public enum Phase {
+    /**
+     * Resolving the target and reading the inputs.
+     */
+    INPUT_FETCH,
+    /**
+     * Executing the function.
+     */
+    EXECUTION,
+    /**
+     * Writing the outputs.
+     */
+    OUTPUT_WRITE
+  }
+
+  /**
+   * Default number of invocations per sample. Timing every invocation adds several clock reads to each one, which is
+   * significant for the many cheap functions in a typical graph.
+   */
+  public static final int DEFAULT_SAMPLING_PERIOD = 100;
+
+  /**
+   * Default maximum number of profiles held.
+   */
+  public static final int DEFAULT_MAX_PROFILES = 100000;
+
+  /**
+   * Target identifier used for samples once the maximum number of profiles has been reached.
+   */
+  public static final String OTHER_TARGETS = "(other)";
+
+  private final int _maxProfiles;
+  private final ConcurrentMap<ProfileKey, Profile> _profiles = new ConcurrentHashMap<ProfileKey, Profile>();
+  private final AtomicLong _invocations = new AtomicLong();
+  private final AtomicLong _samples = new AtomicLong();
+  private volatile int _samplingPeriod = DEFAULT_SAMPLING_PERIOD;
+
+  public FunctionProfiler() {
+    this(DEFAULT_MAX_PROFILES);
+  }
+
+  public FunctionProfiler(final int maxProfiles) {
+    ArgumentChecker.notNegativeOrZero(maxProfiles, "maxProfiles");
+    _maxProfiles = maxProfiles;
+  }
+
+  public int getMaxProfiles() {
+    return _maxProfiles;
+  }
+
+  /**
+   * Sets how often invocations are sampled.
+   *
+   * @param samplingPeriod the number of invocations per sample, 1 to sample every invocation or 0 to disable sampling
+   */
+  public void setSamplingPeriod(final int samplingPeriod) {
+    ArgumentChecker.notNegative(samplingPeriod, "samplingPeriod");
+    _samplingPeriod = samplingPeriod;
+  }
+
+  public int getSamplingPeriod() {
+    return _samplingPeriod;
+  }
+
+  /**
+   * Tests whether the next invocation should be sampled. Called by a node before each invocation.
+   *
+   * @return true if the invocation should be timed and passed to {@link #record}
+   */
+  public boolean isSampled() {
+    final int period = _samplingPeriod;
+    if (period == 0) {
+      return false;
+    }
+    return (_invocations.incrementAndGet() % period) == 0;
+  }
+
+  /**
+   * Records a sampled invocation.
+   *
+   * @param functionId the function identifier, not null
+   * @param target the invocation target, not null
+   * @param inputFetchNanos the time spent resolving the target and reading inputs
+   * @param executionNanos the time spent executing the function
+   * @param outputWriteNanos the time spent writing the outputs
+   */
+  public void record(final String functionId, final ComputationTargetSpecification target, final long inputFetchNanos, final long executionNanos,
+      final long outputWriteNanos) {
+    ProfileKey key = new ProfileKey(functionId, target.getType().name(), String.valueOf(target.getUniqueId()));
+    Profile profile = _profiles.get(key);
+    if (profile == null) {
+      if (_profiles.size() >= _maxProfiles) {
+        key = new ProfileKey(functionId, target.getType().name(), OTHER_TARGETS);
+        profile = _profiles.get(key);
+      }
+      if (profile == null) {
+        profile = new Profile(key);
+        final Profile existing = _profiles.putIfAbsent(key, profile);
+        if (existing != null) {
+          profile = existing;
+        }
+      }
+    }
+    profile.record(inputFetchNanos, executionNanos, outputWriteNanos);
+    _samples.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of invocations sampled since the last reset.
+   *
+   * @return the number of samples
+   */
+  public long getSamples() {
+    return _samples.get();
+  }
+
+  /**
+   * Returns the number of function and target combinations profiled.
+   *
+   * @return the number of profiles
+   */
+  public int getProfileCount() {
+    return _profiles.size();
+  }
+
+  /**
+   * Returns snapshots of the profiles, most expensive in total first.
+   *
+   * @return the profiles, not null
+   */
+  public List<Profile> getProfiles() {
+    final List<Profile> result = new ArrayList<Profile>(_profiles.size());
+    for (Profile profile : _profiles.values()) {
+      result.add(profile.snapshot());
+    }
+    Collections.sort(result, new Comparator<Profile>() {
+      @Override
+      public int compare(final Profile o1, final Profile o2) {
+        final long t1 = o1.getTotalNanos();
+        final long t2 = o2.getTotalNanos();
+        return (t1 > t2) ? -1 : ((t1 < t2) ? 1 : 0);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Writes the profiles in folded stack format, one line per phase of each profile with a non-zero time. Each frame
+   * of the stack is function, target type, target and phase. The value is the total time sampled in microseconds.
+   *
+   * @param writer the writer, not null
+   * @throws IOException if the writer fails
+   */
+  public void writeFlameGraph(final Writer writer) throws IOException {
+    for (Profile profile : getProfiles()) {
+      final String stack = frame(profile.getFunctionId()) + ";" + frame(profile.getTargetType()) + ";" + frame(profile.getTargetId()) + ";";
+      for (Phase phase : Phase.values()) {
+        final long micros = profile.getHistogram(phase).getTotalNanos() / 1000L;
+        if (micros > 0) {
+          writer.write(stack);
+          writer.write(phase.name());
+          writer.write(' ');
+          writer.write(Long.toString(micros));
+          writer.write('\n');
+        }
+      }
+    }
+    writer.flush();
+  }
+
+  private static String frame(final String name) {
+    return name.replace(';', ':').replace('\n', ' ');
+  }
+
+  /**
+   * Discards all profiles.
+   */
+  public void reset() {
+    _profiles.clear();
+    _samples.set(0);
+  }
+
+  //-------------------------------------------------------------------------
+  private static final class ProfileKey {
+
+    private final String _functionId;
+    private final String _targetType;
+    private final String _targetId;
+
+    public ProfileKey(final String functionId, final String targetType, final String targetId) {
+      _functionId = functionId;
+      _targetType = targetType;
+      _targetId = targetId;
+    }
+
+    @Override
+    public int hashCode() {
+      return (_functionId.hashCode() * 31 + _targetType.hashCode()) * 31 + _targetId.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof ProfileKey)) {
+        return false;
+      }
+      final ProfileKey other = (ProfileKey) o;
+      return _functionId.equals(other._functionId) && _targetId.equals(other._targetId) && _targetType.equals(other._targetType);
+    }
+
+  }
+
+  /**
+   * The samples for a function on a target.
+   */
+  public static final class Profile {
+
+    private final ProfileKey _key;
+    private final Histogram[] _histograms;
+
+    private Profile(final ProfileKey key) {
+      _key = key;
+      _histograms = new Histogram[Phase.values().length];
+      for (int i = 0; i < _histograms.length; i++) {
+        _histograms[i] = new Histogram();
+      }
+    }
+
+    private Profile(final ProfileKey key, final Histogram[] histograms) {
+      _key = key;
+      _histograms = histograms;
+    }
+
+    private synchronized void record(final long inputFetchNanos, final long executionNanos, final long outputWriteNanos) {
+      _histograms[Phase.INPUT_FETCH.ordinal()].add(inputFetchNanos);
+      _histograms[Phase.EXECUTION.ordinal()].add(executionNanos);
+      _histograms[Phase.OUTPUT_WRITE.ordinal()].add(outputWriteNanos);
+    }
+
+    private synchronized Profile snapshot() {
+      final Histogram[] histograms = new Histogram[_histograms.length];
+      for (int i = 0; i < histograms.length; i++) {
+        histograms[i] = _histograms[i].copy();
+      }
+      return new Profile(_key, histograms);
+    }
+
+    public String getFunctionId() {
+      return _key._functionId;
+    }
+
+    public String getTargetType() {
+      return _key._targetType;
+    }
+
+    public String getTargetId() {
+      return _key._targetId;
+    }
+
+    public synchronized Histogram getHistogram(final Phase phase) {
+      return _histograms[phase.ordinal()];
+    }
+
+    /**
+     * Returns the number of samples.
+     *
+     * @return the number of samples
+     */
+    public synchronized long getSamples() {
+      return _histograms[0].getCount();
+    }
+
+    /**
+     * Returns the total time of all phases of all samples.
+     *
+     * @return the total time in nanoseconds
+     */
+    public synchronized long getTotalNanos() {
+      long total = 0;
+      for (Histogram histogram : _histograms) {
+        total += histogram.getTotalNanos();
+      }
+      return total;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append(getFunctionId()).append(" on ").append(getTargetType()).append(' ').append(getTargetId()).append(": ").append(getSamples()).append(" samples");
+      for (Phase phase : Phase.values()) {
+        sb.append(", ").append(phase).append(' ').append(getHistogram(phase));
+      }
+      return sb.toString();
+    }
+
+  }
+
+  /**
+   * Latency histogram with buckets of powers of two nanoseconds.
+   */
+  public static final class Histogram {
+
+    private static final int BUCKETS = 64;
+
+
+    private final long[] _buckets;
+    private long _count;
+    private long _totalNanos;
+    private long _maxNanos;
+
+    private Histogram() {
+      _buckets = new long[BUCKETS];
+    }
+
+    private Histogram(final Histogram copy) {
+      _buckets = copy._buckets.clone();
+      _count = copy._count;
+      _totalNanos = copy._totalNanos;
+      _maxNanos = copy._maxNanos;
+    }
+
+    private void add(long nanos) {
+      if (nanos < 0) {
+        nanos = 0;
+      }
+      // Bucket i holds values below 2^i and at least 2^(i-1)
+      _buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)]++;
+      _count++;
+      _totalNanos += nanos;
+      if (nanos > _maxNanos) {
+        _maxNanos = nanos;
+      }
+    }
+
+    private Histogram copy() {
+      return new Histogram(this);
+    }
+
+    public long getCount() {
+      return _count;
+    }
+
+    public long getTotalNanos() {
+      return _totalNanos;
+    }
+
+    public long getMaxNanos() {
+      return _maxNanos;
+    }
+
+    public double getMeanNanos() {
+      return (_count > 0) ? (double) _totalNanos / (double) _count : 0;
+    }
+
+    /**
+     * Returns an upper bound for a percentile of the samples, accurate to within a factor of two.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the upper bound of the bucket containing the percentile, in nanoseconds
+     */
+    public long getPercentileNanos(final double percentile) {
+      ArgumentChecker.isTrue((percentile >= 0) && (percentile <= 100), "percentile");
+      if (_count == 0) {
+        return 0;
+      }
+      final long rank = Math.max(1, (long) Math.ceil(_count * percentile / 100d));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += _buckets[i];
+        if (seen >= rank) {
+          return Math.min((i < BUCKETS - 1) ? (1L << i) - 1 : Long.MAX_VALUE, _maxNanos);
+        }
+      }
+      return _maxNanos;
+    }
+
+    @Override
+    public String toString() {
+      return "mean=" + (long) getMeanNanos() + "ns, 99%<=" + getPercentileNanos(99) + "ns, max=" + _maxNanos + "ns";
+    }
+
+  }
+
+}
@@ -37,6 +37,11 @@ public class TotallingNodeStatisticsGatherer implements CalculationNodeStatistic
     getOrCreateNodeStatistics(nodeId).recordUnsuccessfulJob(duration);
   }
 
+  @Override
+  public void jobInputLocality(String nodeId, int localInputs, int remoteInputs) {
+    getOrCreateNodeStatistics(nodeId).recordInputLocality(localInputs, remoteInputs);
+  }
+
   /**
    * Creates the statistics for a given node.
    * 
@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.time.Duration;
+import javax.time.Instant;
+
+import com.google.common.collect.Sets;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ViewCalculationResultModel;
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.engine.view.ViewResultEntry;
+import com.opengamma.engine.view.ViewResultModel;
+import com.opengamma.engine.view.ViewTargetResultModel;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.tuple.Pair;
+
+/**
+ * Read-only view of a result model restricted to a subset of its computation targets.
+ * <p>
+ * The underlying result is not copied; the restriction is applied as each method is called. This allows a result
+ * shared by many clients to be passed to clients interested in only some of the targets without the cost of a copy
+ * for each of them.
+ */
+public abstract class TargetFilteredViewResultModel implements ViewResultModel {
+
+  private final ViewResultModel _underlying;
+  private final Set<ComputationTargetSpecification> _targets;
+
+  protected TargetFilteredViewResultModel(final ViewResultModel underlying, final Set<ComputationTargetSpecification> targets) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNull(targets, "targets");
+    _underlying = underlying;
+    _targets = targets;
+  }
+
+  /**
+   * Restricts a full result to a set of targets.
+   *
+   * @param result the full result, may be null
+   * @param targets the targets to include, not null. The set is not copied and must not be modified.
+   * @return the restricted result, null if the result is null
+   */
+  public static ViewComputationResultModel of(final ViewComputationResultModel result, final Set<ComputationTargetSpecification> targets) {
+    if (result == null) {
+      return null;
+    }
+    return new Full(result, targets);
+  }
+
+  /**
+   * Restricts a delta result to a set of targets.
+   *
+   * @param result the delta result, may be null
+   * @param targets the targets to include, not null. The set is not copied and must not be modified.
+   * @return the restricted result, null if the result is null
+   */
+  public static ViewDeltaResultModel of(final ViewDeltaResultModel result, final Set<ComputationTargetSpecification> targets) {
+    if (result == null) {
+      return null;
+    }
+    return new Delta(result, targets);
+  }
+
+  protected ViewResultModel getUnderlying() {
+    return _underlying;
+  }
+
+  protected Set<ComputationTargetSpecification> getTargets() {
+    return _targets;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public UniqueId getViewProcessId() {
+    return getUnderlying().getViewProcessId();
+  }
+
+  @Override
+  public UniqueId getViewCycleId() {
+    return getUnderlying().getViewCycleId();
+  }
+
+  @Override
+  public Instant getValuationTime() {
+    return getUnderlying().getValuationTime();
+  }
+
+  @Override
+  public Instant getCalculationTime() {
+    return getUnderlying().getCalculationTime();
+  }
+
+  @Override
+  public Duration getCalculationDuration() {
+    return getUnderlying().getCalculationDuration();
+  }
+
+  @Override
+  public VersionCorrection getVersionCorrection() {
+    return getUnderlying().getVersionCorrection();
+  }
+
+  @Override
+  public Set<ComputationTargetSpecification> getAllTargets() {
+    return Sets.intersection(getTargets(), getUnderlying().getAllTargets());
+  }
+
+  @Override
+  public Collection<String> getCalculationConfigurationNames() {
+    return getUnderlying().getCalculationConfigurationNames();
+  }
+
+  @Override
+  public ViewCalculationResultModel getCalculationResult(final String calcConfigurationName) {
+    final ViewCalculationResultModel result = getUnderlying().getCalculationResult(calcConfigurationName);
+    if (result == null) {
+      return null;
+    }
+    return new CalculationResult(result, getTargets());
+  }
+
+  @Override
+  public ViewTargetResultModel getTargetResult(final ComputationTargetSpecification targetSpecification) {
+    if (!getTargets().contains(targetSpecification)) {
+      return null;
+    }
+    return getUnderlying().getTargetResult(targetSpecification);
+  }
+
+  @Override
+  public List<ViewResultEntry> getAllResults() {
+    final List<ViewResultEntry> results = new ArrayList<ViewResultEntry>();
+    for (ViewResultEntry result : getUnderlying().getAllResults()) {
+      if (getTargets().contains(result.getComputedValue().getSpecification().getTargetSpecification())) {
+        results.add(result);
+      }
+    }
+    return results;
+  }
+
+  @Override
+  public Set<String> getAllOutputValueNames() {
+    final Set<String> outputValueNames = new HashSet<String>();
+    for (ViewResultEntry result : getAllResults()) {
+      outputValueNames.add(result.getComputedValue().getSpecification().getValueName());
+    }
+    return outputValueNames;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + getTargets().size() + " targets of " + getUnderlying() + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  private static final class Full extends TargetFilteredViewResultModel implements ViewComputationResultModel {
+
+    private Full(final ViewComputationResultModel underlying, final Set<ComputationTargetSpecification> targets) {
+      super(underlying, targets);
+    }
+
+    @Override
+    protected ViewComputationResultModel getUnderlying() {
+      return (ViewComputationResultModel) super.getUnderlying();
+    }
+
+    @Override
+    public Set<ComputedValue> getAllMarketData() {
+      return getUnderlying().getAllMarketData();
+    }
+
+    @Override
+    public Map<ValueSpecification, Set<ValueRequirement>> getRequirementToSpecificationMapping() {
+      return getUnderlying().getRequirementToSpecificationMapping();
+    }
+
+  }
+
+  private static final class Delta extends TargetFilteredViewResultModel implements ViewDeltaResultModel {
+
+    private Delta(final ViewDeltaResultModel underlying, final Set<ComputationTargetSpecification> targets) {
+      super(underlying, targets);
+    }
+
+    @Override
+    protected ViewDeltaResultModel getUnderlying() {
+      return (ViewDeltaResultModel) super.getUnderlying();
+    }
+
+    @Override
+    public Instant getPreviousResultTimestamp() {
+      return getUnderlying().getPreviousResultTimestamp();
+    }
+
+  }
+
+  private static final class CalculationResult implements ViewCalculationResultModel {
+
+    private final ViewCalculationResultModel _underlying;
+    private final Set<ComputationTargetSpecification> _targets;
+
+    private CalculationResult(final ViewCalculationResultModel underlying, final Set<ComputationTargetSpecification> targets) {
+      _underlying = underlying;
+      _targets = targets;
+    }
+
+    @Override
+    public Collection<ComputationTargetSpecification> getAllTargets() {
+      final List<ComputationTargetSpecification> targets = new ArrayList<ComputationTargetSpecification>();
+      for (ComputationTargetSpecification target : _underlying.getAllTargets()) {
+        if (_targets.contains(target)) {
+          targets.add(target);
+        }
+      }
+      return targets;
+    }
+
+    @Override
+    public Map<Pair<String, ValueProperties>, ComputedValue> getValues(final ComputationTargetSpecification target) {
+      return _targets.contains(target) ? _underlying.getValues(target) : null;
+    }
+
+    @Override
+    public Collection<ComputedValue> getAllValues(final ComputationTargetSpecification target) {
+      return _targets.contains(target) ? _underlying.getAllValues(target) : null;
+    }
+
+  }
+
+}
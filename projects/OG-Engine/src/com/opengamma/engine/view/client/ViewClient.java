@@ -43,7 +43,8 @@ import com.opengamma.util.PublicAPI;
  * When results are paused, they are incrementally batched to be delivered as a single, collapsed result when they are
  * resumed. This result is specific to the individual client that has been paused.
  * <p>
- * Use {@link #setUpdatePeriod(long)} to throttle the frequency of updates exposed through this client.
+ * Use {@link #setUpdatePeriod(long)} to throttle the frequency of updates exposed through this client, and
+ * {@link #setFragmentUpdatePeriod(long)} or {@link #setFragmentBatchSize(int)} to batch cycle fragment results.
  * <p>
  * Always call {@link #shutdown()} from any state to allow resources associated with the managed view to be released
  * when the client is no longer required. Without this, the view process may continue executing indefinitely.
@@ -201,6 +202,27 @@ public interface ViewClient extends UniqueIdentifiable {
    */
   void setFragmentResultMode(ViewResultMode fragmentResultMode);
 
+  /**
+   * Sets the maximum time that cycle fragment results are held back to be merged into a single fragment. Fragments
+   * may be produced as each job of a cycle, or part of a job, completes, so batching them reduces the number of
+   * updates the listener must process. While batching is enabled, a listener that is slow to process a fragment does
+   * not hold up the view process; further fragments are merged until the listener is ready for them. Fragments are
+   * always released before the result of the cycle that they belong to. Set this, and the fragment batch size, to 0 to
+   * deliver each fragment as soon as it is produced.
+   * 
+   * @param periodMillis  the maximum time to hold fragments, or 0 to hold them only until the batch size is reached
+   */
+  void setFragmentUpdatePeriod(long periodMillis);
+
+  /**
+   * Sets the number of values after which a batch of cycle fragment results is released without waiting for the
+   * fragment update period. Set this, and the fragment update period, to 0 to deliver each fragment as soon as it is
+   * produced.
+   * 
+   * @param batchSize  the number of values, or 0 to release batches only after the fragment update period
+   */
+  void setFragmentBatchSize(int batchSize);
+
   //-------------------------------------------------------------------------
   /**
    * Pauses the flow of results exposed through this client. They continue to be received internally, and these are
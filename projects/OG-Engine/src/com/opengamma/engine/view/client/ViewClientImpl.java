@@ -5,6 +5,7 @@
  */
 package com.opengamma.engine.view.client;
 
+import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.marketdata.MarketDataInjector;
 import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
@@ -17,6 +18,7 @@ import com.opengamma.engine.view.ViewResultModel;
 import com.opengamma.engine.view.calc.EngineResourceReference;
 import com.opengamma.engine.view.calc.EngineResourceRetainer;
 import com.opengamma.engine.view.calc.ViewCycle;
+import com.opengamma.engine.view.client.merging.FragmentBatchingViewProcessListener;
 import com.opengamma.engine.view.client.merging.RateLimitingMergingViewProcessListener;
 import com.opengamma.engine.view.compilation.CompiledViewDefinition;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
@@ -74,8 +76,10 @@ public class ViewClientImpl implements ViewClient {
 
   private final ViewResultListener _mergedViewProcessListener;
   private final RateLimitingMergingViewProcessListener _mergingViewProcessListener;
+  private final FragmentBatchingViewProcessListener _fragmentBatchingViewProcessListener;
 
   private final AtomicReference<ViewResultListener> _userResultListener = new AtomicReference<ViewResultListener>();
+  private final AtomicReference<Set<ComputationTargetSpecification>> _resultTargetFilter = new AtomicReference<Set<ComputationTargetSpecification>>();
 
   /**
    * Constructs an instance.
@@ -140,6 +144,11 @@ public class ViewClientImpl implements ViewClient {
           if (!resultMode.equals(ViewResultMode.NONE)) {
             ViewComputationResultModel userFullResult = isFullResultRequired(resultMode, isFirstResult) ? fullResult : null;
             ViewDeltaResultModel userDeltaResult = isDeltaResultRequired(resultMode, isFirstResult) ? deltaResult : null;
+            Set<ComputationTargetSpecification> targetFilter = _resultTargetFilter.get();
+            if (targetFilter != null) {
+              userFullResult = TargetFilteredViewResultModel.of(userFullResult, targetFilter);
+              userDeltaResult = TargetFilteredViewResultModel.of(userDeltaResult, targetFilter);
+            }
             if (userFullResult != null || userDeltaResult != null) {
               listener.cycleCompleted(userFullResult, userDeltaResult);
             } else if (!isFirstResult || resultMode != ViewResultMode.DELTA_ONLY) {
@@ -159,6 +168,11 @@ public class ViewClientImpl implements ViewClient {
           if (!resultMode.equals(ViewResultMode.NONE)) {
             ViewComputationResultModel userFullResult = isFullResultRequired(resultMode, prevResult == null) ? fullFragment : null;
             ViewDeltaResultModel userDeltaResult = isDeltaResultRequired(resultMode, prevResult == null) ? deltaFragment : null;
+            Set<ComputationTargetSpecification> targetFilter = _resultTargetFilter.get();
+            if (targetFilter != null) {
+              userFullResult = TargetFilteredViewResultModel.of(userFullResult, targetFilter);
+              userDeltaResult = TargetFilteredViewResultModel.of(userDeltaResult, targetFilter);
+            }
             if (userFullResult != null || userDeltaResult != null) {
               listener.cycleFragmentCompleted(userFullResult, userDeltaResult);
             } else if (prevResult == null || resultMode != ViewResultMode.DELTA_ONLY) {
@@ -208,6 +222,7 @@ public class ViewClientImpl implements ViewClient {
 
     _mergingViewProcessListener = new RateLimitingMergingViewProcessListener(_mergedViewProcessListener, getViewProcessor().getViewCycleManager(), timer);
     _mergingViewProcessListener.setPaused(true);
+    _fragmentBatchingViewProcessListener = new FragmentBatchingViewProcessListener(_mergingViewProcessListener, timer);
   }
 
   @Override
@@ -251,9 +266,9 @@ public class ViewClientImpl implements ViewClient {
       // cause initial updates to be pushed through, they will not be seen until the merging update listener is
       // resumed, at which point the new permission provider will be in place. 
       if (privateProcess) {
-        _permissionProvider = getViewProcessor().attachClientToPrivateViewProcess(getUniqueId(), _mergingViewProcessListener, viewDefinitionId, executionOptions);
+        _permissionProvider = getViewProcessor().attachClientToPrivateViewProcess(getUniqueId(), _fragmentBatchingViewProcessListener, viewDefinitionId, executionOptions);
       } else {
-        _permissionProvider = getViewProcessor().attachClientToSharedViewProcess(getUniqueId(), _mergingViewProcessListener, viewDefinitionId, executionOptions);
+        _permissionProvider = getViewProcessor().attachClientToSharedViewProcess(getUniqueId(), _fragmentBatchingViewProcessListener, viewDefinitionId, executionOptions);
       }
       attachToViewProcessCore();
     } finally {
@@ -266,7 +281,7 @@ public class ViewClientImpl implements ViewClient {
     _clientLock.lock();
     try {
       checkNotTerminated();
-      _permissionProvider = getViewProcessor().attachClientToViewProcess(getUniqueId(), _mergingViewProcessListener, processId);
+      _permissionProvider = getViewProcessor().attachClientToViewProcess(getUniqueId(), _fragmentBatchingViewProcessListener, processId);
       attachToViewProcessCore();
     } finally {
       _clientLock.unlock();
@@ -275,6 +290,7 @@ public class ViewClientImpl implements ViewClient {
 
   private void attachToViewProcessCore() {
     _isAttached.set(true);
+    _mergingViewProcessListener.setResultFanOut(getViewProcessor().getViewProcessForClient(getUniqueId()).getResultFanOut());
     boolean isPaused = getState() == ViewClientState.PAUSED;
     _mergingViewProcessListener.setPaused(isPaused);
     _completionLatch = new CountDownLatch(1);
@@ -287,7 +303,9 @@ public class ViewClientImpl implements ViewClient {
       processCompleted();
       getViewProcessor().detachClientFromViewProcess(getUniqueId());
       getLatestCycleRetainer().replaceRetainedCycle(null);
+      _fragmentBatchingViewProcessListener.reset();
       _mergingViewProcessListener.setPaused(true);
+      _mergingViewProcessListener.setResultFanOut(null);
       _mergingViewProcessListener.reset();
       _latestResult.set(null);
       _isAttached.set(false);
@@ -319,6 +337,31 @@ public class ViewClientImpl implements ViewClient {
     _mergingViewProcessListener.setMinimumUpdatePeriodMillis(periodMillis);
   }
 
+  /**
+   * Restricts the results passed to the result listener to a subset of the computation targets. The results are
+   * read-only views of those shared with the view process's other clients rather than copies.
+   * 
+   * @param targets  the targets to receive results for, or null to receive results for all targets. The set is not
+   *                 copied and must not be modified while in use.
+   */
+  public void setResultTargetFilter(Set<ComputationTargetSpecification> targets) {
+    _resultTargetFilter.set(targets);
+  }
+
+  public Set<ComputationTargetSpecification> getResultTargetFilter() {
+    return _resultTargetFilter.get();
+  }
+
+  @Override
+  public void setFragmentUpdatePeriod(long periodMillis) {
+    _fragmentBatchingViewProcessListener.setUpdatePeriodMillis(periodMillis);
+  }
+
+  @Override
+  public void setFragmentBatchSize(int batchSize) {
+    _fragmentBatchingViewProcessListener.setMaxBatchSize(batchSize);
+  }
+
   @Override
   public ViewResultMode getResultMode() {
     return _resultMode.get();
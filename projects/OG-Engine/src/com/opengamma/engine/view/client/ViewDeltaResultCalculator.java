@@ -9,6 +9,7 @@ import java.util.Map;
 
 import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.DeferredValue;
 import com.opengamma.engine.value.ValueProperties;
 import com.opengamma.engine.view.DeltaDefinition;
 import com.opengamma.engine.view.InMemoryViewDeltaResultModel;
@@ -87,7 +88,7 @@ public class ViewDeltaResultCalculator {
             // values after truncation to the required decimal place, rather than testing whether the difference of the
             // full values is greater than some threshold; this way, there will always be a point beyond which a change
             // is detected, even in the event of gradual creep.
-            if (deltaDefinition.isDelta(previousValue, resultValue)) {
+            if (!isSameEncoding(previousValue, resultValue) && deltaDefinition.isDelta(previousValue, resultValue)) {
               deltaModel.addValue(calcConfigName, resultEntry.getValue());
             }
           }
@@ -95,5 +96,25 @@ public class ViewDeltaResultCalculator {
       }
     }
   }
-  
+
+  /**
+   * Tests whether two values are unchanged by comparing their encoded forms, avoiding the need to decode them for the
+   * delta definition.
+   * 
+   * @param previousValue  the previous value, possibly null
+   * @param resultValue  the new value, not null
+   * @return true if the values are known to be the same, false if they must be compared by the delta definition
+   */
+  private static boolean isSameEncoding(ComputedValue previousValue, ComputedValue resultValue) {
+    if (previousValue == null) {
+      return false;
+    }
+    final DeferredValue previousDeferred = previousValue.getDeferredValue();
+    final DeferredValue resultDeferred = resultValue.getDeferredValue();
+    if ((previousDeferred == null) || (resultDeferred == null)) {
+      return false;
+    }
+    return previousValue.getSpecification().equals(resultValue.getSpecification()) && resultDeferred.isSameEncoding(previousDeferred);
+  }
+
 }
@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.client.merging;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.time.Instant;
+
+import com.opengamma.engine.view.CycleInfo;
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.engine.view.compilation.CompiledViewDefinition;
+import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
+import com.opengamma.engine.view.listener.CycleFragmentCompletedCall;
+import com.opengamma.engine.view.listener.ViewResultListener;
+import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Batches cycle fragment results before they are passed to the underlying listener.
+ * <p>
+ * When calculation nodes stream partial results a view process may produce a large number of small fragments. With
+ * batching enabled, fragments are merged and released from the timer thread once the update period has elapsed or the
+ * batch has reached its maximum size. The calling thread is never held up by fragment delivery; if the underlying
+ * listener is still consuming the previous batch, further fragments are merged into the next one rather than queued.
+ * Any other call first releases the pending batch so that the underlying listener sees all of the fragments of a cycle
+ * before its completion.
+ */
+public class FragmentBatchingViewProcessListener implements ViewResultListener {
+
+  private final ViewResultListener _underlying;
+  private final Timer _timer;
+  private final ReentrantLock _deliveryLock = new ReentrantLock();
+  private final Object _pendingLock = new Object();
+
+  private volatile long _updatePeriodMillis;
+  private volatile int _maxBatchSize;
+
+  private CycleFragmentCompletedCall _pending;
+  private int _pendingValues;
+  private TimerTask _flushTask;
+  private boolean _flushImmediate;
+
+  public FragmentBatchingViewProcessListener(final ViewResultListener underlying, final Timer timer) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNull(timer, "timer");
+    _underlying = underlying;
+    _timer = timer;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the maximum time that a fragment is held before being released.
+   *
+   * @return the update period in milliseconds, zero if fragments are only held to reach the batch size
+   */
+  public long getUpdatePeriodMillis() {
+    return _updatePeriodMillis;
+  }
+
+  /**
+   * Sets the maximum time that a fragment is held before being released. If both this and the maximum batch size are
+   * zero then fragments are passed straight through to the underlying listener.
+   *
+   * @param updatePeriodMillis  the update period in milliseconds, zero to hold fragments only to reach the batch size
+   */
+  public void setUpdatePeriodMillis(final long updatePeriodMillis) {
+    ArgumentChecker.notNegative(updatePeriodMillis, "updatePeriodMillis");
+    _updatePeriodMillis = updatePeriodMillis;
+    flush();
+  }
+
+  /**
+   * Gets the number of values after which a batch is released without waiting for the update period.
+   *
+   * @return the batch size, zero if batches are released only by the update period
+   */
+  public int getMaxBatchSize() {
+    return _maxBatchSize;
+  }
+
+  /**
+   * Sets the number of values after which a batch is released without waiting for the update period. If both this and
+   * the update period are zero then fragments are passed straight through to the underlying listener.
+   *
+   * @param maxBatchSize  the batch size, zero to release batches only by the update period
+   */
+  public void setMaxBatchSize(final int maxBatchSize) {
+    ArgumentChecker.notNegative(maxBatchSize, "maxBatchSize");
+    _maxBatchSize = maxBatchSize;
+    flush();
+  }
+
+  private boolean isPassThrough() {
+    return (getUpdatePeriodMillis() == 0) && (getMaxBatchSize() == 0);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Releases any pending fragments to the underlying listener.
+   */
+  public void flush() {
+    _deliveryLock.lock();
+    try {
+      deliverPending();
+    } finally {
+      _deliveryLock.unlock();
+    }
+  }
+
+  /**
+   * Discards any pending fragments, and cancels their scheduled release, without notifying the underlying listener.
+   */
+  public void reset() {
+    takePending();
+  }
+
+  private CycleFragmentCompletedCall takePending() {
+    synchronized (_pendingLock) {
+      final CycleFragmentCompletedCall pending = _pending;
+      _pending = null;
+      _pendingValues = 0;
+      if (_flushTask != null) {
+        _flushTask.cancel();
+        _flushTask = null;
+      }
+      return pending;
+    }
+  }
+
+  private void deliverPending() {
+    // Fragments merged while a batch was being delivered are released in the same pass
+    CycleFragmentCompletedCall pending = takePending();
+    while (pending != null) {
+      pending.apply(getUnderlying());
+      pending = takePending();
+    }
+  }
+
+  private void scheduleFlush(final long delay) {
+    _flushTask = new TimerTask() {
+      @Override
+      public void run() {
+        flush();
+      }
+    };
+    _flushImmediate = delay == 0;
+    _timer.schedule(_flushTask, delay);
+  }
+
+  private static int getValueCount(final ViewComputationResultModel fullFragment, final ViewDeltaResultModel deltaFragment) {
+    if (fullFragment != null) {
+      return fullFragment.getAllResults().size();
+    } else if (deltaFragment != null) {
+      return deltaFragment.getAllResults().size();
+    } else {
+      return 0;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public UserPrincipal getUser() {
+    return getUnderlying().getUser();
+  }
+
+  @Override
+  public void viewDefinitionCompiled(final CompiledViewDefinition compiledViewDefinition, final boolean hasMarketDataPermissions) {
+    _deliveryLock.lock();
+    try {
+      deliverPending();
+      getUnderlying().viewDefinitionCompiled(compiledViewDefinition, hasMarketDataPermissions);
+    } finally {
+      _deliveryLock.unlock();
+    }
+  }
+
+  @Override
+  public void viewDefinitionCompilationFailed(final Instant valuationTime, final Exception exception) {
+    _deliveryLock.lock();
+    try {
+      deliverPending();
+      getUnderlying().viewDefinitionCompilationFailed(valuationTime, exception);
+    } finally {
+      _deliveryLock.unlock();
+    }
+  }
+
+  @Override
+  public void cycleInitiated(final CycleInfo cycleInfo) {
+    _deliveryLock.lock();
+    try {
+      deliverPending();
+      getUnderlying().cycleInitiated(cycleInfo);
+    } finally {
+      _deliveryLock.unlock();
+    }
+  }
+
+  @Override
+  public void cycleCompleted(final ViewComputationResultModel fullResult, final ViewDeltaResultModel deltaResult) {
+    _deliveryLock.lock();
+    try {
+      deliverPending();
+      getUnderlying().cycleCompleted(fullResult, deltaResult);
+    } finally {
+      _deliveryLock.unlock();
+    }
+  }
+
+  @Override
+  public void cycleFragmentCompleted(final ViewComputationResultModel fullFragment, final ViewDeltaResultModel deltaFragment) {
+    if (isPassThrough()) {
+      _deliveryLock.lock();
+      try {
+        deliverPending();
+        getUnderlying().cycleFragmentCompleted(fullFragment, deltaFragment);
+      } finally {
+        _deliveryLock.unlock();
+      }
+      return;
+    }
+    synchronized (_pendingLock) {
+      if (_pending == null) {
+        _pending = new CycleFragmentCompletedCall(fullFragment, deltaFragment);
+      } else {
+        _pending.update(fullFragment, deltaFragment);
+      }
+      _pendingValues += getValueCount(fullFragment, deltaFragment);
+      final int maxBatchSize = getMaxBatchSize();
+      if ((maxBatchSize > 0) && (_pendingValues >= maxBatchSize)) {
+        if ((_flushTask == null) || !_flushImmediate) {
+          if (_flushTask != null) {
+            _flushTask.cancel();
+          }
+          scheduleFlush(0);
+        }
+      } else if (_flushTask == null) {
+        final long updatePeriodMillis = getUpdatePeriodMillis();
+        if (updatePeriodMillis > 0) {
+          scheduleFlush(updatePeriodMillis);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void cycleExecutionFailed(final ViewCycleExecutionOptions executionOptions, final Exception exception) {
+    _deliveryLock.lock();
+    try {
+      deliverPending();
+      getUnderlying().cycleExecutionFailed(executionOptions, exception);
+    } finally {
+      _deliveryLock.unlock();
+    }
+  }
+
+  @Override
+  public void processCompleted() {
+    _deliveryLock.lock();
+    try {
+      deliverPending();
+      getUnderlying().processCompleted();
+    } finally {
+      _deliveryLock.unlock();
+    }
+  }
+
+  @Override
+  public void processTerminated(final boolean executionInterrupted) {
+    _deliveryLock.lock();
+    try {
+      deliverPending();
+      getUnderlying().processTerminated(executionInterrupted);
+    } finally {
+      _deliveryLock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private ViewResultListener getUnderlying() {
+    return _underlying;
+  }
+
+}
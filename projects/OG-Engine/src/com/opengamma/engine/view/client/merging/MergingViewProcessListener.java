@@ -51,8 +51,20 @@ public class MergingViewProcessListener implements ViewResultListener {
    */
   private final AtomicLong _lastUpdateMillis = new AtomicLong(0);
   
+  /**
+   * Marks the position in the queue of a result merged elsewhere and shared with other listeners.
+   */
+  private static final Function<ViewResultListener, Object> SHARED_CYCLE_COMPLETED = new Function<ViewResultListener, Object>() {
+    @Override
+    public Object apply(final ViewResultListener listener) {
+      // The shared result is applied in its place by drain(CycleCompletedCall)
+      return null;
+    }
+  };
+  
   private final List<Function<ViewResultListener, ?>> _callQueue = new LinkedList<Function<ViewResultListener, ?>>();
   
+  private int _sharedCycleCompletedIndex = -1;
   private int _cycleCompletedIndex = -1;
   private int _cycleFragmentCompletedIndex = -1;
   private boolean _cycleInitiated;
@@ -181,14 +193,49 @@ public class MergingViewProcessListener implements ViewResultListener {
 
   @Override
   public void cycleCompleted(ViewComputationResultModel fullResult, ViewDeltaResultModel deltaResult) {
+    _mergerLock.lock();
+    try {
+      retainCycle(fullResult);
+      queueCycleCompleted(fullResult, deltaResult);
+    } finally {
+      _mergerLock.unlock();
+    }
+  }
+  
+  /**
+   * Retains the cycle which produced a result if the latest result cycle is to be retained.
+   * 
+   * @param fullResult  the full result, may be null
+   */
+  protected void retainCycle(ViewComputationResultModel fullResult) {
     _mergerLock.lock();
     try {
       if (isLatestResultCycleRetained() && fullResult != null) {
         getCycleRetainer().replaceRetainedCycle(fullResult.getViewCycleId());
       }
+    } finally {
+      _mergerLock.unlock();
+    }
+  }
+  
+  /**
+   * Passes a result to the underlying listener, or merges it into the queue, without affecting the retained cycle.
+   * 
+   * @param fullResult  the full result
+   * @param deltaResult  the delta result
+   */
+  protected void queueCycleCompleted(ViewComputationResultModel fullResult, ViewDeltaResultModel deltaResult) {
+    _mergerLock.lock();
+    try {
       if (isPassThrough()) {
         getUnderlying().cycleCompleted(fullResult, deltaResult);
       } else {
+        if (_sharedCycleCompletedIndex != -1) {
+          // A result that would have been shared is being queued privately instead, so takes the shared result's place
+          pullCallToEnd(_sharedCycleCompletedIndex);
+          _callQueue.remove(_callQueue.size() - 1);
+          _sharedCycleCompletedIndex = -1;
+        }
         
         // Result merging is the most complicated. It is based on the following rules:
         //  - only one result call in the queue, kept up-to-date by merging new result calls into it 
@@ -213,6 +260,25 @@ public class MergingViewProcessListener implements ViewResultListener {
     }
   }
   
+  /**
+   * Records the position of a result passed to a merger shared with other listeners, so that the shared result is
+   * released in order with the other updates. Like a privately merged result, it is moved to the end of the queue by
+   * each later result.
+   */
+  protected void queueSharedCycleCompleted() {
+    _mergerLock.lock();
+    try {
+      if (_sharedCycleCompletedIndex != -1) {
+        pullCallToEnd(_sharedCycleCompletedIndex);
+      } else {
+        _sharedCycleCompletedIndex = _callQueue.size();
+        _callQueue.add(SHARED_CYCLE_COMPLETED);
+      }
+    } finally {
+      _mergerLock.unlock();
+    }
+  }
+  
   @Override
   public void cycleFragmentCompleted(ViewComputationResultModel fullFragment, ViewDeltaResultModel deltaFragment) {
     _mergerLock.lock();
@@ -283,12 +349,35 @@ public class MergingViewProcessListener implements ViewResultListener {
   
   //-------------------------------------------------------------------------
   public void drain() {
+    drain(null);
+  }
+  
+  /**
+   * Releases the updates waiting in the merger, with a result merged elsewhere and shared with other listeners in the
+   * position of the last result passed to that merger.
+   * 
+   * @param sharedCall  the shared result, null if there is none. It is not modified.
+   */
+  protected void drain(CycleCompletedCall sharedCall) {
     _mergerLock.lock();
     try {
+      boolean sharedCallApplied = false;
       for (Function<ViewResultListener, ?> call : _callQueue) {
-        call.apply(getUnderlying());
+        if (call == SHARED_CYCLE_COMPLETED) {
+          if (sharedCall != null) {
+            sharedCall.apply(getUnderlying());
+            sharedCallApplied = true;
+          }
+        } else {
+          call.apply(getUnderlying());
+        }
+      }
+      if (sharedCall != null && !sharedCallApplied) {
+        // Its position was released by an earlier drain
+        sharedCall.apply(getUnderlying());
       }
       _callQueue.clear();
+      _sharedCycleCompletedIndex = -1;
       _cycleCompletedIndex = -1;
       _cycleFragmentCompletedIndex = -1;
       _cycleInitiated = false;
@@ -305,6 +394,7 @@ public class MergingViewProcessListener implements ViewResultListener {
     _mergerLock.lock();
     try {
       _callQueue.clear();
+      _sharedCycleCompletedIndex = -1;
       _cycleCompletedIndex = -1;
       _cycleFragmentCompletedIndex = -1;
       _cycleInitiated = false;
@@ -335,6 +425,11 @@ public class MergingViewProcessListener implements ViewResultListener {
     } else if (_cycleCompletedIndex == fromIndex) {
       _cycleCompletedIndex = lastIndex;
     }
+    if (_sharedCycleCompletedIndex > fromIndex) {
+      _sharedCycleCompletedIndex--;
+    } else if (_sharedCycleCompletedIndex == fromIndex) {
+      _sharedCycleCompletedIndex = lastIndex;
+    }
     return call;
   }
   
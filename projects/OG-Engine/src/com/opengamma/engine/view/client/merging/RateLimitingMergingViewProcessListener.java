@@ -10,13 +10,19 @@ import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
 import com.opengamma.engine.view.calc.EngineResourceManagerInternal;
+import com.opengamma.engine.view.listener.CycleCompletedCall;
 import com.opengamma.engine.view.listener.ViewResultListener;
 import com.opengamma.util.ArgumentChecker;
 
 /**
  * Merges view process results to satisfy a specified maximum downstream update rate (given in terms of a minimum
  * period between updates). This maximum rate can be adjusted on-the-fly.
+ * <p>
+ * If a {@link ViewResultFanOut} is set then, while rate-limited, the results are merged once by the fan-out for all of
+ * the listeners with the same period rather than separately by each listener.
  */
 public class RateLimitingMergingViewProcessListener extends MergingViewProcessListener {
 
@@ -25,6 +31,8 @@ public class RateLimitingMergingViewProcessListener extends MergingViewProcessLi
   private final Timer _timer;
   private ReentrantLock _taskSetupLock = new ReentrantLock();
   private TimerTask _asyncUpdateCheckerTask;
+  private ViewResultFanOut _resultFanOut;
+  private ViewResultFanOut.Tier _tier;
   
   private boolean _isPaused;
   
@@ -45,6 +53,29 @@ public class RateLimitingMergingViewProcessListener extends MergingViewProcessLi
     _taskSetupLock.lock();
     try {
       cancelTimerTask();
+      leaveTier();
+    } finally {
+      _taskSetupLock.unlock();
+    }
+  }
+  
+  //-------------------------------------------------------------------------
+  /**
+   * Sets the fan-out shared by the listeners to a view process. While the listener is neither paused nor passing
+   * updates straight through, results are merged by the fan-out and released on its schedule.
+   * 
+   * @param resultFanOut  the fan-out of the view process the listener is attached to, or null to merge results
+   *                      privately
+   */
+  public void setResultFanOut(ViewResultFanOut resultFanOut) {
+    _taskSetupLock.lock();
+    try {
+      if (_resultFanOut == resultFanOut) {
+        return;
+      }
+      leaveTier();
+      _resultFanOut = resultFanOut;
+      updateConfiguration();
     } finally {
       _taskSetupLock.unlock();
     }
@@ -137,11 +168,66 @@ public class RateLimitingMergingViewProcessListener extends MergingViewProcessLi
     return true;
   }
   
+  //-------------------------------------------------------------------------
+  @Override
+  public void cycleCompleted(ViewComputationResultModel fullResult, ViewDeltaResultModel deltaResult) {
+    _taskSetupLock.lock();
+    try {
+      if (_tier != null && deltaResult != null) {
+        retainCycle(fullResult);
+        _tier.cycleCompleted(fullResult, deltaResult);
+        queueSharedCycleCompleted();
+      } else {
+        super.cycleCompleted(fullResult, deltaResult);
+      }
+    } finally {
+      _taskSetupLock.unlock();
+    }
+  }
+  
+  /**
+   * Releases the updates merged since the last period of the listener's tier.
+   * 
+   * @param tier  the tier publishing the update, not null
+   * @param sharedCall  the result merged by the tier, null if there were no results. It is not modified.
+   */
+  /* package */ void sharedTick(ViewResultFanOut.Tier tier, CycleCompletedCall sharedCall) {
+    _taskSetupLock.lock();
+    try {
+      if (!tier.acknowledge(this)) {
+        // Left the tier after the update was published; the update was queued privately on leaving
+        return;
+      }
+      _lastUpdateTimeMillis.set(System.currentTimeMillis());
+      drain(sharedCall);
+    } finally {
+      _taskSetupLock.unlock();
+    }
+  }
+  
+  private void leaveTier() {
+    if (_tier != null) {
+      CycleCompletedCall unreleased = _resultFanOut.leave(_tier, this);
+      _tier = null;
+      if (unreleased != null) {
+        queueCycleCompleted(unreleased.getFullResult(), unreleased.getDeltaResult());
+      }
+    }
+  }
+  
   private void updateConfiguration() {
     long minimumUpdatePeriodMillis = getMinimumUpdatePeriodMillis();
     cancelTimerTask();
+    if (_tier != null && (isPaused() || _tier.getPeriodMillis() != minimumUpdatePeriodMillis)) {
+      // Not passing through while in the tier, so any results it hasn't released are queued until the next drain
+      leaveTier();
+    }
     setPassThrough(minimumUpdatePeriodMillis == 0 && !isPaused());
-    if (!isPaused() && !isPassThrough()) {
+    if (!isPaused() && !isPassThrough() && _resultFanOut != null) {
+      if (_tier == null) {
+        _tier = _resultFanOut.join(minimumUpdatePeriodMillis, this, _timer);
+      }
+    } else if (!isPaused() && !isPassThrough()) {
       _asyncUpdateCheckerTask = new TimerTask() {
         @Override
         public void run() {
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.client.merging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.engine.view.listener.CycleCompletedCall;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Merges the results of a single view process once for all of the rate-limited listeners sharing an update period.
+ * <p>
+ * Without this each {@link RateLimitingMergingViewProcessListener} merges every delta into its own copy, so the cost
+ * of a view process with thousands of clients grows with the number of clients. Listeners attached to the same
+ * process with the same period instead join a {@link Tier}. The first member to be notified of a cycle merges its
+ * delta into the tier's pending update; the other members, notified of the same delta instance, do nothing. At the
+ * end of each period, aligned to the wall-clock, the pending update is published to every member. A published update
+ * is never modified again so all members receive the same instance.
+ */
+public class ViewResultFanOut {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(ViewResultFanOut.class);
+
+  private final Map<Long, Tier> _tiers = new HashMap<Long, Tier>();
+
+  /**
+   * The members sharing an update period.
+   */
+  public final class Tier {
+
+    private final long _periodMillis;
+    private final Set<RateLimitingMergingViewProcessListener> _members = new LinkedHashSet<RateLimitingMergingViewProcessListener>();
+    private final TimerTask _task;
+
+    // Guarded by this
+    private CycleCompletedCall _pending;
+    private CycleCompletedCall _published;
+    private final Set<RateLimitingMergingViewProcessListener> _undelivered = new HashSet<RateLimitingMergingViewProcessListener>();
+    private ViewDeltaResultModel _lastDelta;
+
+    private Tier(final long periodMillis) {
+      _periodMillis = periodMillis;
+      _task = new TimerTask() {
+        @Override
+        public void run() {
+          tick();
+        }
+      };
+    }
+
+    public long getPeriodMillis() {
+      return _periodMillis;
+    }
+
+    /**
+     * Merges a result into the pending update unless it has already been merged on behalf of another member.
+     *
+     * @param fullResult the full result
+     * @param deltaResult the delta result, not null
+     */
+    /* package */ synchronized void cycleCompleted(final ViewComputationResultModel fullResult, final ViewDeltaResultModel deltaResult) {
+      if (deltaResult == _lastDelta) {
+        return;
+      }
+      _lastDelta = deltaResult;
+      if (_pending == null) {
+        _pending = new CycleCompletedCall(fullResult, deltaResult);
+      } else {
+        _pending.update(fullResult, deltaResult);
+      }
+    }
+
+    private void tick() {
+      final CycleCompletedCall call;
+      final List<RateLimitingMergingViewProcessListener> members;
+      synchronized (this) {
+        call = _pending;
+        _pending = null;
+        _published = call;
+        _undelivered.addAll(_members);
+        members = new ArrayList<RateLimitingMergingViewProcessListener>(_members);
+      }
+      for (RateLimitingMergingViewProcessListener member : members) {
+        try {
+          member.sharedTick(this, call);
+        } catch (RuntimeException e) {
+          s_logger.error("Error delivering shared update to " + member, e);
+        }
+      }
+    }
+
+    /**
+     * Acknowledges delivery of the most recently published update to a member.
+     *
+     * @param member the member, not null
+     * @return true if the update should be applied, false if the member left the tier since it was published
+     */
+    /* package */ synchronized boolean acknowledge(final RateLimitingMergingViewProcessListener member) {
+      return _undelivered.remove(member);
+    }
+
+    private synchronized void add(final RateLimitingMergingViewProcessListener member) {
+      _members.add(member);
+    }
+
+    /**
+     * Removes a member.
+     *
+     * @return a private copy of the update the member has not received, or null if there is none
+     */
+    private synchronized CycleCompletedCall remove(final RateLimitingMergingViewProcessListener member) {
+      _members.remove(member);
+      CycleCompletedCall result = null;
+      if (_undelivered.remove(member) && (_published != null)) {
+        // The member is leaving while the last update is being published to it
+        result = new CycleCompletedCall(_published.getFullResult(), _published.getDeltaResult());
+      }
+      if (_pending != null) {
+        if (result == null) {
+          result = new CycleCompletedCall(_pending.getFullResult(), _pending.getDeltaResult());
+        } else {
+          result.update(_pending.getFullResult(), _pending.getDeltaResult());
+        }
+      }
+      return result;
+    }
+
+    private synchronized boolean isEmpty() {
+      return _members.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+      return "Tier[periodMillis=" + _periodMillis + "]";
+    }
+
+  }
+
+  /**
+   * Adds a listener to the tier for its update period, creating the tier if there is none.
+   *
+   * @param periodMillis the update period, in milliseconds
+   * @param member the listener, not null
+   * @param timer the timer to schedule a new tier's updates with, not null
+   * @return the tier, not null
+   */
+  /* package */ synchronized Tier join(final long periodMillis, final RateLimitingMergingViewProcessListener member, final Timer timer) {
+    ArgumentChecker.notNull(member, "member");
+    ArgumentChecker.notNull(timer, "timer");
+    Tier tier = _tiers.get(periodMillis);
+    if (tier == null) {
+      tier = new Tier(periodMillis);
+      _tiers.put(periodMillis, tier);
+      // Align to the wall-clock so that clients with the same period see updates at the same moments
+      final long delay = periodMillis - System.currentTimeMillis() % periodMillis;
+      timer.scheduleAtFixedRate(tier._task, delay, periodMillis);
+      s_logger.debug("Created {}", tier);
+    }
+    tier.add(member);
+    return tier;
+  }
+
+  /**
+   * Removes a listener from its tier, discarding the tier if it was the last member.
+   *
+   * @param tier the tier, not null
+   * @param member the listener, not null
+   * @return the update the member has not received, or null if there is none
+   */
+  /* package */ synchronized CycleCompletedCall leave(final Tier tier, final RateLimitingMergingViewProcessListener member) {
+    ArgumentChecker.notNull(tier, "tier");
+    ArgumentChecker.notNull(member, "member");
+    final CycleCompletedCall result = tier.remove(member);
+    if (tier.isEmpty() && (_tiers.get(tier.getPeriodMillis()) == tier)) {
+      _tiers.remove(tier.getPeriodMillis());
+      tier._task.cancel();
+      s_logger.debug("Discarded {}", tier);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of update periods currently in use.
+   *
+   * @return the number of tiers
+   */
+  public synchronized int getTierCount() {
+    return _tiers.size();
+  }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.compilation;
+
+import javax.time.Instant;
+
+import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.id.VersionCorrection;
+
+/**
+ * Persistent store of compiled view definitions, allowing a view process to restore the dependency graphs from a
+ * previous compilation, possibly made before the engine was restarted, instead of compiling the view definition again.
+ * <p>
+ * Entries are keyed by the view definition, the requested version-correction and the function repository. A restored
+ * entry must be checked against the current state of the targets and market data it was compiled with so that any
+ * changes that happened while the entry was not in use, and the change events for which were missed, force a full
+ * compilation.
+ */
+public interface CompiledViewDefinitionStore {
+
+  /**
+   * Restores a previously stored compilation of a view definition if one exists and is still valid.
+   *
+   * @param viewDefinition  the view definition to restore a compilation of, not null
+   * @param compilationServices  the services that would be used to compile the view definition, not null
+   * @param functions  the function compilation service, not null
+   * @param valuationTime  the valuation time the compilation must be valid for, not null
+   * @param versionCorrection  the requested version-correction, possibly containing "latest" values, not null
+   * @param resolvedVersionCorrection  the version-correction the targets must be current at, with any "latest" values
+   *  fixed as they would be for a compilation, not null
+   * @return the restored compilation, or null if there is no valid entry
+   */
+  CompiledViewDefinitionWithGraphsImpl load(ViewDefinition viewDefinition, ViewCompilationServices compilationServices, CompiledFunctionService functions,
+      Instant valuationTime, VersionCorrection versionCorrection, VersionCorrection resolvedVersionCorrection);
+
+  /**
+   * Stores a compiled view definition, replacing any existing entry for the same view definition and version-correction.
+   * The entry may be written after this method returns.
+   *
+   * @param compiledViewDefinition  the compiled view definition, not null
+   * @param functions  the function compilation service used in the compilation, not null
+   * @param versionCorrection  the requested version-correction, possibly containing "latest" values, not null
+   */
+  void store(CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, CompiledFunctionService functions, VersionCorrection versionCorrection);
+
+}
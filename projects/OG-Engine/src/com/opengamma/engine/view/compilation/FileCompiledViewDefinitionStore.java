@@ -0,0 +1,664 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.compilation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import javax.time.Instant;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgReader;
+import org.fudgemsg.FudgeMsgWriter;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.fudgemsg.mapping.FudgeSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.Trade;
+import com.opengamma.core.security.Security;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.function.CompiledFunctionDefinition;
+import com.opengamma.engine.function.CompiledFunctionRepository;
+import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.function.FunctionDefinition;
+import com.opengamma.engine.function.FunctionParameters;
+import com.opengamma.engine.function.MarketDataSourcingFunction;
+import com.opengamma.engine.function.ParameterizedFunction;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.NamedThreadPoolFactory;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Implementation of {@link CompiledViewDefinitionStore} holding each entry as a Fudge encoded file in a local directory.
+ * <p>
+ * The dependency graphs are written with the specifications of their targets and the identifiers of their functions
+ * only. When an entry is restored the targets are resolved again and the functions looked up in a repository compiled
+ * for the valuation time. The entry is discarded if:
+ * <ul>
+ * <li>the view definition has changed;
+ * <li>the default parameters of any function have changed;
+ * <li>the portfolio, or any position, trade or security in it, has a different version at the requested
+ * version-correction;
+ * <li>any other versioned security target has a different version at the requested version-correction;
+ * <li>any market data requirement is no longer available from the current market data provider;
+ * <li>any function is no longer in the repository, or the restored graphs are not valid for the valuation time.
+ * </ul>
+ * <p>
+ * The function init ID is part of the key but is assigned from the clock when the engine starts, so an entry written by
+ * a previous run of the engine is accepted with any init ID the first time it is used. After that, within this run,
+ * the init ID must match so that re-initialized functions force a compilation. Changes to the function repository
+ * between runs are detected from the identifiers and names of the functions in it. Changes to the configuration of
+ * the functions are detected from a hash of their default parameters and of the identifiers of the objects, such as
+ * curve definitions from the configuration source, that the functions registered for re-initialization on. The hash is
+ * written with the entry and checked before anything else is restored.
+ * <p>
+ * A configuration change made while the engine is down is only detected if the object is one that a function
+ * registered for re-initialization on and its source returns versioned identifiers. Configuration that a function
+ * reads during compilation or execution without registering it, or that has an unversioned identifier, is not
+ * checked; the store should not be used with such functions unless that configuration is left unchanged between runs.
+ * <p>
+ * Entries are encoded and written by a background thread so that storing a compilation does not delay the
+ * computation cycle that produced it.
+ */
+public class FileCompiledViewDefinitionStore implements CompiledViewDefinitionStore {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(FileCompiledViewDefinitionStore.class);
+
+  private static final String FILE_SUFFIX = ".fudge";
+
+  private static final String KEY_FIELD = "key";
+  private static final String VIEW_DEFINITION_FIELD = "viewDefinition";
+  private static final String FUNCTION_INIT_ID_FIELD = "functionInitId";
+  private static final String CONFIGURATION_HASH_FIELD = "configurationHash";
+  private static final String PORTFOLIO_FIELD = "portfolio";
+  private static final String GRAPH_FIELD = "graph";
+  private static final String CALCULATION_CONFIGURATION_NAME_FIELD = "calculationConfigurationName";
+  private static final String NODE_FIELD = "node";
+  private static final String EDGE_FIELD = "edge";
+  private static final String TERMINAL_FIELD = "terminal";
+  private static final String TARGET_FIELD = "target";
+  private static final String FUNCTION_FIELD = "function";
+  private static final String PARAMETERS_FIELD = "parameters";
+  private static final String PARAMETERIZED_FUNCTION_FIELD = "parameterizedFunction";
+  private static final String MARKET_DATA_FIELD = "marketData";
+  private static final String INPUT_FIELD = "input";
+  private static final String OUTPUT_FIELD = "output";
+  private static final String SPECIFICATION_FIELD = "specification";
+  private static final String REQUIREMENT_FIELD = "requirement";
+
+  private final File _directory;
+  private final FudgeContext _fudgeContext;
+  private final Executor _writer;
+  /**
+   * Entries that have been restored or written by this instance. An entry not in here was written by a previous run.
+   */
+  private final Set<String> _used = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  public FileCompiledViewDefinitionStore(final File directory) {
+    this(directory, OpenGammaFudgeContext.getInstance());
+  }
+
+  public FileCompiledViewDefinitionStore(final File directory, final FudgeContext fudgeContext) {
+    this(directory, fudgeContext, Executors.newSingleThreadExecutor(new NamedThreadPoolFactory("FileCompiledViewDefinitionStore")));
+  }
+
+  /**
+   * Creates a store that encodes and writes entries using the given executor. Entries for the same view definition
+   * must be written in the order they are stored, so the executor should run one task at a time.
+   * 
+   * @param directory  the directory to hold the entries, not null
+   * @param fudgeContext  the Fudge context to encode the entries with, not null
+   * @param writer  the executor to write the entries with, not null
+   */
+  public FileCompiledViewDefinitionStore(final File directory, final FudgeContext fudgeContext, final Executor writer) {
+    ArgumentChecker.notNull(directory, "directory");
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(writer, "writer");
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new OpenGammaRuntimeException("Couldn't create store directory " + directory);
+    }
+    _directory = directory;
+    _fudgeContext = fudgeContext;
+    _writer = writer;
+  }
+
+  public File getDirectory() {
+    return _directory;
+  }
+
+  public FudgeContext getFudgeContext() {
+    return _fudgeContext;
+  }
+
+  //-------------------------------------------------------------------------
+  private static String digest(final String value) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      return new BigInteger(1, digest.digest(value.getBytes("UTF-8"))).toString(16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new OpenGammaRuntimeException("SHA-1 not available", e);
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("UTF-8 not available", e);
+    }
+  }
+
+  private static String getViewKey(final ViewDefinition viewDefinition, final VersionCorrection versionCorrection) {
+    final UniqueId viewDefinitionId = viewDefinition.getUniqueId();
+    return ((viewDefinitionId != null) ? viewDefinitionId.getObjectId().toString() : viewDefinition.getName()) + "/" + versionCorrection;
+  }
+
+  private static String getKey(final String viewKey, final ViewDefinition viewDefinition, final CompiledFunctionService functions) {
+    final SortedSet<String> functionIds = new TreeSet<String>();
+    for (FunctionDefinition function : functions.getFunctionRepository().getAllFunctions()) {
+      functionIds.add(function.getUniqueId() + "=" + function.getShortName());
+    }
+    final StringBuilder sb = new StringBuilder(viewKey);
+    sb.append('/').append(viewDefinition.getUniqueId()).append('/');
+    for (String functionId : functionIds) {
+      sb.append(functionId).append(';');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Hashes the configuration inputs to the compilation that are not part of the key. These are the default parameters
+   * of each function, which are set from the function configuration, and the identifiers of the objects the functions
+   * read when they were initialized. Either may change without the function identifiers changing.
+   */
+  private String getConfigurationHash(final CompiledFunctionService functions) {
+    final SortedMap<String, String> parameters = new TreeMap<String, String>();
+    final FudgeSerializer serializer = new FudgeSerializer(getFudgeContext());
+    for (FunctionDefinition function : functions.getFunctionRepository().getAllFunctions()) {
+      final FunctionParameters defaultParameters = function.getDefaultParameters();
+      String encoded = "";
+      if (defaultParameters != null) {
+        encoded = defaultParameters.getClass().getName() + ":";
+        try {
+          serializer.reset();
+          encoded += new BigInteger(1, getFudgeContext().toByteArray(serializer.objectToFudgeMsg(defaultParameters))).toString(16);
+        } catch (RuntimeException e) {
+          s_logger.debug("Couldn't encode default parameters of {}; using {}", function.getUniqueId(), defaultParameters);
+          encoded += defaultParameters.toString();
+        }
+      }
+      parameters.put(function.getUniqueId(), encoded);
+    }
+    final SortedSet<String> requirements = new TreeSet<String>();
+    for (UniqueId requirement : functions.getReinitializingFunctionRequirements()) {
+      requirements.add(requirement.toString());
+    }
+    final StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, String> entry : parameters.entrySet()) {
+      sb.append(entry.getKey()).append('=').append(entry.getValue()).append(';');
+    }
+    for (String requirement : requirements) {
+      sb.append(requirement).append(';');
+    }
+    return digest(sb.toString());
+  }
+
+  private String getFilePrefix(final String viewKey) {
+    return digest(viewKey) + "-";
+  }
+
+  private File getFile(final String viewKey, final String key) {
+    return new File(getDirectory(), getFilePrefix(viewKey) + digest(key) + FILE_SUFFIX);
+  }
+
+  private FudgeMsg read(final File file) {
+    InputStream in = null;
+    try {
+      in = new BufferedInputStream(new FileInputStream(file));
+      final FudgeMsgReader reader = getFudgeContext().createMessageReader(in);
+      return reader.nextMessage();
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Couldn't read " + file, e);
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          s_logger.warn("Couldn't close {}", file);
+        }
+      }
+    }
+  }
+
+  private void write(final File file, final FudgeMsg msg) {
+    final File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+    OutputStream out = null;
+    try {
+      out = new BufferedOutputStream(new FileOutputStream(temp));
+      final FudgeMsgWriter writer = getFudgeContext().createMessageWriter(out);
+      writer.writeMessage(msg);
+      writer.flush();
+      out.close();
+      out = null;
+      // Replace the existing file in a single step so that a crash never leaves a partial entry
+      if (!temp.renameTo(file)) {
+        file.delete();
+        if (!temp.renameTo(file)) {
+          throw new IOException("Couldn't rename " + temp + " to " + file);
+        }
+      }
+    } catch (IOException e) {
+      temp.delete();
+      throw new OpenGammaRuntimeException("Couldn't write " + file, e);
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          s_logger.warn("Couldn't close {}", temp);
+        }
+        temp.delete();
+      }
+    }
+  }
+
+  private void removeOthers(final String viewKey, final File keep) {
+    final String prefix = getFilePrefix(viewKey);
+    final File[] files = getDirectory().listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().startsWith(prefix) && file.getName().endsWith(FILE_SUFFIX) && !file.equals(keep)) {
+          s_logger.debug("Removing stale entry {}", file);
+          file.delete();
+        }
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public void store(final CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, final CompiledFunctionService functions, final VersionCorrection versionCorrection) {
+    ArgumentChecker.notNull(compiledViewDefinition, "compiledViewDefinition");
+    ArgumentChecker.notNull(functions, "functions");
+    ArgumentChecker.notNull(versionCorrection, "versionCorrection");
+    final ViewDefinition viewDefinition = compiledViewDefinition.getViewDefinition();
+    final String viewKey = getViewKey(viewDefinition, versionCorrection);
+    // The key and hash depend on the current state of the functions so are taken now; the rest is left to the writer
+    final String key = getKey(viewKey, viewDefinition, functions);
+    final String configurationHash = getConfigurationHash(functions);
+    final File file = getFile(viewKey, key);
+    _used.add(file.getName());
+    _writer.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          final FudgeSerializer serializer = new FudgeSerializer(getFudgeContext());
+          final MutableFudgeMsg msg = serializer.newMessage();
+          msg.add(KEY_FIELD, null, key);
+          serializer.addToMessage(msg, VIEW_DEFINITION_FIELD, null, viewDefinition);
+          msg.add(FUNCTION_INIT_ID_FIELD, null, compiledViewDefinition.getFunctionInitId());
+          msg.add(CONFIGURATION_HASH_FIELD, null, configurationHash);
+          if (compiledViewDefinition.getPortfolio() != null) {
+            msg.add(PORTFOLIO_FIELD, null, compiledViewDefinition.getPortfolio().getUniqueId().toString());
+          }
+          for (DependencyGraph graph : compiledViewDefinition.getAllDependencyGraphs()) {
+            msg.add(GRAPH_FIELD, null, encodeGraph(serializer, graph));
+          }
+          s_logger.info("Storing compilation of {} to {}", viewDefinition.getName(), file);
+          write(file, msg);
+          removeOthers(viewKey, file);
+        } catch (RuntimeException e) {
+          // The compilation is still usable; it will just have to be repeated after a restart
+          s_logger.warn("Couldn't store compilation of " + viewDefinition.getName() + " to " + file, e);
+        }
+      }
+    });
+  }
+
+  private static MutableFudgeMsg encodeGraph(final FudgeSerializer serializer, final DependencyGraph graph) {
+    final MutableFudgeMsg msg = serializer.newMessage();
+    msg.add(CALCULATION_CONFIGURATION_NAME_FIELD, null, graph.getCalculationConfigurationName());
+    final Map<DependencyNode, Integer> nodeIndex = new HashMap<DependencyNode, Integer>();
+    for (DependencyNode node : graph.getDependencyNodes()) {
+      nodeIndex.put(node, nodeIndex.size());
+      msg.add(NODE_FIELD, null, encodeNode(serializer, node));
+    }
+    for (DependencyNode node : graph.getDependencyNodes()) {
+      final Integer to = nodeIndex.get(node);
+      for (DependencyNode input : node.getInputNodes()) {
+        final Integer from = nodeIndex.get(input);
+        if (from != null) {
+          msg.add(EDGE_FIELD, null, from);
+          msg.add(EDGE_FIELD, null, to);
+        }
+      }
+    }
+    for (Map.Entry<ValueSpecification, Set<ValueRequirement>> terminal : graph.getTerminalOutputs().entrySet()) {
+      final MutableFudgeMsg terminalMsg = serializer.newMessage();
+      serializer.addToMessage(terminalMsg, SPECIFICATION_FIELD, null, terminal.getKey());
+      for (ValueRequirement requirement : terminal.getValue()) {
+        serializer.addToMessage(terminalMsg, REQUIREMENT_FIELD, null, requirement);
+      }
+      msg.add(TERMINAL_FIELD, null, terminalMsg);
+    }
+    return msg;
+  }
+
+  private static MutableFudgeMsg encodeNode(final FudgeSerializer serializer, final DependencyNode node) {
+    final MutableFudgeMsg msg = serializer.newMessage();
+    serializer.addToMessage(msg, TARGET_FIELD, null, node.getComputationTarget().toSpecification());
+    final ParameterizedFunction function = node.getFunction();
+    msg.add(FUNCTION_FIELD, null, function.getFunction().getFunctionDefinition().getUniqueId());
+    serializer.addToMessageWithClassHeaders(msg, PARAMETERS_FIELD, null, function.getParameters());
+    if (function.getUniqueId() != null) {
+      msg.add(PARAMETERIZED_FUNCTION_FIELD, null, function.getUniqueId());
+    }
+    if (function.getFunction() instanceof MarketDataSourcingFunction) {
+      serializer.addToMessage(msg, MARKET_DATA_FIELD, null, ((MarketDataSourcingFunction) function.getFunction()).getMarketDataRequirement().getFirst());
+    }
+    for (ValueSpecification input : node.getInputValues()) {
+      serializer.addToMessage(msg, INPUT_FIELD, null, input);
+    }
+    for (ValueSpecification output : node.getOutputValues()) {
+      serializer.addToMessage(msg, OUTPUT_FIELD, null, output);
+    }
+    return msg;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public CompiledViewDefinitionWithGraphsImpl load(final ViewDefinition viewDefinition, final ViewCompilationServices compilationServices, final CompiledFunctionService functions,
+      final Instant valuationTime, final VersionCorrection versionCorrection, final VersionCorrection resolvedVersionCorrection) {
+    ArgumentChecker.notNull(viewDefinition, "viewDefinition");
+    ArgumentChecker.notNull(compilationServices, "compilationServices");
+    ArgumentChecker.notNull(functions, "functions");
+    ArgumentChecker.notNull(valuationTime, "valuationTime");
+    ArgumentChecker.notNull(versionCorrection, "versionCorrection");
+    ArgumentChecker.notNull(resolvedVersionCorrection, "resolvedVersionCorrection");
+    final String viewKey = getViewKey(viewDefinition, versionCorrection);
+    final String key = getKey(viewKey, viewDefinition, functions);
+    final File file = getFile(viewKey, key);
+    if (!file.exists()) {
+      s_logger.debug("No stored compilation of {}", viewDefinition.getName());
+      return null;
+    }
+    final boolean firstUse = _used.add(file.getName());
+    try {
+      final FudgeMsg msg = read(file);
+      if (!key.equals(msg.getString(KEY_FIELD))) {
+        s_logger.info("Stored compilation {} is not for {}", file, viewDefinition.getName());
+        return null;
+      }
+      if (!getConfigurationHash(functions).equals(msg.getString(CONFIGURATION_HASH_FIELD))) {
+        s_logger.info("Function configuration has changed since {} was compiled", viewDefinition.getName());
+        return null;
+      }
+      final long functionInitId = functions.getFunctionCompilationContext().getFunctionInitId();
+      if (!firstUse && (msg.getLong(FUNCTION_INIT_ID_FIELD) != functionInitId)) {
+        s_logger.info("Stored compilation of {} is for a previous function initialization", viewDefinition.getName());
+        return null;
+      }
+      final CompiledViewDefinitionWithGraphsImpl compiled = restore(msg, viewDefinition, compilationServices, functions, valuationTime, resolvedVersionCorrection);
+      if (compiled != null) {
+        s_logger.info("Restored compilation of {} from {}", viewDefinition.getName(), file);
+      }
+      return compiled;
+    } catch (RuntimeException e) {
+      s_logger.warn("Couldn't restore compilation of " + viewDefinition.getName() + " from " + file, e);
+      file.delete();
+      return null;
+    }
+  }
+
+  private CompiledViewDefinitionWithGraphsImpl restore(final FudgeMsg msg, final ViewDefinition viewDefinition, final ViewCompilationServices compilationServices,
+      final CompiledFunctionService functions, final Instant valuationTime, final VersionCorrection versionCorrection) {
+    final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
+    final ViewDefinition storedViewDefinition = deserializer.fieldValueToObject(ViewDefinition.class, msg.getByName(VIEW_DEFINITION_FIELD));
+    if (!viewDefinition.equals(storedViewDefinition)) {
+      s_logger.info("View definition {} has changed", viewDefinition.getName());
+      return null;
+    }
+    final Map<ObjectId, UniqueId> currentVersions = new HashMap<ObjectId, UniqueId>();
+    Portfolio portfolio = null;
+    final String portfolioId = msg.getString(PORTFOLIO_FIELD);
+    if (portfolioId != null) {
+      portfolio = PortfolioCompiler.loadPortfolio(viewDefinition, compilationServices, versionCorrection);
+      if (!UniqueId.parse(portfolioId).equals(portfolio.getUniqueId())) {
+        s_logger.info("Portfolio {} has changed to {}", portfolioId, portfolio.getUniqueId());
+        return null;
+      }
+      addCurrentVersions(portfolio.getRootNode(), currentVersions);
+    }
+    final RestoreContext context = new RestoreContext(deserializer, compilationServices, functions.compileFunctionRepository(valuationTime), versionCorrection, currentVersions);
+    final Map<String, DependencyGraph> graphs = new HashMap<String, DependencyGraph>();
+    for (FudgeField graphField : msg.getAllByName(GRAPH_FIELD)) {
+      final DependencyGraph graph = context.restoreGraph((FudgeMsg) graphField.getValue());
+      if (graph == null) {
+        return null;
+      }
+      graphs.put(graph.getCalculationConfigurationName(), graph);
+    }
+    final CompiledViewDefinitionWithGraphsImpl compiled = new CompiledViewDefinitionWithGraphsImpl(viewDefinition, graphs, portfolio,
+        functions.getFunctionCompilationContext().getFunctionInitId());
+    if (!compiled.isValidFor(valuationTime)) {
+      s_logger.info("Restored compilation of {} is not valid for {}", viewDefinition.getName(), valuationTime);
+      return null;
+    }
+    return compiled;
+  }
+
+  private static void addCurrentVersion(final UniqueId uniqueId, final Map<ObjectId, UniqueId> currentVersions) {
+    if (uniqueId != null) {
+      currentVersions.put(uniqueId.getObjectId(), uniqueId);
+    }
+  }
+
+  private static void addCurrentVersions(final PortfolioNode node, final Map<ObjectId, UniqueId> currentVersions) {
+    addCurrentVersion(node.getUniqueId(), currentVersions);
+    for (Position position : node.getPositions()) {
+      addCurrentVersion(position.getUniqueId(), currentVersions);
+      if (position.getSecurity() != null) {
+        addCurrentVersion(position.getSecurity().getUniqueId(), currentVersions);
+      }
+      for (Trade trade : position.getTrades()) {
+        addCurrentVersion(trade.getUniqueId(), currentVersions);
+        if (trade.getSecurity() != null) {
+          addCurrentVersion(trade.getSecurity().getUniqueId(), currentVersions);
+        }
+      }
+    }
+    for (PortfolioNode child : node.getChildNodes()) {
+      addCurrentVersions(child, currentVersions);
+    }
+  }
+
+  /**
+   * State used while restoring the dependency graphs of a single entry.
+   */
+  private static final class RestoreContext {
+
+    private final FudgeDeserializer _deserializer;
+    private final ViewCompilationServices _services;
+    private final CompiledFunctionRepository _functions;
+    private final VersionCorrection _versionCorrection;
+    private final Map<ObjectId, UniqueId> _currentVersions;
+    private final Map<ComputationTargetSpecification, ComputationTarget> _targets = new HashMap<ComputationTargetSpecification, ComputationTarget>();
+
+    private RestoreContext(final FudgeDeserializer deserializer, final ViewCompilationServices services, final CompiledFunctionRepository functions,
+        final VersionCorrection versionCorrection, final Map<ObjectId, UniqueId> currentVersions) {
+      _deserializer = deserializer;
+      _services = services;
+      _functions = functions;
+      _versionCorrection = versionCorrection;
+      _currentVersions = currentVersions;
+    }
+
+    /**
+     * Checks a versioned target against its version at the requested version-correction. Securities referenced by the
+     * graph but not by the portfolio are looked up individually; other targets must be in the portfolio to be checked.
+     */
+    private boolean isCurrentVersion(final ComputationTargetSpecification specification) {
+      final UniqueId uniqueId = specification.getUniqueId();
+      UniqueId current = _currentVersions.get(uniqueId.getObjectId());
+      if ((current == null) && (specification.getType() == ComputationTargetType.SECURITY) && (_services.getSecuritySource() != null)) {
+        try {
+          final Security security = _services.getSecuritySource().getSecurity(uniqueId.getObjectId(), _versionCorrection);
+          if (security == null) {
+            s_logger.info("Security {} no longer exists", uniqueId);
+            return false;
+          }
+          current = security.getUniqueId();
+        } catch (DataNotFoundException e) {
+          s_logger.info("Security {} no longer exists", uniqueId);
+          return false;
+        }
+        _currentVersions.put(uniqueId.getObjectId(), current);
+      }
+      if ((current != null) && !current.equals(uniqueId)) {
+        s_logger.info("Target {} has changed to {}", uniqueId, current);
+        return false;
+      }
+      return true;
+    }
+
+    private ComputationTarget resolveTarget(final ComputationTargetSpecification specification) {
+      ComputationTarget target = _targets.get(specification);
+      if (target != null) {
+        return target;
+      }
+      final UniqueId uniqueId = specification.getUniqueId();
+      if ((uniqueId != null) && uniqueId.isVersioned() && !isCurrentVersion(specification)) {
+        return null;
+      }
+      target = _services.getComputationTargetResolver().resolve(specification);
+      if (target == null) {
+        s_logger.info("Couldn't resolve target {}", specification);
+        return null;
+      }
+      _targets.put(specification, target);
+      return target;
+    }
+
+    private ParameterizedFunction restoreFunction(final FudgeMsg msg) {
+      final String functionId = msg.getString(FUNCTION_FIELD);
+      final CompiledFunctionDefinition definition;
+      if (MarketDataSourcingFunction.UNIQUE_ID.equals(functionId)) {
+        final ValueRequirement requirement = _deserializer.fieldValueToObject(ValueRequirement.class, msg.getByName(MARKET_DATA_FIELD));
+        if (!_services.getMarketDataAvailabilityProvider().getAvailability(requirement).isAvailable()) {
+          s_logger.info("Market data {} is no longer available", requirement);
+          return null;
+        }
+        definition = new MarketDataSourcingFunction(requirement);
+      } else {
+        definition = _functions.getDefinition(functionId);
+        if (definition == null) {
+          s_logger.info("Function {} is no longer available", functionId);
+          return null;
+        }
+      }
+      final FudgeField parametersField = msg.getByName(PARAMETERS_FIELD);
+      final FunctionParameters parameters = (parametersField != null) ? _deserializer.fieldValueToObject(FunctionParameters.class, parametersField) : definition
+          .getFunctionDefinition().getDefaultParameters();
+      final ParameterizedFunction function = new ParameterizedFunction(definition, parameters);
+      final String parameterizedFunctionId = msg.getString(PARAMETERIZED_FUNCTION_FIELD);
+      if (parameterizedFunctionId != null) {
+        function.setUniqueId(parameterizedFunctionId);
+      }
+      return function;
+    }
+
+    private DependencyNode restoreNode(final FudgeMsg msg) {
+      final ComputationTargetSpecification targetSpecification = _deserializer.fieldValueToObject(ComputationTargetSpecification.class, msg.getByName(TARGET_FIELD));
+      final ComputationTarget target = resolveTarget(targetSpecification);
+      if (target == null) {
+        return null;
+      }
+      final ParameterizedFunction function = restoreFunction(msg);
+      if (function == null) {
+        return null;
+      }
+      final DependencyNode node = new DependencyNode(target);
+      node.setFunction(function);
+      for (FudgeField input : msg.getAllByName(INPUT_FIELD)) {
+        node.addInputValue(_deserializer.fieldValueToObject(ValueSpecification.class, input));
+      }
+      for (FudgeField output : msg.getAllByName(OUTPUT_FIELD)) {
+        node.addOutputValue(_deserializer.fieldValueToObject(ValueSpecification.class, output));
+      }
+      return node;
+    }
+
+    private DependencyGraph restoreGraph(final FudgeMsg msg) {
+      final List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+      for (FudgeField nodeField : msg.getAllByName(NODE_FIELD)) {
+        final DependencyNode node = restoreNode((FudgeMsg) nodeField.getValue());
+        if (node == null) {
+          return null;
+        }
+        nodes.add(node);
+      }
+      final List<FudgeField> edges = msg.getAllByName(EDGE_FIELD);
+      for (int i = 0; i < edges.size(); i += 2) {
+        final int from = ((Number) edges.get(i).getValue()).intValue();
+        final int to = ((Number) edges.get(i + 1).getValue()).intValue();
+        nodes.get(to).addInputNode(nodes.get(from));
+      }
+      final DependencyGraph graph = new DependencyGraph(msg.getString(CALCULATION_CONFIGURATION_NAME_FIELD));
+      for (DependencyNode node : nodes) {
+        graph.addDependencyNode(node);
+      }
+      final Map<ValueSpecification, Set<ValueRequirement>> terminals = new HashMap<ValueSpecification, Set<ValueRequirement>>();
+      for (FudgeField terminalField : msg.getAllByName(TERMINAL_FIELD)) {
+        final FudgeMsg terminalMsg = (FudgeMsg) terminalField.getValue();
+        final Set<ValueRequirement> requirements = new HashSet<ValueRequirement>();
+        for (FudgeField requirement : terminalMsg.getAllByName(REQUIREMENT_FIELD)) {
+          requirements.add(_deserializer.fieldValueToObject(ValueRequirement.class, requirement));
+        }
+        terminals.put(_deserializer.fieldValueToObject(ValueSpecification.class, terminalMsg.getByName(SPECIFICATION_FIELD)), requirements);
+      }
+      graph.addTerminalOutputs(terminals);
+      return graph;
+    }
+
+  }
+
+}
@@ -131,13 +131,25 @@ public final class PortfolioCompiler {
    * @param versionCorrection  the version-correction at which the portfolio is required, not null
    */
   private static Portfolio getPortfolio(ViewCompilationContext compilationContext, VersionCorrection versionCorrection) {
-    UniqueId portfolioId = compilationContext.getViewDefinition().getPortfolioId();
+    return getPortfolio(compilationContext.getViewDefinition(), compilationContext.getServices(), versionCorrection);
+  }
+
+  /**
+   * Fully resolves the portfolio structure for a view.
+   * 
+   * @param viewDefinition  the view definition, not null
+   * @param services  the compilation services, not null
+   * @param versionCorrection  the version-correction at which the portfolio is required, not null
+   * @return the fully-resolved portfolio structure, not null
+   */
+  private static Portfolio getPortfolio(ViewDefinition viewDefinition, ViewCompilationServices services, VersionCorrection versionCorrection) {
+    UniqueId portfolioId = viewDefinition.getPortfolioId();
     if (portfolioId == null) {
-      throw new OpenGammaRuntimeException("The view definition '" + compilationContext.getViewDefinition().getName() + "' contains required portfolio outputs, but it does not reference a portfolio.");
+      throw new OpenGammaRuntimeException("The view definition '" + viewDefinition.getName() + "' contains required portfolio outputs, but it does not reference a portfolio.");
     }
-    PositionSource positionSource = compilationContext.getServices().getPositionSource();
+    PositionSource positionSource = services.getPositionSource();
     if (positionSource == null) {
-      throw new OpenGammaRuntimeException("The view definition '" + compilationContext.getViewDefinition().getName()
+      throw new OpenGammaRuntimeException("The view definition '" + viewDefinition.getName()
           + "' contains required portfolio outputs, but the compiler does not have access to a position source.");
     }
     // NOTE jonathan 2011-11-11 -- not sure what the right thing to do is here. Reasonable compromise seems to be to
@@ -153,24 +165,24 @@ public final class PortfolioCompiler {
       }
     } catch (DataNotFoundException ex) {
       throw new OpenGammaRuntimeException("Unable to resolve portfolio '" + portfolioId + "' in position source '" + positionSource +
-          "' used by view definition '" + compilationContext.getViewDefinition().getName() + "'", ex);
+          "' used by view definition '" + viewDefinition.getName() + "'", ex);
     }
     Portfolio cloned = new SimplePortfolio(portfolio);
-    return resolveSecurities(compilationContext, cloned, versionCorrection);
+    return resolveSecurities(services, cloned, versionCorrection);
   }
 
   /**
    * Resolves the securities.
    * 
-   * @param compilationContext  the compilation context containing the view being compiled, not null
+   * @param services  the compilation services, not null
    * @param portfolio  the portfolio to update, not null
    * @param versionCorrection  the version-correction at which to resolve the securities, not null 
    * @return the updated portfolio, not null
    */
-  private static Portfolio resolveSecurities(ViewCompilationContext compilationContext, Portfolio portfolio, VersionCorrection versionCorrection) {
+  private static Portfolio resolveSecurities(ViewCompilationServices services, Portfolio portfolio, VersionCorrection versionCorrection) {
     OperationTimer timer = new OperationTimer(s_logger, "Resolving all securities for {}", portfolio.getName());
     try {
-      new SecurityLinkResolver(compilationContext, versionCorrection).resolveSecurities(portfolio.getRootNode());
+      new SecurityLinkResolver(services.getExecutorService(), services.getSecuritySource(), versionCorrection).resolveSecurities(portfolio.getRootNode());
     } catch (Exception e) {
       throw new OpenGammaRuntimeException("Unable to resolve all securities for portfolio " + portfolio.getName(), e);
     } finally {
@@ -179,6 +191,24 @@ public final class PortfolioCompiler {
     return portfolio;
   }
 
+  /**
+   * Fully resolves the portfolio referenced by a view definition and caches its nodes, positions, trades and
+   * securities with the target resolver, as a compilation would. This is used when restoring a previously compiled
+   * view definition rather than compiling it.
+   * 
+   * @param viewDefinition  the view definition, not null
+   * @param services  the compilation services, not null
+   * @param versionCorrection  the version-correction at which the portfolio is required, not null
+   * @return the fully-resolved portfolio structure, not null
+   */
+  /* package */static Portfolio loadPortfolio(ViewDefinition viewDefinition, ViewCompilationServices services, VersionCorrection versionCorrection) {
+    Portfolio portfolio = getPortfolio(viewDefinition, services, versionCorrection);
+    CachingComputationTargetResolver resolver = services.getComputationTargetResolver();
+    resolver.cachePortfolioNodeHierarchy(portfolio.getRootNode());
+    cacheTradesPositionsAndSecurities(resolver, portfolio.getRootNode());
+    return portfolio;
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Resolves the securities in the portfolio at the latest version-correction.
@@ -5,10 +5,13 @@
  */
 package com.opengamma.engine.view.compilation;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -18,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.opengamma.core.position.Portfolio;
+import com.opengamma.core.position.PortfolioNode;
 import com.opengamma.core.security.SecuritySource;
 import com.opengamma.engine.ComputationTargetType;
 import com.opengamma.engine.depgraph.DependencyGraph;
@@ -28,6 +32,8 @@ import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.ViewCalculationConfiguration;
 import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.monitor.OperationTimer;
@@ -89,6 +95,177 @@ public final class ViewDefinitionCompiler {
     return new CompiledViewDefinitionWithGraphsImpl(viewDefinition, graphsByConfiguration, portfolio, compilationServices.getFunctionCompilationContext().getFunctionInitId());
   }
 
+  /**
+   * Recompiles a view definition after changes to some of its targets, resolving again only the parts of the previous
+   * dependency graphs which depend on the changed objects.
+   * <p>
+   * Nodes whose targets are, or hold a resolved reference to, a changed object are discarded along with every node
+   * consuming their outputs. The remaining nodes are copied, and only the terminal requirements they no longer satisfy
+   * are passed to the graph builders. The nodes built for those are joined to the copied nodes by value specification.
+   * The previous graphs are not modified, so they may still be in use by a running cycle.
+   * <p>
+   * A change to the structure of the portfolio can't be applied this way; the view definition must be compiled in full.
+   * 
+   * @param previous  the previous compilation of the view definition, not null
+   * @param compilationServices  the compilation services, not null
+   * @param valuationTime  the valuation time, not null
+   * @param versionCorrection  the version-correction at which to resolve the changed targets, not null
+   * @param changedTargets  the object identifiers of the changed positions, trades or securities, not null
+   * @return the recompiled view definition, null if it must be compiled in full
+   */
+  public static CompiledViewDefinitionWithGraphsImpl recompile(CompiledViewDefinitionWithGraphsImpl previous, ViewCompilationServices compilationServices, Instant valuationTime,
+      VersionCorrection versionCorrection, Set<ObjectId> changedTargets) {
+    ArgumentChecker.notNull(previous, "previous");
+    ArgumentChecker.notNull(compilationServices, "compilationServices");
+    ArgumentChecker.notNull(changedTargets, "changedTargets");
+    ViewDefinition viewDefinition = previous.getViewDefinition();
+    if ((previous.getPortfolio() != null) && isStructuralChange(previous.getPortfolio().getRootNode(), previous.getPortfolio().getUniqueId(), changedTargets)) {
+      s_logger.info("Portfolio structure of {} changed; compiling in full", viewDefinition.getName());
+      return null;
+    }
+
+    s_logger.debug("Recompiling {} for {} changed targets", viewDefinition.getName(), changedTargets.size());
+
+    OperationTimer timer = new OperationTimer(s_logger, "Recompiling ViewDefinition: {}", viewDefinition.getName());
+    ViewCompilationContext viewCompilationContext = new ViewCompilationContext(viewDefinition, compilationServices, valuationTime);
+    EnumSet<ComputationTargetType> specificTargetTypes = SpecificRequirementsCompiler.execute(viewCompilationContext);
+    boolean requirePortfolioResolution = specificTargetTypes.contains(ComputationTargetType.PORTFOLIO_NODE) || specificTargetTypes.contains(ComputationTargetType.POSITION);
+    Portfolio portfolio = PortfolioCompiler.execute(viewCompilationContext, versionCorrection, requirePortfolioResolution);
+    Map<String, DependencyGraph> graphsByConfiguration = new HashMap<String, DependencyGraph>();
+    for (String configName : viewDefinition.getAllCalculationConfigurationNames()) {
+      DependencyGraph previousGraph = previous.getDependencyGraph(configName);
+      DependencyGraph graph = (previousGraph != null) ? recompileDependencyGraph(previousGraph, viewCompilationContext.getBuilder(configName),
+          viewCompilationContext.getValueRequirements(configName), changedTargets) : null;
+      if (graph == null) {
+        s_logger.info("Couldn't recompile {} incrementally; compiling in full", configName);
+        return null;
+      }
+      graphsByConfiguration.put(configName, graph);
+    }
+    timer.finished();
+
+    return new CompiledViewDefinitionWithGraphsImpl(viewDefinition, graphsByConfiguration, portfolio, compilationServices.getFunctionCompilationContext().getFunctionInitId());
+  }
+
+  private static boolean isStructuralChange(PortfolioNode node, UniqueId portfolioId, Set<ObjectId> changedTargets) {
+    if ((portfolioId != null) && changedTargets.contains(portfolioId.getObjectId())) {
+      return true;
+    }
+    if ((node.getUniqueId() != null) && changedTargets.contains(node.getUniqueId().getObjectId())) {
+      return true;
+    }
+    for (PortfolioNode childNode : node.getChildNodes()) {
+      if (isStructuralChange(childNode, null, changedTargets)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static DependencyGraph recompileDependencyGraph(DependencyGraph previousGraph, DependencyGraphBuilder builder, Set<ValueRequirement> requirements,
+      Set<ObjectId> changedTargets) {
+    // Discard nodes on the changed targets and everything consuming their outputs
+    final Set<DependencyNode> discarded = new HashSet<DependencyNode>();
+    for (DependencyNode node : previousGraph.getDependencyNodes()) {
+      if (node.getComputationTarget().isDependentOn(changedTargets)) {
+        discard(previousGraph, node, discarded);
+      }
+    }
+    // Copy the other nodes, keeping the terminal outputs still required
+    final List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+    final Map<ValueSpecification, DependencyNode> producers = new HashMap<ValueSpecification, DependencyNode>();
+    for (DependencyNode node : previousGraph.getDependencyNodes()) {
+      if (!discarded.contains(node)) {
+        final DependencyNode copy = copyNode(node);
+        copy.addOutputValues(node.getOutputValues());
+        nodes.add(copy);
+        for (ValueSpecification output : node.getOutputValues()) {
+          producers.put(output, copy);
+        }
+      }
+    }
+    final Map<ValueSpecification, Set<ValueRequirement>> terminalOutputs = new HashMap<ValueSpecification, Set<ValueRequirement>>();
+    final Set<ValueRequirement> missing = new HashSet<ValueRequirement>(requirements);
+    for (Map.Entry<ValueSpecification, Set<ValueRequirement>> terminalOutput : previousGraph.getTerminalOutputs().entrySet()) {
+      if (producers.containsKey(terminalOutput.getKey())) {
+        final Set<ValueRequirement> kept = new HashSet<ValueRequirement>();
+        for (ValueRequirement requirement : terminalOutput.getValue()) {
+          if (missing.remove(requirement)) {
+            kept.add(requirement);
+          }
+        }
+        if (!kept.isEmpty()) {
+          terminalOutputs.put(terminalOutput.getKey(), kept);
+        }
+      }
+    }
+    s_logger.info("Reusing {} of {} nodes and resolving {} requirements for {}", new Object[] {nodes.size(), previousGraph.getSize(), missing.size(), previousGraph });
+    // Build the rest, reusing any copied node producing the same values
+    if (!missing.isEmpty()) {
+      builder.addTarget(missing);
+      final DependencyGraph subGraph = builder.getDependencyGraph();
+      subGraph.removeUnnecessaryValues();
+      for (DependencyNode node : subGraph.getDependencyNodes()) {
+        DependencyNode copy = null;
+        for (ValueSpecification output : node.getOutputValues()) {
+          if (!producers.containsKey(output)) {
+            if (copy == null) {
+              copy = copyNode(node);
+              nodes.add(copy);
+            }
+            copy.addOutputValue(output);
+            producers.put(output, copy);
+          }
+        }
+      }
+      for (Map.Entry<ValueSpecification, Set<ValueRequirement>> terminalOutput : subGraph.getTerminalOutputs().entrySet()) {
+        Set<ValueRequirement> terminalRequirements = terminalOutputs.get(terminalOutput.getKey());
+        if (terminalRequirements == null) {
+          terminalRequirements = new HashSet<ValueRequirement>();
+          terminalOutputs.put(terminalOutput.getKey(), terminalRequirements);
+        }
+        terminalRequirements.addAll(terminalOutput.getValue());
+      }
+    }
+    // Join the nodes by value specification
+    for (DependencyNode node : nodes) {
+      for (ValueSpecification input : node.getInputValues()) {
+        final DependencyNode inputNode = producers.get(input);
+        if (inputNode == null) {
+          s_logger.warn("No node produces {} after recompiling {}", input, previousGraph);
+          return null;
+        }
+        node.addInputNode(inputNode);
+      }
+    }
+    final DependencyGraph graph = new DependencyGraph(previousGraph.getCalculationConfigurationName());
+    for (DependencyNode node : nodes) {
+      graph.addDependencyNode(node);
+    }
+    graph.addTerminalOutputs(terminalOutputs);
+    graph.removeUnnecessaryValues();
+    return graph;
+  }
+
+  private static void discard(DependencyGraph graph, DependencyNode node, Set<DependencyNode> discarded) {
+    if (discarded.add(node)) {
+      for (DependencyNode dependentNode : node.getDependentNodes()) {
+        if (graph.containsNode(dependentNode)) {
+          discard(graph, dependentNode, discarded);
+        }
+      }
+    }
+  }
+
+  private static DependencyNode copyNode(DependencyNode node) {
+    final DependencyNode copy = new DependencyNode(node.getComputationTarget());
+    copy.setFunction(node.getFunction());
+    for (ValueSpecification input : node.getInputValues()) {
+      copy.addInputValue(input);
+    }
+    return copy;
+  }
+
   private static Map<String, DependencyGraph> processDependencyGraphs(ViewCompilationContext context) {
     // TODO: support one of two modes; sequential build of the graphs (below) or parallel build using the executor service from the compilation services
     // TODO: perhaps a heuristic to determine which is better, or a global setting
@@ -57,6 +57,16 @@ public final class ExecutionFlags {
     return this;
   }
   
+  /**
+   * Adds {@link ViewExecutionFlags#TRIGGER_CYCLE_ON_TARGET_CHANGED}.
+   * 
+   * @return this
+   */
+  public ExecutionFlags triggerOnTargetChanged() {
+    _flags.add(ViewExecutionFlags.TRIGGER_CYCLE_ON_TARGET_CHANGED);
+    return this;
+  }
+  
   /**
    * Adds {@link ViewExecutionFlags#RUN_AS_FAST_AS_POSSIBLE}.
    * 
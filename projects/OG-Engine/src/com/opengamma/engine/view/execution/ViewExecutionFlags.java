@@ -30,6 +30,12 @@ public enum ViewExecutionFlags {
    * cycle, as configured in the {@link ViewDefinition}.
    */
   TRIGGER_CYCLE_ON_TIME_ELAPSED,
+
+  /**
+   * Indicates that a computation cycle should be triggered whenever a position or security referenced by the view
+   * changes. Only the nodes on the changed targets, and those depending on them, are recalculated.
+   */
+  TRIGGER_CYCLE_ON_TARGET_CHANGED,
   
   /**
    * Indicates that the execution sequence should proceed as fast as possible, ignoring any minimum elapsed time
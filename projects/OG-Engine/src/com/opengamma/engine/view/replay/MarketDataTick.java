@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.replay;
+
+import javax.time.Instant;
+import javax.time.InstantProvider;
+
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A single recorded market data update.
+ */
+public final class MarketDataTick {
+
+  private final Instant _time;
+  private final ValueRequirement _requirement;
+  private final Object _value;
+
+  /**
+   * Creates a new tick.
+   * 
+   * @param time the time the value changed, not null
+   * @param requirement the market data requirement, not null
+   * @param value the new value, null if the value was removed
+   */
+  public MarketDataTick(final InstantProvider time, final ValueRequirement requirement, final Object value) {
+    ArgumentChecker.notNull(time, "time");
+    ArgumentChecker.notNull(requirement, "requirement");
+    _time = Instant.of(time);
+    _requirement = requirement;
+    _value = value;
+  }
+
+  public Instant getTime() {
+    return _time;
+  }
+
+  public ValueRequirement getRequirement() {
+    return _requirement;
+  }
+
+  public Object getValue() {
+    return _value;
+  }
+
+  @Override
+  public String toString() {
+    return "MarketDataTick[time=" + _time + ", requirement=" + _requirement + ", value=" + _value + "]";
+  }
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.replay;
+
+import com.opengamma.engine.view.calc.VirtualViewCycleTimeSource;
+import com.opengamma.engine.view.execution.MergingViewCycleExecutionSequence;
+import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Infinite sequence of cycles valued at the current virtual time.
+ */
+public class ReplayViewCycleExecutionSequence extends MergingViewCycleExecutionSequence {
+
+  private final VirtualViewCycleTimeSource _timeSource;
+
+  public ReplayViewCycleExecutionSequence(final VirtualViewCycleTimeSource timeSource) {
+    ArgumentChecker.notNull(timeSource, "timeSource");
+    _timeSource = timeSource;
+  }
+
+  @Override
+  public ViewCycleExecutionOptions getNext(final ViewCycleExecutionOptions defaultExecutionOptions) {
+    return merge(new ViewCycleExecutionOptions(_timeSource.getInstant()), defaultExecutionOptions);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return false;
+  }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.replay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.engine.marketdata.InMemoryLKVMarketDataProvider;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.engine.view.ViewProcessImpl;
+import com.opengamma.engine.view.calc.VirtualViewCycleTimeSource;
+import com.opengamma.engine.view.calc.stats.GraphExecutionStatistics;
+import com.opengamma.engine.view.calc.stats.TotallingGraphStatisticsGathererProvider;
+import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
+import com.opengamma.engine.view.listener.AbstractViewResultListener;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Drives a view process from a recorded market data stream under virtual time.
+ * <p>
+ * The ticks are applied to an {@link InMemoryLKVMarketDataProvider} in batches of equal time stamp. Between batches
+ * the virtual time is moved to each point at which the view's triggers would change state, so that time based cycles
+ * run as they would have done live, and the driver waits for any cycles to complete before applying the next batch.
+ * The replay therefore runs as fast as the engine can execute the cycles and the same cycles are executed, against
+ * the same data, each time.
+ */
+public class ViewProcessReplay {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(ViewProcessReplay.class);
+
+  private final ViewProcessImpl _viewProcess;
+  private final InMemoryLKVMarketDataProvider _marketData;
+  private final VirtualViewCycleTimeSource _timeSource;
+  private final TotallingGraphStatisticsGathererProvider.Statistics _statistics;
+
+  // Only accessed by the computation job, or the driver when the job is idle
+  private final List<ViewReplayCycle> _cycles = new ArrayList<ViewReplayCycle>();
+  private final Map<String, GraphExecutionStatistics> _previousStatistics = new HashMap<String, GraphExecutionStatistics>();
+  private int _failedCycles;
+
+  /**
+   * Creates a new replay.
+   *
+   * @param viewProcess the view process to drive, not null. It must not have been started, must be using the market
+   *        data provider and time source, and must have no other listeners
+   * @param marketData the market data provider to apply the ticks to, not null
+   * @param timeSource the virtual time source used by the view process, not null
+   * @param statistics the statistics gathered from the view process, not null
+   */
+  public ViewProcessReplay(final ViewProcessImpl viewProcess, final InMemoryLKVMarketDataProvider marketData, final VirtualViewCycleTimeSource timeSource,
+      final TotallingGraphStatisticsGathererProvider.Statistics statistics) {
+    ArgumentChecker.notNull(viewProcess, "viewProcess");
+    ArgumentChecker.notNull(marketData, "marketData");
+    ArgumentChecker.notNull(timeSource, "timeSource");
+    ArgumentChecker.notNull(statistics, "statistics");
+    _viewProcess = viewProcess;
+    _marketData = marketData;
+    _timeSource = timeSource;
+    _statistics = statistics;
+  }
+
+  public ViewProcessImpl getViewProcess() {
+    return _viewProcess;
+  }
+
+  /**
+   * Gets the number of cycles which failed to execute.
+   *
+   * @return the number of failed cycles
+   */
+  public int getFailedCycles() {
+    return _failedCycles;
+  }
+
+  private final class Listener extends AbstractViewResultListener {
+
+    @Override
+    public void cycleCompleted(final ViewComputationResultModel fullResult, final ViewDeltaResultModel deltaResult) {
+      final List<GraphExecutionStatistics> statistics = new ArrayList<GraphExecutionStatistics>();
+      for (GraphExecutionStatistics current : _statistics.getExecutionStatistics()) {
+        final GraphExecutionStatistics previous = _previousStatistics.put(current.getCalcConfigName(), current.snapshot());
+        final GraphExecutionStatistics cycle;
+        if (previous != null) {
+          cycle = previous;
+          cycle.delta(current);
+        } else {
+          cycle = current.snapshot();
+        }
+        statistics.add(cycle);
+      }
+      final ViewReplayCycle cycle = new ViewReplayCycle(fullResult.getValuationTime(), fullResult.getCalculationDuration(), statistics);
+      s_logger.info("Replayed cycle {}", cycle);
+      _cycles.add(cycle);
+    }
+
+    @Override
+    public void cycleExecutionFailed(final ViewCycleExecutionOptions executionOptions, final Exception exception) {
+      s_logger.warn("Cycle failed at {} - {}", executionOptions.getValuationTime(), exception.getMessage());
+      _failedCycles++;
+    }
+
+    @Override
+    public void processCompleted() {
+      _timeSource.stop();
+    }
+
+    @Override
+    public void processTerminated(final boolean executionInterrupted) {
+      _timeSource.stop();
+    }
+
+  }
+
+  /**
+   * Applies the batch of ticks starting with the given one.
+   *
+   * @param tick the first tick of the batch, not null
+   * @param ticks the remaining ticks, not null
+   * @return the first tick of the next batch, or null if there are no more
+   */
+  private MarketDataTick applyBatch(MarketDataTick tick, final Iterator<MarketDataTick> ticks) {
+    final Instant time = tick.getTime();
+    final Map<ValueRequirement, Object> values = new HashMap<ValueRequirement, Object>();
+    do {
+      values.put(tick.getRequirement(), tick.getValue());
+      if (!ticks.hasNext()) {
+        tick = null;
+        break;
+      }
+      tick = ticks.next();
+      if (tick.getTime().isBefore(time)) {
+        throw new IllegalArgumentException("Tick " + tick + " is out of order");
+      }
+    } while (tick.getTime().equals(time));
+    _marketData.addValues(values);
+    return tick;
+  }
+
+  /**
+   * Replays the ticks. The view process is started when the first batch has been applied and stopped when the cycles
+   * triggered by the last batch have completed.
+   *
+   * @param ticks the ticks in time order, not null
+   * @return the timings of each cycle executed, not null
+   */
+  public List<ViewReplayCycle> run(final Iterator<MarketDataTick> ticks) {
+    ArgumentChecker.notNull(ticks, "ticks");
+    if (!ticks.hasNext()) {
+      return new ArrayList<ViewReplayCycle>(_cycles);
+    }
+    MarketDataTick tick = ticks.next();
+    _timeSource.advanceTo(_timeSource.toNanos(tick.getTime()));
+    tick = applyBatch(tick, ticks);
+    final Listener listener = new Listener();
+    getViewProcess().attachListener(listener);
+    try {
+      while (tick != null) {
+        if (!_timeSource.awaitIdle()) {
+          s_logger.warn("View process {} stopped before the end of the replay", getViewProcess());
+          break;
+        }
+        final long tickNanos = _timeSource.toNanos(tick.getTime());
+        // Visit each point at which a trigger might fire before the tick
+        long wakeUpNanos = _timeSource.getWakeUpNanos();
+        while (wakeUpNanos < tickNanos) {
+          _timeSource.advanceTo(Math.max(wakeUpNanos, _timeSource.nanoTime()) + 1);
+          _timeSource.release();
+          if (!_timeSource.awaitIdle()) {
+            break;
+          }
+          wakeUpNanos = _timeSource.getWakeUpNanos();
+        }
+        _timeSource.advanceTo(tickNanos);
+        tick = applyBatch(tick, ticks);
+        _timeSource.release();
+      }
+      _timeSource.awaitIdle();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted during replay", e);
+    } finally {
+      _timeSource.stop();
+      getViewProcess().detachListener(listener);
+    }
+    return new ArrayList<ViewReplayCycle>(_cycles);
+  }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.replay;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.time.Duration;
+import javax.time.Instant;
+
+import com.opengamma.engine.view.calc.stats.GraphExecutionStatistics;
+
+/**
+ * The timings of a single cycle executed during a replay.
+ */
+public final class ViewReplayCycle {
+
+  private final Instant _valuationTime;
+  private final Duration _duration;
+  private final List<GraphExecutionStatistics> _statistics;
+
+  /**
+   * Creates a new instance.
+   * 
+   * @param valuationTime the virtual time of the cycle, not null
+   * @param duration the wall-clock duration of the cycle, not null
+   * @param statistics the graph execution statistics of each calculation configuration for this cycle alone, not null
+   */
+  public ViewReplayCycle(final Instant valuationTime, final Duration duration, final List<GraphExecutionStatistics> statistics) {
+    _valuationTime = valuationTime;
+    _duration = duration;
+    _statistics = Collections.unmodifiableList(statistics);
+  }
+
+  public Instant getValuationTime() {
+    return _valuationTime;
+  }
+
+  public Duration getDuration() {
+    return _duration;
+  }
+
+  public List<GraphExecutionStatistics> getStatistics() {
+    return _statistics;
+  }
+
+  /**
+   * Returns the total number of dependency graph nodes executed by the cycle.
+   * 
+   * @return the number of nodes
+   */
+  public long getExecutedNodes() {
+    long nodes = 0;
+    for (GraphExecutionStatistics statistics : _statistics) {
+      nodes += statistics.getExecutedNodes();
+    }
+    return nodes;
+  }
+
+  /**
+   * Returns the total time spent executing the cycle's dependency graphs.
+   * 
+   * @return the time in nanoseconds, as reported by the graph executor
+   */
+  public long getExecutionTime() {
+    long time = 0;
+    for (GraphExecutionStatistics statistics : _statistics) {
+      time += statistics.getExecutionTime();
+    }
+    return time;
+  }
+
+  @Override
+  public String toString() {
+    return "ViewReplayCycle[valuationTime=" + _valuationTime + ", duration=" + _duration + ", executedNodes=" + getExecutedNodes()
+        + ", executionTime=" + getExecutionTime() + "]";
+  }
+
+}
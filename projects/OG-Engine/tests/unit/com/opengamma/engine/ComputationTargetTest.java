@@ -8,6 +8,9 @@ package com.opengamma.engine;
 import static org.testng.AssertJUnit.assertEquals;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 
 import org.testng.annotations.Test;
 
@@ -19,6 +22,7 @@ import com.opengamma.core.position.impl.SimplePosition;
 import com.opengamma.core.security.Security;
 import com.opengamma.core.security.impl.SimpleSecurity;
 import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 
 /**
@@ -150,6 +154,23 @@ public class ComputationTargetTest {
     assertEquals(true, c.equals(c));
   }
 
+  //-------------------------------------------------------------------------
+  public void test_getDependentObjectIds() {
+    final SimplePosition position = new SimplePosition(UniqueId.of("Test", "POS", "1"), new BigDecimal(1), SECURITY);
+    final SimplePortfolioNode node = new SimplePortfolioNode(UniqueId.of("Test", "NODE", "1"), "Name");
+    node.addPosition(position);
+    final ObjectId positionId = position.getUniqueId().getObjectId();
+    final ObjectId securityId = SECURITY.getUniqueId().getObjectId();
+    final ObjectId nodeId = node.getUniqueId().getObjectId();
+    assertEquals(new HashSet<ObjectId>(Arrays.asList(positionId, securityId)), new ComputationTarget(ComputationTargetType.POSITION, position).getDependentObjectIds());
+    final ComputationTarget nodeTarget = new ComputationTarget(ComputationTargetType.PORTFOLIO_NODE, node);
+    assertEquals(new HashSet<ObjectId>(Arrays.asList(nodeId, positionId, securityId)), nodeTarget.getDependentObjectIds());
+    for (ObjectId objectId : nodeTarget.getDependentObjectIds()) {
+      assertEquals(true, nodeTarget.isDependentOn(Collections.singleton(objectId)));
+    }
+    assertEquals(Collections.singleton(securityId), new ComputationTarget(ComputationTargetType.SECURITY, SECURITY).getDependentObjectIds());
+  }
+
   public void test_equals_other() {
     ComputationTarget a = new ComputationTarget(ComputationTargetType.POSITION, POSITION);
     assertEquals(false, a.equals(null));
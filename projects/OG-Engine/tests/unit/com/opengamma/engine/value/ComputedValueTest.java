@@ -96,4 +96,27 @@ public class ComputedValueTest {
     cycleComputedValue(new ComputedValue(createValueSpecification(), new ComplexValue(1d, 2d)));
   }
 
+  public void testDeferred() {
+    final int[] decodes = new int[1];
+    final ComputedValue value = ComputedValue.deferred(createValueSpecification(), new DeferredValue() {
+
+      @Override
+      public Object getValue() {
+        decodes[0]++;
+        return 3.1412d;
+      }
+
+      @Override
+      public boolean isSameEncoding(final DeferredValue other) {
+        return false;
+      }
+
+    });
+    assertEquals(0, decodes[0]);
+    assertEquals(new ComputedValue(createValueSpecification(), 3.1412d), value);
+    assertEquals(3.1412d, value.getValue());
+    assertEquals(1, decodes[0]);
+    cycleComputedValue(value);
+  }
+
 }
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.value;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.test.MockFunction;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Memory benchmark of the {@link ValueProperties} held by a large dependency graph.
+ * <p>
+ * Each node produces a value with typical analytic properties and consumes the output of one of a small number of
+ * shared curve nodes. The properties are built independently for every node, as they would be by the functions during
+ * graph construction. The full benchmark is disabled by default; run {@link #benchmark} by hand to compare the heap
+ * used by the graph with the heap used by the same properties held as hash maps of hash sets.
+ */
+@Test
+public class ValuePropertiesMemoryBenchmarkTest {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(ValuePropertiesMemoryBenchmarkTest.class);
+
+  private static final String[] CURRENCIES = new String[] {"USD", "EUR", "GBP", "JPY", "CHF" };
+
+  private static ValueProperties curveProperties(final String currency) {
+    return ValueProperties.with(ValuePropertyNames.FUNCTION, "CurveFunction").with(ValuePropertyNames.CURVE, "Discounting", "Forward")
+        .with(ValuePropertyNames.CURVE_CALCULATION_METHOD, "ParRate").with(ValuePropertyNames.CURRENCY, currency).get();
+  }
+
+  private static ValueProperties valueProperties(final int index) {
+    final String currency = CURRENCIES[index % CURRENCIES.length];
+    // New strings, as if they had been read from a message or configuration
+    return ValueProperties.with(ValuePropertyNames.FUNCTION, new String("ValueFunction")).with(ValuePropertyNames.CURVE, new String("Discounting"), new String("Forward"))
+        .with(ValuePropertyNames.CURVE_CALCULATION_METHOD, new String("ParRate")).with(ValuePropertyNames.CALCULATION_METHOD, new String("Analytic"))
+        .with(ValuePropertyNames.CURRENCY, new String(currency)).get();
+  }
+
+  private static DependencyGraph createGraph(final int nodes) {
+    final DependencyGraph graph = new DependencyGraph("Default");
+    final MockFunction function = MockFunction.getMockFunction(new ComputationTarget("Mock"), "Mock");
+    final DependencyNode[] curves = new DependencyNode[CURRENCIES.length];
+    for (int i = 0; i < CURRENCIES.length; i++) {
+      curves[i] = new DependencyNode(new ComputationTarget(ComputationTargetType.PRIMITIVE, UniqueId.of("Curve", CURRENCIES[i])));
+      curves[i].setFunction(function);
+      curves[i].addOutputValue(new ValueSpecification("Curve", curves[i].getComputationTarget().toSpecification(), curveProperties(CURRENCIES[i])));
+      graph.addDependencyNode(curves[i]);
+    }
+    for (int i = 0; i < nodes; i++) {
+      final DependencyNode node = new DependencyNode(new ComputationTarget(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", Integer.toString(i))));
+      node.setFunction(function);
+      final DependencyNode curve = curves[i % curves.length];
+      node.addInputNode(curve);
+      node.addInputValue(curve.getOutputValues().iterator().next());
+      node.addOutputValue(new ValueSpecification("Value", new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, node.getComputationTarget().getUniqueId()),
+          valueProperties(i)));
+      graph.addDependencyNode(node);
+    }
+    return graph;
+  }
+
+  private static Map<ValueProperties, Object> distinctProperties(final DependencyGraph graph) {
+    final Map<ValueProperties, Object> distinct = new IdentityHashMap<ValueProperties, Object>();
+    for (ValueSpecification output : graph.getOutputSpecifications()) {
+      distinct.put(output.getProperties(), output);
+    }
+    return distinct;
+  }
+
+  public void testGraphSharesProperties() {
+    final DependencyGraph graph = createGraph(1000);
+    assertEquals(1000 + CURRENCIES.length, graph.getOutputSpecifications().size());
+    // One instance for each currency's curve and one for each currency's values
+    assertEquals(2 * CURRENCIES.length, distinctProperties(graph).size());
+    assertSame(valueProperties(0), valueProperties(CURRENCIES.length));
+    assertSame(valueProperties(0).getValues(ValuePropertyNames.CURVE), curveProperties("USD").getValues(ValuePropertyNames.CURVE));
+  }
+
+  private static long usedMemory() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static Map<String, Set<String>> toHashMap(final ValueProperties properties) {
+    final Map<String, Set<String>> map = new HashMap<String, Set<String>>();
+    for (String property : properties.getProperties()) {
+      map.put(new String(property), Collections.unmodifiableSet(new HashSet<String>(properties.getValues(property))));
+    }
+    return map;
+  }
+
+  @Test(enabled = false)
+  public void benchmark() {
+    final int nodes = 500000;
+    long before = usedMemory();
+    final DependencyGraph graph = createGraph(nodes);
+    final long graphMemory = usedMemory() - before;
+    s_logger.info("Graph of {} nodes uses {} bytes, {} distinct property sets", new Object[] {graph.getSize(), graphMemory, distinctProperties(graph).size() });
+    // The same properties held independently by each specification as they would be without interning
+    before = usedMemory();
+    final List<Map<String, Set<String>>> hashMaps = new ArrayList<Map<String, Set<String>>>(nodes);
+    for (ValueSpecification output : graph.getOutputSpecifications()) {
+      hashMaps.add(toHashMap(output.getProperties()));
+    }
+    final long hashMapMemory = usedMemory() - before;
+    s_logger.info("Hash map properties for {} specifications use {} bytes, {} bytes per specification", new Object[] {hashMaps.size(), hashMapMemory, hashMapMemory / hashMaps.size() });
+    s_logger.info("Graph uses {} bytes per node", graphMemory / graph.getSize());
+  }
+
+}
@@ -12,8 +12,13 @@ import static org.testng.AssertJUnit.assertNull;
 import static org.testng.AssertJUnit.assertSame;
 import static org.testng.AssertJUnit.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 
 import org.testng.annotations.Test;
 
@@ -316,6 +321,32 @@ public class ValuePropertiesTest {
     ValueProperties.parse("ValueName=[");
   }
   
+  public void testCompactRepresentation() {
+    final ValueProperties props = ValueProperties.with("B", "3", "1", "2").with("A", "1").withAny("C").withOptional("C").get();
+    assertEquals(new HashSet<String>(Arrays.asList("1", "2", "3")), props.getValues("B"));
+    assertEquals(new HashSet<String>(Arrays.asList("1", "2", "3")).hashCode(), props.getValues("B").hashCode());
+    assertEquals(new HashSet<String>(Arrays.asList("A", "B", "C")), props.getProperties());
+    assertTrue(props.getValues("B").contains(new String("2")));
+    assertFalse(props.getValues("B").contains("4"));
+    assertSame(props, ValueProperties.withAny("C").withOptional("C").with("A", new String("1")).with("B", "1", "2", "3").get());
+    assertSame(props.getValues("B"), ValueProperties.with("X", "2", "3", "1").get().getValues("X"));
+  }
+
+  public void testIntersectInfiniteIsCanonical() {
+    final ValueProperties props = ValueProperties.with("A", "1").withAny("C").withOptional("C").get();
+    assertSame(ValueProperties.with("A", "1").withAny("C").get(), ValueProperties.all().intersect(props));
+  }
+
+  public void testSerializationPreservesInstance() throws Exception {
+    final ValueProperties props = ValueProperties.with("A", "1", "2").with("B", "3").get();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(props);
+    out.close();
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertSame(props, in.readObject());
+  }
+
   private static void parseCycle(ValueProperties original) {
     String vpString = original.toString();
     ValueProperties parsed = ValueProperties.parse(vpString);
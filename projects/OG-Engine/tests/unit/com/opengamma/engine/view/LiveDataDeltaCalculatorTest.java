@@ -6,7 +6,10 @@
 package com.opengamma.engine.view;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
 
+import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.Set;
 
@@ -15,6 +18,8 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.Sets;
+import com.opengamma.core.position.impl.SimplePosition;
+import com.opengamma.core.security.impl.SimpleSecurity;
 import com.opengamma.engine.ComputationTarget;
 import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.ComputationTargetType;
@@ -22,12 +27,15 @@ import com.opengamma.engine.depgraph.DependencyGraph;
 import com.opengamma.engine.depgraph.DependencyNode;
 import com.opengamma.engine.function.FunctionCompilationContext;
 import com.opengamma.engine.function.MarketDataSourcingFunction;
+import com.opengamma.engine.test.MockFunction;
 import com.opengamma.engine.value.ComputedValue;
 import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.cache.InMemoryViewComputationCacheSource;
 import com.opengamma.engine.view.cache.ViewComputationCache;
 import com.opengamma.engine.view.calc.LiveDataDeltaCalculator;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 
 /**
@@ -38,7 +46,7 @@ public class LiveDataDeltaCalculatorTest {
   
   FunctionCompilationContext _context = new FunctionCompilationContext();
   
-  DependencyGraph _graph = getTestGraph();
+  DependencyGraph _graph;
   DependencyNode _node0;
   DependencyNode _node1;
   DependencyNode _node2;
@@ -50,6 +58,7 @@ public class LiveDataDeltaCalculatorTest {
   
   @BeforeMethod
   public void setUp() {
+    _graph = getTestGraph();
     final InMemoryViewComputationCacheSource source = new InMemoryViewComputationCacheSource (FudgeContext.GLOBAL_DEFAULT);
     _cache = source.getCache(UniqueId.of("Test", "ViewCycle", "1"), "Default"); 
     _previousCache = source.getCache(UniqueId.of("Test", "ViewCycle", "0"), "Default");
@@ -77,6 +86,7 @@ public class LiveDataDeltaCalculatorTest {
     
     DependencyNode node = new DependencyNode(target);
     node.setFunction(function);
+    node.addOutputValue(function.getMarketDataRequirement().getSecond());
     node.addInputNodes(inputNodes);
     return node;
   }
@@ -97,11 +107,15 @@ public class LiveDataDeltaCalculatorTest {
    *              
    */
   private DependencyGraph getTestGraph() {
+    return getTestGraph("Node2");
+  }
+
+  private DependencyGraph getTestGraph(String node2Name) {
     DependencyGraph graph = new DependencyGraph("test");
     
     _node3 = createNode("Node3", Collections.<DependencyNode>emptySet());
     _node1 = createNode("Node1", Sets.newHashSet(_node3));
-    _node2 = createNode("Node2", Sets.newHashSet(_node3));
+    _node2 = createNode(node2Name, Sets.newHashSet(_node3));
     _node0 = createNode("Node0", Sets.newHashSet(_node1, _node2));
 
     graph.addDependencyNode(_node0);
@@ -172,4 +186,75 @@ public class LiveDataDeltaCalculatorTest {
     assertEquals(_graph.getDependencyNodes(), _deltaCalculator.getChangedNodes());
   }
 
+  public void invalidatedTarget() {
+    put(_cache, _node3, 6.0);
+    put(_previousCache, _node3, 6.0);
+
+    final LiveDataDeltaCalculator deltaCalculator = new LiveDataDeltaCalculator(_graph, _cache, _previousCache,
+        Collections.singleton(_node2.getComputationTarget().getUniqueId().getObjectId()));
+    deltaCalculator.computeDelta();
+
+    assertEquals(Sets.newHashSet(_node1, _node3), deltaCalculator.getUnchangedNodes());
+    assertEquals(Sets.newHashSet(_node0, _node2), deltaCalculator.getChangedNodes());
+  }
+
+  public void invalidatedTargetAndChange() {
+    put(_cache, _node1, 6.0);
+    put(_previousCache, _node1, 7.0);
+
+    final LiveDataDeltaCalculator deltaCalculator = new LiveDataDeltaCalculator(_graph, _cache, _previousCache,
+        Collections.singleton(_node2.getComputationTarget().getUniqueId().getObjectId()));
+    deltaCalculator.computeDelta();
+
+    assertEquals(Sets.newHashSet(_node3), deltaCalculator.getUnchangedNodes());
+    assertEquals(Sets.newHashSet(_node0, _node1, _node2), deltaCalculator.getChangedNodes());
+  }
+
+  public void invalidatedSecurityOfPosition() {
+    final SimpleSecurity security = new SimpleSecurity(UniqueId.of("Sec", "1"), ExternalIdBundle.EMPTY, "EQUITY", "Test");
+    final ComputationTarget target = new ComputationTarget(ComputationTargetType.POSITION, new SimplePosition(UniqueId.of("Pos", "1"), BigDecimal.ONE, security));
+    final DependencyNode positionNode = new DependencyNode(target);
+    positionNode.setFunction(new MockFunction(target));
+    positionNode.addInputNode(_node0);
+    _graph.addDependencyNode(positionNode);
+
+    final LiveDataDeltaCalculator deltaCalculator = new LiveDataDeltaCalculator(_graph, _cache, _previousCache,
+        Collections.singleton(security.getUniqueId().getObjectId()));
+    deltaCalculator.computeDelta();
+
+    assertEquals(Sets.newHashSet(_node0, _node1, _node2, _node3), deltaCalculator.getUnchangedNodes());
+    assertEquals(Sets.newHashSet(positionNode), deltaCalculator.getChangedNodes());
+  }
+
+  public void recompiledGraph() {
+    put(_cache, _node1, 6.0);
+    put(_previousCache, _node1, 7.0);
+    final DependencyGraph previousGraph = _graph;
+    final DependencyNode previousNode2 = _node2;
+    final DependencyNode previousNode3 = _node3;
+    final DependencyGraph graph = getTestGraph();
+
+    final LiveDataDeltaCalculator deltaCalculator = new LiveDataDeltaCalculator(graph, _cache, previousGraph, _previousCache,
+        Collections.<ObjectId>emptySet());
+    deltaCalculator.computeDelta();
+
+    assertEquals(Sets.newHashSet(_node2, _node3), deltaCalculator.getUnchangedNodes());
+    assertEquals(Sets.newHashSet(_node0, _node1), deltaCalculator.getChangedNodes());
+    assertSame(previousNode2, deltaCalculator.getPreviousNode(_node2));
+    assertSame(previousNode3, deltaCalculator.getPreviousNode(_node3));
+    assertNull(deltaCalculator.getPreviousNode(_node1));
+  }
+
+  public void recompiledGraphWithNewNode() {
+    final DependencyGraph previousGraph = _graph;
+    final DependencyGraph graph = getTestGraph("Node4");
+
+    final LiveDataDeltaCalculator deltaCalculator = new LiveDataDeltaCalculator(graph, _cache, previousGraph, _previousCache,
+        Collections.<ObjectId>emptySet());
+    deltaCalculator.computeDelta();
+
+    assertEquals(Sets.newHashSet(_node1, _node3), deltaCalculator.getUnchangedNodes());
+    assertEquals(Sets.newHashSet(_node0, _node2), deltaCalculator.getChangedNodes());
+  }
+
 }
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.opengamma.OpenGammaRuntimeException;
+
+/**
+ * Tests the {@link CoalescingRequests} class.
+ */
+@Test
+public class CoalescingRequestsTest {
+
+  private static class Requests extends CoalescingRequests<Integer, String> {
+
+    private final List<List<Integer>> _requested = new CopyOnWriteArrayList<List<Integer>>();
+    private final List<SettableFuture<Map<Integer, String>>> _responses = new CopyOnWriteArrayList<SettableFuture<Map<Integer, String>>>();
+    private final long _timeout;
+
+    public Requests(final long timeout) {
+      _timeout = timeout;
+    }
+
+    @Override
+    protected ListenableFuture<Map<Integer, String>> request(final List<Integer> keys) {
+      _requested.add(new ArrayList<Integer>(keys));
+      final SettableFuture<Map<Integer, String>> response = SettableFuture.create();
+      _responses.add(response);
+      return response;
+    }
+
+    @Override
+    protected long getTimeoutMillis() {
+      return _timeout;
+    }
+
+    public void respond(final int index) {
+      final Map<Integer, String> values = new HashMap<Integer, String>();
+      for (Integer key : _requested.get(index)) {
+        values.put(key, "V" + key);
+      }
+      _responses.get(index).set(values);
+    }
+
+  }
+
+  public void testCoalescedRequests() throws Exception {
+    final Requests requests = new Requests(1000);
+    final Map<Integer, ListenableFuture<String>> first = requests.getAsync(Arrays.asList(1, 2, 3));
+    final Map<Integer, ListenableFuture<String>> second = requests.getAsync(Arrays.asList(2, 3, 4));
+    assertEquals(2, requests._requested.size());
+    assertEquals(3, requests._requested.get(0).size());
+    assertEquals(Arrays.asList(4), requests._requested.get(1));
+    assertTrue(first.get(2) == second.get(2));
+    requests.respond(0);
+    requests.respond(1);
+    assertEquals("V1", first.get(1).get());
+    assertEquals("V2", second.get(2).get());
+    assertEquals("V4", second.get(4).get());
+    // Completed keys are requested again
+    requests.getAsync(Arrays.asList(1));
+    assertEquals(3, requests._requested.size());
+  }
+
+  public void testTimeoutReleasesKey() {
+    final Requests requests = new Requests(10);
+    try {
+      requests.get(1);
+      fail();
+    } catch (OpenGammaRuntimeException e) {
+      // Expected
+    }
+    assertTrue(requests._responses.get(0).isCancelled());
+    requests.getAsync(Arrays.asList(1));
+    assertEquals(2, requests._requested.size());
+  }
+
+  public void testTimeoutFailsCoalescedKeys() throws Exception {
+    final Requests requests = new Requests(10);
+    final ListenableFuture<String> other = requests.getAsync(Arrays.asList(1, 2)).get(2);
+    try {
+      requests.get(1);
+      fail();
+    } catch (OpenGammaRuntimeException e) {
+      // Expected
+    }
+    assertTrue(other.isDone());
+    try {
+      other.get();
+      fail();
+    } catch (ExecutionException e) {
+      // Expected
+    }
+    requests.getAsync(Arrays.asList(2));
+    assertEquals(2, requests._requested.size());
+  }
+
+  public void testFailurePropagated() throws Exception {
+    final Requests requests = new Requests(1000);
+    final ListenableFuture<String> first = requests.getAsync(Arrays.asList(1)).get(1);
+    final ListenableFuture<String> second = requests.getAsync(Arrays.asList(1)).get(1);
+    assertEquals(1, requests._requested.size());
+    requests._responses.get(0).setException(new IllegalStateException());
+    for (ListenableFuture<String> future : Arrays.asList(first, second)) {
+      try {
+        future.get();
+        fail();
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+    }
+    // The failed key is requested again
+    requests.getAsync(Arrays.asList(1));
+    assertEquals(2, requests._requested.size());
+  }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests the {@link ConcurrentIdentifierMap} class.
+ */
+@Test
+public class ConcurrentIdentifierMapTest {
+
+  private static ValueSpecification spec(final int i) {
+    return new ValueSpecification(new ValueRequirement("Value" + (i % 10), new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE,
+        UniqueId.of("Test", Integer.toString(i)))), "Mock");
+  }
+
+  public void testSingleLookup() {
+    final ConcurrentIdentifierMap map = new ConcurrentIdentifierMap(4);
+    final Set<Long> identifiers = new HashSet<Long>();
+    for (int i = 0; i < 100; i++) {
+      final long identifier = map.getIdentifier(spec(i));
+      assertFalse(identifier == 0);
+      identifiers.add(identifier);
+      assertEquals(identifier, map.getIdentifier(spec(i)));
+      assertEquals(spec(i), map.getValueSpecification(identifier));
+    }
+    assertEquals(100, identifiers.size());
+    assertNull(map.getValueSpecification(0));
+    assertNull(map.getValueSpecification(-1));
+    assertNull(map.getValueSpecification(Long.MAX_VALUE));
+  }
+
+  public void testBulkLookup() {
+    final ConcurrentIdentifierMap map = new ConcurrentIdentifierMap();
+    final List<ValueSpecification> specs = new ArrayList<ValueSpecification>();
+    for (int i = 0; i < 100; i++) {
+      specs.add(spec(i));
+    }
+    final long first = map.getIdentifier(specs.get(0));
+    final Map<ValueSpecification, Long> identifiers = map.getIdentifiers(specs);
+    assertEquals(100, identifiers.size());
+    assertEquals(first, (long) identifiers.get(specs.get(0)));
+    final Map<Long, ValueSpecification> specifications = map.getValueSpecifications(identifiers.values());
+    assertEquals(100, specifications.size());
+    for (Map.Entry<ValueSpecification, Long> identifier : identifiers.entrySet()) {
+      assertEquals(identifier.getKey(), specifications.get(identifier.getValue()));
+    }
+    final long[] identifierArray = AbstractIdentifierMap.getIdentifierArray(map, specs);
+    for (int i = 0; i < specs.size(); i++) {
+      assertEquals((long) identifiers.get(specs.get(i)), identifierArray[i]);
+    }
+  }
+
+  public void testConcurrentAllocation() throws Exception {
+    final ConcurrentIdentifierMap map = new ConcurrentIdentifierMap(8);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(new Callable<long[]>() {
+          @Override
+          public long[] call() {
+            final long[] identifiers = new long[1000];
+            for (int i = 0; i < identifiers.length; i++) {
+              identifiers[i] = map.getIdentifier(spec(i));
+            }
+            return identifiers;
+          }
+        }));
+      }
+      final long[] expected = futures.get(0).get();
+      for (Future<long[]> future : futures) {
+        final long[] identifiers = future.get();
+        for (int i = 0; i < identifiers.length; i++) {
+          assertEquals(expected[i], identifiers[i]);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
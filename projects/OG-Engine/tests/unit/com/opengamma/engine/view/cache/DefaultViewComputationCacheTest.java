@@ -6,20 +6,27 @@
 package com.opengamma.engine.view.cache;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.DeferredValue;
 import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.util.tuple.Pair;
@@ -134,6 +141,82 @@ public class DefaultViewComputationCacheTest {
     assertPutGetCycle(list, 104, CacheSelectHint.allPrivate());
   }
   
+  private static final class BeanCodec extends AbstractBinaryValueCodec<Bean> {
+
+    @Override
+    public int getEncodedSize(final Bean value) {
+      if (Double.isNaN(value.getFoo())) {
+        return -1;
+      }
+      return getDoublesSize(new double[2]) + getStringSize("Bean");
+    }
+
+    @Override
+    public void encode(final Bean value, final ByteBuffer buffer) {
+      putDoubles(buffer, new double[] {value.getFoo(), value.getBar() });
+      putString(buffer, "Bean");
+    }
+
+    @Override
+    public Bean decode(final ByteBuffer buffer) {
+      final double[] values = getDoubles(buffer);
+      assertEquals("Bean", getString(buffer));
+      final Bean bean = new Bean();
+      bean.setFoo(values[0]);
+      bean.setBar(values[1]);
+      return bean;
+    }
+
+  }
+
+  private ValueSpecification putBean(final Bean bean) {
+    final ValueSpecification valueSpec = new ValueSpecification(new ValueRequirement("foo", new ComputationTargetSpecification(null)), "mockFunctionId");
+    _viewComputationCache.putSharedValue(new ComputedValue(valueSpec, bean));
+    return valueSpec;
+  }
+
+  private Object getEncodedField(final ValueSpecification valueSpec) {
+    final FudgeMsg data = _viewComputationCache.getSharedDataStore().get(_viewComputationCache.getIdentifierMap().getIdentifier(valueSpec));
+    return data.getValue(-2);
+  }
+
+  public void testPutGetCycle_beanCodec() {
+    final BinaryValueCodecRegistry codecs = new BinaryValueCodecRegistry();
+    codecs.register(1, Bean.class, new BeanCodec());
+    _viewComputationCache.setValueCodecs(codecs);
+    final Bean bean = new Bean();
+    bean.setFoo(42.0);
+    bean.setBar(-1.0);
+    final ValueSpecification valueSpec = putBean(bean);
+    assertTrue(getEncodedField(valueSpec) instanceof byte[]);
+    assertEquals(bean, _viewComputationCache.getValue(valueSpec));
+    assertEquals(bean, _viewComputationCache.getValues(Collections.singleton(valueSpec)).iterator().next().getSecond());
+  }
+
+  public void testPutGetCycle_beanCodecDeclined() {
+    final BinaryValueCodecRegistry codecs = new BinaryValueCodecRegistry();
+    codecs.register(1, Bean.class, new BeanCodec());
+    _viewComputationCache.setValueCodecs(codecs);
+    final Bean bean = new Bean();
+    bean.setFoo(Double.NaN);
+    bean.setBar(-1.0);
+    final ValueSpecification valueSpec = putBean(bean);
+    assertNull(getEncodedField(valueSpec));
+    final Bean value = (Bean) _viewComputationCache.getValue(valueSpec);
+    assertTrue(Double.isNaN(value.getFoo()));
+    assertEquals(-1.0, value.getBar(), 0.0);
+  }
+
+  @Test(expectedExceptions = OpenGammaRuntimeException.class)
+  public void testMissingCodec() {
+    final BinaryValueCodecRegistry codecs = new BinaryValueCodecRegistry();
+    codecs.register(1, Bean.class, new BeanCodec());
+    _viewComputationCache.setValueCodecs(codecs);
+    final ValueSpecification valueSpec = putBean(new Bean());
+    _viewComputationCache.setValueCodecs(new BinaryValueCodecRegistry());
+    _viewComputationCache.getValue(valueSpec);
+  }
+
   private void assertPutValues (int type, final CacheSelectHint correctHint, final CacheSelectHint incorrectHint) {
     final ValueSpecification valueSpecFoo = new ValueSpecification(new ValueRequirement("foo", new ComputationTargetSpecification(null)), "mockFunctionId");
     final ValueSpecification valueSpecBar = new ValueSpecification(new ValueRequirement("bar", new ComputationTargetSpecification(null)), "mockFunctionId");
@@ -218,4 +301,33 @@ public class DefaultViewComputationCacheTest {
     assertPutValues (2, CacheSelectHint.sharedValues(Arrays.asList (valueSpecFoo)), CacheSelectHint.privateValues(Arrays.asList(valueSpecFoo)));
   }
 
+  public void testDeferredValues() {
+    final ValueSpecification valueSpecFoo = new ValueSpecification(new ValueRequirement("foo", new ComputationTargetSpecification(null)), "mockFunctionId");
+    final ValueSpecification valueSpecBar = new ValueSpecification(new ValueRequirement("bar", new ComputationTargetSpecification(null)), "mockFunctionId");
+    final ValueSpecification valueSpecMissing = new ValueSpecification(new ValueRequirement("missing", new ComputationTargetSpecification(null)), "mockFunctionId");
+    _viewComputationCache.putSharedValues(Arrays.asList(new ComputedValue(valueSpecFoo, "Foo"), new ComputedValue(valueSpecBar, 42.0)));
+    final Collection<Pair<ValueSpecification, DeferredValue>> values = _viewComputationCache.getDeferredValues(Arrays.asList(valueSpecFoo, valueSpecBar, valueSpecMissing),
+        CacheSelectHint.allShared());
+    assertEquals(2, values.size());
+    DeferredValue foo = null;
+    for (Pair<ValueSpecification, DeferredValue> value : values) {
+      if (value.getFirst().equals(valueSpecFoo)) {
+        foo = value.getSecond();
+        assertEquals("Foo", ComputedValue.deferred(valueSpecFoo, foo).getValue());
+      } else {
+        assertEquals(valueSpecBar, value.getFirst());
+        assertEquals(42.0, ComputedValue.deferred(valueSpecBar, value.getSecond()).getValue());
+        assertFalse(value.getSecond().isSameEncoding(foo));
+      }
+    }
+    // The deferred values are independent of the cache
+    _viewComputationCache.putSharedValue(new ComputedValue(valueSpecFoo, "Foo2"));
+    assertEquals("Foo", foo.getValue());
+    final DeferredValue foo2 = _viewComputationCache.getDeferredValues(Collections.singleton(valueSpecFoo), CacheSelectHint.allShared()).iterator().next().getSecond();
+    assertFalse(foo2.isSameEncoding(foo));
+    _viewComputationCache.putSharedValue(new ComputedValue(valueSpecFoo, "Foo"));
+    final DeferredValue foo3 = _viewComputationCache.getDeferredValues(Collections.singleton(valueSpecFoo), CacheSelectHint.allShared()).iterator().next().getSecond();
+    assertTrue(foo3.isSameEncoding(foo));
+  }
+
 }
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link OffHeapBinaryDataStore} class.
+ */
+@Test
+public class OffHeapBinaryDataStoreTest {
+
+  private static byte[] randomBytes(final Random random, final int length) {
+    final byte[] data = new byte[length];
+    random.nextBytes(data);
+    return data;
+  }
+
+  public void testPutGet() {
+    final OffHeapBinaryDataStoreFactory factory = new OffHeapBinaryDataStoreFactory(1024);
+    final OffHeapBinaryDataStore store = (OffHeapBinaryDataStore) factory.createDataStore(null);
+    final Random random = new Random(1L);
+    final Map<Long, byte[]> expected = new HashMap<Long, byte[]>();
+    for (long i = 0; i < 1000; i++) {
+      final byte[] data = randomBytes(random, random.nextInt(200));
+      expected.put(i, data);
+      store.put(i, data);
+    }
+    assertEquals(1000, store.size());
+    for (Map.Entry<Long, byte[]> entry : expected.entrySet()) {
+      assertTrue(Arrays.equals(entry.getValue(), store.get(entry.getKey())));
+    }
+    assertNull(store.get(1000L));
+    final Map<Long, byte[]> result = store.get(Arrays.asList(1L, 2L, 1000L));
+    assertEquals(2, result.size());
+    assertTrue(Arrays.equals(expected.get(2L), result.get(2L)));
+  }
+
+  public void testBulkPut() {
+    final OffHeapBinaryDataStoreFactory factory = new OffHeapBinaryDataStoreFactory(1024);
+    final BinaryDataStore store = factory.createDataStore(null);
+    final Random random = new Random(2L);
+    final Map<Long, byte[]> expected = new HashMap<Long, byte[]>();
+    for (long i = 0; i < 100; i++) {
+      expected.put(i, randomBytes(random, random.nextInt(100)));
+    }
+    store.put(expected);
+    final Map<Long, byte[]> result = store.get(expected.keySet());
+    assertEquals(expected.size(), result.size());
+    for (Map.Entry<Long, byte[]> entry : expected.entrySet()) {
+      assertTrue(Arrays.equals(entry.getValue(), result.get(entry.getKey())));
+    }
+  }
+
+  public void testOversizedValue() {
+    final OffHeapBinaryDataStoreFactory factory = new OffHeapBinaryDataStoreFactory(64);
+    final BinaryDataStore store = factory.createDataStore(null);
+    final byte[] large = randomBytes(new Random(3L), 1000);
+    store.put(1L, new byte[] {1, 2, 3 });
+    store.put(2L, large);
+    store.put(3L, new byte[] {4, 5, 6 });
+    assertTrue(Arrays.equals(new byte[] {1, 2, 3 }, store.get(1L)));
+    assertTrue(Arrays.equals(large, store.get(2L)));
+    assertTrue(Arrays.equals(new byte[] {4, 5, 6 }, store.get(3L)));
+    store.delete();
+    // Only the standard sized segments are pooled
+    assertEquals(2, factory.getPooledSegments());
+  }
+
+  public void testDeleteReusesSegments() {
+    final OffHeapBinaryDataStoreFactory factory = new OffHeapBinaryDataStoreFactory(256);
+    factory.setMaxPooledSegments(4);
+    final OffHeapBinaryDataStore store1 = (OffHeapBinaryDataStore) factory.createDataStore(null);
+    for (long i = 0; i < 100; i++) {
+      store1.put(i, new byte[60]);
+    }
+    assertTrue(store1.getAllocatedBytes() > 4 * 256);
+    store1.delete();
+    assertEquals(0, store1.getAllocatedBytes());
+    assertNull(store1.get(0L));
+    assertEquals(4, factory.getPooledSegments());
+    final OffHeapBinaryDataStore store2 = (OffHeapBinaryDataStore) factory.createDataStore(null);
+    store2.put(0L, new byte[] {42 });
+    assertEquals(3, factory.getPooledSegments());
+    assertTrue(Arrays.equals(new byte[] {42 }, store2.get(0L)));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testPutAfterDelete() {
+    final BinaryDataStore store = new OffHeapBinaryDataStoreFactory(256).createDataStore(null);
+    store.delete();
+    store.put(0L, new byte[1]);
+  }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.UniqueId;
+import com.opengamma.transport.DirectFudgeConnection;
+import com.opengamma.transport.EndPointDescriptionProvider;
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Tests the {@link PeerFudgeMessageStore} exchanging values between nodes.
+ */
+@Test
+public class PeerFudgeMessageStoreTest {
+
+  private static final FudgeContext s_fudgeContext = OpenGammaFudgeContext.getInstance();
+  private static final ViewComputationCacheKey s_cacheKey = new ViewComputationCacheKey(UniqueId.of("Test", "Cycle"), "Default");
+
+  private static class Node {
+
+    private final String _name;
+    private final PeerFudgeMessageStoreFactory _stores;
+    private final PeerFudgeMessageStoreServer _server;
+    private final ConcurrentMap<String, Node> _nodes;
+    private volatile boolean _available = true;
+    private volatile DirectFudgeConnection _lastPeerConnection;
+
+    public Node(final String name, final ViewComputationCacheServer central, final ConcurrentMap<String, Node> nodes, final boolean writeThrough) {
+      _name = name;
+      _nodes = nodes;
+      final DirectFudgeConnection conduit = new DirectFudgeConnection(s_fudgeContext);
+      conduit.connectEnd2(central);
+      final RemoteCacheClient client = new RemoteCacheClient(conduit.getEnd1());
+      final PeerCacheClient peers = new PeerCacheClient(client) {
+        @Override
+        protected FudgeConnection openConnection(final FudgeMsg endPoint) {
+          final Node node = _nodes.get(endPoint.getString("node"));
+          if (!node._available) {
+            throw new IllegalStateException("Node " + node._name + " unavailable");
+          }
+          final DirectFudgeConnection connection = new DirectFudgeConnection(s_fudgeContext);
+          connection.connectEnd2(node._server);
+          _lastPeerConnection = connection;
+          return connection.getEnd1();
+        }
+      };
+      peers.setLocalEndPoint(new EndPointDescriptionProvider() {
+        @Override
+        public FudgeMsg getEndPointDescription(final FudgeContext fudgeContext) {
+          final MutableFudgeMsg msg = fudgeContext.newMessage();
+          msg.add("node", _name);
+          return msg;
+        }
+      });
+      _stores = new PeerFudgeMessageStoreFactory(new DefaultFudgeMessageStoreFactory(new InMemoryBinaryDataStoreFactory(), s_fudgeContext),
+          new RemoteFudgeMessageStoreFactory(client), peers);
+      _stores.setWriteThrough(writeThrough);
+      _server = new PeerFudgeMessageStoreServer(_stores);
+      nodes.put(name, this);
+    }
+
+    public FudgeMessageStore getStore() {
+      final FudgeMessageStore store = _stores.findMessageStore(s_cacheKey);
+      return (store != null) ? store : _stores.createMessageStore(s_cacheKey);
+    }
+
+  }
+
+  private static FudgeMsg value(final int i) {
+    final MutableFudgeMsg msg = s_fudgeContext.newMessage();
+    msg.add("value", i);
+    return msg;
+  }
+
+  public void testValueFetchedFromPeer() {
+    final ViewComputationCacheServer central = new ViewComputationCacheServer(new InMemoryViewComputationCacheSource(s_fudgeContext));
+    final ConcurrentMap<String, Node> nodes = new ConcurrentHashMap<String, Node>();
+    final Node a = new Node("A", central, nodes, false);
+    final Node b = new Node("B", central, nodes, false);
+    a.getStore().put(1L, value(1));
+    a.getStore().put(2L, value(2));
+    assertEquals(value(1), b.getStore().get(1L));
+    assertNotNull(b._lastPeerConnection);
+    assertEquals(1, b._lastPeerConnection.getAndResetMessages1To2());
+    final Map<Long, FudgeMsg> values = b.getStore().get(Arrays.asList(1L, 2L));
+    assertEquals(2, values.size());
+    assertEquals(value(2), values.get(2L));
+    // Connection to the peer is re-used
+    assertEquals(1, b._lastPeerConnection.getAndResetMessages1To2());
+    // Values held locally don't go to the peer
+    assertEquals(value(1), a.getStore().get(1L));
+    assertNull(a._lastPeerConnection);
+  }
+
+  public void testUnavailablePeerFallsBackToCentral() {
+    final ViewComputationCacheServer central = new ViewComputationCacheServer(new InMemoryViewComputationCacheSource(s_fudgeContext));
+    final ConcurrentMap<String, Node> nodes = new ConcurrentHashMap<String, Node>();
+    final Node a = new Node("A", central, nodes, true);
+    final Node b = new Node("B", central, nodes, true);
+    a.getStore().put(1L, value(1));
+    a._available = false;
+    assertEquals(value(1), b.getStore().get(1L));
+    assertNull(b._lastPeerConnection);
+  }
+
+  public void testUnlocatedValueFetchedFromCentral() {
+    final ViewComputationCacheServer central = new ViewComputationCacheServer(new InMemoryViewComputationCacheSource(s_fudgeContext));
+    final ConcurrentMap<String, Node> nodes = new ConcurrentHashMap<String, Node>();
+    final Node a = new Node("A", central, nodes, false);
+    final Node b = new Node("B", central, nodes, false);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      b._stores.setExecutorService(executor);
+      a.getStore().put(1L, value(1));
+      // A value written to the central store by a node without a peer server
+      final DirectFudgeConnection conduit = new DirectFudgeConnection(s_fudgeContext);
+      conduit.connectEnd2(central);
+      new RemoteFudgeMessageStoreFactory(new RemoteCacheClient(conduit.getEnd1())).createMessageStore(s_cacheKey).put(3L, value(3));
+      final Map<Long, FudgeMsg> values = b.getStore().get(Arrays.asList(1L, 3L));
+      assertEquals(2, values.size());
+      assertEquals(value(1), values.get(1L));
+      assertEquals(value(3), values.get(3L));
+      assertEquals(1, b._lastPeerConnection.getAndResetMessages1To2());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testDirectory() {
+    final ValueLocationDirectory directory = new ValueLocationDirectory(1);
+    final FudgeMsg endPoint = value(0);
+    directory.valuesLocated(s_cacheKey.getViewCycleId(), s_cacheKey.getCalculationConfigurationName(), Arrays.asList(1L, 2L), endPoint);
+    assertEquals(Arrays.asList(endPoint, null), directory.locateValues(s_cacheKey.getViewCycleId(), s_cacheKey.getCalculationConfigurationName(), Arrays.asList(1L, 3L)));
+    // The least recently used cache is discarded
+    directory.valuesLocated(UniqueId.of("Test", "Other"), s_cacheKey.getCalculationConfigurationName(), Arrays.asList(1L), endPoint);
+    assertEquals(Arrays.asList((FudgeMsg) null), directory.locateValues(s_cacheKey.getViewCycleId(), s_cacheKey.getCalculationConfigurationName(), Arrays.asList(1L)));
+  }
+
+}
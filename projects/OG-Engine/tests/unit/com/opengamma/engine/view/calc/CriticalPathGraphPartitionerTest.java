@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.test.MockFunction;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.calcnode.stats.FunctionCosts;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests the {@link CriticalPathGraphPartitioner} and {@link GraphPartitionerSimulator} classes.
+ */
+@Test
+public class CriticalPathGraphPartitionerTest {
+
+  /**
+   * Test graph:
+   * 
+   *    N0
+   *    |
+   *    N1
+   *    |
+   *    N2
+   *    |
+   *    N3  N4
+   */
+  private DependencyGraph _testGraph;
+
+  private static ValueRequirement requirement(final String id) {
+    return new ValueRequirement("Test", ComputationTargetType.PRIMITIVE, UniqueId.of("Test", id), ValueProperties.none());
+  }
+
+  private static ValueSpecification value(final String id) {
+    return new ValueSpecification(requirement(id), "Mock");
+  }
+
+  @BeforeMethod
+  public void createGraph() {
+    _testGraph = new DependencyGraph("Default");
+    final DependencyNode[] nodes = new DependencyNode[5];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = new DependencyNode(new ComputationTarget(Integer.toString(i)));
+      nodes[i].setFunction(MockFunction.getMockFunction(nodes[i].getComputationTarget(), "foo"));
+    }
+    for (int i = 0; i < 3; i++) {
+      final ValueSpecification value = value(Integer.toString(i + 1) + Integer.toString(i));
+      nodes[i + 1].addOutputValue(value);
+      nodes[i].addInputNode(nodes[i + 1]);
+      nodes[i].addInputValue(value);
+    }
+    nodes[3].addInputValue(new ValueSpecification(requirement("x3"), "LiveDataSourcingFunction"));
+    nodes[4].addInputValue(new ValueSpecification(requirement("x4"), "LiveDataSourcingFunction"));
+    nodes[0].addOutputValue(value("0x"));
+    nodes[4].addOutputValue(value("4x"));
+    for (DependencyNode node : nodes) {
+      _testGraph.addDependencyNode(node);
+    }
+    _testGraph.addTerminalOutput(requirement("0x"), value("0x"));
+    _testGraph.addTerminalOutput(requirement("4x"), value("4x"));
+  }
+
+  private static MultipleNodeExecutorFactory createFactory() {
+    final MultipleNodeExecutorFactory factory = new MultipleNodeExecutorFactory();
+    factory.setFunctionCosts(new FunctionCosts());
+    return factory;
+  }
+
+  public void testCriticalPathMerged() {
+    final MultipleNodeExecutorFactory factory = createFactory();
+    final CriticalPathGraphPartitioner partitioner = new CriticalPathGraphPartitioner();
+    partitioner.setNodeCount(1);
+    partitioner.setJobsPerNode(1);
+    factory.setPartitioner(partitioner);
+    final GraphPartitionerSimulator.Result result = new GraphPartitionerSimulator(1).simulate(factory, _testGraph);
+    // The chain becomes a single job; N4 is independent
+    assertEquals(2, result.getJobCount());
+    assertEquals(5, result.getInvocationCost());
+  }
+
+  public void testSmallTargetCost() {
+    final MultipleNodeExecutorFactory factory = createFactory();
+    final CriticalPathGraphPartitioner partitioner = new CriticalPathGraphPartitioner();
+    partitioner.setNodeCount(1000);
+    factory.setPartitioner(partitioner);
+    final GraphPartitionerSimulator.Result result = new GraphPartitionerSimulator(1).simulate(factory, _testGraph);
+    // Every node is above the target cost so nothing is merged
+    assertEquals(5, result.getJobCount());
+  }
+
+  public void testSimulatorComparison() {
+    final MultipleNodeExecutorFactory unmerged = createFactory();
+    unmerged.setMaximumJobItems(1);
+    final MultipleNodeExecutorFactory merged = createFactory();
+    final CriticalPathGraphPartitioner partitioner = new CriticalPathGraphPartitioner();
+    partitioner.setNodeCount(2);
+    partitioner.setJobsPerNode(1);
+    merged.setPartitioner(partitioner);
+    final GraphPartitionerSimulator simulator = new GraphPartitionerSimulator(2);
+    simulator.setJobOverhead(100L);
+    final GraphPartitionerSimulator.Result unmergedResult = simulator.simulate(unmerged, _testGraph);
+    final GraphPartitionerSimulator.Result mergedResult = simulator.simulate(merged, _testGraph);
+    assertEquals(5, unmergedResult.getJobCount());
+    assertTrue(mergedResult.getJobCount() < unmergedResult.getJobCount());
+    assertTrue(mergedResult.getMakespan() < unmergedResult.getMakespan());
+    assertTrue(mergedResult.getDataCost() < unmergedResult.getDataCost());
+    assertEquals(unmergedResult.getInvocationCost(), mergedResult.getInvocationCost());
+  }
+
+}
@@ -9,13 +9,16 @@ import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.time.Instant;
 
@@ -35,9 +38,12 @@ import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.cache.CacheSelectHint;
 import com.opengamma.engine.view.calc.stats.DiscardingGraphStatisticsGathererProvider;
 import com.opengamma.engine.view.calcnode.CalculationJob;
+import com.opengamma.engine.view.calcnode.CalculationJobItem;
 import com.opengamma.engine.view.calcnode.CalculationJobResult;
+import com.opengamma.engine.view.calcnode.CalculationJobResultItem;
 import com.opengamma.engine.view.calcnode.CalculationJobSpecification;
 import com.opengamma.engine.view.calcnode.JobResultReceiver;
+import com.opengamma.engine.view.calcnode.PartialJobResultReceiver;
 import com.opengamma.engine.view.calcnode.stats.FunctionCosts;
 import com.opengamma.id.UniqueId;
 import com.opengamma.util.Cancelable;
@@ -526,4 +532,90 @@ public class MultipleNodeExecutorTest {
     assertEquals(7, mask);
   }
 
+
+  private static CalculationJobResult jobResult(final CalculationJob job, final int from, final int to, final String nodeId) {
+    final List<CalculationJobResultItem> items = new ArrayList<CalculationJobResultItem>();
+    for (CalculationJobItem item : job.getJobItems().subList(from, to)) {
+      items.add(new CalculationJobResultItem(item));
+    }
+    return new CalculationJobResult(job.getSpecification(), 0, items, nodeId);
+  }
+
+  private static int countItems(final Collection<CalculationJobResult> results) {
+    int count = 0;
+    for (CalculationJobResult result : results) {
+      count += result.getResultItems().size();
+    }
+    return count;
+  }
+
+  /**
+   * Items already streamed as partial results are not queued again from the full result.
+   */
+  public void testPartialResultsNotRepeated() {
+    final AtomicReference<CalculationJob> dispatched = new AtomicReference<CalculationJob>();
+    final AtomicReference<JobResultReceiver> receiver = new AtomicReference<JobResultReceiver>();
+    final MultipleNodeExecutor executor = new MultipleNodeExecutor(null, 5, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, new FunctionCosts(),
+        new ExecutionPlanCache(EHCacheUtils.createCacheManager(), 0)) {
+
+      @Override
+      protected long getFunctionInitId() {
+        return 0;
+      }
+
+      @Override
+      protected CalculationJobSpecification createJobSpecification(final DependencyGraph graph) {
+        return new CalculationJobSpecification(UniqueId.of("Test", "ViewProcess"), graph.getCalculationConfigurationName(), Instant.now(), JobIdSource.getId());
+      }
+
+      @Override
+      protected void addJobToViewProcessorQuery(final CalculationJobSpecification jobSpec, final DependencyGraph graph) {
+        // Nothing
+      }
+
+      @Override
+      protected Cancelable dispatchJob(final CalculationJob job, final JobResultReceiver jobResultReceiver) {
+        dispatched.set(job);
+        receiver.set(jobResultReceiver);
+        return new Cancelable() {
+          @Override
+          public boolean cancel(final boolean mayInterrupt) {
+            return false;
+          }
+        };
+      }
+
+      @Override
+      protected void markExecuted(final DependencyNode node) {
+        // Nothing
+      }
+
+      @Override
+      protected void markFailed(final DependencyNode node) {
+        // Nothing
+      }
+
+    };
+    final LinkedBlockingQueue<CalculationJobResult> results = new LinkedBlockingQueue<CalculationJobResult>();
+    executor.executeImpl(_testGraph, results, DiscardingGraphStatisticsGathererProvider.GATHERER_INSTANCE);
+    final CalculationJob job = dispatched.get();
+    assertEquals(5, job.getJobItems().size());
+    final PartialJobResultReceiver partialReceiver = (PartialJobResultReceiver) receiver.get();
+    partialReceiver.partialResultReceived(jobResult(job, 0, 3, "Node"));
+    receiver.get().resultReceived(jobResult(job, 0, 5, "Node"));
+    final List<CalculationJobResult> queued = new ArrayList<CalculationJobResult>(results);
+    assertEquals(2, queued.size());
+    assertEquals(job.getJobItems().subList(0, 3), getItems(queued.get(0)));
+    assertEquals(job.getJobItems().subList(3, 5), getItems(queued.get(1)));
+    assertEquals(5, countItems(queued));
+  }
+
+  private static List<CalculationJobItem> getItems(final CalculationJobResult result) {
+    final List<CalculationJobItem> items = new ArrayList<CalculationJobItem>();
+    for (CalculationJobResultItem item : result.getResultItems()) {
+      items.add(item.getItem());
+    }
+    return items;
+  }
+
 }
@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.time.Instant;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.marketdata.spec.MarketData;
+import com.opengamma.engine.test.MockFunction;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+
+/**
+ * Tests the {@link SharedExecutionCache} class.
+ */
+@Test
+public class SharedExecutionCacheTest {
+
+  private static final Instant s_valuationTime = Instant.ofEpochSeconds(1325376000L);
+
+  private static ValueSpecification value(final String id) {
+    return new ValueSpecification(new ValueRequirement("Test", ComputationTargetType.PRIMITIVE, UniqueId.of("Test", id), ValueProperties.none()), "Mock");
+  }
+
+  private static DependencyNode node(final String id) {
+    final DependencyNode node = new DependencyNode(new ComputationTarget(id));
+    node.setFunction(MockFunction.getMockFunction(node.getComputationTarget(), "foo"));
+    node.addInputValue(value("in" + id));
+    node.addOutputValue(value("out" + id));
+    return node;
+  }
+
+  private static Map<DependencyNode, ValueProperties> nodes(final DependencyNode... nodes) {
+    final Map<DependencyNode, ValueProperties> result = new HashMap<DependencyNode, ValueProperties>();
+    for (DependencyNode node : nodes) {
+      result.put(node, ValueProperties.none());
+    }
+    return result;
+  }
+
+  private static Map<ValueSpecification, Object> marketData(final double value) {
+    return Collections.<ValueSpecification, Object>singletonMap(value("md"), value);
+  }
+
+  private static SharedExecutionCache.Execution join(final SharedExecutionCache cache, final double marketData) {
+    return cache.join(MarketData.live(), s_valuationTime, VersionCorrection.LATEST, 0, marketData(marketData));
+  }
+
+  public void testJoinAndRelease() {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    final SharedExecutionCache.Execution a = join(cache, 1d);
+    final SharedExecutionCache.Execution b = join(cache, 1d);
+    final SharedExecutionCache.Execution c = join(cache, 2d);
+    assertSame(a, b);
+    assertNotSame(a, c);
+    assertEquals(2, cache.getExecutionCount());
+    cache.release(a);
+    assertEquals(2, cache.getExecutionCount());
+    cache.release(b);
+    cache.release(c);
+    assertEquals(0, cache.getExecutionCount());
+  }
+
+  public void testDifferentMarketDataSpecificationNotShared() {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    final SharedExecutionCache.Execution a = join(cache, 1d);
+    final SharedExecutionCache.Execution b = cache.join(MarketData.live("Other"), s_valuationTime, VersionCorrection.LATEST, 0, marketData(1d));
+    assertNotSame(a, b);
+  }
+
+  public void testAlignSnapshotTimes() {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    cache.setAlignmentToleranceMillis(60000);
+    final SharedExecutionCache.Alignment a = cache.align("A", MarketData.live(), s_valuationTime, true, VersionCorrection.LATEST);
+    final Instant other = Instant.ofEpochMillis(s_valuationTime.toEpochMillisLong() + 200);
+    final SharedExecutionCache.Alignment b = cache.align("B", MarketData.live(), other, true, VersionCorrection.LATEST);
+    assertEquals(s_valuationTime, b.getValuationTime());
+    assertFalse(a.getVersionCorrection().containsLatest());
+    assertEquals(a.getVersionCorrection(), b.getVersionCorrection());
+    // Both cycles now key the same execution
+    assertSame(cache.join(MarketData.live(), a.getValuationTime(), a.getVersionCorrection(), 0, marketData(1d)),
+        cache.join(MarketData.live(), b.getValuationTime(), b.getVersionCorrection(), 0, marketData(1d)));
+  }
+
+  public void testAlignOutsideTolerance() {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    cache.setAlignmentToleranceMillis(60000);
+    cache.align("A", MarketData.live(), s_valuationTime, true, VersionCorrection.LATEST);
+    final Instant later = Instant.ofEpochMillis(s_valuationTime.toEpochMillisLong() + 120000);
+    assertEquals(later, cache.align("B", MarketData.live(), later, true, VersionCorrection.LATEST).getValuationTime());
+  }
+
+  public void testAlignFixedValuationTime() {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    cache.setAlignmentToleranceMillis(60000);
+    final SharedExecutionCache.Alignment a = cache.align("A", MarketData.live(), s_valuationTime, false, VersionCorrection.LATEST);
+    final Instant other = Instant.ofEpochMillis(s_valuationTime.toEpochMillisLong() + 200);
+    assertEquals(other, cache.align("B", MarketData.live(), other, false, VersionCorrection.LATEST).getValuationTime());
+    assertSame(a, cache.align("C", MarketData.live(), s_valuationTime, false, VersionCorrection.LATEST));
+  }
+
+  public void testAlignSameProcessNotAligned() {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    cache.setAlignmentToleranceMillis(60000);
+    cache.align("A", MarketData.live(), s_valuationTime, true, VersionCorrection.LATEST);
+    final Instant next = Instant.ofEpochMillis(s_valuationTime.toEpochMillisLong() + 200);
+    assertEquals(next, cache.align("A", MarketData.live(), next, true, VersionCorrection.LATEST).getValuationTime());
+  }
+
+  public void testPublishedNodeNotClaimedAgain() throws InterruptedException {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    final SharedExecutionCache.Execution execution = join(cache, 1d);
+    final Object first = new Object();
+    final Object second = new Object();
+    final DependencyNode node1 = node("1");
+    assertTrue(execution.claim(first, nodes(node1)).isEmpty());
+    execution.publish(first, ValueProperties.none(), node1, Collections.<ValueSpecification, Object>singletonMap(value("out1"), 42d));
+    // An identical node from another view's graph uses the published value; a different one is claimed
+    final DependencyNode node1Copy = node("1");
+    final DependencyNode node2 = node("2");
+    final Collection<DependencyNode> pending = execution.claim(second, nodes(node1Copy, node2));
+    assertEquals(Collections.singletonList(node1Copy), pending);
+    assertEquals(42d, execution.await(ValueProperties.none(), node1Copy).get(value("out1")));
+  }
+
+  public void testWaitForClaimant() throws InterruptedException {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    final SharedExecutionCache.Execution execution = join(cache, 1d);
+    final Object first = new Object();
+    final DependencyNode node = node("1");
+    execution.claim(first, nodes(node));
+    final DependencyNode nodeCopy = node("1");
+    // Claiming does not block
+    assertEquals(1, execution.claim(new Object(), nodes(nodeCopy)).size());
+    final AtomicReference<Map<ValueSpecification, Object>> result = new AtomicReference<Map<ValueSpecification, Object>>();
+    final Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          result.set(execution.await(ValueProperties.none(), nodeCopy));
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    waiter.start();
+    Thread.sleep(100);
+    execution.publish(first, ValueProperties.none(), node, Collections.<ValueSpecification, Object>singletonMap(value("out1"), 42d));
+    waiter.join(5000);
+    assertEquals(42d, result.get().get(value("out1")));
+  }
+
+  public void testWaitPerNode() throws InterruptedException {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    final SharedExecutionCache.Execution execution = join(cache, 1d);
+    final Object first = new Object();
+    final DependencyNode node1 = node("1");
+    final DependencyNode node2 = node("2");
+    execution.claim(first, nodes(node1, node2));
+    execution.claim(new Object(), nodes(node("1"), node("2")));
+    execution.publish(first, ValueProperties.none(), node1, Collections.<ValueSpecification, Object>singletonMap(value("out1"), 42d));
+    // The first node is available while the claimant is still executing the second
+    assertEquals(42d, execution.await(ValueProperties.none(), node("1")).get(value("out1")));
+  }
+
+  public void testAbandonedNodeExecutedByWaiter() throws InterruptedException {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    final SharedExecutionCache.Execution execution = join(cache, 1d);
+    final Object first = new Object();
+    execution.claim(first, nodes(node("1")));
+    execution.claim(new Object(), nodes(node("1")));
+    execution.abandon(first);
+    assertNull(execution.await(ValueProperties.none(), node("1")));
+  }
+
+  public void testFailedNodeExecutedByWaiter() throws InterruptedException {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    final SharedExecutionCache.Execution execution = join(cache, 1d);
+    final Object first = new Object();
+    execution.claim(first, nodes(node("1")));
+    execution.claim(new Object(), nodes(node("1")));
+    execution.publish(first, ValueProperties.none(), node("1"), null);
+    assertNull(execution.await(ValueProperties.none(), node("1")));
+  }
+
+  public void testWaitTimeout() throws InterruptedException {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    cache.setWaitTimeoutMillis(10);
+    final SharedExecutionCache.Execution execution = join(cache, 1d);
+    execution.claim(new Object(), nodes(node("1")));
+    execution.claim(new Object(), nodes(node("1")));
+    assertNull(execution.await(ValueProperties.none(), node("1")));
+  }
+
+  public void testDifferentDefaultPropertiesNotShared() {
+    final SharedExecutionCache cache = new SharedExecutionCache();
+    final SharedExecutionCache.Execution execution = join(cache, 1d);
+    execution.claim(new Object(), nodes(node("1")));
+    final DependencyNode node = node("1");
+    assertTrue(execution.claim(new Object(), Collections.singletonMap(node, ValueProperties.with("Currency", "USD").get())).isEmpty());
+  }
+
+}
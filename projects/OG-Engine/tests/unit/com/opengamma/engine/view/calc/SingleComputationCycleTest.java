@@ -5,27 +5,47 @@
  */
 package com.opengamma.engine.view.calc;
 
+import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertTrue;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.annotations.Test;
 
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetType;
 import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.function.AbstractFunction;
+import com.opengamma.engine.function.FunctionCompilationContext;
+import com.opengamma.engine.function.FunctionExecutionContext;
+import com.opengamma.engine.function.FunctionInputs;
+import com.opengamma.engine.function.InMemoryFunctionRepository;
 import com.opengamma.engine.marketdata.spec.MarketData;
+import com.opengamma.engine.test.TestViewResultListener;
 import com.opengamma.engine.test.ViewProcessorTestEnvironment;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ViewCalculationConfiguration;
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDefinition;
 import com.opengamma.engine.view.ViewProcessImpl;
 import com.opengamma.engine.view.ViewProcessorImpl;
+import com.opengamma.engine.view.ViewResultEntry;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
 import com.opengamma.engine.view.calcnode.CalculationJobResult;
 import com.opengamma.engine.view.client.ViewClient;
 import com.opengamma.engine.view.execution.ExecutionOptions;
+import com.opengamma.id.UniqueId;
 import com.opengamma.livedata.UserPrincipal;
 import com.opengamma.util.test.Timeout;
 
@@ -68,6 +88,142 @@ public class SingleComputationCycleTest {
     assertTrue(executor.wasInterrupted());
   }
   
+  public void testNodesSharedBetweenViewProcesses() throws InterruptedException {
+    final CountingFunction function = new CountingFunction();
+    final InMemoryFunctionRepository functions = new InMemoryFunctionRepository();
+    functions.addFunction(function);
+    ViewProcessorTestEnvironment env = new ViewProcessorTestEnvironment();
+    env.setFunctionRepository(functions);
+    env.setViewDefinition(countingViewDefinition("1"));
+    env.init();
+    final ViewDefinition viewDefinition2 = countingViewDefinition("2");
+    env.getMockViewDefinitionRepository().addDefinition(viewDefinition2);
+
+    ViewProcessorImpl vp = env.getViewProcessor();
+    final SharedExecutionCache sharedExecutionCache = new SharedExecutionCache();
+    sharedExecutionCache.setAlignmentToleranceMillis(TIMEOUT);
+    vp.setSharedExecutionCache(sharedExecutionCache);
+    vp.start();
+
+    ViewClient client1 = vp.createViewClient(ViewProcessorTestEnvironment.TEST_USER);
+    TestViewResultListener resultListener1 = new TestViewResultListener();
+    client1.setResultListener(resultListener1);
+    client1.attachToViewProcess(env.getViewDefinition().getUniqueId(), ExecutionOptions.infinite(MarketData.live()));
+    // The first view process is now executing the node, which blocks until the second has joined its execution
+    assertTrue(function.awaitFirstInvocation(TIMEOUT));
+
+    ViewClient client2 = vp.createViewClient(ViewProcessorTestEnvironment.TEST_USER);
+    TestViewResultListener resultListener2 = new TestViewResultListener();
+    client2.setResultListener(resultListener2);
+    client2.attachToViewProcess(viewDefinition2.getUniqueId(), ExecutionOptions.infinite(MarketData.live()));
+    Thread recalcThread2 = env.getCurrentComputationThread(env.getViewProcess(vp, client2.getUniqueId()));
+    assertTrue(awaitSharedNode(recalcThread2, TIMEOUT));
+    function.release();
+
+    resultListener1.assertViewDefinitionCompiled(TIMEOUT);
+    assertEquals(1d, getCountedValue(resultListener1.getCycleCompleted(TIMEOUT).getFullResult()));
+    resultListener2.assertViewDefinitionCompiled(TIMEOUT);
+    assertEquals(1d, getCountedValue(resultListener2.getCycleCompleted(TIMEOUT).getFullResult()));
+    assertEquals(1, function.getInvocationCount());
+    client1.shutdown();
+    client2.shutdown();
+    vp.stop();
+  }
+
+  private static ViewDefinition countingViewDefinition(final String id) {
+    ViewDefinition viewDefinition = new ViewDefinition(UniqueId.of("Test", id), "Test View " + id, ViewProcessorTestEnvironment.TEST_USER);
+    ViewCalculationConfiguration calcConfig = new ViewCalculationConfiguration(viewDefinition, ViewProcessorTestEnvironment.TEST_CALC_CONFIG_NAME);
+    calcConfig.addSpecificRequirement(CountingFunction.requirement());
+    viewDefinition.addViewCalculationConfiguration(calcConfig);
+    return viewDefinition;
+  }
+
+  private static Object getCountedValue(final ViewComputationResultModel result) {
+    for (ViewResultEntry entry : result.getAllResults()) {
+      if (CountingFunction.VALUE_NAME.equals(entry.getComputedValue().getSpecification().getValueName())) {
+        return entry.getComputedValue().getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Waits for a computation thread to block waiting for a node shared from another view process.
+   */
+  private static boolean awaitSharedNode(final Thread thread, final long timeoutMillis) throws InterruptedException {
+    for (int i = 0; i < timeoutMillis / 10; i++) {
+      for (StackTraceElement frame : thread.getStackTrace()) {
+        if (SharedExecutionCache.Execution.class.getName().equals(frame.getClassName()) && "await".equals(frame.getMethodName())) {
+          return true;
+        }
+      }
+      Thread.sleep(10);
+    }
+    return false;
+  }
+
+  /**
+   * Function counting its invocations, the first of which blocks until released.
+   */
+  private static class CountingFunction extends AbstractFunction.NonCompiledInvoker {
+
+    private static final String VALUE_NAME = "Counted";
+
+    private final AtomicInteger _invocations = new AtomicInteger();
+    private final CountDownLatch _firstInvocation = new CountDownLatch(1);
+    private final CountDownLatch _release = new CountDownLatch(1);
+
+    public static ValueRequirement requirement() {
+      return new ValueRequirement(VALUE_NAME, ComputationTargetType.PRIMITIVE, ViewProcessorTestEnvironment.getPrimitive1().getTargetSpecification().getUniqueId());
+    }
+
+    public boolean awaitFirstInvocation(final long timeoutMillis) throws InterruptedException {
+      return _firstInvocation.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void release() {
+      _release.countDown();
+    }
+
+    public int getInvocationCount() {
+      return _invocations.get();
+    }
+
+    @Override
+    public boolean canApplyTo(FunctionCompilationContext context, ComputationTarget target) {
+      return true;
+    }
+
+    @Override
+    public Set<ValueRequirement> getRequirements(FunctionCompilationContext context, ComputationTarget target, ValueRequirement desiredValue) {
+      return Collections.singleton(ViewProcessorTestEnvironment.getPrimitive1());
+    }
+
+    @Override
+    public Set<ValueSpecification> getResults(FunctionCompilationContext context, ComputationTarget target) {
+      return Collections.singleton(new ValueSpecification(new ValueRequirement(VALUE_NAME, target.toSpecification()), getUniqueId()));
+    }
+
+    @Override
+    public ComputationTargetType getTargetType() {
+      return ComputationTargetType.PRIMITIVE;
+    }
+
+    @Override
+    public Set<ComputedValue> execute(FunctionExecutionContext executionContext, FunctionInputs inputs, ComputationTarget target, Set<ValueRequirement> desiredValues) {
+      final int count = _invocations.incrementAndGet();
+      _firstInvocation.countDown();
+      try {
+        _release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      final ValueSpecification spec = new ValueSpecification(new ValueRequirement(VALUE_NAME, target.toSpecification()), getUniqueId());
+      return Collections.singleton(new ComputedValue(spec, (double) count));
+    }
+
+  }
+
   private class BlockingDependencyGraphExecutorFactory implements DependencyGraphExecutorFactory<CalculationJobResult> {
 
     private final BlockingDependencyGraphExecutor _instance;
@@ -8,11 +8,14 @@ package com.opengamma.engine.view.calc;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNull;
 
+import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.time.Duration;
 import javax.time.Instant;
@@ -21,7 +24,22 @@ import org.testng.annotations.Test;
 
 import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.core.change.ChangeType;
+import com.opengamma.core.position.impl.MockPositionSource;
+import com.opengamma.core.position.impl.SimplePortfolio;
+import com.opengamma.core.position.impl.SimplePortfolioNode;
+import com.opengamma.core.position.impl.SimplePosition;
+import com.opengamma.core.security.Security;
 import com.opengamma.core.security.SecuritySource;
+import com.opengamma.core.security.impl.SimpleSecurity;
+import com.opengamma.core.security.impl.SimpleSecurityLink;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.function.AbstractFunction;
+import com.opengamma.engine.function.FunctionCompilationContext;
+import com.opengamma.engine.function.FunctionExecutionContext;
+import com.opengamma.engine.function.FunctionInputs;
+import com.opengamma.engine.function.InMemoryFunctionRepository;
 import com.opengamma.engine.marketdata.InMemoryLKVMarketDataProvider;
 import com.opengamma.engine.marketdata.MarketDataListener;
 import com.opengamma.engine.marketdata.MarketDataPermissionProvider;
@@ -41,7 +59,10 @@ import com.opengamma.engine.test.TestViewResultListener;
 import com.opengamma.engine.test.ViewProcessorTestEnvironment;
 import com.opengamma.engine.value.ComputedValue;
 import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ViewCalculationConfiguration;
 import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDefinition;
 import com.opengamma.engine.view.ViewProcessImpl;
 import com.opengamma.engine.view.ViewProcessorImpl;
 import com.opengamma.engine.view.ViewTargetResultModel;
@@ -52,7 +73,10 @@ import com.opengamma.engine.view.execution.ExecutionOptions;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.engine.view.execution.ViewExecutionFlags;
 import com.opengamma.engine.view.execution.ViewExecutionOptions;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
 import com.opengamma.livedata.LiveDataClient;
 import com.opengamma.livedata.LiveDataListener;
 import com.opengamma.livedata.LiveDataSpecification;
@@ -312,6 +336,64 @@ public class ViewComputationJobTest {
     client.shutdown();
   }
   
+  @Test
+  public void testTargetChangedRecalculatesPosition() {
+    final ChangingSecuritySource securitySource = new ChangingSecuritySource();
+    final SimpleSecurity security = new SimpleSecurity(UniqueId.of("Sec", "1"), ExternalIdBundle.EMPTY, "EQUITY", "Before");
+    securitySource.addSecurity(security);
+    final SimplePosition position = new SimplePosition();
+    position.setQuantity(BigDecimal.ONE);
+    position.setSecurityLink(new SimpleSecurityLink(security.getUniqueId().getObjectId()));
+    final SimplePortfolioNode root = new SimplePortfolioNode("Root");
+    root.addPosition(position);
+    final MockPositionSource positionSource = new MockPositionSource();
+    positionSource.addPortfolio(new SimplePortfolio(UniqueId.of("Port", "1"), "Test", root));
+    final InMemoryFunctionRepository functionRepository = new InMemoryFunctionRepository();
+    functionRepository.addFunction(new SecurityNameFunction());
+    final ViewDefinition viewDefinition = new ViewDefinition(UniqueId.of("boo", "far"), ViewProcessorTestEnvironment.TEST_VIEW_DEFINITION_NAME, ViewProcessorTestEnvironment.TEST_USER);
+    final ViewCalculationConfiguration calcConfig = new ViewCalculationConfiguration(viewDefinition, ViewProcessorTestEnvironment.TEST_CALC_CONFIG_NAME);
+    final ComputationTargetSpecification positionSpec = new ComputationTargetSpecification(ComputationTargetType.POSITION, position.getUniqueId());
+    calcConfig.addSpecificRequirement(new ValueRequirement(SecurityNameFunction.VALUE_NAME, positionSpec));
+    viewDefinition.addViewCalculationConfiguration(calcConfig);
+
+    final ViewProcessorTestEnvironment env = new ViewProcessorTestEnvironment();
+    env.setSecuritySource(securitySource);
+    env.setPositionSource(positionSource);
+    env.setFunctionRepository(functionRepository);
+    env.setViewDefinition(viewDefinition);
+    env.init();
+    final ViewProcessorImpl vp = env.getViewProcessor();
+    vp.start();
+
+    final ViewClient client = vp.createViewClient(ViewProcessorTestEnvironment.TEST_USER);
+    final TestViewResultListener resultListener = new TestViewResultListener();
+    client.setResultListener(resultListener);
+    client.attachToViewProcess(viewDefinition.getUniqueId(), ExecutionOptions.infinite(MarketData.live(), ExecutionFlags.none().triggerOnTargetChanged().get()));
+    final ViewComputationJob computationJob = env.getCurrentComputationJob(env.getViewProcess(vp, client.getUniqueId()));
+    resultListener.assertViewDefinitionCompiled(TIMEOUT);
+    resultListener.assertCycleCompleted(TIMEOUT);
+    assertEquals("Before", getSecurityName(client.getLatestResult(), positionSpec));
+
+    // The position is unchanged, but the security it references has a new version
+    securitySource.changeSecurity(new SimpleSecurity(security.getUniqueId(), ExternalIdBundle.EMPTY, "EQUITY", "After"));
+    computationJob.targetChanged(security.getUniqueId().getObjectId());
+    computationJob.triggerCycle();
+    resultListener.assertViewDefinitionCompiled(TIMEOUT);
+    resultListener.assertCycleCompleted(TIMEOUT);
+    assertEquals("After", getSecurityName(client.getLatestResult(), positionSpec));
+
+    client.shutdown();
+  }
+
+  private static Object getSecurityName(final ViewComputationResultModel result, final ComputationTargetSpecification positionSpec) {
+    for (ComputedValue computedValue : result.getTargetResult(positionSpec).getAllValues(ViewProcessorTestEnvironment.TEST_CALC_CONFIG_NAME)) {
+      if (SecurityNameFunction.VALUE_NAME.equals(computedValue.getSpecification().getValueName())) {
+        return computedValue.getValue();
+      }
+    }
+    return null;
+  }
+  
   private void assertThreadReachesState(Thread recalcThread, Thread.State state) throws InterruptedException {
     long startTime = System.currentTimeMillis();
     while (recalcThread.getState() != state) {
@@ -322,6 +404,63 @@ public class ViewComputationJobTest {
     }
   }
   
+  private static class SecurityNameFunction extends AbstractFunction.NonCompiledInvoker {
+
+    private static final String VALUE_NAME = "SecurityName";
+
+    @Override
+    public boolean canApplyTo(FunctionCompilationContext context, ComputationTarget target) {
+      return true;
+    }
+
+    @Override
+    public Set<ValueRequirement> getRequirements(FunctionCompilationContext context, ComputationTarget target, ValueRequirement desiredValue) {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<ValueSpecification> getResults(FunctionCompilationContext context, ComputationTarget target) {
+      return Collections.singleton(new ValueSpecification(new ValueRequirement(VALUE_NAME, target.toSpecification()), getUniqueId()));
+    }
+
+    @Override
+    public ComputationTargetType getTargetType() {
+      return ComputationTargetType.POSITION;
+    }
+
+    @Override
+    public Set<ComputedValue> execute(FunctionExecutionContext executionContext, FunctionInputs inputs, ComputationTarget target, Set<ValueRequirement> desiredValues) {
+      final ValueSpecification spec = new ValueSpecification(new ValueRequirement(VALUE_NAME, target.toSpecification()), getUniqueId());
+      return Collections.singleton(new ComputedValue(spec, target.getPosition().getSecurity().getName()));
+    }
+
+  }
+
+  /**
+   * Security source which can replace a security with a new version, as a security master would.
+   */
+  private static class ChangingSecuritySource extends MockSecuritySource {
+
+    private final Map<ObjectId, Security> _changed = new ConcurrentHashMap<ObjectId, Security>();
+
+    public void changeSecurity(Security security) {
+      _changed.put(security.getUniqueId().getObjectId(), security);
+    }
+
+    @Override
+    public Security getSecurity(UniqueId uniqueId) {
+      final Security changed = _changed.get(uniqueId.getObjectId());
+      return (changed != null) ? changed : super.getSecurity(uniqueId);
+    }
+
+    @Override
+    public Security getSecurity(ObjectId objectId, VersionCorrection versionCorrection) {
+      final Security changed = _changed.get(objectId);
+      return (changed != null) ? changed : super.getSecurity(objectId, versionCorrection);
+    }
+
+  }
+
   private static class TestLiveMarketDataProvider implements MarketDataProvider, MarketDataAvailabilityProvider {
 
     private final String _sourceName;
@@ -9,13 +9,25 @@ import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
 import org.testng.annotations.Test;
 
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.function.FunctionExecutionContext;
+import com.opengamma.engine.function.FunctionInputs;
 import com.opengamma.engine.test.CalculationNodeUtils;
 import com.opengamma.engine.test.MockFunction;
 import com.opengamma.engine.test.TestCalculationNode;
 import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.cache.CacheSelectHint;
 import com.opengamma.engine.view.cache.ViewComputationCache;
 
 /**
@@ -61,4 +73,44 @@ public class CalculationNodeTest {
     assertEquals("Nothing we care about", cache.getValue(mockFunction.getResultSpec()));
   }
 
+  public void partialResults() {
+    final ComputationTarget target = new ComputationTarget(ComputationTargetType.PRIMITIVE, "USD");
+    final MockFunction mockFunction = new MockFunction(target) {
+      @Override
+      public Set<ComputedValue> execute(final FunctionExecutionContext executionContext, final FunctionInputs inputs, final ComputationTarget target,
+          final Set<ValueRequirement> desiredValues) {
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          throw new OpenGammaRuntimeException("Interrupted", e);
+        }
+        return super.execute(executionContext, inputs, target, desiredValues);
+      }
+    };
+    mockFunction.addResult(MockFunction.getOutputRequirement(target), "Partial");
+    final TestCalculationNode calcNode = CalculationNodeUtils.getTestCalcNode(mockFunction);
+    calcNode.setPartialResultPeriod(10);
+    final CalculationJob singleItemJob = CalculationNodeUtils.getCalculationJob(mockFunction);
+    final CalculationJobItem jobItem = singleItemJob.getJobItems().get(0);
+    final CalculationJob calcJob = new CalculationJob(singleItemJob.getSpecification(), 0L, null, Arrays.asList(jobItem, jobItem, jobItem), CacheSelectHint.allShared());
+    final ViewComputationCache cache = calcNode.getCache(calcJob.getSpecification());
+    final List<CalculationJobResult> partialResults = new ArrayList<CalculationJobResult>();
+    final CalculationJobResult jobResult = calcNode.executeJob(calcJob, null, new PartialJobResultReceiver() {
+      @Override
+      public void partialResultReceived(final CalculationJobResult partialResult) {
+        // The values must already be in the shared cache
+        assertEquals("Partial", cache.getValue(mockFunction.getResultSpec()));
+        partialResults.add(partialResult);
+      }
+    });
+    // Partial results after the first and second items; the last item is only in the full result
+    assertEquals(2, partialResults.size());
+    for (CalculationJobResult partialResult : partialResults) {
+      assertEquals(calcJob.getSpecification(), partialResult.getSpecification());
+      assertEquals(1, partialResult.getResultItems().size());
+      assertEquals(InvocationResult.SUCCESS, partialResult.getResultItems().get(0).getResult());
+    }
+    assertEquals(3, jobResult.getResultItems().size());
+  }
+
 }
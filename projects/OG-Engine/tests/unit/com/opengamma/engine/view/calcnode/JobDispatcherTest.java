@@ -27,7 +27,14 @@ import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.function.EmptyFunctionParameters;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.cache.CacheSelectHint;
+import com.opengamma.engine.view.calcnode.stats.CalculationNodeStatistics;
+import com.opengamma.engine.view.calcnode.stats.TotallingNodeStatisticsGatherer;
 import com.opengamma.id.UniqueId;
 import com.opengamma.util.Cancelable;
 import com.opengamma.util.test.Timeout;
@@ -430,4 +437,210 @@ public class JobDispatcherTest {
     assertTrue (blockingInvoker.isCancelled ());
   }
 
+  private static CalculationJob createLocalityTestJob(final Collection<ValueSpecification> inputs, final ValueRequirement output) {
+    final CalculationJobItem item = new CalculationJobItem("Function", new EmptyFunctionParameters(), output.getTargetSpecification(), inputs,
+        Collections.singleton(output));
+    return new CalculationJob(createTestJobSpec(), 0L, null, Collections.singletonList(item), CacheSelectHint.allShared());
+  }
+
+  private class ResultItemJobInvoker extends AbstractJobInvoker {
+
+    public ResultItemJobInvoker(final String nodeId) {
+      super(nodeId);
+    }
+
+    @Override
+    public boolean invoke(final CalculationJob job, final JobInvocationReceiver receiver) {
+      final List<CalculationJobResultItem> items = new ArrayList<CalculationJobResultItem>();
+      for (CalculationJobItem item : job.getJobItems()) {
+        items.add(new CalculationJobResultItem(item));
+      }
+      _executorService.execute(new Runnable() {
+        @Override
+        public void run() {
+          receiver.jobCompleted(new CalculationJobResult(job.getSpecification(), 0, items, getInvokerId()));
+        }
+      });
+      return true;
+    }
+
+    @Override
+    public boolean notifyWhenAvailable(final JobInvokerRegister callback) {
+      return true;
+    }
+
+  }
+
+  @Test
+  public void invokeByLocality() {
+    s_logger.info("invokeByLocality");
+    final JobDispatcher jobDispatcher = new JobDispatcher();
+    final TotallingNodeStatisticsGatherer statistics = new TotallingNodeStatisticsGatherer();
+    jobDispatcher.setStatisticsGatherer(statistics);
+    jobDispatcher.setValueLocality(new ValueLocality());
+    jobDispatcher.setDispatchPolicy(new LocalityJobDispatchPolicy());
+    jobDispatcher.registerJobInvoker(new ResultItemJobInvoker("1"));
+    jobDispatcher.registerJobInvoker(new ResultItemJobInvoker("2"));
+    jobDispatcher.registerJobInvoker(new ResultItemJobInvoker("3"));
+    final ComputationTargetSpecification target = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "Target"));
+    final ValueRequirement valueA = new ValueRequirement("A", target);
+    final ValueRequirement valueB = new ValueRequirement("B", target);
+    // No locality information; round-robin order
+    TestJobResultReceiver result = new TestJobResultReceiver();
+    jobDispatcher.dispatchJob(createLocalityTestJob(Collections.<ValueSpecification>emptySet(), valueA), result);
+    CalculationJobResult jobResult = result.waitForResult(TIMEOUT);
+    assertEquals("1", jobResult.getComputeNodeId());
+    for (JobInvoker invoker : jobDispatcher.getInvokers()) {
+      assertEquals(0, jobDispatcher.getOutstandingJobs(invoker));
+    }
+    // Consumer of the value goes to the node that produced it rather than the next in round-robin order
+    result = new TestJobResultReceiver();
+    jobDispatcher.dispatchJob(createLocalityTestJob(Collections.singleton(new ValueSpecification(valueA, "Function")), valueB), result);
+    jobResult = result.waitForResult(TIMEOUT);
+    assertEquals("1", jobResult.getComputeNodeId());
+    long localInputs = 0;
+    long remoteInputs = 0;
+    for (CalculationNodeStatistics nodeStatistics : statistics.getNodeStatistics()) {
+      localInputs += nodeStatistics.getLocalInputs();
+      remoteInputs += nodeStatistics.getRemoteInputs();
+    }
+    assertEquals(1, localInputs);
+    assertEquals(0, remoteInputs);
+  }
+
+  private final class RefusingJobInvoker extends ResultItemJobInvoker {
+
+    private final AtomicInteger _invocations = new AtomicInteger();
+    private volatile boolean _refuse;
+
+    public RefusingJobInvoker(final String nodeId) {
+      super(nodeId);
+    }
+
+    @Override
+    public boolean invoke(final CalculationJob job, final JobInvocationReceiver receiver) {
+      _invocations.incrementAndGet();
+      return !_refuse && super.invoke(job, receiver);
+    }
+
+    @Override
+    public boolean notifyWhenAvailable(final JobInvokerRegister callback) {
+      return false;
+    }
+
+  }
+
+  @Test
+  public void invokeByLocalityRefused() {
+    s_logger.info("invokeByLocalityRefused");
+    final JobDispatcher jobDispatcher = new JobDispatcher();
+    jobDispatcher.setValueLocality(new ValueLocality());
+    jobDispatcher.setDispatchPolicy(new LocalityJobDispatchPolicy());
+    final RefusingJobInvoker preferred = new RefusingJobInvoker("1");
+    jobDispatcher.registerJobInvoker(preferred);
+    jobDispatcher.registerJobInvoker(new ResultItemJobInvoker("2"));
+    final ComputationTargetSpecification target = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "Target"));
+    final ValueRequirement valueA = new ValueRequirement("A", target);
+    final ValueRequirement valueB = new ValueRequirement("B", target);
+    TestJobResultReceiver result = new TestJobResultReceiver();
+    jobDispatcher.dispatchJob(createLocalityTestJob(Collections.<ValueSpecification>emptySet(), valueA), result);
+    assertEquals("1", result.waitForResult(TIMEOUT).getComputeNodeId());
+    // Another job without inputs puts the first node back at the head of the round-robin order
+    result = new TestJobResultReceiver();
+    jobDispatcher.dispatchJob(createLocalityTestJob(Collections.<ValueSpecification>emptySet(), new ValueRequirement("C", target)), result);
+    assertEquals("2", result.waitForResult(TIMEOUT).getComputeNodeId());
+    // The node holding the input refuses; the job goes to the other node without being offered to the first again
+    preferred._refuse = true;
+    preferred._invocations.set(0);
+    result = new TestJobResultReceiver();
+    jobDispatcher.dispatchJob(createLocalityTestJob(Collections.singleton(new ValueSpecification(valueA, "Function")), valueB), result);
+    assertEquals("2", result.waitForResult(TIMEOUT).getComputeNodeId());
+    assertEquals(1, preferred._invocations.get());
+  }
+
+  private static List<CalculationJobResultItem> createResultItems(final CalculationJob job, final int from, final int to) {
+    final List<CalculationJobResultItem> items = new ArrayList<CalculationJobResultItem>();
+    for (CalculationJobItem item : job.getJobItems().subList(from, to)) {
+      items.add(new CalculationJobResultItem(item));
+    }
+    return items;
+  }
+
+  private class StreamingJobInvoker extends AbstractJobInvoker {
+
+    private final int[] _partialResults;
+    private final boolean _fail;
+
+    public StreamingJobInvoker(final String invokerId, final boolean fail, final int... partialResults) {
+      super(invokerId);
+      _fail = fail;
+      _partialResults = partialResults;
+    }
+
+    @Override
+    public boolean invoke(final CalculationJob job, final JobInvocationReceiver receiver) {
+      _executorService.execute(new Runnable() {
+        @Override
+        public void run() {
+          int from = 0;
+          for (int to : _partialResults) {
+            ((PartialJobResultReceiver) receiver).partialResultReceived(new CalculationJobResult(job.getSpecification(), 0, createResultItems(job, from, to), "Node"));
+            from = to;
+          }
+          if (_fail) {
+            receiver.jobFailed(StreamingJobInvoker.this, "Node", null);
+          } else {
+            receiver.jobCompleted(new CalculationJobResult(job.getSpecification(), 0, createResultItems(job, 0, job.getJobItems().size()), "Node"));
+          }
+        }
+      });
+      return true;
+    }
+
+    @Override
+    public boolean notifyWhenAvailable(final JobInvokerRegister callback) {
+      return false;
+    }
+
+  }
+
+  private static final class PartialResultReceiver extends TestJobResultReceiver implements PartialJobResultReceiver {
+
+    private final List<CalculationJobItem> _partialResultItems = new ArrayList<CalculationJobItem>();
+
+    @Override
+    public synchronized void partialResultReceived(final CalculationJobResult partialResult) {
+      for (CalculationJobResultItem item : partialResult.getResultItems()) {
+        _partialResultItems.add(item.getItem());
+      }
+    }
+
+    public synchronized List<CalculationJobItem> getPartialResultItems() {
+      return _partialResultItems;
+    }
+
+  }
+
+  @Test
+  public void partialResultsOfRetriedJob() {
+    s_logger.info("partialResultsOfRetriedJob");
+    final JobDispatcher jobDispatcher = new JobDispatcher();
+    // Both attempts run on the same compute node; the first streams three items and fails, the retry streams from the start again
+    jobDispatcher.registerJobInvoker(new StreamingJobInvoker("1", true, 3));
+    jobDispatcher.registerJobInvoker(new StreamingJobInvoker("2", false, 1, 3, 4));
+    final ComputationTargetSpecification target = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "Target"));
+    final List<CalculationJobItem> items = new ArrayList<CalculationJobItem>();
+    for (int i = 0; i < 5; i++) {
+      items.add(new CalculationJobItem("Function", new EmptyFunctionParameters(), target, Collections.<ValueSpecification>emptySet(),
+          Collections.singleton(new ValueRequirement(Integer.toString(i), target))));
+    }
+    final CalculationJob job = new CalculationJob(createTestJobSpec(), 0L, null, items, CacheSelectHint.allShared());
+    final PartialResultReceiver result = new PartialResultReceiver();
+    jobDispatcher.dispatchJob(job, result);
+    final CalculationJobResult jobResult = result.waitForResult(TIMEOUT);
+    assertNotNull(jobResult);
+    assertEquals(5, jobResult.getResultItems().size());
+    assertEquals(items.subList(0, 4), result.getPartialResultItems());
+  }
+
 }
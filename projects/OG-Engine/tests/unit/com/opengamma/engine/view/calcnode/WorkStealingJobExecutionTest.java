@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.time.Instant;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.function.InMemoryFunctionRepository;
+import com.opengamma.engine.test.CalculationNodeUtils;
+import com.opengamma.engine.test.MockFunction;
+import com.opengamma.engine.test.TestCalculationNode;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.cache.CacheSelectHint;
+import com.opengamma.engine.view.cache.ViewComputationCache;
+import com.opengamma.engine.view.calcnode.stats.DiscardingInvocationStatisticsGatherer;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests the {@link WorkStealingJobExecution} class.
+ */
+@Test
+public class WorkStealingJobExecutionTest {
+
+  private final ComputationTarget _target1 = new ComputationTarget(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "1"));
+  private final ComputationTarget _target2 = new ComputationTarget(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "2"));
+  private final ComputationTarget _target3 = new ComputationTarget(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "3"));
+
+  private MockFunction _function1;
+  private MockFunction _function2;
+  private MockFunction _function3;
+
+  private TestCalculationNode createNode() {
+    _function1 = MockFunction.getMockFunction("F1", _target1, "1", new ValueRequirement("INPUT", _target1.toSpecification()));
+    _function2 = MockFunction.getMockFunction("F2", _target2, "2");
+    _function3 = MockFunction.getMockFunction("F3", _target3, "3", new ValueRequirement("INPUT", _target3.toSpecification()));
+    final TestCalculationNode node = new TestCalculationNode();
+    final InMemoryFunctionRepository functions = (InMemoryFunctionRepository) node.getFunctionCompilationService().getFunctionRepository();
+    functions.addFunction(_function1);
+    functions.addFunction(_function2);
+    functions.addFunction(_function3);
+    node.getFunctionCompilationService().initialize();
+    return node;
+  }
+
+  private static CalculationJobItem createItem(final MockFunction function, final Set<ValueSpecification> inputs) {
+    return new CalculationJobItem(function.getUniqueId(), function.getDefaultParameters(), function.getTarget().toSpecification(), inputs,
+        function.getResultRequirements());
+  }
+
+  private CalculationJob createJob() {
+    final List<CalculationJobItem> items = new ArrayList<CalculationJobItem>();
+    items.add(createItem(_function1, _function1.getRequirements()));
+    items.add(createItem(_function2, _function1.getResultSpecs()));
+    items.add(createItem(_function3, _function3.getRequirements()));
+    final CalculationJobSpecification spec = new CalculationJobSpecification(UniqueId.of("Test", "ViewProcess"), CalculationNodeUtils.CALC_CONF_NAME, Instant.now(), 1L);
+    return new CalculationJob(spec, 0L, null, items, CacheSelectHint.allShared());
+  }
+
+  private static void putInput(final ViewComputationCache cache, final MockFunction function) {
+    for (ValueSpecification input : function.getRequirements()) {
+      cache.putSharedValue(new ComputedValue(input, "Input"));
+    }
+  }
+
+  public void testReleasedItems() {
+    createNode();
+    final WorkStealingJobExecution execution = new WorkStealingJobExecution(createJob());
+    // The second item depends on the first
+    assertEquals(2, execution.getQueuedItems());
+  }
+
+  public void testExecuteWithHelper() {
+    final TestCalculationNode node = createNode();
+    final LocalCalculationNode helper = new LocalCalculationNode(node.getCacheSource(), node.getFunctionCompilationService(), node.getFunctionExecutionContext(),
+        node.getTargetResolver(), node.getViewProcessorQuerySender(), null, new DiscardingInvocationStatisticsGatherer());
+    final CalculationJob job = createJob();
+    final ViewComputationCache cache = node.getCache(job.getSpecification());
+    putInput(cache, _function1);
+    putInput(cache, _function3);
+    final WorkStealingJobExecution execution = new WorkStealingJobExecution(job);
+    // The helper takes both released items, and the one released by completing the first
+    assertTrue(execution.help(helper));
+    assertEquals(0, execution.getQueuedItems());
+    assertFalse(execution.help(helper));
+    final CalculationJobResult result = node.executeJob(job, execution);
+    assertNotNull(result);
+    assertEquals(3, result.getResultItems().size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(job.getJobItems().get(i), result.getResultItems().get(i).getItem());
+      assertEquals(InvocationResult.SUCCESS, result.getResultItems().get(i).getResult());
+    }
+    assertEquals("1", cache.getValue(_function1.getResultSpec()));
+    assertEquals("2", cache.getValue(_function2.getResultSpec()));
+    assertEquals("3", cache.getValue(_function3.getResultSpec()));
+  }
+
+  public void testCancelled() {
+    createNode();
+    final CalculationJob job = createJob();
+    final WorkStealingJobExecution execution = new WorkStealingJobExecution(job);
+    job.cancel();
+    assertFalse(execution.help(createNode()));
+  }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode.stats;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests the {@link FunctionProfiler} class.
+ */
+@Test
+public class FunctionProfilerTest {
+
+  private static ComputationTargetSpecification target(final String id) {
+    return new ComputationTargetSpecification(ComputationTargetType.SECURITY, UniqueId.of("Sec", id));
+  }
+
+  public void testSamplingPeriod() {
+    final FunctionProfiler profiler = new FunctionProfiler();
+    assertEquals(FunctionProfiler.DEFAULT_SAMPLING_PERIOD, profiler.getSamplingPeriod());
+    profiler.setSamplingPeriod(3);
+    int sampled = 0;
+    for (int i = 0; i < 30; i++) {
+      if (profiler.isSampled()) {
+        sampled++;
+      }
+    }
+    assertEquals(10, sampled);
+    profiler.setSamplingPeriod(0);
+    assertFalse(profiler.isSampled());
+  }
+
+  public void testProfiles() {
+    final FunctionProfiler profiler = new FunctionProfiler();
+    profiler.record("F1", target("A"), 1000, 10000, 100);
+    profiler.record("F1", target("A"), 3000, 30000, 300);
+    profiler.record("F1", target("B"), 1000, 1000, 1000);
+    profiler.record("F2", target("A"), 0, 5000000, 0);
+    assertEquals(4, profiler.getSamples());
+    assertEquals(3, profiler.getProfileCount());
+    final List<FunctionProfiler.Profile> profiles = profiler.getProfiles();
+    // Most expensive first
+    assertEquals("F2", profiles.get(0).getFunctionId());
+    final FunctionProfiler.Profile f1a = profiles.get(1);
+    assertEquals("F1", f1a.getFunctionId());
+    assertEquals("SECURITY", f1a.getTargetType());
+    assertEquals("Sec~A", f1a.getTargetId());
+    assertEquals(2, f1a.getSamples());
+    final FunctionProfiler.Histogram execution = f1a.getHistogram(FunctionProfiler.Phase.EXECUTION);
+    assertEquals(40000, execution.getTotalNanos());
+    assertEquals(30000, execution.getMaxNanos());
+    assertEquals(20000d, execution.getMeanNanos(), 0d);
+    assertTrue(execution.getPercentileNanos(50) >= 10000);
+    assertTrue(execution.getPercentileNanos(50) < 20000);
+    assertEquals(30000, execution.getPercentileNanos(100));
+    profiler.reset();
+    assertEquals(0, profiler.getProfileCount());
+    assertEquals(0, profiler.getSamples());
+  }
+
+  public void testMaxProfiles() {
+    final FunctionProfiler profiler = new FunctionProfiler(2);
+    profiler.record("F1", target("A"), 1, 1, 1);
+    profiler.record("F1", target("B"), 1, 1, 1);
+    profiler.record("F1", target("C"), 1, 1, 1);
+    profiler.record("F1", target("D"), 1, 1, 1);
+    profiler.record("F1", target("A"), 1, 1, 1);
+    assertEquals(3, profiler.getProfileCount());
+    for (FunctionProfiler.Profile profile : profiler.getProfiles()) {
+      if (FunctionProfiler.OTHER_TARGETS.equals(profile.getTargetId())) {
+        assertEquals(2, profile.getSamples());
+      } else if ("Sec~A".equals(profile.getTargetId())) {
+        assertEquals(2, profile.getSamples());
+      } else {
+        assertEquals("Sec~B", profile.getTargetId());
+      }
+    }
+  }
+
+  public void testFlameGraph() throws IOException {
+    final FunctionProfiler profiler = new FunctionProfiler();
+    profiler.record("F1", target("A;1"), 2000, 30000, 0);
+    final StringWriter writer = new StringWriter();
+    profiler.writeFlameGraph(writer);
+    assertEquals("F1;SECURITY;Sec~A:1;INPUT_FETCH 2\nF1;SECURITY;Sec~A:1;EXECUTION 30\n", writer.toString());
+  }
+
+}
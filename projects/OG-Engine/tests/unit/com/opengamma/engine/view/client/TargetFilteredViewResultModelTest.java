@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.client;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.InMemoryViewDeltaResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests {@link TargetFilteredViewResultModel}.
+ */
+@Test
+public class TargetFilteredViewResultModelTest {
+
+  private static ComputedValue value(final String target, final String valueName) {
+    final ValueRequirement requirement = new ValueRequirement(valueName, ComputationTargetType.PRIMITIVE, UniqueId.of("Test", target));
+    return new ComputedValue(new ValueSpecification(requirement, "FunctionId"), 1d);
+  }
+
+  public void testFilter() {
+    final InMemoryViewDeltaResultModel result = new InMemoryViewDeltaResultModel();
+    result.addValue("Default", value("A", "Foo"));
+    result.addValue("Default", value("A", "Bar"));
+    result.addValue("Default", value("B", "Foo"));
+    result.addValue("Other", value("C", "Baz"));
+    final ComputationTargetSpecification a = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "A"));
+    final ComputationTargetSpecification b = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "B"));
+    final Set<ComputationTargetSpecification> targets = Collections.singleton(a);
+    final ViewDeltaResultModel filtered = TargetFilteredViewResultModel.of(result, targets);
+    assertEquals(targets, filtered.getAllTargets());
+    assertEquals(2, filtered.getAllResults().size());
+    assertEquals(2, filtered.getAllOutputValueNames().size());
+    assertNotNull(filtered.getTargetResult(a));
+    assertNull(filtered.getTargetResult(b));
+    assertEquals(Collections.singletonList(a), filtered.getCalculationResult("Default").getAllTargets());
+    assertNull(filtered.getCalculationResult("Default").getAllValues(b));
+    assertEquals(0, filtered.getCalculationResult("Other").getAllTargets().size());
+    assertNull(TargetFilteredViewResultModel.of((ViewDeltaResultModel) null, targets));
+  }
+
+}
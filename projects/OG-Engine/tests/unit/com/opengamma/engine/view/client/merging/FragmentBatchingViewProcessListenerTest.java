@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.client.merging;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Timer;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.test.TestViewResultListener;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.InMemoryViewComputationResultModel;
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.engine.view.listener.CycleFragmentCompletedCall;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.test.Timeout;
+
+/**
+ * Tests the {@link FragmentBatchingViewProcessListener} class.
+ */
+@Test
+public class FragmentBatchingViewProcessListenerTest {
+
+  private Timer _timer;
+  private TestViewResultListener _testListener;
+  private FragmentBatchingViewProcessListener _batchingListener;
+
+  @BeforeMethod
+  public void setUp() {
+    _timer = new Timer("Custom timer");
+    _testListener = new TestViewResultListener();
+    _batchingListener = new FragmentBatchingViewProcessListener(_testListener, _timer);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    _batchingListener.reset();
+    _timer.cancel();
+  }
+
+  private static ViewComputationResultModel getFragment(final int value) {
+    final InMemoryViewComputationResultModel fragment = new InMemoryViewComputationResultModel();
+    final ValueRequirement requirement = new ValueRequirement("value" + value, ComputationTargetType.PRIMITIVE, UniqueId.of("Scheme", "value" + value));
+    fragment.addValue("DEFAULT", new ComputedValue(new ValueSpecification(requirement, "FunctionId"), value));
+    return fragment;
+  }
+
+  public void testPassThrough() {
+    for (int i = 0; i < 10; i++) {
+      _batchingListener.cycleFragmentCompleted(getFragment(i), null);
+    }
+    _testListener.assertCycleFragmentCompleted(10);
+    _testListener.assertNoCalls();
+  }
+
+  public void testBatchSize() throws InterruptedException {
+    _batchingListener.setMaxBatchSize(3);
+    _batchingListener.cycleFragmentCompleted(getFragment(1), null);
+    _batchingListener.cycleFragmentCompleted(getFragment(2), null);
+    Thread.sleep(100);
+    _testListener.assertNoCalls();
+    _batchingListener.cycleFragmentCompleted(getFragment(3), null);
+    final CycleFragmentCompletedCall call = _testListener.getCycleFragmentCompleted(Timeout.standardTimeoutMillis());
+    assertEquals(3, call.getFullFragment().getAllResults().size());
+    _testListener.assertNoCalls();
+  }
+
+  public void testUpdatePeriod() throws InterruptedException {
+    _batchingListener.setUpdatePeriodMillis(200);
+    for (int i = 0; i < 5; i++) {
+      _batchingListener.cycleFragmentCompleted(getFragment(i), null);
+    }
+    _testListener.assertNoCalls();
+    final CycleFragmentCompletedCall call = _testListener.getCycleFragmentCompleted(Timeout.standardTimeoutMillis());
+    assertEquals(5, call.getFullFragment().getAllResults().size());
+    Thread.sleep(400);
+    _testListener.assertNoCalls();
+  }
+
+  public void testFragmentsReleasedBeforeCycleCompleted() throws InterruptedException {
+    _batchingListener.setUpdatePeriodMillis(Timeout.standardTimeoutMillis() * 10);
+    _batchingListener.cycleFragmentCompleted(getFragment(1), null);
+    _batchingListener.cycleFragmentCompleted(getFragment(2), null);
+    _testListener.assertNoCalls();
+    _batchingListener.cycleCompleted(mock(ViewComputationResultModel.class), null);
+    final CycleFragmentCompletedCall call = _testListener.getCycleFragmentCompleted(0);
+    assertEquals(2, call.getFullFragment().getAllResults().size());
+    _testListener.assertCycleCompleted();
+    _testListener.assertNoCalls();
+  }
+
+  public void testSlowListenerDoesNotBlock() throws InterruptedException {
+    final TestViewResultListener slowListener = new TestViewResultListener() {
+      @Override
+      public void cycleFragmentCompleted(final ViewComputationResultModel fullResult, final ViewDeltaResultModel deltaResult) {
+        try {
+          Thread.sleep(500);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.cycleFragmentCompleted(fullResult, deltaResult);
+      }
+    };
+    final FragmentBatchingViewProcessListener batchingListener = new FragmentBatchingViewProcessListener(slowListener, _timer);
+    batchingListener.setMaxBatchSize(1);
+    final long start = System.currentTimeMillis();
+    for (int i = 0; i < 10; i++) {
+      batchingListener.cycleFragmentCompleted(getFragment(i), null);
+      Thread.sleep(10);
+    }
+    // The producer is not held up by the listener, and fragments arriving while it is busy are merged
+    assertTrue(System.currentTimeMillis() - start < 500);
+    int values = 0;
+    int calls = 0;
+    while (values < 10) {
+      values += slowListener.getCycleFragmentCompleted(Timeout.standardTimeoutMillis()).getFullFragment().getAllResults().size();
+      calls++;
+    }
+    assertEquals(10, values);
+    assertTrue(calls < 10);
+  }
+
+}
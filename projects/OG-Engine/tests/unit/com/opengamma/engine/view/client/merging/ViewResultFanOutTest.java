@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.client.merging;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.util.Timer;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.test.TestViewResultListener;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.InMemoryViewDeltaResultModel;
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.engine.view.calc.EngineResourceManagerImpl;
+import com.opengamma.engine.view.listener.CycleCompletedCall;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.test.Timeout;
+
+/**
+ * Tests {@link ViewResultFanOut}.
+ */
+@Test
+public class ViewResultFanOutTest {
+
+  private static RateLimitingMergingViewProcessListener createListener(final TestViewResultListener testListener, final ViewResultFanOut fanOut,
+      final Timer timer, final long period) {
+    final RateLimitingMergingViewProcessListener listener = new RateLimitingMergingViewProcessListener(testListener, mock(EngineResourceManagerImpl.class), timer);
+    listener.setResultFanOut(fanOut);
+    listener.setMinimumUpdatePeriodMillis(period);
+    return listener;
+  }
+
+  private static ViewDeltaResultModel getDeltaResult(final int value) {
+    final InMemoryViewDeltaResultModel deltaResult = new InMemoryViewDeltaResultModel();
+    final ValueRequirement requirement = new ValueRequirement("value" + value, ComputationTargetType.PRIMITIVE, UniqueId.of("Scheme", "value" + value));
+    deltaResult.addValue("DEFAULT", new ComputedValue(new ValueSpecification(requirement, "FunctionId"), value));
+    return deltaResult;
+  }
+
+  private static void cycleCompleted(final int value, final RateLimitingMergingViewProcessListener... listeners) {
+    // Every listener to a process is notified of the same instances
+    final ViewComputationResultModel fullResult = mock(ViewComputationResultModel.class);
+    final ViewDeltaResultModel deltaResult = getDeltaResult(value);
+    for (RateLimitingMergingViewProcessListener listener : listeners) {
+      listener.cycleCompleted(fullResult, deltaResult);
+    }
+  }
+
+  public void testMergedOnceForTier() throws InterruptedException {
+    final ViewResultFanOut fanOut = new ViewResultFanOut();
+    final Timer timer = new Timer("Custom timer");
+    try {
+      final TestViewResultListener testListener1 = new TestViewResultListener();
+      final TestViewResultListener testListener2 = new TestViewResultListener();
+      final RateLimitingMergingViewProcessListener listener1 = createListener(testListener1, fanOut, timer, 200);
+      final RateLimitingMergingViewProcessListener listener2 = createListener(testListener2, fanOut, timer, 200);
+      assertEquals(1, fanOut.getTierCount());
+      // Start just after the tier's period so that all of the results are merged into the same update
+      Thread.sleep(200 - System.currentTimeMillis() % 200 + 20);
+      testListener1.assertNoCalls();
+      testListener2.assertNoCalls();
+      for (int i = 0; i < 3; i++) {
+        cycleCompleted(i, listener1, listener2);
+      }
+      final CycleCompletedCall call1 = testListener1.getCycleCompleted(Timeout.standardTimeoutMillis());
+      final CycleCompletedCall call2 = testListener2.getCycleCompleted(Timeout.standardTimeoutMillis());
+      assertSame(call1.getDeltaResult(), call2.getDeltaResult());
+      assertEquals(3, call1.getDeltaResult().getAllResults().size());
+      listener1.terminate();
+      listener2.terminate();
+      assertEquals(0, fanOut.getTierCount());
+    } finally {
+      timer.cancel();
+    }
+  }
+
+  public void testSharedResultReleasedInOrder() throws InterruptedException {
+    final ViewResultFanOut fanOut = new ViewResultFanOut();
+    final Timer timer = new Timer("Custom timer");
+    try {
+      final TestViewResultListener testListener1 = new TestViewResultListener();
+      final TestViewResultListener testListener2 = new TestViewResultListener();
+      final RateLimitingMergingViewProcessListener listener1 = createListener(testListener1, fanOut, timer, 200);
+      final RateLimitingMergingViewProcessListener listener2 = createListener(testListener2, fanOut, timer, 200);
+      // Start just after the tier's period so that the updates are released together
+      Thread.sleep(200 - System.currentTimeMillis() % 200 + 20);
+      cycleCompleted(1, listener1, listener2);
+      listener1.processCompleted();
+      listener2.processCompleted();
+      // The shared result is released before the update queued privately after it
+      testListener1.getCycleCompleted(Timeout.standardTimeoutMillis());
+      testListener1.getProcessCompleted(Timeout.standardTimeoutMillis());
+      testListener2.getCycleCompleted(Timeout.standardTimeoutMillis());
+      testListener2.getProcessCompleted(Timeout.standardTimeoutMillis());
+      listener1.terminate();
+      listener2.terminate();
+    } finally {
+      timer.cancel();
+    }
+  }
+
+  public void testTierPerPeriod() {
+    final ViewResultFanOut fanOut = new ViewResultFanOut();
+    final Timer timer = new Timer("Custom timer");
+    try {
+      final RateLimitingMergingViewProcessListener listener1 = createListener(new TestViewResultListener(), fanOut, timer, 100);
+      final RateLimitingMergingViewProcessListener listener2 = createListener(new TestViewResultListener(), fanOut, timer, 200);
+      final RateLimitingMergingViewProcessListener listener3 = createListener(new TestViewResultListener(), fanOut, timer, 0);
+      assertEquals(2, fanOut.getTierCount());
+      listener2.setMinimumUpdatePeriodMillis(100);
+      assertEquals(1, fanOut.getTierCount());
+      listener1.setPaused(true);
+      listener2.setPaused(true);
+      assertEquals(0, fanOut.getTierCount());
+      listener3.terminate();
+    } finally {
+      timer.cancel();
+    }
+  }
+
+  public void testResultsReleasedOnLeavingTier() throws InterruptedException {
+    final ViewResultFanOut fanOut = new ViewResultFanOut();
+    final Timer timer = new Timer("Custom timer");
+    try {
+      final TestViewResultListener testListener1 = new TestViewResultListener();
+      final TestViewResultListener testListener2 = new TestViewResultListener();
+      // Long period so that nothing is published by the tier
+      final RateLimitingMergingViewProcessListener listener1 = createListener(testListener1, fanOut, timer, 60000);
+      final RateLimitingMergingViewProcessListener listener2 = createListener(testListener2, fanOut, timer, 60000);
+      cycleCompleted(1, listener1, listener2);
+      cycleCompleted(2, listener1, listener2);
+      listener1.setMinimumUpdatePeriodMillis(0);
+      assertEquals(2, testListener1.getCycleCompleted(0).getDeltaResult().getAllResults().size());
+      testListener1.assertNoCalls();
+      cycleCompleted(3, listener1, listener2);
+      testListener1.assertCycleCompleted();
+      testListener2.assertNoCalls();
+      listener2.setResultFanOut(null);
+      assertEquals(0, fanOut.getTierCount());
+      listener2.setMinimumUpdatePeriodMillis(0);
+      assertEquals(3, testListener2.getCycleCompleted(0).getDeltaResult().getAllResults().size());
+      listener1.terminate();
+      listener2.terminate();
+    } finally {
+      timer.cancel();
+    }
+  }
+
+}
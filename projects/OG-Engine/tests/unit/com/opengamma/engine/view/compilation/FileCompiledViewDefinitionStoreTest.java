@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.compilation;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.time.Instant;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.opengamma.core.security.impl.SimpleSecurity;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.DefaultCachingComputationTargetResolver;
+import com.opengamma.engine.DefaultComputationTargetResolver;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.function.CachingFunctionRepositoryCompiler;
+import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.function.FunctionCompilationContext;
+import com.opengamma.engine.function.FunctionParameters;
+import com.opengamma.engine.function.InMemoryFunctionRepository;
+import com.opengamma.engine.function.SimpleFunctionParameters;
+import com.opengamma.engine.function.resolver.DefaultFunctionResolver;
+import com.opengamma.engine.marketdata.InMemoryLKVMarketDataProvider;
+import com.opengamma.engine.test.MockFunction;
+import com.opengamma.engine.test.MockSecuritySource;
+import com.opengamma.engine.view.ViewCalculationConfiguration;
+import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.util.ehcache.EHCacheUtils;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Tests the {@link FileCompiledViewDefinitionStore} class.
+ */
+@Test
+public class FileCompiledViewDefinitionStoreTest {
+
+  private File _directory;
+  private ViewDefinition _viewDefinition;
+  private CompiledFunctionService _functions;
+  private ViewCompilationServices _compilationServices;
+  private SimpleFunctionParameters _parameters;
+  private UniqueId _configuration;
+
+  @BeforeMethod
+  public void setUp() {
+    _directory = new File(new File(System.getProperty("java.io.tmpdir")), "FileCompiledViewDefinitionStoreTest-" + System.currentTimeMillis());
+    _viewDefinition = new ViewDefinition("Test", UniqueId.of("View", "Test", "1"), "user");
+    final ViewCalculationConfiguration calcConfig = new ViewCalculationConfiguration(_viewDefinition, "Default");
+    _viewDefinition.addViewCalculationConfiguration(calcConfig);
+    final SimpleSecurity security = new SimpleSecurity("My Sec");
+    security.addExternalId(ExternalId.of("SEC", "1"));
+    final MockSecuritySource securitySource = new MockSecuritySource();
+    securitySource.addSecurity(security);
+    final InMemoryFunctionRepository functionRepo = new InMemoryFunctionRepository();
+    final MockFunction f1 = MockFunction.getMockFunction("f1", new ComputationTarget(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "1")), 42);
+    final MockFunction f2 = MockFunction.getMockFunction("f2", new ComputationTarget(ComputationTargetType.SECURITY, security), 60, f1);
+    functionRepo.addFunction(f1);
+    functionRepo.addFunction(f2);
+    _parameters = new SimpleFunctionParameters();
+    functionRepo.addFunction(new MockFunction("f3", new ComputationTarget(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "3"))) {
+      @Override
+      public FunctionParameters getDefaultParameters() {
+        return _parameters;
+      }
+    });
+    _configuration = UniqueId.of("Config", "Curve", "1");
+    functionRepo.addFunction(new MockFunction("f4", new ComputationTarget(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "4"))) {
+      @Override
+      public void init(final FunctionCompilationContext context) {
+        context.getFunctionReinitializer().reinitializeFunction(this, _configuration);
+      }
+    });
+    calcConfig.addSpecificRequirement(f2.getResultSpec().toRequirementSpecification());
+    final FunctionCompilationContext compilationContext = new FunctionCompilationContext();
+    _functions = new CompiledFunctionService(functionRepo, new CachingFunctionRepositoryCompiler(), compilationContext);
+    _functions.initialize(123);
+    final DefaultCachingComputationTargetResolver targetResolver = new DefaultCachingComputationTargetResolver(new DefaultComputationTargetResolver(securitySource), EHCacheUtils
+        .createCacheManager());
+    final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    _compilationServices = new ViewCompilationServices(new InMemoryLKVMarketDataProvider(), new DefaultFunctionResolver(_functions), compilationContext, targetResolver,
+        executorService, securitySource);
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(_directory);
+    _compilationServices.getExecutorService().shutdown();
+  }
+
+  private CompiledViewDefinitionStore createStore() {
+    // Write synchronously so that the entry is on disk when the store returns
+    return new FileCompiledViewDefinitionStore(_directory, OpenGammaFudgeContext.getInstance(), MoreExecutors.sameThreadExecutor());
+  }
+
+  private CompiledViewDefinitionWithGraphsImpl compileAndStore(final CompiledViewDefinitionStore store, final Instant now) {
+    final CompiledViewDefinitionWithGraphsImpl compiled = ViewDefinitionCompiler.compile(_viewDefinition, _compilationServices, now, VersionCorrection.LATEST);
+    store.store(compiled, _functions, VersionCorrection.LATEST);
+    return compiled;
+  }
+
+  public void testRestore() {
+    final Instant now = Instant.now();
+    final CompiledViewDefinitionWithGraphsImpl compiled = compileAndStore(createStore(), now);
+    // A new store on the same directory behaves as it would after a restart; a different init ID is allowed
+    _functions.initialize(456);
+    final CompiledViewDefinitionWithGraphsImpl restored = createStore().load(_viewDefinition, _compilationServices, _functions, now,
+        VersionCorrection.LATEST, VersionCorrection.of(now, now));
+    assertNotNull(restored);
+    assertEquals(456L, restored.getFunctionInitId());
+    final DependencyGraph expected = compiled.getDependencyGraph("Default");
+    final DependencyGraph actual = restored.getDependencyGraph("Default");
+    assertEquals(expected.getSize(), actual.getSize());
+    assertEquals(expected.getTerminalOutputs(), actual.getTerminalOutputs());
+    assertEquals(expected.getOutputSpecifications(), actual.getOutputSpecifications());
+    assertEquals(expected.getRootNodes().size(), actual.getRootNodes().size());
+    assertEquals(compiled.getComputationTargets(), restored.getComputationTargets());
+  }
+
+  public void testReinitializedFunctions() {
+    final Instant now = Instant.now();
+    final CompiledViewDefinitionStore store = createStore();
+    compileAndStore(store, now);
+    assertNotNull(store.load(_viewDefinition, _compilationServices, _functions, now,
+        VersionCorrection.LATEST, VersionCorrection.of(now, now)));
+    // Within the same run the function init ID must match
+    _functions.initialize(456);
+    assertNull(store.load(_viewDefinition, _compilationServices, _functions, now,
+        VersionCorrection.LATEST, VersionCorrection.of(now, now)));
+  }
+
+  public void testChangedViewDefinition() {
+    final Instant now = Instant.now();
+    compileAndStore(createStore(), now);
+    _viewDefinition.setMinDeltaCalculationPeriod(1000L);
+    assertNull(createStore().load(_viewDefinition, _compilationServices, _functions, now,
+        VersionCorrection.LATEST, VersionCorrection.of(now, now)));
+  }
+
+  public void testDifferentVersionCorrection() {
+    final Instant now = Instant.now();
+    compileAndStore(createStore(), now);
+    assertNull(createStore().load(_viewDefinition, _compilationServices, _functions, now,
+        VersionCorrection.ofVersionAsOf(now), VersionCorrection.of(now, now)));
+  }
+
+  public void testChangedFunctionConfiguration() {
+    final Instant now = Instant.now();
+    compileAndStore(createStore(), now);
+    _parameters.setValue("Foo", "Bar");
+    assertNull(createStore().load(_viewDefinition, _compilationServices, _functions, now,
+        VersionCorrection.LATEST, VersionCorrection.of(now, now)));
+  }
+
+  public void testChangedConfigurationDocument() {
+    final Instant now = Instant.now();
+    compileAndStore(createStore(), now);
+    // The document is changed while the engine is down; the function reads the new version when initialized
+    _configuration = UniqueId.of("Config", "Curve", "2");
+    _functions.initialize(456);
+    assertNull(createStore().load(_viewDefinition, _compilationServices, _functions, now,
+        VersionCorrection.LATEST, VersionCorrection.of(now, now)));
+  }
+
+}
@@ -11,10 +11,12 @@ import static org.testng.AssertJUnit.assertTrue;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.time.Instant;
 
@@ -30,6 +32,7 @@ import com.opengamma.engine.ComputationTargetType;
 import com.opengamma.engine.DefaultCachingComputationTargetResolver;
 import com.opengamma.engine.DefaultComputationTargetResolver;
 import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyNode;
 import com.opengamma.engine.function.CachingFunctionRepositoryCompiler;
 import com.opengamma.engine.function.CompiledFunctionService;
 import com.opengamma.engine.function.FunctionCompilationContext;
@@ -38,10 +41,12 @@ import com.opengamma.engine.function.resolver.DefaultFunctionResolver;
 import com.opengamma.engine.marketdata.InMemoryLKVMarketDataProvider;
 import com.opengamma.engine.test.MockFunction;
 import com.opengamma.engine.test.MockSecuritySource;
+import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.view.ResultOutputMode;
 import com.opengamma.engine.view.ViewCalculationConfiguration;
 import com.opengamma.engine.view.ViewDefinition;
 import com.opengamma.id.ExternalId;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ehcache.EHCacheUtils;
@@ -304,6 +309,82 @@ public class ViewDefinitionCompilerTest {
     assertTargets(compiledViewDefinition);
   }
 
+  public void testRecompileChangedTarget() {
+    SimpleSecurity sec1 = new SimpleSecurity("My Sec");
+    sec1.addExternalId(ExternalId.of("SEC", "1"));
+    SimpleSecurity sec2 = new SimpleSecurity("Your Sec");
+    sec2.addExternalId(ExternalId.of("SEC", "2"));
+    MockSecuritySource securitySource = new MockSecuritySource();
+    securitySource.addSecurity(sec1);
+    securitySource.addSecurity(sec2);
+
+    InMemoryLKVMarketDataProvider snapshotProvider = new InMemoryLKVMarketDataProvider();
+
+    // Both securities depend on a shared primitive
+    MockFunction f0 = MockFunction.getMockFunction("f0", new ComputationTarget(ComputationTargetType.PRIMITIVE, UniqueId.of("TestScheme", "t0")), 42);
+    AtomicInteger f1Resolutions = new AtomicInteger();
+    AtomicInteger f2Resolutions = new AtomicInteger();
+    MockFunction f1 = getCountingFunction("f1", new ComputationTarget(ComputationTargetType.SECURITY, sec1), f0, f1Resolutions);
+    MockFunction f2 = getCountingFunction("f2", new ComputationTarget(ComputationTargetType.SECURITY, sec2), f0, f2Resolutions);
+    InMemoryFunctionRepository functionRepo = new InMemoryFunctionRepository();
+    functionRepo.addFunction(f0);
+    functionRepo.addFunction(f1);
+    functionRepo.addFunction(f2);
+
+    FunctionCompilationContext compilationContext = new FunctionCompilationContext();
+    compilationContext.setFunctionInitId(123);
+    final CompiledFunctionService cfs = new CompiledFunctionService(functionRepo, new CachingFunctionRepositoryCompiler(), compilationContext);
+    cfs.initialize();
+    DefaultFunctionResolver functionResolver = new DefaultFunctionResolver(cfs);
+    DefaultCachingComputationTargetResolver computationTargetResolver = new DefaultCachingComputationTargetResolver(new DefaultComputationTargetResolver(securitySource), EHCacheUtils
+        .createCacheManager());
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ViewCompilationServices compilationServices = new ViewCompilationServices(snapshotProvider, functionResolver, compilationContext, computationTargetResolver, executorService);
+
+    ViewDefinition viewDefinition = new ViewDefinition("Test", "jonathan");
+    ViewCalculationConfiguration calcConfig = new ViewCalculationConfiguration(viewDefinition, "Config1");
+    calcConfig.addSpecificRequirement(f1.getResultSpec().toRequirementSpecification());
+    calcConfig.addSpecificRequirement(f2.getResultSpec().toRequirementSpecification());
+    viewDefinition.addViewCalculationConfiguration(calcConfig);
+
+    Instant valuationTime = Instant.now();
+    CompiledViewDefinitionWithGraphsImpl compiledViewDefinition = ViewDefinitionCompiler.compile(viewDefinition, compilationServices, valuationTime, VersionCorrection.LATEST);
+    DependencyGraph previousGraph = compiledViewDefinition.getDependencyGraph("Config1");
+    assertEquals(3, previousGraph.getSize());
+    int f1Count = f1Resolutions.get();
+    int f2Count = f2Resolutions.get();
+
+    Set<ObjectId> changedTargets = Collections.singleton(sec1.getUniqueId().getObjectId());
+    computationTargetResolver.evict(changedTargets);
+    CompiledViewDefinitionWithGraphsImpl recompiled = ViewDefinitionCompiler.recompile(compiledViewDefinition, compilationServices, valuationTime, VersionCorrection.LATEST, changedTargets);
+    assertNotNull(recompiled);
+    DependencyGraph graph = recompiled.getDependencyGraph("Config1");
+    assertEquals(3, graph.getSize());
+    assertEquals(previousGraph.getTerminalOutputSpecifications(), graph.getTerminalOutputSpecifications());
+    // Only the changed security was resolved again; the new node for it is joined to the reused primitive
+    assertTrue(f1Resolutions.get() > f1Count);
+    assertEquals(f2Count, f2Resolutions.get());
+    DependencyNode f0Node = graph.getNodeProducing(f0.getResultSpec());
+    assertTrue(graph.getNodeProducing(f1.getResultSpec()).getInputNodes().contains(f0Node));
+    assertTrue(graph.getNodeProducing(f2.getResultSpec()).getInputNodes().contains(f0Node));
+    // The previous graph may still be in use by a running cycle
+    assertEquals(3, previousGraph.getSize());
+    assertTrue(previousGraph.getNodeProducing(f1.getResultSpec()).getInputNodes().contains(previousGraph.getNodeProducing(f0.getResultSpec())));
+  }
+
+  private static MockFunction getCountingFunction(String uniqueId, ComputationTarget functionTarget, MockFunction inputFunction, final AtomicInteger resolutions) {
+    MockFunction fn = new MockFunction(uniqueId, functionTarget) {
+      @Override
+      public Set<ValueRequirement> getRequirements(FunctionCompilationContext context, ComputationTarget target, ValueRequirement desiredValue) {
+        resolutions.incrementAndGet();
+        return super.getRequirements(context, target, desiredValue);
+      }
+    };
+    fn.addResult(MockFunction.getOutputRequirement(functionTarget), 60);
+    fn.addRequirements(inputFunction.getResultRequirements());
+    return fn;
+  }
+
   private void assertTargets(CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, UniqueId... targets) {
     Set<UniqueId> expectedTargets = new HashSet<UniqueId>(Arrays.asList(targets));
     Set<ComputationTarget> actualTargets = compiledViewDefinition.getComputationTargets();
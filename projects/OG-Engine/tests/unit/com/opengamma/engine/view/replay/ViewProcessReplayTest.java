@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.replay;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.time.Duration;
+import javax.time.Instant;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.test.ViewProcessorTestEnvironment;
+import com.opengamma.engine.view.ViewCalculationConfiguration;
+import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.engine.view.ViewProcessorImpl;
+import com.opengamma.engine.view.execution.ExecutionFlags;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests replaying market data through a view process with {@link ViewProcessorImpl#replay}.
+ */
+@Test
+public class ViewProcessReplayTest {
+
+  private static final Instant s_start = Instant.ofEpochSeconds(1325376000L);
+
+  private static Instant time(final long seconds) {
+    return s_start.plus(Duration.ofSeconds(seconds));
+  }
+
+  private static List<MarketDataTick> ticks() {
+    return Arrays.asList(
+        new MarketDataTick(time(0), ViewProcessorTestEnvironment.getPrimitive1(), 1d),
+        new MarketDataTick(time(0), ViewProcessorTestEnvironment.getPrimitive2(), 1d),
+        new MarketDataTick(time(10), ViewProcessorTestEnvironment.getPrimitive1(), 2d),
+        new MarketDataTick(time(20), ViewProcessorTestEnvironment.getPrimitive2(), 2d),
+        new MarketDataTick(time(22), ViewProcessorTestEnvironment.getPrimitive1(), 3d));
+  }
+
+  private static ViewProcessorTestEnvironment createEnvironment(final Long maxDeltaCalculationPeriod) {
+    final ViewProcessorTestEnvironment env = new ViewProcessorTestEnvironment();
+    final ViewDefinition viewDefinition = new ViewDefinition(UniqueId.of("Test", "Replay"), ViewProcessorTestEnvironment.TEST_VIEW_DEFINITION_NAME,
+        ViewProcessorTestEnvironment.TEST_USER);
+    final ViewCalculationConfiguration calcConfig = new ViewCalculationConfiguration(viewDefinition, ViewProcessorTestEnvironment.TEST_CALC_CONFIG_NAME);
+    calcConfig.addSpecificRequirement(ViewProcessorTestEnvironment.getPrimitive1());
+    calcConfig.addSpecificRequirement(ViewProcessorTestEnvironment.getPrimitive2());
+    viewDefinition.addViewCalculationConfiguration(calcConfig);
+    viewDefinition.setMaxDeltaCalculationPeriod(maxDeltaCalculationPeriod);
+    env.setViewDefinition(viewDefinition);
+    env.init();
+    return env;
+  }
+
+  public void testMarketDataTriggeredCycles() {
+    final ViewProcessorTestEnvironment env = createEnvironment(null);
+    final ViewProcessorImpl vp = env.getViewProcessor();
+    vp.start();
+    try {
+      final List<ViewReplayCycle> cycles = vp.replay(env.getViewDefinition().getUniqueId(), ticks().iterator(), ExecutionFlags.none().triggerOnMarketData().get());
+      assertEquals(4, cycles.size());
+      assertEquals(time(0), cycles.get(0).getValuationTime());
+      assertEquals(time(10), cycles.get(1).getValuationTime());
+      assertEquals(time(20), cycles.get(2).getValuationTime());
+      assertEquals(time(22), cycles.get(3).getValuationTime());
+      // The process is removed afterwards
+      assertTrue(vp.getViewProcesses().isEmpty());
+    } finally {
+      vp.stop();
+    }
+  }
+
+  public void testTimeTriggeredCyclesUseVirtualTime() {
+    final ViewProcessorTestEnvironment env = createEnvironment(5000L);
+    final ViewProcessorImpl vp = env.getViewProcessor();
+    vp.start();
+    try {
+      final List<ViewReplayCycle> cycles = vp.replay(env.getViewDefinition().getUniqueId(), ticks().iterator(), ExecutionFlags.none().triggerOnTimeElapsed().get());
+      // Forced at the start and after each five seconds of virtual time without needing to wait for them
+      assertEquals(5, cycles.size());
+      assertEquals(time(0), cycles.get(0).getValuationTime());
+      for (int i = 1; i < cycles.size(); i++) {
+        assertTrue(cycles.get(i).getValuationTime().isAfter(time(i * 5)));
+        assertTrue(cycles.get(i).getValuationTime().isBefore(time(i * 5 + 1)));
+      }
+    } finally {
+      vp.stop();
+    }
+  }
+
+  public void testRepeatable() {
+    final ViewProcessorTestEnvironment env = createEnvironment(5000L);
+    final ViewProcessorImpl vp = env.getViewProcessor();
+    vp.start();
+    try {
+      final List<ViewReplayCycle> first = vp.replay(env.getViewDefinition().getUniqueId(), ticks().iterator(), ExecutionFlags.triggersEnabled().get());
+      final List<ViewReplayCycle> second = vp.replay(env.getViewDefinition().getUniqueId(), ticks().iterator(), ExecutionFlags.triggersEnabled().get());
+      assertEquals(first.size(), second.size());
+      for (int i = 0; i < first.size(); i++) {
+        assertEquals(first.get(i).getValuationTime(), second.get(i).getValuationTime());
+        assertEquals(first.get(i).getExecutedNodes(), second.get(i).getExecutedNodes());
+      }
+    } finally {
+      vp.stop();
+    }
+  }
+
+}
@@ -13,6 +13,7 @@ import java.util.Map;
 
 import com.opengamma.engine.value.ValueProperties;
 import com.opengamma.engine.value.ValueRequirementNames;
+import com.opengamma.util.timeseries.BulkTimeSeriesOperations;
 import com.opengamma.util.timeseries.DoubleTimeSeries;
 import com.opengamma.util.tuple.DoublesPair;
 
@@ -97,6 +98,28 @@ public class SumUtils {
         "or present value curve sensitivities right now.");
   }
   
+  /**
+   * Adds time-series over the times present in all of them, in a single pass rather than a pair at a time.
+   * The result is the same as folding the values through {@link #addValue}.
+   * 
+   * @param values  the values to add
+   * @return the sum, null if there are fewer than three values or they are not all time-series of the same type
+   */
+  public static DoubleTimeSeries<?> addTimeSeries(final List<?> values) {
+    if (values.size() < 3) {
+      return null;
+    }
+    final DoubleTimeSeries<?>[] series = new DoubleTimeSeries<?>[values.size()];
+    for (int i = 0; i < series.length; i++) {
+      final Object value = values.get(i);
+      if (!(value instanceof DoubleTimeSeries<?>) || (value.getClass() != values.get(0).getClass())) {
+        return null;
+      }
+      series[i] = (DoubleTimeSeries<?>) value;
+    }
+    return BulkTimeSeriesOperations.sum(series);
+  }
+
   public static ValueProperties addProperties(final ValueProperties currentIntersection, final ValueProperties properties) {
     if (currentIntersection == null) {
       return properties;
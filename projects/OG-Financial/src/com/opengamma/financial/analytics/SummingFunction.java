@@ -5,8 +5,10 @@
  */
 package com.opengamma.financial.analytics;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -101,6 +103,18 @@ public class SummingFunction extends MissingInputsFunction {
       return SumUtils.addValue(previousSum, currentValue, getRequirementName());
     }
 
+    protected Object addValues(final List<Object> values) {
+      final Object sum = SumUtils.addTimeSeries(values);
+      if (sum != null) {
+        return sum;
+      }
+      Object value = null;
+      for (Object currentValue : values) {
+        value = addValue(value, currentValue);
+      }
+      return value;
+    }
+
     protected ValueProperties.Builder createValueProperties(final ValueProperties inputProperties) {
       return inputProperties.copy().withoutAny(ValuePropertyNames.FUNCTION).with(ValuePropertyNames.FUNCTION, getUniqueId());
     }
@@ -143,10 +157,10 @@ public class SummingFunction extends MissingInputsFunction {
 
     @Override
     public Set<ComputedValue> execute(final FunctionExecutionContext executionContext, final FunctionInputs inputs, final ComputationTarget target, final Set<ValueRequirement> desiredValues) {
-      Object value = null;
+      final List<Object> values = new ArrayList<Object>();
       ValueProperties properties = null;
       for (ComputedValue input : inputs.getAllValues()) {
-        value = addValue(value, input.getValue());
+        values.add(input.getValue());
         properties = SumUtils.addProperties(properties, input.getSpecification().getProperties());
       }
       if (properties == null) {
@@ -156,7 +170,7 @@ public class SummingFunction extends MissingInputsFunction {
       for (ValueSpecification input : inputs.getMissingValues()) {
         properties = SumUtils.addProperties(properties, input.getProperties());
       }
-      return Collections.singleton(new ComputedValue(new ValueSpecification(getRequirementName(), target.toSpecification(), createValueProperties(properties).get()), value));
+      return Collections.singleton(new ComputedValue(new ValueSpecification(getRequirementName(), target.toSpecification(), createValueProperties(properties).get()), addValues(values)));
     }
 
   }
@@ -0,0 +1,279 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.view.cache;
+
+import java.nio.ByteBuffer;
+
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.analytics.math.curve.Curve;
+import com.opengamma.analytics.math.curve.InterpolatedDoublesCurve;
+import com.opengamma.analytics.math.interpolation.CombinedInterpolatorExtrapolator;
+import com.opengamma.analytics.math.interpolation.CombinedInterpolatorExtrapolatorFactory;
+import com.opengamma.analytics.math.interpolation.Interpolator1D;
+import com.opengamma.analytics.math.interpolation.Interpolator1DFactory;
+import com.opengamma.analytics.math.matrix.DoubleMatrix1D;
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.engine.view.cache.AbstractBinaryValueCodec;
+import com.opengamma.engine.view.cache.BinaryValueCodecRegistry;
+import com.opengamma.financial.analytics.DoubleLabelledMatrix1D;
+
+/**
+ * Binary codecs for the common analytic result types written to the view computation cache.
+ * <p>
+ * Each codec handles the common representation of its type and declines anything else, such as curves with an
+ * interpolator that cannot be named or matrices with labels of an arbitrary type, leaving those values to the Fudge
+ * builders.
+ */
+public final class AnalyticsBinaryValueCodecs {
+
+  /**
+   * Codec identifier for {@link DoubleMatrix1D}.
+   */
+  public static final int DOUBLE_MATRIX_1D = 100;
+  /**
+   * Codec identifier for {@link DoubleMatrix2D}.
+   */
+  public static final int DOUBLE_MATRIX_2D = 101;
+  /**
+   * Codec identifier for {@link DoubleLabelledMatrix1D}.
+   */
+  public static final int DOUBLE_LABELLED_MATRIX_1D = 102;
+  /**
+   * Codec identifier for {@link YieldCurve}.
+   */
+  public static final int YIELD_CURVE = 103;
+
+  private AnalyticsBinaryValueCodecs() {
+  }
+
+  /**
+   * Registers the codecs.
+   * 
+   * @param registry the registry to add the codecs to, not null
+   */
+  public static void registerCodecs(final BinaryValueCodecRegistry registry) {
+    registry.register(DOUBLE_MATRIX_1D, DoubleMatrix1D.class, new DoubleMatrix1DCodec());
+    registry.register(DOUBLE_MATRIX_2D, DoubleMatrix2D.class, new DoubleMatrix2DCodec());
+    registry.register(DOUBLE_LABELLED_MATRIX_1D, DoubleLabelledMatrix1D.class, new DoubleLabelledMatrix1DCodec());
+    registry.register(YIELD_CURVE, YieldCurve.class, new YieldCurveCodec());
+  }
+
+  /**
+   * Creates a registry containing the codecs, for use as a Spring factory method.
+   * 
+   * @return the registry, not null
+   */
+  public static BinaryValueCodecRegistry createRegistry() {
+    final BinaryValueCodecRegistry registry = new BinaryValueCodecRegistry();
+    registerCodecs(registry);
+    return registry;
+  }
+
+  /**
+   * Codec for {@code DoubleMatrix1D}.
+   */
+  public static final class DoubleMatrix1DCodec extends AbstractBinaryValueCodec<DoubleMatrix1D> {
+
+    @Override
+    public int getEncodedSize(final DoubleMatrix1D value) {
+      return getDoublesSize(value.getData());
+    }
+
+    @Override
+    public void encode(final DoubleMatrix1D value, final ByteBuffer buffer) {
+      putDoubles(buffer, value.getData());
+    }
+
+    @Override
+    public DoubleMatrix1D decode(final ByteBuffer buffer) {
+      return new DoubleMatrix1D(getDoubles(buffer));
+    }
+
+  }
+
+  /**
+   * Codec for {@code DoubleMatrix2D}.
+   */
+  public static final class DoubleMatrix2DCodec extends AbstractBinaryValueCodec<DoubleMatrix2D> {
+
+    @Override
+    public int getEncodedSize(final DoubleMatrix2D value) {
+      return 8 + value.getNumberOfElements() * 8;
+    }
+
+    @Override
+    public void encode(final DoubleMatrix2D value, final ByteBuffer buffer) {
+      final double[][] data = value.getData();
+      buffer.putInt(value.getNumberOfRows());
+      buffer.putInt(value.getNumberOfColumns());
+      for (double[] row : data) {
+        buffer.asDoubleBuffer().put(row);
+        buffer.position(buffer.position() + row.length * 8);
+      }
+    }
+
+    @Override
+    public DoubleMatrix2D decode(final ByteBuffer buffer) {
+      final double[][] data = new double[buffer.getInt()][buffer.getInt()];
+      for (double[] row : data) {
+        buffer.asDoubleBuffer().get(row);
+        buffer.position(buffer.position() + row.length * 8);
+      }
+      return new DoubleMatrix2D(data);
+    }
+
+  }
+
+  /**
+   * Codec for {@code DoubleLabelledMatrix1D} when the labels are all strings or doubles.
+   */
+  public static final class DoubleLabelledMatrix1DCodec extends AbstractBinaryValueCodec<DoubleLabelledMatrix1D> {
+
+    private static final byte NULL_LABEL = 0;
+    private static final byte STRING_LABEL = 1;
+    private static final byte DOUBLE_LABEL = 2;
+
+    @Override
+    public int getEncodedSize(final DoubleLabelledMatrix1D value) {
+      int size = getStringSize(value.getLabelsTitle()) + getStringSize(value.getValuesTitle()) + getDoublesSize(value.getValues()) + value.size() * 8;
+      for (Object label : value.getLabels()) {
+        if (label == null) {
+          size += 1;
+        } else if (label instanceof String) {
+          size += 1 + getStringSize((String) label);
+        } else if (label instanceof Double) {
+          size += 9;
+        } else {
+          return -1;
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public void encode(final DoubleLabelledMatrix1D value, final ByteBuffer buffer) {
+      putString(buffer, value.getLabelsTitle());
+      putString(buffer, value.getValuesTitle());
+      putDoubles(buffer, value.getValues());
+      for (Double key : value.getKeys()) {
+        buffer.putDouble(key);
+      }
+      for (Object label : value.getLabels()) {
+        if (label == null) {
+          buffer.put(NULL_LABEL);
+        } else if (label instanceof String) {
+          buffer.put(STRING_LABEL);
+          putString(buffer, (String) label);
+        } else {
+          buffer.put(DOUBLE_LABEL);
+          buffer.putDouble((Double) label);
+        }
+      }
+    }
+
+    @Override
+    public DoubleLabelledMatrix1D decode(final ByteBuffer buffer) {
+      final String labelsTitle = getString(buffer);
+      final String valuesTitle = getString(buffer);
+      final double[] values = getDoubles(buffer);
+      final Double[] keys = new Double[values.length];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = buffer.getDouble();
+      }
+      final Object[] labels = new Object[values.length];
+      for (int i = 0; i < labels.length; i++) {
+        switch (buffer.get()) {
+          case STRING_LABEL:
+            labels[i] = getString(buffer);
+            break;
+          case DOUBLE_LABEL:
+            labels[i] = buffer.getDouble();
+            break;
+          default:
+            break;
+        }
+      }
+      return new DoubleLabelledMatrix1D(keys, labels, labelsTitle, values, valuesTitle);
+    }
+
+  }
+
+  /**
+   * Codec for {@code YieldCurve} when the underlying curve is an {@link InterpolatedDoublesCurve} using a named
+   * interpolator.
+   */
+  public static final class YieldCurveCodec extends AbstractBinaryValueCodec<YieldCurve> {
+
+    private static final byte INTERPOLATOR = 0;
+    private static final byte COMBINED_INTERPOLATOR_EXTRAPOLATOR = 1;
+
+    @Override
+    public int getEncodedSize(final YieldCurve value) {
+      final Curve<Double, Double> curve = value.getCurve();
+      if (!(curve instanceof InterpolatedDoublesCurve)) {
+        return -1;
+      }
+      final InterpolatedDoublesCurve interpolated = (InterpolatedDoublesCurve) curve;
+      final int size = getStringSize(interpolated.getName()) + getDoublesSize(interpolated.getXDataAsPrimitive()) + getDoublesSize(interpolated.getYDataAsPrimitive()) + 1;
+      final Interpolator1D interpolator = interpolated.getInterpolator();
+      if (interpolator instanceof CombinedInterpolatorExtrapolator) {
+        final CombinedInterpolatorExtrapolator combined = (CombinedInterpolatorExtrapolator) interpolator;
+        final String name = Interpolator1DFactory.getInterpolatorName(combined.getInterpolator());
+        final String leftName = Interpolator1DFactory.getInterpolatorName(combined.getLeftExtrapolator());
+        final String rightName = Interpolator1DFactory.getInterpolatorName(combined.getRightExtrapolator());
+        // The factory can't create an instance with only one of the extrapolators
+        if ((name == null) || ((leftName == null) != (rightName == null))) {
+          return -1;
+        }
+        return size + getStringSize(name) + getStringSize(leftName) + getStringSize(rightName);
+      } else {
+        final String name = Interpolator1DFactory.getInterpolatorName(interpolator);
+        if (name == null) {
+          return -1;
+        }
+        return size + getStringSize(name);
+      }
+    }
+
+    @Override
+    public void encode(final YieldCurve value, final ByteBuffer buffer) {
+      final InterpolatedDoublesCurve curve = (InterpolatedDoublesCurve) value.getCurve();
+      putString(buffer, curve.getName());
+      putDoubles(buffer, curve.getXDataAsPrimitive());
+      putDoubles(buffer, curve.getYDataAsPrimitive());
+      final Interpolator1D interpolator = curve.getInterpolator();
+      if (interpolator instanceof CombinedInterpolatorExtrapolator) {
+        final CombinedInterpolatorExtrapolator combined = (CombinedInterpolatorExtrapolator) interpolator;
+        buffer.put(COMBINED_INTERPOLATOR_EXTRAPOLATOR);
+        putString(buffer, Interpolator1DFactory.getInterpolatorName(combined.getInterpolator()));
+        putString(buffer, Interpolator1DFactory.getInterpolatorName(combined.getLeftExtrapolator()));
+        putString(buffer, Interpolator1DFactory.getInterpolatorName(combined.getRightExtrapolator()));
+      } else {
+        buffer.put(INTERPOLATOR);
+        putString(buffer, Interpolator1DFactory.getInterpolatorName(interpolator));
+      }
+    }
+
+    @Override
+    public YieldCurve decode(final ByteBuffer buffer) {
+      final String name = getString(buffer);
+      final double[] x = getDoubles(buffer);
+      final double[] y = getDoubles(buffer);
+      final Interpolator1D interpolator;
+      if (buffer.get() == COMBINED_INTERPOLATOR_EXTRAPOLATOR) {
+        final String interpolatorName = getString(buffer);
+        final String leftExtrapolatorName = getString(buffer);
+        final String rightExtrapolatorName = getString(buffer);
+        interpolator = CombinedInterpolatorExtrapolatorFactory.getInterpolator(interpolatorName, leftExtrapolatorName, rightExtrapolatorName);
+      } else {
+        interpolator = Interpolator1DFactory.getInterpolator(getString(buffer));
+      }
+      return new YieldCurve(InterpolatedDoublesCurve.fromSorted(x, y, interpolator, name));
+    }
+
+  }
+
+}
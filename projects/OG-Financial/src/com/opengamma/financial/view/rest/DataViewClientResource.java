@@ -65,8 +65,11 @@ public class DataViewClientResource extends AbstractRestfulJmsResultPublisher {
   public static final String PATH_TRIGGER_CYCLE = "triggerCycle";
 
   public static final String PATH_UPDATE_PERIOD = "updatePeriod";
+  public static final String PATH_FRAGMENT_UPDATE_PERIOD = "fragmentUpdatePeriod";
+  public static final String PATH_FRAGMENT_BATCH_SIZE = "fragmentBatchSize";
   
   public static final String UPDATE_PERIOD_FIELD = "updatePeriod";
+  public static final String FRAGMENT_BATCH_SIZE_FIELD = "fragmentBatchSize";
   public static final String VIEW_CYCLE_ACCESS_SUPPORTED_FIELD = "isViewCycleAccessSupported";
   //CSON: just constants
   
@@ -178,6 +181,26 @@ public class DataViewClientResource extends AbstractRestfulJmsResultPublisher {
     return responseOk();
   }
 
+  @PUT
+  @Path(PATH_FRAGMENT_UPDATE_PERIOD)
+  @Consumes(FudgeRest.MEDIA)
+  public Response setFragmentUpdatePeriod(FudgeMsg msg) {
+    updateLastAccessed();
+    long periodMillis = msg.getLong(UPDATE_PERIOD_FIELD);
+    getViewClient().setFragmentUpdatePeriod(periodMillis);
+    return responseOk();
+  }
+
+  @PUT
+  @Path(PATH_FRAGMENT_BATCH_SIZE)
+  @Consumes(FudgeRest.MEDIA)
+  public Response setFragmentBatchSize(FudgeMsg msg) {
+    updateLastAccessed();
+    int batchSize = msg.getInt(FRAGMENT_BATCH_SIZE_FIELD);
+    getViewClient().setFragmentBatchSize(batchSize);
+    return responseOk();
+  }
+
   //-------------------------------------------------------------------------
   @GET
   @Path(PATH_RESULT_MODE)
@@ -252,6 +252,22 @@ public class RemoteViewClient extends AbstractRestfulJmsResultConsumer implement
     getClient().accessFudge(uri).put(viewResultMode);
   }
 
+  @Override
+  public void setFragmentUpdatePeriod(long periodMillis) {
+    URI uri = getUri(getBaseUri(), DataViewClientResource.PATH_FRAGMENT_UPDATE_PERIOD);
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add(DataViewClientResource.UPDATE_PERIOD_FIELD, periodMillis);
+    getClient().accessFudge(uri).put(msg);
+  }
+
+  @Override
+  public void setFragmentBatchSize(int batchSize) {
+    URI uri = getUri(getBaseUri(), DataViewClientResource.PATH_FRAGMENT_BATCH_SIZE);
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add(DataViewClientResource.FRAGMENT_BATCH_SIZE_FIELD, batchSize);
+    getClient().accessFudge(uri).put(msg);
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public void pause() {
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.depgraph;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.impl.MockPositionSource;
+import com.opengamma.core.position.impl.SimplePortfolio;
+import com.opengamma.core.value.MarketDataRequirementNames;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.DefaultComputationTargetResolver;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyGraphBuilder;
+import com.opengamma.engine.depgraph.DependencyGraphBuilderFactory;
+import com.opengamma.engine.function.AbstractFunction;
+import com.opengamma.engine.function.CachingFunctionRepositoryCompiler;
+import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.function.FunctionCompilationContext;
+import com.opengamma.engine.function.FunctionExecutionContext;
+import com.opengamma.engine.function.FunctionInputs;
+import com.opengamma.engine.function.InMemoryFunctionRepository;
+import com.opengamma.engine.function.PortfolioStructure;
+import com.opengamma.engine.function.resolver.CompiledFunctionResolver;
+import com.opengamma.engine.function.resolver.DefaultFunctionResolver;
+import com.opengamma.engine.marketdata.availability.DomainMarketDataAvailabilityProvider;
+import com.opengamma.engine.test.MockSecuritySource;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.financial.generator.LeafPortfolioNodeGenerator;
+import com.opengamma.financial.generator.MockSecurityPersister;
+import com.opengamma.financial.generator.PortfolioGenerator;
+import com.opengamma.financial.generator.SecurityGenerator;
+import com.opengamma.financial.generator.SecurityPersister;
+import com.opengamma.financial.generator.SimplePositionGenerator;
+import com.opengamma.financial.generator.StaticNameGenerator;
+import com.opengamma.financial.generator.StaticQuantityGenerator;
+import com.opengamma.financial.generator.TreePortfolioNodeGenerator;
+import com.opengamma.id.UniqueId;
+import com.opengamma.master.security.RawSecurity;
+
+/**
+ * Repeatable benchmark of dependency graph construction over a synthetic portfolio.
+ * <p>
+ * Each position value requires a security value, which requires market data on the security and a single curve
+ * shared by all securities. The full benchmark is disabled by default; run {@link #benchmark} by hand to measure
+ * how construction scales with {@link DependencyGraphBuilder#setMaxAdditionalThreads}.
+ */
+@Test
+public class DependencyGraphBuildBenchmarkTest {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(DependencyGraphBuildBenchmarkTest.class);
+
+  private static final String VALUE = "Value";
+  private static final String CURVE = "Curve";
+  private static final int POSITIONS_PER_NODE = 100;
+
+  private static final class PositionValueFunction extends AbstractFunction.NonCompiledInvoker {
+
+    @Override
+    public ComputationTargetType getTargetType() {
+      return ComputationTargetType.POSITION;
+    }
+
+    @Override
+    public boolean canApplyTo(final FunctionCompilationContext context, final ComputationTarget target) {
+      return target.getPosition().getSecurity() != null;
+    }
+
+    @Override
+    public Set<ValueRequirement> getRequirements(final FunctionCompilationContext context, final ComputationTarget target, final ValueRequirement desiredValue) {
+      return Collections.singleton(new ValueRequirement(VALUE, ComputationTargetType.SECURITY, target.getPosition().getSecurity().getUniqueId()));
+    }
+
+    @Override
+    public Set<ValueSpecification> getResults(final FunctionCompilationContext context, final ComputationTarget target) {
+      return Collections.singleton(new ValueSpecification(VALUE, target.toSpecification(), createValueProperties().get()));
+    }
+
+    @Override
+    public Set<ComputedValue> execute(final FunctionExecutionContext executionContext, final FunctionInputs inputs, final ComputationTarget target, final Set<ValueRequirement> desiredValues) {
+      throw new UnsupportedOperationException();
+    }
+
+  }
+
+  private static final class SecurityValueFunction extends AbstractFunction.NonCompiledInvoker {
+
+    @Override
+    public ComputationTargetType getTargetType() {
+      return ComputationTargetType.SECURITY;
+    }
+
+    @Override
+    public boolean canApplyTo(final FunctionCompilationContext context, final ComputationTarget target) {
+      return true;
+    }
+
+    @Override
+    public Set<ValueRequirement> getRequirements(final FunctionCompilationContext context, final ComputationTarget target, final ValueRequirement desiredValue) {
+      final Set<ValueRequirement> requirements = new HashSet<ValueRequirement>();
+      requirements.add(new ValueRequirement(MarketDataRequirementNames.MARKET_VALUE, target.toSpecification()));
+      requirements.add(new ValueRequirement(CURVE, ComputationTargetType.PRIMITIVE, UniqueId.of(CURVE, "USD")));
+      return requirements;
+    }
+
+    @Override
+    public Set<ValueSpecification> getResults(final FunctionCompilationContext context, final ComputationTarget target) {
+      return Collections.singleton(new ValueSpecification(VALUE, target.toSpecification(), createValueProperties().get()));
+    }
+
+    @Override
+    public Set<ComputedValue> execute(final FunctionExecutionContext executionContext, final FunctionInputs inputs, final ComputationTarget target, final Set<ValueRequirement> desiredValues) {
+      throw new UnsupportedOperationException();
+    }
+
+  }
+
+  private static final class CurveFunction extends AbstractFunction.NonCompiledInvoker {
+
+    @Override
+    public ComputationTargetType getTargetType() {
+      return ComputationTargetType.PRIMITIVE;
+    }
+
+    @Override
+    public boolean canApplyTo(final FunctionCompilationContext context, final ComputationTarget target) {
+      return CURVE.equals(target.getUniqueId().getScheme());
+    }
+
+    @Override
+    public Set<ValueRequirement> getRequirements(final FunctionCompilationContext context, final ComputationTarget target, final ValueRequirement desiredValue) {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<ValueSpecification> getResults(final FunctionCompilationContext context, final ComputationTarget target) {
+      return Collections.singleton(new ValueSpecification(CURVE, target.toSpecification(), createValueProperties().get()));
+    }
+
+    @Override
+    public Set<ComputedValue> execute(final FunctionExecutionContext executionContext, final FunctionInputs inputs, final ComputationTarget target, final Set<ValueRequirement> desiredValues) {
+      throw new UnsupportedOperationException();
+    }
+
+  }
+
+  /**
+   * A generated portfolio and the resources needed to build graphs for it.
+   */
+  private static final class Environment {
+
+    private final FunctionCompilationContext _context = new FunctionCompilationContext();
+    private final Set<ValueRequirement> _requirements = new HashSet<ValueRequirement>();
+    private final DomainMarketDataAvailabilityProvider _marketData;
+    private final CompiledFunctionResolver _functions;
+
+    private Environment(final int positions) {
+      final MockSecuritySource securities = new MockSecuritySource();
+      final SecurityPersister persister = new MockSecurityPersister(securities);
+      final SecurityGenerator<RawSecurity> securityGenerator = new SecurityGenerator<RawSecurity>() {
+
+        private int _count;
+
+        @Override
+        public RawSecurity createSecurity() {
+          final RawSecurity security = new RawSecurity("BENCHMARK");
+          security.setName("Security " + (_count++));
+          return security;
+        }
+
+      };
+      final SimplePositionGenerator<RawSecurity> positionGenerator = new SimplePositionGenerator<RawSecurity>(new StaticQuantityGenerator(1), securityGenerator, persister);
+      final TreePortfolioNodeGenerator rootGenerator = new TreePortfolioNodeGenerator(new StaticNameGenerator("Root"));
+      for (int i = 0; i < positions; i += POSITIONS_PER_NODE) {
+        rootGenerator.addChildNode(new LeafPortfolioNodeGenerator(new StaticNameGenerator("Node"), positionGenerator, Math.min(POSITIONS_PER_NODE, positions - i)));
+      }
+      final SimplePortfolio portfolio = (SimplePortfolio) new PortfolioGenerator(rootGenerator, new StaticNameGenerator("Benchmark")).createPortfolio();
+      portfolio.setUniqueId(UniqueId.of("Portfolio", "Benchmark"));
+      final MockPositionSource positionSource = new MockPositionSource();
+      positionSource.addPortfolio(portfolio);
+      _context.setSecuritySource(securities);
+      _context.setPortfolioStructure(new PortfolioStructure(positionSource));
+      addRequirements(positionSource.getPortfolio(portfolio.getUniqueId()));
+      final InMemoryFunctionRepository repository = new InMemoryFunctionRepository();
+      repository.addFunction(new PositionValueFunction());
+      repository.addFunction(new SecurityValueFunction());
+      repository.addFunction(new CurveFunction());
+      final CompiledFunctionService compilationService = new CompiledFunctionService(repository, new CachingFunctionRepositoryCompiler(), _context);
+      compilationService.initialize();
+      _functions = new DefaultFunctionResolver(compilationService).compile(Instant.now());
+      _marketData = new DomainMarketDataAvailabilityProvider(securities, Collections.singleton(persister.getScheme()), Collections
+          .singleton(MarketDataRequirementNames.MARKET_VALUE));
+    }
+
+    private void addRequirements(final Portfolio portfolio) {
+      for (PortfolioNode node : portfolio.getRootNode().getChildNodes()) {
+        for (Position position : node.getPositions()) {
+          _requirements.add(new ValueRequirement(VALUE, ComputationTargetType.POSITION, position.getUniqueId()));
+        }
+      }
+    }
+
+    private Set<ValueRequirement> getRequirements() {
+      return _requirements;
+    }
+
+    private DependencyGraph buildGraph(final int threads) {
+      final DependencyGraphBuilder builder = new DependencyGraphBuilderFactory().newInstance();
+      builder.setCalculationConfigurationName("Default");
+      builder.setCompilationContext(_context);
+      builder.setFunctionResolver(_functions);
+      builder.setTargetResolver(new DefaultComputationTargetResolver(_context.getSecuritySource(), _context.getPortfolioStructure().getPositionSource()));
+      builder.setMarketDataAvailabilityProvider(_marketData);
+      builder.setMaxAdditionalThreads(threads);
+      builder.addTarget(getRequirements());
+      return builder.getDependencyGraph();
+    }
+
+  }
+
+  public void testBuildIndependentOfThreads() {
+    final Environment environment = new Environment(250);
+    final DependencyGraph sequential = environment.buildGraph(0);
+    // Position, security and market data nodes for each position plus the shared curve
+    assertEquals(sequential.getSize(), 250 * 3 + 1);
+    assertEquals(sequential.getTerminalOutputSpecifications().size(), 250);
+    final DependencyGraph parallel = environment.buildGraph(4);
+    assertEquals(parallel.getSize(), sequential.getSize());
+    assertEquals(parallel.getTerminalOutputSpecifications(), sequential.getTerminalOutputSpecifications());
+  }
+
+  @Test(enabled = false)
+  public void benchmark() {
+    final int repeats = 3;
+    final Environment environment = new Environment(80000);
+    s_logger.info("Generated {} position requirements", environment.getRequirements().size());
+    // Warm up
+    environment.buildGraph(Runtime.getRuntime().availableProcessors());
+    double baseline = 0;
+    final List<Integer> threadCounts = Arrays.asList(0, 1, 2, 4, 8, 16, 32);
+    for (int threads : threadCounts) {
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < repeats; i++) {
+        final long start = System.nanoTime();
+        environment.buildGraph(threads);
+        final long time = System.nanoTime() - start;
+        if (time < best) {
+          best = time;
+        }
+      }
+      if (threads == 0) {
+        baseline = best;
+      }
+      s_logger.info("{} additional threads: {}ms, speedup {}", new Object[] {threads, best / 1000000, baseline / best });
+    }
+  }
+
+}
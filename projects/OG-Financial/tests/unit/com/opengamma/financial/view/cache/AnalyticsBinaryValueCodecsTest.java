@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import javax.time.calendar.LocalDate;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.analytics.math.curve.ConstantDoublesCurve;
+import com.opengamma.analytics.math.curve.InterpolatedDoublesCurve;
+import com.opengamma.analytics.math.interpolation.CombinedInterpolatorExtrapolatorFactory;
+import com.opengamma.analytics.math.interpolation.Interpolator1DFactory;
+import com.opengamma.analytics.math.matrix.DoubleMatrix1D;
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.engine.view.cache.BinaryValueCodecRegistry;
+import com.opengamma.financial.analytics.DoubleLabelledMatrix1D;
+
+/**
+ * Tests the {@link AnalyticsBinaryValueCodecs} class.
+ */
+@Test
+public class AnalyticsBinaryValueCodecsTest {
+
+  private final BinaryValueCodecRegistry _registry = AnalyticsBinaryValueCodecs.createRegistry();
+
+  private Object cycle(final Object value) {
+    final byte[] data = _registry.encode(value);
+    assertNotNull(data);
+    return _registry.decode(data);
+  }
+
+  public void testDoubleMatrix1D() {
+    final DoubleMatrix1D matrix = new DoubleMatrix1D(1d, 2d, 3d);
+    assertEquals(matrix, cycle(matrix));
+    assertEquals(DoubleMatrix1D.EMPTY_MATRIX, cycle(DoubleMatrix1D.EMPTY_MATRIX));
+  }
+
+  public void testDoubleMatrix2D() {
+    final DoubleMatrix2D matrix = new DoubleMatrix2D(new double[][] { {1d, 2d, 3d }, {4d, 5d, 6d } });
+    assertEquals(matrix, cycle(matrix));
+    assertEquals(DoubleMatrix2D.EMPTY_MATRIX, cycle(DoubleMatrix2D.EMPTY_MATRIX));
+  }
+
+  public void testDoubleLabelledMatrix1D() {
+    final Double[] keys = new Double[] {1d, 2d, 3d };
+    final double[] values = new double[] {0.1, 0.2, 0.3 };
+    DoubleLabelledMatrix1D matrix = new DoubleLabelledMatrix1D(keys, new Object[] {"A", 2d, null }, "Labels", values, "Values");
+    DoubleLabelledMatrix1D result = (DoubleLabelledMatrix1D) cycle(matrix);
+    assertEquals(matrix, result);
+    assertEquals("Labels", result.getLabelsTitle());
+    assertEquals("Values", result.getValuesTitle());
+    matrix = new DoubleLabelledMatrix1D(keys, values);
+    assertEquals(matrix, cycle(matrix));
+  }
+
+  public void testDoubleLabelledMatrix1DOtherLabels() {
+    final DoubleLabelledMatrix1D matrix = new DoubleLabelledMatrix1D(new Double[] {1d }, new Object[] {LocalDate.of(2012, 1, 1) }, new double[] {0.1 });
+    assertNull(_registry.encode(matrix));
+  }
+
+  public void testYieldCurve() {
+    final double[] x = new double[] {1d, 2d, 3d };
+    final double[] y = new double[] {0.03, 0.04, 0.05 };
+    YieldCurve curve = new YieldCurve(InterpolatedDoublesCurve.fromSorted(x, y, Interpolator1DFactory.getInterpolator(Interpolator1DFactory.LINEAR), "Test"));
+    assertEquals(curve, cycle(curve));
+    curve = new YieldCurve(InterpolatedDoublesCurve.fromSorted(x, y, CombinedInterpolatorExtrapolatorFactory.getInterpolator(Interpolator1DFactory.LINEAR,
+        Interpolator1DFactory.FLAT_EXTRAPOLATOR, Interpolator1DFactory.LINEAR_EXTRAPOLATOR), "Test"));
+    assertEquals(curve, cycle(curve));
+  }
+
+  public void testYieldCurveOtherCurve() {
+    assertNull(_registry.encode(new YieldCurve(ConstantDoublesCurve.from(0.05))));
+  }
+
+}
@@ -199,6 +199,16 @@ import com.opengamma.livedata.UserPrincipal;
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void setFragmentUpdatePeriod(final long periodMillis) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setFragmentBatchSize(final int batchSize) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void setViewCycleAccessSupported(final boolean isViewCycleAccessSupported) {
     throw new UnsupportedOperationException();
@@ -5,10 +5,14 @@
  */
 package com.opengamma.master.historicaltimeseries;
 
+import java.util.Collection;
+import java.util.Map;
+
 import javax.time.calendar.LocalDate;
 
 import com.opengamma.DataNotFoundException;
 import com.opengamma.core.change.ChangeProvider;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.ObjectIdentifiable;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
@@ -108,6 +112,20 @@ public interface HistoricalTimeSeriesMaster extends AbstractMaster<HistoricalTim
    */  
   ManageableHistoricalTimeSeries getTimeSeries(ObjectIdentifiable objectId, VersionCorrection versionCorrection, HistoricalTimeSeriesGetFilter filter);
 
+  /**
+   * Returns subsets of the data points of many time-series at once.
+   * <p>
+   * This is equivalent to calling {@link #getTimeSeries(ObjectIdentifiable, VersionCorrection, HistoricalTimeSeriesGetFilter)}
+   * for each identifier, but allows an implementation to load all of the series together.
+   * 
+   * @param objectIds  the time-series data points object identifiers, not null
+   * @param versionCorrection  the version-correction locator to search at, not null
+   * @param filter  the time-series subset filter, applied to each series, not null
+   * @return the time-series keyed by object identifier, not null, omitting any that do not exist
+   * @throws IllegalArgumentException if the request is invalid
+   */
+  Map<ObjectId, ManageableHistoricalTimeSeries> getTimeSeries(Collection<ObjectId> objectIds, VersionCorrection versionCorrection, HistoricalTimeSeriesGetFilter filter);
+
   //-------------------------------------------------------------------------
   /**
    * Adds to the time-series by appending new data points.
@@ -0,0 +1,1003 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.historicaltimeseries.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import javax.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.id.ObjectId;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.TimeSeriesBlockCodec;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+
+/**
+ * Stores the data points of daily time-series as compressed blocks in local files.
+ * <p>
+ * Each series is held in its own file of records. A record is a block of points encoded by
+ * {@link TimeSeriesBlockCodec} together with the version and correction instants it was written at.
+ * Appended points, corrected points and removed dates are each written as new records at the end of the
+ * file, so any earlier version-correction can be read back by ignoring the points written after it.
+ * When several visible records hold the same date the last one written wins, as each record is written
+ * with a correction instant no earlier than those before it.
+ * <p>
+ * Daily updates append a few points at a time, so a file is compacted once enough small appended records
+ * have been written. Compaction merges each run of consecutive appended records into records of up to
+ * {@link #BLOCK_SIZE} points. A merged record keeps the version instant of each run of points within it,
+ * so compaction does not change what is read at any version-correction. The compacted file is written
+ * alongside the original and renamed over it, so a reader or a failed compaction sees one file or the other.
+ * <p>
+ * Files are memory-mapped to be read and each block decoded directly into the primitive arrays of
+ * the result. A read that finds only appended points, the common case, needs no further work and a
+ * series of all the points is backed by those arrays without copying them. The mapping is released
+ * as soon as the points have been decoded.
+ * <p>
+ * Each record ends with a checksum. A reader ignores a record that is still being written, or was
+ * left incomplete by a failed write; the store removes such a record before it next writes to the file.
+ * <p>
+ * Writes to the store are serialized. The latest date of each series written to is remembered so that
+ * appending does not read the whole series. Reads are not locked.
+ */
+public class BlockFileDataPointsStore {
+
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(BlockFileDataPointsStore.class);
+
+  /**
+   * The file extension of a series.
+   */
+  public static final String FILE_EXTENSION = ".hts";
+
+  private static final int MAGIC = 0x4F474854;
+  private static final int FORMAT_VERSION = 3;
+  private static final int FILE_HEADER_SIZE = 4 + 4 + 8 + 4;
+  private static final int RECORD_HEADER_SIZE = 1 + 8 + 4 + 4 + 4 + 4;
+  private static final int SEGMENT_SIZE = 4 + 8 + 4;
+  private static final int RECORD_TRAILER_SIZE = 4;
+  /**
+   * The most points compaction merges into one record.
+   */
+  public static final int BLOCK_SIZE = 1024;
+  /**
+   * The number of appended records of fewer than {@link #BLOCK_SIZE} points written to a series before it is compacted.
+   */
+  private static final int COMPACTION_THRESHOLD = 32;
+
+  private static final byte APPEND = 1;
+  private static final byte CORRECT = 2;
+  private static final byte REMOVE = 3;
+
+  /**
+   * The directory holding the files.
+   */
+  private final File _directory;
+  /**
+   * The state of the end of each series written to, guarded by this.
+   */
+  private final Map<ObjectId, Tail> _tails = new HashMap<ObjectId, Tail>();
+
+  /**
+   * Creates an instance.
+   *
+   * @param directory  the directory to hold the files, created if necessary, not null
+   */
+  public BlockFileDataPointsStore(final File directory) {
+    ArgumentChecker.notNull(directory, "directory");
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new OpenGammaRuntimeException("Unable to create directory " + directory);
+    }
+    _directory = directory;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the directory holding the files.
+   *
+   * @return the directory, not null
+   */
+  public File getDirectory() {
+    return _directory;
+  }
+
+  /**
+   * Gets the file holding a series. Files are spread over 256 sub-directories to keep directories small.
+   *
+   * @param objectId  the series object identifier, not null
+   * @return the file, not null
+   */
+  protected File getFile(final ObjectId objectId) {
+    final String name;
+    try {
+      name = URLEncoder.encode(objectId.toString(), "UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new OpenGammaRuntimeException("UTF-8 not supported", ex);
+    }
+    final String bucket = Integer.toHexString(0x100 | (objectId.hashCode() & 0xFF)).substring(1);
+    return new File(new File(_directory, bucket), name + FILE_EXTENSION);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an empty series.
+   *
+   * @param objectId  the series object identifier, not null
+   * @param now  the instant the series is created at, not null
+   * @throws IllegalArgumentException if the series already exists
+   */
+  public synchronized void create(final ObjectId objectId, final Instant now) {
+    ArgumentChecker.notNull(objectId, "objectId");
+    ArgumentChecker.notNull(now, "now");
+    final File file = getFile(objectId);
+    if (file.exists()) {
+      throw new IllegalArgumentException("Time-series already exists: " + objectId);
+    }
+    final File parent = file.getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new OpenGammaRuntimeException("Unable to create directory " + parent);
+    }
+    final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+    header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(now.getEpochSeconds()).putInt(now.getNanoOfSecond());
+    header.flip();
+    final Tail tail = new Tail(0);
+    write(file, tail, header);
+    tail._latestDate = Integer.MIN_VALUE;
+    _tails.put(objectId, tail);
+  }
+
+  /**
+   * Checks if a series exists.
+   *
+   * @param objectId  the series object identifier, not null
+   * @return true if the series has been created
+   */
+  public boolean exists(final ObjectId objectId) {
+    return getFile(objectId).exists();
+  }
+
+  /**
+   * Appends data points after the latest point of a series.
+   *
+   * @param objectId  the series object identifier, not null
+   * @param dates  the dates as epoch days, in ascending order, not null
+   * @param values  the values, not null
+   * @param now  the instant to write the points at, not null
+   * @throws DataNotFoundException if the series does not exist
+   * @throws IllegalArgumentException if the points do not start after the latest point of the series
+   */
+  public synchronized void append(final ObjectId objectId, final int[] dates, final double[] values, final Instant now) {
+    ArgumentChecker.notNull(dates, "dates");
+    ArgumentChecker.notNull(values, "values");
+    ArgumentChecker.notNull(now, "now");
+    if (dates.length == 0) {
+      return;
+    }
+    final Tail tail = getTail(objectId);
+    if (dates[0] <= getLatestDate(objectId, tail, now)) {
+      throw new IllegalArgumentException("Unable to update data points of time-series " + objectId +
+          " as the update starts before the latest data point");
+    }
+    final List<Segment> segments = Collections.singletonList(new Segment(dates.length, now));
+    write(getFile(objectId), tail, record(APPEND, now, dates, values, 0, dates.length, segments));
+    tail._latestDate = dates[dates.length - 1];
+    if (dates.length < BLOCK_SIZE) {
+      tail._partialAppends++;
+      if (tail._partialAppends - tail._compactedPartialAppends >= COMPACTION_THRESHOLD) {
+        compact(objectId, tail);
+      }
+    }
+  }
+
+  /**
+   * Corrects data points of a series, adding any dates not present.
+   * <p>
+   * As in the database master, a corrected point takes the version instant at which its date
+   * was first written, whether appended or added by an earlier correction, so that the correction
+   * applies to every version containing the date.
+   *
+   * @param objectId  the series object identifier, not null
+   * @param dates  the dates as epoch days, in ascending order, not null
+   * @param values  the values, not null
+   * @param now  the instant to correct the points at, not null
+   * @throws DataNotFoundException if the series does not exist
+   */
+  public synchronized void correct(final ObjectId objectId, final int[] dates, final double[] values, final Instant now) {
+    writeCorrections(objectId, CORRECT, dates, values, now);
+    if (dates.length > 0) {
+      final Tail tail = _tails.get(objectId);
+      if (tail._latestDate != null) {
+        tail._latestDate = Math.max(tail._latestDate, dates[dates.length - 1]);
+      }
+    }
+  }
+
+  /**
+   * Removes data points from a series.
+   *
+   * @param objectId  the series object identifier, not null
+   * @param fromDate  the first date to remove as epoch days, inclusive
+   * @param toDate  the last date to remove as epoch days, inclusive
+   * @param now  the instant to remove the points at, not null
+   * @throws DataNotFoundException if the series does not exist
+   */
+  public synchronized void remove(final ObjectId objectId, final int fromDate, final int toDate, final Instant now) {
+    ArgumentChecker.notNull(now, "now");
+    final Points latest = read(objectId, now, now);
+    if (latest == null) {
+      throw new DataNotFoundException("Time-series not found: " + objectId);
+    }
+    final int[] latestDates = latest.getDates();
+    int from = Arrays.binarySearch(latestDates, 0, latest.size(), fromDate);
+    from = (from < 0) ? -(from + 1) : from;
+    int to = Arrays.binarySearch(latestDates, 0, latest.size(), toDate);
+    to = (to < 0) ? -(to + 1) : to + 1;
+    if (from < to) {
+      writeCorrections(objectId, REMOVE, Arrays.copyOfRange(latestDates, from, to), new double[to - from], now);
+      if (to == latest.size()) {
+        // the latest date was removed
+        _tails.get(objectId)._latestDate = null;
+      }
+    }
+  }
+
+  private void writeCorrections(final ObjectId objectId, final byte type, final int[] dates, final double[] values, final Instant now) {
+    ArgumentChecker.notNull(objectId, "objectId");
+    ArgumentChecker.notNull(dates, "dates");
+    ArgumentChecker.notNull(values, "values");
+    ArgumentChecker.notNull(now, "now");
+    if (dates.length == 0) {
+      return;
+    }
+    final File file = getFile(objectId);
+    final Tail tail = getTail(objectId);
+    // find the version each date was first written at, whether appended or added by a correction
+    final Instant[] versions = new Instant[dates.length];
+    final MappedByteBuffer buffer = map(file, tail._length);
+    try {
+      int[] blockDates = new int[0];
+      double[] blockValues = new double[0];
+      buffer.position(FILE_HEADER_SIZE);
+      while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+        final Record record = new Record(buffer);
+        if (!record.isComplete(buffer)) {
+          break;
+        }
+        if (record._type != REMOVE) {
+          if (blockDates.length < record._count) {
+            blockDates = new int[record._count];
+            blockValues = new double[record._count];
+          }
+          record.decode(buffer, blockDates, blockValues, 0);
+          for (int i = 0; i < dates.length; i++) {
+            if (versions[i] == null) {
+              final int index = Arrays.binarySearch(blockDates, 0, record._count, dates[i]);
+              if (index >= 0) {
+                versions[i] = record.getVersionOf(index);
+              }
+            }
+          }
+        }
+        buffer.position(record._next);
+      }
+    } finally {
+      unmap(buffer);
+    }
+    // write a record for each version, ordered by the version
+    final Map<Instant, List<Integer>> byVersion = new LinkedHashMap<Instant, List<Integer>>();
+    for (int i = 0; i < dates.length; i++) {
+      final Instant version = (versions[i] != null) ? versions[i] : now;
+      List<Integer> indices = byVersion.get(version);
+      if (indices == null) {
+        indices = new ArrayList<Integer>();
+        byVersion.put(version, indices);
+      }
+      indices.add(i);
+    }
+    final List<ByteBuffer> records = new ArrayList<ByteBuffer>(byVersion.size());
+    int size = 0;
+    for (Map.Entry<Instant, List<Integer>> entry : byVersion.entrySet()) {
+      final List<Integer> indices = entry.getValue();
+      final int[] recordDates = new int[indices.size()];
+      final double[] recordValues = new double[indices.size()];
+      for (int i = 0; i < recordDates.length; i++) {
+        recordDates[i] = dates[indices.get(i)];
+        recordValues[i] = values[indices.get(i)];
+      }
+      final ByteBuffer record = record(type, now, recordDates, recordValues, 0, recordDates.length,
+          Collections.singletonList(new Segment(recordDates.length, entry.getKey())));
+      records.add(record);
+      size += record.remaining();
+    }
+    final ByteBuffer all = ByteBuffer.allocate(size);
+    for (ByteBuffer record : records) {
+      all.put(record);
+    }
+    all.flip();
+    write(file, tail, all);
+  }
+
+  /**
+   * Gets the state of the end of a series, checking the file the first time the series is written to.
+   * An incomplete record at the end of the file, left by a failed write, is removed.
+   */
+  private Tail getTail(final ObjectId objectId) {
+    Tail tail = _tails.get(objectId);
+    if (tail != null) {
+      return tail;
+    }
+    final File file = getFile(objectId);
+    final MappedByteBuffer buffer = map(file, -1);
+    if (buffer == null) {
+      throw new DataNotFoundException("Time-series not found: " + objectId);
+    }
+    int length = FILE_HEADER_SIZE;
+    int partialAppends = 0;
+    try {
+      buffer.position(length);
+      while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+        final Record record = new Record(buffer);
+        if (!record.isComplete(buffer)) {
+          break;
+        }
+        if (record._type == APPEND && record._count < BLOCK_SIZE) {
+          partialAppends++;
+        }
+        length = record._next;
+        buffer.position(length);
+      }
+    } finally {
+      unmap(buffer);
+    }
+    if (length < file.length()) {
+      s_logger.warn("Removing {} bytes of incomplete record from {}", file.length() - length, file);
+    }
+    tail = new Tail(length);
+    tail._partialAppends = partialAppends;
+    _tails.put(objectId, tail);
+    return tail;
+  }
+
+  /**
+   * Gets the latest date of a series, reading the series if it is not known.
+   */
+  private int getLatestDate(final ObjectId objectId, final Tail tail, final Instant now) {
+    if (tail._latestDate == null) {
+      final Points latest = read(objectId, now, now);
+      tail._latestDate = (latest.size() > 0) ? latest.getDates()[latest.size() - 1] : Integer.MIN_VALUE;
+    }
+    return tail._latestDate;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Compacts a series, merging each run of consecutive appended records into records of up to
+   * {@link #BLOCK_SIZE} points. A series is compacted automatically as it is appended to.
+   *
+   * @param objectId  the series object identifier, not null
+   * @throws DataNotFoundException if the series does not exist
+   */
+  public synchronized void compact(final ObjectId objectId) {
+    ArgumentChecker.notNull(objectId, "objectId");
+    compact(objectId, getTail(objectId));
+  }
+
+  private void compact(final ObjectId objectId, final Tail tail) {
+    final File file = getFile(objectId);
+    final File compacted = new File(file.getPath() + ".tmp");
+    final Compactor compactor;
+    final MappedByteBuffer buffer = map(file, tail._length);
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(compacted, "rw");
+      try {
+        final FileChannel channel = raf.getChannel();
+        channel.truncate(0);
+        compactor = new Compactor(buffer, channel);
+        compactor.copy(0, FILE_HEADER_SIZE);
+        buffer.position(FILE_HEADER_SIZE);
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+          final Record record = new Record(buffer);
+          if (!record.isComplete(buffer)) {
+            break;
+          }
+          compactor.add(record);
+          buffer.position(record._next);
+        }
+        compactor.flush();
+        channel.force(false);
+      } finally {
+        raf.close();
+      }
+    } catch (IOException ex) {
+      throw new OpenGammaRuntimeException("Unable to compact time-series file " + file, ex);
+    } finally {
+      unmap(buffer);
+    }
+    if (!compacted.renameTo(file)) {
+      // some platforms will not rename over an existing file
+      if (!file.delete() || !compacted.renameTo(file)) {
+        throw new OpenGammaRuntimeException("Unable to replace time-series file " + file + " by " + compacted);
+      }
+    }
+    s_logger.debug("Compacted {} from {} to {} bytes", new Object[] {file, tail._length, compactor._length });
+    tail._length = compactor._length;
+    tail._partialAppends = compactor._partialAppends;
+    // runs of appends separated by corrections cannot be merged, so only count those written from now on
+    tail._compactedPartialAppends = compactor._partialAppends;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Reads the data points of a series.
+   *
+   * @param objectId  the series object identifier, not null
+   * @param versionAsOf  the version instant to read at, not null
+   * @param correctedTo  the correction instant to read at, not null
+   * @return the points, null if the series did not exist at the version-correction
+   */
+  public Points read(final ObjectId objectId, final Instant versionAsOf, final Instant correctedTo) {
+    ArgumentChecker.notNull(objectId, "objectId");
+    ArgumentChecker.notNull(versionAsOf, "versionAsOf");
+    ArgumentChecker.notNull(correctedTo, "correctedTo");
+    final MappedByteBuffer buffer = map(getFile(objectId), -1);
+    if (buffer == null) {
+      return null;
+    }
+    try {
+      return read(buffer, versionAsOf, correctedTo);
+    } finally {
+      unmap(buffer);
+    }
+  }
+
+  private static Points read(final ByteBuffer buffer, final Instant versionAsOf, final Instant correctedTo) {
+    buffer.position(4 + 4);
+    final Instant created = Instant.ofEpochSeconds(buffer.getLong(), buffer.getInt());
+    if (created.isAfter(versionAsOf) || created.isAfter(correctedTo)) {
+      return null;
+    }
+    // find the records with visible points
+    final List<Record> visible = new ArrayList<Record>();
+    int total = 0;
+    boolean appendsOnly = true;
+    Instant maxVersion = null;
+    Instant maxCorrection = null;
+    while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+      final Record record = new Record(buffer);
+      if (!record.isComplete(buffer)) {
+        break;
+      }
+      boolean recordVisible = false;
+      for (int i = 0; i < record._segments.length; i++) {
+        if (record.isVisible(i, versionAsOf, correctedTo)) {
+          recordVisible = true;
+          final Instant version = record._segments[i]._version;
+          final Instant correction = record.getCorrectionOf(i);
+          if (maxVersion == null || version.isAfter(maxVersion)) {
+            maxVersion = version;
+          }
+          if (maxCorrection == null || correction.isAfter(maxCorrection)) {
+            maxCorrection = correction;
+          }
+        }
+      }
+      if (recordVisible) {
+        visible.add(record);
+        total += record._count;
+        appendsOnly &= (record._type == APPEND);
+      }
+      buffer.position(record._next);
+    }
+    if (visible.isEmpty()) {
+      return new Points(new int[0], new double[0], 0, created, created);
+    }
+    final int[] dates = new int[total];
+    final double[] values = new double[total];
+    final int[] visibleCounts = new int[visible.size()];
+    int offset = 0;
+    for (int i = 0; i < visibleCounts.length; i++) {
+      final Record record = visible.get(i);
+      record.decode(buffer, dates, values, offset);
+      visibleCounts[i] = record.keepVisible(dates, values, offset, versionAsOf, correctedTo);
+      if (offset > 0 && dates[offset] <= dates[offset - 1]) {
+        appendsOnly = false;
+      }
+      offset += visibleCounts[i];
+    }
+    if (appendsOnly) {
+      return new Points(dates, values, offset, maxVersion, maxCorrection);
+    }
+    return merge(visible, visibleCounts, dates, values, offset, maxVersion, maxCorrection);
+  }
+
+  /**
+   * Merges overlapping records, the last point written for a date taking precedence.
+   */
+  private static Points merge(final List<Record> visible, final int[] visibleCounts, final int[] dates, final double[] values, final int total,
+      final Instant maxVersion, final Instant maxCorrection) {
+    final boolean[] removed = new boolean[total];
+    int offset = 0;
+    for (int i = 0; i < visibleCounts.length; i++) {
+      if (visible.get(i)._type == REMOVE) {
+        Arrays.fill(removed, offset, offset + visibleCounts[i], true);
+      }
+      offset += visibleCounts[i];
+    }
+    // sort by date then by position, packed into a long to avoid boxing
+    final long[] keys = new long[total];
+    for (int i = 0; i < total; i++) {
+      keys[i] = ((long) dates[i] << 32) | i;
+    }
+    Arrays.sort(keys);
+    final int[] resultDates = new int[total];
+    final double[] resultValues = new double[total];
+    int size = 0;
+    for (int i = 0; i < total; i++) {
+      if (i + 1 < total && (int) (keys[i + 1] >> 32) == (int) (keys[i] >> 32)) {
+        continue;
+      }
+      final int index = (int) keys[i];
+      if (!removed[index]) {
+        resultDates[size] = dates[index];
+        resultValues[size] = values[index];
+        size++;
+      }
+    }
+    return new Points(resultDates, resultValues, size, maxVersion, maxCorrection);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates a record of a range of points.
+   *
+   * @param type  the record type
+   * @param correction  the correction instant of the record, ignored when reading appended points
+   * @param dates  the dates, not null
+   * @param values  the values, not null
+   * @param from  the index of the first point
+   * @param to  the index after the last point
+   * @param segments  the version of each run of the points, in order, not null
+   * @return the record, not null
+   */
+  private static ByteBuffer record(final byte type, final Instant correction, final int[] dates, final double[] values, final int from, final int to,
+      final List<Segment> segments) {
+    final byte[] block = TimeSeriesBlockCodec.encode(dates, values, from, to);
+    final int length = segments.size() * SEGMENT_SIZE + block.length;
+    final ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length + RECORD_TRAILER_SIZE);
+    buffer.put(type);
+    buffer.putLong(correction.getEpochSeconds()).putInt(correction.getNanoOfSecond());
+    buffer.putInt(to - from).putInt(segments.size()).putInt(length);
+    for (Segment segment : segments) {
+      buffer.putInt(segment._count).putLong(segment._version.getEpochSeconds()).putInt(segment._version.getNanoOfSecond());
+    }
+    buffer.put(block);
+    final CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 0, buffer.position());
+    buffer.putInt((int) crc.getValue());
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Maps a file to be read.
+   *
+   * @param file  the file, not null
+   * @param length  the length to map, -1 for the whole file
+   * @return the buffer, null if the file does not exist. It must be released by {@link #unmap}
+   */
+  private static MappedByteBuffer map(final File file, final long length) {
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        final FileChannel channel = raf.getChannel();
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (length < 0) ? channel.size() : Math.min(length, channel.size()));
+        if (buffer.remaining() < FILE_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+          unmap(buffer);
+          throw new OpenGammaRuntimeException("Invalid time-series file " + file);
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+          final int version = buffer.getInt(4);
+          unmap(buffer);
+          throw new OpenGammaRuntimeException("Unsupported format version " + version + " of time-series file " + file);
+        }
+        return buffer;
+      } finally {
+        raf.close();
+      }
+    } catch (IOException ex) {
+      throw new OpenGammaRuntimeException("Unable to read time-series file " + file, ex);
+    }
+  }
+
+  /**
+   * Releases a mapping immediately rather than when the buffer is garbage collected, which may be long
+   * after it is finished with. Until then, the mapping holds on to address space and, on some platforms,
+   * prevents the file from being deleted.
+   *
+   * @param buffer  the buffer, may be null
+   */
+  private static void unmap(final MappedByteBuffer buffer) {
+    if (buffer == null) {
+      return;
+    }
+    try {
+      final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      final Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (Exception ex) {
+      // not supported by this JVM; the mapping is released when the buffer is collected
+      s_logger.debug("Unable to unmap buffer", ex);
+    }
+  }
+
+  /**
+   * Writes to the end of the valid part of a file, removing any incomplete record beyond it.
+   */
+  private static void write(final File file, final Tail tail, final ByteBuffer buffer) {
+    final int size = buffer.remaining();
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        final FileChannel channel = raf.getChannel();
+        if (channel.size() > tail._length) {
+          channel.truncate(tail._length);
+        }
+        channel.position(tail._length);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(false);
+      } finally {
+        raf.close();
+      }
+    } catch (IOException ex) {
+      throw new OpenGammaRuntimeException("Unable to write time-series file " + file, ex);
+    }
+    tail._length += size;
+    s_logger.debug("Written {} bytes to {}", size, file);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A record. Its segments, the version of each run of its points, are read once it is known to be complete.
+   */
+  private static final class Record {
+    private final int _offset;
+    private final byte _type;
+    private final long _correctionSeconds;
+    private final int _correctionNanos;
+    private final int _count;
+    private final int _segmentCount;
+    private final int _length;
+    private final int _segmentTable;
+    private final int _end;
+    private final int _next;
+    private Instant _correction;
+    private Segment[] _segments;
+    private int _start;
+
+    Record(final ByteBuffer buffer) {
+      _offset = buffer.position();
+      _type = buffer.get();
+      _correctionSeconds = buffer.getLong();
+      _correctionNanos = buffer.getInt();
+      _count = buffer.getInt();
+      _segmentCount = buffer.getInt();
+      _length = buffer.getInt();
+      _segmentTable = buffer.position();
+      _end = _segmentTable + _length;
+      _next = _end + RECORD_TRAILER_SIZE;
+    }
+
+    /**
+     * Checks that the whole record has been written, reading its segments if it has. The buffer position is left
+     * unspecified.
+     */
+    boolean isComplete(final ByteBuffer buffer) {
+      if (_length < 0 || _length > buffer.limit() - _segmentTable - RECORD_TRAILER_SIZE || _count < 0
+          || _segmentCount < 1 || _segmentCount > _length / SEGMENT_SIZE) {
+        return false;
+      }
+      final byte[] bytes = new byte[_end - _offset];
+      buffer.position(_offset);
+      buffer.get(bytes);
+      final CRC32 crc = new CRC32();
+      crc.update(bytes);
+      if (buffer.getInt() != (int) crc.getValue()) {
+        return false;
+      }
+      _correction = Instant.ofEpochSeconds(_correctionSeconds, _correctionNanos);
+      buffer.position(_segmentTable);
+      _segments = new Segment[_segmentCount];
+      for (int i = 0; i < _segmentCount; i++) {
+        _segments[i] = new Segment(buffer.getInt(), Instant.ofEpochSeconds(buffer.getLong(), buffer.getInt()));
+      }
+      _start = buffer.position();
+      return true;
+    }
+
+    /**
+     * Gets the version instant of a point of the record.
+     */
+    Instant getVersionOf(final int index) {
+      int end = 0;
+      for (Segment segment : _segments) {
+        end += segment._count;
+        if (index < end) {
+          return segment._version;
+        }
+      }
+      return _segments[_segments.length - 1]._version;
+    }
+
+    /**
+     * Gets the correction instant of a segment; appended points are corrected at the version they are written.
+     */
+    Instant getCorrectionOf(final int segment) {
+      return (_type == APPEND) ? _segments[segment]._version : _correction;
+    }
+
+    boolean isVisible(final int segment, final Instant versionAsOf, final Instant correctedTo) {
+      return !_segments[segment]._version.isAfter(versionAsOf) && !getCorrectionOf(segment).isAfter(correctedTo);
+    }
+
+    void decode(final ByteBuffer buffer, final int[] dates, final double[] values, final int offset) {
+      buffer.position(_start);
+      TimeSeriesBlockCodec.decode(buffer, _count, dates, values, offset);
+    }
+
+    /**
+     * Moves the visible points of the record, decoded at an offset, together at the offset.
+     *
+     * @return the number of visible points
+     */
+    int keepVisible(final int[] dates, final double[] values, final int offset, final Instant versionAsOf, final Instant correctedTo) {
+      int from = offset;
+      int to = offset;
+      for (int i = 0; i < _segments.length; i++) {
+        final int count = _segments[i]._count;
+        if (isVisible(i, versionAsOf, correctedTo)) {
+          if (from != to) {
+            System.arraycopy(dates, from, dates, to, count);
+            System.arraycopy(values, from, values, to, count);
+          }
+          to += count;
+        }
+        from += count;
+      }
+      return to - offset;
+    }
+  }
+
+  /**
+   * A run of points within a record written at the same version instant.
+   */
+  private static final class Segment {
+    private final int _count;
+    private final Instant _version;
+
+    Segment(final int count, final Instant version) {
+      _count = count;
+      _version = version;
+    }
+  }
+
+  /**
+   * Writes the records of a series to a compacted file, merging each run of consecutive appended records.
+   */
+  private static final class Compactor {
+    private final ByteBuffer _source;
+    private final FileChannel _channel;
+    private final int[] _dates = new int[BLOCK_SIZE];
+    private final double[] _values = new double[BLOCK_SIZE];
+    private final List<Segment> _segments = new ArrayList<Segment>();
+    private int _pending;
+    private int[] _recordDates = new int[0];
+    private double[] _recordValues = new double[0];
+    /** The length of the compacted file written so far. */
+    private long _length;
+    /** The number of appended records of fewer than BLOCK_SIZE points written. */
+    private int _partialAppends;
+
+    Compactor(final ByteBuffer source, final FileChannel channel) {
+      _source = source;
+      _channel = channel;
+    }
+
+    void add(final Record record) throws IOException {
+      if (record._type != APPEND) {
+        flush();
+        copy(record._offset, record._next);
+        return;
+      }
+      if (_pending == 0 && record._count >= BLOCK_SIZE) {
+        copy(record._offset, record._next);
+        return;
+      }
+      if (_recordDates.length < record._count) {
+        _recordDates = new int[record._count];
+        _recordValues = new double[record._count];
+      }
+      record.decode(_source, _recordDates, _recordValues, 0);
+      int index = 0;
+      for (Segment segment : record._segments) {
+        int remaining = segment._count;
+        while (remaining > 0) {
+          final int count = Math.min(remaining, BLOCK_SIZE - _pending);
+          System.arraycopy(_recordDates, index, _dates, _pending, count);
+          System.arraycopy(_recordValues, index, _values, _pending, count);
+          final int last = _segments.size() - 1;
+          if (last >= 0 && _segments.get(last)._version.equals(segment._version)) {
+            _segments.set(last, new Segment(_segments.get(last)._count + count, segment._version));
+          } else {
+            _segments.add(new Segment(count, segment._version));
+          }
+          _pending += count;
+          index += count;
+          remaining -= count;
+          if (_pending == BLOCK_SIZE) {
+            flush();
+          }
+        }
+      }
+    }
+
+    void flush() throws IOException {
+      if (_pending == 0) {
+        return;
+      }
+      final Instant correction = _segments.get(_segments.size() - 1)._version;
+      write(record(APPEND, correction, _dates, _values, 0, _pending, _segments));
+      if (_pending < BLOCK_SIZE) {
+        _partialAppends++;
+      }
+      _pending = 0;
+      _segments.clear();
+    }
+
+    void copy(final int from, final int to) throws IOException {
+      final ByteBuffer bytes = _source.duplicate();
+      bytes.clear();
+      bytes.position(from);
+      bytes.limit(to);
+      write(bytes);
+    }
+
+    private void write(final ByteBuffer bytes) throws IOException {
+      _length += bytes.remaining();
+      while (bytes.hasRemaining()) {
+        _channel.write(bytes);
+      }
+    }
+  }
+
+  /**
+   * The state of the end of a series file.
+   */
+  private static final class Tail {
+    /** The length of the valid part of the file. */
+    private long _length;
+    /** The latest date of the series as epoch days, MIN_VALUE if it is empty, null if not known. */
+    private Integer _latestDate;
+    /** The number of appended records of fewer than BLOCK_SIZE points in the file. */
+    private int _partialAppends;
+    /** The number of those records left by the last compaction, which could not be merged. */
+    private int _compactedPartialAppends;
+
+    Tail(final long length) {
+      _length = length;
+    }
+  }
+
+  /**
+   * The data points of a series read at a version-correction.
+   */
+  public static final class Points {
+    private final int[] _dates;
+    private final double[] _values;
+    private final int _size;
+    private final Instant _versionInstant;
+    private final Instant _correctionInstant;
+
+    private Points(final int[] dates, final double[] values, final int size, final Instant versionInstant, final Instant correctionInstant) {
+      _dates = dates;
+      _values = values;
+      _size = size;
+      _versionInstant = versionInstant;
+      _correctionInstant = correctionInstant;
+    }
+
+    /**
+     * Gets the number of points.
+     *
+     * @return the number of points
+     */
+    public int size() {
+      return _size;
+    }
+
+    /**
+     * Gets the dates as epoch days. Only the first {@link #size} elements are valid.
+     *
+     * @return the dates, not null
+     */
+    public int[] getDates() {
+      return _dates;
+    }
+
+    /**
+     * Gets the values. Only the first {@link #size} elements are valid.
+     *
+     * @return the values, not null
+     */
+    public double[] getValues() {
+      return _values;
+    }
+
+    /**
+     * Gets the latest version instant of the points read.
+     *
+     * @return the version instant, not null
+     */
+    public Instant getVersionInstant() {
+      return _versionInstant;
+    }
+
+    /**
+     * Gets the latest correction instant of the points read.
+     *
+     * @return the correction instant, not null
+     */
+    public Instant getCorrectionInstant() {
+      return _correctionInstant;
+    }
+
+    /**
+     * Creates a time-series of a range of the points.
+     *
+     * @param from  the index of the first point
+     * @param to  the index after the last point
+     * @return the time-series, not null
+     */
+    public FastIntDoubleTimeSeries toFastSeries(final int from, final int to) {
+      ArgumentChecker.isTrue(from >= 0 && from <= to && to <= _size, "Invalid range");
+      if (from == 0 && to == _dates.length) {
+        // the points are never modified once read, so the series can share their arrays
+        return FastArrayIntDoubleTimeSeries.wrap(DateTimeNumericEncoding.DATE_EPOCH_DAYS, _dates, _values);
+      }
+      return FastArrayIntDoubleTimeSeries.wrap(DateTimeNumericEncoding.DATE_EPOCH_DAYS,
+          Arrays.copyOfRange(_dates, from, to), Arrays.copyOfRange(_values, from, to));
+    }
+  }
+
+}
@@ -0,0 +1,325 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.historicaltimeseries.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.time.Duration;
+import javax.time.Instant;
+import javax.time.calendar.LocalDate;
+import javax.time.calendar.OffsetDateTime;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.core.change.ChangeManager;
+import com.opengamma.core.change.ChangeType;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.ObjectIdentifiable;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesGetFilter;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoDocument;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoHistoryRequest;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoHistoryResult;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoMetaDataRequest;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoMetaDataResult;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoSearchRequest;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoSearchResult;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesMaster;
+import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeries;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.ArrayLocalDateDoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
+
+/**
+ * A historical time-series master storing data points in compressed local files.
+ * <p>
+ * The information documents are held by an underlying master, such as the database master,
+ * while the data points are held by a {@link BlockFileDataPointsStore}. Storing each series as
+ * a few compressed blocks rather than a row per point makes long daily series much cheaper
+ * to hold and to load.
+ * <p>
+ * The data points of a series are created when its information document is added through
+ * this master. Series added directly to the underlying master have no data points here.
+ */
+public class BlockFileHistoricalTimeSeriesMaster implements HistoricalTimeSeriesMaster {
+
+  /**
+   * The master holding the information documents.
+   */
+  private final HistoricalTimeSeriesMaster _infoMaster;
+  /**
+   * The store holding the data points.
+   */
+  private final BlockFileDataPointsStore _store;
+
+  /**
+   * Creates an instance.
+   *
+   * @param infoMaster  the master holding the information documents, not null
+   * @param store  the store holding the data points, not null
+   */
+  public BlockFileHistoricalTimeSeriesMaster(final HistoricalTimeSeriesMaster infoMaster, final BlockFileDataPointsStore store) {
+    ArgumentChecker.notNull(infoMaster, "infoMaster");
+    ArgumentChecker.notNull(store, "store");
+    _infoMaster = infoMaster;
+    _store = store;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the master holding the information documents.
+   *
+   * @return the master, not null
+   */
+  public HistoricalTimeSeriesMaster getInfoMaster() {
+    return _infoMaster;
+  }
+
+  /**
+   * Gets the store holding the data points.
+   *
+   * @return the store, not null
+   */
+  public BlockFileDataPointsStore getStore() {
+    return _store;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public HistoricalTimeSeriesInfoMetaDataResult metaData(HistoricalTimeSeriesInfoMetaDataRequest request) {
+    return getInfoMaster().metaData(request);
+  }
+
+  @Override
+  public HistoricalTimeSeriesInfoSearchResult search(HistoricalTimeSeriesInfoSearchRequest request) {
+    return getInfoMaster().search(request);
+  }
+
+  @Override
+  public HistoricalTimeSeriesInfoDocument get(UniqueId uniqueId) {
+    return getInfoMaster().get(uniqueId);
+  }
+
+  @Override
+  public HistoricalTimeSeriesInfoDocument get(ObjectIdentifiable objectId, VersionCorrection versionCorrection) {
+    return getInfoMaster().get(objectId, versionCorrection);
+  }
+
+  @Override
+  public HistoricalTimeSeriesInfoDocument add(HistoricalTimeSeriesInfoDocument document) {
+    final HistoricalTimeSeriesInfoDocument result = getInfoMaster().add(document);
+    final ObjectId objectId = result.getInfo().getTimeSeriesObjectId();
+    if (getStore().exists(objectId) == false) {
+      getStore().create(objectId, result.getVersionFromInstant() != null ? result.getVersionFromInstant() : Instant.now());
+    }
+    return result;
+  }
+
+  @Override
+  public HistoricalTimeSeriesInfoDocument update(HistoricalTimeSeriesInfoDocument document) {
+    return getInfoMaster().update(document);
+  }
+
+  @Override
+  public void remove(UniqueId uniqueId) {
+    getInfoMaster().remove(uniqueId);
+  }
+
+  @Override
+  public HistoricalTimeSeriesInfoDocument correct(HistoricalTimeSeriesInfoDocument document) {
+    return getInfoMaster().correct(document);
+  }
+
+  @Override
+  public HistoricalTimeSeriesInfoHistoryResult history(HistoricalTimeSeriesInfoHistoryRequest request) {
+    return getInfoMaster().history(request);
+  }
+
+  @Override
+  public ChangeManager changeManager() {
+    return getInfoMaster().changeManager();
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public ManageableHistoricalTimeSeries getTimeSeries(UniqueId uniqueId) {
+    return getTimeSeries(uniqueId, HistoricalTimeSeriesGetFilter.ofRange(null, null));
+  }
+
+  @Override
+  public ManageableHistoricalTimeSeries getTimeSeries(UniqueId uniqueId, HistoricalTimeSeriesGetFilter filter) {
+    ArgumentChecker.notNull(uniqueId, "uniqueId");
+    final VersionCorrection vc = uniqueId.isVersioned() ? extractTimeSeriesInstants(uniqueId) : VersionCorrection.LATEST;
+    return getTimeSeries(uniqueId.getObjectId(), vc, filter);
+  }
+
+  @Override
+  public ManageableHistoricalTimeSeries getTimeSeries(ObjectIdentifiable objectId, VersionCorrection versionCorrection) {
+    return getTimeSeries(objectId, versionCorrection, HistoricalTimeSeriesGetFilter.ofRange(null, null));
+  }
+
+  @Override
+  public ManageableHistoricalTimeSeries getTimeSeries(ObjectIdentifiable objectKey, VersionCorrection versionCorrection, HistoricalTimeSeriesGetFilter filter) {
+    ArgumentChecker.notNull(objectKey, "objectKey");
+    ArgumentChecker.notNull(versionCorrection, "versionCorrection");
+    ArgumentChecker.notNull(filter, "filter");
+    final ObjectId objectId = objectKey.getObjectId();
+    final VersionCorrection vc = versionCorrection.withLatestFixed(Instant.now());
+    final BlockFileDataPointsStore.Points points = getStore().read(objectId, vc.getVersionAsOf(), vc.getCorrectedTo());
+    if (points == null) {
+      throw new DataNotFoundException("Historical time-series not found: " + objectId);
+    }
+
+    // Filter points by date range and max points to return
+    final int[] dates = points.getDates();
+    int from = 0;
+    int to = points.size();
+    if (filter.getEarliestDate() != null) {
+      from = lowerBound(dates, to, toEpochDays(filter.getEarliestDate()));
+    }
+    if (filter.getLatestDate() != null) {
+      to = lowerBound(dates, to, toEpochDays(filter.getLatestDate()) + 1);
+    }
+    to = Math.max(from, to);
+    final Integer maxPoints = filter.getMaxPoints();
+    if (maxPoints != null && Math.abs(maxPoints) < to - from) {
+      if (maxPoints >= 0) {
+        to = from + maxPoints;
+      } else {
+        from = to + maxPoints;
+      }
+    }
+
+    final ManageableHistoricalTimeSeries result = new ManageableHistoricalTimeSeries();
+    result.setUniqueId(createTimeSeriesUniqueId(objectId, points.getVersionInstant(), points.getCorrectionInstant()));
+    result.setVersionInstant(points.getVersionInstant());
+    result.setCorrectionInstant(points.getCorrectionInstant());
+    result.setTimeSeries(new ArrayLocalDateDoubleTimeSeries(points.toFastSeries(from, to)));
+    return result;
+  }
+
+  @Override
+  public Map<ObjectId, ManageableHistoricalTimeSeries> getTimeSeries(Collection<ObjectId> objectIds, VersionCorrection versionCorrection, HistoricalTimeSeriesGetFilter filter) {
+    ArgumentChecker.notNull(objectIds, "objectIds");
+    final Map<ObjectId, ManageableHistoricalTimeSeries> result = new HashMap<ObjectId, ManageableHistoricalTimeSeries>();
+    for (ObjectId objectId : objectIds) {
+      try {
+        result.put(objectId, getTimeSeries(objectId, versionCorrection, filter));
+      } catch (DataNotFoundException ex) {
+        // omitted from the result
+      }
+    }
+    return result;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public UniqueId updateTimeSeriesDataPoints(ObjectIdentifiable objectKey, LocalDateDoubleTimeSeries series) {
+    ArgumentChecker.notNull(objectKey, "objectKey");
+    ArgumentChecker.notNull(series, "series");
+    final ObjectId objectId = objectKey.getObjectId();
+    final Instant now = Instant.now();
+    final FastIntDoubleTimeSeries fast = series.toFastIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS);
+    getStore().append(objectId, fast.timesArrayFast(), fast.valuesArrayFast(), now);
+    final UniqueId uniqueId = createTimeSeriesUniqueId(objectId, now, now);
+    changeManager().entityChanged(ChangeType.UPDATED, objectId.atLatestVersion(), uniqueId, now);
+    return uniqueId;
+  }
+
+  @Override
+  public UniqueId correctTimeSeriesDataPoints(ObjectIdentifiable objectKey, LocalDateDoubleTimeSeries series) {
+    ArgumentChecker.notNull(objectKey, "objectKey");
+    ArgumentChecker.notNull(series, "series");
+    final ObjectId objectId = objectKey.getObjectId();
+    final Instant now = Instant.now();
+    final FastIntDoubleTimeSeries fast = series.toFastIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS);
+    getStore().correct(objectId, fast.timesArrayFast(), fast.valuesArrayFast(), now);
+    final UniqueId uniqueId = resolveObjectId(objectId, now);
+    changeManager().entityChanged(ChangeType.CORRECTED, objectId.atLatestVersion(), uniqueId, now);
+    return uniqueId;
+  }
+
+  @Override
+  public UniqueId removeTimeSeriesDataPoints(ObjectIdentifiable objectKey, LocalDate fromDateInclusive, LocalDate toDateInclusive) {
+    ArgumentChecker.notNull(objectKey, "objectKey");
+    if (fromDateInclusive != null && toDateInclusive != null) {
+      ArgumentChecker.inOrderOrEqual(fromDateInclusive, toDateInclusive, "fromDateInclusive", "toDateInclusive");
+    }
+    final ObjectId objectId = objectKey.getObjectId();
+    final Instant now = Instant.now();
+    getStore().remove(objectId,
+        fromDateInclusive != null ? toEpochDays(fromDateInclusive) : Integer.MIN_VALUE,
+        toDateInclusive != null ? toEpochDays(toDateInclusive) : Integer.MAX_VALUE, now);
+    final UniqueId uniqueId = resolveObjectId(objectId, now);
+    changeManager().entityChanged(ChangeType.UPDATED, objectId.atLatestVersion(), uniqueId, now);
+    return uniqueId;
+  }
+
+  //-------------------------------------------------------------------------
+  private UniqueId resolveObjectId(final ObjectId objectId, final Instant now) {
+    final BlockFileDataPointsStore.Points points = getStore().read(objectId, now, now);
+    if (points == null) {
+      throw new DataNotFoundException("Historical time-series not found: " + objectId);
+    }
+    return createTimeSeriesUniqueId(objectId, points.getVersionInstant(), points.getCorrectionInstant());
+  }
+
+  /**
+   * Creates a unique identifier in the same form as the database master.
+   *
+   * @param objectId  the object identifier, not null
+   * @param verInstant  the version instant, not null
+   * @param corrInstant  the correction instant, not null
+   * @return the unique identifier, not null
+   */
+  protected UniqueId createTimeSeriesUniqueId(ObjectId objectId, Instant verInstant, Instant corrInstant) {
+    Duration dur = Duration.between(verInstant, corrInstant);
+    return objectId.atVersion(verInstant.toString() + dur.toString());
+  }
+
+  /**
+   * Extracts the version-correction from a unique identifier created by this master.
+   *
+   * @param uniqueId  the unique identifier, not null
+   * @return the version-correction, not null
+   */
+  protected VersionCorrection extractTimeSeriesInstants(UniqueId uniqueId) {
+    try {
+      int pos = uniqueId.getVersion().indexOf('P');
+      String verStr = uniqueId.getVersion().substring(0, pos);
+      String corrStr = uniqueId.getVersion().substring(pos);
+      Instant ver = OffsetDateTime.parse(verStr).toInstant();
+      Instant corr = ver.plus(Duration.parse(corrStr));
+      return VersionCorrection.of(ver, corr);
+    } catch (RuntimeException ex) {
+      throw new IllegalArgumentException("UniqueId is not from this master (invalid version): " + uniqueId, ex);
+    }
+  }
+
+  private static int toEpochDays(final LocalDate date) {
+    return (int) date.toEpochDays();
+  }
+
+  /**
+   * Finds the index of the first date not before a date.
+   */
+  private static int lowerBound(final int[] dates, final int size, final int date) {
+    final int index = Arrays.binarySearch(dates, 0, size, date);
+    return (index < 0) ? -(index + 1) : index;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + getStore().getDirectory() + "]";
+  }
+
+}
@@ -10,6 +10,7 @@ import java.net.URI;
 import javax.time.calendar.LocalDate;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -28,6 +29,7 @@ import com.opengamma.id.VersionCorrection;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesGetFilter;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesMaster;
 import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeries;
+import com.opengamma.transport.jaxrs.FudgeRest;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.rest.AbstractDataResource;
 import com.opengamma.util.rest.RestUtils;
@@ -91,15 +93,16 @@ public class DataHistoricalDataPointsResource extends AbstractDataResource {
 
   //-------------------------------------------------------------------------
   @GET
-  public Response get(@Context UriInfo uriInfo, @QueryParam("versionAsOf") String versionAsOf, @QueryParam("correctedTo") String correctedTo) {
+  public Response get(@Context UriInfo uriInfo, @QueryParam("versionAsOf") String versionAsOf, @QueryParam("correctedTo") String correctedTo,
+      @HeaderParam(FudgeRest.COMPRESSED_TIME_SERIES_HEADER) boolean compressed) {
     VersionCorrection vc = VersionCorrection.parse(versionAsOf, correctedTo);
     HistoricalTimeSeriesGetFilter filter = RestUtils.decodeQueryParams(uriInfo, HistoricalTimeSeriesGetFilter.class);
     if (filter != null) {
       ManageableHistoricalTimeSeries result = getHistoricalTimeSeriesMaster().getTimeSeries(getUrlDataPointsId(), vc, filter);
-      return responseOkFudge(result);
+      return responseOkFudge(result, compressed);
     } else {
       ManageableHistoricalTimeSeries result = getHistoricalTimeSeriesMaster().getTimeSeries(getUrlDataPointsId(), vc);
-      return responseOkFudge(result);
+      return responseOkFudge(result, compressed);
     }
   }
 
@@ -130,14 +133,15 @@ public class DataHistoricalDataPointsResource extends AbstractDataResource {
   //-------------------------------------------------------------------------
   @GET
   @Path("versions/{versionId}")
-  public Response getVersioned(@Context UriInfo uriInfo, @PathParam("versionId") String versionId) {
+  public Response getVersioned(@Context UriInfo uriInfo, @PathParam("versionId") String versionId,
+      @HeaderParam(FudgeRest.COMPRESSED_TIME_SERIES_HEADER) boolean compressed) {
     HistoricalTimeSeriesGetFilter filter = RestUtils.decodeQueryParams(uriInfo, HistoricalTimeSeriesGetFilter.class);
     if (filter != null) {
       ManageableHistoricalTimeSeries result = getHistoricalTimeSeriesMaster().getTimeSeries(getUrlDataPointsId().atVersion(versionId), filter);
-      return responseOkFudge(result);
+      return responseOkFudge(result, compressed);
     } else {
       ManageableHistoricalTimeSeries result = getHistoricalTimeSeriesMaster().getTimeSeries(getUrlDataPointsId().atVersion(versionId));
-      return responseOkFudge(result);
+      return responseOkFudge(result, compressed);
     }
   }
 
@@ -6,25 +6,43 @@
 package com.opengamma.master.historicaltimeseries.impl;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.fudgemsg.mapping.FudgeSerializer;
+
 import com.opengamma.id.ObjectId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesGetFilter;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoDocument;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoMetaDataRequest;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoMetaDataResult;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoSearchRequest;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoSearchResult;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesMaster;
+import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeries;
+import com.opengamma.transport.jaxrs.FudgeRest;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.FudgeMapWrapper;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
 import com.opengamma.util.rest.AbstractDataResource;
 import com.opengamma.util.rest.RestUtils;
 
@@ -92,6 +110,22 @@ public class DataHistoricalTimeSeriesMasterResource extends AbstractDataResource
     return responseCreatedFudge(createdUri, result);
   }
 
+  @SuppressWarnings("unchecked")
+  @POST
+  @Path("dataPointSearches/bulk")
+  public Response getTimeSeriesBulk(@Context UriInfo uriInfo, @QueryParam("versionAsOf") String versionAsOf, @QueryParam("correctedTo") String correctedTo,
+      @HeaderParam(FudgeRest.COMPRESSED_TIME_SERIES_HEADER) boolean compressed, FudgeMsgEnvelope request) {
+    VersionCorrection vc = VersionCorrection.parse(versionAsOf, correctedTo);
+    HistoricalTimeSeriesGetFilter filter = RestUtils.decodeQueryParams(uriInfo, HistoricalTimeSeriesGetFilter.class);
+    if (filter == null) {
+      filter = HistoricalTimeSeriesGetFilter.ofRange(null, null);
+    }
+    FudgeDeserializer deserializer = new FudgeDeserializer(OpenGammaFudgeContext.getInstance());
+    List<ObjectId> objectIds = deserializer.fudgeMsgToObject(List.class, request.getMessage().getMessage("id"));
+    Map<ObjectId, ManageableHistoricalTimeSeries> result = getHistoricalTimeSeriesMaster().getTimeSeries(objectIds, vc, filter);
+    return responseOkFudge(FudgeMapWrapper.of(result), compressed);
+  }
+
   //-------------------------------------------------------------------------
   @Path("infos/{infoId}")
   public DataHistoricalTimeSeriesResource findHistoricalTimeSeries(@PathParam("infoId") String idStr) {
@@ -143,4 +177,37 @@ public class DataHistoricalTimeSeriesMasterResource extends AbstractDataResource
     return bld.build();
   }
 
+  /**
+   * Builds a URI for the bulk data points search.
+   * 
+   * @param baseUri  the base URI, not null
+   * @param vc  the version-correction locator, null for latest
+   * @param filter  the filter, may be null
+   * @return the URI, not null
+   */
+  public static URI uriDataPointsBulk(URI baseUri, VersionCorrection vc, HistoricalTimeSeriesGetFilter filter) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("dataPointSearches/bulk");
+    if (vc != null) {
+      bld.queryParam("versionAsOf", vc.getVersionAsOfString());
+      bld.queryParam("correctedTo", vc.getCorrectedToString());
+    }
+    if (filter != null) {
+      RestUtils.encodeQueryParams(bld, filter);
+    }
+    return bld.build();
+  }
+
+  /**
+   * Builds the message body for the bulk data points search.
+   * 
+   * @param objectIds  the time-series data points object identifiers, not null
+   * @return the message, not null
+   */
+  public static FudgeMsg uriDataPointsBulkData(Collection<ObjectId> objectIds) {
+    FudgeSerializer serializer = new FudgeSerializer(OpenGammaFudgeContext.getInstance());
+    MutableFudgeMsg msg = serializer.newMessage();
+    serializer.addToMessage(msg, "id", null, new ArrayList<ObjectId>(objectIds));
+    return msg;
+  }
+
 }
@@ -6,9 +6,12 @@
 package com.opengamma.master.historicaltimeseries.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -303,6 +306,20 @@ public class InMemoryHistoricalTimeSeriesMaster implements HistoricalTimeSeriesM
     return result;    
   }
   
+  @Override
+  public Map<ObjectId, ManageableHistoricalTimeSeries> getTimeSeries(Collection<ObjectId> objectIds, VersionCorrection versionCorrection, HistoricalTimeSeriesGetFilter filter) {
+    ArgumentChecker.notNull(objectIds, "objectIds");
+    final Map<ObjectId, ManageableHistoricalTimeSeries> result = new HashMap<ObjectId, ManageableHistoricalTimeSeries>();
+    for (ObjectId objectId : objectIds) {
+      try {
+        result.put(objectId, getTimeSeries(objectId, versionCorrection, filter));
+      } catch (DataNotFoundException ex) {
+        // omitted from the result
+      }
+    }
+    return result;
+  }
+  
   
   //-------------------------------------------------------------------------
   @Override
@@ -17,6 +17,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.opengamma.DataNotFoundException;
 import com.opengamma.core.historicaltimeseries.HistoricalTimeSeries;
 import com.opengamma.core.historicaltimeseries.HistoricalTimeSeriesSource;
@@ -30,6 +31,7 @@ import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoDocumen
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesMaster;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesResolutionResult;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesResolver;
+import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeries;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.OpenGammaClock;
 import com.opengamma.util.PublicSPI;
@@ -452,10 +454,41 @@ public class MasterHistoricalTimeSeriesSource
       Set<ExternalIdBundle> identifierSet, String dataSource, String dataProvider, String dataField, LocalDate start,
       boolean includeStart, LocalDate end, boolean includeEnd) {
     ArgumentChecker.notNull(identifierSet, "identifierSet");
-    Map<ExternalIdBundle, HistoricalTimeSeries> result = Maps.newHashMap();
+    ArgumentChecker.notNull(dataSource, "dataSource");
+    ArgumentChecker.notNull(dataField, "field");
+    if (start != null && !includeStart) {
+      start = start.plusDays(1);
+    }
+    if (end != null && !includeEnd) {
+      end = end.minusDays(1);
+    }
+    // resolve each bundle, then load the data points of all the resolved time-series together
+    final LocalDate identifierValidityDate = LocalDate.now(getClock());
+    final Map<ExternalIdBundle, HistoricalTimeSeries> result = Maps.newHashMap();
+    final Map<ExternalIdBundle, HistoricalTimeSeriesResolutionResult> resolved = Maps.newHashMap();
+    final Set<ObjectId> objectIds = Sets.newHashSet();
     for (ExternalIdBundle externalIdBundle : identifierSet) {
-      HistoricalTimeSeries historicalTimeSeries = getHistoricalTimeSeries(externalIdBundle, dataSource, dataProvider, dataField, start, includeStart, end, includeEnd);
-      result.put(externalIdBundle, historicalTimeSeries);
+      HistoricalTimeSeriesResolutionResult resolutionResult = getResolver().resolve(externalIdBundle, identifierValidityDate, dataSource, dataProvider, dataField, null);
+      if (resolutionResult != null) {
+        resolved.put(externalIdBundle, resolutionResult);
+        objectIds.add(resolutionResult.getHistoricalTimeSeriesInfo().getTimeSeriesObjectId());
+      } else {
+        result.put(externalIdBundle, null);
+      }
+    }
+    if (objectIds.isEmpty()) {
+      return result;
+    }
+    VersionCorrection vc = getVersionCorrection();  // lock against change
+    vc = Objects.firstNonNull(vc, VersionCorrection.LATEST);
+    final Map<ObjectId, ManageableHistoricalTimeSeries> series = getMaster().getTimeSeries(objectIds, vc, HistoricalTimeSeriesGetFilter.ofRange(start, end));
+    for (Map.Entry<ExternalIdBundle, HistoricalTimeSeriesResolutionResult> entry : resolved.entrySet()) {
+      final HistoricalTimeSeriesResolutionResult resolutionResult = entry.getValue();
+      HistoricalTimeSeries hts = series.get(resolutionResult.getHistoricalTimeSeriesInfo().getTimeSeriesObjectId());
+      if ((hts != null) && (resolutionResult.getAdjuster() != null)) {
+        hts = resolutionResult.getAdjuster().adjust(resolutionResult.getHistoricalTimeSeriesInfo().getExternalIdBundle().toBundle(), hts);
+      }
+      result.put(entry.getKey(), hts);
     }
     return result;
   }
@@ -6,10 +6,15 @@
 package com.opengamma.master.historicaltimeseries.impl;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.Map;
 
 import javax.time.calendar.LocalDate;
 
+import org.fudgemsg.FudgeMsg;
+
 import com.opengamma.core.change.ChangeManager;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.ObjectIdentifiable;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
@@ -24,8 +29,11 @@ import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoSearchR
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesMaster;
 import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeries;
 import com.opengamma.master.impl.AbstractRemoteMaster;
+import com.opengamma.transport.jaxrs.FudgeRest;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.FudgeMapWrapper;
 import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
+import com.sun.jersey.api.client.WebResource.Builder;
 
 /**
  * Provides access to a remote {@link HistoricalTimeSeriesMaster}.
@@ -183,6 +191,16 @@ public class RemoteHistoricalTimeSeriesMaster extends AbstractRemoteMaster imple
     return accessRemote(uri).get(ManageableHistoricalTimeSeries.class);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public Map<ObjectId, ManageableHistoricalTimeSeries> getTimeSeries(Collection<ObjectId> objectIds, VersionCorrection versionCorrection, HistoricalTimeSeriesGetFilter filter) {
+    ArgumentChecker.notNull(objectIds, "objectIds");
+    
+    URI uri = DataHistoricalTimeSeriesMasterResource.uriDataPointsBulk(getBaseUri(), versionCorrection, filter);
+    FudgeMsg msg = DataHistoricalTimeSeriesMasterResource.uriDataPointsBulkData(objectIds);
+    return accessRemote(uri).post(FudgeMapWrapper.class, msg).getMap();
+  }
+
   @Override
   public UniqueId updateTimeSeriesDataPoints(ObjectIdentifiable objectId, LocalDateDoubleTimeSeries series) {
     ArgumentChecker.notNull(objectId, "objectId");
@@ -209,4 +227,16 @@ public class RemoteHistoricalTimeSeriesMaster extends AbstractRemoteMaster imple
     return accessRemote(uri).delete(UniqueId.class);
   }
 
+  //-------------------------------------------------------------------------
+  /**
+   * Accesses the remote master, reading time-series in the compressed form.
+   * 
+   * @param uri  the URI to call, not null
+   * @return the resource, suitable for calling get/post/put/delete on, not null
+   */
+  @Override
+  protected Builder accessRemote(final URI uri) {
+    return super.accessRemote(uri).header(FudgeRest.COMPRESSED_TIME_SERIES_HEADER, Boolean.TRUE.toString());
+  }
+
 }
@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.historicaltimeseries.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import javax.time.Instant;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ObjectId;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+
+/**
+ * Test {@link BlockFileDataPointsStore}.
+ */
+@Test
+public class BlockFileDataPointsStoreTest {
+
+  private static final ObjectId OID = ObjectId.of("DbHts", "DP101");
+  private static final Instant T0 = Instant.ofEpochSeconds(1000);
+  private static final Instant T1 = Instant.ofEpochSeconds(2000);
+  private static final Instant T2 = Instant.ofEpochSeconds(3000);
+  private static final Instant T3 = Instant.ofEpochSeconds(4000);
+  private static final Instant T4 = Instant.ofEpochSeconds(5000);
+
+  private File _directory;
+  private BlockFileDataPointsStore _store;
+
+  @BeforeMethod
+  public void setUp() {
+    _directory = new File(System.getProperty("java.io.tmpdir"), "BlockFileDataPointsStoreTest-" + System.nanoTime());
+    _store = new BlockFileDataPointsStore(_directory);
+    _store.create(OID, T0);
+    _store.append(OID, new int[] {100, 101, 102 }, new double[] {1d, 2d, 3d }, T1);
+    _store.append(OID, new int[] {105, 106 }, new double[] {5d, 6d }, T2);
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(_directory);
+  }
+
+  private static void assertPoints(final BlockFileDataPointsStore.Points points, final int[] dates, final double[] values) {
+    assertEquals(dates.length, points.size());
+    for (int i = 0; i < dates.length; i++) {
+      assertEquals(dates[i], points.getDates()[i]);
+      assertEquals(values[i], points.getValues()[i], 0d);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_exists() {
+    assertTrue(_store.exists(OID));
+    assertFalse(_store.exists(ObjectId.of("DbHts", "DP102")));
+    assertNull(_store.read(ObjectId.of("DbHts", "DP102"), T4, T4));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_create_exists() {
+    _store.create(OID, T1);
+  }
+
+  public void test_read_beforeCreated() {
+    assertNull(_store.read(OID, T0.minusSeconds(1), T4));
+  }
+
+  public void test_read_versions() {
+    assertPoints(_store.read(OID, T0, T4), new int[0], new double[0]);
+    assertPoints(_store.read(OID, T1, T4), new int[] {100, 101, 102 }, new double[] {1d, 2d, 3d });
+    final BlockFileDataPointsStore.Points latest = _store.read(OID, T4, T4);
+    assertPoints(latest, new int[] {100, 101, 102, 105, 106 }, new double[] {1d, 2d, 3d, 5d, 6d });
+    assertEquals(T2, latest.getVersionInstant());
+    assertEquals(T2, latest.getCorrectionInstant());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_append_beforeLatest() {
+    _store.append(OID, new int[] {106, 107 }, new double[] {6d, 7d }, T3);
+  }
+
+  public void test_correct() {
+    _store.correct(OID, new int[] {101, 103, 106 }, new double[] {21d, 23d, 26d }, T3);
+    // the correction of an existing date applies to every version containing it
+    assertPoints(_store.read(OID, T1, T3), new int[] {100, 101, 102 }, new double[] {1d, 21d, 3d });
+    assertPoints(_store.read(OID, T1, T2), new int[] {100, 101, 102 }, new double[] {1d, 2d, 3d });
+    assertPoints(_store.read(OID, T2, T4), new int[] {100, 101, 102, 105, 106 }, new double[] {1d, 21d, 3d, 5d, 26d });
+    // a new date is only visible from the correction onwards
+    final BlockFileDataPointsStore.Points latest = _store.read(OID, T4, T4);
+    assertPoints(latest, new int[] {100, 101, 102, 103, 105, 106 }, new double[] {1d, 21d, 3d, 23d, 5d, 26d });
+    assertEquals(T3, latest.getVersionInstant());
+    assertEquals(T3, latest.getCorrectionInstant());
+  }
+
+  public void test_correct_addedByCorrection() {
+    _store.correct(OID, new int[] {103 }, new double[] {23d }, T3);
+    _store.correct(OID, new int[] {103 }, new double[] {33d }, T4);
+    // the second correction applies from the version the date was added at
+    assertPoints(_store.read(OID, T3, T4), new int[] {100, 101, 102, 103, 105, 106 }, new double[] {1d, 2d, 3d, 33d, 5d, 6d });
+    assertPoints(_store.read(OID, T3, T3), new int[] {100, 101, 102, 103, 105, 106 }, new double[] {1d, 2d, 3d, 23d, 5d, 6d });
+  }
+
+  public void test_correct_afterLatest() {
+    _store.correct(OID, new int[] {108 }, new double[] {8d }, T3);
+    _store.append(OID, new int[] {109 }, new double[] {9d }, T4);
+    assertPoints(_store.read(OID, T4, T4), new int[] {100, 101, 102, 105, 106, 108, 109 }, new double[] {1d, 2d, 3d, 5d, 6d, 8d, 9d });
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_correct_afterLatest_appendBefore() {
+    _store.correct(OID, new int[] {108 }, new double[] {8d }, T3);
+    _store.append(OID, new int[] {107 }, new double[] {7d }, T4);
+  }
+
+  public void test_remove() {
+    _store.remove(OID, 101, 105, T3);
+    assertPoints(_store.read(OID, T4, T4), new int[] {100, 106 }, new double[] {1d, 6d });
+    assertPoints(_store.read(OID, T1, T4), new int[] {100 }, new double[] {1d });
+    assertPoints(_store.read(OID, T4, T2), new int[] {100, 101, 102, 105, 106 }, new double[] {1d, 2d, 3d, 5d, 6d });
+    _store.correct(OID, new int[] {102 }, new double[] {32d }, T4);
+    assertPoints(_store.read(OID, T4, T4), new int[] {100, 102, 106 }, new double[] {1d, 32d, 6d });
+  }
+
+  public void test_remove_latest() {
+    _store.remove(OID, 105, 106, T3);
+    _store.append(OID, new int[] {103 }, new double[] {3.5d }, T4);
+    assertPoints(_store.read(OID, T4, T4), new int[] {100, 101, 102, 103 }, new double[] {1d, 2d, 3d, 3.5d });
+  }
+
+  public void test_toFastSeries() {
+    final BlockFileDataPointsStore.Points latest = _store.read(OID, T4, T4);
+    final FastIntDoubleTimeSeries all = latest.toFastSeries(0, latest.size());
+    assertEquals(5, all.size());
+    final FastIntDoubleTimeSeries part = latest.toFastSeries(1, 3);
+    assertEquals(2, part.size());
+    assertEquals(101, part.getEarliestTime().intValue());
+    assertEquals(3d, part.getLatestValue(), 0d);
+  }
+
+  public void test_compact() {
+    _store.correct(OID, new int[] {101 }, new double[] {21d }, T3);
+    _store.append(OID, new int[] {107 }, new double[] {7d }, T3);
+    _store.append(OID, new int[] {108 }, new double[] {8d }, T4);
+    final long length = _store.getFile(OID).length();
+    _store.compact(OID);
+    assertTrue(_store.getFile(OID).length() < length);
+    // every version-correction reads as before
+    assertPoints(_store.read(OID, T1, T2), new int[] {100, 101, 102 }, new double[] {1d, 2d, 3d });
+    assertPoints(_store.read(OID, T1, T4), new int[] {100, 101, 102 }, new double[] {1d, 21d, 3d });
+    assertPoints(_store.read(OID, T2, T2), new int[] {100, 101, 102, 105, 106 }, new double[] {1d, 2d, 3d, 5d, 6d });
+    assertPoints(_store.read(OID, T3, T4), new int[] {100, 101, 102, 105, 106, 107 }, new double[] {1d, 21d, 3d, 5d, 6d, 7d });
+    final BlockFileDataPointsStore.Points latest = _store.read(OID, T4, T4);
+    assertPoints(latest, new int[] {100, 101, 102, 105, 106, 107, 108 }, new double[] {1d, 21d, 3d, 5d, 6d, 7d, 8d });
+    assertEquals(T4, latest.getVersionInstant());
+    // a correction after compaction still applies from the version the date was appended at
+    _store.correct(OID, new int[] {105 }, new double[] {25d }, T4.plusSeconds(1));
+    assertPoints(_store.read(OID, T2, T4.plusSeconds(1)), new int[] {100, 101, 102, 105, 106 }, new double[] {1d, 21d, 3d, 25d, 6d });
+  }
+
+  public void test_compact_onAppend() {
+    final int count = 100;
+    final long length = _store.getFile(OID).length();
+    for (int i = 0; i < count; i++) {
+      _store.append(OID, new int[] {200 + i }, new double[] {i }, T2.plusSeconds(i + 1));
+    }
+    // the daily appends have been merged rather than each kept as a record
+    assertTrue(_store.getFile(OID).length() - length < count * 40);
+    final BlockFileDataPointsStore.Points latest = _store.read(OID, T4, T4);
+    assertEquals(5 + count, latest.size());
+    assertEquals(200 + count - 1, latest.getDates()[latest.size() - 1]);
+    final BlockFileDataPointsStore.Points earlier = _store.read(OID, T2.plusSeconds(10), T4);
+    assertEquals(5 + 10, earlier.size());
+    assertEquals(T2.plusSeconds(10), earlier.getVersionInstant());
+    final BlockFileDataPointsStore store = new BlockFileDataPointsStore(_directory);
+    assertPoints(store.read(OID, T2.plusSeconds(2), T4), new int[] {100, 101, 102, 105, 106, 200, 201 }, new double[] {1d, 2d, 3d, 5d, 6d, 0d, 1d });
+  }
+
+  public void test_compact_removeThenAppend() {
+    _store.remove(OID, 105, 106, T3);
+    _store.append(OID, new int[] {105 }, new double[] {15d }, T4);
+    _store.compact(OID);
+    assertPoints(_store.read(OID, T4, T4), new int[] {100, 101, 102, 105 }, new double[] {1d, 2d, 3d, 15d });
+    assertPoints(_store.read(OID, T3, T3), new int[] {100, 101, 102 }, new double[] {1d, 2d, 3d });
+  }
+
+  public void test_reopen() {
+    final BlockFileDataPointsStore store = new BlockFileDataPointsStore(_directory);
+    assertPoints(store.read(OID, T4, T4), new int[] {100, 101, 102, 105, 106 }, new double[] {1d, 2d, 3d, 5d, 6d });
+  }
+
+  public void test_incompleteRecord() throws IOException {
+    final File file = _store.getFile(OID);
+    final long length = file.length();
+    // a record left part written by a failed append
+    _store.append(OID, new int[] {107, 108 }, new double[] {7d, 8d }, T3);
+    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(file.length() - 3);
+    } finally {
+      raf.close();
+    }
+    final BlockFileDataPointsStore store = new BlockFileDataPointsStore(_directory);
+    assertPoints(store.read(OID, T4, T4), new int[] {100, 101, 102, 105, 106 }, new double[] {1d, 2d, 3d, 5d, 6d });
+    // the incomplete record is removed before writing
+    store.append(OID, new int[] {107 }, new double[] {17d }, T4);
+    assertPoints(store.read(OID, T4, T4), new int[] {100, 101, 102, 105, 106, 107 }, new double[] {1d, 2d, 3d, 5d, 6d, 17d });
+    assertTrue(file.length() > length);
+  }
+
+  public void test_corruptRecord() throws IOException {
+    _store.append(OID, new int[] {107, 108 }, new double[] {7d, 8d }, T3);
+    final File file = _store.getFile(OID);
+    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      final long position = file.length() - 6;
+      raf.seek(position);
+      final int b = raf.read();
+      raf.seek(position);
+      raf.write(b ^ 0xFF);
+    } finally {
+      raf.close();
+    }
+    final BlockFileDataPointsStore store = new BlockFileDataPointsStore(_directory);
+    assertPoints(store.read(OID, T4, T4), new int[] {100, 101, 102, 105, 106 }, new double[] {1d, 2d, 3d, 5d, 6d });
+  }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.historicaltimeseries.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.time.calendar.LocalDate;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.ExternalIdBundleWithDates;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.ObjectIdSupplier;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesGetFilter;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoDocument;
+import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeries;
+import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeriesInfo;
+import com.opengamma.util.timeseries.localdate.ArrayLocalDateDoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
+
+/**
+ * Test {@link BlockFileHistoricalTimeSeriesMaster}.
+ */
+@Test
+public class BlockFileHistoricalTimeSeriesMasterTest {
+
+  private static final LocalDate DATE1 = LocalDate.of(2012, 1, 2);
+  private static final LocalDate DATE2 = LocalDate.of(2012, 1, 3);
+  private static final LocalDate DATE3 = LocalDate.of(2012, 1, 4);
+  private static final LocalDate DATE4 = LocalDate.of(2012, 1, 5);
+
+  private File _directory;
+  private BlockFileHistoricalTimeSeriesMaster _master;
+  private ObjectId _oid;
+
+  @BeforeMethod
+  public void setUp() {
+    _directory = new File(System.getProperty("java.io.tmpdir"), "BlockFileHistoricalTimeSeriesMasterTest-" + System.nanoTime());
+    _master = new BlockFileHistoricalTimeSeriesMaster(new InMemoryHistoricalTimeSeriesMaster(new ObjectIdSupplier("Test")), new BlockFileDataPointsStore(_directory));
+    final ManageableHistoricalTimeSeriesInfo info = new ManageableHistoricalTimeSeriesInfo();
+    info.setName("Name1");
+    info.setDataField("DF1");
+    info.setDataSource("DS1");
+    info.setDataProvider("DP1");
+    info.setObservationTime("OT1");
+    info.setExternalIdBundle(ExternalIdBundleWithDates.of(ExternalId.of("A", "B").toBundle()));
+    HistoricalTimeSeriesInfoDocument doc = new HistoricalTimeSeriesInfoDocument();
+    doc.setInfo(info);
+    doc = _master.add(doc);
+    _oid = doc.getInfo().getTimeSeriesObjectId();
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(_directory);
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_add() {
+    assertTrue(_master.getStore().exists(_oid));
+    final ManageableHistoricalTimeSeries series = _master.getTimeSeries(_oid, VersionCorrection.LATEST);
+    assertEquals(0, series.getTimeSeries().size());
+    assertEquals(_oid, series.getUniqueId().getObjectId());
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void test_getTimeSeries_notFound() {
+    _master.getTimeSeries(ObjectId.of("Test", "999"), VersionCorrection.LATEST);
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void test_update_notFound() {
+    _master.updateTimeSeriesDataPoints(ObjectId.of("Test", "999"), new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1 }, new double[] {1d }));
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void test_correct_notFound() {
+    _master.correctTimeSeriesDataPoints(ObjectId.of("Test", "999"), new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1 }, new double[] {1d }));
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void test_remove_notFound() {
+    _master.removeTimeSeriesDataPoints(ObjectId.of("Test", "999"), DATE1, DATE2);
+  }
+
+  public void test_update() {
+    final LocalDateDoubleTimeSeries ts = new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1, DATE2, DATE3 }, new double[] {1d, 2d, 3d });
+    final UniqueId uniqueId = _master.updateTimeSeriesDataPoints(_oid, ts);
+    final ManageableHistoricalTimeSeries series = _master.getTimeSeries(uniqueId);
+    assertEquals(uniqueId, series.getUniqueId());
+    assertEquals(ts, series.getTimeSeries());
+    assertEquals(ts, _master.getTimeSeries(_oid.atLatestVersion()).getTimeSeries());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_update_beforeLatest() {
+    _master.updateTimeSeriesDataPoints(_oid, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE2 }, new double[] {2d }));
+    _master.updateTimeSeriesDataPoints(_oid, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1 }, new double[] {1d }));
+  }
+
+  public void test_correct() {
+    _master.updateTimeSeriesDataPoints(_oid, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1, DATE3 }, new double[] {1d, 3d }));
+    _master.correctTimeSeriesDataPoints(_oid, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE2, DATE3 }, new double[] {2d, 33d }));
+    final LocalDateDoubleTimeSeries expected = new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1, DATE2, DATE3 }, new double[] {1d, 2d, 33d });
+    assertEquals(expected, _master.getTimeSeries(_oid, VersionCorrection.LATEST).getTimeSeries());
+  }
+
+  public void test_remove() {
+    _master.updateTimeSeriesDataPoints(_oid, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1, DATE2, DATE3, DATE4 }, new double[] {1d, 2d, 3d, 4d }));
+    _master.removeTimeSeriesDataPoints(_oid, DATE2, DATE3);
+    LocalDateDoubleTimeSeries expected = new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1, DATE4 }, new double[] {1d, 4d });
+    assertEquals(expected, _master.getTimeSeries(_oid, VersionCorrection.LATEST).getTimeSeries());
+    _master.removeTimeSeriesDataPoints(_oid, null, DATE1);
+    expected = new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE4 }, new double[] {4d });
+    assertEquals(expected, _master.getTimeSeries(_oid, VersionCorrection.LATEST).getTimeSeries());
+  }
+
+  public void test_getTimeSeries_filter() {
+    _master.updateTimeSeriesDataPoints(_oid, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1, DATE2, DATE3, DATE4 }, new double[] {1d, 2d, 3d, 4d }));
+    LocalDateDoubleTimeSeries ts = _master.getTimeSeries(_oid, VersionCorrection.LATEST, HistoricalTimeSeriesGetFilter.ofRange(DATE2, DATE3)).getTimeSeries();
+    assertEquals(new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE2, DATE3 }, new double[] {2d, 3d }), ts);
+    ts = _master.getTimeSeries(_oid, VersionCorrection.LATEST, HistoricalTimeSeriesGetFilter.ofLatestPoint()).getTimeSeries();
+    assertEquals(new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE4 }, new double[] {4d }), ts);
+    ts = _master.getTimeSeries(_oid, VersionCorrection.LATEST, HistoricalTimeSeriesGetFilter.ofEarliestPoint()).getTimeSeries();
+    assertEquals(new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1 }, new double[] {1d }), ts);
+    ts = _master.getTimeSeries(_oid, VersionCorrection.LATEST, HistoricalTimeSeriesGetFilter.ofRange(DATE4.plusDays(1), null)).getTimeSeries();
+    assertEquals(0, ts.size());
+  }
+
+  public void test_getTimeSeries_bulk() {
+    _master.updateTimeSeriesDataPoints(_oid, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {DATE1 }, new double[] {1d }));
+    final ObjectId missing = ObjectId.of("Test", "999");
+    final Map<ObjectId, ManageableHistoricalTimeSeries> result = _master.getTimeSeries(Arrays.asList(_oid, missing), VersionCorrection.LATEST,
+        HistoricalTimeSeriesGetFilter.ofRange(null, null));
+    assertEquals(1, result.size());
+    assertEquals(1, result.get(_oid).getTimeSeries().size());
+    assertFalse(result.containsKey(missing));
+  }
+
+}
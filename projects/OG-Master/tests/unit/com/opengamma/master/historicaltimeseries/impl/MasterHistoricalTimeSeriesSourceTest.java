@@ -11,6 +11,11 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
 
 import javax.time.calendar.LocalDate;
 
@@ -18,8 +23,10 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.Sets;
 import com.opengamma.core.historicaltimeseries.HistoricalTimeSeries;
 import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesGetFilter;
@@ -112,6 +119,29 @@ public class MasterHistoricalTimeSeriesSourceTest {
     assertEquals(UID, test.getUniqueId());
   }
 
+  public void getHistoricalTimeSeriesBulk() throws Exception {
+    ExternalIdBundle unresolved = ExternalIdBundle.of("A", "C");
+    ManageableHistoricalTimeSeriesInfo tsInfo = new ManageableHistoricalTimeSeriesInfo();
+    tsInfo.setUniqueId(UID);
+    tsInfo.setTimeSeriesObjectId(UID.getObjectId());
+    when(_mockResolver.resolve(IDENTIFIERS, LocalDate.now(), BBG_DATA_SOURCE, CMPL_DATA_PROVIDER, CLOSE_DATA_FIELD, null)).thenReturn(new HistoricalTimeSeriesResolutionResult(tsInfo));
+    
+    ManageableHistoricalTimeSeries hts = new ManageableHistoricalTimeSeries();
+    hts.setUniqueId(UID);
+    hts.setTimeSeries(randomTimeSeries());
+    when(_mockMaster.getTimeSeries(Collections.singleton(UID.getObjectId()), VersionCorrection.LATEST, HistoricalTimeSeriesGetFilter.ofRange(null, null)))
+        .thenReturn(Collections.<ObjectId, ManageableHistoricalTimeSeries>singletonMap(UID.getObjectId(), hts));
+    
+    Map<ExternalIdBundle, HistoricalTimeSeries> test = _tsSource.getHistoricalTimeSeries(Sets.newHashSet(IDENTIFIERS, unresolved),
+        BBG_DATA_SOURCE, CMPL_DATA_PROVIDER, CLOSE_DATA_FIELD, null, true, null, true);
+    verify(_mockMaster, times(1)).getTimeSeries(Collections.singleton(UID.getObjectId()), VersionCorrection.LATEST, HistoricalTimeSeriesGetFilter.ofRange(null, null));
+    
+    assertEquals(2, test.size());
+    assertEquals(hts, test.get(IDENTIFIERS));
+    assertTrue(test.containsKey(unresolved));
+    assertNull(test.get(unresolved));
+  }
+
   public void getHistoricalTimeSeriesByExternalIdWithoutMetaData() throws Exception {
     ManageableHistoricalTimeSeries hts = new ManageableHistoricalTimeSeries();
     hts.setUniqueId(UID);
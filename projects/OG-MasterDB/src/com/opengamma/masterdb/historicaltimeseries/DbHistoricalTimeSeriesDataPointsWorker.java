@@ -11,6 +11,8 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -31,6 +33,7 @@ import com.opengamma.DataNotFoundException;
 import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.core.change.ChangeType;
 import com.opengamma.elsql.ElSqlBundle;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.ObjectIdentifiable;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
@@ -67,6 +70,10 @@ public class DbHistoricalTimeSeriesDataPointsWorker extends AbstractDbMaster {
    * The prefix used for data point unique identifiers.
    */
   protected static final String DATA_POINT_PREFIX = "DP";
+  /**
+   * The maximum number of time-series loaded by each bulk query.
+   */
+  protected static final int BULK_BATCH_SIZE = 500;
 
   /**
    * The master.
@@ -166,6 +173,127 @@ public class DbHistoricalTimeSeriesDataPointsWorker extends AbstractDbMaster {
     return result;
   }
     
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the data points of many time-series.
+   * <p>
+   * The series are loaded in batches of {@link #BULK_BATCH_SIZE}, each using a fixed number of queries
+   * rather than the two or three used for each call to the single time-series method.
+   * The data points of each batch are read in a single pass ordered by series and date.
+   * Any limit on the number of points is applied to each series by the database.
+   * 
+   * @param objectIds  the time-series data points object identifiers, not null
+   * @param versionCorrection  the version-correction locator to search at, not null
+   * @param filter  the time-series subset filter, not null
+   * @return the time-series keyed by object identifier, not null, omitting any that never existed
+   */
+  public Map<ObjectId, ManageableHistoricalTimeSeries> getTimeSeries(Collection<ObjectId> objectIds, VersionCorrection versionCorrection, HistoricalTimeSeriesGetFilter filter) {
+    ArgumentChecker.notNull(objectIds, "objectIds");
+    ArgumentChecker.notNull(versionCorrection, "versionCorrection");
+    ArgumentChecker.notNull(filter, "filter");
+    s_logger.debug("bulk get of {} time-series", objectIds.size());
+    
+    final VersionCorrection vc = versionCorrection.withLatestFixed(now());
+    final Map<ObjectId, ManageableHistoricalTimeSeries> result = new HashMap<ObjectId, ManageableHistoricalTimeSeries>();
+    final Map<Long, ObjectId> batch = new HashMap<Long, ObjectId>();
+    for (ObjectId objectId : objectIds) {
+      checkScheme(objectId);
+      batch.put(extractOid(objectId), objectId);
+      if (batch.size() == BULK_BATCH_SIZE) {
+        getTimeSeriesBatch(batch, vc, filter, result);
+        batch.clear();
+      }
+    }
+    if (batch.size() > 0) {
+      getTimeSeriesBatch(batch, vc, filter, result);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the data points of a batch of time-series.
+   * 
+   * @param batch  the object identifiers keyed by object row id, not empty, not null
+   * @param vc  the version-correction locator with the latest instants fixed, not null
+   * @param filter  the time-series subset filter, not null
+   * @param result  the map to add the time-series to, not null
+   */
+  protected void getTimeSeriesBatch(final Map<Long, ObjectId> batch, final VersionCorrection vc, final HistoricalTimeSeriesGetFilter filter,
+      final Map<ObjectId, ManageableHistoricalTimeSeries> result) {
+    final DbMapSqlParameterSource args = new DbMapSqlParameterSource()
+      .addValue("sql_doc_oids", sqlOids(batch.keySet()))
+      .addTimestamp("version_as_of_instant", vc.getVersionAsOf())
+      .addTimestamp("corrected_to_instant", vc.getCorrectedTo())
+      .addValue("start_date", DbDateUtils.toSqlDateNullFarPast(filter.getEarliestDate()))
+      .addValue("end_date", DbDateUtils.toSqlDateNullFarFuture(filter.getLatestDate()));
+    final NamedParameterJdbcOperations namedJdbc = getDbConnector().getJdbcTemplate().getNamedParameterJdbcOperations();
+    
+    // Get version metadata from the data-points of all the series at once
+    final String sqlVersion = getElSqlBundle().getSql("SelectDataPointsVersionBulk", args);
+    final Map<Long, ManageableHistoricalTimeSeries> found = namedJdbc.query(sqlVersion, args, new ManageableHTSBulkExtractor());
+    if (found.size() < batch.size()) {
+      // Check which of the series without data-points exist or existed at some point
+      final List<Long> missing = new ArrayList<Long>(batch.size() - found.size());
+      for (Long oid : batch.keySet()) {
+        if (!found.containsKey(oid)) {
+          missing.add(oid);
+        }
+      }
+      final DbMapSqlParameterSource existsArgs = new DbMapSqlParameterSource()
+        .addValue("sql_doc_oids", sqlOids(missing))
+        .addTimestamp("version_as_of_instant", vc.getVersionAsOf())
+        .addTimestamp("corrected_to_instant", vc.getCorrectedTo());
+      final String sqlExists = getElSqlBundle().getSql("SelectExistentialBulk", existsArgs);
+      final Map<Long, ManageableHistoricalTimeSeries> existing = namedJdbc.query(sqlExists, existsArgs, new ManageableHTSBulkExtractor());
+      for (Map.Entry<Long, ManageableHistoricalTimeSeries> entry : existing.entrySet()) {
+        entry.getValue().setTimeSeries(new ArrayLocalDateDoubleTimeSeries());
+        result.put(batch.get(entry.getKey()), entry.getValue());
+      }
+    }
+    if (found.isEmpty()) {
+      return;
+    }
+    
+    // Get the actual data points, unless none are requested
+    final Integer maxPoints = filter.getMaxPoints();
+    if ((maxPoints == null || maxPoints != 0) &&
+        (filter.getLatestDate() == null || filter.getEarliestDate() == null || !filter.getLatestDate().isBefore(filter.getEarliestDate()))) {
+      args.addValue("sql_doc_oids", sqlOids(found.keySet()));
+      final String sqlPoints;
+      if (maxPoints == null) {
+        sqlPoints = getElSqlBundle().getSql("SelectDataPointsBulk", args);
+      } else {
+        // Rank the points of each series from the requested end and only return the first few
+        args.addValue("max_points", Math.abs(maxPoints));
+        args.addValue("order", maxPoints > 0 ? "ASC" : "DESC");
+        args.addValue("rank_operator", maxPoints > 0 ? "<" : ">");
+        sqlPoints = getElSqlBundle().getSql("SelectDataPointsBulkLimited", args);
+      }
+      namedJdbc.query(sqlPoints, args, new BulkDataPointsExtractor(found));
+    }
+    for (Map.Entry<Long, ManageableHistoricalTimeSeries> entry : found.entrySet()) {
+      if (entry.getValue().getTimeSeries() == null) {
+        entry.getValue().setTimeSeries(new ArrayLocalDateDoubleTimeSeries());
+      }
+      result.put(batch.get(entry.getKey()), entry.getValue());
+    }
+  }
+
+  /**
+   * Gets the SQL list of object row ids.
+   * 
+   * @param oids  the object row ids, not empty, not null
+   * @return the comma separated list, not null
+   */
+  private static String sqlOids(final Collection<Long> oids) {
+    final StringBuilder buf = new StringBuilder(oids.size() * 10);
+    for (Long oid : oids) {
+      buf.append(oid).append(", ");
+    }
+    buf.setLength(buf.length() - 2);
+    return buf.toString();
+  }
+
   //-------------------------------------------------------------------------
   public UniqueId updateTimeSeriesDataPoints(final ObjectIdentifiable objectId, final LocalDateDoubleTimeSeries series) {
     ArgumentChecker.notNull(objectId, "objectId");
@@ -442,6 +570,83 @@ public class DbHistoricalTimeSeriesDataPointsWorker extends AbstractDbMaster {
     }
   }
 
+  //-------------------------------------------------------------------------
+  /**
+   * Streams the SQL rows of the data points of many time-series, ordered by series and date,
+   * onto the time-series they belong to.
+   */
+  protected final class BulkDataPointsExtractor implements ResultSetExtractor<Void> {
+    private final Map<Long, ManageableHistoricalTimeSeries> _series;
+    private final List<LocalDate> _dates = new ArrayList<LocalDate>(256);
+    private final List<Double> _values = new ArrayList<Double>(256);
+    public BulkDataPointsExtractor(final Map<Long, ManageableHistoricalTimeSeries> series) {
+      _series = series;
+    }
+    @Override
+    public Void extractData(final ResultSet rs) throws SQLException, DataAccessException {
+      long oid = -1;
+      LocalDate last = null;
+      while (rs.next()) {
+        final long docOid = rs.getLong("DOC_OID");
+        if (docOid != oid) {
+          complete(oid);
+          oid = docOid;
+          last = null;
+        }
+        LocalDate date = DbDateUtils.fromSqlDateAllowNull(rs.getDate("POINT_DATE"));
+        if (date.equals(last) == false) {
+          last = date;
+          Double value = (Double) rs.getObject("POINT_VALUE");
+          if (value != null) {
+            _dates.add(date);
+            _values.add(value);
+          }
+        } else {
+          // The data points query should return no more than one value per date
+          throw new OpenGammaRuntimeException("Unexpected duplicate data point entry");
+        }
+      }
+      complete(oid);
+      return null;
+    }
+    private void complete(final long oid) {
+      final ManageableHistoricalTimeSeries hts = _series.get(oid);
+      if (hts != null) {
+        hts.setTimeSeries(new ArrayLocalDateDoubleTimeSeries(_dates, _values));
+      }
+      _dates.clear();
+      _values.clear();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Mapper from SQL rows to the ManageableHistoricalTimeSeries of many time-series,
+   * keyed by object row id. Only the first row for each series is used.
+   */
+  protected final class ManageableHTSBulkExtractor implements ResultSetExtractor<Map<Long, ManageableHistoricalTimeSeries>> {
+    @Override
+    public Map<Long, ManageableHistoricalTimeSeries> extractData(final ResultSet rs) throws SQLException, DataAccessException {
+      final Map<Long, ManageableHistoricalTimeSeries> result = new HashMap<Long, ManageableHistoricalTimeSeries>();
+      while (rs.next()) {
+        final long oid = rs.getLong("DOC_OID");
+        if (result.containsKey(oid)) {
+          continue;
+        }
+        Timestamp ver = rs.getTimestamp("max_ver_instant");
+        Timestamp corr = rs.getTimestamp("max_corr_instant");
+        Instant verInstant = ver != null ? DbDateUtils.fromSqlTimestamp(ver) : null;
+        Instant corrInstant = (corr != null ? DbDateUtils.fromSqlTimestamp(corr) : verInstant);
+        ManageableHistoricalTimeSeries hts = new ManageableHistoricalTimeSeries();
+        hts.setUniqueId(createTimeSeriesUniqueId(oid, verInstant, corrInstant));
+        hts.setVersionInstant(verInstant);
+        hts.setCorrectionInstant(corrInstant);
+        result.put(oid, hts);
+      }
+      return result;
+    }
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Mapper from SQL rows to a UniqueId.
@@ -6,8 +6,12 @@
 package com.opengamma.masterdb.historicaltimeseries;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertNotNull;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import javax.time.calendar.LocalDate;
 
 import org.slf4j.Logger;
@@ -265,6 +269,74 @@ public class DbHistoricalTimeSeriesMasterWorkerGetTimeSeriesTest extends Abstrac
     assertEquals(3.21d, timeSeries.getValueAt(0), 0.0001d);
   }
 
+  //-------------------------------------------------------------------------
+  @Test
+  public void test_getBulk_latest() {
+    ObjectId oid101 = ObjectId.of("DbHts", "DP101");
+    ObjectId oid102 = ObjectId.of("DbHts", "DP102");
+    ObjectId oid999 = ObjectId.of("DbHts", "DP999");
+    Map<ObjectId, ManageableHistoricalTimeSeries> test = _htsMaster.getTimeSeries(Arrays.asList(oid101, oid102, oid999),
+        VersionCorrection.LATEST, HistoricalTimeSeriesGetFilter.ofRange(null, null));
+    assertEquals(2, test.size());
+    assertFalse(test.containsKey(oid999));
+    ManageableHistoricalTimeSeries expected101 = _htsMaster.getTimeSeries(oid101, VersionCorrection.LATEST);
+    assertEquals(expected101.getUniqueId(), test.get(oid101).getUniqueId());
+    assertEquals(expected101.getTimeSeries(), test.get(oid101).getTimeSeries());
+    assertEquals(oid102, test.get(oid102).getUniqueId().getObjectId());
+    assertEquals(0, test.get(oid102).getTimeSeries().size());
+  }
+
+  @Test
+  public void test_getBulk_nPointsFromLatestWithinDateRange() {
+    ObjectId oid = ObjectId.of("DbHts", "DP101");
+    HistoricalTimeSeriesGetFilter filter = HistoricalTimeSeriesGetFilter.ofRange(null, LocalDate.of(2011, 1, 2), -1);
+    VersionCorrection vc = VersionCorrection.of(_version2Instant.plusSeconds(1), _version3Instant.plusSeconds(1));
+    Map<ObjectId, ManageableHistoricalTimeSeries> test = _htsMaster.getTimeSeries(Arrays.asList(oid), vc, filter);
+    LocalDateDoubleTimeSeries timeSeries = test.get(oid).getTimeSeries();
+    assertEquals(1, timeSeries.size());
+    assertEquals(LocalDate.of(2011, 1, 2), timeSeries.getTimeAt(0));
+    assertEquals(3.21d, timeSeries.getValueAt(0), 0.0001d);
+  }
+
+  @Test
+  public void test_getBulk_nPointsFromEarliest() {
+    ObjectId oid101 = ObjectId.of("DbHts", "DP101");
+    ObjectId oid102 = ObjectId.of("DbHts", "DP102");
+    HistoricalTimeSeriesGetFilter filter = new HistoricalTimeSeriesGetFilter();
+    filter.setMaxPoints(2);
+    Map<ObjectId, ManageableHistoricalTimeSeries> test = _htsMaster.getTimeSeries(Arrays.asList(oid101, oid102), VersionCorrection.LATEST, filter);
+    assertEquals(2, test.size());
+    LocalDateDoubleTimeSeries timeSeries = test.get(oid101).getTimeSeries();
+    assertEquals(2, timeSeries.size());
+    assertEquals(LocalDate.of(2011, 1, 1), timeSeries.getTimeAt(0));
+    assertEquals(3.1d, timeSeries.getValueAt(0), 0.0001d);
+    assertEquals(LocalDate.of(2011, 1, 2), timeSeries.getTimeAt(1));
+    assertEquals(3.22d, timeSeries.getValueAt(1), 0.0001d);
+    assertEquals(0, test.get(oid102).getTimeSeries().size());
+  }
+
+  @Test
+  public void test_getBulk_nPointsFromLatest() {
+    ObjectId oid = ObjectId.of("DbHts", "DP101");
+    HistoricalTimeSeriesGetFilter filter = new HistoricalTimeSeriesGetFilter();
+    filter.setMaxPoints(-2);
+    Map<ObjectId, ManageableHistoricalTimeSeries> test = _htsMaster.getTimeSeries(Arrays.asList(oid), VersionCorrection.LATEST, filter);
+    LocalDateDoubleTimeSeries timeSeries = test.get(oid).getTimeSeries();
+    assertEquals(2, timeSeries.size());
+    assertEquals(LocalDate.of(2011, 1, 2), timeSeries.getTimeAt(0));
+    assertEquals(3.22d, timeSeries.getValueAt(0), 0.0001d);
+    assertEquals(LocalDate.of(2011, 1, 3), timeSeries.getTimeAt(1));
+    assertEquals(3.33d, timeSeries.getValueAt(1), 0.0001d);
+  }
+
+  @Test
+  public void test_getBulk_pre1() {
+    ObjectId oid = ObjectId.of("DbHts", "DP101");
+    Map<ObjectId, ManageableHistoricalTimeSeries> test = _htsMaster.getTimeSeries(Arrays.asList(oid),
+        VersionCorrection.ofVersionAsOf(_version1Instant.minusSeconds(1)), HistoricalTimeSeriesGetFilter.ofRange(null, null));
+    assertEquals(0, test.size());
+  }
+
   //-------------------------------------------------------------------------
   @Test
   public void test_toString() {
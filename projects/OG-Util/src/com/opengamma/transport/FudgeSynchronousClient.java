@@ -157,6 +157,39 @@ public abstract class FudgeSynchronousClient implements FudgeMessageReceiver {
     }
   }
 
+  /**
+   * Sends the message without waiting for the response. Any number of requests may be outstanding on the underlying
+   * transport at once. The response is passed to the receiver from the thread delivering incoming messages, so the
+   * receiver must not block. There is no timeout; a caller that gives up waiting for a response must call
+   * {@link #cancelRequest}.
+   * 
+   * @param requestMsg  the message, not null
+   * @param correlationId  the message id
+   * @param responseReceiver  the receiver to pass the response to, not null
+   */
+  protected void sendRequest(final FudgeMsg requestMsg, final long correlationId, final FudgeMessageReceiver responseReceiver) {
+    ArgumentChecker.notNull(responseReceiver, "responseReceiver");
+    _pendingRequests.put(correlationId, new ClientRequestHolder(responseReceiver));
+    s_logger.debug("Sending message {}", correlationId);
+    try {
+      getMessageSender().send(requestMsg);
+    } catch (RuntimeException e) {
+      _pendingRequests.remove(correlationId);
+      throw e;
+    }
+  }
+
+  /**
+   * Discards an outstanding request sent with {@link #sendRequest}. Any response that arrives later is ignored.
+   * 
+   * @param correlationId  the message id
+   */
+  protected void cancelRequest(final long correlationId) {
+    if (_pendingRequests.remove(correlationId) != null) {
+      s_logger.debug("Request {} cancelled", correlationId);
+    }
+  }
+
   protected void sendMessage(FudgeMsg message) {
     getMessageSender().send(message);
   }
@@ -185,6 +218,10 @@ public abstract class FudgeSynchronousClient implements FudgeMessageReceiver {
       s_logger.warn("Got a response on non-pending correlation Id {}", correlationId);
       return;
     }
+    if (requestHolder.receiver != null) {
+      requestHolder.receiver.messageReceived(fudgeContext, msgEnvelope);
+      return;
+    }
     requestHolder.resultValue = reply;
     requestHolder.latch.countDown();
   }
@@ -204,6 +241,15 @@ public abstract class FudgeSynchronousClient implements FudgeMessageReceiver {
   private static final class ClientRequestHolder {
     public FudgeMsg resultValue; // CSIGNORE: simple holder object
     public final CountDownLatch latch = new CountDownLatch(1); // CSIGNORE: simple holder object
+    public final FudgeMessageReceiver receiver; // CSIGNORE: simple holder object
+
+    public ClientRequestHolder() {
+      receiver = null;
+    }
+
+    public ClientRequestHolder(final FudgeMessageReceiver receiver) {
+      this.receiver = receiver;
+    }
   }
 
 }
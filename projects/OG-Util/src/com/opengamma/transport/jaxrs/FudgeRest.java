@@ -20,6 +20,14 @@ public final class FudgeRest {
    * Media type for Fudge.
    */
   public static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA);
+  /**
+   * Request header sent by a client that reads time-series in the compressed form.
+   * <p>
+   * A resource that supports it encodes the time-series of its response as registered by
+   * {@link com.opengamma.util.timeseries.fudge.CompressedDoubleTimeSeriesFudgeSecondaryType}.
+   * Only the Fudge binary form should be requested with it.
+   */
+  public static final String COMPRESSED_TIME_SERIES_HEADER = "X-OpenGamma-Compressed-Time-Series";
 
   /**
    * Restricted constructor.
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.nio;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Pool of fixed size direct byte buffers.
+ * <p>
+ * Direct buffers are expensive to allocate and are only released by the garbage collector, so the buffers used for
+ * channel I/O are recycled rather than allocated for each operation. Any number of buffers may be acquired; at most
+ * the configured number are retained when released.
+ */
+public class DirectBufferPool {
+
+  /**
+   * Default size of each buffer.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Default number of buffers retained by the pool.
+   */
+  public static final int DEFAULT_MAX_POOLED = 64;
+
+  private final int _bufferSize;
+  private final int _maxPooled;
+  private final Queue<ByteBuffer> _buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+  private final AtomicInteger _pooled = new AtomicInteger();
+
+  public DirectBufferPool() {
+    this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+  }
+
+  public DirectBufferPool(final int bufferSize, final int maxPooled) {
+    ArgumentChecker.isTrue(bufferSize > 0, "bufferSize");
+    ArgumentChecker.notNegative(maxPooled, "maxPooled");
+    _bufferSize = bufferSize;
+    _maxPooled = maxPooled;
+  }
+
+  public int getBufferSize() {
+    return _bufferSize;
+  }
+
+  public int getMaxPooled() {
+    return _maxPooled;
+  }
+
+  /**
+   * Returns a cleared buffer, allocating a new one if the pool is empty.
+   *
+   * @return the buffer, not null
+   */
+  public ByteBuffer acquire() {
+    final ByteBuffer buffer = _buffers.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(_bufferSize);
+    }
+    _pooled.decrementAndGet();
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Returns a buffer to the pool. The caller must not use the buffer after releasing it.
+   *
+   * @param buffer the buffer previously returned by {@link #acquire}, not null
+   */
+  public void release(final ByteBuffer buffer) {
+    ArgumentChecker.notNull(buffer, "buffer");
+    if (!buffer.isDirect() || (buffer.capacity() != _bufferSize)) {
+      return;
+    }
+    if (_pooled.incrementAndGet() <= _maxPooled) {
+      _buffers.add(buffer);
+    } else {
+      _pooled.decrementAndGet();
+    }
+  }
+
+}
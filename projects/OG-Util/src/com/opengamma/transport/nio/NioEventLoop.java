@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ThreadUtils;
+
+/**
+ * A single thread servicing a {@link Selector}.
+ * <p>
+ * All operations on the channels registered with a loop happen on its thread. Other threads submit work with
+ * {@link #execute}, which wakes the selector if it is blocked.
+ */
+/* package */final class NioEventLoop implements Runnable {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(NioEventLoop.class);
+
+  /**
+   * Call-back for a channel that is ready for one of its registered operations.
+   */
+  interface Handler {
+
+    /**
+     * Called on the loop thread when the channel is ready.
+     *
+     * @param key the selection key of the channel, not null
+     */
+    void ready(SelectionKey key);
+
+    /**
+     * Called on the loop thread if the channel could not be registered, or the loop is stopping.
+     *
+     * @param cause the cause, not null
+     */
+    void closed(Exception cause);
+
+  }
+
+  private final Selector _selector;
+  private final DirectBufferPool _bufferPool;
+  private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicBoolean _wakeupPending = new AtomicBoolean();
+  private final ByteBuffer _readBuffer;
+  private final Thread _thread;
+  private volatile boolean _running = true;
+
+  /* package */NioEventLoop(final String name, final DirectBufferPool bufferPool) {
+    try {
+      _selector = Selector.open();
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Unable to open selector", e);
+    }
+    _bufferPool = bufferPool;
+    _readBuffer = bufferPool.acquire();
+    _thread = new Thread(this, name);
+    _thread.setDaemon(true);
+  }
+
+  /* package */void start() {
+    _thread.start();
+  }
+
+  /* package */void stop() {
+    _running = false;
+    _selector.wakeup();
+    if (Thread.currentThread() != _thread) {
+      ThreadUtils.safeJoin(_thread, 60 * 1000L);
+    }
+  }
+
+  /* package */boolean isLoopThread() {
+    return Thread.currentThread() == _thread;
+  }
+
+  /**
+   * Returns the buffer for channel reads. It may only be used on the loop thread, and must not be held between calls.
+   *
+   * @return the buffer, not null
+   */
+  /* package */ByteBuffer getReadBuffer() {
+    return _readBuffer;
+  }
+
+  /**
+   * Runs a task on the loop thread.
+   *
+   * @param task the task to run, not null
+   */
+  /* package */void execute(final Runnable task) {
+    _tasks.add(task);
+    if (!isLoopThread() && _wakeupPending.compareAndSet(false, true)) {
+      _selector.wakeup();
+    }
+  }
+
+  /**
+   * Registers a channel with the loop's selector.
+   *
+   * @param channel the channel, in non-blocking mode, not null
+   * @param ops the initial interest set
+   * @param handler the call-back for ready operations, not null
+   */
+  /* package */void register(final SelectableChannel channel, final int ops, final Handler handler) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          channel.register(_selector, ops, handler);
+        } catch (ClosedChannelException e) {
+          handler.closed(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the key of a registered channel. This may only be called on the loop thread.
+   *
+   * @param channel the channel, not null
+   * @return the key, or null if the channel is not registered
+   */
+  /* package */SelectionKey keyFor(final SelectableChannel channel) {
+    return channel.keyFor(_selector);
+  }
+
+  @Override
+  public void run() {
+    while (_running) {
+      try {
+        _selector.select();
+      } catch (IOException e) {
+        s_logger.error("Selector failed", e);
+        break;
+      }
+      _wakeupPending.set(false);
+      Runnable task = _tasks.poll();
+      while (task != null) {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          s_logger.warn("Error running task on event loop", e);
+        }
+        task = _tasks.poll();
+      }
+      final Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        final SelectionKey key = keys.next();
+        keys.remove();
+        try {
+          ((Handler) key.attachment()).ready(key);
+        } catch (CancelledKeyException e) {
+          // Closed by another thread
+        } catch (RuntimeException e) {
+          s_logger.warn("Error handling ready channel", e);
+        }
+      }
+    }
+    final Exception cause = new ClosedChannelException();
+    for (SelectionKey key : _selector.keys()) {
+      try {
+        ((Handler) key.attachment()).closed(cause);
+      } catch (RuntimeException e) {
+        s_logger.warn("Error closing channel", e);
+      }
+    }
+    try {
+      _selector.close();
+    } catch (IOException e) {
+      s_logger.warn("Unable to close selector", e);
+    }
+    _bufferPool.release(_readBuffer);
+  }
+
+}
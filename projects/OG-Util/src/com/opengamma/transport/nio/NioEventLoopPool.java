@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.nio;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.context.Lifecycle;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A small, fixed, set of selector threads shared by NIO connections.
+ * <p>
+ * Each connection is assigned to one of the loops for its lifetime; connections are spread over the loops in turn. A
+ * pool can be shared by any number of servers and clients, and must be started before they are.
+ */
+public class NioEventLoopPool implements Lifecycle {
+
+  /**
+   * Default number of event loops.
+   */
+  public static final int DEFAULT_EVENT_LOOPS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() / 2, 4));
+
+  private static NioEventLoopPool s_default;
+
+  private final String _name;
+  private final int _size;
+  private final DirectBufferPool _bufferPool;
+  private final AtomicInteger _next = new AtomicInteger();
+  private NioEventLoop[] _loops;
+
+  public NioEventLoopPool(final String name) {
+    this(name, DEFAULT_EVENT_LOOPS, new DirectBufferPool());
+  }
+
+  public NioEventLoopPool(final String name, final int size) {
+    this(name, size, new DirectBufferPool());
+  }
+
+  public NioEventLoopPool(final String name, final int size, final DirectBufferPool bufferPool) {
+    ArgumentChecker.notNull(name, "name");
+    ArgumentChecker.isTrue(size > 0, "size");
+    ArgumentChecker.notNull(bufferPool, "bufferPool");
+    _name = name;
+    _size = size;
+    _bufferPool = bufferPool;
+  }
+
+  /**
+   * Returns a started pool, with the default number of loops, for components that have not been given one.
+   *
+   * @return the shared pool, not null
+   */
+  public static synchronized NioEventLoopPool getDefault() {
+    if (s_default == null) {
+      s_default = new NioEventLoopPool("NIO Fudge");
+      s_default.start();
+    }
+    return s_default;
+  }
+
+  public int getSize() {
+    return _size;
+  }
+
+  public DirectBufferPool getBufferPool() {
+    return _bufferPool;
+  }
+
+  /**
+   * Returns the loop to assign a new channel to.
+   *
+   * @return the loop, not null
+   */
+  /* package */NioEventLoop next() {
+    final NioEventLoop[] loops;
+    synchronized (this) {
+      loops = _loops;
+    }
+    if (loops == null) {
+      throw new OpenGammaRuntimeException("Event loop pool " + _name + " has not been started");
+    }
+    return loops[(_next.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return _loops != null;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (_loops != null) {
+      return;
+    }
+    final NioEventLoop[] loops = new NioEventLoop[_size];
+    for (int i = 0; i < _size; i++) {
+      loops[i] = new NioEventLoop(_name + "-" + i, _bufferPool);
+      loops[i].start();
+    }
+    _loops = loops;
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (_loops == null) {
+      return;
+    }
+    for (NioEventLoop loop : _loops) {
+      loop.stop();
+    }
+    _loops = null;
+  }
+
+}
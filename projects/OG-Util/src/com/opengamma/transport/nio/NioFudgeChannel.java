@@ -0,0 +1,380 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.FudgeRuntimeIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.transport.socket.MessageCompression;
+
+/**
+ * A non-blocking socket channel carrying Fudge message envelopes, serviced by an {@link NioEventLoop}.
+ * <p>
+ * The wire format is the same as the stream based socket transport so either end of a connection may use either
+ * implementation. Compression is not supported, so an offer from the other end (see {@link MessageCompression}) is
+ * ignored. Incoming envelopes are framed using the size field of the envelope header. Outgoing messages are encoded by
+ * the sending thread and queued. If no other thread is writing, the sender then writes as much of the queue as the
+ * channel will accept, coalescing queued messages into a pooled direct buffer; if the channel cannot accept it all the
+ * remainder is written by the event loop when the channel becomes writable. Senders never block on the network.
+ */
+/* package */abstract class NioFudgeChannel implements NioEventLoop.Handler {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(NioFudgeChannel.class);
+
+  /**
+   * Size of the Fudge envelope header - processing directives, schema version, taxonomy and envelope size.
+   */
+  private static final int HEADER_SIZE = 8;
+  /**
+   * Offset of the envelope size, which includes the header, within the header.
+   */
+  private static final int SIZE_OFFSET = 4;
+
+  private final FudgeContext _fudgeContext;
+  private final SocketChannel _channel;
+  private final NioEventLoop _loop;
+  private final DirectBufferPool _bufferPool;
+  private final ExecutorService _executorService;
+
+  // Read state, only used by the event loop
+  private final byte[] _header = new byte[HEADER_SIZE];
+  private int _headerLength;
+  private byte[] _frame;
+  private int _frameLength;
+
+  // Write state guarded by _writeLock; a buffer retained in _writeBuffer is taken by the next flush, or released on close
+  private final Object _writeLock = new Object();
+  private final Queue<byte[]> _writeQueue = new ArrayDeque<byte[]>();
+  private int _writeOffset;
+  private boolean _writing;
+  private boolean _closed;
+  private ByteBuffer _writeBuffer;
+
+  private final Runnable _writeInterest = new Runnable() {
+    @Override
+    public void run() {
+      final SelectionKey key = _loop.keyFor(_channel);
+      if ((key != null) && key.isValid()) {
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+    }
+  };
+
+  /* package */NioFudgeChannel(final FudgeContext fudgeContext, final SocketChannel channel, final NioEventLoop loop, final DirectBufferPool bufferPool,
+      final ExecutorService executorService) {
+    _fudgeContext = fudgeContext;
+    _channel = channel;
+    _loop = loop;
+    _bufferPool = bufferPool;
+    _executorService = executorService;
+  }
+
+  /* package */FudgeContext getFudgeContext() {
+    return _fudgeContext;
+  }
+
+  /* package */SocketChannel getChannel() {
+    return _channel;
+  }
+
+  /**
+   * Registers the channel with its event loop to start receiving messages.
+   */
+  /* package */void register() {
+    _loop.register(_channel, SelectionKey.OP_READ, this);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns the receiver for incoming messages.
+   *
+   * @return the receiver, or null to have messages passed to {@link #envelopeReceived} on the event loop
+   */
+  protected abstract FudgeMessageReceiver getReceiver();
+
+  /**
+   * Handles an incoming message when there is no receiver.
+   *
+   * @param envelope the message, not null
+   */
+  protected abstract void envelopeReceived(FudgeMsgEnvelope envelope);
+
+  /**
+   * Notifies that the channel has been closed by the remote end, or after an I/O error.
+   *
+   * @param cause the error, or null if the remote end closed the connection
+   */
+  protected abstract void channelFailed(Exception cause);
+
+  //-------------------------------------------------------------------------
+  @Override
+  public void ready(final SelectionKey key) {
+    if (key.isWritable()) {
+      key.interestOps(SelectionKey.OP_READ);
+      flush();
+    }
+    if (key.isValid() && key.isReadable()) {
+      read();
+    }
+  }
+
+  @Override
+  public void closed(final Exception cause) {
+    fail(cause);
+  }
+
+  private void read() {
+    final ByteBuffer buffer = _loop.getReadBuffer();
+    buffer.clear();
+    final int bytes;
+    try {
+      bytes = _channel.read(buffer);
+    } catch (IOException e) {
+      fail(e);
+      return;
+    }
+    if (bytes < 0) {
+      fail(null);
+      return;
+    }
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      if (_frame == null) {
+        final int count = Math.min(HEADER_SIZE - _headerLength, buffer.remaining());
+        buffer.get(_header, _headerLength, count);
+        _headerLength += count;
+        if (_headerLength < HEADER_SIZE) {
+          return;
+        }
+        final int size = ((_header[SIZE_OFFSET] & 0xFF) << 24) | ((_header[SIZE_OFFSET + 1] & 0xFF) << 16) | ((_header[SIZE_OFFSET + 2] & 0xFF) << 8)
+            | (_header[SIZE_OFFSET + 3] & 0xFF);
+        if (size < HEADER_SIZE) {
+          fail(new IOException("Invalid Fudge envelope size " + size + " from " + this));
+          return;
+        }
+        _frame = new byte[size];
+        System.arraycopy(_header, 0, _frame, 0, HEADER_SIZE);
+        _frameLength = HEADER_SIZE;
+        _headerLength = 0;
+      }
+      final int count = Math.min(_frame.length - _frameLength, buffer.remaining());
+      buffer.get(_frame, _frameLength, count);
+      _frameLength += count;
+      if (_frameLength == _frame.length) {
+        final byte[] frame = _frame;
+        _frame = null;
+        frameReceived(frame);
+      }
+    }
+  }
+
+  private void frameReceived(final byte[] frame) {
+    if ((frame[0] & MessageCompression.OFFER) != 0) {
+      // Ignoring the offer leaves the other end sending plain messages
+      return;
+    }
+    final FudgeMessageReceiver receiver = getReceiver();
+    if (receiver != null) {
+      if (_executorService != null) {
+        _executorService.execute(new Runnable() {
+          @Override
+          public void run() {
+            dispatch(receiver, frame);
+          }
+        });
+      } else {
+        dispatch(receiver, frame);
+      }
+    } else {
+      final FudgeMsgEnvelope envelope = decode(frame);
+      if (envelope != null) {
+        try {
+          envelopeReceived(envelope);
+        } catch (Exception e) {
+          s_logger.warn("Unable to dispatch message", e);
+        }
+      }
+    }
+  }
+
+  private void dispatch(final FudgeMessageReceiver receiver, final byte[] frame) {
+    final FudgeMsgEnvelope envelope = decode(frame);
+    if (envelope != null) {
+      try {
+        receiver.messageReceived(getFudgeContext(), envelope);
+      } catch (Exception e) {
+        s_logger.warn("Unable to dispatch message to receiver", e);
+      }
+    }
+  }
+
+  private FudgeMsgEnvelope decode(final byte[] frame) {
+    try {
+      return getFudgeContext().deserialize(frame);
+    } catch (RuntimeException e) {
+      s_logger.warn("Unable to decode message from " + this, e);
+      return null;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Queues a message for sending. The message is encoded by the calling thread, but may be written to the channel by
+   * another thread so completion of this method does not guarantee that the message has been passed to the transport.
+   *
+   * @param message the message to send, not null
+   * @throws FudgeRuntimeIOException if the channel is closed
+   */
+  /* package */void send(final FudgeMsg message) {
+    final byte[] data = getFudgeContext().toByteArray(message);
+    synchronized (_writeLock) {
+      if (_closed) {
+        throw new FudgeRuntimeIOException(new ClosedChannelException());
+      }
+      _writeQueue.add(data);
+      if (_writing) {
+        return;
+      }
+      _writing = true;
+    }
+    flush();
+  }
+
+  private boolean fill(final ByteBuffer buffer) {
+    while (buffer.hasRemaining()) {
+      final byte[] data = _writeQueue.peek();
+      if (data == null) {
+        break;
+      }
+      final int count = Math.min(data.length - _writeOffset, buffer.remaining());
+      buffer.put(data, _writeOffset, count);
+      _writeOffset += count;
+      if (_writeOffset == data.length) {
+        _writeQueue.poll();
+        _writeOffset = 0;
+      }
+    }
+    return buffer.position() > 0;
+  }
+
+  private void flush() {
+    ByteBuffer buffer;
+    synchronized (_writeLock) {
+      // Any buffer left by an earlier flush is owned by this one until it is retained again or released
+      buffer = _writeBuffer;
+      _writeBuffer = null;
+    }
+    if (buffer == null) {
+      buffer = _bufferPool.acquire();
+      buffer.limit(0);
+    }
+    boolean retained = false;
+    try {
+      while (true) {
+        if (!buffer.hasRemaining()) {
+          buffer.clear();
+          synchronized (_writeLock) {
+            if (_closed || !fill(buffer)) {
+              _writing = false;
+              return;
+            }
+          }
+          buffer.flip();
+        }
+        _channel.write(buffer);
+        if (buffer.hasRemaining()) {
+          // The socket's send buffer is full; the event loop will continue when the channel is writable
+          synchronized (_writeLock) {
+            if (_closed) {
+              _writing = false;
+              return;
+            }
+            _writeBuffer = buffer;
+            retained = true;
+          }
+          _loop.execute(_writeInterest);
+          return;
+        }
+      }
+    } catch (IOException e) {
+      writeFailed(e);
+    } catch (RuntimeException e) {
+      writeFailed(e);
+    } finally {
+      // Unless it holds unsent data for the event loop, the buffer goes back to the pool however the write ended
+      if (!retained) {
+        _bufferPool.release(buffer);
+      }
+    }
+  }
+
+  private void writeFailed(final Exception cause) {
+    synchronized (_writeLock) {
+      _writing = false;
+    }
+    fail(cause);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Closes the channel, discarding any unsent messages.
+   *
+   * @return true if the channel was closed by this call, false if it was already closed
+   */
+  /* package */boolean close() {
+    final ByteBuffer buffer;
+    synchronized (_writeLock) {
+      if (_closed) {
+        return false;
+      }
+      _closed = true;
+      _writeQueue.clear();
+      // A buffer retained for the event loop is not in use by any flush, so can go back to the pool
+      buffer = _writeBuffer;
+      _writeBuffer = null;
+    }
+    if (buffer != null) {
+      _bufferPool.release(buffer);
+    }
+    try {
+      _channel.close();
+    } catch (IOException e) {
+      s_logger.warn("Unable to close channel {}", this);
+    }
+    return true;
+  }
+
+  private void fail(final Exception cause) {
+    if (close()) {
+      if (cause != null) {
+        s_logger.warn("I/O exception on {} - {}", this, cause.getMessage());
+      } else {
+        s_logger.info("Connection {} closed by remote end", this);
+      }
+      channelFailed(cause);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(_channel.socket().getRemoteSocketAddress());
+  }
+
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.nio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.Lifecycle;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.transport.EndPointDescriptionProvider;
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.FudgeConnectionStateListener;
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.transport.FudgeMessageSender;
+import com.opengamma.transport.socket.AbstractServerSocketProcess;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A non-blocking socket implementation of FudgeConnection.
+ * <p>
+ * This is an alternative to {@link com.opengamma.transport.socket.SocketFudgeConnection} that is serviced by the
+ * threads of an {@link NioEventLoopPool} rather than a dedicated reader thread, and may connect to a server using
+ * either socket implementation. As with the stream based connection, it is opened implicitly when the first message is
+ * sent and re-opened by the next message sent after it has failed.
+ */
+public class NioFudgeConnection implements FudgeConnection, Lifecycle, EndPointDescriptionProvider {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(NioFudgeConnection.class);
+
+  private final FudgeContext _fudgeContext;
+  private final ExecutorService _executorService;
+
+  private NioEventLoopPool _eventLoopPool;
+  private Collection<InetAddress> _inetAddresses;
+  private int _portNumber;
+
+  private Channel _channel;
+  private volatile FudgeMessageReceiver _receiver;
+  private volatile FudgeConnectionStateListener _stateListener;
+
+  private final FudgeMessageSender _sender = new FudgeMessageSender() {
+
+    @Override
+    public FudgeContext getFudgeContext() {
+      return _fudgeContext;
+    }
+
+    @Override
+    public void send(final FudgeMsg message) {
+      startIfNecessary().send(message);
+    }
+
+  };
+
+  /**
+   * Creates a connection where received messages are processed on the event loop thread.
+   *
+   * @param fudgeContext the Fudge context, not null
+   */
+  public NioFudgeConnection(final FudgeContext fudgeContext) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    _fudgeContext = fudgeContext;
+    _executorService = null;
+  }
+
+  /**
+   * Creates a connection where received messages are decoded and processed using the given {@link ExecutorService}.
+   *
+   * @param fudgeContext the Fudge context, not null
+   * @param executorService an executor service to run received messages via, not null
+   */
+  public NioFudgeConnection(final FudgeContext fudgeContext, final ExecutorService executorService) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(executorService, "executorService");
+    _fudgeContext = fudgeContext;
+    _executorService = executorService;
+  }
+
+  /**
+   * @return the event loop pool, null to use {@link NioEventLoopPool#getDefault}
+   */
+  public NioEventLoopPool getEventLoopPool() {
+    return _eventLoopPool;
+  }
+
+  /**
+   * @param eventLoopPool the event loop pool, null to use {@link NioEventLoopPool#getDefault}
+   */
+  public void setEventLoopPool(final NioEventLoopPool eventLoopPool) {
+    _eventLoopPool = eventLoopPool;
+  }
+
+  public Collection<InetAddress> getInetAddresses() {
+    return Collections.unmodifiableCollection(_inetAddresses);
+  }
+
+  public void setInetAddress(final InetAddress inetAddress) {
+    _inetAddresses = Collections.singleton(inetAddress);
+  }
+
+  public void setInetAddresses(final Collection<InetAddress> inetAddresses) {
+    _inetAddresses = new ArrayList<InetAddress>(inetAddresses);
+  }
+
+  public void setAddress(final String host) throws UnknownHostException {
+    setInetAddresses(Arrays.asList(InetAddress.getAllByName(host)));
+  }
+
+  public int getPortNumber() {
+    return _portNumber;
+  }
+
+  public void setPortNumber(final int portNumber) {
+    _portNumber = portNumber;
+  }
+
+  /**
+   * Set the connection parameters based on the end point description of a server.
+   *
+   * @param endPoint An end-point description.
+   */
+  public void setServer(final FudgeMsg endPoint) {
+    ArgumentChecker.notNull(endPoint, "endPoint");
+    if (!AbstractServerSocketProcess.TYPE_VALUE.equals(endPoint.getString(AbstractServerSocketProcess.TYPE_KEY))) {
+      throw new IllegalArgumentException("End point is not a ServerSocket - " + endPoint);
+    }
+    final Collection<InetAddress> addresses = new HashSet<InetAddress>();
+    for (FudgeField addr : endPoint.getAllByName(AbstractServerSocketProcess.ADDRESS_KEY)) {
+      final String host = endPoint.getFieldValue(String.class, addr);
+      try {
+        addresses.addAll(Arrays.asList(InetAddress.getAllByName(host)));
+      } catch (UnknownHostException e) {
+        s_logger.warn("Unknown host {}", host);
+      }
+    }
+    setPortNumber(endPoint.getInt(AbstractServerSocketProcess.PORT_KEY));
+    setInetAddresses(addresses);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Note that the message sender may be called concurrently, and will not block on the network. Successful completion
+   * of a {@link FudgeMessageSender#send} does not guarantee message arrival or that it has even been (or will be)
+   * passed to the transport.
+   *
+   * @return the Fudge message sender component of the connection
+   */
+  @Override
+  public FudgeMessageSender getFudgeMessageSender() {
+    return _sender;
+  }
+
+  @Override
+  public void setFudgeMessageReceiver(final FudgeMessageReceiver receiver) {
+    _receiver = receiver;
+  }
+
+  @Override
+  public void setConnectionStateListener(final FudgeConnectionStateListener listener) {
+    _stateListener = listener;
+  }
+
+  //-------------------------------------------------------------------------
+  private Channel startIfNecessary() {
+    Channel channel;
+    synchronized (this) {
+      channel = _channel;
+      if (channel != null) {
+        return channel;
+      }
+      s_logger.debug("Starting implicitly as start() was not called before use.");
+      try {
+        channel = openRemoteConnection();
+      } catch (OpenGammaRuntimeException e) {
+        notifyConnectionFailed(e);
+        throw e;
+      }
+    }
+    notifyConnectionReset();
+    return channel;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return _channel != null;
+  }
+
+  @Override
+  public void start() {
+    synchronized (this) {
+      if (_channel != null) {
+        s_logger.warn("Already connected to {}", _channel);
+        return;
+      }
+      openRemoteConnection();
+    }
+    notifyConnectionReset();
+  }
+
+  private Channel openRemoteConnection() {
+    ArgumentChecker.notNullInjected(_inetAddresses, "Remote InetAddress");
+    ArgumentChecker.isTrue(getPortNumber() > 0, "Must specify valid portNumber property");
+    s_logger.info("Opening remote connection to {}:{}", _inetAddresses, getPortNumber());
+    IOException cause = null;
+    for (InetAddress addr : _inetAddresses) {
+      SocketChannel socketChannel = null;
+      try {
+        socketChannel = SocketChannel.open();
+        socketChannel.socket().connect(new InetSocketAddress(addr, getPortNumber()), 3000);
+        socketChannel.configureBlocking(false);
+        socketChannel.socket().setTcpNoDelay(true);
+        s_logger.debug("Connected to {}:{}", addr, getPortNumber());
+      } catch (IOException e) {
+        s_logger.debug("Couldn't connect to {}:{}", addr, getPortNumber());
+        cause = e;
+        if (socketChannel != null) {
+          try {
+            socketChannel.close();
+          } catch (IOException e2) {
+            // Ignore
+          }
+        }
+        continue;
+      }
+      final NioEventLoopPool pool = (getEventLoopPool() != null) ? getEventLoopPool() : NioEventLoopPool.getDefault();
+      _channel = new Channel(socketChannel, pool);
+      _channel.register();
+      return _channel;
+    }
+    throw new OpenGammaRuntimeException("Unable to open remote connection to " + _inetAddresses + ":" + getPortNumber(), cause);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (_channel != null) {
+      _channel.close();
+      _channel = null;
+    } else {
+      s_logger.warn("Already stopped {}:{}", _inetAddresses, getPortNumber());
+    }
+  }
+
+  private void notifyConnectionReset() {
+    final FudgeConnectionStateListener stateListener = _stateListener;
+    if (stateListener != null) {
+      stateListener.connectionReset(this);
+    }
+  }
+
+  protected void notifyConnectionFailed(final Exception e) {
+    final FudgeConnectionStateListener stateListener = _stateListener;
+    if (stateListener != null) {
+      try {
+        stateListener.connectionFailed(this, e);
+      } catch (Exception e2) {
+        s_logger.warn("Error notifying state listener of connection failure", e2);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public FudgeMsg getEndPointDescription(final FudgeContext fudgeContext) {
+    final MutableFudgeMsg desc = fudgeContext.newMessage();
+    desc.add(AbstractServerSocketProcess.TYPE_KEY, AbstractServerSocketProcess.TYPE_VALUE);
+    if (_inetAddresses != null) {
+      for (InetAddress addr : _inetAddresses) {
+        desc.add(AbstractServerSocketProcess.ADDRESS_KEY, addr.getHostAddress());
+      }
+    }
+    desc.add(AbstractServerSocketProcess.PORT_KEY, getPortNumber());
+    return desc;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("FudgeConnection to ");
+    sb.append(_inetAddresses);
+    sb.append(':');
+    sb.append(getPortNumber());
+    if (!isRunning()) {
+      sb.append(" (not connected)");
+    }
+    return sb.toString();
+  }
+
+  //-------------------------------------------------------------------------
+  private final class Channel extends NioFudgeChannel {
+
+    private Channel(final SocketChannel channel, final NioEventLoopPool pool) {
+      super(NioFudgeConnection.this._fudgeContext, channel, pool.next(), pool.getBufferPool(), NioFudgeConnection.this._executorService);
+    }
+
+    @Override
+    protected FudgeMessageReceiver getReceiver() {
+      return _receiver;
+    }
+
+    @Override
+    protected void envelopeReceived(final FudgeMsgEnvelope envelope) {
+      s_logger.debug("No receiver for message from {}", this);
+    }
+
+    @Override
+    protected void channelFailed(final Exception cause) {
+      synchronized (NioFudgeConnection.this) {
+        if (_channel == this) {
+          _channel = null;
+        }
+      }
+      if (cause != null) {
+        notifyConnectionFailed(cause);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.nio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.Lifecycle;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.transport.EndPointDescriptionProvider;
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.FudgeConnectionReceiver;
+import com.opengamma.transport.FudgeConnectionStateListener;
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.transport.FudgeMessageSender;
+import com.opengamma.transport.socket.AbstractServerSocketProcess;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Listens on a server socket and passes FudgeConnections to an underlying FudgeConnectionReceiver.
+ * <p>
+ * This is an alternative to {@link com.opengamma.transport.socket.ServerSocketFudgeConnectionReceiver} that services
+ * all of its connections from the small number of threads of an {@link NioEventLoopPool} rather than a thread per
+ * connection. The wire format and end point description are the same so clients may use either socket implementation.
+ */
+public class NioServerFudgeConnectionReceiver implements Lifecycle, EndPointDescriptionProvider {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(NioServerFudgeConnectionReceiver.class);
+
+  private final FudgeContext _fudgeContext;
+  private final FudgeConnectionReceiver _underlying;
+  private final ExecutorService _executorService;
+  private final Set<Connection> _connections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+
+  private NioEventLoopPool _eventLoopPool;
+  private int _portNumber;
+  private InetAddress _bindAddress;
+
+  private ServerSocketChannel _serverChannel;
+
+  /**
+   * Creates a receiver where messages are dispatched on the event loop threads. Receivers must not block.
+   *
+   * @param fudgeContext the Fudge context, not null
+   * @param underlying the receiver of new connections, not null
+   */
+  public NioServerFudgeConnectionReceiver(final FudgeContext fudgeContext, final FudgeConnectionReceiver underlying) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(underlying, "underlying");
+    _fudgeContext = fudgeContext;
+    _underlying = underlying;
+    _executorService = null;
+  }
+
+  /**
+   * Creates a receiver where messages for the connections' receivers are decoded and dispatched using the given
+   * {@link ExecutorService}.
+   *
+   * @param fudgeContext the Fudge context, not null
+   * @param underlying the receiver of new connections, not null
+   * @param executorService an executor service to run received messages via, not null
+   */
+  public NioServerFudgeConnectionReceiver(final FudgeContext fudgeContext, final FudgeConnectionReceiver underlying, final ExecutorService executorService) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNull(executorService, "executorService");
+    _fudgeContext = fudgeContext;
+    _underlying = underlying;
+    _executorService = executorService;
+  }
+
+  public FudgeContext getFudgeContext() {
+    return _fudgeContext;
+  }
+
+  public FudgeConnectionReceiver getUnderlying() {
+    return _underlying;
+  }
+
+  /**
+   * @return the event loop pool, null to use {@link NioEventLoopPool#getDefault}
+   */
+  public NioEventLoopPool getEventLoopPool() {
+    return _eventLoopPool;
+  }
+
+  /**
+   * @param eventLoopPool the event loop pool, null to use {@link NioEventLoopPool#getDefault}
+   */
+  public void setEventLoopPool(final NioEventLoopPool eventLoopPool) {
+    _eventLoopPool = eventLoopPool;
+  }
+
+  /**
+   * @return the portNumber
+   */
+  public int getPortNumber() {
+    return _portNumber;
+  }
+
+  /**
+   * @param portNumber the portNumber to set
+   */
+  public void setPortNumber(final int portNumber) {
+    _portNumber = portNumber;
+  }
+
+  /**
+   * @return the bindAddress
+   */
+  public InetAddress getBindAddress() {
+    return _bindAddress;
+  }
+
+  /**
+   * @param bindAddress the bindAddress to set
+   */
+  public void setBindAddress(final InetAddress bindAddress) {
+    _bindAddress = bindAddress;
+  }
+
+  private NioEventLoopPool getEventLoopPoolOrDefault() {
+    final NioEventLoopPool pool = getEventLoopPool();
+    return (pool != null) ? pool : NioEventLoopPool.getDefault();
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public synchronized boolean isRunning() {
+    return _serverChannel != null;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (_serverChannel != null) {
+      s_logger.warn("Already bound to {}", _serverChannel.socket().getLocalSocketAddress());
+      return;
+    }
+    s_logger.info("Binding to {}:{}", getBindAddress(), getPortNumber());
+    final NioEventLoopPool pool = getEventLoopPoolOrDefault();
+    try {
+      _serverChannel = ServerSocketChannel.open();
+      // NOTE: Backlog of 50 as used by ServerSocket
+      _serverChannel.socket().bind(new InetSocketAddress(getBindAddress(), getPortNumber()), 50);
+      _serverChannel.configureBlocking(false);
+      if (getPortNumber() == 0) {
+        s_logger.info("Received inbound port {}", _serverChannel.socket().getLocalPort());
+      }
+      setPortNumber(_serverChannel.socket().getLocalPort());
+    } catch (IOException e) {
+      closeServerChannel();
+      throw new OpenGammaRuntimeException("Unable to bind to " + getBindAddress() + " port " + getPortNumber(), e);
+    }
+    final ServerSocketChannel serverChannel = _serverChannel;
+    pool.next().register(serverChannel, SelectionKey.OP_ACCEPT, new NioEventLoop.Handler() {
+
+      @Override
+      public void ready(final SelectionKey key) {
+        try {
+          SocketChannel channel = serverChannel.accept();
+          while (channel != null) {
+            channelAccepted(pool, channel);
+            channel = serverChannel.accept();
+          }
+        } catch (IOException e) {
+          s_logger.warn("Unable to accept a new connection", e);
+        }
+      }
+
+      @Override
+      public void closed(final Exception cause) {
+        s_logger.debug("Server channel closed");
+      }
+
+    });
+  }
+
+  private void channelAccepted(final NioEventLoopPool pool, final SocketChannel channel) throws IOException {
+    s_logger.info("Opened socket to remote side {}", channel.socket().getRemoteSocketAddress());
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    final Connection connection = new Connection(channel, pool);
+    _connections.add(connection);
+    connection.register();
+  }
+
+  private void closeServerChannel() {
+    if (_serverChannel != null) {
+      try {
+        _serverChannel.close();
+      } catch (IOException e) {
+        s_logger.warn("Unable to close server socket on lifecycle stop", e);
+      }
+      _serverChannel = null;
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    closeServerChannel();
+    for (Connection connection : new ArrayList<Connection>(_connections)) {
+      connection.close();
+    }
+    _connections.clear();
+  }
+
+  @Override
+  public synchronized FudgeMsg getEndPointDescription(final FudgeContext fudgeContext) {
+    final MutableFudgeMsg desc = fudgeContext.newMessage();
+    desc.add(AbstractServerSocketProcess.TYPE_KEY, AbstractServerSocketProcess.TYPE_VALUE);
+    AbstractServerSocketProcess.addEndPointAddresses(desc, (_serverChannel != null) ? _serverChannel.socket().getInetAddress() : getBindAddress());
+    desc.add(AbstractServerSocketProcess.PORT_KEY, getPortNumber());
+    return desc;
+  }
+
+  //-------------------------------------------------------------------------
+  private final class Connection extends NioFudgeChannel implements FudgeConnection {
+
+    private final FudgeMessageSender _sender = new FudgeMessageSender() {
+
+      @Override
+      public FudgeContext getFudgeContext() {
+        return NioServerFudgeConnectionReceiver.this.getFudgeContext();
+      }
+
+      @Override
+      public void send(final FudgeMsg message) {
+        Connection.this.send(message);
+      }
+
+      @Override
+      public String toString() {
+        return Connection.this.toString();
+      }
+
+    };
+
+    private volatile FudgeMessageReceiver _receiver;
+    private volatile FudgeConnectionStateListener _listener;
+
+    private Connection(final SocketChannel channel, final NioEventLoopPool pool) {
+      super(NioServerFudgeConnectionReceiver.this.getFudgeContext(), channel, pool.next(), pool.getBufferPool(), NioServerFudgeConnectionReceiver.this._executorService);
+    }
+
+    @Override
+    public FudgeMessageSender getFudgeMessageSender() {
+      return _sender;
+    }
+
+    @Override
+    public void setFudgeMessageReceiver(final FudgeMessageReceiver receiver) {
+      _receiver = receiver;
+    }
+
+    @Override
+    public void setConnectionStateListener(final FudgeConnectionStateListener listener) {
+      _listener = listener;
+    }
+
+    @Override
+    protected FudgeMessageReceiver getReceiver() {
+      return _receiver;
+    }
+
+    @Override
+    protected void envelopeReceived(final FudgeMsgEnvelope envelope) {
+      getUnderlying().connectionReceived(getFudgeContext(), envelope, this);
+    }
+
+    @Override
+    protected void channelFailed(final Exception cause) {
+      _connections.remove(this);
+      final FudgeConnectionStateListener listener = _listener;
+      if (listener != null) {
+        listener.connectionFailed(this, cause);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "FudgeConnection from " + super.toString();
+    }
+
+  }
+
+}
@@ -191,7 +191,7 @@ public abstract class AbstractServerSocketProcess implements Lifecycle, EndPoint
    */
   public static final String PORT_KEY = "port";
 
-  private void loadInterfaceAddress(final NetworkInterface iface, final MutableFudgeMsg message) {
+  private static void loadInterfaceAddress(final NetworkInterface iface, final MutableFudgeMsg message) {
     final Enumeration<NetworkInterface> ni = iface.getSubInterfaces();
     while (ni.hasMoreElements()) {
       loadInterfaceAddress(ni.nextElement(), message);
@@ -212,7 +212,18 @@ public abstract class AbstractServerSocketProcess implements Lifecycle, EndPoint
   public FudgeMsg getEndPointDescription(final FudgeContext fudgeContext) {
     final MutableFudgeMsg desc = fudgeContext.newMessage();
     desc.add(TYPE_KEY, TYPE_VALUE);
-    final InetAddress addr = _serverSocket.getInetAddress();
+    addEndPointAddresses(desc, _serverSocket.getInetAddress());
+    desc.add(PORT_KEY, _serverSocket.getLocalPort());
+    return desc;
+  }
+
+  /**
+   * Adds the addresses that a server bound to the given local address can be reached on to an end point description.
+   * 
+   * @param desc the end point description to update, not null
+   * @param addr the bound address, null if not bound
+   */
+  public static void addEndPointAddresses(final MutableFudgeMsg desc, final InetAddress addr) {
     if (addr != null) {
       if (addr.isAnyLocalAddress()) {
         try {
@@ -227,8 +238,6 @@ public abstract class AbstractServerSocketProcess implements Lifecycle, EndPoint
         desc.add(ADDRESS_KEY, addr.getHostAddress());
       }
     }
-    desc.add(PORT_KEY, _serverSocket.getLocalPort());
-    return desc;
   }
 
 }
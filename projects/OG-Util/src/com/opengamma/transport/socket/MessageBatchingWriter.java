@@ -5,14 +5,18 @@
  */
 package com.opengamma.transport.socket;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 
 import org.fudgemsg.FudgeContext;
 import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.FudgeRuntimeIOException;
 import org.fudgemsg.wire.FudgeDataOutputStreamWriter;
 import org.fudgemsg.wire.FudgeMsgWriter;
 
@@ -25,16 +29,32 @@ import com.opengamma.util.ArgumentChecker;
  * further messages allowing other threads to complete quickly. This reduces the number of
  * threads created but blocked (i.e. consuming memory resources) when processing a large
  * number of incoming requests concurrently.
+ * <p>
+ * A flush delay allows messages written shortly after each other to be sent together. With an
+ * adaptive delay the wait is sized from the observed interval between messages and the number
+ * of messages being batched, up to the configured maximum; a lone message is flushed at once.
+ * <p>
+ * Messages may be compressed; see {@link MessageCompression}.
  */
 public class MessageBatchingWriter {
 
   private final Semaphore _writingLock = new Semaphore(0);
   private FudgeMsgWriter _out;
+  private OutputStream _stream;
 
   private boolean _writingThreadActive;
   private boolean _flushRequired;
   private Queue<FudgeMsg> _messages;
   private long _nanoFlushDelay;
+  private boolean _adaptiveFlushDelay;
+  private long _lastWriteNanos;
+  private long _meanIntervalNanos = Long.MAX_VALUE;
+  private double _meanBatchSize = 1;
+  private volatile MessageCompression _compression;
+
+  private final AtomicLong _messagesWritten = new AtomicLong();
+  private final AtomicLong _flushes = new AtomicLong();
+  private final AtomicLong _flushDelayNanos = new AtomicLong();
 
   public MessageBatchingWriter() {
     _out = null;
@@ -46,7 +66,33 @@ public class MessageBatchingWriter {
   }
 
   public void setFlushDelay(final int microseconds) {
-    _nanoFlushDelay = microseconds * 1000;
+    _nanoFlushDelay = microseconds * 1000L;
+    _adaptiveFlushDelay = false;
+  }
+
+  /**
+   * Sets an adaptive delay before flushing. The delay is only applied while messages are arriving faster
+   * than the maximum delay, and is then sized to allow the next few to be coalesced.
+   * 
+   * @param maxMicroseconds the maximum time to wait before flushing
+   */
+  public void setAdaptiveFlushDelay(final int maxMicroseconds) {
+    _nanoFlushDelay = maxMicroseconds * 1000L;
+    _adaptiveFlushDelay = true;
+  }
+
+  /**
+   * Sets the compression state for the connection, or null to send messages uncompressed. Messages are only
+   * compressed when the writer has been given the output stream to write to.
+   * 
+   * @param compression the compression state
+   */
+  public void setCompression(final MessageCompression compression) {
+    _compression = compression;
+  }
+
+  public MessageCompression getCompression() {
+    return _compression;
   }
 
   private static FudgeMsgWriter createFudgeMsgWriter(final FudgeContext fudgeContext, final OutputStream out) {
@@ -59,14 +105,17 @@ public class MessageBatchingWriter {
 
   public MessageBatchingWriter(final FudgeContext fudgeContext, final OutputStream out) {
     this(createFudgeMsgWriter(fudgeContext, out));
+    _stream = out;
   }
 
   public void setFudgeMsgWriter(final FudgeMsgWriter out) {
     _out = out;
+    _stream = null;
   }
 
   public void setFudgeMsgWriter(final FudgeContext fudgeContext, final OutputStream out) {
     setFudgeMsgWriter(createFudgeMsgWriter(fudgeContext, out));
+    _stream = out;
   }
 
   protected FudgeMsgWriter getFudgeMsgWriter() {
@@ -76,6 +125,9 @@ public class MessageBatchingWriter {
   public void write(FudgeMsg message) {
     Queue<FudgeMsg> messages = null;
     synchronized (this) {
+      if (_adaptiveFlushDelay) {
+        messageArrived();
+      }
       if (_writingThreadActive) {
         if (_messages != null) {
           // Another thread is already blocked, so tag onto that and return
@@ -90,11 +142,12 @@ public class MessageBatchingWriter {
         _writingThreadActive = true;
       }
     }
-    boolean waitForOtherThreads = false;
+    long flushDelay = 0;
     if (messages == null) {
       try {
         beforeWrite();
-        getFudgeMsgWriter().writeMessage(message);
+        writeMessage(message);
+        batchWritten(1);
       } finally {
         synchronized (this) {
           if (_messages != null) {
@@ -103,13 +156,14 @@ public class MessageBatchingWriter {
           } else {
             // No other messages have been attempted
             _writingThreadActive = false;
-            if (_nanoFlushDelay > 0) {
+            final long delay = getFlushDelayNanos();
+            if (delay > 0) {
               if (!_flushRequired) {
-                waitForOtherThreads = true;
+                flushDelay = delay;
                 _flushRequired = true;
               }
             } else {
-              getFudgeMsgWriter().flush();
+              flush();
             }
           }
         }
@@ -126,10 +180,13 @@ public class MessageBatchingWriter {
       }
       try {
         beforeWrite();
+        int count = 0;
         do {
-          getFudgeMsgWriter().writeMessage(message);
+          writeMessage(message);
+          count++;
           message = messages.poll();
         } while (message != null);
+        batchWritten(count);
       } finally {
         synchronized (this) {
           if (_messages != null) {
@@ -138,13 +195,14 @@ public class MessageBatchingWriter {
           } else {
             // No other messages have been attempted
             _writingThreadActive = false;
-            if (_nanoFlushDelay > 0) {
+            final long delay = getFlushDelayNanos();
+            if (delay > 0) {
               if (!_flushRequired) {
-                waitForOtherThreads = true;
+                flushDelay = delay;
                 _flushRequired = true;
               }
             } else {
-              getFudgeMsgWriter().flush();
+              flush();
             }
           }
         }
@@ -152,14 +210,15 @@ public class MessageBatchingWriter {
     }
     // TODO: it would be better if this could be offloaded to another thread so that
     // we don't block the caller and only have one thread doing the park.
-    if (waitForOtherThreads) {
+    if (flushDelay > 0) {
       // Can't reliably do a sub-millisecond precision sleep, so use park
-      LockSupport.parkNanos(_nanoFlushDelay);
+      LockSupport.parkNanos(flushDelay);
+      _flushDelayNanos.addAndGet(flushDelay);
       synchronized (this) {
         if (_flushRequired) {
           if (!_writingThreadActive) {
             // No other threads have become active to write data so flush
-            getFudgeMsgWriter().flush();
+            flush();
           }
           _flushRequired = false;
         }
@@ -167,6 +226,104 @@ public class MessageBatchingWriter {
     }
   }
 
+  /**
+   * Updates the mean interval between messages. Must be called while holding the monitor.
+   */
+  private void messageArrived() {
+    final long now = System.nanoTime();
+    if (_lastWriteNanos != 0) {
+      final long interval = now - _lastWriteNanos;
+      if (_meanIntervalNanos == Long.MAX_VALUE) {
+        _meanIntervalNanos = interval;
+      } else {
+        _meanIntervalNanos += (interval - _meanIntervalNanos) >> 3;
+      }
+    }
+    _lastWriteNanos = now;
+  }
+
+  /**
+   * Updates the mean batch size.
+   */
+  private synchronized void batchWritten(final int count) {
+    _messagesWritten.addAndGet(count);
+    _meanBatchSize += (count - _meanBatchSize) / 8;
+  }
+
+  /**
+   * Returns the time to wait before flushing. Must be called while holding the monitor.
+   * 
+   * @return the delay in nanoseconds, zero to flush immediately
+   */
+  private long getFlushDelayNanos() {
+    if (!_adaptiveFlushDelay) {
+      return _nanoFlushDelay;
+    }
+    if (_meanIntervalNanos >= _nanoFlushDelay) {
+      // Another message is unlikely to arrive within the maximum delay
+      return 0;
+    }
+    // Wait for roughly the number of messages we have been able to batch, and at least one more
+    final long delay = (long) (_meanIntervalNanos * Math.max(2.0, _meanBatchSize));
+    return Math.min(delay, _nanoFlushDelay);
+  }
+
+  private void writeMessage(final FudgeMsg message) {
+    final MessageCompression compression = _compression;
+    final OutputStream stream = _stream;
+    if ((compression != null) && (stream != null)) {
+      final FudgeMsgEnvelope offer = compression.takeOffer();
+      if (offer != null) {
+        getFudgeMsgWriter().writeMessageEnvelope(offer);
+      }
+      if (compression.isNegotiated()) {
+        // The Fudge writer doesn't buffer, so the encoded form can be written directly to the same stream
+        try {
+          stream.write(compression.encode(message));
+        } catch (IOException e) {
+          throw new FudgeRuntimeIOException(e);
+        }
+        return;
+      }
+    }
+    getFudgeMsgWriter().writeMessage(message);
+  }
+
+  private void flush() {
+    _flushes.incrementAndGet();
+    getFudgeMsgWriter().flush();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of messages written.
+   * 
+   * @return the number of messages
+   */
+  public long getMessagesWritten() {
+    return _messagesWritten.get();
+  }
+
+  /**
+   * Gets the number of times the underlying stream was flushed. The ratio of messages to flushes
+   * shows how well messages are being coalesced.
+   * 
+   * @return the number of flushes
+   */
+  public long getFlushes() {
+    return _flushes.get();
+  }
+
+  /**
+   * Gets the total time spent waiting for other messages before flushing; this is latency added
+   * by coalescing.
+   * 
+   * @return the time in nanoseconds
+   */
+  public long getFlushDelayTime() {
+    return _flushDelayNanos.get();
+  }
+
   /**
    * Called before a message (or batch of messages) will be written by this writer. Use this
    * to e.g. initialize or create the FudgeMsgWriter object.
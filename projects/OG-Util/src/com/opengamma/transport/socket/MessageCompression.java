@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.wire.FudgeMsgWriter;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Compression of the messages sent over a single connection.
+ * <p>
+ * Compression is negotiated per connection. The client end, if it has compression enabled, sends an offer marked by
+ * the {@link #OFFER} processing directive as its first message. A server end with compression enabled replies with
+ * its own offer; one without ignores it. Once an end has received an offer it may compress the messages it sends.
+ * Older versions will pass an offer to the application as an empty message so compression must only be enabled on
+ * clients of servers that support it.
+ * <p>
+ * A compressed message is sent as a wrapper message, marked by the {@link #COMPRESSED} processing directive, holding
+ * the deflated encoding of the original. Messages smaller than the threshold, or which don't compress, are sent as
+ * they are.
+ * <p>
+ * The compressing methods must only be called by the thread writing to the connection and the decompressing methods
+ * by the thread reading from it. The compressor and decompressor hold native memory, so are only created when first
+ * needed and must be released by {@link #release} when the connection closes. The instance remains usable, for example
+ * by a client that reconnects.
+ */
+public class MessageCompression {
+
+  /**
+   * Processing directive marking a compressed message.
+   */
+  public static final int COMPRESSED = 1;
+  /**
+   * Processing directive marking a compression offer.
+   */
+  public static final int OFFER = 2;
+  /**
+   * Default encoded message size, in bytes, below which messages are not compressed.
+   */
+  public static final int DEFAULT_THRESHOLD = 1024;
+
+  private static final String LENGTH_KEY = "length";
+  private static final String DATA_KEY = "data";
+
+  private final FudgeContext _fudgeContext;
+  private int _threshold = DEFAULT_THRESHOLD;
+
+  private final Object _deflaterLock = new Object();
+  private Deflater _deflater;
+  private byte[] _buffer;
+  private final Object _inflaterLock = new Object();
+  private Inflater _inflater;
+
+  private volatile boolean _offerPending;
+  private volatile boolean _offerSent;
+  private volatile boolean _peerAccepts;
+
+  private final AtomicLong _messagesCompressed = new AtomicLong();
+  private final AtomicLong _uncompressedBytes = new AtomicLong();
+  private final AtomicLong _compressedBytes = new AtomicLong();
+  private final AtomicLong _compressionNanos = new AtomicLong();
+  private final AtomicLong _decompressionNanos = new AtomicLong();
+
+  public MessageCompression(final FudgeContext fudgeContext) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    _fudgeContext = fudgeContext;
+  }
+
+  public FudgeContext getFudgeContext() {
+    return _fudgeContext;
+  }
+
+  /**
+   * Sets the encoded message size below which messages are not compressed.
+   *
+   * @param bytes the threshold in bytes
+   */
+  public void setThreshold(final int bytes) {
+    ArgumentChecker.notNegative(bytes, "bytes");
+    _threshold = bytes;
+  }
+
+  public int getThreshold() {
+    return _threshold;
+  }
+
+  /**
+   * Resets the negotiation for a newly opened client connection. An offer will be sent before the next message.
+   */
+  public void connectionOpened() {
+    _peerAccepts = false;
+    _offerSent = true;
+    _offerPending = true;
+  }
+
+  /**
+   * Tests if a received message is a compression offer.
+   *
+   * @param envelope the received envelope, not null
+   * @return true if the message is an offer and should not be passed to the application
+   */
+  public static boolean isOffer(final FudgeMsgEnvelope envelope) {
+    return (envelope.getProcessingDirectives() & OFFER) != 0;
+  }
+
+  /**
+   * Tests if the other end of the connection accepts compressed messages.
+   *
+   * @return true if compressed messages may be sent
+   */
+  public boolean isNegotiated() {
+    return _peerAccepts;
+  }
+
+  /**
+   * Returns the offer to write before the next message, if one is due.
+   *
+   * @return the offer envelope, or null if none is due
+   */
+  public FudgeMsgEnvelope takeOffer() {
+    if (!_offerPending) {
+      return null;
+    }
+    _offerPending = false;
+    return new FudgeMsgEnvelope(getFudgeContext().newMessage(), 0, OFFER);
+  }
+
+  /**
+   * Encodes a message to send, compressing it if the other end accepts compressed messages and the message is large
+   * enough. The message is only encoded once whether or not it is compressed.
+   *
+   * @param message the message to send, not null
+   * @return the encoded envelope to write to the connection, not null
+   */
+  public byte[] encode(final FudgeMsg message) {
+    final byte[] data = getFudgeContext().toByteArray(message);
+    if (!_peerAccepts || (data.length < getThreshold())) {
+      return data;
+    }
+    final long start = System.nanoTime();
+    final byte[] compressed = deflate(data);
+    if (compressed == null) {
+      // Compressed form is no smaller than the original
+      return data;
+    }
+    final MutableFudgeMsg wrapper = getFudgeContext().newMessage();
+    wrapper.add(LENGTH_KEY, data.length);
+    wrapper.add(DATA_KEY, compressed);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length + 32);
+    final FudgeMsgWriter writer = getFudgeContext().createMessageWriter(out);
+    writer.writeMessageEnvelope(new FudgeMsgEnvelope(wrapper, 0, COMPRESSED));
+    writer.close();
+    _messagesCompressed.incrementAndGet();
+    _uncompressedBytes.addAndGet(data.length);
+    _compressedBytes.addAndGet(compressed.length);
+    _compressionNanos.addAndGet(System.nanoTime() - start);
+    return out.toByteArray();
+  }
+
+  private byte[] deflate(final byte[] data) {
+    synchronized (_deflaterLock) {
+      if (_deflater == null) {
+        _deflater = new Deflater(Deflater.BEST_SPEED);
+      } else {
+        _deflater.reset();
+      }
+      _deflater.setInput(data);
+      _deflater.finish();
+      if ((_buffer == null) || (_buffer.length < data.length)) {
+        _buffer = new byte[Math.max(data.length, 4096)];
+      }
+      final int compressedLength = _deflater.deflate(_buffer, 0, data.length);
+      if (!_deflater.finished()) {
+        return null;
+      }
+      final byte[] compressed = new byte[compressedLength];
+      System.arraycopy(_buffer, 0, compressed, 0, compressedLength);
+      return compressed;
+    }
+  }
+
+  private void inflate(final byte[] compressed, final byte[] data) {
+    synchronized (_inflaterLock) {
+      if (_inflater == null) {
+        _inflater = new Inflater();
+      } else {
+        _inflater.reset();
+      }
+      _inflater.setInput(compressed);
+      try {
+        if (_inflater.inflate(data) != data.length) {
+          throw new OpenGammaRuntimeException("Compressed message truncated");
+        }
+      } catch (DataFormatException e) {
+        throw new OpenGammaRuntimeException("Invalid compressed message", e);
+      }
+    }
+  }
+
+  /**
+   * Releases the native resources of the compressor and decompressor. They are created again if needed.
+   */
+  public void release() {
+    synchronized (_deflaterLock) {
+      if (_deflater != null) {
+        _deflater.end();
+        _deflater = null;
+      }
+      _buffer = null;
+    }
+    synchronized (_inflaterLock) {
+      if (_inflater != null) {
+        _inflater.end();
+        _inflater = null;
+      }
+    }
+  }
+
+  /**
+   * Processes a message received from the connection.
+   *
+   * @param envelope the received envelope, not null
+   * @return the envelope to pass to the application, or null if the message was a compression offer
+   */
+  public FudgeMsgEnvelope received(final FudgeMsgEnvelope envelope) {
+    final int directives = envelope.getProcessingDirectives();
+    if ((directives & OFFER) != 0) {
+      if (!_offerSent) {
+        // Reply to the other end's offer
+        _offerSent = true;
+        _offerPending = true;
+      }
+      _peerAccepts = true;
+      return null;
+    }
+    if ((directives & COMPRESSED) == 0) {
+      return envelope;
+    }
+    final long start = System.nanoTime();
+    final FudgeMsg wrapper = envelope.getMessage();
+    final byte[] data = new byte[wrapper.getInt(LENGTH_KEY)];
+    inflate(wrapper.getValue(byte[].class, DATA_KEY), data);
+    final FudgeMsgEnvelope result = getFudgeContext().deserialize(data);
+    _decompressionNanos.addAndGet(System.nanoTime() - start);
+    return result;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of messages sent compressed.
+   *
+   * @return the number of messages
+   */
+  public long getMessagesCompressed() {
+    return _messagesCompressed.get();
+  }
+
+  /**
+   * Gets the encoded size of the messages sent compressed.
+   *
+   * @return the size in bytes
+   */
+  public long getUncompressedBytes() {
+    return _uncompressedBytes.get();
+  }
+
+  /**
+   * Gets the compressed size of the messages sent compressed.
+   *
+   * @return the size in bytes
+   */
+  public long getCompressedBytes() {
+    return _compressedBytes.get();
+  }
+
+  /**
+   * Gets the number of bytes not sent because of compression.
+   *
+   * @return the number of bytes saved
+   */
+  public long getBytesSaved() {
+    return getUncompressedBytes() - getCompressedBytes();
+  }
+
+  /**
+   * Gets the time spent compressing messages; this is latency added to sending.
+   *
+   * @return the time in nanoseconds
+   */
+  public long getCompressionTime() {
+    return _compressionNanos.get();
+  }
+
+  /**
+   * Gets the time spent decompressing messages; this is latency added to receiving.
+   *
+   * @return the time in nanoseconds
+   */
+  public long getDecompressionTime() {
+    return _decompressionNanos.get();
+  }
+
+}
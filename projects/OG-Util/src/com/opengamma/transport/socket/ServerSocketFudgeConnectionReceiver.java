@@ -44,6 +44,9 @@ public class ServerSocketFudgeConnectionReceiver extends AbstractServerSocketPro
   private final TerminatableJobContainer _connectionJobs = new TerminatableJobContainer();
 
   private boolean _lazyFudgeMsgReads;
+  private boolean _compression;
+  private int _flushDelay;
+  private boolean _adaptiveFlushDelay;
 
   public ServerSocketFudgeConnectionReceiver(final FudgeContext fudgeContext, final FudgeConnectionReceiver underlying) {
     _fudgeContext = fudgeContext;
@@ -73,6 +76,41 @@ public class ServerSocketFudgeConnectionReceiver extends AbstractServerSocketPro
     return _lazyFudgeMsgReads;
   }
 
+  /**
+   * Enables compression of large messages on connections from clients that also have compression enabled.
+   * See {@link MessageCompression}.
+   * 
+   * @param compression true to enable compression
+   */
+  public void setCompression(final boolean compression) {
+    _compression = compression;
+  }
+
+  public boolean isCompression() {
+    return _compression;
+  }
+
+  /**
+   * Sets a delay before flushing messages to allow adjacent messages to be coalesced.
+   * See {@link MessageBatchingWriter#setFlushDelay}.
+   * 
+   * @param microseconds the time to wait before flushing, or {@code 0} to flush immediately
+   */
+  public void setFlushDelay(final int microseconds) {
+    _flushDelay = microseconds;
+    _adaptiveFlushDelay = false;
+  }
+
+  /**
+   * Sets an adaptive delay before flushing messages. See {@link MessageBatchingWriter#setAdaptiveFlushDelay}.
+   * 
+   * @param maxMicroseconds the maximum time to wait before flushing
+   */
+  public void setAdaptiveFlushDelay(final int maxMicroseconds) {
+    _flushDelay = maxMicroseconds;
+    _adaptiveFlushDelay = true;
+  }
+
   @Override
   protected void socketOpened(Socket socket) {
     ArgumentChecker.notNull(socket, "socket");
@@ -192,6 +230,7 @@ public class ServerSocketFudgeConnectionReceiver extends AbstractServerSocketPro
     private final FudgeMsgReader _reader;
     private final FudgeMessageSender _sender;
     private final FudgeConnection _connection;
+    private final MessageCompression _compression;
     private FudgeMessageReceiver _receiver;
     private volatile FudgeConnectionStateListener _listener;
 
@@ -199,10 +238,17 @@ public class ServerSocketFudgeConnectionReceiver extends AbstractServerSocketPro
       _socket = socket;
       _reader = getFudgeContext().createMessageReader(new BufferedInputStream(is));
       _reader.setLazyReads(isLazyFudgeMsgReads());
+      _compression = isCompression() ? new MessageCompression(getFudgeContext()) : null;
+      final MessageBatchingWriter writer = new MessageBatchingWriter(getFudgeContext(), new StrictBufferedOutputStream(os));
+      if (_adaptiveFlushDelay) {
+        writer.setAdaptiveFlushDelay(_flushDelay);
+      } else {
+        writer.setFlushDelay(_flushDelay);
+      }
+      writer.setCompression(_compression);
       _sender = new FudgeMessageSender() {
 
-        private final MessageBatchingWriter _writer = new MessageBatchingWriter(getFudgeContext(),
-            new StrictBufferedOutputStream(os));
+        private final MessageBatchingWriter _writer = writer;
 
         @Override
         public FudgeContext getFudgeContext() {
@@ -259,17 +305,26 @@ public class ServerSocketFudgeConnectionReceiver extends AbstractServerSocketPro
         terminate();
         return;
       }
-      final FudgeMsgEnvelope envelope;
+      FudgeMsgEnvelope received;
       try {
-        envelope = _reader.nextMessageEnvelope();
+        received = _reader.nextMessageEnvelope();
       } catch (FudgeRuntimeIOException e) {
         terminateWithError("Unable to read message from underlying stream - terminating connection", e.getCause());
         return;
       }
-      if (envelope == null) {
+      if (received == null) {
         terminateWithError("Nothing available on stream - terminating connection", null);
         return;
       }
+      if (_compression != null) {
+        received = _compression.received(received);
+        if (received == null) {
+          return;
+        }
+      } else if (MessageCompression.isOffer(received)) {
+        return;
+      }
+      final FudgeMsgEnvelope envelope = received;
       final FudgeMessageReceiver receiver = _receiver;
       if (receiver != null) {
         final ExecutorService executorService = getExecutorService();
@@ -328,6 +383,9 @@ public class ServerSocketFudgeConnectionReceiver extends AbstractServerSocketPro
           s_logger.warn("Couldn't close socket to release blocked I/O", ex.getMessage());
         }
       }
+      if (_compression != null) {
+        _compression.release();
+      }
       super.terminate();
     }
 
@@ -128,6 +128,49 @@ public class SocketFudgeConnection extends AbstractSocketProcess implements Fudg
     _writer.setFlushDelay(microseconds);
   }
 
+  /**
+   * Sets an adaptive delay before flushing data messages. The delay is sized from the observed rate of messages,
+   * up to the given maximum, so that a lone message is not delayed.
+   * 
+   * @param maxMicroseconds the maximum time to wait before flushing
+   */
+  public void setAdaptiveFlushDelay(final int maxMicroseconds) {
+    _writer.setAdaptiveFlushDelay(maxMicroseconds);
+  }
+
+  /**
+   * Enables compression of large messages. This is negotiated when the connection opens, so the server must also
+   * have compression enabled for messages to be compressed. See {@link MessageCompression}.
+   * 
+   * @param compression true to enable compression
+   */
+  public void setCompression(final boolean compression) {
+    final MessageCompression previous = _writer.getCompression();
+    _writer.setCompression(compression ? new MessageCompression(_fudgeContext) : null);
+    if (previous != null) {
+      previous.release();
+    }
+  }
+
+  /**
+   * Returns the compression state of the connection, for example to monitor the bytes saved.
+   * 
+   * @return the compression state, or null if compression is not enabled
+   */
+  public MessageCompression getCompression() {
+    return _writer.getCompression();
+  }
+
+  /**
+   * Returns the writer batching messages onto the connection, for example to monitor how well
+   * messages are coalesced.
+   * 
+   * @return the writer, not null
+   */
+  public MessageBatchingWriter getMessageBatchingWriter() {
+    return _writer;
+  }
+
   /**
    * Note that the message sender may be called concurrently. All messages will be sent from a single thread
    * with others returning immediately. Thus successful completion of a {@link FudgeMessageSender#send} does
@@ -148,12 +191,16 @@ public class SocketFudgeConnection extends AbstractSocketProcess implements Fudg
   @Override
   protected void socketOpened(Socket socket, BufferedOutputStream os, BufferedInputStream is) {
     final FudgeMsgReader reader = _fudgeContext.createMessageReader(is);
+    final MessageCompression compression = _writer.getCompression();
+    if (compression != null) {
+      compression.connectionOpened();
+    }
     _writer.setFudgeMsgWriter(_fudgeContext, os);
     _receiverJob = new TerminatableJob() {
 
       @Override
       protected void runOneCycle() {
-        final FudgeMsgEnvelope envelope;
+        FudgeMsgEnvelope envelope;
         try {
           envelope = reader.nextMessageEnvelope();
         } catch (FudgeRuntimeIOException e) {
@@ -171,17 +218,26 @@ public class SocketFudgeConnection extends AbstractSocketProcess implements Fudg
           stop();
           return;
         }
+        if (compression != null) {
+          envelope = compression.received(envelope);
+          if (envelope == null) {
+            return;
+          }
+        } else if (MessageCompression.isOffer(envelope)) {
+          return;
+        }
+        final FudgeMsgEnvelope message = envelope;
         final FudgeMessageReceiver receiver = _receiver;
         if (receiver != null) {
           if (_executorService != null) {
             _executorService.execute(new Runnable() {
               @Override
               public void run() {
-                dispatch(receiver, envelope);
+                dispatch(receiver, message);
               }
             });
           } else {
-            dispatch(receiver, envelope);
+            dispatch(receiver, message);
           }
         }
       }
@@ -209,6 +265,10 @@ public class SocketFudgeConnection extends AbstractSocketProcess implements Fudg
   protected void socketClosed() {
     _writer.setFudgeMsgWriter(null);
     _receiverJob.terminate();
+    final MessageCompression compression = _writer.getCompression();
+    if (compression != null) {
+      compression.release();
+    }
   }
 
   @Override
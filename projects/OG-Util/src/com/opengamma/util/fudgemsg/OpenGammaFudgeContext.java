@@ -30,6 +30,17 @@ public final class OpenGammaFudgeContext {
     return ContextHolder.INSTANCE;
   }
 
+  /**
+   * Creates a new context configured in the same way as the singleton instance.
+   * <p>
+   * This allows a context to be extended, such as by opting in to a compressed encoding,
+   * without affecting other users of the singleton.
+   * @return a new context, not null
+   */
+  public static FudgeContext constructContext() {
+    return ContextHolder.constructContext();
+  }
+
   /**
    * Avoid double-checked-locking using the Initialization-on-demand holder idiom.
    */
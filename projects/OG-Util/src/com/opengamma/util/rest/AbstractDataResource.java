@@ -15,6 +15,8 @@ import org.fudgemsg.FudgeMsgEnvelope;
 import org.joda.beans.Bean;
 
 import com.opengamma.transport.jaxrs.FudgeResponse;
+import com.opengamma.transport.jaxrs.FudgeRest;
+import com.opengamma.util.timeseries.fudge.CompressedDoubleTimeSeriesFudgeSecondaryType;
 
 /**
  * Abstract base class for RESTful resources.
@@ -80,6 +82,24 @@ public abstract class AbstractDataResource {
     return Response.ok(encode(value)).build();
   }
 
+  /**
+   * Creates the RESTful "ok" response object using Fudge, converting null to a 404,
+   * compressing any time-series if the client reads the compressed form.
+   * <p>
+   * A client reads the compressed form if it sends the {@link FudgeRest#COMPRESSED_TIME_SERIES_HEADER} header.
+   * 
+   * @param value  the value to contain in the response, or null to trigger a 404
+   * @param compressTimeSeries  whether to compress any time-series in the response
+   * @return the response, not null
+   */
+  protected Response responseOkFudge(final Object value, final boolean compressTimeSeries) {
+    if (!compressTimeSeries) {
+      return responseOkFudge(value);
+    }
+    responseNullTo404(value);
+    return Response.ok(CompressedDoubleTimeSeriesFudgeSecondaryType.getCompressingContext().toFudgeMsg(value)).build();
+  }
+
   /**
    * Creates the RESTful "created" response object using Fudge, converting null to a 404.
    * <p>
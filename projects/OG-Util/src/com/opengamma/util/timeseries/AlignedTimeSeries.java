@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastLongDoubleTimeSeries;
+
+/**
+ * A set of time-series aligned to a common index of times, produced by {@link TimeSeriesAligner}.
+ * <p>
+ * The values are held column-major, with one array per series, so that a column can be passed directly
+ * to calculations on a single series and pairs of columns to calculations such as covariance.
+ * <p>
+ * The arrays are not copied and should not be modified.
+ */
+public final class AlignedTimeSeries {
+
+  /**
+   * The encoding of the times.
+   */
+  private final DateTimeNumericEncoding _encoding;
+  /**
+   * The times of the rows.
+   */
+  private final long[] _times;
+  /**
+   * The values, indexed by series and then row.
+   */
+  private final double[][] _values;
+
+  /**
+   * Creates an instance.
+   *
+   * @param encoding  the encoding of the times, not null
+   * @param times  the times of the rows, in ascending order, not null
+   * @param values  the values, indexed by series and then row, not null
+   */
+  public AlignedTimeSeries(final DateTimeNumericEncoding encoding, final long[] times, final double[][] values) {
+    ArgumentChecker.notNull(encoding, "encoding");
+    ArgumentChecker.notNull(times, "times");
+    ArgumentChecker.notNull(values, "values");
+    for (double[] column : values) {
+      ArgumentChecker.isTrue(column.length == times.length, "column length must match the number of times");
+    }
+    _encoding = encoding;
+    _times = times;
+    _values = values;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the encoding of the times.
+   *
+   * @return the encoding, not null
+   */
+  public DateTimeNumericEncoding getEncoding() {
+    return _encoding;
+  }
+
+  /**
+   * Gets the number of rows, one for each time of the index.
+   *
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return _times.length;
+  }
+
+  /**
+   * Gets the number of series.
+   *
+   * @return the number of series
+   */
+  public int getSeriesCount() {
+    return _values.length;
+  }
+
+  /**
+   * Gets the times of the rows.
+   *
+   * @return the times in the encoding of this instance, not a copy, not null
+   */
+  public long[] getTimes() {
+    return _times;
+  }
+
+  /**
+   * Gets the values of a series.
+   *
+   * @param series  the index of the series, in the order passed to the aligner
+   * @return the values of each row, not a copy, not null
+   */
+  public double[] getColumn(final int series) {
+    return _values[series];
+  }
+
+  /**
+   * Gets the values of all the series.
+   *
+   * @return the values, indexed by series and then row, not a copy, not null
+   */
+  public double[][] getValues() {
+    return _values;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates a time-series from a column.
+   *
+   * @param series  the index of the series
+   * @return the time-series, not null
+   * @throws OpenGammaRuntimeException if the encoding of the times does not fit in an integer
+   */
+  public FastIntDoubleTimeSeries toFastIntDoubleTimeSeries(final int series) {
+    if (!getEncoding().isIntegerBigEnough()) {
+      throw new OpenGammaRuntimeException("Encoding " + getEncoding() + " doesn't support integers");
+    }
+    final int[] times = new int[_times.length];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = (int) _times[i];
+    }
+    return new FastArrayIntDoubleTimeSeries(_encoding, times, _values[series]);
+  }
+
+  /**
+   * Creates a time-series from a column.
+   *
+   * @param series  the index of the series
+   * @return the time-series, not null
+   */
+  public FastLongDoubleTimeSeries toFastLongDoubleTimeSeries(final int series) {
+    return new FastArrayLongDoubleTimeSeries(_encoding, _times, _values[series]);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "AlignedTimeSeries[" + getSeriesCount() + " series, " + getRowCount() + " rows]";
+  }
+
+}
@@ -22,7 +22,14 @@ public class BulkTimeSeriesOperations {
       }
       return results;
     }
-   
+    final DoubleTimeSeries<?>[] aligned = TimeSeriesAligner.intersectionFirstValues(inputs);
+    if (aligned != null) {
+      for (int i = 0; i < inputs.length; i++) {
+        results[i] = (DoubleTimeSeries<E>) aligned[i];
+      }
+      return results;
+    }
+    // series that are not fast-backed with a common encoding are intersected a pair at a time
     DoubleTimeSeries<E> intersection = inputs[0];
     for (int i = 1; i < inputs.length; i++) {
       intersection = intersection.intersectionFirstValue(inputs[i]);
@@ -33,6 +40,28 @@ public class BulkTimeSeriesOperations {
     return results;
   }
   
+  /**
+   * Adds series over the times present in all of them, as repeated calls to {@link DoubleTimeSeries#add} would.
+   * 
+   * @param inputs  the series to add, not empty
+   * @return the sum
+   */
+  public static DoubleTimeSeries<?> sum(DoubleTimeSeries<?>[] inputs) {
+    if (inputs.length < 2) {
+      return inputs[0];
+    }
+    final DoubleTimeSeries<?> sum = TimeSeriesAligner.intersectionSum(inputs);
+    if (sum != null) {
+      return sum;
+    }
+    // series that are not fast-backed with a common encoding are added a pair at a time
+    DoubleTimeSeries<?> result = inputs[0];
+    for (int i = 1; i < inputs.length; i++) {
+      result = result.add(inputs[i]);
+    }
+    return result;
+  }
+
   @SuppressWarnings("unchecked")
   public <E> List<DoubleTimeSeries<E>> intersection(List<DoubleTimeSeries<E>> inputs) {
     return Arrays.asList(intersection((DoubleTimeSeries<E>[]) inputs.toArray()));
@@ -0,0 +1,455 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.FastTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastListIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastListLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastLongDoubleTimeSeries;
+
+/**
+ * Aligns many time-series to a common index of times in a single pass.
+ * <p>
+ * Intersecting series a pair at a time creates a new series at each step. This instead merges all of the series
+ * at once, reading them through their primitive accessors, and produces an {@link AlignedTimeSeries} with one array
+ * of values per series. {@link TimeSeriesIntersector} and {@link BulkTimeSeriesOperations} use it to find the
+ * common times of fast-backed series. The index is either the
+ * times present in every series or the times present in any series, with the gaps filled by a {@link FillPolicy}.
+ * <p>
+ * The series must be fast series or backed by them. Times are converted to the encoding of the first series; where
+ * several times of a series convert to the same time, the last value of the series at that time is used.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class TimeSeriesAligner {
+
+  /**
+   * How values are filled at times missing from a series when aligning to the union of the times.
+   */
+  public enum FillPolicy {
+    /**
+     * Missing values are NaN.
+     */
+    NAN,
+    /**
+     * Missing values are zero.
+     */
+    ZERO,
+    /**
+     * Missing values take the previous value of the series, or NaN before the first value.
+     */
+    PREVIOUS
+  }
+
+  /**
+   * Restricted constructor.
+   */
+  private TimeSeriesAligner() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Aligns series to the times present in all of them.
+   *
+   * @param series  the series to align, not empty
+   * @return the aligned series, not null
+   */
+  public static AlignedTimeSeries intersection(final DoubleTimeSeries<?>... series) {
+    final Column[] columns = columns(series);
+    final long[] times = intersectionTimes(columns);
+    final double[][] values = new double[columns.length][];
+    for (int i = 0; i < columns.length; i++) {
+      values[i] = columns[i].align(times, FillPolicy.NAN);
+    }
+    return new AlignedTimeSeries(columns[0].getEncoding(), times, values);
+  }
+
+  /**
+   * Aligns series to the times present in all of them.
+   *
+   * @param series  the series to align, not empty
+   * @return the aligned series, not null
+   */
+  public static AlignedTimeSeries intersection(final List<? extends DoubleTimeSeries<?>> series) {
+    ArgumentChecker.notNull(series, "series");
+    return intersection(series.toArray(new DoubleTimeSeries<?>[series.size()]));
+  }
+
+  /**
+   * Aligns series to the times present in any of them.
+   *
+   * @param fillPolicy  how to fill the values missing from a series, not null
+   * @param series  the series to align, not empty
+   * @return the aligned series, not null
+   */
+  public static AlignedTimeSeries union(final FillPolicy fillPolicy, final DoubleTimeSeries<?>... series) {
+    ArgumentChecker.notNull(fillPolicy, "fillPolicy");
+    final Column[] columns = columns(series);
+    final long[] times = unionTimes(columns);
+    final double[][] values = new double[columns.length][];
+    for (int i = 0; i < columns.length; i++) {
+      values[i] = columns[i].align(times, fillPolicy);
+    }
+    return new AlignedTimeSeries(columns[0].getEncoding(), times, values);
+  }
+
+  /**
+   * Aligns series to the times present in any of them.
+   *
+   * @param fillPolicy  how to fill the values missing from a series, not null
+   * @param series  the series to align, not empty
+   * @return the aligned series, not null
+   */
+  public static AlignedTimeSeries union(final FillPolicy fillPolicy, final List<? extends DoubleTimeSeries<?>> series) {
+    ArgumentChecker.notNull(series, "series");
+    return union(fillPolicy, series.toArray(new DoubleTimeSeries<?>[series.size()]));
+  }
+
+  /**
+   * Restricts series to the times present in all of them, each result being of the type of its series.
+   * <p>
+   * The common times are found in one pass and each series is then restricted to them by a single merge,
+   * rather than intersecting the series a pair at a time.
+   *
+   * @param series  the series to restrict, not empty
+   * @return the restricted series, null if the series are not all fast-backed series with the same encoding
+   */
+  static DoubleTimeSeries<?>[] intersectionFirstValues(final DoubleTimeSeries<?>[] series) {
+    if (!isFastBackedWithCommonEncoding(series)) {
+      return null;
+    }
+    final AlignedTimeSeries aligned = intersection(series);
+    final DoubleTimeSeries<?>[] results = new DoubleTimeSeries<?>[series.length];
+    if (((FastBackedDoubleTimeSeries<?>) series[0]).getFastSeries() instanceof FastIntDoubleTimeSeries) {
+      final FastIntDoubleTimeSeries index = aligned.toFastIntDoubleTimeSeries(0);
+      for (int i = 0; i < series.length; i++) {
+        results[i] = ((FastBackedDoubleTimeSeries<?>) series[i]).intersectionFirstValue(index);
+      }
+    } else {
+      final FastLongDoubleTimeSeries index = aligned.toFastLongDoubleTimeSeries(0);
+      for (int i = 0; i < series.length; i++) {
+        results[i] = ((FastBackedDoubleTimeSeries<?>) series[i]).intersectionFirstValue(index);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Adds series over the times present in all of them, the result being of the type of the first series.
+   * <p>
+   * The series are aligned in one pass and the columns summed in order, rather than adding the series
+   * a pair at a time and building an intermediate series for each partial sum.
+   *
+   * @param series  the series to add, not empty
+   * @return the sum, null if the series are not all fast-backed series with the same encoding
+   */
+  static DoubleTimeSeries<?> intersectionSum(final DoubleTimeSeries<?>[] series) {
+    if (!isFastBackedWithCommonEncoding(series)) {
+      return null;
+    }
+    final AlignedTimeSeries aligned = intersection(series);
+    final double[] sum = aligned.getColumn(0);
+    for (int i = 1; i < series.length; i++) {
+      final double[] values = aligned.getColumn(i);
+      for (int j = 0; j < sum.length; j++) {
+        sum[j] += values[j];
+      }
+    }
+    final FastBackedDoubleTimeSeries<?> first = (FastBackedDoubleTimeSeries<?>) series[0];
+    if (first.getFastSeries() instanceof FastIntDoubleTimeSeries) {
+      return first.operate(aligned.toFastIntDoubleTimeSeries(0), DoubleTimeSeriesOperators.SECOND_OPERATOR);
+    } else {
+      return first.operate(aligned.toFastLongDoubleTimeSeries(0), DoubleTimeSeriesOperators.SECOND_OPERATOR);
+    }
+  }
+
+  private static boolean isFastBackedWithCommonEncoding(final DoubleTimeSeries<?>[] series) {
+    ArgumentChecker.notEmpty(series, "series");
+    DateTimeNumericEncoding encoding = null;
+    for (DoubleTimeSeries<?> s : series) {
+      if (!(s instanceof FastBackedDoubleTimeSeries)) {
+        return false;
+      }
+      final DateTimeNumericEncoding seriesEncoding = ((FastBackedDoubleTimeSeries<?>) s).getFastSeries().getEncoding();
+      if (encoding == null) {
+        encoding = seriesEncoding;
+      } else if (seriesEncoding != encoding) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  //-------------------------------------------------------------------------
+  private static Column[] columns(final DoubleTimeSeries<?>[] series) {
+    ArgumentChecker.notEmpty(series, "series");
+    ArgumentChecker.noNulls(series, "series");
+    final Column[] columns = new Column[series.length];
+    final DateTimeNumericEncoding encoding = getFastSeries(series[0]).getEncoding();
+    for (int i = 0; i < series.length; i++) {
+      columns[i] = new Column(getFastSeries(series[i]), encoding);
+    }
+    return columns;
+  }
+
+  private static FastTimeSeries<?> getFastSeries(final DoubleTimeSeries<?> series) {
+    if (series instanceof FastBackedDoubleTimeSeries) {
+      return ((FastBackedDoubleTimeSeries<?>) series).getFastSeries();
+    } else if (series instanceof FastTimeSeries) {
+      return (FastTimeSeries<?>) series;
+    } else {
+      throw new IllegalArgumentException("Series must be a fast or fast-backed time-series: " + series.getClass());
+    }
+  }
+
+  /**
+   * Finds the times present in every column.
+   * <p>
+   * Each column in turn is advanced to the current candidate time. A column with a later time makes that the
+   * candidate, and a time is accepted once every column has agreed on it.
+   */
+  private static long[] intersectionTimes(final Column[] columns) {
+    final int n = columns.length;
+    int minSize = Integer.MAX_VALUE;
+    for (Column column : columns) {
+      minSize = Math.min(minSize, column.size());
+    }
+    if (minSize == 0) {
+      return new long[0];
+    }
+    final int[] positions = new int[n];
+    final long[] times = new long[minSize];
+    int rows = 0;
+    long candidate = columns[0].getTime(0);
+    int agreed = 0;
+    int i = 0;
+    while (true) {
+      final Column column = columns[i];
+      final int position = column.seek(positions[i], candidate);
+      if (position >= column.size()) {
+        break;
+      }
+      positions[i] = position;
+      final long time = column.getTime(position);
+      if (time == candidate) {
+        if (++agreed == n) {
+          times[rows++] = candidate;
+          if (++positions[0] >= columns[0].size()) {
+            break;
+          }
+          candidate = columns[0].getTime(positions[0]);
+          agreed = 0;
+          i = 0;
+          continue;
+        }
+      } else {
+        candidate = time;
+        agreed = 1;
+      }
+      i = (i + 1 == n) ? 0 : i + 1;
+    }
+    return (rows == times.length) ? times : Arrays.copyOf(times, rows);
+  }
+
+  /**
+   * Finds the times present in any column, merging the columns through a heap ordered by their next time.
+   */
+  private static long[] unionTimes(final Column[] columns) {
+    final int n = columns.length;
+    final int[] positions = new int[n];
+    final int[] heap = new int[n];
+    int heapSize = 0;
+    int total = 0;
+    for (int i = 0; i < n; i++) {
+      final int size = columns[i].size();
+      total += size;
+      if (size > 0) {
+        heap[heapSize++] = i;
+      }
+    }
+    for (int i = heapSize / 2 - 1; i >= 0; i--) {
+      siftDown(heap, heapSize, i, columns, positions);
+    }
+    long[] times = new long[Math.max(columns[0].size(), 16)];
+    int rows = 0;
+    while (heapSize > 0) {
+      final int top = heap[0];
+      final long time = columns[top].getTime(positions[top]);
+      if (rows == 0 || times[rows - 1] != time) {
+        if (rows == times.length) {
+          times = Arrays.copyOf(times, (int) Math.min((long) times.length * 2, total));
+        }
+        times[rows++] = time;
+      }
+      if (++positions[top] >= columns[top].size()) {
+        heap[0] = heap[--heapSize];
+      }
+      siftDown(heap, heapSize, 0, columns, positions);
+    }
+    return (rows == times.length) ? times : Arrays.copyOf(times, rows);
+  }
+
+  private static void siftDown(final int[] heap, final int heapSize, int index, final Column[] columns, final int[] positions) {
+    final int item = heap[index];
+    final long time = (heapSize > 0) ? columns[item].getTime(positions[item]) : 0;
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      long childTime = columns[heap[child]].getTime(positions[heap[child]]);
+      if (child + 1 < heapSize) {
+        final long rightTime = columns[heap[child + 1]].getTime(positions[heap[child + 1]]);
+        if (rightTime < childTime) {
+          child++;
+          childTime = rightTime;
+        }
+      }
+      if (time <= childTime) {
+        break;
+      }
+      heap[index] = heap[child];
+      index = child;
+    }
+    heap[index] = item;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Primitive access to the times and values of a series, with the times in the target encoding.
+   * <p>
+   * Converting to a coarser encoding, such as from milliseconds to days, can map several times of the series
+   * to the same time. Only the last value at each converted time is kept, so the times remain strictly ascending.
+   */
+  private static final class Column {
+    private final DateTimeNumericEncoding _encoding;
+    private final FastIntDoubleTimeSeries _intSeries;
+    private final FastLongDoubleTimeSeries _longSeries;
+    private final long[] _convertedTimes;
+    private final double[] _convertedValues;
+    private final int _size;
+
+    private Column(final FastTimeSeries<?> series, final DateTimeNumericEncoding encoding) {
+      _encoding = encoding;
+      // map backed series walk the map for each access by index, so are copied to an array
+      if (series instanceof FastIntDoubleTimeSeries) {
+        final boolean indexed = (series instanceof FastArrayIntDoubleTimeSeries) || (series instanceof FastListIntDoubleTimeSeries);
+        _intSeries = indexed ? (FastIntDoubleTimeSeries) series : new FastArrayIntDoubleTimeSeries((FastIntDoubleTimeSeries) series);
+        _longSeries = null;
+      } else { // if (series instanceof FastLongDoubleTimeSeries
+        final boolean indexed = (series instanceof FastArrayLongDoubleTimeSeries) || (series instanceof FastListLongDoubleTimeSeries);
+        _intSeries = null;
+        _longSeries = indexed ? (FastLongDoubleTimeSeries) series : new FastArrayLongDoubleTimeSeries((FastLongDoubleTimeSeries) series);
+      }
+      final int size = series.size();
+      if (series.getEncoding() != encoding) {
+        // convert once rather than on every access
+        final DateTimeNumericEncoding sourceEncoding = series.getEncoding();
+        final long[] times = new long[size];
+        final double[] values = new double[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+          final long time = sourceEncoding.convertToLong(getSourceTime(i), encoding);
+          if (count == 0 || times[count - 1] != time) {
+            times[count++] = time;
+          }
+          values[count - 1] = getSourceValue(i);
+        }
+        _convertedTimes = (count == size) ? times : Arrays.copyOf(times, count);
+        _convertedValues = (count == size) ? values : Arrays.copyOf(values, count);
+        _size = count;
+      } else {
+        _convertedTimes = null;
+        _convertedValues = null;
+        _size = size;
+      }
+    }
+
+    private DateTimeNumericEncoding getEncoding() {
+      return _encoding;
+    }
+
+    private int size() {
+      return _size;
+    }
+
+    private long getSourceTime(final int index) {
+      return (_intSeries != null) ? _intSeries.getTimeFast(index) : _longSeries.getTimeFast(index);
+    }
+
+    private long getTime(final int index) {
+      return (_convertedTimes != null) ? _convertedTimes[index] : getSourceTime(index);
+    }
+
+    private double getSourceValue(final int index) {
+      return (_intSeries != null) ? _intSeries.getValueAtFast(index) : _longSeries.getValueAtFast(index);
+    }
+
+    private double getValue(final int index) {
+      return (_convertedValues != null) ? _convertedValues[index] : getSourceValue(index);
+    }
+
+    /**
+     * Finds the first index at or after a position with a time not before the target, galloping
+     * forward so that sparse matches cost logarithmic time.
+     */
+    private int seek(final int from, final long target) {
+      if (from >= _size || getTime(from) >= target) {
+        return from;
+      }
+      // getTime(low) < target
+      int low = from;
+      int step = 1;
+      while (low + step < _size && getTime(low + step) < target) {
+        low += step;
+        step <<= 1;
+      }
+      int high = Math.min(low + step, _size);
+      // getTime(high) >= target, or high == size
+      while (high - low > 1) {
+        final int mid = (low + high) >>> 1;
+        if (getTime(mid) < target) {
+          low = mid;
+        } else {
+          high = mid;
+        }
+      }
+      return high;
+    }
+
+    /**
+     * Reads the values of this series at the times of an index, which must include every time of this
+     * series unless a fill policy is given for the gaps.
+     */
+    private double[] align(final long[] times, final FillPolicy fillPolicy) {
+      final double[] values = new double[times.length];
+      final double empty = (fillPolicy == FillPolicy.ZERO) ? 0d : Double.NaN;
+      double previous = Double.NaN;
+      int position = 0;
+      for (int row = 0; row < times.length; row++) {
+        final long time = times[row];
+        position = seek(position, time);
+        if (position < _size && getTime(position) == time) {
+          previous = getValue(position);
+          values[row] = previous;
+          position++;
+        } else {
+          values[row] = (fillPolicy == FillPolicy.PREVIOUS) ? previous : empty;
+        }
+      }
+      return values;
+    }
+  }
+
+}
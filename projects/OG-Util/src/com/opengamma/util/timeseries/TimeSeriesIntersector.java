@@ -14,7 +14,11 @@ public final class TimeSeriesIntersector {
     if (series.length <= 1) {
       return series;
     }
-    
+    final DoubleTimeSeries<?>[] aligned = TimeSeriesAligner.intersectionFirstValues(series);
+    if (aligned != null) {
+      System.arraycopy(aligned, 0, series, 0, series.length);
+      return series;
+    }
     //Make the smallest series we can
     for (int i = 1; i < series.length; i++) {
       series[0] = series[0].intersectionFirstValue(series[i]);
@@ -0,0 +1,389 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries.fast;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastLongDoubleTimeSeries;
+
+/**
+ * An immutable time series held in a compressed binary form.
+ * <p>
+ * The points are compressed by {@link TimeSeriesBlockCodec} in independent blocks, indexed by the
+ * first time of each block. The series
+ * is never inflated as a whole on creation from its binary form; only the blocks covering a requested
+ * sub-series are decoded.
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+public final class CompressedDoubleTimeSeries {
+
+  /**
+   * The version of the binary format.
+   */
+  private static final byte FORMAT_VERSION = 2;
+  /**
+   * The size of the header before the block index.
+   */
+  private static final int HEADER_SIZE = 10;
+  /**
+   * The size of each entry in the block index.
+   */
+  private static final int INDEX_ENTRY_SIZE = 12;
+  /**
+   * The maximum number of points in a block.
+   */
+  private static final int BLOCK_SIZE = 256;
+  /**
+   * The encodings, indexed by the ordinal held in the binary form.
+   */
+  private static final DateTimeNumericEncoding[] ENCODINGS = DateTimeNumericEncoding.values();
+
+  /**
+   * The time encoding.
+   */
+  private final DateTimeNumericEncoding _encoding;
+  /**
+   * The number of points.
+   */
+  private final int _size;
+  /**
+   * The first time of each block.
+   */
+  private final long[] _blockTimes;
+  /**
+   * The offset of each block in the binary form.
+   */
+  private final int[] _blockOffsets;
+  /**
+   * The binary form.
+   */
+  private final byte[] _data;
+
+  /**
+   * Compresses a series.
+   *
+   * @param series  the series, not null
+   * @return the compressed series, not null
+   */
+  public static CompressedDoubleTimeSeries of(final FastIntDoubleTimeSeries series) {
+    ArgumentChecker.notNull(series, "series");
+    final int[] intTimes = series.timesArrayFast();
+    final long[] times = new long[intTimes.length];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = intTimes[i];
+    }
+    return new CompressedDoubleTimeSeries(series.getEncoding(), times, series.valuesArrayFast());
+  }
+
+  /**
+   * Compresses a series.
+   *
+   * @param series  the series, not null
+   * @return the compressed series, not null
+   */
+  public static CompressedDoubleTimeSeries of(final FastLongDoubleTimeSeries series) {
+    ArgumentChecker.notNull(series, "series");
+    return new CompressedDoubleTimeSeries(series.getEncoding(), series.timesArrayFast(), series.valuesArrayFast());
+  }
+
+  /**
+   * Compresses a series held as arrays.
+   *
+   * @param encoding  the time encoding, not null
+   * @param times  the times, in ascending order, not null
+   * @param values  the values, not null
+   * @return the compressed series, not null
+   */
+  public static CompressedDoubleTimeSeries of(final DateTimeNumericEncoding encoding, final long[] times, final double[] values) {
+    ArgumentChecker.notNull(times, "times");
+    ArgumentChecker.notNull(values, "values");
+    return new CompressedDoubleTimeSeries(encoding, times, values);
+  }
+
+  /**
+   * Obtains a compressed series from its binary form.
+   * <p>
+   * Only the header and block index are read; the points are decoded when requested.
+   * The array is not copied and must not be modified after this call.
+   *
+   * @param data  the binary form, as returned by {@link #toByteArray()}, not null
+   * @return the compressed series, not null
+   * @throws IllegalArgumentException if the binary form is invalid
+   */
+  public static CompressedDoubleTimeSeries fromByteArray(final byte[] data) {
+    ArgumentChecker.notNull(data, "data");
+    ArgumentChecker.isTrue(data.length >= HEADER_SIZE, "Compressed time series too short");
+    final ByteBuffer buffer = ByteBuffer.wrap(data);
+    final byte version = buffer.get();
+    ArgumentChecker.isTrue(version == FORMAT_VERSION, "Unsupported compressed time series version {}", version);
+    final int encoding = buffer.get();
+    ArgumentChecker.isTrue(encoding >= 0 && encoding < ENCODINGS.length, "Invalid time encoding {}", encoding);
+    final int size = buffer.getInt();
+    final int blockCount = buffer.getInt();
+    ArgumentChecker.isTrue(size >= 0 && blockCount == (size + BLOCK_SIZE - 1) / BLOCK_SIZE, "Invalid compressed time series size");
+    ArgumentChecker.isTrue(data.length >= HEADER_SIZE + (long) blockCount * INDEX_ENTRY_SIZE, "Compressed time series truncated");
+    final long[] blockTimes = new long[blockCount];
+    final int[] blockOffsets = new int[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      blockTimes[i] = buffer.getLong();
+      blockOffsets[i] = buffer.getInt();
+      ArgumentChecker.isTrue(blockOffsets[i] >= buffer.position() && blockOffsets[i] <= data.length, "Compressed time series truncated");
+    }
+    return new CompressedDoubleTimeSeries(ENCODINGS[encoding], size, blockTimes, blockOffsets, data);
+  }
+
+  /**
+   * Creates an instance by compressing the points.
+   *
+   * @param encoding  the time encoding, not null
+   * @param times  the times, in ascending order, not null
+   * @param values  the values, not null
+   */
+  private CompressedDoubleTimeSeries(final DateTimeNumericEncoding encoding, final long[] times, final double[] values) {
+    ArgumentChecker.notNull(encoding, "encoding");
+    ArgumentChecker.isTrue(times.length == values.length, "Times and values must be the same length");
+    _encoding = encoding;
+    _size = times.length;
+    final int blockCount = (_size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    _blockTimes = new long[blockCount];
+    _blockOffsets = new int[blockCount];
+    final byte[][] blocks = new byte[blockCount][];
+    int offset = HEADER_SIZE + blockCount * INDEX_ENTRY_SIZE;
+    for (int block = 0; block < blockCount; block++) {
+      final int from = block * BLOCK_SIZE;
+      _blockTimes[block] = times[from];
+      _blockOffsets[block] = offset;
+      blocks[block] = TimeSeriesBlockCodec.encode(times, values, from, Math.min(from + BLOCK_SIZE, _size));
+      offset += blocks[block].length;
+    }
+    _data = new byte[offset];
+    for (int block = 0; block < blockCount; block++) {
+      System.arraycopy(blocks[block], 0, _data, _blockOffsets[block], blocks[block].length);
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(_data);
+    buffer.put(FORMAT_VERSION);
+    buffer.put((byte) encoding.ordinal());
+    buffer.putInt(_size);
+    buffer.putInt(blockCount);
+    for (int block = 0; block < blockCount; block++) {
+      buffer.putLong(_blockTimes[block]);
+      buffer.putInt(_blockOffsets[block]);
+    }
+  }
+
+  /**
+   * Creates an instance from a parsed binary form.
+   *
+   * @param encoding  the time encoding, not null
+   * @param size  the number of points
+   * @param blockTimes  the first time of each block, not null
+   * @param blockOffsets  the offset of each block, not null
+   * @param data  the binary form, not null
+   */
+  private CompressedDoubleTimeSeries(final DateTimeNumericEncoding encoding, final int size, final long[] blockTimes, final int[] blockOffsets, final byte[] data) {
+    _encoding = encoding;
+    _size = size;
+    _blockTimes = blockTimes;
+    _blockOffsets = blockOffsets;
+    _data = data;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the time encoding.
+   *
+   * @return the encoding, not null
+   */
+  public DateTimeNumericEncoding getEncoding() {
+    return _encoding;
+  }
+
+  /**
+   * Gets the number of points.
+   *
+   * @return the size
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * Checks if the series is empty.
+   *
+   * @return true if there are no points
+   */
+  public boolean isEmpty() {
+    return _size == 0;
+  }
+
+  /**
+   * Gets the binary form of the series.
+   *
+   * @return a copy of the binary form, not null
+   */
+  public byte[] toByteArray() {
+    return _data.clone();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Decodes the whole series.
+   *
+   * @return the series, not null
+   */
+  public FastLongDoubleTimeSeries toFastLongDoubleTimeSeries() {
+    return toFastLongDoubleTimeSeries(decodeBlocks(0, _blockTimes.length));
+  }
+
+  /**
+   * Decodes the whole series, which must have times that fit in an integer.
+   *
+   * @return the series, not null
+   * @throws OpenGammaRuntimeException if the encoding of the times does not fit in an integer
+   */
+  public FastIntDoubleTimeSeries toFastIntDoubleTimeSeries() {
+    return toFastIntDoubleTimeSeries(decodeBlocks(0, _blockTimes.length));
+  }
+
+  /**
+   * Decodes the points between two times, decoding only the blocks that cover them.
+   *
+   * @param startTime  the start time, inclusive
+   * @param endTime  the end time, exclusive
+   * @return the sub-series, not null
+   */
+  public FastLongDoubleTimeSeries subSeriesFastLong(final long startTime, final long endTime) {
+    return toFastLongDoubleTimeSeries(decode(startTime, endTime));
+  }
+
+  /**
+   * Decodes the points between two times, decoding only the blocks that cover them.
+   * The series must have times that fit in an integer.
+   *
+   * @param startTime  the start time, inclusive
+   * @param endTime  the end time, exclusive
+   * @return the sub-series, not null
+   * @throws OpenGammaRuntimeException if the encoding of the times does not fit in an integer
+   */
+  public FastIntDoubleTimeSeries subSeriesFastInt(final int startTime, final int endTime) {
+    return toFastIntDoubleTimeSeries(decode(startTime, endTime));
+  }
+
+  private FastLongDoubleTimeSeries toFastLongDoubleTimeSeries(final Points points) {
+    return new FastArrayLongDoubleTimeSeries(_encoding, points.times(), points.values());
+  }
+
+  private FastIntDoubleTimeSeries toFastIntDoubleTimeSeries(final Points points) {
+    if (!_encoding.isIntegerBigEnough()) {
+      throw new OpenGammaRuntimeException("Encoding " + _encoding + " doesn't support integers");
+    }
+    final int[] times = new int[points._to - points._from];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = (int) points._times[points._from + i];
+    }
+    return new FastArrayIntDoubleTimeSeries(_encoding, times, points.values());
+  }
+
+  /**
+   * Decodes the blocks covering a range of times.
+   *
+   * @param startTime  the start time, inclusive
+   * @param endTime  the end time, exclusive
+   * @return the decoded points, not null
+   */
+  private Points decode(final long startTime, final long endTime) {
+    if (startTime >= endTime) {
+      return decodeBlocks(0, 0);
+    }
+    int firstBlock = Arrays.binarySearch(_blockTimes, startTime);
+    firstBlock = (firstBlock >= 0) ? firstBlock : Math.max(-firstBlock - 2, 0);
+    int endBlock = Arrays.binarySearch(_blockTimes, endTime);
+    endBlock = (endBlock >= 0) ? endBlock : -endBlock - 1;
+    final Points points = decodeBlocks(firstBlock, Math.max(firstBlock, endBlock));
+    int from = Arrays.binarySearch(points._times, startTime);
+    from = (from >= 0) ? from : -from - 1;
+    int to = Arrays.binarySearch(points._times, endTime);
+    to = (to >= 0) ? to : -to - 1;
+    return new Points(points._times, points._values, from, to);
+  }
+
+  /**
+   * Decodes a range of blocks.
+   *
+   * @param firstBlock  the first block, inclusive
+   * @param endBlock  the end block, exclusive
+   * @return the decoded points, not null
+   */
+  private Points decodeBlocks(final int firstBlock, final int endBlock) {
+    final int count = Math.min(endBlock * BLOCK_SIZE, _size) - Math.min(firstBlock * BLOCK_SIZE, _size);
+    final long[] times = new long[count];
+    final double[] values = new double[count];
+    final ByteBuffer buffer = ByteBuffer.wrap(_data);
+    for (int block = firstBlock; block < endBlock; block++) {
+      final int offset = (block - firstBlock) * BLOCK_SIZE;
+      buffer.position(_blockOffsets[block]);
+      TimeSeriesBlockCodec.decode(buffer, Math.min(BLOCK_SIZE, count - offset), times, values, offset);
+    }
+    return new Points(times, values, 0, count);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj instanceof CompressedDoubleTimeSeries) {
+      final CompressedDoubleTimeSeries other = (CompressedDoubleTimeSeries) obj;
+      return Arrays.equals(_data, other._data);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(_data);
+  }
+
+  @Override
+  public String toString() {
+    return "CompressedDoubleTimeSeries[" + _encoding + ", size=" + _size + ", bytes=" + _data.length + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Decoded points, of which those between two indices were requested.
+   */
+  private static final class Points {
+    private final long[] _times;
+    private final double[] _values;
+    private final int _from;
+    private final int _to;
+
+    Points(final long[] times, final double[] values, final int from, final int to) {
+      _times = times;
+      _values = values;
+      _from = from;
+      _to = to;
+    }
+
+    long[] times() {
+      return (_from == 0 && _to == _times.length) ? _times : Arrays.copyOfRange(_times, _from, _to);
+    }
+
+    double[] values() {
+      return (_from == 0 && _to == _values.length) ? _values : Arrays.copyOfRange(_values, _from, _to);
+    }
+  }
+
+}
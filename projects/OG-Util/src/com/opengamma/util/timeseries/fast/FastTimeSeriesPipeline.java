@@ -0,0 +1,828 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries.fast;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.DoubleTimeSeriesOperators;
+import com.opengamma.util.timeseries.DoubleTimeSeriesOperators.BinaryOperator;
+import com.opengamma.util.timeseries.DoubleTimeSeriesOperators.UnaryOperator;
+import com.opengamma.util.timeseries.FastBackedDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastListIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastListLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastLongDoubleTimeSeries;
+
+/**
+ * A lazy chain of operators over fast time-series, evaluated in a single pass.
+ * <p>
+ * The {@code operate} methods of the fast time-series create a new series for every operator, so a chain
+ * such as intersect, divide, log and rolling standard deviation copies the data four times. A pipeline
+ * instead describes the chain and evaluates it point by point when one of the {@code toFast} methods is
+ * called, reading the source series through their primitive accessors. The result arrays are allocated for the
+ * largest number of points the chain can produce and passed to the result series without copying. They are only
+ * copied, once, if the chain drops points, as an intersection of series with different times does.
+ * <pre>
+ *   FastIntDoubleTimeSeries volatility = FastTimeSeriesPipeline.of(prices)
+ *       .operatePrevious(DoubleTimeSeriesOperators.DIVIDE_OPERATOR)
+ *       .operate(DoubleTimeSeriesOperators.LOG_OPERATOR)
+ *       .rollingStandardDeviation(20)
+ *       .toFastIntDoubleTimeSeries();
+ * </pre>
+ * Binary operators follow the same rules as the eager operators; the times of the second series are converted to
+ * the encoding of the first, and {@link #operate(FastTimeSeriesPipeline, BinaryOperator)} takes the intersection of
+ * the times while {@link #unionOperate(FastTimeSeriesPipeline, BinaryOperator)} takes the union.
+ * <p>
+ * Each stage holds the position of its evaluation, so a stage may only be used once within a chain. Combining two
+ * pipelines that share a stage, such as {@code p.log().add(p)}, is rejected. To combine a series with itself, create
+ * a second pipeline from the same series. A complete pipeline may be evaluated any
+ * number of times. The source series must not be modified while the pipeline is evaluated.
+ * <p>
+ * This class is not thread-safe.
+ */
+public abstract class FastTimeSeriesPipeline {
+
+  /**
+   * The encoding of the times.
+   */
+  private final DateTimeNumericEncoding _encoding;
+  /**
+   * The time of the current point.
+   */
+  private long _time;
+  /**
+   * The value of the current point.
+   */
+  private double _value;
+
+  /**
+   * Creates an instance.
+   *
+   * @param encoding  the encoding of the times, not null
+   */
+  protected FastTimeSeriesPipeline(final DateTimeNumericEncoding encoding) {
+    _encoding = encoding;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates a pipeline reading from a fast series.
+   * <p>
+   * Array and list backed series are read in place. Others, such as map backed series, don't have efficient
+   * access by index and are copied to an array first.
+   *
+   * @param series  the source series, not null
+   * @return the pipeline, not null
+   */
+  public static FastTimeSeriesPipeline of(final FastIntDoubleTimeSeries series) {
+    ArgumentChecker.notNull(series, "series");
+    if (series instanceof FastArrayIntDoubleTimeSeries || series instanceof FastListIntDoubleTimeSeries) {
+      return new IntSource(series);
+    }
+    return new IntSource(new FastArrayIntDoubleTimeSeries(series));
+  }
+
+  /**
+   * Creates a pipeline reading from a fast series.
+   * <p>
+   * Array and list backed series are read in place. Others, such as map backed series, don't have efficient
+   * access by index and are copied to an array first.
+   *
+   * @param series  the source series, not null
+   * @return the pipeline, not null
+   */
+  public static FastTimeSeriesPipeline of(final FastLongDoubleTimeSeries series) {
+    ArgumentChecker.notNull(series, "series");
+    if (series instanceof FastArrayLongDoubleTimeSeries || series instanceof FastListLongDoubleTimeSeries) {
+      return new LongSource(series);
+    }
+    return new LongSource(new FastArrayLongDoubleTimeSeries(series));
+  }
+
+  /**
+   * Creates a pipeline reading from the fast series backing a time-series.
+   *
+   * @param series  the source series, not null
+   * @return the pipeline, not null
+   */
+  public static FastTimeSeriesPipeline of(final FastBackedDoubleTimeSeries<?> series) {
+    ArgumentChecker.notNull(series, "series");
+    final FastTimeSeries<?> fastSeries = series.getFastSeries();
+    if (fastSeries instanceof FastIntDoubleTimeSeries) {
+      return of((FastIntDoubleTimeSeries) fastSeries);
+    } else { // if (fastSeries instanceof FastLongDoubleTimeSeries
+      return of((FastLongDoubleTimeSeries) fastSeries);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the encoding of the times produced by this pipeline.
+   *
+   * @return the encoding, not null
+   */
+  public DateTimeNumericEncoding getEncoding() {
+    return _encoding;
+  }
+
+  /**
+   * Gets the time of the current point.
+   *
+   * @return the time in the encoding of this pipeline
+   */
+  protected long getTime() {
+    return _time;
+  }
+
+  /**
+   * Gets the value of the current point.
+   *
+   * @return the value
+   */
+  protected double getValue() {
+    return _value;
+  }
+
+  /**
+   * Sets the current point.
+   *
+   * @param time  the time in the encoding of this pipeline
+   * @param value  the value
+   */
+  protected void setPoint(final long time, final double value) {
+    _time = time;
+    _value = value;
+  }
+
+  /**
+   * Rewinds the pipeline to before its first point.
+   */
+  protected abstract void start();
+
+  /**
+   * Moves to the next point, setting the current time and value.
+   *
+   * @return true if there is a point, false if the pipeline is exhausted
+   */
+  protected abstract boolean next();
+
+  /**
+   * Gets the maximum number of points that the pipeline can produce.
+   *
+   * @return the maximum number of points
+   */
+  protected abstract int maxSize();
+
+  /**
+   * Adds this stage, and the stages it reads from, to a set.
+   *
+   * @param stages  the set of stages, compared by identity, not null
+   * @return true if none of the stages were already in the set
+   */
+  protected boolean addStages(final Set<FastTimeSeriesPipeline> stages) {
+    return stages.add(this);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Applies an operator to each value.
+   *
+   * @param operator  the operator, not null
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline operate(final UnaryOperator operator) {
+    ArgumentChecker.notNull(operator, "operator");
+    return new Unary(this, operator);
+  }
+
+  /**
+   * Applies an operator to each value and a constant.
+   *
+   * @param other  the constant second operand
+   * @param operator  the operator, not null
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline operate(final double other, final BinaryOperator operator) {
+    ArgumentChecker.notNull(operator, "operator");
+    return new Scalar(this, other, operator);
+  }
+
+  /**
+   * Applies an operator to the values of this pipeline and another at the times present in both.
+   *
+   * @param other  the second operand, not null
+   * @param operator  the operator, not null
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline operate(final FastTimeSeriesPipeline other, final BinaryOperator operator) {
+    ArgumentChecker.notNull(other, "other");
+    ArgumentChecker.notNull(operator, "operator");
+    return new Intersection(this, other, operator);
+  }
+
+  /**
+   * Applies an operator to the values of this pipeline and another at the times present in both,
+   * taking the value of whichever has a point at any other time.
+   *
+   * @param other  the second operand, not null
+   * @param operator  the operator, not null
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline unionOperate(final FastTimeSeriesPipeline other, final BinaryOperator operator) {
+    ArgumentChecker.notNull(other, "other");
+    ArgumentChecker.notNull(operator, "operator");
+    return new Union(this, other, operator);
+  }
+
+  /**
+   * Applies an operator to each value and the value of the point before it.
+   * <p>
+   * The result has no point for the first time. For example, {@link DoubleTimeSeriesOperators#DIVIDE_OPERATOR}
+   * gives the gross return of a price series and {@link DoubleTimeSeriesOperators#SUBTRACT_OPERATOR} its changes.
+   *
+   * @param operator  the operator, called with the current value then the previous value, not null
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline operatePrevious(final BinaryOperator operator) {
+    ArgumentChecker.notNull(operator, "operator");
+    return new Previous(this, operator);
+  }
+
+  /**
+   * Sums each window of values.
+   * <p>
+   * The result has a point for the last time of each window, starting from the point that completes the first.
+   *
+   * @param window  the number of points in each window, greater than zero
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline rollingSum(final int window) {
+    return new Rolling(this, window, Rolling.SUM);
+  }
+
+  /**
+   * Averages each window of values.
+   * <p>
+   * The result has a point for the last time of each window, starting from the point that completes the first.
+   *
+   * @param window  the number of points in each window, greater than zero
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline rollingMean(final int window) {
+    return new Rolling(this, window, Rolling.MEAN);
+  }
+
+  /**
+   * Calculates the sample standard deviation of each window of values.
+   * <p>
+   * The result has a point for the last time of each window, starting from the point that completes the first.
+   *
+   * @param window  the number of points in each window, greater than one
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline rollingStandardDeviation(final int window) {
+    ArgumentChecker.isTrue(window > 1, "window must be greater than one");
+    return new Rolling(this, window, Rolling.STANDARD_DEVIATION);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Adds the values of this pipeline and another at the times present in both.
+   *
+   * @param other  the pipeline to add, not null
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline add(final FastTimeSeriesPipeline other) {
+    return operate(other, DoubleTimeSeriesOperators.ADD_OPERATOR);
+  }
+
+  /**
+   * Subtracts the values of another pipeline from this one at the times present in both.
+   *
+   * @param other  the pipeline to subtract, not null
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline subtract(final FastTimeSeriesPipeline other) {
+    return operate(other, DoubleTimeSeriesOperators.SUBTRACT_OPERATOR);
+  }
+
+  /**
+   * Multiplies the values of this pipeline and another at the times present in both.
+   *
+   * @param other  the pipeline to multiply by, not null
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline multiply(final FastTimeSeriesPipeline other) {
+    return operate(other, DoubleTimeSeriesOperators.MULTIPLY_OPERATOR);
+  }
+
+  /**
+   * Divides the values of this pipeline by another at the times present in both.
+   *
+   * @param other  the pipeline to divide by, not null
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline divide(final FastTimeSeriesPipeline other) {
+    return operate(other, DoubleTimeSeriesOperators.DIVIDE_OPERATOR);
+  }
+
+  /**
+   * Adds a constant to each value.
+   *
+   * @param other  the constant to add
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline add(final double other) {
+    return operate(other, DoubleTimeSeriesOperators.ADD_OPERATOR);
+  }
+
+  /**
+   * Multiplies each value by a constant.
+   *
+   * @param other  the constant to multiply by
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline multiply(final double other) {
+    return operate(other, DoubleTimeSeriesOperators.MULTIPLY_OPERATOR);
+  }
+
+  /**
+   * Takes the natural logarithm of each value.
+   *
+   * @return the pipeline, not null
+   */
+  public FastTimeSeriesPipeline log() {
+    return operate(DoubleTimeSeriesOperators.LOG_OPERATOR);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Evaluates the pipeline into a series with integer times.
+   *
+   * @return the series, not null
+   * @throws OpenGammaRuntimeException if the encoding of the times doesn't fit in an integer
+   */
+  public FastIntDoubleTimeSeries toFastIntDoubleTimeSeries() {
+    if (!getEncoding().isIntegerBigEnough()) {
+      throw new OpenGammaRuntimeException("Encoding " + getEncoding() + " doesn't support integers");
+    }
+    final int[] times = new int[maxSize()];
+    final double[] values = new double[times.length];
+    int size = 0;
+    start();
+    while (next()) {
+      times[size] = (int) _time;
+      values[size] = _value;
+      size++;
+    }
+    return FastArrayIntDoubleTimeSeries.wrap(getEncoding(), trim(times, size), trim(values, size));
+  }
+
+  /**
+   * Evaluates the pipeline into a series with long times.
+   *
+   * @return the series, not null
+   */
+  public FastLongDoubleTimeSeries toFastLongDoubleTimeSeries() {
+    final long[] times = new long[maxSize()];
+    final double[] values = new double[times.length];
+    int size = 0;
+    start();
+    while (next()) {
+      times[size] = _time;
+      values[size] = _value;
+      size++;
+    }
+    return FastArrayLongDoubleTimeSeries.wrap(getEncoding(), trim(times, size), trim(values, size));
+  }
+
+  /**
+   * Evaluates the pipeline, returning only the value of the last point.
+   *
+   * @param defaultValue  the value to return if the pipeline produces no points
+   * @return the last value, or the default if there are no points
+   */
+  public double getLatestValue(final double defaultValue) {
+    double value = defaultValue;
+    start();
+    while (next()) {
+      value = _value;
+    }
+    return value;
+  }
+
+  private static int[] trim(final int[] array, final int size) {
+    if (array.length == size) {
+      return array;
+    }
+    final int[] result = new int[size];
+    System.arraycopy(array, 0, result, 0, size);
+    return result;
+  }
+
+  private static long[] trim(final long[] array, final int size) {
+    if (array.length == size) {
+      return array;
+    }
+    final long[] result = new long[size];
+    System.arraycopy(array, 0, result, 0, size);
+    return result;
+  }
+
+  private static double[] trim(final double[] array, final int size) {
+    if (array.length == size) {
+      return array;
+    }
+    final double[] result = new double[size];
+    System.arraycopy(array, 0, result, 0, size);
+    return result;
+  }
+
+  //-------------------------------------------------------------------------
+  private static final class IntSource extends FastTimeSeriesPipeline {
+    private final FastIntDoubleTimeSeries _series;
+    private int _index;
+
+    private IntSource(final FastIntDoubleTimeSeries series) {
+      super(series.getEncoding());
+      _series = series;
+    }
+
+    @Override
+    protected void start() {
+      _index = 0;
+    }
+
+    @Override
+    protected boolean next() {
+      if (_index >= _series.size()) {
+        return false;
+      }
+      setPoint(_series.getTimeFast(_index), _series.getValueAtFast(_index));
+      _index++;
+      return true;
+    }
+
+    @Override
+    protected int maxSize() {
+      return _series.size();
+    }
+  }
+
+  private static final class LongSource extends FastTimeSeriesPipeline {
+    private final FastLongDoubleTimeSeries _series;
+    private int _index;
+
+    private LongSource(final FastLongDoubleTimeSeries series) {
+      super(series.getEncoding());
+      _series = series;
+    }
+
+    @Override
+    protected void start() {
+      _index = 0;
+    }
+
+    @Override
+    protected boolean next() {
+      if (_index >= _series.size()) {
+        return false;
+      }
+      setPoint(_series.getTimeFast(_index), _series.getValueAtFast(_index));
+      _index++;
+      return true;
+    }
+
+    @Override
+    protected int maxSize() {
+      return _series.size();
+    }
+  }
+
+  /**
+   * A stage transforming the points of a single input.
+   */
+  private abstract static class Stage extends FastTimeSeriesPipeline {
+    private final FastTimeSeriesPipeline _input;
+
+    protected Stage(final FastTimeSeriesPipeline input) {
+      super(input.getEncoding());
+      _input = input;
+    }
+
+    protected FastTimeSeriesPipeline getInput() {
+      return _input;
+    }
+
+    @Override
+    protected void start() {
+      _input.start();
+    }
+
+    @Override
+    protected int maxSize() {
+      return _input.maxSize();
+    }
+
+    @Override
+    protected boolean addStages(final Set<FastTimeSeriesPipeline> stages) {
+      return stages.add(this) & _input.addStages(stages);
+    }
+  }
+
+  private static final class Unary extends Stage {
+    private final UnaryOperator _operator;
+
+    private Unary(final FastTimeSeriesPipeline input, final UnaryOperator operator) {
+      super(input);
+      _operator = operator;
+    }
+
+    @Override
+    protected boolean next() {
+      final FastTimeSeriesPipeline input = getInput();
+      if (!input.next()) {
+        return false;
+      }
+      setPoint(input.getTime(), _operator.operate(input.getValue()));
+      return true;
+    }
+  }
+
+  private static final class Scalar extends Stage {
+    private final double _other;
+    private final BinaryOperator _operator;
+
+    private Scalar(final FastTimeSeriesPipeline input, final double other, final BinaryOperator operator) {
+      super(input);
+      _other = other;
+      _operator = operator;
+    }
+
+    @Override
+    protected boolean next() {
+      final FastTimeSeriesPipeline input = getInput();
+      if (!input.next()) {
+        return false;
+      }
+      setPoint(input.getTime(), _operator.operate(input.getValue(), _other));
+      return true;
+    }
+  }
+
+  private static final class Previous extends Stage {
+    private final BinaryOperator _operator;
+    private double _previous;
+    private boolean _started;
+
+    private Previous(final FastTimeSeriesPipeline input, final BinaryOperator operator) {
+      super(input);
+      _operator = operator;
+    }
+
+    @Override
+    protected void start() {
+      super.start();
+      _started = false;
+    }
+
+    @Override
+    protected boolean next() {
+      final FastTimeSeriesPipeline input = getInput();
+      if (!_started) {
+        if (!input.next()) {
+          return false;
+        }
+        _previous = input.getValue();
+        _started = true;
+      }
+      if (!input.next()) {
+        return false;
+      }
+      final double value = input.getValue();
+      setPoint(input.getTime(), _operator.operate(value, _previous));
+      _previous = value;
+      return true;
+    }
+
+    @Override
+    protected int maxSize() {
+      return Math.max(0, super.maxSize() - 1);
+    }
+  }
+
+  private static final class Rolling extends Stage {
+    private static final int SUM = 0;
+    private static final int MEAN = 1;
+    private static final int STANDARD_DEVIATION = 2;
+
+    private final int _type;
+    private final double[] _window;
+    private int _count;
+    private double _sum;
+    private double _sumSquares;
+
+    private Rolling(final FastTimeSeriesPipeline input, final int window, final int type) {
+      super(input);
+      ArgumentChecker.notNegativeOrZero(window, "window");
+      _type = type;
+      _window = new double[window];
+    }
+
+    @Override
+    protected void start() {
+      super.start();
+      _count = 0;
+      _sum = 0;
+      _sumSquares = 0;
+    }
+
+    @Override
+    protected boolean next() {
+      final FastTimeSeriesPipeline input = getInput();
+      final int n = _window.length;
+      while (input.next()) {
+        final double value = input.getValue();
+        final int slot = _count % n;
+        if (_count >= n) {
+          final double old = _window[slot];
+          _sum -= old;
+          _sumSquares -= old * old;
+        }
+        _window[slot] = value;
+        _sum += value;
+        _sumSquares += value * value;
+        _count++;
+        if (_count >= n) {
+          if (slot == n - 1) {
+            // recompute from the window once per cycle so that cancellation errors don't accumulate
+            _sum = 0;
+            _sumSquares = 0;
+            for (int i = 0; i < n; i++) {
+              _sum += _window[i];
+              _sumSquares += _window[i] * _window[i];
+            }
+          }
+          setPoint(input.getTime(), result(n));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private double result(final int n) {
+      switch (_type) {
+        case SUM:
+          return _sum;
+        case MEAN:
+          return _sum / n;
+        default:
+          final double variance = (_sumSquares - _sum * _sum / n) / (n - 1);
+          return Math.sqrt(Math.max(variance, 0));
+      }
+    }
+
+    @Override
+    protected int maxSize() {
+      return Math.max(0, super.maxSize() - _window.length + 1);
+    }
+  }
+
+  /**
+   * A stage combining two inputs, converting the times of the second to the encoding of the first.
+   */
+  private abstract static class Binary extends FastTimeSeriesPipeline {
+    private final FastTimeSeriesPipeline _a;
+    private final FastTimeSeriesPipeline _b;
+    private final BinaryOperator _operator;
+    private final boolean _convert;
+    private boolean _hasA;
+    private boolean _hasB;
+    private long _timeB;
+
+    protected Binary(final FastTimeSeriesPipeline a, final FastTimeSeriesPipeline b, final BinaryOperator operator) {
+      super(a.getEncoding());
+      final Set<FastTimeSeriesPipeline> stages = Collections.newSetFromMap(new IdentityHashMap<FastTimeSeriesPipeline, Boolean>());
+      a.addStages(stages);
+      ArgumentChecker.isTrue(b.addStages(stages), "A pipeline stage can only be used once in a chain");
+      _a = a;
+      _b = b;
+      _operator = operator;
+      _convert = a.getEncoding() != b.getEncoding();
+    }
+
+    @Override
+    protected void start() {
+      _a.start();
+      _b.start();
+      _hasA = _a.next();
+      advanceB();
+    }
+
+    private void advanceB() {
+      _hasB = _b.next();
+      if (_hasB) {
+        _timeB = _convert ? _b.getEncoding().convertToLong(_b.getTime(), getEncoding()) : _b.getTime();
+      }
+    }
+
+    /**
+     * Moves to the next point, producing points present in only one input if required.
+     *
+     * @param union  true to produce points present in only one input
+     * @return true if there is a point
+     */
+    protected boolean next(final boolean union) {
+      while (_hasA || _hasB) {
+        if (_hasA && _hasB) {
+          final long timeA = _a.getTime();
+          if (timeA == _timeB) {
+            setPoint(timeA, _operator.operate(_a.getValue(), _b.getValue()));
+            _hasA = _a.next();
+            advanceB();
+            return true;
+          } else if (timeA < _timeB) {
+            if (union) {
+              setPoint(timeA, _a.getValue());
+            }
+            _hasA = _a.next();
+          } else {
+            if (union) {
+              setPoint(_timeB, _b.getValue());
+            }
+            advanceB();
+          }
+          if (union) {
+            return true;
+          }
+        } else if (!union) {
+          return false;
+        } else if (_hasA) {
+          setPoint(_a.getTime(), _a.getValue());
+          _hasA = _a.next();
+          return true;
+        } else {
+          setPoint(_timeB, _b.getValue());
+          advanceB();
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    protected boolean addStages(final Set<FastTimeSeriesPipeline> stages) {
+      return stages.add(this) & _a.addStages(stages) & _b.addStages(stages);
+    }
+
+    protected int maxSizeA() {
+      return _a.maxSize();
+    }
+
+    protected int maxSizeB() {
+      return _b.maxSize();
+    }
+  }
+
+  private static final class Intersection extends Binary {
+    private Intersection(final FastTimeSeriesPipeline a, final FastTimeSeriesPipeline b, final BinaryOperator operator) {
+      super(a, b, operator);
+    }
+
+    @Override
+    protected boolean next() {
+      return next(false);
+    }
+
+    @Override
+    protected int maxSize() {
+      return Math.min(maxSizeA(), maxSizeB());
+    }
+  }
+
+  private static final class Union extends Binary {
+    private Union(final FastTimeSeriesPipeline a, final FastTimeSeriesPipeline b, final BinaryOperator operator) {
+      super(a, b, operator);
+    }
+
+    @Override
+    protected boolean next() {
+      return next(true);
+    }
+
+    @Override
+    protected int maxSize() {
+      return maxSizeA() + maxSizeB();
+    }
+  }
+
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries.fast;
+
+import java.nio.ByteBuffer;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Compresses blocks of time-series data points.
+ * <p>
+ * Times are encoded as the difference between successive deltas, so a run of evenly spaced times
+ * costs one bit per point and a weekend gap in a daily series costs nine. Values are encoded as the
+ * XOR of their bits with the previous value, storing only the bits that differ in the style of the
+ * Gorilla time-series database. Repeated values cost one bit and slowly moving prices typically fewer
+ * bits than the sixty-four of an uncompressed double.
+ * <p>
+ * The number of points in a block is not encoded and must be stored by the caller.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class TimeSeriesBlockCodec {
+
+  /**
+   * Restricted constructor.
+   */
+  private TimeSeriesBlockCodec() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Encodes a block of data points.
+   *
+   * @param times  the times, in ascending order, not null
+   * @param values  the values, not null
+   * @param from  the index of the first point to encode
+   * @param to  the index after the last point to encode
+   * @return the encoded block, not null
+   * @throws IllegalArgumentException if the times are not in ascending order
+   */
+  public static byte[] encode(final long[] times, final double[] values, final int from, final int to) {
+    ArgumentChecker.notNull(times, "times");
+    ArgumentChecker.notNull(values, "values");
+    ArgumentChecker.isTrue(from >= 0 && from <= to && to <= times.length && to <= values.length, "Invalid range");
+    final BitWriter writer = new BitWriter((to - from) * 4 + 16);
+    if (from == to) {
+      return writer.toByteArray();
+    }
+    long prevTime = times[from];
+    long prevDelta = 0;
+    writer.write(prevTime, 64);
+    for (int i = from + 1; i < to; i++) {
+      final long delta = times[i] - prevTime;
+      prevDelta = encodeDelta(writer, delta, prevDelta);
+      prevTime = times[i];
+    }
+    encodeValues(writer, values, from, to);
+    return writer.toByteArray();
+  }
+
+  /**
+   * Encodes a block of data points with integer times.
+   * <p>
+   * The block is the same as that encoded from the times widened to longs.
+   *
+   * @param times  the times, in ascending order, not null
+   * @param values  the values, not null
+   * @param from  the index of the first point to encode
+   * @param to  the index after the last point to encode
+   * @return the encoded block, not null
+   * @throws IllegalArgumentException if the times are not in ascending order
+   */
+  public static byte[] encode(final int[] times, final double[] values, final int from, final int to) {
+    ArgumentChecker.notNull(times, "times");
+    ArgumentChecker.notNull(values, "values");
+    ArgumentChecker.isTrue(from >= 0 && from <= to && to <= times.length && to <= values.length, "Invalid range");
+    final BitWriter writer = new BitWriter((to - from) * 4 + 16);
+    if (from == to) {
+      return writer.toByteArray();
+    }
+    long prevTime = times[from];
+    long prevDelta = 0;
+    writer.write(prevTime, 64);
+    for (int i = from + 1; i < to; i++) {
+      final long delta = times[i] - prevTime;
+      prevDelta = encodeDelta(writer, delta, prevDelta);
+      prevTime = times[i];
+    }
+    encodeValues(writer, values, from, to);
+    return writer.toByteArray();
+  }
+
+  private static long encodeDelta(final BitWriter writer, final long delta, final long prevDelta) {
+    ArgumentChecker.isTrue(delta > 0, "Times must be in ascending order");
+    final long dod = delta - prevDelta;
+    if (dod == 0) {
+      writer.write(0, 1);
+    } else if (dod >= -63 && dod <= 64) {
+      writer.write(2, 2);
+      writer.write(dod + 63, 7);
+    } else if (dod >= -2047 && dod <= 2048) {
+      writer.write(6, 3);
+      writer.write(dod + 2047, 12);
+    } else {
+      writer.write(7, 3);
+      writer.write(delta, 64);
+    }
+    return delta;
+  }
+
+  private static void encodeValues(final BitWriter writer, final double[] values, final int from, final int to) {
+    long prevBits = Double.doubleToRawLongBits(values[from]);
+    int prevLeading = -1;
+    int prevTrailing = 0;
+    writer.write(prevBits, 64);
+    for (int i = from + 1; i < to; i++) {
+      final long bits = Double.doubleToRawLongBits(values[i]);
+      final long xor = bits ^ prevBits;
+      if (xor == 0) {
+        writer.write(0, 1);
+      } else {
+        final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        final int trailing = Long.numberOfTrailingZeros(xor);
+        if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+          // fits in the window of meaningful bits of the previous value
+          writer.write(2, 2);
+          writer.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+        } else {
+          final int meaningful = 64 - leading - trailing;
+          writer.write(3, 2);
+          writer.write(leading, 5);
+          writer.write(meaningful - 1, 6);
+          writer.write(xor >>> trailing, meaningful);
+          prevLeading = leading;
+          prevTrailing = trailing;
+        }
+      }
+      prevBits = bits;
+    }
+  }
+
+  /**
+   * Decodes a block of data points.
+   * <p>
+   * The block is read from the current position of the buffer, which is left after the block.
+   *
+   * @param buffer  the buffer to read from, not null
+   * @param count  the number of points in the block
+   * @param times  the array to receive the times, not null
+   * @param values  the array to receive the values, not null
+   * @param offset  the index in the arrays to decode the first point to
+   */
+  public static void decode(final ByteBuffer buffer, final int count, final long[] times, final double[] values, final int offset) {
+    if (count == 0) {
+      return;
+    }
+    final BitReader reader = new BitReader(buffer);
+    long prevTime = reader.read(64);
+    long prevDelta = 0;
+    times[offset] = prevTime;
+    for (int i = offset + 1; i < offset + count; i++) {
+      prevDelta = decodeDelta(reader, prevDelta);
+      prevTime += prevDelta;
+      times[i] = prevTime;
+    }
+    decodeValues(reader, count, values, offset);
+  }
+
+  /**
+   * Decodes a block of data points with integer times.
+   * <p>
+   * The block is read from the current position of the buffer, which is left after the block.
+   *
+   * @param buffer  the buffer to read from, not null
+   * @param count  the number of points in the block
+   * @param times  the array to receive the times, not null
+   * @param values  the array to receive the values, not null
+   * @param offset  the index in the arrays to decode the first point to
+   * @throws IllegalArgumentException if a time does not fit in an integer
+   */
+  public static void decode(final ByteBuffer buffer, final int count, final int[] times, final double[] values, final int offset) {
+    if (count == 0) {
+      return;
+    }
+    final BitReader reader = new BitReader(buffer);
+    long prevTime = reader.read(64);
+    long prevDelta = 0;
+    times[offset] = toInt(prevTime);
+    for (int i = offset + 1; i < offset + count; i++) {
+      prevDelta = decodeDelta(reader, prevDelta);
+      prevTime += prevDelta;
+      times[i] = toInt(prevTime);
+    }
+    decodeValues(reader, count, values, offset);
+  }
+
+  private static int toInt(final long time) {
+    if (time < Integer.MIN_VALUE || time > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Time " + time + " does not fit in an integer");
+    }
+    return (int) time;
+  }
+
+  private static long decodeDelta(final BitReader reader, final long prevDelta) {
+    if (reader.read(1) == 0) {
+      return prevDelta;
+    } else if (reader.read(1) == 0) {
+      return prevDelta + reader.read(7) - 63;
+    } else if (reader.read(1) == 0) {
+      return prevDelta + reader.read(12) - 2047;
+    } else {
+      return reader.read(64);
+    }
+  }
+
+  private static void decodeValues(final BitReader reader, final int count, final double[] values, final int offset) {
+    long prevBits = reader.read(64);
+    int prevLeading = 0;
+    int prevTrailing = 0;
+    values[offset] = Double.longBitsToDouble(prevBits);
+    for (int i = offset + 1; i < offset + count; i++) {
+      if (reader.read(1) != 0) {
+        if (reader.read(1) == 0) {
+          prevBits ^= reader.read(64 - prevLeading - prevTrailing) << prevTrailing;
+        } else {
+          prevLeading = (int) reader.read(5);
+          final int meaningful = (int) reader.read(6) + 1;
+          prevTrailing = 64 - prevLeading - meaningful;
+          prevBits ^= reader.read(meaningful) << prevTrailing;
+        }
+      }
+      values[i] = Double.longBitsToDouble(prevBits);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Writes bits, most significant first, to a growable byte array.
+   */
+  private static final class BitWriter {
+    private byte[] _bytes;
+    private int _size;
+    private int _current;
+    private int _bitsInByte;
+
+    BitWriter(final int capacity) {
+      _bytes = new byte[Math.max(capacity, 16)];
+    }
+
+    void write(final long bits, int n) {
+      while (n > 0) {
+        final int take = Math.min(8 - _bitsInByte, n);
+        final int chunk = (int) (bits >>> (n - take)) & ((1 << take) - 1);
+        _current = (_current << take) | chunk;
+        _bitsInByte += take;
+        n -= take;
+        if (_bitsInByte == 8) {
+          put((byte) _current);
+          _current = 0;
+          _bitsInByte = 0;
+        }
+      }
+    }
+
+    private void put(final byte b) {
+      if (_size == _bytes.length) {
+        final byte[] bytes = new byte[_bytes.length * 2];
+        System.arraycopy(_bytes, 0, bytes, 0, _size);
+        _bytes = bytes;
+      }
+      _bytes[_size++] = b;
+    }
+
+    byte[] toByteArray() {
+      if (_bitsInByte > 0) {
+        put((byte) (_current << (8 - _bitsInByte)));
+        _current = 0;
+        _bitsInByte = 0;
+      }
+      final byte[] result = new byte[_size];
+      System.arraycopy(_bytes, 0, result, 0, _size);
+      return result;
+    }
+  }
+
+  /**
+   * Reads bits, most significant first, from a buffer.
+   */
+  private static final class BitReader {
+    private final ByteBuffer _buffer;
+    private int _current;
+    private int _bitsLeft;
+
+    BitReader(final ByteBuffer buffer) {
+      _buffer = buffer;
+    }
+
+    long read(int n) {
+      long result = 0;
+      while (n > 0) {
+        if (_bitsLeft == 0) {
+          _current = _buffer.get() & 0xFF;
+          _bitsLeft = 8;
+        }
+        final int take = Math.min(_bitsLeft, n);
+        final int chunk = (_current >>> (_bitsLeft - take)) & ((1 << take) - 1);
+        result = (result << take) | chunk;
+        _bitsLeft -= take;
+        n -= take;
+      }
+      return result;
+    }
+  }
+
+}
@@ -56,18 +56,37 @@ public class FastArrayIntDoubleTimeSeries extends AbstractFastIntDoubleTimeSerie
   }
 
   public FastArrayIntDoubleTimeSeries(final DateTimeNumericEncoding encoding, final int[] times, final double[] values) {
+    this(encoding, times, values, true);
+  }
+
+  private FastArrayIntDoubleTimeSeries(final DateTimeNumericEncoding encoding, final int[] times, final double[] values, final boolean copy) {
     super(encoding);
-    _times = new int[times.length];
-    _values = new double[values.length];
+    _times = copy ? new int[times.length] : times;
+    _values = copy ? new double[values.length] : values;
     init(times, values);
   }
 
+  /**
+   * Creates a time-series backed by the arrays given rather than by copies of them. The caller must not modify the
+   * arrays afterwards.
+   * 
+   * @param encoding  the encoding of the times, not null
+   * @param times  the times, in ascending order, not null
+   * @param values  the values, the same length as the times, not null
+   * @return the time-series, not null
+   */
+  public static FastArrayIntDoubleTimeSeries wrap(final DateTimeNumericEncoding encoding, final int[] times, final double[] values) {
+    return new FastArrayIntDoubleTimeSeries(encoding, times, values, false);
+  }
+
   private void init(final int[] times, final double[] values) {
     if (times.length != values.length) {
       throw new IllegalArgumentException("Arrays are of different sizes: " + times.length + ", " + values.length);
     }
-    System.arraycopy(times, 0, _times, 0, times.length);
-    System.arraycopy(values, 0, _values, 0, values.length);
+    if (times != _times) {
+      System.arraycopy(times, 0, _times, 0, times.length);
+      System.arraycopy(values, 0, _values, 0, values.length);
+    }
     // check dates are ordered
     int maxTime = Integer.MIN_VALUE;
     for (final int time : _times) {
@@ -54,18 +54,37 @@ public class FastArrayLongDoubleTimeSeries extends AbstractFastLongDoubleTimeSer
   }
 
   public FastArrayLongDoubleTimeSeries(final DateTimeNumericEncoding encoding, final long[] times, final double[] values) {
+    this(encoding, times, values, true);
+  }
+
+  private FastArrayLongDoubleTimeSeries(final DateTimeNumericEncoding encoding, final long[] times, final double[] values, final boolean copy) {
     super(encoding);
-    _times = new long[times.length];
-    _values = new double[values.length];
+    _times = copy ? new long[times.length] : times;
+    _values = copy ? new double[values.length] : values;
     init(times, values);
   }
 
+  /**
+   * Creates a time-series backed by the arrays given rather than by copies of them. The caller must not modify the
+   * arrays afterwards.
+   * 
+   * @param encoding  the encoding of the times, not null
+   * @param times  the times, in ascending order, not null
+   * @param values  the values, the same length as the times, not null
+   * @return the time-series, not null
+   */
+  public static FastArrayLongDoubleTimeSeries wrap(final DateTimeNumericEncoding encoding, final long[] times, final double[] values) {
+    return new FastArrayLongDoubleTimeSeries(encoding, times, values, false);
+  }
+
   private void init(final long[] times, final double[] values) {
     if (times.length != values.length) {
       throw new IllegalArgumentException("Arrays are of different sizes: " + times.length + ", " + values.length);
     }
-    System.arraycopy(times, 0, _times, 0, times.length);
-    System.arraycopy(values, 0, _values, 0, values.length);
+    if (times != _times) {
+      System.arraycopy(times, 0, _times, 0, times.length);
+      System.arraycopy(values, 0, _values, 0, values.length);
+    }
     // check dates are ordered
     long maxTime = Long.MIN_VALUE;
     for (final long time : _times) {
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries.fudge;
+
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.mapping.FudgeBuilder;
+import org.fudgemsg.mapping.FudgeBuilderFor;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.fudgemsg.mapping.FudgeSerializer;
+
+import com.opengamma.util.timeseries.fast.CompressedDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+
+/**
+ * Fudge message builder for {@code CompressedDoubleTimeSeries}.
+ * <p>
+ * The message has the same layout as that of the fast time series builders, so a message for any
+ * fast time series can be read as a compressed series. A compressed message is not inflated, allowing
+ * a receiver to decode only the sub-series it needs.
+ */
+@FudgeBuilderFor(CompressedDoubleTimeSeries.class)
+public class CompressedDoubleTimeSeriesFudgeBuilder implements FudgeBuilder<CompressedDoubleTimeSeries> {
+
+  @Override
+  public MutableFudgeMsg buildMessage(final FudgeSerializer serializer, final CompressedDoubleTimeSeries object) {
+    final MutableFudgeMsg message = serializer.newMessage();
+    serializer.addToMessage(message, null, 0, CompressedDoubleTimeSeries.class.getName());
+    serializer.addToMessage(message, null, 1, object.getEncoding());
+    message.add(null, 4, object.toByteArray());
+    return message;
+  }
+
+  @Override
+  public CompressedDoubleTimeSeries buildObject(final FudgeDeserializer deserializer, final FudgeMsg message) {
+    final FudgeField compressed = message.getByOrdinal(4);
+    if (compressed != null) {
+      return fieldValueToCompressed(deserializer, compressed);
+    }
+    final DateTimeNumericEncoding encoding = deserializer.fieldValueToObject(DateTimeNumericEncoding.class, message.getByOrdinal(1));
+    final Object times = message.getValue(2);
+    final double[] values = (double[]) message.getValue(3);
+    if (times instanceof int[]) {
+      final int[] intTimes = (int[]) times;
+      final long[] longTimes = new long[intTimes.length];
+      for (int i = 0; i < intTimes.length; i++) {
+        longTimes[i] = intTimes[i];
+      }
+      return CompressedDoubleTimeSeries.of(encoding, longTimes, values);
+    }
+    return CompressedDoubleTimeSeries.of(encoding, (long[]) times, values);
+  }
+
+  /**
+   * Converts the compressed field of a fast time series message, whether or not the
+   * secondary type is registered with the context.
+   *
+   * @param deserializer  the deserializer, not null
+   * @param field  the field holding the compressed series, not null
+   * @return the compressed series, not null
+   */
+  static CompressedDoubleTimeSeries fieldValueToCompressed(final FudgeDeserializer deserializer, final FudgeField field) {
+    final Object value = field.getValue();
+    if (value instanceof CompressedDoubleTimeSeries) {
+      return (CompressedDoubleTimeSeries) value;
+    }
+    if (value instanceof byte[]) {
+      return CompressedDoubleTimeSeries.fromByteArray((byte[]) value);
+    }
+    return deserializer.fieldValueToObject(CompressedDoubleTimeSeries.class, field);
+  }
+
+}
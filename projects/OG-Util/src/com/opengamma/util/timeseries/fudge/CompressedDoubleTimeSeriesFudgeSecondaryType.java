@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries.fudge;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.types.SecondaryFieldType;
+import org.fudgemsg.wire.types.FudgeWireType;
+
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+import com.opengamma.util.timeseries.fast.CompressedDoubleTimeSeries;
+
+/**
+ * Fudge secondary type for {@code CompressedDoubleTimeSeries} converting to a byte array.
+ * <p>
+ * The byte array is decoded lazily, so receiving a series does not inflate it.
+ * The fast time series builders use the compressed form when this type is registered
+ * in the type dictionary of the serialization context.
+ * <p>
+ * The type is not registered by default, as older peers and non-Java clients only understand
+ * the plain form. A context used to talk to peers known to read the compressed form must opt
+ * in by calling {@link #register(FudgeContext)}. Readers accept either form whether registered or not.
+ * Over REST, a client asks for the compressed form with the
+ * {@link com.opengamma.transport.jaxrs.FudgeRest#COMPRESSED_TIME_SERIES_HEADER} header.
+ */
+public final class CompressedDoubleTimeSeriesFudgeSecondaryType extends SecondaryFieldType<CompressedDoubleTimeSeries, byte[]> {
+
+  /**
+   * Singleton instance of the type.
+   */
+  public static final CompressedDoubleTimeSeriesFudgeSecondaryType INSTANCE = new CompressedDoubleTimeSeriesFudgeSecondaryType();
+
+  /** Serialization version. */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Restricted constructor.
+   */
+  private CompressedDoubleTimeSeriesFudgeSecondaryType() {
+    super(FudgeWireType.BYTE_ARRAY, CompressedDoubleTimeSeries.class);
+  }
+
+  /**
+   * Registers this type with a context, so that fast time series it encodes are compressed.
+   *
+   * @param context  the Fudge context, not null
+   */
+  public static void register(final FudgeContext context) {
+    context.getTypeDictionary().addType(INSTANCE);
+  }
+
+  /**
+   * Gets a shared context that encodes fast time series compressed.
+   * <p>
+   * This is the OpenGamma context with this type registered, for use when responding to a peer
+   * known to read the compressed form.
+   *
+   * @return the Fudge context, not null
+   */
+  public static FudgeContext getCompressingContext() {
+    return CompressingContextHolder.INSTANCE;
+  }
+
+  /**
+   * Avoid double-checked-locking using the Initialization-on-demand holder idiom.
+   */
+  static final class CompressingContextHolder {
+    static final FudgeContext INSTANCE = constructContext();
+    private static FudgeContext constructContext() {
+      final FudgeContext context = OpenGammaFudgeContext.constructContext();
+      register(context);
+      return context;
+    }
+  }
+
+  /**
+   * Checks if a context can encode compressed time series.
+   *
+   * @param context  the Fudge context, not null
+   * @return true if this type is registered in the type dictionary of the context
+   */
+  public static boolean isRegistered(final FudgeContext context) {
+    return context.getTypeDictionary().getByJavaType(CompressedDoubleTimeSeries.class) != null;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public byte[] secondaryToPrimary(final CompressedDoubleTimeSeries object) {
+    return object.toByteArray();
+  }
+
+  @Override
+  public CompressedDoubleTimeSeries primaryToSecondary(final byte[] data) {
+    return CompressedDoubleTimeSeries.fromByteArray(data);
+  }
+
+}
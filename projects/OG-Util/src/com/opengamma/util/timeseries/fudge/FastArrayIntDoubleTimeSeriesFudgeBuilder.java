@@ -10,6 +10,7 @@ import org.fudgemsg.mapping.FudgeBuilderFor;
 
 import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
 import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
 
 /**
  * 
@@ -22,4 +23,12 @@ public class FastArrayIntDoubleTimeSeriesFudgeBuilder extends FastIntDoubleTimeS
     return new FastArrayIntDoubleTimeSeries(encoding, times, values);
   }
 
+  @Override
+  protected FastArrayIntDoubleTimeSeries makeSeries(final FastIntDoubleTimeSeries series) {
+    if (series instanceof FastArrayIntDoubleTimeSeries) {
+      return (FastArrayIntDoubleTimeSeries) series;
+    }
+    return super.makeSeries(series);
+  }
+
 }
@@ -10,6 +10,7 @@ import org.fudgemsg.mapping.FudgeBuilderFor;
 
 import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
 import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastLongDoubleTimeSeries;
 
 /**
  */
@@ -21,4 +22,12 @@ public class FastArrayLongDoubleTimeSeriesFudgeBuilder extends FastLongDoubleTim
     return new FastArrayLongDoubleTimeSeries(encoding, times, values);
   }
 
+  @Override
+  protected FastArrayLongDoubleTimeSeries makeSeries(final FastLongDoubleTimeSeries series) {
+    if (series instanceof FastArrayLongDoubleTimeSeries) {
+      return (FastArrayLongDoubleTimeSeries) series;
+    }
+    return super.makeSeries(series);
+  }
+
 }
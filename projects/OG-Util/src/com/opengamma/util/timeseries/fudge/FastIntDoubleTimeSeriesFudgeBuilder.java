@@ -5,18 +5,22 @@
  */
 package com.opengamma.util.timeseries.fudge;
 
+import org.fudgemsg.FudgeField;
 import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.MutableFudgeMsg;
 import org.fudgemsg.mapping.FudgeBuilder;
 import org.fudgemsg.mapping.FudgeDeserializer;
 import org.fudgemsg.mapping.FudgeSerializer;
 
+import com.opengamma.util.timeseries.fast.CompressedDoubleTimeSeries;
 import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
 import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
 
 /**
  * Abstract fudge message builder to serialize and de=serialize FastIntDoubleTimeSeries concrete implementations.
  * To use, just override and implement makeSeries to build the appropriate concrete class. 
+ * The points are sent as a {@link CompressedDoubleTimeSeries} if the context has opted in by registering
+ * {@link CompressedDoubleTimeSeriesFudgeSecondaryType}, and are read in either form.
  * @param <T> the concrete type to decode
  */
 public abstract class FastIntDoubleTimeSeriesFudgeBuilder<T extends FastIntDoubleTimeSeries> implements FudgeBuilder<T> {
@@ -26,15 +30,34 @@ public abstract class FastIntDoubleTimeSeriesFudgeBuilder<T extends FastIntDoubl
     final MutableFudgeMsg message = serializer.newMessage();
     serializer.addToMessage(message, null, 0, object.getClass().getName());
     serializer.addToMessage(message, null, 1, object.getEncoding());
-    serializer.addToMessage(message, null, 2, object.timesArrayFast());
-    serializer.addToMessage(message, null, 3, object.valuesArrayFast());
+    if (!object.isEmpty() && CompressedDoubleTimeSeriesFudgeSecondaryType.isRegistered(serializer.getFudgeContext())) {
+      serializer.addToMessage(message, null, 4, CompressedDoubleTimeSeries.of(object));
+    } else {
+      serializer.addToMessage(message, null, 2, object.timesArrayFast());
+      serializer.addToMessage(message, null, 3, object.valuesArrayFast());
+    }
     return message;
   }
 
+  /**
+   * Creates the concrete series from a decoded series.
+   * Implementations may override this to avoid copying the points when the decoded series is of the right type.
+   *
+   * @param series  the decoded series, not null
+   * @return the series, not null
+   */
+  protected T makeSeries(final FastIntDoubleTimeSeries series) {
+    return makeSeries(series.getEncoding(), series.timesArrayFast(), series.valuesArrayFast());
+  }
+
   @Override
   public T buildObject(FudgeDeserializer deserializer, FudgeMsg message) {
-    return makeSeries(deserializer.fieldValueToObject(DateTimeNumericEncoding.class, message.getByOrdinal(1)), 
-                      (int[]) message.getValue(2), (double[]) message.getValue(3));
+    final DateTimeNumericEncoding encoding = deserializer.fieldValueToObject(DateTimeNumericEncoding.class, message.getByOrdinal(1));
+    final FudgeField compressed = message.getByOrdinal(4);
+    if (compressed != null) {
+      return makeSeries(CompressedDoubleTimeSeriesFudgeBuilder.fieldValueToCompressed(deserializer, compressed).toFastIntDoubleTimeSeries());
+    }
+    return makeSeries(encoding, (int[]) message.getValue(2), (double[]) message.getValue(3));
   }
 
 }
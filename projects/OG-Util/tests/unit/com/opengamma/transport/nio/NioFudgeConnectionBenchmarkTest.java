@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.nio;
+
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.Lifecycle;
+import org.testng.annotations.Test;
+
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.FudgeConnectionReceiver;
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.transport.socket.ServerSocketFudgeConnectionReceiver;
+import com.opengamma.transport.socket.SocketFudgeConnection;
+import com.opengamma.util.test.Timeout;
+
+/**
+ * Throughput and latency benchmark of the NIO transport against the stream based socket transport.
+ * <p>
+ * Each run connects a number of clients to an echo server. Throughput is measured by every client sending a stream of
+ * messages and waiting for all of the echoes; latency by a single client making sequential round trips. The full
+ * benchmark is disabled by default; run {@link #benchmark} by hand to compare the two implementations.
+ */
+@Test
+public class NioFudgeConnectionBenchmarkTest {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(NioFudgeConnectionBenchmarkTest.class);
+
+  /**
+   * Creates the server and client ends of a transport.
+   */
+  private abstract static class Transport {
+
+    private final String _name;
+
+    protected Transport(final String name) {
+      _name = name;
+    }
+
+    public abstract Lifecycle createServer(FudgeConnectionReceiver receiver);
+
+    public abstract int getPortNumber(Lifecycle server);
+
+    public abstract FudgeConnection createClient(int portNumber) throws Exception;
+
+    @Override
+    public String toString() {
+      return _name;
+    }
+
+  }
+
+  private static final Transport SOCKET = new Transport("Socket") {
+
+    @Override
+    public Lifecycle createServer(final FudgeConnectionReceiver receiver) {
+      return new ServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, receiver);
+    }
+
+    @Override
+    public int getPortNumber(final Lifecycle server) {
+      return ((ServerSocketFudgeConnectionReceiver) server).getPortNumber();
+    }
+
+    @Override
+    public FudgeConnection createClient(final int portNumber) throws Exception {
+      final SocketFudgeConnection client = new SocketFudgeConnection(FudgeContext.GLOBAL_DEFAULT);
+      client.setInetAddress(InetAddress.getLocalHost());
+      client.setPortNumber(portNumber);
+      return client;
+    }
+
+  };
+
+  private static final Transport NIO = new Transport("NIO") {
+
+    @Override
+    public Lifecycle createServer(final FudgeConnectionReceiver receiver) {
+      return new NioServerFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, receiver);
+    }
+
+    @Override
+    public int getPortNumber(final Lifecycle server) {
+      return ((NioServerFudgeConnectionReceiver) server).getPortNumber();
+    }
+
+    @Override
+    public FudgeConnection createClient(final int portNumber) throws Exception {
+      final NioFudgeConnection client = new NioFudgeConnection(FudgeContext.GLOBAL_DEFAULT);
+      client.setInetAddress(InetAddress.getLocalHost());
+      client.setPortNumber(portNumber);
+      return client;
+    }
+
+  };
+
+  private static final FudgeConnectionReceiver ECHO = new FudgeConnectionReceiver() {
+    @Override
+    public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope envelope, final FudgeConnection connection) {
+      connection.setFudgeMessageReceiver(new FudgeMessageReceiver() {
+        @Override
+        public void messageReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope msgEnvelope) {
+          connection.getFudgeMessageSender().send(msgEnvelope.getMessage());
+        }
+      });
+      connection.getFudgeMessageSender().send(envelope.getMessage());
+    }
+  };
+
+  private static MutableFudgeMsg createMessage(final int index, final int payloadSize) {
+    final MutableFudgeMsg message = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    message.add("index", index);
+    if (payloadSize > 0) {
+      message.add("payload", new byte[payloadSize]);
+    }
+    return message;
+  }
+
+  /**
+   * Sends messages from each client and waits for all of the echoes.
+   *
+   * @return the number of messages per second round-tripped
+   */
+  private static double throughput(final Transport transport, final int clients, final int messages, final int payloadSize) throws Exception {
+    final Lifecycle server = transport.createServer(ECHO);
+    server.start();
+    final List<FudgeConnection> connections = new ArrayList<FudgeConnection>(clients);
+    final CountDownLatch received = new CountDownLatch(clients * messages);
+    try {
+      for (int i = 0; i < clients; i++) {
+        final FudgeConnection client = transport.createClient(transport.getPortNumber(server));
+        client.setFudgeMessageReceiver(new FudgeMessageReceiver() {
+          @Override
+          public void messageReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope msgEnvelope) {
+            received.countDown();
+          }
+        });
+        connections.add(client);
+      }
+      final long start = System.nanoTime();
+      final Thread[] senders = new Thread[clients];
+      for (int i = 0; i < clients; i++) {
+        final FudgeConnection client = connections.get(i);
+        senders[i] = new Thread() {
+          @Override
+          public void run() {
+            for (int j = 0; j < messages; j++) {
+              client.getFudgeMessageSender().send(createMessage(j, payloadSize));
+            }
+          }
+        };
+        senders[i].start();
+      }
+      assertTrue(received.await(Timeout.standardTimeoutMillis() * 100, TimeUnit.MILLISECONDS));
+      return (double) clients * messages * 1e9 / (System.nanoTime() - start);
+    } finally {
+      for (FudgeConnection connection : connections) {
+        ((Lifecycle) connection).stop();
+      }
+      server.stop();
+    }
+  }
+
+  /**
+   * Makes sequential round trips from a single client.
+   *
+   * @return the round trip times in microseconds, sorted
+   */
+  private static long[] latency(final Transport transport, final int roundTrips, final int payloadSize) throws Exception {
+    final Lifecycle server = transport.createServer(ECHO);
+    server.start();
+    final FudgeConnection client = transport.createClient(transport.getPortNumber(server));
+    final SynchronousQueue<FudgeMsgEnvelope> responses = new SynchronousQueue<FudgeMsgEnvelope>();
+    client.setFudgeMessageReceiver(new FudgeMessageReceiver() {
+      @Override
+      public void messageReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope msgEnvelope) {
+        try {
+          responses.put(msgEnvelope);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    try {
+      final long[] times = new long[roundTrips];
+      for (int i = 0; i < roundTrips; i++) {
+        final long start = System.nanoTime();
+        client.getFudgeMessageSender().send(createMessage(i, payloadSize));
+        assertTrue(responses.poll(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS) != null);
+        times[i] = (System.nanoTime() - start) / 1000;
+      }
+      Arrays.sort(times);
+      return times;
+    } finally {
+      ((Lifecycle) client).stop();
+      server.stop();
+    }
+  }
+
+  public void testManyClients() throws Exception {
+    assertTrue(throughput(NIO, 20, 100, 16) > 0);
+  }
+
+  @Test(enabled = false)
+  public void benchmark() throws Exception {
+    final int[] clientCounts = new int[] {1, 10, 100 };
+    final int[] payloadSizes = new int[] {16, 1024, 64 * 1024 };
+    final Transport[] transports = new Transport[] {SOCKET, NIO };
+    // Warm up
+    for (Transport transport : transports) {
+      throughput(transport, 4, 10000, 16);
+      latency(transport, 10000, 16);
+    }
+    for (int payloadSize : payloadSizes) {
+      for (int clients : clientCounts) {
+        final int messages = Math.max(1000, 1000000 / clients / Math.max(1, payloadSize / 64));
+        for (Transport transport : transports) {
+          final double rate = throughput(transport, clients, messages, payloadSize);
+          s_logger.info("{} throughput, {} clients, {} byte payload: {} messages/s", new Object[] {transport, clients, payloadSize, (long) rate });
+        }
+      }
+      for (Transport transport : transports) {
+        final long[] times = latency(transport, 20000, payloadSize);
+        s_logger.info("{} latency, {} byte payload: median {}us, 99% {}us, max {}us", new Object[] {transport, payloadSize, times[times.length / 2],
+          times[times.length * 99 / 100], times[times.length - 1] });
+      }
+    }
+  }
+
+}
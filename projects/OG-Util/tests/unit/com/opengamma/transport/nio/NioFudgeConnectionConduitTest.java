@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.nio;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.opengamma.transport.CollectingFudgeMessageReceiver;
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.FudgeConnectionReceiver;
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.transport.FudgeMessageSender;
+import com.opengamma.transport.socket.ServerSocketFudgeConnectionReceiver;
+import com.opengamma.transport.socket.SocketFudgeConnection;
+import com.opengamma.util.test.Timeout;
+
+/**
+ * Tests the NioFudgeConnection and NioServerFudgeConnectionReceiver classes
+ */
+@Test
+public class NioFudgeConnectionConduitTest {
+
+  private final AtomicInteger _counter = new AtomicInteger();
+  private NioEventLoopPool _eventLoopPool;
+
+  @BeforeClass
+  public void startEventLoops() {
+    _eventLoopPool = new NioEventLoopPool("Test", 2);
+    _eventLoopPool.start();
+  }
+
+  @AfterClass
+  public void stopEventLoops() {
+    _eventLoopPool.stop();
+  }
+
+  private FudgeMsg createMessage() {
+    final MutableFudgeMsg message = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    message.add("counter", _counter.incrementAndGet());
+    return message;
+  }
+
+  private NioServerFudgeConnectionReceiver createServer(final FudgeConnectionReceiver serverReceiver) {
+    final NioServerFudgeConnectionReceiver server = new NioServerFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, serverReceiver);
+    server.setEventLoopPool(_eventLoopPool);
+    server.start();
+    return server;
+  }
+
+  private NioFudgeConnection createClient(final int portNumber) throws Exception {
+    final NioFudgeConnection client = new NioFudgeConnection(FudgeContext.GLOBAL_DEFAULT);
+    client.setEventLoopPool(_eventLoopPool);
+    client.setInetAddress(InetAddress.getLocalHost());
+    client.setPortNumber(portNumber);
+    return client;
+  }
+
+  private FudgeConnectionReceiver replyingReceiver(final FudgeMsg request, final FudgeMsg response) {
+    return new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(FudgeContext fudgeContext, FudgeMsgEnvelope message, FudgeConnection connection) {
+        assertNotNull(fudgeContext);
+        assertNotNull(connection);
+        assertEquals(request, message.getMessage());
+        connection.getFudgeMessageSender().send(response);
+      }
+    };
+  }
+
+  public void simpleTest() throws Exception {
+    final FudgeMsg testMessage1 = createMessage();
+    final FudgeMsg testMessage2 = createMessage();
+    final NioServerFudgeConnectionReceiver server = createServer(replyingReceiver(testMessage1, testMessage2));
+    final NioFudgeConnection client = createClient(server.getPortNumber());
+    final CollectingFudgeMessageReceiver clientReceiver = new CollectingFudgeMessageReceiver();
+    client.setFudgeMessageReceiver(clientReceiver);
+    client.getFudgeMessageSender().send(testMessage1);
+    final FudgeMsgEnvelope envelope = clientReceiver.waitForMessage(Timeout.standardTimeoutMillis());
+    assertNotNull(envelope);
+    assertEquals(testMessage2, envelope.getMessage());
+    client.stop();
+    server.stop();
+  }
+
+  public void messageReceiverTest() throws Exception {
+    final FudgeMsg testMessage1 = createMessage();
+    final FudgeMsg testMessage2 = createMessage();
+    final FudgeMsg testMessage3 = createMessage();
+    final CollectingFudgeMessageReceiver message3Receiver = new CollectingFudgeMessageReceiver();
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      private int _count;
+
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope message, final FudgeConnection connection) {
+        switch (_count++) {
+          case 0:
+            assertEquals(testMessage1, message.getMessage());
+            break;
+          case 1:
+            assertEquals(testMessage2, message.getMessage());
+            connection.setFudgeMessageReceiver(message3Receiver);
+            break;
+          default:
+            fail("Shouldn't have been called a third time");
+            break;
+        }
+      }
+    };
+    final NioServerFudgeConnectionReceiver server = createServer(serverReceiver);
+    final NioFudgeConnection client = createClient(server.getPortNumber());
+    client.getFudgeMessageSender().send(testMessage1);
+    client.getFudgeMessageSender().send(testMessage2);
+    client.getFudgeMessageSender().send(testMessage3);
+    final FudgeMsgEnvelope envelope = message3Receiver.waitForMessage(Timeout.standardTimeoutMillis());
+    assertNotNull(envelope);
+    assertEquals(testMessage3, envelope.getMessage());
+    server.stop();
+    client.stop();
+  }
+
+  private class MessageReadWrite extends Thread implements FudgeMessageReceiver {
+
+    private static final int NUM_MESSAGES = 1000;
+
+    private FudgeMessageSender _sender;
+    private int _received;
+
+    @Override
+    public void run() {
+      for (int i = 0; i < NUM_MESSAGES; i++) {
+        final MutableFudgeMsg message = FudgeContext.GLOBAL_DEFAULT.newMessage();
+        message.add("counter", i);
+        // Some messages larger than the direct buffers to exercise partial reads and writes
+        if ((i % 100) == 0) {
+          message.add("payload", new byte[DirectBufferPool.DEFAULT_BUFFER_SIZE * 2]);
+        }
+        _sender.send(message);
+      }
+    }
+
+    @Override
+    public synchronized void messageReceived(FudgeContext fudgeContext, FudgeMsgEnvelope msgEnvelope) {
+      // Messages are dispatched on the event loop so must arrive in order
+      assertEquals(_received, msgEnvelope.getMessage().getInt("counter").intValue());
+      _received++;
+      if (_received == NUM_MESSAGES) {
+        notify();
+      } else if (_received > NUM_MESSAGES) {
+        fail("Too many messages received");
+      }
+    }
+
+    public synchronized boolean waitForMessages() throws InterruptedException {
+      final long period = Timeout.standardTimeoutMillis();
+      final long timeout = System.currentTimeMillis() + period;
+      while ((_received < NUM_MESSAGES) && (System.currentTimeMillis() < timeout)) {
+        wait(period);
+      }
+      return _received == NUM_MESSAGES;
+    }
+
+  }
+
+  public void parallelIOTest() throws Exception {
+    final MessageReadWrite serverThread = new MessageReadWrite();
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope envelope, final FudgeConnection connection) {
+        serverThread.messageReceived(fudgeContext, envelope);
+        serverThread._sender = connection.getFudgeMessageSender();
+        connection.setFudgeMessageReceiver(serverThread);
+        serverThread.start();
+      }
+    };
+    final NioServerFudgeConnectionReceiver server = createServer(serverReceiver);
+    final NioFudgeConnection client = createClient(server.getPortNumber());
+    final MessageReadWrite clientThread = new MessageReadWrite();
+    clientThread._sender = client.getFudgeMessageSender();
+    client.setFudgeMessageReceiver(clientThread);
+    clientThread.start();
+    assertTrue(serverThread.waitForMessages());
+    assertTrue(clientThread.waitForMessages());
+    server.stop();
+    client.stop();
+  }
+
+  public void socketClientTest() throws Exception {
+    final FudgeMsg testMessage1 = createMessage();
+    final FudgeMsg testMessage2 = createMessage();
+    final NioServerFudgeConnectionReceiver server = createServer(replyingReceiver(testMessage1, testMessage2));
+    final SocketFudgeConnection client = new SocketFudgeConnection(FudgeContext.GLOBAL_DEFAULT);
+    client.setInetAddress(InetAddress.getLocalHost());
+    client.setPortNumber(server.getPortNumber());
+    final CollectingFudgeMessageReceiver clientReceiver = new CollectingFudgeMessageReceiver();
+    client.setFudgeMessageReceiver(clientReceiver);
+    client.getFudgeMessageSender().send(testMessage1);
+    final FudgeMsgEnvelope envelope = clientReceiver.waitForMessage(Timeout.standardTimeoutMillis());
+    assertNotNull(envelope);
+    assertEquals(testMessage2, envelope.getMessage());
+    client.stop();
+    server.stop();
+  }
+
+  public void socketServerTest() throws Exception {
+    final FudgeMsg testMessage1 = createMessage();
+    final FudgeMsg testMessage2 = createMessage();
+    final ServerSocketFudgeConnectionReceiver server = new ServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, replyingReceiver(testMessage1, testMessage2));
+    server.start();
+    final NioFudgeConnection client = createClient(server.getPortNumber());
+    final CollectingFudgeMessageReceiver clientReceiver = new CollectingFudgeMessageReceiver();
+    client.setFudgeMessageReceiver(clientReceiver);
+    client.getFudgeMessageSender().send(testMessage1);
+    final FudgeMsgEnvelope envelope = clientReceiver.waitForMessage(Timeout.standardTimeoutMillis());
+    assertNotNull(envelope);
+    assertEquals(testMessage2, envelope.getMessage());
+    client.stop();
+    server.stop();
+  }
+
+  public void compressingSocketClientTest() throws Exception {
+    final FudgeMsg testMessage1 = createMessage();
+    final FudgeMsg testMessage2 = createMessage();
+    final List<FudgeMsg> received = new CopyOnWriteArrayList<FudgeMsg>();
+    final NioServerFudgeConnectionReceiver server = createServer(new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope message, final FudgeConnection connection) {
+        received.add(message.getMessage());
+        connection.getFudgeMessageSender().send(testMessage2);
+      }
+    });
+    final SocketFudgeConnection client = new SocketFudgeConnection(FudgeContext.GLOBAL_DEFAULT);
+    client.setCompression(true);
+    client.setInetAddress(InetAddress.getLocalHost());
+    client.setPortNumber(server.getPortNumber());
+    final CollectingFudgeMessageReceiver clientReceiver = new CollectingFudgeMessageReceiver();
+    client.setFudgeMessageReceiver(clientReceiver);
+    client.getFudgeMessageSender().send(testMessage1);
+    final FudgeMsgEnvelope envelope = clientReceiver.waitForMessage(Timeout.standardTimeoutMillis());
+    assertNotNull(envelope);
+    assertEquals(testMessage2, envelope.getMessage());
+    // The compression offer isn't passed to the application, and isn't accepted
+    assertEquals(1, received.size());
+    assertEquals(testMessage1, received.get(0));
+    assertFalse(client.getCompression().isNegotiated());
+    client.stop();
+    server.stop();
+  }
+
+}
@@ -12,6 +12,8 @@ import static org.testng.AssertJUnit.assertNull;
 import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
@@ -20,6 +22,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.wire.FudgeMsgReader;
 import org.fudgemsg.wire.FudgeSize;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -129,4 +135,44 @@ public class MessageBatchingWriterTest {
     assertNull(_out._writes.get(threads[5]));
   }
 
+  public void adaptiveDelayFlushesLoneMessages() {
+    _writer.setAdaptiveFlushDelay(1000);
+    final int count = 5;
+    for (int i = 0; i < count; i++) {
+      _writer.write(FudgeContext.EMPTY_MESSAGE);
+    }
+    // Each write takes longer than the maximum delay so no waiting for other messages
+    assertEquals(count, _writer.getMessagesWritten());
+    assertEquals(count, _writer.getFlushes());
+    assertEquals(0, _writer.getFlushDelayTime());
+  }
+
+  public void compressedWrites() {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final MessageBatchingWriter writer = new MessageBatchingWriter(FudgeContext.GLOBAL_DEFAULT, out);
+    final MessageCompression compression = new MessageCompression(FudgeContext.GLOBAL_DEFAULT);
+    final MessageCompression peer = new MessageCompression(FudgeContext.GLOBAL_DEFAULT);
+    peer.connectionOpened();
+    compression.received(peer.takeOffer());
+    writer.setCompression(compression);
+    final MutableFudgeMsg message = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    for (int i = 0; i < 1000; i++) {
+      message.add("value", i % 10);
+    }
+    writer.write(message);
+    writer.write(FudgeContext.EMPTY_MESSAGE);
+    final FudgeMsgReader reader = FudgeContext.GLOBAL_DEFAULT.createMessageReader(new ByteArrayInputStream(out.toByteArray()));
+    // The reply to the offer, the compressed message and the small message as it is
+    assertNull(peer.received(reader.nextMessageEnvelope()));
+    final FudgeMsgEnvelope compressed = reader.nextMessageEnvelope();
+    assertEquals(MessageCompression.COMPRESSED, compressed.getProcessingDirectives());
+    final FudgeMsg received = peer.received(compressed).getMessage();
+    assertEquals(message.getNumFields(), received.getNumFields());
+    assertEquals(0, reader.nextMessageEnvelope().getMessage().getNumFields());
+    assertFalse(reader.hasNext());
+    assertEquals(1, compression.getMessagesCompressed());
+    compression.release();
+    peer.release();
+  }
+
 }
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link MessageCompression} class.
+ */
+@Test
+public class MessageCompressionTest {
+
+  private static FudgeMsg largeMessage() {
+    final MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    for (int i = 0; i < 1000; i++) {
+      msg.add("value", i % 10);
+    }
+    return msg;
+  }
+
+  public void testNegotiation() {
+    final MessageCompression client = new MessageCompression(FudgeContext.GLOBAL_DEFAULT);
+    final MessageCompression server = new MessageCompression(FudgeContext.GLOBAL_DEFAULT);
+    client.connectionOpened();
+    // Server doesn't offer until asked
+    assertNull(server.takeOffer());
+    final FudgeMsgEnvelope offer = client.takeOffer();
+    assertNotNull(offer);
+    assertTrue(MessageCompression.isOffer(offer));
+    assertNull(client.takeOffer());
+    assertEquals(0, decode(client.encode(largeMessage())).getProcessingDirectives());
+    assertNull(server.received(offer));
+    assertTrue(server.isNegotiated());
+    final FudgeMsgEnvelope reply = server.takeOffer();
+    assertNotNull(reply);
+    assertFalse(client.isNegotiated());
+    assertNull(client.received(reply));
+    assertTrue(client.isNegotiated());
+    // The client doesn't reply to the reply
+    assertNull(client.takeOffer());
+  }
+
+  private static FudgeMsgEnvelope decode(final byte[] data) {
+    return FudgeContext.GLOBAL_DEFAULT.deserialize(data);
+  }
+
+  public void testCompression() {
+    final MessageCompression client = new MessageCompression(FudgeContext.GLOBAL_DEFAULT);
+    final MessageCompression server = new MessageCompression(FudgeContext.GLOBAL_DEFAULT);
+    client.connectionOpened();
+    server.received(client.takeOffer());
+    final FudgeMsg message = largeMessage();
+    final byte[] plain = FudgeContext.GLOBAL_DEFAULT.toByteArray(message);
+    final byte[] encoded = server.encode(message);
+    assertTrue(encoded.length < plain.length);
+    final FudgeMsgEnvelope compressed = decode(encoded);
+    assertEquals(MessageCompression.COMPRESSED, compressed.getProcessingDirectives());
+    final FudgeMsg received = client.received(compressed).getMessage();
+    assertEquals(message.getNumFields(), received.getNumFields());
+    assertEquals(message.getAllByName("value").size(), received.getAllByName("value").size());
+    assertEquals(message.getInt("value"), received.getInt("value"));
+    assertEquals(1, server.getMessagesCompressed());
+    assertTrue(server.getBytesSaved() > 0);
+    // Small messages aren't compressed
+    assertEquals(0, decode(server.encode(FudgeContext.EMPTY_MESSAGE)).getProcessingDirectives());
+    // Uncompressed messages are passed through
+    final FudgeMsgEnvelope envelope = new FudgeMsgEnvelope(message);
+    assertTrue(envelope == client.received(envelope));
+  }
+
+  public void testRelease() {
+    final MessageCompression client = new MessageCompression(FudgeContext.GLOBAL_DEFAULT);
+    final MessageCompression server = new MessageCompression(FudgeContext.GLOBAL_DEFAULT);
+    client.connectionOpened();
+    server.received(client.takeOffer());
+    final FudgeMsg message = largeMessage();
+    client.received(decode(server.encode(message)));
+    server.release();
+    client.release();
+    // Still usable, for example after reconnecting
+    final FudgeMsg received = client.received(decode(server.encode(message))).getMessage();
+    assertEquals(message.getNumFields(), received.getNumFields());
+    assertEquals(2, server.getMessagesCompressed());
+    server.release();
+    client.release();
+  }
+
+}
@@ -6,6 +6,7 @@
 package com.opengamma.util.timeseries;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
 
 import java.util.Arrays;
 
@@ -110,6 +111,7 @@ public class BulkTimeSeriesOperationsTest {
     LocalDateDoubleTimeSeries[] inputs = new LocalDateDoubleTimeSeries[] {one, two, three, four };
     DoubleTimeSeries<LocalDate>[] intersection = BulkTimeSeriesOperations.intersection(inputs);
     for (int i = 0; i < intersection.length; i++) {
+      assertTrue(intersection[i] instanceof LocalDateDoubleTimeSeries);
       LocalDate[] timesArray = intersection[i].timesArray();
       assertEquals(Arrays.asList(RESULT), Arrays.asList(timesArray));
       Double[] valuesArray = intersection[i].valuesArray();
@@ -126,4 +128,27 @@ public class BulkTimeSeriesOperationsTest {
     assertEquals(BulkTimeSeriesOperations.intersection(new LocalDateDoubleTimeSeries[] {one })[0], one);
   }
 
+  public void testIntersectorMatchesBulkIntersection() {
+    LocalDateDoubleTimeSeries[] inputs = new LocalDateDoubleTimeSeries[] {
+      new ArrayLocalDateDoubleTimeSeries(DATES1, VALUES1), new ArrayLocalDateDoubleTimeSeries(DATES2, VALUES2),
+      new ArrayLocalDateDoubleTimeSeries(DATES3, VALUES3), new ArrayLocalDateDoubleTimeSeries(DATES4, VALUES4) };
+    DoubleTimeSeries<LocalDate>[] expected = BulkTimeSeriesOperations.intersection(inputs);
+    DoubleTimeSeries<?>[] intersection = TimeSeriesIntersector.intersect(inputs.clone());
+    for (int i = 0; i < intersection.length; i++) {
+      assertEquals(expected[i], intersection[i]);
+    }
+  }
+
+  public void testSumMatchesPairwiseAdd() {
+    LocalDateDoubleTimeSeries one = new ArrayLocalDateDoubleTimeSeries(DATES1, VALUES1);
+    LocalDateDoubleTimeSeries two = new ArrayLocalDateDoubleTimeSeries(DATES2, VALUES2);
+    LocalDateDoubleTimeSeries three = new ArrayLocalDateDoubleTimeSeries(DATES3, VALUES3);
+    LocalDateDoubleTimeSeries four = new ArrayLocalDateDoubleTimeSeries(DATES4, VALUES4);
+    DoubleTimeSeries<?> sum = BulkTimeSeriesOperations.sum(new LocalDateDoubleTimeSeries[] {one, two, three, four });
+    assertTrue(sum instanceof LocalDateDoubleTimeSeries);
+    assertEquals(one.add(two).add(three).add(four), sum);
+    assertEquals(Arrays.asList(RESULT), Arrays.asList(((LocalDateDoubleTimeSeries) sum).timesArray()));
+    assertEquals(one, BulkTimeSeriesOperations.sum(new LocalDateDoubleTimeSeries[] {one }));
+  }
+
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.mapping.FudgeSerializer;
+import org.testng.annotations.Test;
+
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+import com.opengamma.util.test.AbstractFudgeBuilderTestCase;
+import com.opengamma.util.timeseries.fast.CompressedDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastListIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fudge.CompressedDoubleTimeSeriesFudgeSecondaryType;
+import com.opengamma.util.timeseries.localdate.ArrayLocalDateDoubleTimeSeries;
+
+/**
+ * Test Fudge encoding of fast time series, which are compressed only by contexts that opt in.
+ */
+@Test
+public class FastDoubleTimeSeriesFudgeEncodingTest extends AbstractFudgeBuilderTestCase {
+
+  private static final FastArrayIntDoubleTimeSeries INT_SERIES = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS,
+      new int[] {14000, 14001, 14002, 14005, 14006 }, new double[] {1.25d, 1.5d, 1.5d, 1.75d, 1.5d });
+  private static final FastArrayLongDoubleTimeSeries LONG_SERIES = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_MILLIS,
+      new long[] {1000L, 2000L, 3000L, 5000L }, new double[] {100d, 100.01d, 99.99d, 100d });
+
+  private static FudgeContext compressingContext() {
+    final FudgeContext context = OpenGammaFudgeContext.constructContext();
+    CompressedDoubleTimeSeriesFudgeSecondaryType.register(context);
+    return context;
+  }
+
+  private static FastIntDoubleTimeSeries createDaily(final int size) {
+    final int[] times = new int[size];
+    final double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      times[i] = 14000 + i + 2 * (i / 5);
+      values[i] = 100d + (i % 7) * 0.25d;
+    }
+    return new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, times, values);
+  }
+
+  public void testCycleInt() {
+    assertEquals(INT_SERIES, cycleObject(FastArrayIntDoubleTimeSeries.class, INT_SERIES));
+    assertEquals(INT_SERIES, cycleObjectOverBytes(INT_SERIES));
+  }
+
+  public void testCycleList() {
+    final FastListIntDoubleTimeSeries series = new FastListIntDoubleTimeSeries(INT_SERIES);
+    assertEquals(series, cycleObject(FastListIntDoubleTimeSeries.class, series));
+  }
+
+  public void testCycleLong() {
+    assertEquals(LONG_SERIES, cycleObject(FastArrayLongDoubleTimeSeries.class, LONG_SERIES));
+    assertEquals(LONG_SERIES, cycleObjectOverBytes(LONG_SERIES));
+  }
+
+  public void testCycleEmpty() {
+    final FastArrayIntDoubleTimeSeries series = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS);
+    assertEquals(series, cycleObject(FastArrayIntDoubleTimeSeries.class, series));
+  }
+
+  public void testPlainMessage() {
+    assertFalse(CompressedDoubleTimeSeriesFudgeSecondaryType.isRegistered(getFudgeContext()));
+    final FudgeMsg message = getFudgeSerializer().objectToFudgeMsg(INT_SERIES);
+    assertNull(message.getByOrdinal(4));
+    assertNotNull(message.getByOrdinal(2));
+    assertNotNull(message.getByOrdinal(3));
+  }
+
+  public void testCompressedMessage() {
+    final FudgeMsg message = new FudgeSerializer(compressingContext()).objectToFudgeMsg(INT_SERIES);
+    assertNotNull(message.getByOrdinal(4));
+    assertNull(message.getByOrdinal(2));
+    assertNull(message.getByOrdinal(3));
+  }
+
+  public void testCompressedReadByPlainContext() {
+    final FudgeContext compressing = compressingContext();
+    final byte[] data = compressing.toByteArray(new FudgeSerializer(compressing).objectToFudgeMsg(LONG_SERIES));
+    final FudgeMsg message = getFudgeContext().deserialize(data).getMessage();
+    assertEquals(LONG_SERIES, getFudgeDeserializer().fudgeMsgToObject(FastArrayLongDoubleTimeSeries.class, message));
+  }
+
+  public void testCompressedResponseWrittenByPlainContext() {
+    // a resource builds the message with the compressing context, and the provider writes it with its own context
+    final ArrayLocalDateDoubleTimeSeries series = new ArrayLocalDateDoubleTimeSeries(createDaily(500));
+    final FudgeMsgEnvelope envelope = CompressedDoubleTimeSeriesFudgeSecondaryType.getCompressingContext().toFudgeMsg(series);
+    final FudgeMsg message = getFudgeContext().deserialize(getFudgeContext().toByteArray(envelope.getMessage())).getMessage();
+    assertEquals(series, getFudgeDeserializer().fudgeMsgToObject(ArrayLocalDateDoubleTimeSeries.class, message));
+  }
+
+  public void testCycleCompressed() {
+    assertEncodeDecodeCycle(CompressedDoubleTimeSeries.class, CompressedDoubleTimeSeries.of(LONG_SERIES));
+  }
+
+  public void testSubSeriesAfterCycle() {
+    final FastIntDoubleTimeSeries daily = createDaily(1000);
+    final FudgeContext compressing = compressingContext();
+    final byte[] data = compressing.toByteArray(new FudgeSerializer(compressing).objectToFudgeMsg(daily));
+    final FudgeMsg message = getFudgeContext().deserialize(data).getMessage();
+    final CompressedDoubleTimeSeries compressed = getFudgeDeserializer().fudgeMsgToObject(CompressedDoubleTimeSeries.class, message);
+    assertEquals(daily.size(), compressed.size());
+    final int start = daily.getTimeFast(300);
+    final int end = daily.getTimeFast(620);
+    assertEquals(daily.subSeriesFast(start, end), compressed.subSeriesFastInt(start, end));
+  }
+
+  public void testSubSeriesAfterPlainCycle() {
+    final FastIntDoubleTimeSeries daily = createDaily(300);
+    final FudgeMsg message = cycleMessage(getFudgeSerializer().objectToFudgeMsg(daily));
+    final CompressedDoubleTimeSeries compressed = getFudgeDeserializer().fudgeMsgToObject(CompressedDoubleTimeSeries.class, message);
+    final int start = daily.getTimeFast(10);
+    final int end = daily.getTimeFast(280);
+    assertEquals(daily.subSeriesFast(start, end), compressed.subSeriesFastInt(start, end));
+  }
+
+}
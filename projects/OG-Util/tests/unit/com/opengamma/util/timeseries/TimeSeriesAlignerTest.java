@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.timeseries.TimeSeriesAligner.FillPolicy;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+
+/**
+ * Test {@link TimeSeriesAligner}.
+ */
+@Test
+public class TimeSeriesAlignerTest {
+
+  private static final DateTimeNumericEncoding ENCODING = DateTimeNumericEncoding.DATE_EPOCH_DAYS;
+  private static final FastIntDoubleTimeSeries A = new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {1, 2, 3, 5, 8 }, new double[] {1d, 2d, 3d, 5d, 8d });
+  private static final FastIntDoubleTimeSeries B = new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {2, 3, 4, 8, 9 }, new double[] {20d, 30d, 40d, 80d, 90d });
+  private static final FastIntDoubleTimeSeries C = new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {0, 3, 8 }, new double[] {0d, 300d, 800d });
+  private static final FastIntDoubleTimeSeries EMPTY = new FastArrayIntDoubleTimeSeries(ENCODING);
+
+  private static void assertArrayEquals(final long[] expected, final long[] actual) {
+    assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+  }
+
+  private static void assertArrayEquals(final double[] expected, final double[] actual) {
+    assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_intersection() {
+    final AlignedTimeSeries aligned = TimeSeriesAligner.intersection(A, B, C);
+    assertEquals(ENCODING, aligned.getEncoding());
+    assertEquals(3, aligned.getSeriesCount());
+    assertEquals(2, aligned.getRowCount());
+    assertArrayEquals(new long[] {3, 8 }, aligned.getTimes());
+    assertArrayEquals(new double[] {3d, 8d }, aligned.getColumn(0));
+    assertArrayEquals(new double[] {30d, 80d }, aligned.getColumn(1));
+    assertArrayEquals(new double[] {300d, 800d }, aligned.getColumn(2));
+  }
+
+  public void test_intersection_single() {
+    final AlignedTimeSeries aligned = TimeSeriesAligner.intersection(A);
+    assertArrayEquals(new long[] {1, 2, 3, 5, 8 }, aligned.getTimes());
+    assertArrayEquals(new double[] {1d, 2d, 3d, 5d, 8d }, aligned.getColumn(0));
+  }
+
+  public void test_intersection_empty() {
+    final AlignedTimeSeries aligned = TimeSeriesAligner.intersection(A, EMPTY);
+    assertEquals(0, aligned.getRowCount());
+    assertEquals(2, aligned.getSeriesCount());
+  }
+
+  public void test_intersection_matchesPairwise() {
+    final Random random = new Random(1);
+    final FastIntDoubleTimeSeries[] series = new FastIntDoubleTimeSeries[20];
+    for (int i = 0; i < series.length; i++) {
+      final int[] times = new int[500];
+      final double[] values = new double[times.length];
+      int time = random.nextInt(5);
+      for (int j = 0; j < times.length; j++) {
+        time += 1 + ((random.nextDouble() < 0.1) ? random.nextInt(3) : 0);
+        times[j] = time;
+        values[j] = random.nextDouble();
+      }
+      series[i] = new FastArrayIntDoubleTimeSeries(ENCODING, times, values);
+    }
+    FastIntDoubleTimeSeries common = series[0];
+    for (int i = 1; i < series.length; i++) {
+      common = common.operate(series[i], DoubleTimeSeriesOperators.FIRST_OPERATOR);
+    }
+    final AlignedTimeSeries aligned = TimeSeriesAligner.intersection(series);
+    assertEquals(common.size(), aligned.getRowCount());
+    for (int i = 0; i < common.size(); i++) {
+      assertEquals(common.getTimeFast(i), aligned.getTimes()[i]);
+      for (int j = 0; j < series.length; j++) {
+        assertEquals(series[j].getValueFast(common.getTimeFast(i)), aligned.getColumn(j)[i], 0d);
+      }
+    }
+  }
+
+  public void test_union() {
+    final long[] times = {0, 1, 2, 3, 4, 5, 8, 9 };
+    AlignedTimeSeries aligned = TimeSeriesAligner.union(FillPolicy.NAN, A, B, C);
+    assertArrayEquals(times, aligned.getTimes());
+    assertArrayEquals(new double[] {Double.NaN, 1d, 2d, 3d, Double.NaN, 5d, 8d, Double.NaN }, aligned.getColumn(0));
+    assertArrayEquals(new double[] {Double.NaN, Double.NaN, 20d, 30d, 40d, Double.NaN, 80d, 90d }, aligned.getColumn(1));
+    aligned = TimeSeriesAligner.union(FillPolicy.ZERO, A, B, C);
+    assertArrayEquals(times, aligned.getTimes());
+    assertArrayEquals(new double[] {0d, 0d, 0d, 300d, 0d, 0d, 800d, 0d }, aligned.getColumn(2));
+    aligned = TimeSeriesAligner.union(FillPolicy.PREVIOUS, A, B, C);
+    assertArrayEquals(times, aligned.getTimes());
+    assertArrayEquals(new double[] {Double.NaN, 1d, 2d, 3d, 3d, 5d, 8d, 8d }, aligned.getColumn(0));
+    assertArrayEquals(new double[] {0d, 0d, 0d, 300d, 300d, 300d, 800d, 800d }, aligned.getColumn(2));
+  }
+
+  public void test_union_empty() {
+    final AlignedTimeSeries aligned = TimeSeriesAligner.union(FillPolicy.NAN, EMPTY, A);
+    assertArrayEquals(new long[] {1, 2, 3, 5, 8 }, aligned.getTimes());
+    assertArrayEquals(new double[] {Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN }, aligned.getColumn(0));
+    assertEquals(0, TimeSeriesAligner.union(FillPolicy.NAN, EMPTY, EMPTY).getRowCount());
+  }
+
+  public void test_mixedEncoding() {
+    final FastArrayLongDoubleTimeSeries millis = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_MILLIS,
+        new long[] {3L * 86400000L, 8L * 86400000L }, new double[] {-3d, -8d });
+    final AlignedTimeSeries aligned = TimeSeriesAligner.intersection(A, millis);
+    assertEquals(ENCODING, aligned.getEncoding());
+    assertArrayEquals(new long[] {3, 8 }, aligned.getTimes());
+    assertArrayEquals(new double[] {-3d, -8d }, aligned.getColumn(1));
+  }
+
+  public void test_mixedEncoding_collapsedTimes() {
+    final long day = 86400000L;
+    final FastArrayLongDoubleTimeSeries millis = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_MILLIS,
+        new long[] {3L * day, 3L * day + 1000L, 5L * day + 1000L, 8L * day, 8L * day + 1000L, 8L * day + 2000L }, new double[] {-3d, -3.1d, -5d, -8d, -8.1d, -8.2d });
+    AlignedTimeSeries aligned = TimeSeriesAligner.intersection(A, millis);
+    assertArrayEquals(new long[] {3, 5, 8 }, aligned.getTimes());
+    assertArrayEquals(new double[] {-3.1d, -5d, -8.2d }, aligned.getColumn(1));
+    aligned = TimeSeriesAligner.union(FillPolicy.NAN, C, millis);
+    assertArrayEquals(new long[] {0, 3, 5, 8 }, aligned.getTimes());
+    assertArrayEquals(new double[] {Double.NaN, -3.1d, -5d, -8.2d }, aligned.getColumn(1));
+  }
+
+  public void test_toFastSeries() {
+    final AlignedTimeSeries aligned = TimeSeriesAligner.intersection(A, B);
+    final FastIntDoubleTimeSeries column = aligned.toFastIntDoubleTimeSeries(1);
+    assertEquals(3, column.size());
+    assertEquals(2, column.getTimeFast(0));
+    assertEquals(80d, column.getValueAtFast(2), 0d);
+  }
+
+  @Test(expectedExceptions = OpenGammaRuntimeException.class)
+  public void test_toFastIntSeries_millis() {
+    final FastArrayLongDoubleTimeSeries millis = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_MILLIS,
+        new long[] {3L * 86400000L, 8L * 86400000L }, new double[] {-3d, -8d });
+    TimeSeriesAligner.intersection(millis, millis).toFastIntDoubleTimeSeries(0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_noSeries() {
+    TimeSeriesAligner.intersection(new DoubleTimeSeries<?>[0]);
+  }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries.fast;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastLongDoubleTimeSeries;
+
+/**
+ * Test {@link CompressedDoubleTimeSeries}.
+ */
+@Test
+public class CompressedDoubleTimeSeriesTest {
+
+  private static final DateTimeNumericEncoding ENCODING = DateTimeNumericEncoding.DATE_EPOCH_DAYS;
+  private static final FastIntDoubleTimeSeries DAILY = createDaily(2000);
+
+  private static FastIntDoubleTimeSeries createDaily(final int size) {
+    final Random random = new Random(1);
+    final int[] times = new int[size];
+    final double[] values = new double[size];
+    int time = 14000;
+    double value = 100d;
+    for (int i = 0; i < size; i++) {
+      // weekdays, with the odd holiday and repeated value
+      time += (i % 5 == 0) ? 3 : 1 + (random.nextDouble() < 0.02 ? 1 : 0);
+      value = random.nextDouble() < 0.1 ? value : Math.round((value + random.nextGaussian()) * 100d) / 100d;
+      times[i] = time;
+      values[i] = value;
+    }
+    return new FastArrayIntDoubleTimeSeries(ENCODING, times, values);
+  }
+
+  private static void assertSeries(final FastIntDoubleTimeSeries expected, final FastIntDoubleTimeSeries actual) {
+    assertEquals(expected.getEncoding(), actual.getEncoding());
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getTimeFast(i), actual.getTimeFast(i));
+      assertEquals(expected.getValueAtFast(i), actual.getValueAtFast(i), 0d);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_int() {
+    final CompressedDoubleTimeSeries compressed = CompressedDoubleTimeSeries.of(DAILY);
+    assertEquals(ENCODING, compressed.getEncoding());
+    assertEquals(DAILY.size(), compressed.size());
+    assertSeries(DAILY, compressed.toFastIntDoubleTimeSeries());
+    // uncompressed, each point is a four byte time and an eight byte value
+    assertTrue(compressed.toByteArray().length < DAILY.size() * 8);
+  }
+
+  public void test_long() {
+    final long[] times = {-(1L << 62), -5L, 0L, 1000L, 2000L, 4000L, 1L << 40, Long.MAX_VALUE };
+    final double[] values = {1d, Double.NaN, -0d, Double.POSITIVE_INFINITY, Double.MIN_VALUE, 2d, 2d, -1e300 };
+    final FastLongDoubleTimeSeries series = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_MILLIS, times, values);
+    final FastLongDoubleTimeSeries decoded = CompressedDoubleTimeSeries.of(series).toFastLongDoubleTimeSeries();
+    assertEquals(DateTimeNumericEncoding.TIME_EPOCH_MILLIS, decoded.getEncoding());
+    assertEquals(times.length, decoded.size());
+    for (int i = 0; i < times.length; i++) {
+      assertEquals(times[i], decoded.getTimeFast(i));
+      assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoded.getValueAtFast(i)));
+    }
+  }
+
+  public void test_empty() {
+    final CompressedDoubleTimeSeries compressed = CompressedDoubleTimeSeries.of(new FastArrayIntDoubleTimeSeries(ENCODING));
+    assertTrue(compressed.isEmpty());
+    assertEquals(0, compressed.toFastIntDoubleTimeSeries().size());
+    assertEquals(0, compressed.subSeriesFastInt(0, 100).size());
+    assertEquals(compressed, CompressedDoubleTimeSeries.fromByteArray(compressed.toByteArray()));
+  }
+
+  public void test_fromByteArray() {
+    final CompressedDoubleTimeSeries compressed = CompressedDoubleTimeSeries.of(DAILY);
+    final CompressedDoubleTimeSeries read = CompressedDoubleTimeSeries.fromByteArray(compressed.toByteArray());
+    assertEquals(compressed, read);
+    assertEquals(compressed.hashCode(), read.hashCode());
+    assertEquals(DAILY.size(), read.size());
+    assertSeries(DAILY, read.toFastIntDoubleTimeSeries());
+  }
+
+  public void test_subSeries() {
+    final CompressedDoubleTimeSeries compressed = CompressedDoubleTimeSeries.fromByteArray(CompressedDoubleTimeSeries.of(DAILY).toByteArray());
+    final int first = DAILY.getEarliestTimeFast();
+    final int last = DAILY.getLatestTimeFast();
+    final int[][] ranges = {
+      {first, last + 1 }, {first - 10, first }, {last + 1, last + 10 }, {first - 10, first + 1 }, {last, last + 1 },
+      {DAILY.getTimeFast(256), DAILY.getTimeFast(512) }, {DAILY.getTimeFast(255) + 1, DAILY.getTimeFast(1500) - 1 },
+      {DAILY.getTimeFast(700), DAILY.getTimeFast(701) }, {DAILY.getTimeFast(10), DAILY.getTimeFast(10) } };
+    for (final int[] range : ranges) {
+      assertSeries(DAILY.subSeriesFast(range[0], range[1]), compressed.subSeriesFastInt(range[0], range[1]));
+    }
+  }
+
+  @Test(expectedExceptions = OpenGammaRuntimeException.class)
+  public void test_long_toFastInt() {
+    final FastLongDoubleTimeSeries series = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_MILLIS,
+        new long[] {1L << 40 }, new double[] {1d });
+    CompressedDoubleTimeSeries.of(series).toFastIntDoubleTimeSeries();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_fromByteArray_invalid() {
+    final byte[] data = CompressedDoubleTimeSeries.of(DAILY).toByteArray();
+    data[0] = 99;
+    CompressedDoubleTimeSeries.fromByteArray(data);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_fromByteArray_truncated() {
+    final byte[] data = CompressedDoubleTimeSeries.of(DAILY).toByteArray();
+    final byte[] truncated = new byte[20];
+    System.arraycopy(data, 0, truncated, 0, truncated.length);
+    CompressedDoubleTimeSeries.fromByteArray(truncated);
+  }
+
+}
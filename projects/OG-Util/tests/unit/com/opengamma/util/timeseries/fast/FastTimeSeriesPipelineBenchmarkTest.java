@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries.fast;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.util.timeseries.DoubleTimeSeriesOperators;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+
+/**
+ * Benchmark of the eager fast time-series operators against {@link FastTimeSeriesPipeline}.
+ * <p>
+ * Each case evaluates the same chain of operators eagerly, creating a series at every step, and as a fused pipeline.
+ * The full benchmark is disabled by default; run {@link #benchmark} by hand to compare the two.
+ */
+@Test
+public class FastTimeSeriesPipelineBenchmarkTest {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(FastTimeSeriesPipelineBenchmarkTest.class);
+
+  private static final DateTimeNumericEncoding ENCODING = DateTimeNumericEncoding.DATE_EPOCH_DAYS;
+
+  /**
+   * A chain of operators evaluated both ways.
+   */
+  private abstract static class Case {
+
+    private final String _name;
+
+    protected Case(final String name) {
+      _name = name;
+    }
+
+    public abstract FastIntDoubleTimeSeries eager(FastIntDoubleTimeSeries a, FastIntDoubleTimeSeries b);
+
+    public abstract FastIntDoubleTimeSeries pipeline(FastIntDoubleTimeSeries a, FastIntDoubleTimeSeries b);
+
+    @Override
+    public String toString() {
+      return _name;
+    }
+
+  }
+
+  private static final Case[] CASES = new Case[] {
+    new Case("scalar") {
+      @Override
+      public FastIntDoubleTimeSeries eager(final FastIntDoubleTimeSeries a, final FastIntDoubleTimeSeries b) {
+        return a.operate(2d, DoubleTimeSeriesOperators.MULTIPLY_OPERATOR);
+      }
+
+      @Override
+      public FastIntDoubleTimeSeries pipeline(final FastIntDoubleTimeSeries a, final FastIntDoubleTimeSeries b) {
+        return FastTimeSeriesPipeline.of(a).multiply(2d).toFastIntDoubleTimeSeries();
+      }
+    },
+    new Case("intersect") {
+      @Override
+      public FastIntDoubleTimeSeries eager(final FastIntDoubleTimeSeries a, final FastIntDoubleTimeSeries b) {
+        return a.operate(b, DoubleTimeSeriesOperators.ADD_OPERATOR);
+      }
+
+      @Override
+      public FastIntDoubleTimeSeries pipeline(final FastIntDoubleTimeSeries a, final FastIntDoubleTimeSeries b) {
+        return FastTimeSeriesPipeline.of(a).add(FastTimeSeriesPipeline.of(b)).toFastIntDoubleTimeSeries();
+      }
+    },
+    new Case("union") {
+      @Override
+      public FastIntDoubleTimeSeries eager(final FastIntDoubleTimeSeries a, final FastIntDoubleTimeSeries b) {
+        return a.unionOperate(b, DoubleTimeSeriesOperators.ADD_OPERATOR);
+      }
+
+      @Override
+      public FastIntDoubleTimeSeries pipeline(final FastIntDoubleTimeSeries a, final FastIntDoubleTimeSeries b) {
+        return FastTimeSeriesPipeline.of(a).unionOperate(FastTimeSeriesPipeline.of(b), DoubleTimeSeriesOperators.ADD_OPERATOR).toFastIntDoubleTimeSeries();
+      }
+    },
+    new Case("ratio-log-scale") {
+      @Override
+      public FastIntDoubleTimeSeries eager(final FastIntDoubleTimeSeries a, final FastIntDoubleTimeSeries b) {
+        return a.operate(b, DoubleTimeSeriesOperators.DIVIDE_OPERATOR).operate(DoubleTimeSeriesOperators.LOG_OPERATOR)
+            .operate(252d, DoubleTimeSeriesOperators.MULTIPLY_OPERATOR);
+      }
+
+      @Override
+      public FastIntDoubleTimeSeries pipeline(final FastIntDoubleTimeSeries a, final FastIntDoubleTimeSeries b) {
+        return FastTimeSeriesPipeline.of(a).divide(FastTimeSeriesPipeline.of(b)).log().multiply(252d).toFastIntDoubleTimeSeries();
+      }
+    },
+  };
+
+  private static FastIntDoubleTimeSeries createSeries(final Random random, final int size, final double skip) {
+    final int[] times = new int[size];
+    final double[] values = new double[size];
+    int time = 10000;
+    double value = 100d;
+    for (int i = 0; i < size; i++) {
+      do {
+        time++;
+      } while (random.nextDouble() < skip);
+      times[i] = time;
+      value *= Math.exp(random.nextGaussian() * 0.01);
+      values[i] = value;
+    }
+    return new FastArrayIntDoubleTimeSeries(ENCODING, times, values);
+  }
+
+  //-------------------------------------------------------------------------
+  public void testResultsMatch() {
+    final Random random = new Random(1);
+    final FastIntDoubleTimeSeries a = createSeries(random, 1000, 0.1);
+    final FastIntDoubleTimeSeries b = createSeries(random, 1000, 0.1);
+    for (Case c : CASES) {
+      final FastIntDoubleTimeSeries eager = c.eager(a, b);
+      final FastIntDoubleTimeSeries pipeline = c.pipeline(a, b);
+      assertEquals(c.toString(), eager.size(), pipeline.size());
+      for (int i = 0; i < eager.size(); i++) {
+        assertEquals(c.toString(), eager.getTimeFast(i), pipeline.getTimeFast(i));
+        assertEquals(c.toString(), eager.getValueAtFast(i), pipeline.getValueAtFast(i), 0d);
+      }
+    }
+  }
+
+  @Test(enabled = false)
+  public void benchmark() {
+    final Random random = new Random(1);
+    for (int size : new int[] {250, 2500, 25000 }) {
+      final FastIntDoubleTimeSeries a = createSeries(random, size, 0.1);
+      final FastIntDoubleTimeSeries b = createSeries(random, size, 0.1);
+      final int iterations = Math.max(10000000 / size, 100);
+      for (Case c : CASES) {
+        // warm up both before timing either
+        run(c, false, a, b, iterations);
+        run(c, true, a, b, iterations);
+        final long eager = run(c, false, a, b, iterations);
+        final long pipeline = run(c, true, a, b, iterations);
+        s_logger.info("{} points, {}: eager {}ns, pipeline {}ns per evaluation", new Object[] {size, c, eager / iterations, pipeline / iterations });
+      }
+    }
+  }
+
+  private static long run(final Case c, final boolean pipeline, final FastIntDoubleTimeSeries a, final FastIntDoubleTimeSeries b, final int iterations) {
+    int check = 0;
+    final long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      check += (pipeline ? c.pipeline(a, b) : c.eager(a, b)).size();
+    }
+    final long time = System.nanoTime() - start;
+    s_logger.debug("Check {}", check);
+    return time;
+  }
+
+}
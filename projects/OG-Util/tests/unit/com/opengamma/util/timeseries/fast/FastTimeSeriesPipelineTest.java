@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries.fast;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.timeseries.DoubleTimeSeriesOperators;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.integer.FastIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.longint.FastLongDoubleTimeSeries;
+
+/**
+ * Test {@link FastTimeSeriesPipeline}.
+ */
+@Test
+public class FastTimeSeriesPipelineTest {
+
+  private static final DateTimeNumericEncoding ENCODING = DateTimeNumericEncoding.DATE_EPOCH_DAYS;
+  private static final FastIntDoubleTimeSeries A = new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {1, 2, 3, 5, 8 }, new double[] {1d, 2d, 4d, 8d, 16d });
+  private static final FastIntDoubleTimeSeries B = new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {2, 3, 4, 8, 9 }, new double[] {1d, 2d, 3d, 4d, 5d });
+  private static final FastIntDoubleTimeSeries EMPTY = new FastArrayIntDoubleTimeSeries(ENCODING);
+
+  private static void assertSeries(final FastIntDoubleTimeSeries expected, final FastIntDoubleTimeSeries actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getTimeFast(i), actual.getTimeFast(i));
+      assertEquals(expected.getValueAtFast(i), actual.getValueAtFast(i), 1e-12);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_source() {
+    assertSeries(A, FastTimeSeriesPipeline.of(A).toFastIntDoubleTimeSeries());
+    assertSeries(EMPTY, FastTimeSeriesPipeline.of(EMPTY).toFastIntDoubleTimeSeries());
+    assertEquals(ENCODING, FastTimeSeriesPipeline.of(A).getEncoding());
+  }
+
+  public void test_unary() {
+    assertSeries(A.operate(DoubleTimeSeriesOperators.LOG_OPERATOR), FastTimeSeriesPipeline.of(A).log().toFastIntDoubleTimeSeries());
+    assertSeries(A.operate(3d, DoubleTimeSeriesOperators.MULTIPLY_OPERATOR), FastTimeSeriesPipeline.of(A).multiply(3d).toFastIntDoubleTimeSeries());
+  }
+
+  public void test_intersection() {
+    assertSeries(A.operate(B, DoubleTimeSeriesOperators.DIVIDE_OPERATOR),
+        FastTimeSeriesPipeline.of(A).divide(FastTimeSeriesPipeline.of(B)).toFastIntDoubleTimeSeries());
+    assertSeries(EMPTY, FastTimeSeriesPipeline.of(A).add(FastTimeSeriesPipeline.of(EMPTY)).toFastIntDoubleTimeSeries());
+  }
+
+  public void test_union() {
+    assertSeries(A.unionOperate(B, DoubleTimeSeriesOperators.SUBTRACT_OPERATOR),
+        FastTimeSeriesPipeline.of(A).unionOperate(FastTimeSeriesPipeline.of(B), DoubleTimeSeriesOperators.SUBTRACT_OPERATOR).toFastIntDoubleTimeSeries());
+    assertSeries(A, FastTimeSeriesPipeline.of(A).unionOperate(FastTimeSeriesPipeline.of(EMPTY), DoubleTimeSeriesOperators.ADD_OPERATOR).toFastIntDoubleTimeSeries());
+    assertSeries(A, FastTimeSeriesPipeline.of(EMPTY).unionOperate(FastTimeSeriesPipeline.of(A), DoubleTimeSeriesOperators.ADD_OPERATOR).toFastIntDoubleTimeSeries());
+  }
+
+  public void test_mixedEncoding() {
+    final FastLongDoubleTimeSeries millis = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_MILLIS,
+        new long[] {2L * 86400000L, 5L * 86400000L }, new double[] {10d, 20d });
+    final FastIntDoubleTimeSeries result = FastTimeSeriesPipeline.of(A).add(FastTimeSeriesPipeline.of(millis)).toFastIntDoubleTimeSeries();
+    assertSeries(new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {2, 5 }, new double[] {12d, 28d }), result);
+  }
+
+  public void test_operatePrevious() {
+    final FastIntDoubleTimeSeries expected = new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {2, 3, 5, 8 }, new double[] {2d, 2d, 2d, 2d });
+    assertSeries(expected, FastTimeSeriesPipeline.of(A).operatePrevious(DoubleTimeSeriesOperators.DIVIDE_OPERATOR).toFastIntDoubleTimeSeries());
+    assertSeries(EMPTY, FastTimeSeriesPipeline.of(EMPTY).operatePrevious(DoubleTimeSeriesOperators.DIVIDE_OPERATOR).toFastIntDoubleTimeSeries());
+  }
+
+  public void test_rolling() {
+    assertSeries(new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {2, 3, 5, 8 }, new double[] {3d, 6d, 12d, 24d }),
+        FastTimeSeriesPipeline.of(A).rollingSum(2).toFastIntDoubleTimeSeries());
+    assertSeries(new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {3, 5, 8 }, new double[] {7d / 3d, 14d / 3d, 28d / 3d }),
+        FastTimeSeriesPipeline.of(A).rollingMean(3).toFastIntDoubleTimeSeries());
+    assertSeries(new FastArrayIntDoubleTimeSeries(ENCODING, new int[] {2, 3, 5, 8 }, new double[] {Math.sqrt(0.5), Math.sqrt(2d), Math.sqrt(8d), Math.sqrt(32d) }),
+        FastTimeSeriesPipeline.of(A).rollingStandardDeviation(2).toFastIntDoubleTimeSeries());
+    assertSeries(EMPTY, FastTimeSeriesPipeline.of(A).rollingSum(6).toFastIntDoubleTimeSeries());
+  }
+
+  public void test_chain() {
+    final FastIntDoubleTimeSeries eager = A.operate(B, DoubleTimeSeriesOperators.DIVIDE_OPERATOR).operate(DoubleTimeSeriesOperators.LOG_OPERATOR);
+    final FastTimeSeriesPipeline pipeline = FastTimeSeriesPipeline.of(A).divide(FastTimeSeriesPipeline.of(B)).log().rollingMean(2);
+    final FastIntDoubleTimeSeries result = pipeline.toFastIntDoubleTimeSeries();
+    assertEquals(eager.size() - 1, result.size());
+    assertEquals((eager.getValueAtFast(0) + eager.getValueAtFast(1)) / 2d, result.getValueAtFast(0), 1e-12);
+    // a pipeline can be evaluated again
+    assertSeries(result, pipeline.toFastIntDoubleTimeSeries());
+    assertEquals(result.getLatestValueFast(), pipeline.getLatestValue(Double.NaN), 1e-12);
+  }
+
+  public void test_toFastLongDoubleTimeSeries() {
+    final FastLongDoubleTimeSeries result = FastTimeSeriesPipeline.of(A).toFastLongDoubleTimeSeries();
+    assertEquals(ENCODING, result.getEncoding());
+    assertEquals(A.size(), result.size());
+    assertEquals(8L, result.getLatestTimeFast());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_sameStageTwice() {
+    final FastTimeSeriesPipeline pipeline = FastTimeSeriesPipeline.of(A);
+    pipeline.add(pipeline);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_sharedUpstreamStage() {
+    final FastTimeSeriesPipeline pipeline = FastTimeSeriesPipeline.of(A);
+    pipeline.log().add(pipeline);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_sharedStageInBothInputs() {
+    final FastTimeSeriesPipeline log = FastTimeSeriesPipeline.of(A).log();
+    log.multiply(2d).subtract(log.add(1d));
+  }
+
+  public void test_separatePipelinesOfSameSeries() {
+    final FastIntDoubleTimeSeries result = FastTimeSeriesPipeline.of(A).log().subtract(FastTimeSeriesPipeline.of(A)).toFastIntDoubleTimeSeries();
+    assertEquals(A.size(), result.size());
+    assertEquals(Math.log(16d) - 16d, result.getValueAtFast(4), 1e-12);
+  }
+
+  @Test(expectedExceptions = OpenGammaRuntimeException.class)
+  public void test_toFastIntDoubleTimeSeries_longEncoding() {
+    final FastLongDoubleTimeSeries series = new FastArrayLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_MILLIS, new long[] {1L << 40 }, new double[] {1d });
+    FastTimeSeriesPipeline.of(series).toFastIntDoubleTimeSeries();
+  }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.timeseries.fast;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link TimeSeriesBlockCodec}.
+ */
+@Test
+public class TimeSeriesBlockCodecTest {
+
+  private static void assertRoundTrip(final long[] times, final double[] values) {
+    final byte[] block = TimeSeriesBlockCodec.encode(times, values, 0, times.length);
+    final long[] decodedTimes = new long[times.length + 1];
+    final double[] decodedValues = new double[times.length + 1];
+    final ByteBuffer buffer = ByteBuffer.wrap(block);
+    TimeSeriesBlockCodec.decode(buffer, times.length, decodedTimes, decodedValues, 1);
+    for (int i = 0; i < times.length; i++) {
+      assertEquals(times[i], decodedTimes[i + 1]);
+      assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues[i + 1]));
+    }
+  }
+
+  public void test_empty() {
+    assertEquals(0, TimeSeriesBlockCodec.encode(new long[0], new double[0], 0, 0).length);
+    assertRoundTrip(new long[0], new double[0]);
+  }
+
+  public void test_single() {
+    assertRoundTrip(new long[] {15000 }, new double[] {1.5d });
+  }
+
+  public void test_weekdays() {
+    final int n = 2600;
+    final long[] times = new long[n];
+    final double[] values = new double[n];
+    long time = 14000;
+    double value = 100d;
+    final Random random = new Random(1);
+    for (int i = 0; i < n; i++) {
+      times[i] = time;
+      values[i] = value;
+      time += ((i % 5) == 4) ? 3 : 1;
+      value = Math.round((value + random.nextGaussian()) * 100d) / 100d;
+    }
+    assertRoundTrip(times, values);
+    final byte[] block = TimeSeriesBlockCodec.encode(times, values, 0, n);
+    assertTrue(block.length < n * 8);
+  }
+
+  public void test_constant() {
+    final long[] times = new long[1000];
+    final double[] values = new double[1000];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = i;
+      values[i] = 0.25d;
+    }
+    assertRoundTrip(times, values);
+    assertTrue(TimeSeriesBlockCodec.encode(times, values, 0, times.length).length < 300);
+  }
+
+  public void test_extremes() {
+    assertRoundTrip(
+        new long[] {Long.MIN_VALUE / 2, -5, 0, 63, 2100, 2101, 5000000, Long.MAX_VALUE / 2 },
+        new double[] {Double.NaN, -0d, 0d, Double.MAX_VALUE, Double.MIN_VALUE, Double.NEGATIVE_INFINITY, 1e-300, -1d });
+  }
+
+  public void test_random() {
+    final Random random = new Random(2);
+    final long[] times = new long[500];
+    final double[] values = new double[500];
+    long time = 0;
+    for (int i = 0; i < times.length; i++) {
+      time += 1 + random.nextInt((i % 3 == 0) ? 5000 : 10);
+      times[i] = time;
+      values[i] = Double.longBitsToDouble(random.nextLong());
+    }
+    assertRoundTrip(times, values);
+  }
+
+  public void test_range() {
+    final long[] times = {1, 2, 3, 4, 5 };
+    final double[] values = {1d, 2d, 3d, 4d, 5d };
+    final byte[] block = TimeSeriesBlockCodec.encode(times, values, 1, 4);
+    final long[] decodedTimes = new long[3];
+    final double[] decodedValues = new double[3];
+    TimeSeriesBlockCodec.decode(ByteBuffer.wrap(block), 3, decodedTimes, decodedValues, 0);
+    assertEquals(2L, decodedTimes[0]);
+    assertEquals(4L, decodedTimes[2]);
+    assertEquals(4d, decodedValues[2], 0d);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_notAscending() {
+    TimeSeriesBlockCodec.encode(new long[] {1, 3, 2 }, new double[] {1d, 2d, 3d }, 0, 3);
+  }
+
+  public void test_intTimes() {
+    final int[] times = {-70000, 14000, 14001, 14004, Integer.MAX_VALUE };
+    final double[] values = {1d, 2d, 2d, 3.5d, -1d };
+    final byte[] block = TimeSeriesBlockCodec.encode(times, values, 0, times.length);
+    final long[] longTimes = new long[times.length];
+    for (int i = 0; i < times.length; i++) {
+      longTimes[i] = times[i];
+    }
+    assertTrue(Arrays.equals(TimeSeriesBlockCodec.encode(longTimes, values, 0, times.length), block));
+    final int[] decodedTimes = new int[times.length];
+    final double[] decodedValues = new double[times.length];
+    TimeSeriesBlockCodec.decode(ByteBuffer.wrap(block), times.length, decodedTimes, decodedValues, 0);
+    assertTrue(Arrays.equals(times, decodedTimes));
+    assertTrue(Arrays.equals(values, decodedValues));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_intTimes_overflow() {
+    final byte[] block = TimeSeriesBlockCodec.encode(new long[] {1L, 1L << 40 }, new double[] {1d, 2d }, 0, 2);
+    TimeSeriesBlockCodec.decode(ByteBuffer.wrap(block), 2, new int[2], new double[2], 0);
+  }
+
+}